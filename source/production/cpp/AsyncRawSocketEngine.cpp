@@ -0,0 +1,581 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <errno.h>
+#include <string>
+#include <cstring>
+#include <cstdlib>
+
+#if defined(__linux__)
+
+#include <unistd.h>
+#include <netinet/in.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <sys/syscall.h>
+#include <sys/uio.h>
+#include <linux/io_uring.h>
+
+#endif /* if defined(__linux__) */
+
+#include "io_oddsource_java_net_socket_AsyncRawSocketEngine.h"
+#include "NativeCommon.h"
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define UNSUPPORTED_MESSAGE "The asynchronous engine requires io_uring, which is only available on Linux."
+
+#if defined(__linux__) && defined(__NR_io_uring_setup) && defined(IORING_ASYNC_CANCEL_ANY)
+
+#define URING_SUPPORTED 1
+
+/*
+ * The Java class interprets these error numbers itself, so refuse to compile if they are wrong.
+ */
+#define CHECK_VALUE(name, constant, value) \
+    typedef char name[(io_oddsource_java_net_socket_AsyncRawSocketEngine_##constant == (value)) ? 1 : -1]
+
+CHECK_VALUE(checkErrorInterrupted, ERROR_INTERRUPTED, EINTR);
+CHECK_VALUE(checkErrorCanceled, ERROR_CANCELED, ECANCELED);
+
+#define NO_OPERATION ((__u64)(unsigned)io_oddsource_java_net_socket_AsyncRawSocketEngine_NO_OPERATION)
+
+/*
+ * The message header and address of a send must stay valid until the kernel has taken them, so each operation slot
+ * keeps its own.
+ */
+struct Operation
+{
+    struct msghdr message;
+    struct iovec vector;
+    struct sockaddr_storage address;
+};
+
+struct Uring
+{
+    int descriptor;
+
+    void *submissionMapping;
+    size_t submissionMappingSize;
+    void *completionMapping;
+    size_t completionMappingSize;
+    struct io_uring_sqe *entries;
+    size_t entriesSize;
+
+    unsigned *submissionHead;
+    unsigned *submissionTail;
+    unsigned submissionMask;
+    unsigned submissionEntries;
+    unsigned *submissionArray;
+    unsigned submissionLocalTail;
+    unsigned submissionPending;
+
+    unsigned *completionHead;
+    unsigned *completionTail;
+    unsigned completionMask;
+    struct io_uring_cqe *completions;
+
+    struct Operation *operations;
+    int operationCount;
+};
+
+static int uringSetup(unsigned entries, struct io_uring_params *parameters)
+{
+    return (int)syscall(__NR_io_uring_setup, entries, parameters);
+}
+
+static int uringEnter(int descriptor, unsigned submit, unsigned complete, unsigned flags)
+{
+    return (int)syscall(__NR_io_uring_enter, descriptor, submit, complete, flags, NULL, 0);
+}
+
+static int uringRegister(int descriptor, unsigned opcode, void *argument, unsigned count)
+{
+    return (int)syscall(__NR_io_uring_register, descriptor, opcode, argument, count);
+}
+
+static void destroyUring(struct Uring *uring)
+{
+    if(uring->entries != NULL && uring->entries != MAP_FAILED)
+        munmap(uring->entries, uring->entriesSize);
+    if(uring->completionMapping != NULL && uring->completionMapping != MAP_FAILED &&
+       uring->completionMapping != uring->submissionMapping)
+        munmap(uring->completionMapping, uring->completionMappingSize);
+    if(uring->submissionMapping != NULL && uring->submissionMapping != MAP_FAILED)
+        munmap(uring->submissionMapping, uring->submissionMappingSize);
+    if(uring->descriptor >= 0)
+        close(uring->descriptor);
+    free(uring->operations);
+    free(uring);
+}
+
+/*
+ * Returns the next free submission entry, cleared, or NULL if the submission queue is full.
+ */
+static struct io_uring_sqe *nextEntry(struct Uring *uring)
+{
+    unsigned head = __atomic_load_n(uring->submissionHead, __ATOMIC_ACQUIRE);
+    if(uring->submissionLocalTail - head >= uring->submissionEntries)
+        return NULL;
+
+    unsigned index = uring->submissionLocalTail & uring->submissionMask;
+    struct io_uring_sqe *entry = &uring->entries[index];
+    memset(entry, 0, sizeof(*entry));
+    uring->submissionArray[index] = index;
+    return entry;
+}
+
+static void commitEntry(struct Uring *uring)
+{
+    uring->submissionLocalTail++;
+    uring->submissionPending++;
+    __atomic_store_n(uring->submissionTail, uring->submissionLocalTail, __ATOMIC_RELEASE);
+}
+
+static void setTarget(struct io_uring_sqe *entry, jint descriptor, jboolean fixed)
+{
+    entry->fd = descriptor;
+    if(fixed)
+        entry->flags |= IOSQE_FIXED_FILE;
+}
+
+static socklen_t initAddress(JNIEnv *environment, struct sockaddr_storage *storage, jbyteArray address)
+{
+    memset(storage, 0, sizeof(*storage));
+
+    jsize length = environment->GetArrayLength(address);
+    if(length == 4)
+    {
+        struct sockaddr_in *sin = (struct sockaddr_in *)storage;
+        sin->sin_family = AF_INET;
+        environment->GetByteArrayRegion(address, 0, 4, (jbyte *)&sin->sin_addr);
+        return sizeof(struct sockaddr_in);
+    }
+    if(length == 16)
+    {
+        struct sockaddr_in6 *sin6 = (struct sockaddr_in6 *)storage;
+        sin6->sin6_family = AF_INET6;
+        environment->GetByteArrayRegion(address, 0, 16, (jbyte *)&sin6->sin6_addr);
+        return sizeof(struct sockaddr_in6);
+    }
+
+    raiseError(environment, "java/lang/IllegalArgumentException", "Addresses must be 4 (IPv4) or 16 (IPv6) bytes.");
+    return 0;
+}
+
+#endif /* if defined(__linux__) && defined(__NR_io_uring_setup) && defined(IORING_ASYNC_CANCEL_ANY) */
+
+JNIEXPORT jlong JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_create
+    (JNIEnv *environment, jclass, jint queueDepth, jint maximumInFlight, jint maximumRegisteredSockets)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)calloc(1, sizeof(struct Uring));
+    if(uring == NULL)
+    {
+        raiseError(environment, "java/lang/OutOfMemoryError", "Could not allocate the ring.");
+        return 0;
+    }
+    uring->descriptor = -1;
+
+    uring->operations = (struct Operation *)calloc(maximumInFlight, sizeof(struct Operation));
+    if(uring->operations == NULL)
+    {
+        free(uring);
+        raiseError(environment, "java/lang/OutOfMemoryError", "Could not allocate the operation slots.");
+        return 0;
+    }
+    uring->operationCount = maximumInFlight;
+
+    /*
+     * every operation in flight, and the cancellation at close, must have room for its completion, so the completion
+     * queue never overflows; the kernel also requires it to be no smaller than the submission queue
+     */
+    struct io_uring_params parameters;
+    memset(&parameters, 0, sizeof(parameters));
+    parameters.flags = IORING_SETUP_CQSIZE;
+    parameters.cq_entries = (unsigned)maximumInFlight + 1;
+    if(parameters.cq_entries < (unsigned)queueDepth)
+        parameters.cq_entries = (unsigned)queueDepth;
+    uring->descriptor = uringSetup(queueDepth, &parameters);
+    if(uring->descriptor < 0)
+    {
+        handleSocketError(environment);
+        destroyUring(uring);
+        return 0;
+    }
+
+    uring->submissionMappingSize = parameters.sq_off.array + parameters.sq_entries * sizeof(unsigned);
+    uring->completionMappingSize = parameters.cq_off.cqes + parameters.cq_entries * sizeof(struct io_uring_cqe);
+    if(parameters.features & IORING_FEAT_SINGLE_MMAP)
+    {
+        if(uring->completionMappingSize > uring->submissionMappingSize)
+            uring->submissionMappingSize = uring->completionMappingSize;
+        uring->completionMappingSize = uring->submissionMappingSize;
+    }
+
+    uring->submissionMapping = mmap(NULL, uring->submissionMappingSize, PROT_READ | PROT_WRITE,
+                                    MAP_SHARED | MAP_POPULATE, uring->descriptor, IORING_OFF_SQ_RING);
+    if(uring->submissionMapping == MAP_FAILED)
+    {
+        handleSocketError(environment);
+        destroyUring(uring);
+        return 0;
+    }
+
+    if(parameters.features & IORING_FEAT_SINGLE_MMAP)
+        uring->completionMapping = uring->submissionMapping;
+    else
+        uring->completionMapping = mmap(NULL, uring->completionMappingSize, PROT_READ | PROT_WRITE,
+                                        MAP_SHARED | MAP_POPULATE, uring->descriptor, IORING_OFF_CQ_RING);
+    if(uring->completionMapping == MAP_FAILED)
+    {
+        handleSocketError(environment);
+        destroyUring(uring);
+        return 0;
+    }
+
+    uring->entriesSize = parameters.sq_entries * sizeof(struct io_uring_sqe);
+    uring->entries = (struct io_uring_sqe *)mmap(NULL, uring->entriesSize, PROT_READ | PROT_WRITE,
+                                                 MAP_SHARED | MAP_POPULATE, uring->descriptor, IORING_OFF_SQES);
+    if(uring->entries == MAP_FAILED)
+    {
+        handleSocketError(environment);
+        destroyUring(uring);
+        return 0;
+    }
+
+    char *submission = (char *)uring->submissionMapping;
+    uring->submissionHead = (unsigned *)(submission + parameters.sq_off.head);
+    uring->submissionTail = (unsigned *)(submission + parameters.sq_off.tail);
+    uring->submissionMask = *(unsigned *)(submission + parameters.sq_off.ring_mask);
+    uring->submissionEntries = *(unsigned *)(submission + parameters.sq_off.ring_entries);
+    uring->submissionArray = (unsigned *)(submission + parameters.sq_off.array);
+    uring->submissionLocalTail = *uring->submissionTail;
+
+    char *completion = (char *)uring->completionMapping;
+    uring->completionHead = (unsigned *)(completion + parameters.cq_off.head);
+    uring->completionTail = (unsigned *)(completion + parameters.cq_off.tail);
+    uring->completionMask = *(unsigned *)(completion + parameters.cq_off.ring_mask);
+    uring->completions = (struct io_uring_cqe *)(completion + parameters.cq_off.cqes);
+
+    /* an empty (all -1) file table, filled in as sockets are registered */
+    if(maximumRegisteredSockets > 0)
+    {
+        int *files = (int *)malloc(maximumRegisteredSockets * sizeof(int));
+        if(files == NULL)
+        {
+            destroyUring(uring);
+            raiseError(environment, "java/lang/OutOfMemoryError", "Could not allocate the file table.");
+            return 0;
+        }
+        for(jint i = 0; i < maximumRegisteredSockets; i++)
+            files[i] = -1;
+        int result = uringRegister(uring->descriptor, IORING_REGISTER_FILES, files, maximumRegisteredSockets);
+        free(files);
+        if(result < 0)
+        {
+            handleSocketError(environment);
+            destroyUring(uring);
+            return 0;
+        }
+    }
+
+    return (jlong)(size_t)uring;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_registerSocket
+    (JNIEnv *environment, jclass, jlong handle, jint index, jint socket)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    struct io_uring_files_update update;
+    memset(&update, 0, sizeof(update));
+    update.offset = index;
+    update.fds = (__u64)(size_t)&socket;
+    if(uringRegister(uring->descriptor, IORING_REGISTER_FILES_UPDATE, &update, 1) < 0)
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_registerBuffers
+    (JNIEnv *environment, jclass, jlong handle, jobjectArray buffers)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    jsize count = environment->GetArrayLength(buffers);
+    struct iovec *vectors = (struct iovec *)calloc(count, sizeof(struct iovec));
+    if(vectors == NULL)
+    {
+        raiseError(environment, "java/lang/OutOfMemoryError", "Could not allocate the buffer table.");
+        return;
+    }
+
+    for(jsize i = 0; i < count; i++)
+    {
+        jobject buffer = environment->GetObjectArrayElement(buffers, i);
+        vectors[i].iov_base = environment->GetDirectBufferAddress(buffer);
+        vectors[i].iov_len = (size_t)environment->GetDirectBufferCapacity(buffer);
+        environment->DeleteLocalRef(buffer);
+    }
+
+    if(uringRegister(uring->descriptor, IORING_REGISTER_BUFFERS, vectors, count) < 0)
+        handleSocketError(environment);
+    free(vectors);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareSend
+    (JNIEnv *environment, jclass, jlong handle, jint operation, jint socket, jboolean fixedFile, jobject buffer,
+     jint offset, jint length, jbyteArray address)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+    struct Operation *context = &uring->operations[operation];
+
+    socklen_t addressLength = initAddress(environment, &context->address, address);
+    if(addressLength == 0)
+        return JNI_FALSE;
+
+    struct io_uring_sqe *entry = nextEntry(uring);
+    if(entry == NULL)
+        return JNI_FALSE;
+
+    char *data = (char *)environment->GetDirectBufferAddress(buffer) + offset;
+    setTarget(entry, socket, fixedFile);
+    entry->user_data = (__u64)operation;
+
+    memset(&context->message, 0, sizeof(context->message));
+    context->vector.iov_base = data;
+    context->vector.iov_len = length;
+    context->message.msg_name = &context->address;
+    context->message.msg_namelen = addressLength;
+    context->message.msg_iov = &context->vector;
+    context->message.msg_iovlen = 1;
+
+    entry->opcode = IORING_OP_SENDMSG;
+    entry->addr = (__u64)(size_t)&context->message;
+    entry->len = 1;
+
+    commitEntry(uring);
+    return JNI_TRUE;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareReceive
+    (JNIEnv *environment, jclass, jlong handle, jint operation, jint socket, jboolean fixedFile, jobject buffer,
+     jint offset, jint length, jint bufferIndex)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    struct io_uring_sqe *entry = nextEntry(uring);
+    if(entry == NULL)
+        return JNI_FALSE;
+
+    char *data = (char *)environment->GetDirectBufferAddress(buffer) + offset;
+    setTarget(entry, socket, fixedFile);
+    entry->user_data = (__u64)operation;
+    entry->addr = (__u64)(size_t)data;
+    entry->len = length;
+
+    if(bufferIndex >= 0)
+    {
+        entry->opcode = IORING_OP_READ_FIXED;
+        entry->buf_index = (__u16)bufferIndex;
+    }
+    else
+    {
+        entry->opcode = IORING_OP_RECV;
+    }
+
+    commitEntry(uring);
+    return JNI_TRUE;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareCancelAll
+    (JNIEnv *environment, jclass, jlong handle)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    struct io_uring_sqe *entry = nextEntry(uring);
+    if(entry == NULL)
+        return JNI_FALSE;
+
+    entry->opcode = IORING_OP_ASYNC_CANCEL;
+    entry->fd = -1;
+    entry->cancel_flags = IORING_ASYNC_CANCEL_ANY;
+    entry->user_data = NO_OPERATION;
+
+    commitEntry(uring);
+    return JNI_TRUE;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareCancelSocket
+    (JNIEnv *environment, jclass, jlong handle, jint socket)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    struct io_uring_sqe *entry = nextEntry(uring);
+    if(entry == NULL)
+        return JNI_FALSE;
+
+    /* the kernel matches by open file, so this also cancels operations started through the file table */
+    entry->opcode = IORING_OP_ASYNC_CANCEL;
+    entry->fd = socket;
+    entry->cancel_flags = IORING_ASYNC_CANCEL_FD | IORING_ASYNC_CANCEL_ALL;
+    entry->user_data = NO_OPERATION;
+
+    commitEntry(uring);
+    return JNI_TRUE;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_submit
+    (JNIEnv *environment, jclass, jlong handle)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    jint submitted = 0;
+    while(uring->submissionPending > 0)
+    {
+        int result = uringEnter(uring->descriptor, uring->submissionPending, 0, 0);
+        if(result < 0)
+        {
+            if(errno == EINTR)
+                continue;
+            handleSocketError(environment);
+            return submitted;
+        }
+        uring->submissionPending -= result;
+        submitted += result;
+    }
+
+    return submitted;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_awaitCompletions
+    (JNIEnv *environment, jclass, jlong handle, jintArray operations, jintArray results)
+{
+#if defined(URING_SUPPORTED)
+    struct Uring *uring = (struct Uring *)(size_t)handle;
+
+    unsigned head = *uring->completionHead;
+    while(head == __atomic_load_n(uring->completionTail, __ATOMIC_ACQUIRE))
+    {
+        if(uringEnter(uring->descriptor, 0, 1, IORING_ENTER_GETEVENTS) < 0 && errno != EINTR)
+        {
+            handleSocketError(environment);
+            return 0;
+        }
+    }
+
+    jsize maximum = environment->GetArrayLength(operations);
+    jint *operationValues = (jint *)environment->GetPrimitiveArrayCritical(operations, NULL);
+    jint *resultValues = (jint *)environment->GetPrimitiveArrayCritical(results, NULL);
+
+    unsigned tail = __atomic_load_n(uring->completionTail, __ATOMIC_ACQUIRE);
+    jint count = 0;
+    while(head != tail && count < maximum)
+    {
+        struct io_uring_cqe *completion = &uring->completions[head & uring->completionMask];
+        operationValues[count] = (jint)completion->user_data;
+        resultValues[count] = completion->res;
+        count++;
+        head++;
+    }
+    __atomic_store_n(uring->completionHead, head, __ATOMIC_RELEASE);
+
+    environment->ReleasePrimitiveArrayCritical(results, resultValues, 0);
+    environment->ReleasePrimitiveArrayCritical(operations, operationValues, 0);
+
+    return count;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+JNIEXPORT jstring JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_describeError
+    (JNIEnv *environment, jclass, jint error)
+{
+    return environment->NewStringUTF(strerror(error));
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_destroy
+    (JNIEnv *environment, jclass, jlong handle)
+{
+#if defined(URING_SUPPORTED)
+    destroyUring((struct Uring *)(size_t)handle);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod asyncRawSocketEngineMethods[] = {
+    NATIVE_METHOD(AsyncRawSocketEngine, create, "(III)J"),
+    NATIVE_METHOD(AsyncRawSocketEngine, registerSocket, "(JII)V"),
+    NATIVE_METHOD(AsyncRawSocketEngine, registerBuffers, "(J[Ljava/nio/ByteBuffer;)V"),
+    NATIVE_METHOD(AsyncRawSocketEngine, prepareSend, "(JIIZLjava/nio/ByteBuffer;II[B)Z"),
+    NATIVE_METHOD(AsyncRawSocketEngine, prepareReceive, "(JIIZLjava/nio/ByteBuffer;III)Z"),
+    NATIVE_METHOD(AsyncRawSocketEngine, prepareCancelAll, "(J)Z"),
+    NATIVE_METHOD(AsyncRawSocketEngine, prepareCancelSocket, "(JI)Z"),
+    NATIVE_METHOD(AsyncRawSocketEngine, submit, "(J)I"),
+    NATIVE_METHOD(AsyncRawSocketEngine, awaitCompletions, "(J[I[I)I"),
+    NATIVE_METHOD(AsyncRawSocketEngine, describeError, "(I)Ljava/lang/String;"),
+    NATIVE_METHOD(AsyncRawSocketEngine, destroy, "(J)V")
+};
+
+bool registerAsyncRawSocketEngineNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/AsyncRawSocketEngine", asyncRawSocketEngineMethods,
+        sizeof(asyncRawSocketEngineMethods) / sizeof(asyncRawSocketEngineMethods[0])
+    );
+}
@@ -20,9 +20,7 @@
  */
 
 #include <errno.h>
-#include <string>
 #include <cstring>
-#include <map>
 
 #ifdef _WIN32
 
@@ -47,10 +45,9 @@
 #endif /* if defined(_WIN32) else */
 
 #include "io_oddsource_java_net_socket_Constants.h"
+#include "NativeCommon.h"
 
-std::map<std::string, int> constantMap;
-std::map<std::string, int>::iterator constantMapEnd;
-static void populateConstantMap();
+#define CONSTANT_INDEX(name) io_oddsource_java_net_socket_Constants_##name##_INDEX
 
 /*
  * Java Methods
@@ -58,68 +55,55 @@ static void populateConstantMap();
 
 /*
  * Class: io_oddsource_java_net_socket_Constants
- * Method: registerNumericConstant();
- * Signature: (Ljava/lang/String;)I
+ * Method: loadNumericConstants();
+ * Signature: ([I)V
  *
- * Returns the value of the operating system constant with the name constantNameJstring if that constant is
- * supported. If it is not supported, a SocketConstantNotDefinedException is raised.
+ * Fills valuesArray with the values of all operating system constants, at the positions given by the Constants
+ * *_INDEX fields, in one call. Constants the operating system does not define are left NOT_DEFINED. If the array
+ * does not have CONSTANT_COUNT elements, an IllegalArgumentException is raised.
  */
-JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_Constants_registerNumericConstant
-    (JNIEnv *environment, jclass, jstring constantNameJstring)
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_Constants_loadNumericConstants
+    (JNIEnv *environment, jclass, jintArray valuesArray)
 {
-    if(constantMap.size() == 0)
+    if(environment->GetArrayLength(valuesArray) != io_oddsource_java_net_socket_Constants_CONSTANT_COUNT)
     {
-        populateConstantMap();
+        raiseError(environment, "java/lang/IllegalArgumentException", "The constant array has the wrong length.");
+        return;
     }
 
-    jboolean isCopy;
-    const char* constantName = environment->GetStringUTFChars(constantNameJstring, &isCopy);
-
-    int returnValue = 0;
-    if(constantMap.find(constantName) != constantMapEnd)
-    {
-        returnValue = constantMap[constantName];
-    }
-    else
+    jint values[io_oddsource_java_net_socket_Constants_CONSTANT_COUNT];
+    for(int i = 0; i < io_oddsource_java_net_socket_Constants_CONSTANT_COUNT; i++)
     {
-        std::string message("The specified constant, ");
-        message += constantName;
-        message += ", is not natively defined.";
-
-        environment->ThrowNew(
-            environment->FindClass("io/oddsource/java/net/socket/exception/SocketConstantNotDefinedException"),
-            message.c_str()
-        ); /* this does not return, so we can wait to clean up below */
+        values[i] = io_oddsource_java_net_socket_Constants_NOT_DEFINED;
     }
 
-    environment->ReleaseStringUTFChars(constantNameJstring, constantName);
-    return returnValue;
-}
-
-/*
- * Utility Functions
- */
-
-static void populateConstantMap()
-{
-    constantMap["IPPROTO_IP"]      = IPPROTO_IP;
-    constantMap["IPPROTO_IPIP"]    = IPPROTO_IPIP;
+    values[CONSTANT_INDEX(IPPROTO_IP)]        = IPPROTO_IP;
+#ifdef IPPROTO_IPIP
+    values[CONSTANT_INDEX(IPPROTO_IPIP)]      = IPPROTO_IPIP;
+#endif
 #ifdef IPPROTO_IPV4
-    constantMap["IPPROTO_IPV4"]    = IPPROTO_IPV4;
-#else
-    constantMap["IPPROTO_IPV4"]    = IPPROTO_IPIP;
+    values[CONSTANT_INDEX(IPPROTO_IPV4)]      = IPPROTO_IPV4;
+#elif defined(IPPROTO_IPIP)
+    values[CONSTANT_INDEX(IPPROTO_IPV4)]      = IPPROTO_IPIP;
+#endif
+    values[CONSTANT_INDEX(IPPROTO_IPV6)]      = IPPROTO_IPV6;
+    values[CONSTANT_INDEX(IPPROTO_TCP)]       = IPPROTO_TCP;
+    values[CONSTANT_INDEX(IPPROTO_UDP)]       = IPPROTO_UDP;
+    values[CONSTANT_INDEX(IPPROTO_ICMP)]      = IPPROTO_ICMP;
+
+    values[CONSTANT_INDEX(IP_HDRINCL)]        = IP_HDRINCL;
+    values[CONSTANT_INDEX(IP_OPTIONS)]        = IP_OPTIONS;
+#ifdef IP_PKTINFO
+    values[CONSTANT_INDEX(IP_PKTINFO)]        = IP_PKTINFO;
+#endif
+#ifdef IP_RECVOPTS
+    values[CONSTANT_INDEX(IP_RECVOPTS)]       = IP_RECVOPTS;
 #endif
-    constantMap["IPPROTO_IPV6"]    = IPPROTO_IPV6;
-    constantMap["IPPROTO_TCP"]     = IPPROTO_TCP;
-    constantMap["IPPROTO_UDP"]     = IPPROTO_UDP;
-    constantMap["IPPROTO_ICMP"]    = IPPROTO_ICMP;
-
-    constantMap["IP_HDRINCL"]      = IP_HDRINCL;
-    constantMap["IP_OPTIONS"]      = IP_OPTIONS;
-    constantMap["IP_RECVOPTS"]     = IP_RECVOPTS;
-    constantMap["IP_RECVRETOPTS"]  = IP_RECVRETOPTS;
-    constantMap["IP_TOS"]          = IP_TOS;
-    constantMap["IP_TTL"]          = IP_TTL;
+#ifdef IP_RECVRETOPTS
+    values[CONSTANT_INDEX(IP_RECVRETOPTS)]    = IP_RECVRETOPTS;
+#endif
+    values[CONSTANT_INDEX(IP_TOS)]            = IP_TOS;
+    values[CONSTANT_INDEX(IP_TTL)]            = IP_TTL;
 
     /*
      * In Unix systems, IP_HDRINCL can be passed to setsockopt for IPv6 sockets, so IPV6_HDRINCL isn't defined. Windows
@@ -127,33 +111,59 @@ static void populateConstantMap()
      * define this, and set it equal to IP_HDRINCL on systems that don't have IPV6_HDRINCL defined.
      */
 #ifdef IPV6_HDRINCL
-    constantMap["IPV6_HDRINCL"]    = IPV6_HDRINCL;
+    values[CONSTANT_INDEX(IPV6_HDRINCL)]      = IPV6_HDRINCL;
 #else
-    constantMap["IPV6_HDRINCL"]    = IP_HDRINCL;
+    values[CONSTANT_INDEX(IPV6_HDRINCL)]      = IP_HDRINCL;
+#endif
+#ifdef IPV6_HOPLIMIT
+    values[CONSTANT_INDEX(IPV6_HOPLIMIT)]     = IPV6_HOPLIMIT;
 #endif
-    constantMap["IPV6_HOPLIMIT"]   = IPV6_HOPLIMIT;
 #ifdef IPV6_MAXHLIM
-    constantMap["IPV6_MAXHLIM"]    = IPV6_MAXHLIM;
+    values[CONSTANT_INDEX(IPV6_MAXHLIM)]      = IPV6_MAXHLIM;
 #else
-    constantMap["IPV6_MAXHLIM"]    = 255;
+    values[CONSTANT_INDEX(IPV6_MAXHLIM)]      = 255;
+#endif
+    /*
+     * Windows has no separate option for receiving packet information; setting IPV6_PKTINFO enables it instead.
+     */
+#ifdef IPV6_RECVPKTINFO
+    values[CONSTANT_INDEX(IPV6_RECVPKTINFO)]  = IPV6_RECVPKTINFO;
+#else
+    values[CONSTANT_INDEX(IPV6_RECVPKTINFO)]  = IPV6_PKTINFO;
 #endif
 #ifdef IPV6_VERSION
-    constantMap["IPV6_VERSION"]    = IPV6_VERSION;
+    values[CONSTANT_INDEX(IPV6_VERSION)]      = IPV6_VERSION;
 #else
-    constantMap["IPV6_VERSION"]    = 0x60;
+    values[CONSTANT_INDEX(IPV6_VERSION)]      = 0x60;
 #endif
 
-    constantMap["SO_RCVBUF"]       = SO_RCVBUF;
-    constantMap["SO_RCVTIMEO"]     = SO_RCVTIMEO;
-    constantMap["SO_SNDBUF"]       = SO_SNDBUF;
-    constantMap["SO_SNDTIMEO"]     = SO_SNDTIMEO;
+    values[CONSTANT_INDEX(SO_RCVBUF)]         = SO_RCVBUF;
+    values[CONSTANT_INDEX(SO_RCVTIMEO)]       = SO_RCVTIMEO;
+    values[CONSTANT_INDEX(SO_SNDBUF)]         = SO_SNDBUF;
+    values[CONSTANT_INDEX(SO_SNDTIMEO)]       = SO_SNDTIMEO;
 
-    constantMap["SOL_SOCKET"]      = SOL_SOCKET;
+    values[CONSTANT_INDEX(SOL_SOCKET)]        = SOL_SOCKET;
 
-    constantMap["AF_INET"]         = AF_INET;
-    constantMap["AF_INET6"]        = AF_INET6;
-    constantMap["PF_INET"]         = PF_INET;
-    constantMap["PF_INET6"]        = PF_INET6;
+    values[CONSTANT_INDEX(AF_INET)]           = AF_INET;
+    values[CONSTANT_INDEX(AF_INET6)]          = AF_INET6;
+    values[CONSTANT_INDEX(PF_INET)]           = PF_INET;
+    values[CONSTANT_INDEX(PF_INET6)]          = PF_INET6;
 
-    constantMapEnd = constantMap.end();
+    environment->SetIntArrayRegion(valuesArray, 0, io_oddsource_java_net_socket_Constants_CONSTANT_COUNT, values);
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod constantsMethods[] = {
+    NATIVE_METHOD(Constants, loadNumericConstants, "([I)V")
+};
+
+bool registerConstantsNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/Constants", constantsMethods,
+        sizeof(constantsMethods) / sizeof(constantsMethods[0])
+    );
 }
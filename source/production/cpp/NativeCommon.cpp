@@ -0,0 +1,305 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * Some parts Copyright 2004-2007 Daniel F. Savarese and
+ *     Copyright 2007-2009 Savarese Software Research Corporation
+ *     (used with permission under Apache License, Version 2.0)
+ */
+
+#include <errno.h>
+#include <string>
+#include <cstring>
+
+#if defined(_WIN32)
+
+#include <winsock2.h>
+#include <ws2tcpip.h>
+
+#ifndef poll
+#define poll(fds, count, timeout) WSAPoll(fds, count, timeout)
+#endif
+
+#else /* if defined(_WIN32) */
+
+#include <poll.h>
+
+#endif /* if defined(_WIN32) else */
+
+#ifndef SOCKET_ERROR
+#define SOCKET_ERROR -1
+#endif
+
+#include "NativeCommon.h"
+
+#define RAW_SOCKET_EXCEPTION "io/oddsource/java/net/socket/exception/RawSocketException"
+
+/*
+ * Classes resolved once when the library is loaded.
+ */
+
+jclass protocolClass = NULL;
+jclass stringClass = NULL;
+
+static const char *const exceptionClassNames[] = {
+    RAW_SOCKET_EXCEPTION,
+    "io/oddsource/java/net/socket/exception/SocketConstantNotDefinedException",
+    "java/net/SocketException",
+    "java/net/SocketTimeoutException",
+    "java/lang/IllegalArgumentException",
+    "java/lang/IllegalStateException",
+    "java/lang/UnsupportedOperationException",
+    "java/lang/OutOfMemoryError"
+};
+
+#define EXCEPTION_CLASS_COUNT (sizeof(exceptionClassNames) / sizeof(exceptionClassNames[0]))
+
+static jclass exceptionClasses[EXCEPTION_CLASS_COUNT];
+
+/*
+ * The library's classes are looked up through Class.forName without initializing them, because JNI's FindClass runs
+ * static initializers, which call natives that are not bound until the library has finished loading.
+ */
+static jobject libraryClassLoader = NULL;
+static jclass classClass = NULL;
+static jmethodID forNameMethod = NULL;
+
+static bool prepareClassLookup(JNIEnv *environment)
+{
+    classClass = environment->FindClass("java/lang/Class");
+    if(classClass == NULL)
+        return false;
+    forNameMethod = environment->GetStaticMethodID(
+        classClass, "forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;"
+    );
+    jmethodID getClassLoader = environment->GetMethodID(classClass, "getClassLoader", "()Ljava/lang/ClassLoader;");
+    if(forNameMethod == NULL || getClassLoader == NULL)
+        return false;
+
+    /* already being initialized by this thread, which is loading the library, so finding it initializes nothing */
+    jclass anchor = environment->FindClass("io/oddsource/java/net/socket/DynamicNativeObject");
+    if(anchor == NULL)
+        return false;
+    libraryClassLoader = environment->CallObjectMethod(anchor, getClassLoader);
+    environment->DeleteLocalRef(anchor);
+    return !environment->ExceptionCheck();
+}
+
+static void finishClassLookup(JNIEnv *environment)
+{
+    if(libraryClassLoader != NULL)
+        environment->DeleteLocalRef(libraryClassLoader);
+    if(classClass != NULL)
+        environment->DeleteLocalRef(classClass);
+    libraryClassLoader = NULL;
+    classClass = NULL;
+    forNameMethod = NULL;
+}
+
+static jclass findClassUninitialized(JNIEnv *environment, const char *name)
+{
+    std::string binaryName(name);
+    for(size_t i = 0; i < binaryName.length(); i++)
+    {
+        if(binaryName[i] == '/')
+            binaryName[i] = '.';
+    }
+
+    jstring nameString = environment->NewStringUTF(binaryName.c_str());
+    if(nameString == NULL)
+        return NULL;
+
+    jclass type = (jclass)environment->CallStaticObjectMethod(
+        classClass, forNameMethod, nameString, JNI_FALSE, libraryClassLoader
+    );
+    environment->DeleteLocalRef(nameString);
+    return environment->ExceptionCheck() ? NULL : type;
+}
+
+static jclass findGlobalClass(JNIEnv *environment, const char *name)
+{
+    jclass local = findClassUninitialized(environment, name);
+    if(local == NULL)
+        return NULL;
+
+    jclass global = (jclass)environment->NewGlobalRef(local);
+    environment->DeleteLocalRef(local);
+    return global;
+}
+
+static bool cacheClasses(JNIEnv *environment)
+{
+    for(size_t i = 0; i < EXCEPTION_CLASS_COUNT; i++)
+    {
+        exceptionClasses[i] = findGlobalClass(environment, exceptionClassNames[i]);
+        if(exceptionClasses[i] == NULL)
+            return false;
+    }
+
+    /* only find classes here: resolving members would initialize them, too */
+    protocolClass = findGlobalClass(environment, "io/oddsource/java/net/socket/Protocol");
+    if(protocolClass == NULL)
+        return false;
+
+    stringClass = findGlobalClass(environment, "java/lang/String");
+    return stringClass != NULL;
+}
+
+/*
+ * Library lifecycle
+ */
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *)
+{
+    JNIEnv *environment;
+    if(vm->GetEnv((void **)&environment, JNI_VERSION_1_6) != JNI_OK)
+        return JNI_ERR;
+
+    bool loaded = prepareClassLookup(environment) &&
+                  cacheClasses(environment) &&
+                  registerAsyncRawSocketEngineNatives(environment) &&
+                  registerConstantsNatives(environment) &&
+                  registerPacketFanoutGroupNatives(environment) &&
+                  registerPacketReceiveRingNatives(environment) &&
+                  registerPacketTransmitRingNatives(environment) &&
+                  registerRawSocketImplNatives(environment) &&
+                  registerRawSocketSelectorNatives(environment) &&
+                  registerSocketUtilitiesNatives(environment);
+    finishClassLookup(environment);
+
+    return loaded ? JNI_VERSION_1_6 : JNI_ERR;
+}
+
+/*
+ * Utility functions shared by all of the native classes.
+ */
+
+bool registerNatives(JNIEnv *environment, const char *className, JNINativeMethod *methods, int count)
+{
+    jclass type = findClassUninitialized(environment, className);
+    if(type == NULL)
+        return false;
+
+    bool registered = environment->RegisterNatives(type, methods, count) == 0;
+    environment->DeleteLocalRef(type);
+    return registered;
+}
+
+void raiseError(JNIEnv *environment, const char *error, const char *message)
+{
+    if(error == NULL)
+        error = RAW_SOCKET_EXCEPTION;
+
+    jclass type = NULL;
+    for(size_t i = 0; i < EXCEPTION_CLASS_COUNT; i++)
+    {
+        if(error == exceptionClassNames[i] || strcmp(error, exceptionClassNames[i]) == 0)
+        {
+            type = exceptionClasses[i];
+            break;
+        }
+    }
+
+    if(type == NULL)
+    {
+        /* not one of the cached classes; resolve it the slow way */
+        jclass local = environment->FindClass(error);
+        if(local != NULL)
+        {
+            environment->ThrowNew(local, message == NULL ? "" : message);
+            environment->DeleteLocalRef(local);
+        }
+        return;
+    }
+
+    environment->ThrowNew(type, message == NULL ? "" : message);
+}
+
+void handleSocketError(JNIEnv *environment)
+{
+    if(errno)
+    {
+        char * message = NULL;
+
+#if defined(_WIN32)
+        int formatted = FormatMessage(
+            FORMAT_MESSAGE_ALLOCATE_BUFFER | FORMAT_MESSAGE_FROM_SYSTEM | FORMAT_MESSAGE_IGNORE_INSERTS,
+            NULL,
+            errno,
+            MAKELANGID(LANG_NEUTRAL, SUBLANG_DEFAULT),
+            (LPTSTR) &message,
+            0,
+            NULL
+        );
+
+        if(!formatted)
+            message = strerror(errno);
+#else
+        message = strerror(errno);
+#endif
+
+        raiseError(environment, NULL, message);
+
+#if defined(_WIN32)
+        if(formatted)
+            LocalFree(message);
+#endif
+    }
+}
+
+void handleTransferError(JNIEnv *environment, const char *timeoutMessage)
+{
+    if(errno == EAGAIN || errno == EWOULDBLOCK)
+        raiseError(environment, "java/net/SocketTimeoutException", timeoutMessage);
+    else
+        handleSocketError(environment);
+}
+
+bool awaitSocket(JNIEnv *environment, int socket, int wakeup, short events, int timeout, const char *timeoutMessage)
+{
+    struct pollfd descriptors[2];
+    descriptors[0].fd = socket;
+    descriptors[0].events = events;
+    descriptors[0].revents = 0;
+    descriptors[1].fd = wakeup;
+    descriptors[1].events = POLLIN;
+    descriptors[1].revents = 0;
+
+    int result;
+    do
+    {
+        result = poll(descriptors, wakeup < 0 ? 1 : 2, timeout == 0 ? -1 : timeout);
+    }
+    while(result == SOCKET_ERROR && errno == EINTR);
+
+    if(result == 0)
+    {
+        raiseError(environment, "java/net/SocketTimeoutException", timeoutMessage);
+        return false;
+    }
+    if(result == SOCKET_ERROR)
+    {
+        handleSocketError(environment);
+        return false;
+    }
+    /* the wake-up descriptor is never drained, so every later wait on the closed socket fails at once, too */
+    if((descriptors[0].revents & (POLLHUP | POLLNVAL)) || descriptors[1].revents)
+    {
+        raiseError(environment, "java/net/SocketException", "Socket closed.");
+        return false;
+    }
+
+    return true;
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+#ifndef _Included_NativeCommon
+#define _Included_NativeCommon
+
+#include <jni.h>
+#include <string>
+
+/*
+ * Builds a JNINativeMethod entry binding a native method of the given class in io.oddsource.java.net.socket to its
+ * implementation, for registering with registerNatives.
+ */
+#define NATIVE_METHOD(class, method, signature) \
+    { (char *)#method, (char *)signature, (void *)Java_io_oddsource_java_net_socket_##class##_##method }
+
+/*
+ * The Protocol and String classes, resolved once when the library is loaded.
+ */
+extern jclass protocolClass;
+extern jclass stringClass;
+
+/*
+ * Binds the class's native methods to their implementations, without initializing the class. Only valid while the
+ * library is loading. Returns false, with an exception pending, on failure.
+ */
+bool registerNatives(JNIEnv *environment, const char *className, JNINativeMethod *methods, int count);
+
+/*
+ * Bind the natives of each class, called once when the library is loaded. Each is defined alongside the natives it
+ * binds.
+ */
+bool registerAsyncRawSocketEngineNatives(JNIEnv *environment);
+bool registerConstantsNatives(JNIEnv *environment);
+bool registerPacketFanoutGroupNatives(JNIEnv *environment);
+bool registerPacketReceiveRingNatives(JNIEnv *environment);
+bool registerPacketTransmitRingNatives(JNIEnv *environment);
+bool registerRawSocketImplNatives(JNIEnv *environment);
+bool registerRawSocketSelectorNatives(JNIEnv *environment);
+bool registerSocketUtilitiesNatives(JNIEnv *environment);
+
+/*
+ * Throws a new exception of the given class (or RawSocketException if the class is NULL) with the given message. The
+ * exception classes the native code raises are resolved once when the library is loaded, so raising them costs no
+ * class lookup.
+ */
+void raiseError(JNIEnv *environment, const char *error, const char *message);
+
+/*
+ * Throws a RawSocketException describing the current errno, if it is set.
+ */
+void handleSocketError(JNIEnv *environment);
+
+/*
+ * Throws a SocketTimeoutException with the given message if the current errno indicates the operation would have
+ * blocked past its timeout, or a RawSocketException describing the current errno otherwise.
+ */
+void handleTransferError(JNIEnv *environment, const char *timeoutMessage);
+
+/*
+ * Waits for the socket to become ready for the given poll events, with a timeout of zero meaning to wait indefinitely
+ * (the same as the socket-level timeouts). The wake-up descriptor, if not negative, is polled alongside the socket and
+ * becomes readable when the socket is closed. Returns false, with an exception pending, on timeout, on error, or if the
+ * socket has been shut down or closed.
+ */
+bool awaitSocket(JNIEnv *environment, int socket, int wakeup, short events, int timeout, const char *timeoutMessage);
+
+#endif /* _Included_NativeCommon */
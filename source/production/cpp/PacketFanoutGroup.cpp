@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <errno.h>
+#include <string>
+#include <cstring>
+
+#if defined(__linux__)
+
+#include <sys/socket.h>
+#include <linux/if_packet.h>
+
+#endif /* if defined(__linux__) */
+
+#include "io_oddsource_java_net_socket_PacketFanoutGroup.h"
+#include "NativeCommon.h"
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define UNSUPPORTED_MESSAGE "Packet fanout is only available on Linux."
+
+#if defined(__linux__) && defined(PACKET_FANOUT)
+
+#define FANOUT_SUPPORTED 1
+
+/*
+ * The Java class passes these modes through unchanged, so refuse to compile if they are wrong.
+ */
+#define CHECK_VALUE(name, constant, value) \
+    typedef char name[(io_oddsource_java_net_socket_PacketFanoutGroup_##constant == (value)) ? 1 : -1]
+
+CHECK_VALUE(checkHash, FANOUT_HASH, PACKET_FANOUT_HASH);
+CHECK_VALUE(checkLoadBalance, FANOUT_LOAD_BALANCE, PACKET_FANOUT_LB);
+CHECK_VALUE(checkCpu, FANOUT_CPU, PACKET_FANOUT_CPU);
+CHECK_VALUE(checkRollover, FANOUT_ROLLOVER, PACKET_FANOUT_ROLLOVER);
+
+#endif /* if defined(__linux__) && defined(PACKET_FANOUT) */
+
+/*
+ * Class: io_oddsource_java_net_socket_PacketFanoutGroup
+ * Method: join
+ * Signature: (III)I
+ *
+ * The first member asks the kernel for an unused group identifier, then reads it back for the other members to join.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_PacketFanoutGroup_join
+    (JNIEnv *environment, jclass, jint socket, jint id, jint mode)
+{
+#if defined(FANOUT_SUPPORTED)
+    int flags = 0;
+#if defined(PACKET_FANOUT_FLAG_DEFRAG)
+    if(mode == PACKET_FANOUT_HASH)
+        flags |= PACKET_FANOUT_FLAG_DEFRAG;
+#endif
+    if(id == io_oddsource_java_net_socket_PacketFanoutGroup_NO_ID)
+    {
+#if defined(PACKET_FANOUT_FLAG_UNIQUEID)
+        flags |= PACKET_FANOUT_FLAG_UNIQUEID;
+        id = 0;
+#else
+        id = (getpid() ^ socket) & 0xFFFF;
+#endif
+    }
+
+    int value = (id & 0xFFFF) | ((mode | flags) << 16);
+    if(setsockopt(socket, SOL_PACKET, PACKET_FANOUT, &value, sizeof(value)) < 0)
+    {
+        handleSocketError(environment);
+        return -1;
+    }
+
+    socklen_t length = sizeof(value);
+    if(getsockopt(socket, SOL_PACKET, PACKET_FANOUT, &value, &length) < 0)
+    {
+        handleSocketError(environment);
+        return -1;
+    }
+
+    return value & 0xFFFF;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return -1;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_PacketFanoutGroup
+ * Method: readStatistics
+ * Signature: (I[J[JI)V
+ *
+ * The kernel fills in struct tpacket_stats, or struct tpacket_stats_v3 for TPACKET_V3 rings, which begins with the same
+ * two counters. Its packet count already includes the drops.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketFanoutGroup_readStatistics
+    (JNIEnv *environment, jclass, jint socket, jlongArray packetCounts, jlongArray dropCounts, jint member)
+{
+#if defined(FANOUT_SUPPORTED)
+    struct tpacket_stats_v3 statistics;
+    memset(&statistics, 0, sizeof(statistics));
+    socklen_t length = sizeof(statistics);
+    if(getsockopt(socket, SOL_PACKET, PACKET_STATISTICS, &statistics, &length) < 0)
+    {
+        handleSocketError(environment);
+        return;
+    }
+
+    jlong packets;
+    jlong drops;
+    environment->GetLongArrayRegion(packetCounts, member, 1, &packets);
+    environment->GetLongArrayRegion(dropCounts, member, 1, &drops);
+    packets += statistics.tp_packets;
+    drops += statistics.tp_drops;
+    environment->SetLongArrayRegion(packetCounts, member, 1, &packets);
+    environment->SetLongArrayRegion(dropCounts, member, 1, &drops);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod packetFanoutGroupMethods[] = {
+    NATIVE_METHOD(PacketFanoutGroup, join, "(III)I"),
+    NATIVE_METHOD(PacketFanoutGroup, readStatistics, "(I[J[JI)V")
+};
+
+bool registerPacketFanoutGroupNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/PacketFanoutGroup", packetFanoutGroupMethods,
+        sizeof(packetFanoutGroupMethods) / sizeof(packetFanoutGroupMethods[0])
+    );
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <errno.h>
+#include <string>
+#include <cstring>
+#include <cstddef>
+
+#if defined(__linux__)
+
+#include <poll.h>
+#include <time.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <linux/if_packet.h>
+
+#endif /* if defined(__linux__) */
+
+#include "io_oddsource_java_net_socket_PacketReceiveRing.h"
+#include "NativeCommon.h"
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define UNSUPPORTED_MESSAGE "Packet rings require TPACKET_V3, which is only available on Linux."
+
+#if defined(__linux__) && defined(TPACKET3_HDRLEN)
+
+#define RING_SUPPORTED 1
+
+/*
+ * The Java class reads the block and packet headers itself, at these offsets, so refuse to compile if they are wrong.
+ */
+#define CHECK_OFFSET(name, constant, type, field) \
+    typedef char name[(io_oddsource_java_net_socket_PacketReceiveRing_##constant == offsetof(type, field)) ? 1 : -1]
+
+CHECK_OFFSET(checkBlockPacketCount, BLOCK_PACKET_COUNT, struct tpacket_block_desc, hdr.bh1.num_pkts);
+CHECK_OFFSET(checkBlockFirstPacket, BLOCK_FIRST_PACKET, struct tpacket_block_desc, hdr.bh1.offset_to_first_pkt);
+CHECK_OFFSET(checkPacketNextOffset, PACKET_NEXT_OFFSET, struct tpacket3_hdr, tp_next_offset);
+CHECK_OFFSET(checkPacketSeconds, PACKET_SECONDS, struct tpacket3_hdr, tp_sec);
+CHECK_OFFSET(checkPacketNanoseconds, PACKET_NANOSECONDS, struct tpacket3_hdr, tp_nsec);
+CHECK_OFFSET(checkPacketCapturedLength, PACKET_CAPTURED_LENGTH, struct tpacket3_hdr, tp_snaplen);
+CHECK_OFFSET(checkPacketLength, PACKET_LENGTH, struct tpacket3_hdr, tp_len);
+CHECK_OFFSET(checkPacketStatus, PACKET_STATUS, struct tpacket3_hdr, tp_status);
+CHECK_OFFSET(checkPacketMac, PACKET_MAC, struct tpacket3_hdr, tp_mac);
+
+static volatile __u32 *getBlockStatus(JNIEnv *environment, jobject ring, jint offset)
+{
+    char *base = (char *)environment->GetDirectBufferAddress(ring);
+    struct tpacket_block_desc *block = (struct tpacket_block_desc *)(base + offset);
+    return &block->hdr.bh1.block_status;
+}
+
+static bool isBlockReady(volatile __u32 *status)
+{
+    bool ready = (*status & TP_STATUS_USER) != 0;
+    /* acquire: the packets must not be read before the status that says they are complete */
+    __sync_synchronize();
+    return ready;
+}
+
+static long long now()
+{
+    struct timespec time;
+    clock_gettime(CLOCK_MONOTONIC, &time);
+    return (long long)time.tv_sec * 1000 + time.tv_nsec / 1000000;
+}
+
+#endif /* if defined(__linux__) && defined(TPACKET3_HDRLEN) */
+
+JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_map
+    (JNIEnv *environment, jclass, jint socket, jint blockSize, jint frameSize, jint blockCount, jint retireTimeout)
+{
+#if defined(RING_SUPPORTED)
+    int version = TPACKET_V3;
+    if(setsockopt(socket, SOL_PACKET, PACKET_VERSION, &version, sizeof(version)) < 0)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    struct tpacket_req3 request;
+    memset(&request, 0, sizeof(request));
+    request.tp_block_size = blockSize;
+    request.tp_block_nr = blockCount;
+    request.tp_frame_size = frameSize;
+    request.tp_frame_nr = (blockSize / frameSize) * blockCount;
+    request.tp_retire_blk_tov = retireTimeout;
+    if(setsockopt(socket, SOL_PACKET, PACKET_RX_RING, &request, sizeof(request)) < 0)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    size_t size = (size_t)blockSize * blockCount;
+    void *ring = mmap(NULL, size, PROT_READ | PROT_WRITE, MAP_SHARED, socket, 0);
+    if(ring == MAP_FAILED)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    jobject buffer = environment->NewDirectByteBuffer(ring, size);
+    if(buffer == NULL)
+        munmap(ring, size);
+    return buffer;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return NULL;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_awaitBlock
+    (JNIEnv *environment, jclass, jint socket, jint wakeup, jobject ring, jint offset, jint timeout)
+{
+#if defined(RING_SUPPORTED)
+    volatile __u32 *status = getBlockStatus(environment, ring, offset);
+    if(isBlockReady(status))
+        return JNI_TRUE;
+    if(timeout == 0)
+        return JNI_FALSE;
+
+    long long deadline = timeout < 0 ? 0 : now() + timeout;
+    struct pollfd descriptors[2];
+    descriptors[0].fd = socket;
+    descriptors[0].events = POLLIN | POLLERR;
+    descriptors[1].fd = wakeup;
+    descriptors[1].events = POLLIN;
+
+    while(true)
+    {
+        int remaining = -1;
+        if(timeout > 0)
+        {
+            long long left = deadline - now();
+            if(left <= 0)
+                return JNI_FALSE;
+            remaining = (int)left;
+        }
+
+        descriptors[0].revents = 0;
+        descriptors[1].revents = 0;
+        if(poll(descriptors, 2, remaining) < 0 && errno != EINTR)
+        {
+            handleSocketError(environment);
+            return JNI_FALSE;
+        }
+
+        if(isBlockReady(status))
+            return JNI_TRUE;
+        if((descriptors[0].revents & (POLLHUP | POLLNVAL)) || descriptors[1].revents)
+        {
+            raiseError(environment, "java/net/SocketException", "Socket closed.");
+            return JNI_FALSE;
+        }
+    }
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_releaseBlock
+    (JNIEnv *environment, jclass, jobject ring, jint offset)
+{
+#if defined(RING_SUPPORTED)
+    volatile __u32 *status = getBlockStatus(environment, ring, offset);
+    /* release: the application must be done reading the block before the kernel may reuse it */
+    __sync_synchronize();
+    *status = TP_STATUS_KERNEL;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_unmap
+    (JNIEnv *environment, jclass, jobject ring)
+{
+#if defined(RING_SUPPORTED)
+    if(munmap(environment->GetDirectBufferAddress(ring), (size_t)environment->GetDirectBufferCapacity(ring)) < 0)
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod packetReceiveRingMethods[] = {
+    NATIVE_METHOD(PacketReceiveRing, map, "(IIIII)Ljava/nio/ByteBuffer;"),
+    NATIVE_METHOD(PacketReceiveRing, awaitBlock, "(IILjava/nio/ByteBuffer;II)Z"),
+    NATIVE_METHOD(PacketReceiveRing, releaseBlock, "(Ljava/nio/ByteBuffer;I)V"),
+    NATIVE_METHOD(PacketReceiveRing, unmap, "(Ljava/nio/ByteBuffer;)V")
+};
+
+bool registerPacketReceiveRingNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/PacketReceiveRing", packetReceiveRingMethods,
+        sizeof(packetReceiveRingMethods) / sizeof(packetReceiveRingMethods[0])
+    );
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <errno.h>
+#include <string>
+#include <cstring>
+#include <cstddef>
+
+#if defined(__linux__)
+
+#include <poll.h>
+#include <time.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <linux/if_packet.h>
+
+#endif /* if defined(__linux__) */
+
+#include "io_oddsource_java_net_socket_PacketTransmitRing.h"
+#include "NativeCommon.h"
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define UNSUPPORTED_MESSAGE "Packet rings require PACKET_TX_RING, which is only available on Linux."
+
+#if defined(__linux__) && defined(TPACKET2_HDRLEN)
+
+#define RING_SUPPORTED 1
+
+/*
+ * The Java class reads and writes the frame headers itself, at these offsets and with these status values, so refuse
+ * to compile if they are wrong.
+ */
+#define CHECK_VALUE(name, constant, value) \
+    typedef char name[(io_oddsource_java_net_socket_PacketTransmitRing_##constant == (value)) ? 1 : -1]
+
+CHECK_VALUE(checkFrameStatus, FRAME_STATUS, offsetof(struct tpacket2_hdr, tp_status));
+CHECK_VALUE(checkFrameLength, FRAME_LENGTH, offsetof(struct tpacket2_hdr, tp_len));
+CHECK_VALUE(checkFrameData, FRAME_DATA, TPACKET2_HDRLEN - sizeof(struct sockaddr_ll));
+CHECK_VALUE(checkStatusAvailable, STATUS_AVAILABLE, TP_STATUS_AVAILABLE);
+CHECK_VALUE(checkStatusSendRequest, STATUS_SEND_REQUEST, TP_STATUS_SEND_REQUEST);
+CHECK_VALUE(checkStatusSending, STATUS_SENDING, TP_STATUS_SENDING);
+CHECK_VALUE(checkStatusWrongFormat, STATUS_WRONG_FORMAT, TP_STATUS_WRONG_FORMAT);
+
+/*
+ * A transmit ring reports POLLOUT whenever its next frame is free, not when the kernel has room to send or has finished
+ * a frame, so waits for those poll in slices this long (milliseconds), watching only for the socket being closed.
+ */
+#define COMPLETION_SLICE 1
+
+#define MALFORMED_MESSAGE "The kernel rejected a malformed frame; see findRejectedSlot()."
+
+static long long now()
+{
+    struct timespec time;
+    clock_gettime(CLOCK_MONOTONIC, &time);
+    return (long long)time.tv_sec * 1000 + time.tv_nsec / 1000000;
+}
+
+/*
+ * Waits up to the slice, or until the deadline if it comes first, unless the socket or the wake-up descriptor wakes it
+ * first. Returns false with an exception raised if the deadline passed, the socket was closed or the poll failed.
+ */
+static bool awaitSlice(JNIEnv *environment, struct pollfd *descriptors, int timeout, long long deadline)
+{
+    int remaining = COMPLETION_SLICE;
+    if(timeout > 0)
+    {
+        long long left = deadline - now();
+        if(left <= 0)
+        {
+            raiseError(environment, "java/net/SocketTimeoutException", "Send timed out.");
+            return false;
+        }
+        if(left < remaining)
+            remaining = (int)left;
+    }
+
+    descriptors[0].revents = 0;
+    descriptors[1].revents = 0;
+    if(poll(descriptors, descriptors[1].fd < 0 ? 1 : 2, remaining) < 0 && errno != EINTR)
+    {
+        handleSocketError(environment);
+        return false;
+    }
+
+    if((descriptors[0].revents & (POLLHUP | POLLNVAL)) || descriptors[1].revents)
+    {
+        raiseError(environment, "java/net/SocketException", "Socket closed.");
+        return false;
+    }
+    return true;
+}
+
+#endif /* if defined(__linux__) && defined(TPACKET2_HDRLEN) */
+
+JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_map
+    (JNIEnv *environment, jclass, jint socket, jint blockSize, jint frameSize, jint blockCount)
+{
+#if defined(RING_SUPPORTED)
+    int version = TPACKET_V2;
+    if(setsockopt(socket, SOL_PACKET, PACKET_VERSION, &version, sizeof(version)) < 0)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    struct tpacket_req request;
+    memset(&request, 0, sizeof(request));
+    request.tp_block_size = blockSize;
+    request.tp_block_nr = blockCount;
+    request.tp_frame_size = frameSize;
+    request.tp_frame_nr = (blockSize / frameSize) * blockCount;
+    if(setsockopt(socket, SOL_PACKET, PACKET_TX_RING, &request, sizeof(request)) < 0)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    size_t size = (size_t)blockSize * blockCount;
+    void *ring = mmap(NULL, size, PROT_READ | PROT_WRITE, MAP_SHARED, socket, 0);
+    if(ring == MAP_FAILED)
+    {
+        handleSocketError(environment);
+        return NULL;
+    }
+
+    jobject buffer = environment->NewDirectByteBuffer(ring, size);
+    if(buffer == NULL)
+        munmap(ring, size);
+    return buffer;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return NULL;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_submit
+    (JNIEnv *environment, jclass, jobject ring, jint first, jint count, jint slotCount, jint frameSize)
+{
+#if defined(RING_SUPPORTED)
+    char *base = (char *)environment->GetDirectBufferAddress(ring);
+
+    /* release: every frame must be complete before the kernel can see its send request */
+    __sync_synchronize();
+
+    jint slot = first;
+    for(jint i = 0; i < count; i++)
+    {
+        volatile struct tpacket2_hdr *header = (volatile struct tpacket2_hdr *)(base + (size_t)slot * frameSize);
+        header->tp_status = TP_STATUS_SEND_REQUEST;
+        if(++slot == slotCount)
+            slot = 0;
+    }
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_send
+    (JNIEnv *environment, jclass, jint socket, jint wakeup, jobject ring, jint first, jint count, jint slotCount,
+     jint frameSize, jint timeout)
+{
+#if defined(RING_SUPPORTED)
+    long long deadline = timeout > 0 ? now() + timeout : 0;
+    struct pollfd descriptors[2];
+    descriptors[0].fd = socket;
+    descriptors[0].events = 0;
+    descriptors[1].fd = wakeup;
+    descriptors[1].events = POLLIN;
+
+    /* never block in send, which neither closing the socket nor the wake-up descriptor can interrupt */
+    int result;
+    while(true)
+    {
+        result = send(socket, NULL, 0, MSG_DONTWAIT);
+        if(result >= 0)
+            break;
+        if(errno == EINTR)
+            continue;
+        if(errno == EINVAL)
+        {
+            raiseError(environment, NULL, MALFORMED_MESSAGE);
+            return 0;
+        }
+        if(errno != EAGAIN && errno != EWOULDBLOCK && errno != ENOBUFS)
+        {
+            handleSocketError(environment);
+            return 0;
+        }
+        if(timeout < 0)
+            return 0;
+        if(!awaitSlice(environment, descriptors, timeout, deadline))
+            return 0;
+    }
+
+    if(timeout < 0)
+        return result;
+
+    /* a blocking flush returns once every flushed frame is sent, which only the frame statuses tell */
+    char *base = (char *)environment->GetDirectBufferAddress(ring);
+    jint slot = first;
+    for(jint i = 0; i < count; i++)
+    {
+        volatile struct tpacket2_hdr *header = (volatile struct tpacket2_hdr *)(base + (size_t)slot * frameSize);
+        while(true)
+        {
+            __u32 status = header->tp_status;
+            if(status == TP_STATUS_WRONG_FORMAT)
+            {
+                raiseError(environment, NULL, MALFORMED_MESSAGE);
+                return result;
+            }
+            if(!(status & (TP_STATUS_SEND_REQUEST | TP_STATUS_SENDING)))
+                break;
+            if(!awaitSlice(environment, descriptors, timeout, deadline))
+                return result;
+        }
+        if(++slot == slotCount)
+            slot = 0;
+    }
+
+    return result;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_unmap
+    (JNIEnv *environment, jclass, jobject ring)
+{
+#if defined(RING_SUPPORTED)
+    if(munmap(environment->GetDirectBufferAddress(ring), (size_t)environment->GetDirectBufferCapacity(ring)) < 0)
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod packetTransmitRingMethods[] = {
+    NATIVE_METHOD(PacketTransmitRing, map, "(IIII)Ljava/nio/ByteBuffer;"),
+    NATIVE_METHOD(PacketTransmitRing, submit, "(Ljava/nio/ByteBuffer;IIII)V"),
+    NATIVE_METHOD(PacketTransmitRing, send, "(IILjava/nio/ByteBuffer;IIIII)I"),
+    NATIVE_METHOD(PacketTransmitRing, unmap, "(Ljava/nio/ByteBuffer;)V")
+};
+
+bool registerPacketTransmitRingNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/PacketTransmitRing", packetTransmitRingMethods,
+        sizeof(packetTransmitRingMethods) / sizeof(packetTransmitRingMethods[0])
+    );
+}
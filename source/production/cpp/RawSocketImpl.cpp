@@ -22,6 +22,7 @@
 #include <errno.h>
 #include <string>
 #include <cstring>
+#include <vector>
 
 #if _WIN32
 
@@ -32,6 +33,14 @@
 #define close(fd) closesocket(fd)
 #endif
 
+#ifndef MSG_DONTWAIT
+#define MSG_DONTWAIT 0
+#endif
+
+#ifndef SHUT_RDWR
+#define SHUT_RDWR SD_BOTH
+#endif
+
 #else /* if defined(_WIN32) */
 
 #include <netdb.h>
@@ -39,6 +48,15 @@
 #include <sys/socket.h>
 #include <unistd.h>
 #include <sys/time.h>
+#include <sys/uio.h>
+#include <poll.h>
+#include <time.h>
+#if defined(__linux__)
+#include <linux/filter.h>
+#include <linux/if_packet.h>
+#include <linux/net_tstamp.h>
+#include <sys/eventfd.h>
+#endif
 
 #endif /* if defined(_WIN32) else */
 
@@ -46,16 +64,70 @@
 #define SOCKET_ERROR -1
 #endif
 
+#define IPV4_ADDRESS_LENGTH 4
+#define IPV6_ADDRESS_LENGTH 16
+
+#define MAXIMUM_ADDRESS_LENGTH 16
+#define BATCH_CONTROL_LENGTH 256
+
+#define SEND_TIMED_OUT "Send timed out."
+#define RECEIVE_TIMED_OUT "Receive timed out."
+
 #include "io_oddsource_java_net_socket_RawSocketImpl.h"
+#include "NativeCommon.h"
+
+#define UNDEFINED io_oddsource_java_net_socket_RawSocketImpl_UNDEFINED
+#define NON_BLOCKING io_oddsource_java_net_socket_RawSocketImpl_NON_BLOCKING
+#define TRANSFER_FLAGS(timeout) ((timeout) == UNDEFINED ? 0 : MSG_DONTWAIT)
+#define WOULD_BLOCK(error) ((error) == EAGAIN || (error) == EWOULDBLOCK)
 
-static void raiseError(JNIEnv * environment, std::string error, std::string message);
-static void handleSocketError(JNIEnv *environment);
 static int setIntegerSocketOption(int socket, int level, int option, int value);
 static int getIntegerSocketOption(int socket, int level, int option);
 static int setTimeout(int socket, int option, int timeout);
 static int getTimeout(int socket, int option);
+static jlong getDeadline(int timeout);
+static int getRemainingTimeout(JNIEnv *environment, jlong deadline, const char *timeoutMessage);
+static bool awaitAgain(JNIEnv *environment, int socket, int wakeup, short events, int timeout, jlong deadline,
+                       const char *timeoutMessage);
 static struct sockaddr* initIPv4SocketAddress(JNIEnv *environment, struct sockaddr_in *sin, jbyteArray address);
 static struct sockaddr* initIPv6SocketAddress(JNIEnv *environment, struct sockaddr_in6 *sin6, jbyteArray address);
+static struct sockaddr* initSocketAddress(JNIEnv *environment, struct sockaddr_storage *storage, socklen_t *length,
+                                          jbyteArray address);
+
+#if !defined(_WIN32)
+
+/*
+ * The native state of one packet in a batch: its buffer vector, socket address, and control message space. The message
+ * headers are kept separately so that they can be handed to sendmmsg/recvmmsg as one contiguous array.
+ */
+struct BatchEntry
+{
+    struct iovec vector;
+    struct sockaddr_storage address;
+    union
+    {
+        struct cmsghdr alignment;
+        char buffer[BATCH_CONTROL_LENGTH];
+    } control;
+};
+
+#if defined(__linux__)
+typedef struct mmsghdr BatchMessage;
+#define BATCH_HEADER(message) ((message).msg_hdr)
+#else
+typedef struct msghdr BatchMessage;
+#define BATCH_HEADER(message) (message)
+#endif
+
+static bool initBatchSocketAddress(JNIEnv *environment, struct sockaddr_storage *storage, socklen_t *length,
+                                   const jbyte *address, jint addressLength);
+static socklen_t initBatchSourceAddress(JNIEnv *environment, struct BatchEntry *entry, const jbyte *address,
+                                        jint addressLength);
+static jint copyBatchSocketAddress(const struct sockaddr_storage *storage, jbyte *address);
+static jint copyBatchDestinationAddress(struct msghdr *header, jbyte *address);
+static jlong copyBatchTimestamp(struct msghdr *header);
+
+#endif /* if !defined(_WIN32) */
 
 /*
  * Java Methods for class io.oddsource.java.net.socket.RawSocketImpl
@@ -118,57 +190,682 @@ JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_getTimeou
 }
 
 /*
- * Utility Functions
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: setReceiveTimestamps
+ * Signature: (IZ)V
  */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_setReceiveTimestamps
+    (JNIEnv *environment, jobject, jint socket, jboolean on)
+{
+#if defined(_WIN32)
+    raiseError(
+        environment, "java/lang/UnsupportedOperationException", "Receive timestamps are not supported on Windows."
+    );
+#else
+#if defined(SO_TIMESTAMPING)
+    /*
+     * Linux turns software receive timestamps on lazily, so packets that arrive right after this call may carry no
+     * SO_TIMESTAMPING time at all. SO_TIMESTAMPNS below is set as well because the kernel stamps those packets with
+     * the time they are read instead, and copyBatchTimestamp falls back to it.
+     */
+    int flags = on ? (SOF_TIMESTAMPING_RX_SOFTWARE | SOF_TIMESTAMPING_SOFTWARE) : 0;
+    setIntegerSocketOption(socket, SOL_SOCKET, SO_TIMESTAMPING, flags);
+#endif
+#if defined(SO_TIMESTAMPNS)
+    int option = SO_TIMESTAMPNS;
+#else
+    int option = SO_TIMESTAMP;
+#endif
+    if(setIntegerSocketOption(socket, SOL_SOCKET, option, on ? 1 : 0) == SOCKET_ERROR)
+        handleSocketError(environment);
+#endif
+}
 
-static void raiseError(JNIEnv * environment, std::string error, std::string message)
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: attachFilter
+ * Signature: (I[S[B[B[I)V
+ *
+ * The kernel copies the program during setsockopt, so the instructions only need to outlive the call.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_attachFilter
+    (JNIEnv *environment, jobject, jint socket, jshortArray codes, jbyteArray jumpsTrue, jbyteArray jumpsFalse,
+     jintArray constants)
 {
-    if(error.empty() || error.length() == 0)
-        error = "io/oddsource/java/net/socket/exception/RawSocketException";
+#if defined(__linux__)
+    jsize length = environment->GetArrayLength(codes);
+    std::vector<jshort> code(length);
+    std::vector<jbyte> jt(length);
+    std::vector<jbyte> jf(length);
+    std::vector<jint> k(length);
+    environment->GetShortArrayRegion(codes, 0, length, &code[0]);
+    environment->GetByteArrayRegion(jumpsTrue, 0, length, &jt[0]);
+    environment->GetByteArrayRegion(jumpsFalse, 0, length, &jf[0]);
+    environment->GetIntArrayRegion(constants, 0, length, &k[0]);
+    if(environment->ExceptionCheck())
+        return;
 
-    if(message.empty())
-        message = "";
+    std::vector<struct sock_filter> filter(length);
+    for(jsize i = 0; i < length; i++)
+    {
+        filter[i].code = (unsigned short)code[i];
+        filter[i].jt = (unsigned char)jt[i];
+        filter[i].jf = (unsigned char)jf[i];
+        filter[i].k = (unsigned int)k[i];
+    }
 
-    environment->ThrowNew(
-        environment->FindClass(error.c_str()),
-        message.c_str()
+    struct sock_fprog program;
+    program.len = (unsigned short)length;
+    program.filter = &filter[0];
+    if(setsockopt(socket, SOL_SOCKET, SO_ATTACH_FILTER, &program, sizeof(program)) == SOCKET_ERROR)
+        handleSocketError(environment);
+#else
+    raiseError(
+        environment, "java/lang/UnsupportedOperationException", "Socket filters are only supported on Linux."
     );
+#endif
 }
 
-static void handleSocketError(JNIEnv *environment)
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: detachFilter
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_detachFilter
+    (JNIEnv *environment, jobject, jint socket)
 {
-    if(errno)
+#if defined(__linux__)
+    int unused = 0;
+    if(setsockopt(socket, SOL_SOCKET, SO_DETACH_FILTER, &unused, sizeof(unused)) == SOCKET_ERROR)
+        handleSocketError(environment);
+#else
+    raiseError(
+        environment, "java/lang/UnsupportedOperationException", "Socket filters are only supported on Linux."
+    );
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: shutdown
+ * Signature: (I)V
+ *
+ * Raw sockets are never connected, so shutdown reports ENOTCONN, but it still wakes every thread blocked on the socket.
+ * Packet sockets cannot be shut down at all, which is not an error when closing them.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_shutdown
+    (JNIEnv *environment, jobject, jint socket)
+{
+    if(shutdown(socket, SHUT_RDWR) == SOCKET_ERROR && errno != ENOTCONN && errno != EOPNOTSUPP)
+        handleSocketError(environment);
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: open
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_open
+    (JNIEnv *environment, jobject, jint family, jint protocol)
+{
+    int result = socket(family, SOCK_RAW, protocol);
+
+    if(result == SOCKET_ERROR)
+        handleSocketError(environment);
+
+    return result;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: openPacketSocket
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_openPacketSocket
+    (JNIEnv *environment, jclass, jint etherType, jint interfaceIndex)
+{
+#if defined(__linux__)
+    int result = socket(AF_PACKET, SOCK_RAW, htons((unsigned short)etherType));
+    if(result == SOCKET_ERROR)
     {
-        char * message = NULL;
+        handleSocketError(environment);
+        return SOCKET_ERROR;
+    }
 
-#if defined(_WIN32)
-        int formatted = FormatMessage(
-            FORMAT_MESSAGE_ALLOCATE_BUFFER | FORMAT_MESSAGE_FROM_SYSTEM | FORMAT_MESSAGE_IGNORE_INSERTS,
-            NULL,
-            errno,
-            MAKELANGID(LANG_NEUTRAL, SUBLANG_DEFAULT),
-            (LPTSTR) &message,
-            0,
-            NULL
+    if(interfaceIndex != 0)
+    {
+        struct sockaddr_ll address;
+        memset(&address, 0, sizeof(address));
+        address.sll_family = AF_PACKET;
+        address.sll_protocol = htons((unsigned short)etherType);
+        address.sll_ifindex = interfaceIndex;
+        if(bind(result, (struct sockaddr *)&address, sizeof(address)) == SOCKET_ERROR)
+        {
+            handleSocketError(environment);
+            close(result);
+            return SOCKET_ERROR;
+        }
+    }
+
+    return result;
+#else
+    raiseError(environment, "java/lang/UnsupportedOperationException", "Packet sockets are only available on Linux.");
+    return SOCKET_ERROR;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: closeDescriptor
+ * Signature: (I)V
+ *
+ * Runs on the cleaner thread for sockets nobody closed, so there is nobody to report an error to.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_closeDescriptor
+    (JNIEnv *, jclass, jint socket)
+{
+    close(socket);
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: openWakeup
+ * Signature: ()I
+ *
+ * Packet sockets cannot be shut down, so closing one signals this descriptor instead, which every wait on the socket
+ * polls alongside it.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_openWakeup
+    (JNIEnv *environment, jclass)
+{
+#if defined(__linux__)
+    int result = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+
+    if(result == SOCKET_ERROR)
+        handleSocketError(environment);
+
+    return result;
+#else
+    raiseError(environment, "java/lang/UnsupportedOperationException", "Packet sockets are only available on Linux.");
+    return SOCKET_ERROR;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: signalWakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_signalWakeup
+    (JNIEnv *environment, jclass, jint wakeup)
+{
+#if defined(__linux__)
+    if(eventfd_write(wakeup, 1) == SOCKET_ERROR)
+        handleSocketError(environment);
+#else
+    raiseError(environment, "java/lang/UnsupportedOperationException", "Packet sockets are only available on Linux.");
+#endif
+}
+
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_close
+    (JNIEnv *environment, jobject, jint socket)
+{
+    if(close(socket) == SOCKET_ERROR)
+        handleSocketError(environment);
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: sendDirect
+ * Signature: (IILjava/nio/ByteBuffer;II[BI)I
+ *
+ * Sends straight out of the direct buffer memory, so the data is never copied through the JVM. After waiting, we send
+ * without blocking, so that only the wait, which closing the socket wakes, ever blocks.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendDirect
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jobject buffer, jint offset, jint length,
+     jbyteArray address, jint timeout)
+{
+    struct sockaddr_storage destination;
+    socklen_t destinationLength;
+    if(initSocketAddress(environment, &destination, &destinationLength, address) == NULL)
+        return SOCKET_ERROR;
+
+    char *data = (char *)environment->GetDirectBufferAddress(buffer);
+    if(data == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The buffer is not a direct buffer.");
+        return SOCKET_ERROR;
+    }
+
+    jlong deadline = getDeadline(timeout);
+    if(timeout >= 0 && !awaitSocket(environment, socket, wakeup, POLLOUT, timeout, SEND_TIMED_OUT))
+        return SOCKET_ERROR;
+
+    int result;
+    int error;
+    do
+    {
+        result = sendto(
+            socket, data + offset, length, TRANSFER_FLAGS(timeout), (struct sockaddr *)&destination, destinationLength
         );
+        error = errno;
+
+        if(result == SOCKET_ERROR && timeout >= 0 && WOULD_BLOCK(error) &&
+           !awaitAgain(environment, socket, wakeup, POLLOUT, timeout, deadline, SEND_TIMED_OUT))
+            return SOCKET_ERROR;
+    }
+    while(result == SOCKET_ERROR && (error == EINTR || (timeout >= 0 && WOULD_BLOCK(error))));
+
+    if(result == SOCKET_ERROR)
+    {
+        if(timeout == NON_BLOCKING && WOULD_BLOCK(error))
+            return 0;
+        errno = error;
+        handleTransferError(environment, SEND_TIMED_OUT);
+    }
+
+    return result;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: sendArray
+ * Signature: (II[BII[BI)I
+ *
+ * Pins the array instead of copying it. No JNI calls may be made and nothing may block while the array is pinned, so
+ * we wait for the socket to become writable first and then send without blocking. A wake-up that finds no room after
+ * all waits again only for what is left of the timeout.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendArray
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jbyteArray array, jint offset, jint length,
+     jbyteArray address, jint timeout)
+{
+    struct sockaddr_storage destination;
+    socklen_t destinationLength;
+    if(initSocketAddress(environment, &destination, &destinationLength, address) == NULL)
+        return SOCKET_ERROR;
+
+    jlong deadline = getDeadline(timeout);
+    int wait = timeout;
+    int result;
+    int error;
+    do
+    {
+        if(timeout != NON_BLOCKING && !awaitSocket(environment, socket, wakeup, POLLOUT, wait, SEND_TIMED_OUT))
+            return SOCKET_ERROR;
+
+        jbyte *data = (jbyte *)environment->GetPrimitiveArrayCritical(array, NULL);
+        if(data == NULL)
+            return SOCKET_ERROR; /* an OutOfMemoryError is pending */
+
+        result = sendto(
+            socket, (char *)(data + offset), length, MSG_DONTWAIT, (struct sockaddr *)&destination, destinationLength
+        );
+        error = errno;
+
+        environment->ReleasePrimitiveArrayCritical(array, data, JNI_ABORT);
+
+        if(result == SOCKET_ERROR && timeout > 0 && WOULD_BLOCK(error))
+        {
+            wait = getRemainingTimeout(environment, deadline, SEND_TIMED_OUT);
+            if(wait == 0)
+                return SOCKET_ERROR;
+        }
+    }
+    while(result == SOCKET_ERROR && (error == EINTR || (timeout != NON_BLOCKING && WOULD_BLOCK(error))));
+
+    if(result == SOCKET_ERROR)
+    {
+        if(WOULD_BLOCK(error))
+            return 0;
+        errno = error;
+        handleTransferError(environment, SEND_TIMED_OUT);
+    }
+
+    return result;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: receiveDirect
+ * Signature: (IILjava/nio/ByteBuffer;III)I
+ *
+ * Receives straight into the direct buffer memory, so the data is never copied through the JVM. After waiting, we
+ * receive without blocking, so that only the wait, which closing the socket wakes, ever blocks.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveDirect
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jobject buffer, jint offset, jint length, jint timeout)
+{
+    char *data = (char *)environment->GetDirectBufferAddress(buffer);
+    if(data == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The buffer is not a direct buffer.");
+        return SOCKET_ERROR;
+    }
+
+    jlong deadline = getDeadline(timeout);
+    if(timeout >= 0 && !awaitSocket(environment, socket, wakeup, POLLIN, timeout, RECEIVE_TIMED_OUT))
+        return SOCKET_ERROR;
+
+    int result;
+    int error;
+    do
+    {
+        result = recvfrom(socket, data + offset, length, TRANSFER_FLAGS(timeout), NULL, NULL);
+        error = errno;
+
+        if(result == SOCKET_ERROR && timeout >= 0 && WOULD_BLOCK(error) &&
+           !awaitAgain(environment, socket, wakeup, POLLIN, timeout, deadline, RECEIVE_TIMED_OUT))
+            return SOCKET_ERROR;
+    }
+    while(result == SOCKET_ERROR && (error == EINTR || (timeout >= 0 && WOULD_BLOCK(error))));
+
+    if(result == SOCKET_ERROR)
+    {
+        if(timeout == NON_BLOCKING && WOULD_BLOCK(error))
+            return 0;
+        errno = error;
+        handleTransferError(environment, RECEIVE_TIMED_OUT);
+    }
+
+    return result;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: receiveArray
+ * Signature: (II[BIII)I
+ *
+ * Pins the array instead of copying it. No JNI calls may be made and nothing may block while the array is pinned, so
+ * we wait for the socket to become readable first and then receive without blocking. A wake-up that finds no packet
+ * after all (another thread took it) waits again only for what is left of the timeout.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveArray
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jbyteArray array, jint offset, jint length, jint timeout)
+{
+    jlong deadline = getDeadline(timeout);
+    int wait = timeout;
+    int result;
+    int error;
+    do
+    {
+        if(timeout != NON_BLOCKING && !awaitSocket(environment, socket, wakeup, POLLIN, wait, RECEIVE_TIMED_OUT))
+            return SOCKET_ERROR;
 
-        if(!formatted)
-            message = strerror(errno);
+        jbyte *data = (jbyte *)environment->GetPrimitiveArrayCritical(array, NULL);
+        if(data == NULL)
+            return SOCKET_ERROR; /* an OutOfMemoryError is pending */
+
+        result = recvfrom(socket, (char *)(data + offset), length, MSG_DONTWAIT, NULL, NULL);
+        error = errno;
+
+        environment->ReleasePrimitiveArrayCritical(array, data, 0);
+
+        if(result == SOCKET_ERROR && timeout > 0 && WOULD_BLOCK(error))
+        {
+            wait = getRemainingTimeout(environment, deadline, RECEIVE_TIMED_OUT);
+            if(wait == 0)
+                return SOCKET_ERROR;
+        }
+    }
+    while(result == SOCKET_ERROR && (error == EINTR || (timeout != NON_BLOCKING && WOULD_BLOCK(error))));
+
+    if(result == SOCKET_ERROR)
+    {
+        if(WOULD_BLOCK(error))
+            return 0;
+        errno = error;
+        handleTransferError(environment, RECEIVE_TIMED_OUT);
+    }
+
+    return result;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: sendBatch
+ * Signature: (IILjava/nio/ByteBuffer;II[I[B[I[B[II)I
+ *
+ * Sends every packet in the batch with one native call and, on Linux, one sendmmsg system call. Source addresses are
+ * attached as IP_PKTINFO/IPV6_PKTINFO control messages.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendBatch
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jobject buffer, jint slotSize, jint count,
+     jintArray lengthArray, jbyteArray remoteAddressArray, jintArray remoteAddressLengthArray,
+     jbyteArray localAddressArray, jintArray localAddressLengthArray, jint timeout)
+{
+#if defined(_WIN32)
+    raiseError(environment, "java/lang/UnsupportedOperationException", "Batches are not supported on Windows.");
+    return SOCKET_ERROR;
 #else
-        message = strerror(errno);
+    char *data = (char *)environment->GetDirectBufferAddress(buffer);
+    if(data == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The buffer is not a direct buffer.");
+        return SOCKET_ERROR;
+    }
+
+    std::vector<jint> lengths(count);
+    std::vector<jint> remoteAddressLengths(count);
+    std::vector<jint> localAddressLengths(count);
+    std::vector<jbyte> remoteAddresses(count * MAXIMUM_ADDRESS_LENGTH);
+    std::vector<jbyte> localAddresses(count * MAXIMUM_ADDRESS_LENGTH);
+    environment->GetIntArrayRegion(lengthArray, 0, count, &lengths[0]);
+    environment->GetIntArrayRegion(remoteAddressLengthArray, 0, count, &remoteAddressLengths[0]);
+    environment->GetIntArrayRegion(localAddressLengthArray, 0, count, &localAddressLengths[0]);
+    environment->GetByteArrayRegion(remoteAddressArray, 0, count * MAXIMUM_ADDRESS_LENGTH, &remoteAddresses[0]);
+    environment->GetByteArrayRegion(localAddressArray, 0, count * MAXIMUM_ADDRESS_LENGTH, &localAddresses[0]);
+
+    std::vector<struct BatchEntry> entries(count);
+    std::vector<BatchMessage> messages(count);
+    memset(&messages[0], 0, count * sizeof(BatchMessage));
+
+    for(jint i = 0; i < count; i++)
+    {
+        struct BatchEntry *entry = &entries[i];
+        struct msghdr *header = &BATCH_HEADER(messages[i]);
+        socklen_t addressLength;
+
+        if(!initBatchSocketAddress(environment, &entry->address, &addressLength,
+                                   &remoteAddresses[i * MAXIMUM_ADDRESS_LENGTH], remoteAddressLengths[i]))
+            return SOCKET_ERROR;
+
+        entry->vector.iov_base = data + (i * slotSize);
+        entry->vector.iov_len = lengths[i];
+        header->msg_name = &entry->address;
+        header->msg_namelen = addressLength;
+        header->msg_iov = &entry->vector;
+        header->msg_iovlen = 1;
+
+        if(localAddressLengths[i] != 0)
+        {
+            socklen_t controlLength = initBatchSourceAddress(
+                environment, entry, &localAddresses[i * MAXIMUM_ADDRESS_LENGTH], localAddressLengths[i]
+            );
+            if(controlLength == 0)
+                return SOCKET_ERROR;
+
+            header->msg_control = entry->control.buffer;
+            header->msg_controllen = controlLength;
+        }
+    }
+
+    jlong deadline = getDeadline(timeout);
+    if(timeout >= 0 && !awaitSocket(environment, socket, wakeup, POLLOUT, timeout, SEND_TIMED_OUT))
+        return SOCKET_ERROR;
+
+    jint sent = 0;
+    while(sent < count)
+    {
+#if defined(__linux__)
+        int result = sendmmsg(socket, &messages[sent], count - sent, TRANSFER_FLAGS(timeout));
+#else
+        int result = sendmsg(socket, &messages[sent], TRANSFER_FLAGS(timeout));
+        if(result != SOCKET_ERROR)
+            result = 1;
 #endif
+        if(result == SOCKET_ERROR)
+        {
+            if(errno == EINTR)
+                continue;
+            if(sent == 0)
+            {
+                if(timeout >= 0 && WOULD_BLOCK(errno))
+                {
+                    if(!awaitAgain(environment, socket, wakeup, POLLOUT, timeout, deadline, SEND_TIMED_OUT))
+                        return SOCKET_ERROR;
+                    continue;
+                }
+                if(timeout == NON_BLOCKING && WOULD_BLOCK(errno))
+                    return 0;
+                handleTransferError(environment, SEND_TIMED_OUT);
+                return SOCKET_ERROR;
+            }
+            break;
+        }
+
+        sent += result;
+    }
 
-        std::string messageString(message);
+    return sent;
+#endif
+}
 
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketImpl
+ * Method: receiveBatch
+ * Signature: (IILjava/nio/ByteBuffer;II[I[B[I[B[I[JI)I
+ *
+ * Receives as many packets as are available, up to the maximum, with one native call and, on Linux, one recvmmsg
+ * system call. Only the first packet is waited for.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveBatch
+    (JNIEnv *environment, jobject, jint socket, jint wakeup, jobject buffer, jint slotSize, jint maximum,
+     jintArray lengthArray, jbyteArray remoteAddressArray, jintArray remoteAddressLengthArray,
+     jbyteArray localAddressArray, jintArray localAddressLengthArray, jlongArray timestampArray, jint timeout)
+{
 #if defined(_WIN32)
-        if(formatted)
-            LocalFree(message);
+    raiseError(environment, "java/lang/UnsupportedOperationException", "Batches are not supported on Windows.");
+    return SOCKET_ERROR;
+#else
+    char *data = (char *)environment->GetDirectBufferAddress(buffer);
+    if(data == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The buffer is not a direct buffer.");
+        return SOCKET_ERROR;
+    }
+
+    std::vector<struct BatchEntry> entries(maximum);
+    std::vector<BatchMessage> messages(maximum);
+    memset(&messages[0], 0, maximum * sizeof(BatchMessage));
+
+    for(jint i = 0; i < maximum; i++)
+    {
+        struct BatchEntry *entry = &entries[i];
+        struct msghdr *header = &BATCH_HEADER(messages[i]);
+
+        entry->vector.iov_base = data + (i * slotSize);
+        entry->vector.iov_len = slotSize;
+        header->msg_name = &entry->address;
+        header->msg_namelen = sizeof(entry->address);
+        header->msg_iov = &entry->vector;
+        header->msg_iovlen = 1;
+        header->msg_control = entry->control.buffer;
+        header->msg_controllen = sizeof(entry->control.buffer);
+    }
+
+    jlong deadline = getDeadline(timeout);
+    if(timeout >= 0 && !awaitSocket(environment, socket, wakeup, POLLIN, timeout, RECEIVE_TIMED_OUT))
+        return SOCKET_ERROR;
+
+    std::vector<jint> lengths(maximum);
+#if defined(__linux__)
+    int received;
+    int error;
+    do
+    {
+        received = recvmmsg(socket, &messages[0], maximum, MSG_WAITFORONE | TRANSFER_FLAGS(timeout), NULL);
+        error = errno;
+
+        if(received == SOCKET_ERROR && timeout >= 0 && WOULD_BLOCK(error) &&
+           !awaitAgain(environment, socket, wakeup, POLLIN, timeout, deadline, RECEIVE_TIMED_OUT))
+            return SOCKET_ERROR;
+    }
+    while(received == SOCKET_ERROR && (error == EINTR || (timeout >= 0 && WOULD_BLOCK(error))));
+
+    if(received == SOCKET_ERROR)
+    {
+        if(timeout == NON_BLOCKING && WOULD_BLOCK(error))
+            return 0;
+        errno = error;
+        handleTransferError(environment, RECEIVE_TIMED_OUT);
+        return SOCKET_ERROR;
+    }
+
+    for(jint i = 0; i < received; i++)
+        lengths[i] = messages[i].msg_len;
+#else
+    int received = 0;
+    while(received < maximum)
+    {
+        int result = recvmsg(socket, &messages[received], received == 0 ? TRANSFER_FLAGS(timeout) : MSG_DONTWAIT);
+        if(result == SOCKET_ERROR)
+        {
+            if(errno == EINTR)
+                continue;
+            if(received == 0)
+            {
+                if(timeout >= 0 && WOULD_BLOCK(errno))
+                {
+                    if(!awaitAgain(environment, socket, wakeup, POLLIN, timeout, deadline, RECEIVE_TIMED_OUT))
+                        return SOCKET_ERROR;
+                    continue;
+                }
+                if(timeout == NON_BLOCKING && WOULD_BLOCK(errno))
+                    return 0;
+                handleTransferError(environment, RECEIVE_TIMED_OUT);
+                return SOCKET_ERROR;
+            }
+            break;
+        }
+
+        lengths[received++] = result;
+    }
 #endif
 
-        raiseError(environment, NULL, messageString);
+    std::vector<jint> remoteAddressLengths(received);
+    std::vector<jint> localAddressLengths(received);
+    std::vector<jbyte> remoteAddresses(received * MAXIMUM_ADDRESS_LENGTH);
+    std::vector<jbyte> localAddresses(received * MAXIMUM_ADDRESS_LENGTH);
+    std::vector<jlong> timestamps(received);
+
+    for(jint i = 0; i < received; i++)
+    {
+        remoteAddressLengths[i] = copyBatchSocketAddress(
+            &entries[i].address, &remoteAddresses[i * MAXIMUM_ADDRESS_LENGTH]
+        );
+        localAddressLengths[i] = copyBatchDestinationAddress(
+            &BATCH_HEADER(messages[i]), &localAddresses[i * MAXIMUM_ADDRESS_LENGTH]
+        );
+        timestamps[i] = copyBatchTimestamp(&BATCH_HEADER(messages[i]));
     }
+
+    environment->SetIntArrayRegion(lengthArray, 0, received, &lengths[0]);
+    environment->SetIntArrayRegion(remoteAddressLengthArray, 0, received, &remoteAddressLengths[0]);
+    environment->SetIntArrayRegion(localAddressLengthArray, 0, received, &localAddressLengths[0]);
+    environment->SetByteArrayRegion(remoteAddressArray, 0, received * MAXIMUM_ADDRESS_LENGTH, &remoteAddresses[0]);
+    environment->SetByteArrayRegion(localAddressArray, 0, received * MAXIMUM_ADDRESS_LENGTH, &localAddresses[0]);
+    environment->SetLongArrayRegion(timestampArray, 0, received, &timestamps[0]);
+
+    return received;
+#endif
 }
 
+/*
+ * Utility Functions
+ */
+
 static int setIntegerSocketOption(int socket, int level, int option, int value)
 {
     return setsockopt(socket, level, option, (void*)&value, sizeof(value));
@@ -222,15 +919,70 @@ static int getTimeout(int socket, int option)
     return (value.tv_sec * 1000 + value.tv_usec / 1000);
 }
 
-static struct sockaddr* initIPv4SocketAddress(JNIEnv *environment, struct sockaddr_in *sin, jbyteArray address)
+/*
+ * Returns the monotonic time, in milliseconds, at which a wait of the given timeout ends, or 0 if the wait never ends
+ * (zero timeout) or never starts (non-blocking).
+ */
+static jlong getDeadline(int timeout)
+{
+    if(timeout <= 0)
+        return 0;
+
+#if defined(_WIN32)
+    return (jlong)GetTickCount64() + timeout;
+#else
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (jlong)now.tv_sec * 1000 + now.tv_nsec / 1000000 + timeout;
+#endif
+}
+
+/*
+ * Returns the milliseconds left until the deadline, at least 1. Once the deadline has passed, raises a timeout and
+ * returns 0.
+ */
+static int getRemainingTimeout(JNIEnv *environment, jlong deadline, const char *timeoutMessage)
+{
+#if defined(_WIN32)
+    jlong remaining = deadline - (jlong)GetTickCount64();
+#else
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    jlong remaining = deadline - ((jlong)now.tv_sec * 1000 + now.tv_nsec / 1000000);
+#endif
+
+    if(remaining <= 0)
+    {
+        raiseError(environment, "java/net/SocketTimeoutException", timeoutMessage);
+        return 0;
+    }
+
+    return (int)remaining;
+}
+
+/*
+ * Waits again, for what is left of the timeout, after a wait ended but the socket turned out not to be ready after all
+ * (another thread got there first). Returns false, with an exception pending, if the wait times out or fails.
+ */
+static bool awaitAgain(JNIEnv *environment, int socket, int wakeup, short events, int timeout, jlong deadline,
+                       const char *timeoutMessage)
 {
-    jbyte *buf;
+    int wait = timeout;
+    if(timeout > 0)
+    {
+        wait = getRemainingTimeout(environment, deadline, timeoutMessage);
+        if(wait == 0)
+            return false;
+    }
 
+    return awaitSocket(environment, socket, wakeup, events, wait, timeoutMessage);
+}
+
+static struct sockaddr* initIPv4SocketAddress(JNIEnv *environment, struct sockaddr_in *sin, jbyteArray address)
+{
     memset(sin, 0, sizeof(struct sockaddr_in));
     sin->sin_family = PF_INET;
-    buf = environment->GetByteArrayElements(address, NULL);
-    memcpy(&sin->sin_addr, buf, sizeof(sin->sin_addr));
-    environment->ReleaseByteArrayElements(address, buf, JNI_ABORT);
+    environment->GetByteArrayRegion(address, 0, IPV4_ADDRESS_LENGTH, (jbyte *)&sin->sin_addr);
 
     return (struct sockaddr *)sin;
 }
@@ -238,13 +990,232 @@ static struct sockaddr* initIPv4SocketAddress(JNIEnv *environment, struct sockad
 
 static struct sockaddr* initIPv6SocketAddress(JNIEnv *environment, struct sockaddr_in6 *sin6, jbyteArray address)
 {
-    jbyte *buf;
-
     memset(sin6, 0, sizeof(struct sockaddr_in6));
     sin6->sin6_family = PF_INET6;
-    buf = environment->GetByteArrayElements(address, NULL);
-    memcpy(&sin6->sin6_addr, buf, sizeof(sin6->sin6_addr));
-    environment->ReleaseByteArrayElements(address, buf, JNI_ABORT);
+    environment->GetByteArrayRegion(address, 0, IPV6_ADDRESS_LENGTH, (jbyte *)&sin6->sin6_addr);
 
     return (struct sockaddr *)sin6;
 }
+
+
+/*
+ * Copies the raw address straight into the socket address structure, choosing the family by the address length.
+ * Returns NULL, with an exception pending, if the address is neither an IPv4 nor an IPv6 address.
+ */
+static struct sockaddr* initSocketAddress(JNIEnv *environment, struct sockaddr_storage *storage, socklen_t *length,
+                                          jbyteArray address)
+{
+    switch(environment->GetArrayLength(address))
+    {
+        case IPV4_ADDRESS_LENGTH:
+            *length = sizeof(struct sockaddr_in);
+            return initIPv4SocketAddress(environment, (struct sockaddr_in *)storage, address);
+        case IPV6_ADDRESS_LENGTH:
+            *length = sizeof(struct sockaddr_in6);
+            return initIPv6SocketAddress(environment, (struct sockaddr_in6 *)storage, address);
+        default:
+            raiseError(
+                environment, "java/lang/IllegalArgumentException", "The address is not an IPv4 or IPv6 address."
+            );
+            return NULL;
+    }
+}
+
+#if !defined(_WIN32)
+
+static bool initBatchSocketAddress(JNIEnv *environment, struct sockaddr_storage *storage, socklen_t *length,
+                                   const jbyte *address, jint addressLength)
+{
+    memset(storage, 0, sizeof(struct sockaddr_storage));
+
+    if(addressLength == IPV4_ADDRESS_LENGTH)
+    {
+        struct sockaddr_in *sin = (struct sockaddr_in *)storage;
+        sin->sin_family = PF_INET;
+        memcpy(&sin->sin_addr, address, IPV4_ADDRESS_LENGTH);
+        *length = sizeof(struct sockaddr_in);
+        return true;
+    }
+
+    if(addressLength == IPV6_ADDRESS_LENGTH)
+    {
+        struct sockaddr_in6 *sin6 = (struct sockaddr_in6 *)storage;
+        sin6->sin6_family = PF_INET6;
+        memcpy(&sin6->sin6_addr, address, IPV6_ADDRESS_LENGTH);
+        *length = sizeof(struct sockaddr_in6);
+        return true;
+    }
+
+    raiseError(environment, "java/lang/IllegalArgumentException", "A batch slot has no destination address.");
+    return false;
+}
+
+
+/*
+ * Writes a packet information control message that selects the source address of an outgoing packet. Returns the
+ * length of the control data or 0, with an exception pending, if the address is invalid.
+ */
+static socklen_t initBatchSourceAddress(JNIEnv *environment, struct BatchEntry *entry, const jbyte *address,
+                                        jint addressLength)
+{
+    memset(entry->control.buffer, 0, sizeof(entry->control.buffer));
+    struct cmsghdr *control = (struct cmsghdr *)entry->control.buffer;
+
+    if(addressLength == IPV4_ADDRESS_LENGTH)
+    {
+        struct in_pktinfo information;
+        memset(&information, 0, sizeof(information));
+        memcpy(&information.ipi_spec_dst, address, IPV4_ADDRESS_LENGTH);
+
+        control->cmsg_level = IPPROTO_IP;
+        control->cmsg_type = IP_PKTINFO;
+        control->cmsg_len = CMSG_LEN(sizeof(information));
+        memcpy(CMSG_DATA(control), &information, sizeof(information));
+        return CMSG_SPACE(sizeof(information));
+    }
+
+    if(addressLength == IPV6_ADDRESS_LENGTH)
+    {
+        struct in6_pktinfo information;
+        memset(&information, 0, sizeof(information));
+        memcpy(&information.ipi6_addr, address, IPV6_ADDRESS_LENGTH);
+
+        control->cmsg_level = IPPROTO_IPV6;
+        control->cmsg_type = IPV6_PKTINFO;
+        control->cmsg_len = CMSG_LEN(sizeof(information));
+        memcpy(CMSG_DATA(control), &information, sizeof(information));
+        return CMSG_SPACE(sizeof(information));
+    }
+
+    raiseError(environment, "java/lang/IllegalArgumentException", "A batch slot has an invalid source address.");
+    return 0;
+}
+
+
+static jint copyBatchSocketAddress(const struct sockaddr_storage *storage, jbyte *address)
+{
+    if(storage->ss_family == AF_INET)
+    {
+        memcpy(address, &((const struct sockaddr_in *)storage)->sin_addr, IPV4_ADDRESS_LENGTH);
+        return IPV4_ADDRESS_LENGTH;
+    }
+
+    if(storage->ss_family == AF_INET6)
+    {
+        memcpy(address, &((const struct sockaddr_in6 *)storage)->sin6_addr, IPV6_ADDRESS_LENGTH);
+        return IPV6_ADDRESS_LENGTH;
+    }
+
+    return 0;
+}
+
+
+/*
+ * Finds the destination address of an incoming packet in its packet information control message, if the socket has
+ * packet information enabled.
+ */
+static jint copyBatchDestinationAddress(struct msghdr *header, jbyte *address)
+{
+    for(struct cmsghdr *control = CMSG_FIRSTHDR(header); control != NULL; control = CMSG_NXTHDR(header, control))
+    {
+        if(control->cmsg_level == IPPROTO_IP && control->cmsg_type == IP_PKTINFO)
+        {
+            struct in_pktinfo information;
+            memcpy(&information, CMSG_DATA(control), sizeof(information));
+            memcpy(address, &information.ipi_addr, IPV4_ADDRESS_LENGTH);
+            return IPV4_ADDRESS_LENGTH;
+        }
+
+        if(control->cmsg_level == IPPROTO_IPV6 && control->cmsg_type == IPV6_PKTINFO)
+        {
+            struct in6_pktinfo information;
+            memcpy(&information, CMSG_DATA(control), sizeof(information));
+            memcpy(address, &information.ipi6_addr, IPV6_ADDRESS_LENGTH);
+            return IPV6_ADDRESS_LENGTH;
+        }
+    }
+
+    return 0;
+}
+
+/*
+ * Finds the kernel receive timestamp among the control messages, preferring a software SO_TIMESTAMPING timestamp, and
+ * converts it to nanoseconds since the epoch. Returns zero (Packet.NO_TIMESTAMP) if there is none.
+ */
+static jlong copyBatchTimestamp(struct msghdr *header)
+{
+    jlong timestamp = 0;
+    for(struct cmsghdr *control = CMSG_FIRSTHDR(header); control != NULL; control = CMSG_NXTHDR(header, control))
+    {
+        if(control->cmsg_level != SOL_SOCKET)
+            continue;
+
+#if defined(SCM_TIMESTAMPING)
+        if(control->cmsg_type == SCM_TIMESTAMPING)
+        {
+            /* struct scm_timestamping: the software timestamp, then two (legacy and hardware) we do not request */
+            struct timespec times[3];
+            memcpy(times, CMSG_DATA(control), sizeof(times));
+            if(times[0].tv_sec != 0 || times[0].tv_nsec != 0)
+                return (jlong)times[0].tv_sec * 1000000000LL + times[0].tv_nsec;
+        }
+#endif
+#if defined(SCM_TIMESTAMPNS)
+        if(control->cmsg_type == SCM_TIMESTAMPNS)
+        {
+            struct timespec time;
+            memcpy(&time, CMSG_DATA(control), sizeof(time));
+            timestamp = (jlong)time.tv_sec * 1000000000LL + time.tv_nsec;
+        }
+#endif
+#if defined(SCM_TIMESTAMP)
+        if(control->cmsg_type == SCM_TIMESTAMP && timestamp == 0)
+        {
+            struct timeval time;
+            memcpy(&time, CMSG_DATA(control), sizeof(time));
+            timestamp = (jlong)time.tv_sec * 1000000000LL + (jlong)time.tv_usec * 1000;
+        }
+#endif
+    }
+
+    return timestamp;
+}
+
+#endif /* if !defined(_WIN32) */
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod rawSocketImplMethods[] = {
+    NATIVE_METHOD(RawSocketImpl, nativeStaticInitialize, "()V"),
+    NATIVE_METHOD(RawSocketImpl, nativeStaticShutdown, "()V"),
+    NATIVE_METHOD(RawSocketImpl, setSocketOption, "(IIII)V"),
+    NATIVE_METHOD(RawSocketImpl, getSocketOption, "(III)I"),
+    NATIVE_METHOD(RawSocketImpl, setTimeout, "(III)V"),
+    NATIVE_METHOD(RawSocketImpl, getTimeout, "(II)I"),
+    NATIVE_METHOD(RawSocketImpl, setReceiveTimestamps, "(IZ)V"),
+    NATIVE_METHOD(RawSocketImpl, attachFilter, "(I[S[B[B[I)V"),
+    NATIVE_METHOD(RawSocketImpl, detachFilter, "(I)V"),
+    NATIVE_METHOD(RawSocketImpl, shutdown, "(I)V"),
+    NATIVE_METHOD(RawSocketImpl, open, "(II)I"),
+    NATIVE_METHOD(RawSocketImpl, openPacketSocket, "(II)I"),
+    NATIVE_METHOD(RawSocketImpl, closeDescriptor, "(I)V"),
+    NATIVE_METHOD(RawSocketImpl, openWakeup, "()I"),
+    NATIVE_METHOD(RawSocketImpl, signalWakeup, "(I)V"),
+    NATIVE_METHOD(RawSocketImpl, close, "(I)V"),
+    NATIVE_METHOD(RawSocketImpl, sendDirect, "(IILjava/nio/ByteBuffer;II[BI)I"),
+    NATIVE_METHOD(RawSocketImpl, sendArray, "(II[BII[BI)I"),
+    NATIVE_METHOD(RawSocketImpl, receiveDirect, "(IILjava/nio/ByteBuffer;III)I"),
+    NATIVE_METHOD(RawSocketImpl, receiveArray, "(II[BIII)I"),
+    NATIVE_METHOD(RawSocketImpl, sendBatch, "(IILjava/nio/ByteBuffer;II[I[B[I[B[II)I"),
+    NATIVE_METHOD(RawSocketImpl, receiveBatch, "(IILjava/nio/ByteBuffer;II[I[B[I[B[I[JI)I")
+};
+
+bool registerRawSocketImplNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/RawSocketImpl", rawSocketImplMethods,
+        sizeof(rawSocketImplMethods) / sizeof(rawSocketImplMethods[0])
+    );
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <errno.h>
+#include <string>
+#include <stdint.h>
+
+#if defined(__linux__)
+
+#include <unistd.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+
+#endif /* if defined(__linux__) */
+
+#include "io_oddsource_java_net_socket_RawSocketSelector.h"
+#include "NativeCommon.h"
+
+#define WAKEUP_KEY io_oddsource_java_net_socket_RawSocketSelector_WAKEUP_KEY
+#define OP_READ io_oddsource_java_net_socket_RawSocketSelector_OP_READ
+#define OP_WRITE io_oddsource_java_net_socket_RawSocketSelector_OP_WRITE
+#define OPERATION_ADD io_oddsource_java_net_socket_RawSocketSelector_OPERATION_ADD
+#define OPERATION_MODIFY io_oddsource_java_net_socket_RawSocketSelector_OPERATION_MODIFY
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define UNSUPPORTED_MESSAGE "Raw socket selectors require epoll, which is only available on Linux."
+
+#if defined(__linux__)
+
+static uint32_t toEpollEvents(jint ops, jboolean edgeTriggered);
+static jint toReadyOps(uint32_t events);
+
+#endif /* if defined(__linux__) */
+
+/*
+ * Java Methods for class io.oddsource.java.net.socket.RawSocketSelector
+ */
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: getEventSize
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_getEventSize
+    (JNIEnv *, jclass)
+{
+#if defined(__linux__)
+    return sizeof(struct epoll_event);
+#else
+    return 1;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: createEpoll
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_createEpoll
+    (JNIEnv *environment, jclass)
+{
+#if defined(__linux__)
+    int descriptor = epoll_create1(EPOLL_CLOEXEC);
+    if(descriptor < 0)
+        handleSocketError(environment);
+
+    return descriptor;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return -1;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: createWakeup
+ * Signature: (I)I
+ *
+ * The wakeup descriptor is level-triggered so that a signal is never lost; awaitEvents drains it.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_createWakeup
+    (JNIEnv *environment, jclass, jint epoll)
+{
+#if defined(__linux__)
+    int descriptor = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    if(descriptor < 0)
+    {
+        handleSocketError(environment);
+        return -1;
+    }
+
+    struct epoll_event event;
+    event.events = EPOLLIN;
+    event.data.u64 = 0;
+    event.data.u32 = (uint32_t)WAKEUP_KEY;
+    if(epoll_ctl(epoll, EPOLL_CTL_ADD, descriptor, &event) < 0)
+    {
+        handleSocketError(environment);
+        close(descriptor);
+        return -1;
+    }
+
+    return descriptor;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return -1;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: control
+ * Signature: (IIIIIZ)V
+ *
+ * Closing a socket already removes it from the epoll set, so deleting a socket that is closed (EBADF) or no longer in
+ * the set (ENOENT) is not an error.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_control
+    (JNIEnv *environment, jclass, jint epoll, jint operation, jint socket, jint key, jint ops, jboolean edgeTriggered)
+{
+#if defined(__linux__)
+    struct epoll_event event;
+    event.events = toEpollEvents(ops, edgeTriggered);
+    event.data.u64 = 0;
+    event.data.u32 = (uint32_t)key;
+
+    int control = operation == OPERATION_ADD ? EPOLL_CTL_ADD :
+                  operation == OPERATION_MODIFY ? EPOLL_CTL_MOD :
+                  EPOLL_CTL_DEL;
+    if(epoll_ctl(epoll, control, socket, &event) < 0 &&
+       (control != EPOLL_CTL_DEL || (errno != EBADF && errno != ENOENT)))
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: awaitEvents
+ * Signature: (IILjava/nio/ByteBuffer;I[I[II)I
+ *
+ * Waits for events and copies the keys and ready operations of the sockets into the arrays, skipping (and draining)
+ * the wakeup descriptor.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_awaitEvents
+    (JNIEnv *environment, jclass, jint epoll, jint wakeup, jobject events, jint maximum, jintArray keys,
+     jintArray ops, jint timeout)
+{
+#if defined(__linux__)
+    struct epoll_event *native = (struct epoll_event *)environment->GetDirectBufferAddress(events);
+    if(native == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The event buffer must be a direct buffer.");
+        return 0;
+    }
+
+    int result = epoll_wait(epoll, native, maximum, timeout);
+    if(result < 0)
+    {
+        if(errno != EINTR)
+            handleSocketError(environment);
+        return 0;
+    }
+
+    jint *readyKeys = (jint *)environment->GetPrimitiveArrayCritical(keys, NULL);
+    if(readyKeys == NULL)
+        return 0; /* an OutOfMemoryError is pending */
+
+    jint *readyOps = (jint *)environment->GetPrimitiveArrayCritical(ops, NULL);
+    if(readyOps == NULL)
+    {
+        environment->ReleasePrimitiveArrayCritical(keys, readyKeys, JNI_ABORT);
+        return 0; /* an OutOfMemoryError is pending */
+    }
+
+    jint count = 0;
+    bool woken = false;
+    for(int i = 0; i < result; i++)
+    {
+        jint key = (jint)native[i].data.u32;
+        if(key == WAKEUP_KEY)
+        {
+            woken = true;
+            continue;
+        }
+
+        readyKeys[count] = key;
+        readyOps[count] = toReadyOps(native[i].events);
+        count++;
+    }
+
+    environment->ReleasePrimitiveArrayCritical(ops, readyOps, 0);
+    environment->ReleasePrimitiveArrayCritical(keys, readyKeys, 0);
+
+    if(woken)
+    {
+        eventfd_t value;
+        eventfd_read(wakeup, &value);
+    }
+
+    return count;
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: signal
+ * Signature: (I)V
+ *
+ * EAGAIN means the counter is saturated, so the selector is already awake.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_signal
+    (JNIEnv *environment, jclass, jint wakeup)
+{
+#if defined(__linux__)
+    if(eventfd_write(wakeup, 1) < 0 && errno != EAGAIN)
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_RawSocketSelector
+ * Method: closeDescriptor
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_closeDescriptor
+    (JNIEnv *environment, jclass, jint descriptor)
+{
+#if defined(__linux__)
+    if(close(descriptor) < 0)
+        handleSocketError(environment);
+#else
+    raiseError(environment, UNSUPPORTED, UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Utility Functions
+ */
+
+#if defined(__linux__)
+
+static uint32_t toEpollEvents(jint ops, jboolean edgeTriggered)
+{
+    uint32_t events = edgeTriggered ? EPOLLET : 0;
+
+    if(ops & OP_READ)
+        events |= EPOLLIN;
+    if(ops & OP_WRITE)
+        events |= EPOLLOUT;
+
+    return events;
+}
+
+static jint toReadyOps(uint32_t events)
+{
+    jint ops = 0;
+
+    if(events & (EPOLLIN | EPOLLERR | EPOLLHUP))
+        ops |= OP_READ;
+    if(events & (EPOLLOUT | EPOLLERR | EPOLLHUP))
+        ops |= OP_WRITE;
+
+    return ops;
+}
+
+#endif /* if defined(__linux__) */
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod rawSocketSelectorMethods[] = {
+    NATIVE_METHOD(RawSocketSelector, getEventSize, "()I"),
+    NATIVE_METHOD(RawSocketSelector, createEpoll, "()I"),
+    NATIVE_METHOD(RawSocketSelector, createWakeup, "(I)I"),
+    NATIVE_METHOD(RawSocketSelector, control, "(IIIIIZ)V"),
+    NATIVE_METHOD(RawSocketSelector, awaitEvents, "(IILjava/nio/ByteBuffer;I[I[II)I"),
+    NATIVE_METHOD(RawSocketSelector, signal, "(I)V"),
+    NATIVE_METHOD(RawSocketSelector, closeDescriptor, "(I)V")
+};
+
+bool registerRawSocketSelectorNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/RawSocketSelector", rawSocketSelectorMethods,
+        sizeof(rawSocketSelectorMethods) / sizeof(rawSocketSelectorMethods[0])
+    );
+}
@@ -36,12 +36,49 @@
 #else /* if defined(_WIN32) */
 
 #include <netdb.h>
+#include <unistd.h>
+#include <sys/socket.h>
+#include <netinet/in.h>
 
 #endif /* if defined(_WIN32) else */
 
+#if defined(__linux__)
+
+#include <sys/time.h>
+#include <linux/netlink.h>
+#include <linux/rtnetlink.h>
+#include <linux/neighbour.h>
+
+#endif /* if defined(__linux__) */
+
 #include "io_oddsource_java_net_socket_SocketUtilities.h"
+#include "NativeCommon.h"
+
+static jobjectArray loadProtocols(JNIEnv *environment, jclass SocketUtilities, bool cached);
+static jobject getProtocolObjectByProtocolStruct(JNIEnv *environment, struct protoent *protocol, bool cached);
+static void raiseRouteError(JNIEnv *environment, int error);
+
+/*
+ * The port the route probe connects to. Connecting a datagram socket sends nothing, so any nonzero port will do.
+ */
+#define ROUTE_PROBE_PORT 9
+
+#define UNSUPPORTED "java/lang/UnsupportedOperationException"
+#define NETLINK_UNSUPPORTED_MESSAGE "Routing table mirrors are only available on Linux."
+
+/*
+ * A larger receive buffer than the default makes it less likely that a burst of notifications, such as an interface
+ * going down, overflows it and forces the mirror to reload.
+ */
+#define ROUTE_MONITOR_BUFFER_SIZE (1024 * 1024)
+
+#define PROTOCOL_CLASS "io/oddsource/java/net/socket/Protocol"
+#define PROTOCOL_CONSTRUCTOR "(Ljava/lang/String;[Ljava/lang/String;I)V"
 
-static jobject getProtocolObjectByProtocolStruct(JNIEnv *environment, struct protoent *protocol);
+/*
+ * Resolved on first use rather than when the library is loaded, because resolving it initializes Protocol.
+ */
+static jmethodID protocolConstructor = NULL;
 
 /*
  * Java Methods for class io.oddsource.java.net.socket.SocketUtilities
@@ -49,43 +86,304 @@ static jobject getProtocolObjectByProtocolStruct(JNIEnv *environment, struct pro
 
 /*
  * Class: io_oddsource_java_net_socket_SocketUtilities
- * Method: getProtocolByName
- * Signature: (Ljava/lang/String;)Lio/oddsource/java/net/socket/Protocol;
+ * Method: loadProtocolList
+ * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
  *
- * Looks up the protocol by its name, and returns null if it's not found.
+ * Reads every entry of the protocol database, in order; returns an empty array if no protocols are found. The Java
+ * code indexes the result, so lookups by name and number never come back here.
  */
-JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolByName
-    (JNIEnv *environment, jclass, jstring name)
+JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_loadProtocolList
+    (JNIEnv *environment, jclass SocketUtilities)
 {
-    const char *utf = environment->GetStringUTFChars(name, NULL);
-    struct protoent *protocol = getprotobyname(utf);
-    environment->ReleaseStringUTFChars(name, utf);
+    return loadProtocols(environment, SocketUtilities, true);
+}
 
-    return getProtocolObjectByProtocolStruct(environment, protocol);
+/*
+ * Class: io_oddsource_java_net_socket_SocketUtilities
+ * Method: loadProtocolListUncached
+ * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
+ *
+ * The benchmark baseline for loadProtocolList, looking up Protocol, String and the constructor for every entry.
+ */
+JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_loadProtocolListUncached
+    (JNIEnv *environment, jclass SocketUtilities)
+{
+    return loadProtocols(environment, SocketUtilities, false);
 }
 
 /*
  * Class: io_oddsource_java_net_socket_SocketUtilities
- * Method: getProtocolByNumber
- * Signature: (I)Lio/oddsource/java/net/socket/Protocol;
+ * Method: raiseSocketError
+ * Signature: (IZ)V
  *
- * Looks up the protocol by its number, and returns null if it's not found.
+ * The benchmark of the error path, with the uncached baseline looking up the exception class on every call.
  */
-JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolByNumber
-    (JNIEnv *environment, jclass, jint number)
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_raiseSocketError
+    (JNIEnv *environment, jclass, jint error, jboolean cached)
 {
-    return getProtocolObjectByProtocolStruct(environment, getprotobynumber(number));
+    if(cached)
+    {
+        errno = error;
+        handleSocketError(environment);
+        return;
+    }
+
+    jclass type = environment->FindClass("io/oddsource/java/net/socket/exception/RawSocketException");
+    if(type == NULL)
+        return;
+    environment->ThrowNew(type, strerror(error));
+    environment->DeleteLocalRef(type);
 }
 
 /*
  * Class: io_oddsource_java_net_socket_SocketUtilities
- * Method: getProtocolList
- * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
+ * Method: getSourceAddressForDestination
+ * Signature: ([BI)[B
  *
- * Compiles a list of all protocols supported by the system; returns an empty array if no protocols are found.
+ * Returns the address the kernel would send from to reach the destination (4 or 16 bytes, with the scope ID applying
+ * to IPv6 link-local destinations). Connecting a UDP socket makes the kernel choose a route and source address
+ * without sending anything, and getsockname reports that choice.
  */
-JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolList
-    (JNIEnv *environment, jclass SocketUtilities)
+JNIEXPORT jbyteArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getSourceAddressForDestination
+    (JNIEnv *environment, jclass, jbyteArray destination, jint scopeId)
+{
+    struct sockaddr_storage address;
+    memset(&address, 0, sizeof(address));
+    socklen_t addressLength;
+
+    jsize length = environment->GetArrayLength(destination);
+    if(length == 4)
+    {
+        struct sockaddr_in *sin = (struct sockaddr_in *)&address;
+        sin->sin_family = AF_INET;
+        sin->sin_port = htons(ROUTE_PROBE_PORT);
+        environment->GetByteArrayRegion(destination, 0, 4, (jbyte *)&sin->sin_addr);
+        addressLength = sizeof(struct sockaddr_in);
+    }
+    else if(length == 16)
+    {
+        struct sockaddr_in6 *sin6 = (struct sockaddr_in6 *)&address;
+        sin6->sin6_family = AF_INET6;
+        sin6->sin6_port = htons(ROUTE_PROBE_PORT);
+        sin6->sin6_scope_id = scopeId;
+        environment->GetByteArrayRegion(destination, 0, 16, (jbyte *)&sin6->sin6_addr);
+        addressLength = sizeof(struct sockaddr_in6);
+    }
+    else
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "Addresses must be 4 (IPv4) or 16 (IPv6) bytes.");
+        return NULL;
+    }
+
+    int probe = socket(address.ss_family, SOCK_DGRAM, IPPROTO_UDP);
+    if(probe < 0)
+    {
+        raiseRouteError(environment, errno);
+        return NULL;
+    }
+
+    if(connect(probe, (struct sockaddr *)&address, addressLength) < 0 ||
+       getsockname(probe, (struct sockaddr *)&address, &addressLength) < 0)
+    {
+        int error = errno;
+        close(probe);
+        raiseRouteError(environment, error);
+        return NULL;
+    }
+
+    close(probe);
+
+    jbyteArray source = environment->NewByteArray(length);
+    if(source == NULL)
+        return NULL;
+
+    if(length == 4)
+    {
+        environment->SetByteArrayRegion(source, 0, 4, (jbyte *)&((struct sockaddr_in *)&address)->sin_addr);
+    }
+    else
+    {
+        environment->SetByteArrayRegion(source, 0, 16, (jbyte *)&((struct sockaddr_in6 *)&address)->sin6_addr);
+    }
+
+    return source;
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_SocketUtilities
+ * Method: openRouteMonitor
+ * Signature: (I)I
+ *
+ * Opens a netlink route socket that receives the IPv4 route, IPv6 route and neighbor notifications, with the given
+ * receive timeout.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_openRouteMonitor
+    (JNIEnv *environment, jclass, jint receiveTimeout)
+{
+#if defined(__linux__)
+    int monitor = socket(AF_NETLINK, SOCK_RAW | SOCK_CLOEXEC, NETLINK_ROUTE);
+    if(monitor < 0)
+    {
+        handleSocketError(environment);
+        return -1;
+    }
+
+    struct sockaddr_nl address;
+    memset(&address, 0, sizeof(address));
+    address.nl_family = AF_NETLINK;
+
+    int groups[] = { RTNLGRP_IPV4_ROUTE, RTNLGRP_IPV6_ROUTE, RTNLGRP_NEIGH };
+    int bufferSize = ROUTE_MONITOR_BUFFER_SIZE;
+
+    struct timeval timeout;
+    timeout.tv_sec = receiveTimeout / 1000;
+    timeout.tv_usec = (receiveTimeout % 1000) * 1000;
+
+    bool failed = bind(monitor, (struct sockaddr *)&address, sizeof(address)) < 0;
+    for(size_t i = 0; !failed && i < sizeof(groups) / sizeof(groups[0]); i++)
+    {
+        failed = setsockopt(monitor, SOL_NETLINK, NETLINK_ADD_MEMBERSHIP, &groups[i], sizeof(groups[i])) < 0;
+    }
+    failed = failed || setsockopt(monitor, SOL_SOCKET, SO_RCVTIMEO, &timeout, sizeof(timeout)) < 0;
+
+    if(failed)
+    {
+        handleSocketError(environment);
+        close(monitor);
+        return -1;
+    }
+
+    /* best effort; without it the mirror just reloads more often */
+    setsockopt(monitor, SOL_SOCKET, SO_RCVBUF, &bufferSize, sizeof(bufferSize));
+
+    return monitor;
+#else
+    raiseError(environment, UNSUPPORTED, NETLINK_UNSUPPORTED_MESSAGE);
+    return -1;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_SocketUtilities
+ * Method: requestRouteDump
+ * Signature: (IZI)V
+ *
+ * Sends an RTM_GETROUTE or RTM_GETNEIGH dump request for all address families.
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_requestRouteDump
+    (JNIEnv *environment, jclass, jint monitor, jboolean neighbors, jint sequence)
+{
+#if defined(__linux__)
+    struct
+    {
+        struct nlmsghdr header;
+        union
+        {
+            struct rtmsg route;
+            struct ndmsg neighbor;
+        } body;
+    } request;
+    memset(&request, 0, sizeof(request));
+
+    request.header.nlmsg_type = neighbors ? RTM_GETNEIGH : RTM_GETROUTE;
+    request.header.nlmsg_len = NLMSG_LENGTH(neighbors ? sizeof(struct ndmsg) : sizeof(struct rtmsg));
+    request.header.nlmsg_flags = NLM_F_REQUEST | NLM_F_DUMP;
+    request.header.nlmsg_seq = sequence;
+
+    struct sockaddr_nl kernel;
+    memset(&kernel, 0, sizeof(kernel));
+    kernel.nl_family = AF_NETLINK;
+
+    if(sendto(monitor, &request, request.header.nlmsg_len, 0, (struct sockaddr *)&kernel, sizeof(kernel)) < 0)
+    {
+        handleSocketError(environment);
+    }
+#else
+    raiseError(environment, UNSUPPORTED, NETLINK_UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_SocketUtilities
+ * Method: receiveRouteMonitor
+ * Signature: (ILjava/nio/ByteBuffer;)I
+ *
+ * Receives the next datagram of netlink messages into the direct buffer. Returns zero when the receive times out, and
+ * -1 when the kernel reports that it dropped messages (ENOBUFS) or the datagram did not fit, either of which means the
+ * mirror has missed changes.
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_receiveRouteMonitor
+    (JNIEnv *environment, jclass, jint monitor, jobject buffer)
+{
+#if defined(__linux__)
+    char *data = (char *)environment->GetDirectBufferAddress(buffer);
+    if(data == NULL)
+    {
+        raiseError(environment, "java/lang/IllegalArgumentException", "The buffer is not a direct buffer.");
+        return 0;
+    }
+
+    struct iovec vector;
+    vector.iov_base = data;
+    vector.iov_len = (size_t)environment->GetDirectBufferCapacity(buffer);
+
+    struct sockaddr_nl sender;
+    struct msghdr message;
+    memset(&message, 0, sizeof(message));
+    message.msg_name = &sender;
+    message.msg_namelen = sizeof(sender);
+    message.msg_iov = &vector;
+    message.msg_iovlen = 1;
+
+    ssize_t received = recvmsg(monitor, &message, 0);
+    if(received < 0)
+    {
+        if(errno == EAGAIN || errno == EWOULDBLOCK || errno == EINTR)
+            return 0;
+        if(errno == ENOBUFS)
+            return -1;
+
+        handleSocketError(environment);
+        return 0;
+    }
+
+    if((message.msg_flags & MSG_TRUNC) != 0)
+        return -1;
+
+    /* only the kernel's messages count; anything another process sends is dropped */
+    if(sender.nl_pid != 0)
+        return 0;
+
+    return (jint)received;
+#else
+    raiseError(environment, UNSUPPORTED, NETLINK_UNSUPPORTED_MESSAGE);
+    return 0;
+#endif
+}
+
+/*
+ * Class: io_oddsource_java_net_socket_SocketUtilities
+ * Method: closeRouteMonitor
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_closeRouteMonitor
+    (JNIEnv *environment, jclass, jint monitor)
+{
+#if defined(__linux__)
+    if(close(monitor) < 0)
+    {
+        handleSocketError(environment);
+    }
+#else
+    raiseError(environment, UNSUPPORTED, NETLINK_UNSUPPORTED_MESSAGE);
+#endif
+}
+
+/*
+ * Utility Functions
+ */
+
+static jobjectArray loadProtocols(JNIEnv *environment, jclass SocketUtilities, bool cached)
 {
     environment->MonitorEnter(SocketUtilities); // synchronize access to the protocol list methods
 
@@ -98,72 +396,112 @@ JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities
         struct protoent *protocol = getprotoent();
         if(protocol == 0 || protocol == NULL)
             break;
-        protocolList.push_back(getProtocolObjectByProtocolStruct(environment, protocol));
+        protocolList.push_back(getProtocolObjectByProtocolStruct(environment, protocol, cached));
     }
 
     endprotoent();
 
     environment->MonitorExit(SocketUtilities); // end synchronization
 
-    jclass Protocol = environment->FindClass("io/oddsource/java/net/socket/Protocol");
-    if(Protocol == 0)
-    {
-        environment->ThrowNew(
-            environment->FindClass("java/lang/ClassNotFoundException"),
-            "Could not find class io.oddsource.java.net.socket.Protocol."
-        );
+    jclass type = cached ? protocolClass : environment->FindClass(PROTOCOL_CLASS);
+    if(type == NULL)
         return NULL;
-    }
 
-    jobjectArray protocols = environment->NewObjectArray(protocolList.size(), Protocol, NULL);
+    jobjectArray protocols = environment->NewObjectArray(protocolList.size(), type, NULL);
 
     for(unsigned int i = 0; i < protocolList.size(); i++)
     {
         environment->SetObjectArrayElement(protocols, i, protocolList[i]);
     }
 
+    if(!cached)
+        environment->DeleteLocalRef(type);
+
     return protocols;
 }
 
-/*
- * Utility Functions
- */
-
-static jobject getProtocolObjectByProtocolStruct(JNIEnv *environment, struct protoent *protocol)
+static jobject getProtocolObjectByProtocolStruct(JNIEnv *environment, struct protoent *protocol, bool cached)
 {
     if(protocol == 0 || protocol == NULL)
         return NULL;
 
-    jclass Protocol = environment->FindClass("io/oddsource/java/net/socket/Protocol");
-    if(Protocol == 0)
+    jclass type = protocolClass;
+    jclass string = stringClass;
+    if(!cached)
     {
-        environment->ThrowNew(
-            environment->FindClass("java/lang/ClassNotFoundException"),
-            "Could not find class io.oddsource.java.net.socket.Protocol."
-        );
-        return NULL;
+        /* the benchmark baseline: every lookup the cache saves, on every entry */
+        type = environment->FindClass(PROTOCOL_CLASS);
+        if(type == NULL)
+            return NULL;
+        string = environment->FindClass("java/lang/String");
+        if(string == NULL)
+            return NULL;
     }
 
-    jmethodID constructor = environment->GetMethodID(Protocol, "<init>", "(Ljava/lang/String;[Ljava/lang/String;I)V");
-
-    if(constructor == 0)
+    jmethodID constructor = protocolConstructor;
+    if(!cached || protocolConstructor == NULL)
     {
-        environment->ThrowNew(
-            environment->FindClass("java/lang/NoSuchMethodError"),
-            "Could not find method <init>(String, String[], int) in class io.oddsource.java.net.socket.Protocol."
-        );
-        return NULL;
+        constructor = environment->GetMethodID(type, "<init>", PROTOCOL_CONSTRUCTOR);
+        if(constructor == NULL)
+            return NULL;
+        if(cached)
+            protocolConstructor = constructor;
     }
 
     jstring name = environment->NewStringUTF(protocol->p_name);
 
-    int aliasesSize = sizeof(protocol->p_aliases) / sizeof(char *);
-    jobjectArray aliases = environment->NewObjectArray(aliasesSize, environment->FindClass("java/lang/String"), NULL);
+    int aliasesSize = 0;
+    while(protocol->p_aliases != NULL && protocol->p_aliases[aliasesSize] != NULL)
+        aliasesSize++;
+    jobjectArray aliases = environment->NewObjectArray(aliasesSize, string, NULL);
 
     for(int i = 0; i < aliasesSize; i++)
     {
-        environment->SetObjectArrayElement(aliases, i, environment->NewStringUTF(protocol->p_aliases[i]));
+        jstring alias = environment->NewStringUTF(protocol->p_aliases[i]);
+        environment->SetObjectArrayElement(aliases, i, alias);
+        environment->DeleteLocalRef(alias);
     }
 
-    return environment->NewObject(Protocol, constructor, name, aliases, protocol->p_proto);
+    /* the whole database is read in one native frame, so release everything but the protocol itself */
+    jobject protocolObject = environment->NewObject(type, constructor, name, aliases, protocol->p_proto);
+    environment->DeleteLocalRef(name);
+    environment->DeleteLocalRef(aliases);
+    if(!cached)
+    {
+        environment->DeleteLocalRef(string);
+        environment->DeleteLocalRef(type);
+    }
+
+    return protocolObject;
+}
+
+static void raiseRouteError(JNIEnv *environment, int error)
+{
+    std::string message("No route to the destination: ");
+    message += strerror(error);
+
+    raiseError(environment, "java/net/SocketException", message.c_str());
+}
+
+/*
+ * Registration
+ */
+
+static JNINativeMethod socketUtilitiesMethods[] = {
+    NATIVE_METHOD(SocketUtilities, loadProtocolList, "()[Lio/oddsource/java/net/socket/Protocol;"),
+    NATIVE_METHOD(SocketUtilities, loadProtocolListUncached, "()[Lio/oddsource/java/net/socket/Protocol;"),
+    NATIVE_METHOD(SocketUtilities, raiseSocketError, "(IZ)V"),
+    NATIVE_METHOD(SocketUtilities, getSourceAddressForDestination, "([BI)[B"),
+    NATIVE_METHOD(SocketUtilities, openRouteMonitor, "(I)I"),
+    NATIVE_METHOD(SocketUtilities, requestRouteDump, "(IZI)V"),
+    NATIVE_METHOD(SocketUtilities, receiveRouteMonitor, "(ILjava/nio/ByteBuffer;)I"),
+    NATIVE_METHOD(SocketUtilities, closeRouteMonitor, "(I)V")
+};
+
+bool registerSocketUtilitiesNatives(JNIEnv *environment)
+{
+    return registerNatives(
+        environment, "io/oddsource/java/net/socket/SocketUtilities", socketUtilitiesMethods,
+        sizeof(socketUtilitiesMethods) / sizeof(socketUtilitiesMethods[0])
+    );
 }
@@ -0,0 +1,117 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class io_oddsource_java_net_socket_AsyncRawSocketEngine */
+
+#ifndef _Included_io_oddsource_java_net_socket_AsyncRawSocketEngine
+#define _Included_io_oddsource_java_net_socket_AsyncRawSocketEngine
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_QUEUE_DEPTH
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_QUEUE_DEPTH 256L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_MAXIMUM_IN_FLIGHT
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_MAXIMUM_IN_FLIGHT 4096L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_MAXIMUM_REGISTERED_SOCKETS
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_DEFAULT_MAXIMUM_REGISTERED_SOCKETS 64L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_ERROR_INTERRUPTED
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_ERROR_INTERRUPTED 4L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_ERROR_CANCELED
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_ERROR_CANCELED 125L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_NO_OPERATION
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_NO_OPERATION -1L
+#undef io_oddsource_java_net_socket_AsyncRawSocketEngine_COMPLETION_BATCH
+#define io_oddsource_java_net_socket_AsyncRawSocketEngine_COMPLETION_BATCH 256L
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    create
+ * Signature: (III)J
+ */
+JNIEXPORT jlong JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_create
+  (JNIEnv *, jclass, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    registerSocket
+ * Signature: (JII)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_registerSocket
+  (JNIEnv *, jclass, jlong, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    registerBuffers
+ * Signature: (J[Ljava/nio/ByteBuffer;)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_registerBuffers
+  (JNIEnv *, jclass, jlong, jobjectArray);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    prepareSend
+ * Signature: (JIIZLjava/nio/ByteBuffer;II[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareSend
+  (JNIEnv *, jclass, jlong, jint, jint, jboolean, jobject, jint, jint, jbyteArray);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    prepareReceive
+ * Signature: (JIIZLjava/nio/ByteBuffer;III)Z
+ */
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareReceive
+  (JNIEnv *, jclass, jlong, jint, jint, jboolean, jobject, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    prepareCancelAll
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareCancelAll
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    prepareCancelSocket
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_prepareCancelSocket
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    submit
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_submit
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    awaitCompletions
+ * Signature: (J[I[I)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_awaitCompletions
+  (JNIEnv *, jclass, jlong, jintArray, jintArray);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    describeError
+ * Signature: (I)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_describeError
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_AsyncRawSocketEngine
+ * Method:    destroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_AsyncRawSocketEngine_destroy
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
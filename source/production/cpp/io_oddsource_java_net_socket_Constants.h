@@ -7,13 +7,75 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef io_oddsource_java_net_socket_Constants_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_Constants_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_Constants_NOT_DEFINED
+#define io_oddsource_java_net_socket_Constants_NOT_DEFINED -2147483648L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_IP_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_IP_INDEX 0L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_IPIP_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_IPIP_INDEX 1L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_IPV4_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_IPV4_INDEX 2L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_IPV6_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_IPV6_INDEX 3L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_TCP_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_TCP_INDEX 4L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_UDP_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_UDP_INDEX 5L
+#undef io_oddsource_java_net_socket_Constants_IPPROTO_ICMP_INDEX
+#define io_oddsource_java_net_socket_Constants_IPPROTO_ICMP_INDEX 6L
+#undef io_oddsource_java_net_socket_Constants_IP_HDRINCL_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_HDRINCL_INDEX 7L
+#undef io_oddsource_java_net_socket_Constants_IP_OPTIONS_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_OPTIONS_INDEX 8L
+#undef io_oddsource_java_net_socket_Constants_IP_PKTINFO_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_PKTINFO_INDEX 9L
+#undef io_oddsource_java_net_socket_Constants_IP_RECVOPTS_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_RECVOPTS_INDEX 10L
+#undef io_oddsource_java_net_socket_Constants_IP_RECVRETOPTS_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_RECVRETOPTS_INDEX 11L
+#undef io_oddsource_java_net_socket_Constants_IP_TOS_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_TOS_INDEX 12L
+#undef io_oddsource_java_net_socket_Constants_IP_TTL_INDEX
+#define io_oddsource_java_net_socket_Constants_IP_TTL_INDEX 13L
+#undef io_oddsource_java_net_socket_Constants_IPV6_HDRINCL_INDEX
+#define io_oddsource_java_net_socket_Constants_IPV6_HDRINCL_INDEX 14L
+#undef io_oddsource_java_net_socket_Constants_IPV6_HOPLIMIT_INDEX
+#define io_oddsource_java_net_socket_Constants_IPV6_HOPLIMIT_INDEX 15L
+#undef io_oddsource_java_net_socket_Constants_IPV6_MAXHLIM_INDEX
+#define io_oddsource_java_net_socket_Constants_IPV6_MAXHLIM_INDEX 16L
+#undef io_oddsource_java_net_socket_Constants_IPV6_RECVPKTINFO_INDEX
+#define io_oddsource_java_net_socket_Constants_IPV6_RECVPKTINFO_INDEX 17L
+#undef io_oddsource_java_net_socket_Constants_IPV6_VERSION_INDEX
+#define io_oddsource_java_net_socket_Constants_IPV6_VERSION_INDEX 18L
+#undef io_oddsource_java_net_socket_Constants_SO_RCVBUF_INDEX
+#define io_oddsource_java_net_socket_Constants_SO_RCVBUF_INDEX 19L
+#undef io_oddsource_java_net_socket_Constants_SO_RCVTIMEO_INDEX
+#define io_oddsource_java_net_socket_Constants_SO_RCVTIMEO_INDEX 20L
+#undef io_oddsource_java_net_socket_Constants_SO_SNDBUF_INDEX
+#define io_oddsource_java_net_socket_Constants_SO_SNDBUF_INDEX 21L
+#undef io_oddsource_java_net_socket_Constants_SO_SNDTIMEO_INDEX
+#define io_oddsource_java_net_socket_Constants_SO_SNDTIMEO_INDEX 22L
+#undef io_oddsource_java_net_socket_Constants_SOL_SOCKET_INDEX
+#define io_oddsource_java_net_socket_Constants_SOL_SOCKET_INDEX 23L
+#undef io_oddsource_java_net_socket_Constants_AF_INET_INDEX
+#define io_oddsource_java_net_socket_Constants_AF_INET_INDEX 24L
+#undef io_oddsource_java_net_socket_Constants_AF_INET6_INDEX
+#define io_oddsource_java_net_socket_Constants_AF_INET6_INDEX 25L
+#undef io_oddsource_java_net_socket_Constants_PF_INET_INDEX
+#define io_oddsource_java_net_socket_Constants_PF_INET_INDEX 26L
+#undef io_oddsource_java_net_socket_Constants_PF_INET6_INDEX
+#define io_oddsource_java_net_socket_Constants_PF_INET6_INDEX 27L
+#undef io_oddsource_java_net_socket_Constants_CONSTANT_COUNT
+#define io_oddsource_java_net_socket_Constants_CONSTANT_COUNT 28L
 /*
  * Class:     io_oddsource_java_net_socket_Constants
- * Method:    registerNumericConstant
- * Signature: (Ljava/lang/String;)I
+ * Method:    loadNumericConstants
+ * Signature: ([I)V
  */
-JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_Constants_registerNumericConstant
-  (JNIEnv *, jclass, jstring);
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_Constants_loadNumericConstants
+  (JNIEnv *, jclass, jintArray);
 
 #ifdef __cplusplus
 }
@@ -0,0 +1,51 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class io_oddsource_java_net_socket_PacketFanoutGroup */
+
+#ifndef _Included_io_oddsource_java_net_socket_PacketFanoutGroup
+#define _Included_io_oddsource_java_net_socket_PacketFanoutGroup
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_PacketFanoutGroup_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_ALL
+#define io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_ALL 3L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_IPV4
+#define io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_IPV4 2048L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_IPV6
+#define io_oddsource_java_net_socket_PacketFanoutGroup_ETHERTYPE_IPV6 34525L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_WORKER_POLL_INTERVAL
+#define io_oddsource_java_net_socket_PacketFanoutGroup_WORKER_POLL_INTERVAL 100L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_HASH
+#define io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_HASH 0L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_LOAD_BALANCE
+#define io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_LOAD_BALANCE 1L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_CPU
+#define io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_CPU 2L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_ROLLOVER
+#define io_oddsource_java_net_socket_PacketFanoutGroup_FANOUT_ROLLOVER 3L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_NO_ID
+#define io_oddsource_java_net_socket_PacketFanoutGroup_NO_ID -1L
+#undef io_oddsource_java_net_socket_PacketFanoutGroup_MAXIMUM_ETHERTYPE
+#define io_oddsource_java_net_socket_PacketFanoutGroup_MAXIMUM_ETHERTYPE 65535L
+/*
+ * Class:     io_oddsource_java_net_socket_PacketFanoutGroup
+ * Method:    join
+ * Signature: (III)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_PacketFanoutGroup_join
+  (JNIEnv *, jclass, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketFanoutGroup
+ * Method:    readStatistics
+ * Signature: (I[J[JI)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketFanoutGroup_readStatistics
+  (JNIEnv *, jclass, jint, jlongArray, jlongArray, jint);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
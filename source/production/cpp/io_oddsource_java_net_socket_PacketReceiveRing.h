@@ -0,0 +1,67 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class io_oddsource_java_net_socket_PacketReceiveRing */
+
+#ifndef _Included_io_oddsource_java_net_socket_PacketReceiveRing
+#define _Included_io_oddsource_java_net_socket_PacketReceiveRing
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef io_oddsource_java_net_socket_PacketReceiveRing_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_PacketReceiveRing_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_BLOCK_PACKET_COUNT
+#define io_oddsource_java_net_socket_PacketReceiveRing_BLOCK_PACKET_COUNT 12L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_BLOCK_FIRST_PACKET
+#define io_oddsource_java_net_socket_PacketReceiveRing_BLOCK_FIRST_PACKET 16L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_NEXT_OFFSET
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_NEXT_OFFSET 0L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_SECONDS
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_SECONDS 4L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_NANOSECONDS
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_NANOSECONDS 8L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_CAPTURED_LENGTH
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_CAPTURED_LENGTH 12L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_LENGTH
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_LENGTH 16L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_STATUS
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_STATUS 20L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_PACKET_MAC
+#define io_oddsource_java_net_socket_PacketReceiveRing_PACKET_MAC 24L
+#undef io_oddsource_java_net_socket_PacketReceiveRing_NANOSECONDS_PER_SECOND
+#define io_oddsource_java_net_socket_PacketReceiveRing_NANOSECONDS_PER_SECOND 1000000000LL
+/*
+ * Class:     io_oddsource_java_net_socket_PacketReceiveRing
+ * Method:    map
+ * Signature: (IIIII)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_map
+  (JNIEnv *, jclass, jint, jint, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketReceiveRing
+ * Method:    awaitBlock
+ * Signature: (IILjava/nio/ByteBuffer;II)Z
+ */
+JNIEXPORT jboolean JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_awaitBlock
+  (JNIEnv *, jclass, jint, jint, jobject, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketReceiveRing
+ * Method:    releaseBlock
+ * Signature: (Ljava/nio/ByteBuffer;I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_releaseBlock
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketReceiveRing
+ * Method:    unmap
+ * Signature: (Ljava/nio/ByteBuffer;)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketReceiveRing_unmap
+  (JNIEnv *, jclass, jobject);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
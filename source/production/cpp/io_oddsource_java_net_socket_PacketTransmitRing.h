@@ -0,0 +1,61 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class io_oddsource_java_net_socket_PacketTransmitRing */
+
+#ifndef _Included_io_oddsource_java_net_socket_PacketTransmitRing
+#define _Included_io_oddsource_java_net_socket_PacketTransmitRing
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef io_oddsource_java_net_socket_PacketTransmitRing_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_PacketTransmitRing_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_STATUS_AVAILABLE
+#define io_oddsource_java_net_socket_PacketTransmitRing_STATUS_AVAILABLE 0L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_STATUS_SEND_REQUEST
+#define io_oddsource_java_net_socket_PacketTransmitRing_STATUS_SEND_REQUEST 1L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_STATUS_SENDING
+#define io_oddsource_java_net_socket_PacketTransmitRing_STATUS_SENDING 2L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_STATUS_WRONG_FORMAT
+#define io_oddsource_java_net_socket_PacketTransmitRing_STATUS_WRONG_FORMAT 4L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_FRAME_STATUS
+#define io_oddsource_java_net_socket_PacketTransmitRing_FRAME_STATUS 0L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_FRAME_LENGTH
+#define io_oddsource_java_net_socket_PacketTransmitRing_FRAME_LENGTH 4L
+#undef io_oddsource_java_net_socket_PacketTransmitRing_FRAME_DATA
+#define io_oddsource_java_net_socket_PacketTransmitRing_FRAME_DATA 32L
+/*
+ * Class:     io_oddsource_java_net_socket_PacketTransmitRing
+ * Method:    map
+ * Signature: (IIII)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_map
+  (JNIEnv *, jclass, jint, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketTransmitRing
+ * Method:    submit
+ * Signature: (Ljava/nio/ByteBuffer;IIII)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_submit
+  (JNIEnv *, jclass, jobject, jint, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketTransmitRing
+ * Method:    send
+ * Signature: (IILjava/nio/ByteBuffer;IIIII)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_send
+  (JNIEnv *, jclass, jint, jint, jobject, jint, jint, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_PacketTransmitRing
+ * Method:    unmap
+ * Signature: (Ljava/nio/ByteBuffer;)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_PacketTransmitRing_unmap
+  (JNIEnv *, jclass, jobject);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
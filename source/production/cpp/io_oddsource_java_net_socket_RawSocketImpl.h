@@ -7,8 +7,18 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef io_oddsource_java_net_socket_RawSocketImpl_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_RawSocketImpl_READ_BUFFER_SIZE 65536L
 #undef io_oddsource_java_net_socket_RawSocketImpl_UNDEFINED
 #define io_oddsource_java_net_socket_RawSocketImpl_UNDEFINED -1L
+#undef io_oddsource_java_net_socket_RawSocketImpl_NON_BLOCKING
+#define io_oddsource_java_net_socket_RawSocketImpl_NON_BLOCKING -2L
+#undef io_oddsource_java_net_socket_RawSocketImpl_MAXIMUM_ETHERTYPE
+#define io_oddsource_java_net_socket_RawSocketImpl_MAXIMUM_ETHERTYPE 65535L
+#undef io_oddsource_java_net_socket_RawSocketImpl_CLOSING
+#define io_oddsource_java_net_socket_RawSocketImpl_CLOSING 1L
+#undef io_oddsource_java_net_socket_RawSocketImpl_TRANSFER
+#define io_oddsource_java_net_socket_RawSocketImpl_TRANSFER 2L
 /*
  * Class:     io_oddsource_java_net_socket_RawSocketImpl
  * Method:    nativeStaticInitialize
@@ -57,6 +67,134 @@ JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_setTimeou
 JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_getTimeout
   (JNIEnv *, jobject, jint, jint);
 
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    setReceiveTimestamps
+ * Signature: (IZ)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_setReceiveTimestamps
+  (JNIEnv *, jobject, jint, jboolean);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    attachFilter
+ * Signature: (I[S[B[B[I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_attachFilter
+  (JNIEnv *, jobject, jint, jshortArray, jbyteArray, jbyteArray, jintArray);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    detachFilter
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_detachFilter
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    shutdown
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_shutdown
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    open
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_open
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    openPacketSocket
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_openPacketSocket
+  (JNIEnv *, jclass, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    closeDescriptor
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_closeDescriptor
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    openWakeup
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_openWakeup
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    signalWakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_signalWakeup
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    close
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_close
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    sendDirect
+ * Signature: (IILjava/nio/ByteBuffer;II[BI)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendDirect
+  (JNIEnv *, jobject, jint, jint, jobject, jint, jint, jbyteArray, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    sendArray
+ * Signature: (II[BII[BI)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendArray
+  (JNIEnv *, jobject, jint, jint, jbyteArray, jint, jint, jbyteArray, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    receiveDirect
+ * Signature: (IILjava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveDirect
+  (JNIEnv *, jobject, jint, jint, jobject, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    receiveArray
+ * Signature: (II[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveArray
+  (JNIEnv *, jobject, jint, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    sendBatch
+ * Signature: (IILjava/nio/ByteBuffer;II[I[B[I[B[II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_sendBatch
+  (JNIEnv *, jobject, jint, jint, jobject, jint, jint, jintArray, jbyteArray, jintArray, jbyteArray, jintArray, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketImpl
+ * Method:    receiveBatch
+ * Signature: (IILjava/nio/ByteBuffer;II[I[B[I[B[I[JI)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketImpl_receiveBatch
+  (JNIEnv *, jobject, jint, jint, jobject, jint, jint, jintArray, jbyteArray, jintArray, jbyteArray, jintArray, jlongArray, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,89 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class io_oddsource_java_net_socket_RawSocketSelector */
+
+#ifndef _Included_io_oddsource_java_net_socket_RawSocketSelector
+#define _Included_io_oddsource_java_net_socket_RawSocketSelector
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef io_oddsource_java_net_socket_RawSocketSelector_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_RawSocketSelector_READ_BUFFER_SIZE 65536L
+#undef io_oddsource_java_net_socket_RawSocketSelector_OP_READ
+#define io_oddsource_java_net_socket_RawSocketSelector_OP_READ 1L
+#undef io_oddsource_java_net_socket_RawSocketSelector_OP_WRITE
+#define io_oddsource_java_net_socket_RawSocketSelector_OP_WRITE 4L
+#undef io_oddsource_java_net_socket_RawSocketSelector_DEFAULT_MAXIMUM_EVENTS
+#define io_oddsource_java_net_socket_RawSocketSelector_DEFAULT_MAXIMUM_EVENTS 1024L
+#undef io_oddsource_java_net_socket_RawSocketSelector_WAKEUP_KEY
+#define io_oddsource_java_net_socket_RawSocketSelector_WAKEUP_KEY -1L
+#undef io_oddsource_java_net_socket_RawSocketSelector_OPERATION_ADD
+#define io_oddsource_java_net_socket_RawSocketSelector_OPERATION_ADD 1L
+#undef io_oddsource_java_net_socket_RawSocketSelector_OPERATION_MODIFY
+#define io_oddsource_java_net_socket_RawSocketSelector_OPERATION_MODIFY 2L
+#undef io_oddsource_java_net_socket_RawSocketSelector_OPERATION_DELETE
+#define io_oddsource_java_net_socket_RawSocketSelector_OPERATION_DELETE 3L
+#undef io_oddsource_java_net_socket_RawSocketSelector_INDEFINITELY
+#define io_oddsource_java_net_socket_RawSocketSelector_INDEFINITELY -1L
+#undef io_oddsource_java_net_socket_RawSocketSelector_INITIAL_REGISTRATIONS
+#define io_oddsource_java_net_socket_RawSocketSelector_INITIAL_REGISTRATIONS 16L
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    getEventSize
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_getEventSize
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    createEpoll
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_createEpoll
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    createWakeup
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_createWakeup
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    control
+ * Signature: (IIIIIZ)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_control
+  (JNIEnv *, jclass, jint, jint, jint, jint, jint, jboolean);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    awaitEvents
+ * Signature: (IILjava/nio/ByteBuffer;I[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_awaitEvents
+  (JNIEnv *, jclass, jint, jint, jobject, jint, jintArray, jintArray, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    signal
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_signal
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_RawSocketSelector
+ * Method:    closeDescriptor
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_RawSocketSelector_closeDescriptor
+  (JNIEnv *, jclass, jint);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -7,29 +7,71 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef io_oddsource_java_net_socket_SocketUtilities_READ_BUFFER_SIZE
+#define io_oddsource_java_net_socket_SocketUtilities_READ_BUFFER_SIZE 65536L
 /*
  * Class:     io_oddsource_java_net_socket_SocketUtilities
- * Method:    getProtocolByName
- * Signature: (Ljava/lang/String;)Lio/oddsource/java/net/socket/Protocol;
+ * Method:    loadProtocolList
+ * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
+ */
+JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_loadProtocolList
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     io_oddsource_java_net_socket_SocketUtilities
+ * Method:    loadProtocolListUncached
+ * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
  */
-JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolByName
-  (JNIEnv *, jclass, jstring);
+JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_loadProtocolListUncached
+  (JNIEnv *, jclass);
 
 /*
  * Class:     io_oddsource_java_net_socket_SocketUtilities
- * Method:    getProtocolByNumber
- * Signature: (I)Lio/oddsource/java/net/socket/Protocol;
+ * Method:    raiseSocketError
+ * Signature: (IZ)V
  */
-JNIEXPORT jobject JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolByNumber
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_raiseSocketError
+  (JNIEnv *, jclass, jint, jboolean);
+
+/*
+ * Class:     io_oddsource_java_net_socket_SocketUtilities
+ * Method:    getSourceAddressForDestination
+ * Signature: ([BI)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getSourceAddressForDestination
+  (JNIEnv *, jclass, jbyteArray, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_SocketUtilities
+ * Method:    openRouteMonitor
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_openRouteMonitor
   (JNIEnv *, jclass, jint);
 
 /*
  * Class:     io_oddsource_java_net_socket_SocketUtilities
- * Method:    getProtocolList
- * Signature: ()[Lio/oddsource/java/net/socket/Protocol;
+ * Method:    requestRouteDump
+ * Signature: (IZI)V
  */
-JNIEXPORT jobjectArray JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_getProtocolList
-  (JNIEnv *, jclass);
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_requestRouteDump
+  (JNIEnv *, jclass, jint, jboolean, jint);
+
+/*
+ * Class:     io_oddsource_java_net_socket_SocketUtilities
+ * Method:    receiveRouteMonitor
+ * Signature: (ILjava/nio/ByteBuffer;)I
+ */
+JNIEXPORT jint JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_receiveRouteMonitor
+  (JNIEnv *, jclass, jint, jobject);
+
+/*
+ * Class:     io_oddsource_java_net_socket_SocketUtilities
+ * Method:    closeRouteMonitor
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_io_oddsource_java_net_socket_SocketUtilities_closeRouteMonitor
+  (JNIEnv *, jclass, jint);
 
 #ifdef __cplusplus
 }
@@ -41,6 +41,8 @@ public abstract class AbstractPacket implements Packet
 
     private InetAddress destinationAddress;
 
+    private long timestamp = Packet.NO_TIMESTAMP;
+
     /**
      * Constructor.
      *
@@ -120,6 +122,42 @@ public abstract class AbstractPacket implements Packet
         this.hopLimit = hopLimit;
     }
 
+    /**
+     * Sets the hop limit (IPv6) or Time-To-Live (IPv4) of an incoming packet as it was received. Decoders use this
+     * instead of {@link #setHopLimit(short)} because a received packet, such as the packet quoted in an ICMP time
+     * exceeded message, can have a hop limit of zero. Only packets of source
+     * {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} have received hop limits.
+     *
+     * @param hopLimit The received hop limit / TTL
+     *
+     * @return {@code true} if this packet is of source {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and
+     *     setting the hop limit is allowed, {@code false} otherwise.
+     *
+     * @throws FinalizedPacketException if this packet is of source
+     *     {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and was finalized prior to the invocation of this
+     *     method.
+     * @throws IllegalHopLimitException if {@code hopLimit} was not an integer between 0 and 255 (inclusive).
+     */
+    protected final boolean setReceivedHopLimit(final short hopLimit)
+        throws FinalizedPacketException, IllegalHopLimitException
+    {
+        if(this.source != Packet.Source.INCOMING)
+        {
+            return false;
+        }
+        if(this.isFinalized())
+        {
+            throw new FinalizedPacketException();
+        }
+        if(hopLimit < 0 || hopLimit > Packet.MAX_HOP_LIMIT)
+        {
+            throw new IllegalHopLimitException();
+        }
+
+        this.hopLimit = hopLimit;
+        return true;
+    }
+
     /**
      * Protects this packet against future modification. This method will be called when an incoming packet has been
      * received and parsing completed. If this packet has already been finalized, this method should be a no-op.
@@ -141,6 +179,46 @@ public abstract class AbstractPacket implements Packet
         return this.finalized;
     }
 
+    /**
+     * Gets the time the kernel received this packet, if it was received on a socket with receive timestamps enabled.
+     *
+     * @return the kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}.
+     */
+    @Override
+    public final long getTimestamp()
+    {
+        return this.timestamp;
+    }
+
+    /**
+     * Sets the time the kernel received this packet. Only packets of source
+     * {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} have timestamps.
+     *
+     * @param timestamp The kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}
+     *
+     * @return {@code true} if this packet is of source {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and
+     *     setting the timestamp is allowed, {@code false} otherwise.
+     *
+     * @throws FinalizedPacketException if this packet is of source
+     *     {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and was finalized prior to the invocation of this
+     *     method.
+     */
+    @Override
+    public final boolean setTimestamp(final long timestamp) throws FinalizedPacketException
+    {
+        if(this.source != Packet.Source.INCOMING)
+        {
+            return false;
+        }
+        if(this.isFinalized())
+        {
+            throw new FinalizedPacketException();
+        }
+
+        this.timestamp = timestamp;
+        return true;
+    }
+
     /**
      * Gets the source of this packet (incoming or outgoing). To fulfill the contract of this interface, the source of
      * the packet should be set in the packet constructor and should never again be changed (it should be a final
@@ -0,0 +1,883 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.oddsource.java.net.socket.exception.RawSocketException;
+
+/**
+ * Sends and receives on any number of raw sockets asynchronously, using the Linux {@code io_uring} facility (kernel
+ * 5.19 or newer). Thousands of operations can be in flight at once, and one poller thread, started with the engine,
+ * reaps every completion.<br>
+ * <br>
+ * Operations are only queued when they are started; {@link #submit()} hands every queued operation to the kernel with
+ * a single system call, so a burst of operations costs one system call instead of one each:
+ * <pre>
+ * for(final ByteBuffer buffer : buffers)
+ * {
+ *     engine.receive(socket, buffer, buffer, handler);
+ * }
+ * engine.submit();
+ * </pre>
+ * Only direct buffers can be used, and a buffer must not be touched until its operation completes. On success, the
+ * buffer's position is advanced past the bytes transferred. Sockets registered with
+ * {@link #registerSocket(RawSocketImpl)} and buffers registered with {@link #registerBuffers(ByteBuffer...)} spare the
+ * kernel from looking up the socket and pinning the buffer's pages on every operation.<br>
+ * <br>
+ * Futures are completed, and handlers are called, on the poller thread, so they must not block. Operations may be
+ * started and submitted from any thread. Closing the engine cancels every operation in flight, which then fails with
+ * {@link AsynchronousCloseException}; it does not close the sockets. Closing a socket that is not registered does not
+ * cancel its operations, which keep the socket alive in the kernel until they complete or the engine is closed.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class AsyncRawSocketEngine extends DynamicNativeObject implements Closeable
+{
+    /**
+     * The default number of entries in the submission queue.
+     */
+    public static final int DEFAULT_QUEUE_DEPTH = 256;
+
+    /**
+     * The default maximum number of operations in flight at once.
+     */
+    public static final int DEFAULT_MAXIMUM_IN_FLIGHT = 4096;
+
+    /**
+     * The default maximum number of registered sockets.
+     */
+    public static final int DEFAULT_MAXIMUM_REGISTERED_SOCKETS = 64;
+
+    /*
+     * Error numbers (see errno.h). The native library fails to compile if these do not match the system headers.
+     */
+    private static final int ERROR_INTERRUPTED = 4;
+
+    private static final int ERROR_CANCELED = 125;
+
+    private static final int NO_OPERATION = -1;
+
+    private static final int COMPLETION_BATCH = 256;
+
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> FUTURE_HANDLER =
+        new CompletionHandler<Integer, CompletableFuture<Integer>>()
+        {
+            @Override
+            public void completed(final Integer result, final CompletableFuture<Integer> future)
+            {
+                future.complete(result);
+            }
+
+            @Override
+            public void failed(final Throwable cause, final CompletableFuture<Integer> future)
+            {
+                future.completeExceptionally(cause);
+            }
+        };
+
+    private final Object submitLock = new Object();
+
+    private final long handle;
+
+    private final int maximumRegisteredSockets;
+
+    private final Map<RawSocketImpl, Integer> registeredSockets = new IdentityHashMap<>();
+
+    private final int[] freeFiles;
+
+    private int freeFileCount;
+
+    private final Map<ByteBuffer, Integer> registeredBuffers = new IdentityHashMap<>();
+
+    private final Object[] handlers;
+
+    private final Object[] attachments;
+
+    private final ByteBuffer[] buffers;
+
+    private final int[] positions;
+
+    private final int[] freeOperations;
+
+    private int freeOperationCount;
+
+    private int inFlight;
+
+    private boolean buffersRegistered;
+
+    private boolean closed;
+
+    private final Thread poller;
+
+    /**
+     * Constructor with the default queue depth and limits.
+     *
+     * @throws IOException if the ring cannot be created.
+     */
+    public AsyncRawSocketEngine() throws IOException
+    {
+        this(
+            AsyncRawSocketEngine.DEFAULT_QUEUE_DEPTH, AsyncRawSocketEngine.DEFAULT_MAXIMUM_IN_FLIGHT,
+            AsyncRawSocketEngine.DEFAULT_MAXIMUM_REGISTERED_SOCKETS
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queueDepth The number of entries in the submission queue, which bounds how many operations one
+     *     {@link #submit()} hands over without filling the queue; the kernel rounds it up to a power of two
+     * @param maximumInFlight The maximum number of operations started but not yet completed
+     * @param maximumRegisteredSockets The maximum number of sockets that can be registered, or zero for none
+     *
+     * @throws IOException if the ring cannot be created.
+     */
+    public AsyncRawSocketEngine(final int queueDepth, final int maximumInFlight, final int maximumRegisteredSockets)
+        throws IOException
+    {
+        super();
+
+        if(queueDepth < 1)
+        {
+            throw new IllegalArgumentException("Parameter queueDepth must be positive.");
+        }
+        if(maximumInFlight < 1)
+        {
+            throw new IllegalArgumentException("Parameter maximumInFlight must be positive.");
+        }
+        if(maximumRegisteredSockets < 0)
+        {
+            throw new IllegalArgumentException("Parameter maximumRegisteredSockets cannot be negative.");
+        }
+
+        this.maximumRegisteredSockets = maximumRegisteredSockets;
+        this.handlers = new Object[maximumInFlight];
+        this.attachments = new Object[maximumInFlight];
+        this.buffers = new ByteBuffer[maximumInFlight];
+        this.positions = new int[maximumInFlight];
+        this.freeOperations = new int[maximumInFlight];
+        for(int i = 0; i < maximumInFlight; i++)
+        {
+            this.freeOperations[i] = maximumInFlight - 1 - i;
+        }
+        this.freeOperationCount = maximumInFlight;
+        this.freeFiles = new int[maximumRegisteredSockets];
+        for(int i = 0; i < maximumRegisteredSockets; i++)
+        {
+            this.freeFiles[i] = maximumRegisteredSockets - 1 - i;
+        }
+        this.freeFileCount = maximumRegisteredSockets;
+
+        this.handle = AsyncRawSocketEngine.create(queueDepth, maximumInFlight, maximumRegisteredSockets);
+
+        this.poller = new Thread(this::poll, "AsyncRawSocketEngine Poller");
+        this.poller.setDaemon(true);
+        this.poller.start();
+    }
+
+    /**
+     * Registers the socket with the kernel, so that operations on it skip the file descriptor lookup. Registering a
+     * socket again does nothing. The socket stays registered until it is unregistered, it is closed, or the engine is
+     * closed. Closing a registered socket first cancels its operations in flight, which then fail with
+     * {@link AsynchronousCloseException}, and frees its place in the kernel's file table.
+     *
+     * @param socket The open socket to register
+     *
+     * @throws IOException if the socket is not open or cannot be registered.
+     */
+    public void registerSocket(final RawSocketImpl socket) throws IOException
+    {
+        if(socket == null)
+        {
+            throw new IllegalArgumentException("Parameter socket cannot be null!");
+        }
+
+        // the socket lock is never taken while holding the submit lock, because closing the socket takes them the other
+        // way around
+        socket.addEngine(this);
+        boolean registered = false;
+        try
+        {
+            synchronized(this.submitLock)
+            {
+                this.checkOpen();
+                if(this.registeredSockets.containsKey(socket))
+                {
+                    registered = true;
+                    return;
+                }
+                if(this.freeFileCount == 0)
+                {
+                    throw new IllegalStateException(
+                        "No more than " + this.maximumRegisteredSockets + " sockets can be registered."
+                    );
+                }
+
+                // a socket closed since it was added clears its descriptor before it releases this engine
+                final int descriptor = socket.getNativeSocketIdentifier();
+                if(descriptor == RawSocketImpl.UNDEFINED)
+                {
+                    throw new SocketException("Socket closed.");
+                }
+
+                final int index = this.freeFiles[this.freeFileCount - 1];
+                AsyncRawSocketEngine.registerSocket(this.handle, index, descriptor);
+                this.freeFileCount--;
+                this.registeredSockets.put(socket, index);
+                registered = true;
+            }
+        }
+        finally
+        {
+            if(!registered)
+            {
+                socket.removeEngine(this);
+            }
+        }
+    }
+
+    /**
+     * Cancels the socket's operations in flight, which then fail with {@link AsynchronousCloseException}, and removes
+     * the socket from the kernel's file table. Unregistering a socket that is not registered does nothing.
+     *
+     * @param socket The socket to unregister
+     *
+     * @throws IOException if the socket cannot be unregistered.
+     */
+    public void unregisterSocket(final RawSocketImpl socket) throws IOException
+    {
+        if(socket == null)
+        {
+            throw new IllegalArgumentException("Parameter socket cannot be null!");
+        }
+
+        try
+        {
+            this.release(socket, socket.getNativeSocketIdentifier());
+        }
+        finally
+        {
+            socket.removeEngine(this);
+        }
+    }
+
+    /**
+     * Forgets a registered socket before its file descriptor is closed, cancelling its operations in flight and
+     * emptying its place in the file table.
+     *
+     * @param socket The socket
+     * @param descriptor The socket's file descriptor, which must still be open
+     *
+     * @throws IOException if the cancellation or the file table update fails.
+     */
+    void release(final RawSocketImpl socket, final int descriptor) throws IOException
+    {
+        synchronized(this.submitLock)
+        {
+            final Integer index = this.registeredSockets.remove(socket);
+            if(index == null)
+            {
+                return;
+            }
+
+            try
+            {
+                if(!this.closed && descriptor != RawSocketImpl.UNDEFINED)
+                {
+                    if(!AsyncRawSocketEngine.prepareCancelSocket(this.handle, descriptor))
+                    {
+                        AsyncRawSocketEngine.submit(this.handle);
+                        AsyncRawSocketEngine.prepareCancelSocket(this.handle, descriptor);
+                    }
+                    AsyncRawSocketEngine.submit(this.handle);
+                    AsyncRawSocketEngine.registerSocket(this.handle, index, RawSocketImpl.UNDEFINED);
+                }
+            }
+            finally
+            {
+                this.freeFiles[this.freeFileCount++] = index;
+            }
+        }
+    }
+
+    /**
+     * Registers buffers with the kernel, which pins their pages once instead of on every receive. This can be done only
+     * once per engine. Receives use the registered form only when passed one of these exact buffer instances (not a
+     * duplicate or slice of one). Raw sockets do not support zero-copy sends, so sends copy from every buffer alike.
+     *
+     * @param buffers The direct buffers to register, which must stay reachable until the engine is closed
+     *
+     * @throws IOException if the buffers cannot be registered.
+     */
+    public void registerBuffers(final ByteBuffer... buffers) throws IOException
+    {
+        if(buffers == null || buffers.length == 0)
+        {
+            throw new IllegalArgumentException("Parameter buffers cannot be null or empty!");
+        }
+        for(final ByteBuffer buffer : buffers)
+        {
+            AsyncRawSocketEngine.checkBuffer(buffer);
+        }
+
+        synchronized(this.submitLock)
+        {
+            this.checkOpen();
+            if(this.buffersRegistered)
+            {
+                throw new IllegalStateException("Buffers have already been registered.");
+            }
+
+            AsyncRawSocketEngine.registerBuffers(this.handle, buffers);
+            this.buffersRegistered = true;
+            for(int i = 0; i < buffers.length; i++)
+            {
+                this.registeredBuffers.put(buffers[i], i);
+            }
+        }
+    }
+
+    /**
+     * Queues a send of the buffer's remaining bytes to the destination.
+     *
+     * @param socket The socket to send on
+     * @param buffer The direct buffer to send from
+     * @param destination The destination address
+     *
+     * @return a future completed with the number of bytes sent.
+     */
+    public CompletableFuture<Integer> send(
+        final RawSocketImpl socket, final ByteBuffer buffer, final InetAddress destination
+    )
+    {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        this.send(socket, buffer, destination, future, AsyncRawSocketEngine.FUTURE_HANDLER);
+        return future;
+    }
+
+    /**
+     * Queues a send of the buffer's remaining bytes to the destination.
+     *
+     * @param socket The socket to send on
+     * @param buffer The direct buffer to send from
+     * @param destination The destination address
+     * @param attachment The object passed to the handler
+     * @param handler The handler called, on the poller thread, with the number of bytes sent
+     * @param <A> The attachment type
+     */
+    public <A> void send(
+        final RawSocketImpl socket, final ByteBuffer buffer, final InetAddress destination, final A attachment,
+        final CompletionHandler<Integer, ? super A> handler
+    )
+    {
+        if(destination == null)
+        {
+            throw new IllegalArgumentException("Parameter destination cannot be null!");
+        }
+        AsyncRawSocketEngine.checkOperation(socket, buffer, handler);
+
+        final byte[] address = destination.getAddress();
+        synchronized(this.submitLock)
+        {
+            final int operation = this.startOperation(buffer, attachment, handler);
+            final Integer file = this.registeredSockets.get(socket);
+            while(!AsyncRawSocketEngine.prepareSend(
+                this.handle, operation, file == null ? socket.getNativeSocketIdentifier() : file, file != null, buffer,
+                buffer.position(), buffer.remaining(), address
+            ))
+            {
+                this.submitFullQueue(operation);
+            }
+        }
+    }
+
+    /**
+     * Queues a receive of one packet into the buffer's remaining space.
+     *
+     * @param socket The socket to receive on
+     * @param buffer The direct buffer to receive into
+     *
+     * @return a future completed with the number of bytes received.
+     */
+    public CompletableFuture<Integer> receive(final RawSocketImpl socket, final ByteBuffer buffer)
+    {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        this.receive(socket, buffer, future, AsyncRawSocketEngine.FUTURE_HANDLER);
+        return future;
+    }
+
+    /**
+     * Queues a receive of one packet into the buffer's remaining space.
+     *
+     * @param socket The socket to receive on
+     * @param buffer The direct buffer to receive into
+     * @param attachment The object passed to the handler
+     * @param handler The handler called, on the poller thread, with the number of bytes received
+     * @param <A> The attachment type
+     */
+    public <A> void receive(
+        final RawSocketImpl socket, final ByteBuffer buffer, final A attachment,
+        final CompletionHandler<Integer, ? super A> handler
+    )
+    {
+        AsyncRawSocketEngine.checkOperation(socket, buffer, handler);
+        if(buffer.isReadOnly())
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be read-only!");
+        }
+
+        synchronized(this.submitLock)
+        {
+            final int operation = this.startOperation(buffer, attachment, handler);
+            final Integer file = this.registeredSockets.get(socket);
+            final Integer bufferIndex = this.registeredBuffers.get(buffer);
+            while(!AsyncRawSocketEngine.prepareReceive(
+                this.handle, operation, file == null ? socket.getNativeSocketIdentifier() : file, file != null, buffer,
+                buffer.position(), buffer.remaining(), bufferIndex == null ? -1 : bufferIndex
+            ))
+            {
+                this.submitFullQueue(operation);
+            }
+        }
+    }
+
+    /**
+     * Hands every queued operation to the kernel.
+     *
+     * @return the number of operations handed over.
+     *
+     * @throws IOException if submitting fails.
+     */
+    public int submit() throws IOException
+    {
+        synchronized(this.submitLock)
+        {
+            this.checkOpen();
+
+            return AsyncRawSocketEngine.submit(this.handle);
+        }
+    }
+
+    /**
+     * Gets the number of operations started but not yet completed.
+     *
+     * @return the number of operations in flight.
+     */
+    public int getInFlightCount()
+    {
+        synchronized(this.submitLock)
+        {
+            return this.inFlight;
+        }
+    }
+
+    /**
+     * Indicates whether this engine is open.
+     *
+     * @return {@code true} until the engine is closed.
+     */
+    public boolean isOpen()
+    {
+        synchronized(this.submitLock)
+        {
+            return !this.closed;
+        }
+    }
+
+    /**
+     * Cancels every operation in flight and waits for the poller thread to fail them and release the ring. If called
+     * from a handler, this returns without waiting.
+     *
+     * @throws IOException if the cancellation cannot be submitted.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final List<RawSocketImpl> registered;
+        synchronized(this.submitLock)
+        {
+            if(this.closed)
+            {
+                return;
+            }
+            this.closed = true;
+            registered = new ArrayList<>(this.registeredSockets.keySet());
+
+            if(!AsyncRawSocketEngine.prepareCancelAll(this.handle))
+            {
+                AsyncRawSocketEngine.submit(this.handle);
+                AsyncRawSocketEngine.prepareCancelAll(this.handle);
+            }
+            AsyncRawSocketEngine.submit(this.handle);
+        }
+
+        for(final RawSocketImpl socket : registered)
+        {
+            socket.removeEngine(this);
+        }
+
+        if(Thread.currentThread() != this.poller)
+        {
+            try
+            {
+                this.poller.join();
+            }
+            catch(final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int startOperation(final ByteBuffer buffer, final Object attachment, final Object handler)
+    {
+        this.checkOpen();
+        if(this.freeOperationCount == 0)
+        {
+            throw new RejectedExecutionException(
+                "No more than " + this.handlers.length + " operations can be in flight."
+            );
+        }
+
+        final int operation = this.freeOperations[--this.freeOperationCount];
+        this.handlers[operation] = handler;
+        this.attachments[operation] = attachment;
+        this.buffers[operation] = buffer;
+        this.positions[operation] = buffer.position();
+        this.inFlight++;
+        return operation;
+    }
+
+    private void submitFullQueue(final int operation)
+    {
+        try
+        {
+            if(AsyncRawSocketEngine.submit(this.handle) > 0)
+            {
+                return;
+            }
+        }
+        catch(final IOException e)
+        {
+            this.abandonOperation(operation);
+            throw new RejectedExecutionException("Could not submit the full queue.", e);
+        }
+
+        this.abandonOperation(operation);
+        throw new RejectedExecutionException("The submission queue is full.");
+    }
+
+    private void abandonOperation(final int operation)
+    {
+        this.handlers[operation] = null;
+        this.attachments[operation] = null;
+        this.buffers[operation] = null;
+        this.freeOperations[this.freeOperationCount++] = operation;
+        this.inFlight--;
+    }
+
+    private void poll()
+    {
+        final int[] operations = new int[AsyncRawSocketEngine.COMPLETION_BATCH];
+        final int[] results = new int[AsyncRawSocketEngine.COMPLETION_BATCH];
+
+        try
+        {
+            while(true)
+            {
+                final int count = AsyncRawSocketEngine.awaitCompletions(this.handle, operations, results);
+                for(int i = 0; i < count; i++)
+                {
+                    this.complete(operations[i], results[i]);
+                }
+
+                synchronized(this.submitLock)
+                {
+                    if(this.closed && this.inFlight == 0)
+                    {
+                        return;
+                    }
+                }
+            }
+        }
+        catch(final IOException e)
+        {
+            synchronized(this.submitLock)
+            {
+                this.closed = true;
+            }
+            for(int operation = 0; operation < this.handlers.length; operation++)
+            {
+                this.finish(operation, 0, e);
+            }
+        }
+        finally
+        {
+            AsyncRawSocketEngine.destroy(this.handle);
+        }
+    }
+
+    private void complete(final int operation, final int result)
+    {
+        if(operation == AsyncRawSocketEngine.NO_OPERATION)
+        {
+            return;
+        }
+
+        if(result >= 0)
+        {
+            this.finish(operation, result, null);
+            return;
+        }
+
+        final int error = -result;
+        final boolean closed;
+        synchronized(this.submitLock)
+        {
+            closed = this.closed;
+        }
+        // only closing the engine or a registered socket cancels operations
+        if(error == AsyncRawSocketEngine.ERROR_CANCELED || closed && error == AsyncRawSocketEngine.ERROR_INTERRUPTED)
+        {
+            this.finish(operation, 0, new AsynchronousCloseException());
+        }
+        else
+        {
+            this.finish(operation, 0, new RawSocketException(AsyncRawSocketEngine.describeError(error)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void finish(final int operation, final int result, final Throwable failure)
+    {
+        final CompletionHandler<Integer, Object> handler;
+        final Object attachment;
+        final ByteBuffer buffer;
+        final int position;
+        synchronized(this.submitLock)
+        {
+            handler = (CompletionHandler<Integer, Object>) this.handlers[operation];
+            if(handler == null)
+            {
+                return;
+            }
+            attachment = this.attachments[operation];
+            buffer = this.buffers[operation];
+            position = this.positions[operation];
+            this.abandonOperation(operation);
+        }
+
+        try
+        {
+            if(failure == null)
+            {
+                buffer.position(position + result);
+                handler.completed(result, attachment);
+            }
+            else
+            {
+                handler.failed(failure, attachment);
+            }
+        }
+        catch(final RuntimeException e)
+        {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private void checkOpen()
+    {
+        if(this.closed)
+        {
+            throw new IllegalStateException("The engine is closed.");
+        }
+    }
+
+    private static void checkOperation(final RawSocketImpl socket, final ByteBuffer buffer, final Object handler)
+    {
+        if(socket == null)
+        {
+            throw new IllegalArgumentException("Parameter socket cannot be null!");
+        }
+        if(handler == null)
+        {
+            throw new IllegalArgumentException("Parameter handler cannot be null!");
+        }
+        AsyncRawSocketEngine.checkBuffer(buffer);
+    }
+
+    private static void checkBuffer(final ByteBuffer buffer)
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(!buffer.isDirect())
+        {
+            throw new IllegalArgumentException("Parameter buffer must be a direct buffer!");
+        }
+    }
+
+    /**
+     * Creates and maps the ring, sizing the completion queue so every operation in flight fits, and registers an
+     * empty file table.
+     *
+     * @param queueDepth The number of submission queue entries
+     * @param maximumInFlight The maximum number of operations in flight
+     * @param maximumRegisteredSockets The size of the file table, or zero for none
+     *
+     * @return the native ring handle.
+     *
+     * @throws IOException if the ring cannot be created.
+     */
+    private static native long create(int queueDepth, int maximumInFlight, int maximumRegisteredSockets)
+        throws IOException;
+
+    /**
+     * Puts a socket in the registered file table, or empties its place.
+     *
+     * @param handle The native ring handle
+     * @param index The file table index
+     * @param socket The socket identifier / file descriptor, or -1 to empty the place.
+     *
+     * @throws IOException if the socket cannot be registered.
+     */
+    private static native void registerSocket(long handle, int index, int socket) throws IOException;
+
+    /**
+     * Registers buffers with the ring.
+     *
+     * @param handle The native ring handle
+     * @param buffers The direct buffers
+     *
+     * @throws IOException if the buffers cannot be registered.
+     */
+    private static native void registerBuffers(long handle, ByteBuffer[] buffers) throws IOException;
+
+    /**
+     * Queues a send.
+     *
+     * @param handle The native ring handle
+     * @param operation The operation slot, returned with the completion
+     * @param socket The file table index if {@code fixedFile}, otherwise the socket identifier / file descriptor.
+     * @param fixedFile Whether {@code socket} is a file table index
+     * @param buffer The direct buffer
+     * @param offset The offset of the data in the buffer
+     * @param length The length of the data
+     * @param address The destination address, 4 or 16 bytes
+     *
+     * @return whether the send was queued, {@code false} if the submission queue is full.
+     */
+    private static native boolean prepareSend(
+        long handle, int operation, int socket, boolean fixedFile, ByteBuffer buffer, int offset, int length,
+        byte[] address
+    );
+
+    /**
+     * Queues a receive.
+     *
+     * @param handle The native ring handle
+     * @param operation The operation slot, returned with the completion
+     * @param socket The file table index if {@code fixedFile}, otherwise the socket identifier / file descriptor.
+     * @param fixedFile Whether {@code socket} is a file table index
+     * @param buffer The direct buffer
+     * @param offset The offset in the buffer to receive at
+     * @param length The space available
+     * @param bufferIndex The registered buffer index, or -1
+     *
+     * @return whether the receive was queued, {@code false} if the submission queue is full.
+     */
+    private static native boolean prepareReceive(
+        long handle, int operation, int socket, boolean fixedFile, ByteBuffer buffer, int offset, int length,
+        int bufferIndex
+    );
+
+    /**
+     * Queues a cancellation of every operation in flight, whose own completion carries {@link #NO_OPERATION}.
+     *
+     * @param handle The native ring handle
+     *
+     * @return whether the cancellation was queued, {@code false} if the submission queue is full.
+     */
+    private static native boolean prepareCancelAll(long handle);
+
+    /**
+     * Queues a cancellation of every operation in flight on the socket, whether it was started through the file table
+     * or not, whose own completion carries {@link #NO_OPERATION}.
+     *
+     * @param handle The native ring handle
+     * @param socket The socket identifier / file descriptor.
+     *
+     * @return whether the cancellation was queued, {@code false} if the submission queue is full.
+     */
+    private static native boolean prepareCancelSocket(long handle, int socket);
+
+    /**
+     * Hands every queued entry to the kernel.
+     *
+     * @param handle The native ring handle
+     *
+     * @return the number of entries handed over.
+     *
+     * @throws IOException if submitting fails.
+     */
+    private static native int submit(long handle) throws IOException;
+
+    /**
+     * Waits for at least one completion, then reaps as many as fit in the arrays.
+     *
+     * @param handle The native ring handle
+     * @param operations Receives the operation slot of each completion
+     * @param results Receives the result of each completion, a byte count or a negated error number
+     *
+     * @return the number of completions reaped.
+     *
+     * @throws IOException if waiting fails.
+     */
+    private static native int awaitCompletions(long handle, int[] operations, int[] results) throws IOException;
+
+    /**
+     * Describes an error number.
+     *
+     * @param error The error number
+     *
+     * @return the system's description of the error.
+     */
+    private static native String describeError(int error);
+
+    /**
+     * Unmaps and closes the ring.
+     *
+     * @param handle The native ring handle
+     */
+    private static native void destroy(long handle);
+}
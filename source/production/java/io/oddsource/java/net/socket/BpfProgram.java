@@ -0,0 +1,781 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, validated classic BPF program for attaching to a socket with
+ * {@link RawSocket#attachFilter(BpfProgram)}. The kernel runs the program on every packet before queueing it on the
+ * socket, and drops the packet if the program returns zero, so unwanted packets never reach the application.<br>
+ * <br>
+ * Programs are assembled with a {@link Builder}, which resolves jumps to named labels. Offsets are relative to the
+ * start of the packet as the socket sees it: the IP header for raw IP sockets, the link-layer header for
+ * {@code AF_PACKET} sockets. Offsets added to {@link #NETWORK_OFFSET} or {@link #LINK_LAYER_OFFSET} are relative to
+ * those headers instead, whatever the socket sees, and absolute loads from {@link #ANCILLARY_OFFSET} plus a field read
+ * the kernel's metadata about the packet. For example, this program accepts only ICMP echo replies on a raw IPv4 ICMP
+ * socket:
+ * <pre>
+ * final BpfProgram program = BpfProgram.builder()
+ *     .loadIndexHeaderLength(0)           // X = the IP header length
+ *     .loadByteIndirect(0)                // A = the ICMP type
+ *     .jumpIfEqual(0, "accept", "drop")   // echo reply?
+ *     .label("accept").accept()
+ *     .label("drop").drop()
+ *     .build();
+ * </pre>
+ *
+ * @see RawSocket#attachFilter(BpfProgram)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BpfProgram
+{
+    /**
+     * The maximum number of instructions in a program ({@code BPF_MAXINSNS}).
+     */
+    public static final int MAXIMUM_INSTRUCTIONS = 4096;
+
+    /**
+     * The maximum distance of a conditional jump, which is encoded in one byte.
+     */
+    public static final int MAXIMUM_JUMP = 255;
+
+    /**
+     * Added to an ancillary field, such as {@link #ANCILLARY_PROTOCOL}, to load the field instead of packet data
+     * ({@code SKF_AD_OFF}); see {@link Builder#loadAncillary(int)}.
+     */
+    public static final int ANCILLARY_OFFSET = -0x1000;
+
+    /**
+     * Added to an offset to load relative to the start of the network header instead of the packet
+     * ({@code SKF_NET_OFF}).
+     */
+    public static final int NETWORK_OFFSET = -0x100000;
+
+    /**
+     * Added to an offset to load relative to the start of the link-layer header instead of the packet
+     * ({@code SKF_LL_OFF}).
+     */
+    public static final int LINK_LAYER_OFFSET = -0x200000;
+
+    /**
+     * The ancillary field holding the packet's EtherType, in host order ({@code SKF_AD_PROTOCOL}).
+     */
+    public static final int ANCILLARY_PROTOCOL = 0;
+
+    /**
+     * The ancillary field holding the packet type, such as {@code PACKET_HOST} ({@code SKF_AD_PKTTYPE}).
+     */
+    public static final int ANCILLARY_PACKET_TYPE = 4;
+
+    /**
+     * The ancillary field holding the index of the interface the packet arrived on ({@code SKF_AD_IFINDEX}).
+     */
+    public static final int ANCILLARY_INTERFACE_INDEX = 8;
+
+    /**
+     * The ancillary field holding the packet's firewall mark ({@code SKF_AD_MARK}).
+     */
+    public static final int ANCILLARY_MARK = 20;
+
+    /**
+     * The ancillary field holding the packet's receive queue ({@code SKF_AD_QUEUE}).
+     */
+    public static final int ANCILLARY_QUEUE = 24;
+
+    /**
+     * The ancillary field holding the hardware type of the interface ({@code SKF_AD_HATYPE}).
+     */
+    public static final int ANCILLARY_HARDWARE_TYPE = 28;
+
+    /**
+     * The ancillary field holding the packet's receive hash ({@code SKF_AD_RXHASH}).
+     */
+    public static final int ANCILLARY_RECEIVE_HASH = 32;
+
+    /**
+     * The ancillary field holding the processor running the filter ({@code SKF_AD_CPU}).
+     */
+    public static final int ANCILLARY_CPU = 36;
+
+    /**
+     * The ancillary field holding the packet's VLAN tag ({@code SKF_AD_VLAN_TAG}).
+     */
+    public static final int ANCILLARY_VLAN_TAG = 44;
+
+    /**
+     * The ancillary field holding whether the packet has a VLAN tag ({@code SKF_AD_VLAN_TAG_PRESENT}).
+     */
+    public static final int ANCILLARY_VLAN_TAG_PRESENT = 48;
+
+    /**
+     * The ancillary field holding the offset of the packet's payload ({@code SKF_AD_PAY_OFFSET}).
+     */
+    public static final int ANCILLARY_PAYLOAD_OFFSET = 52;
+
+    /**
+     * The ancillary field holding a random number ({@code SKF_AD_RANDOM}).
+     */
+    public static final int ANCILLARY_RANDOM = 56;
+
+    /**
+     * The ancillary field holding the packet's VLAN protocol ({@code SKF_AD_VLAN_TPID}).
+     */
+    public static final int ANCILLARY_VLAN_PROTOCOL = 60;
+
+    /*
+     * Instruction classes, sizes, modes, and operations (see linux/filter.h and linux/bpf_common.h).
+     */
+    static final int LD = 0x00;
+
+    static final int LDX = 0x01;
+
+    static final int ALU = 0x04;
+
+    static final int JMP = 0x05;
+
+    static final int RET = 0x06;
+
+    static final int MISC = 0x07;
+
+    static final int W = 0x00;
+
+    static final int H = 0x08;
+
+    static final int B = 0x10;
+
+    static final int IMM = 0x00;
+
+    static final int ABS = 0x20;
+
+    static final int IND = 0x40;
+
+    static final int LEN = 0x80;
+
+    static final int MSH = 0xA0;
+
+    static final int AND = 0x50;
+
+    static final int JA = 0x00;
+
+    static final int JEQ = 0x10;
+
+    static final int JGT = 0x20;
+
+    static final int JGE = 0x30;
+
+    static final int JSET = 0x40;
+
+    static final int K = 0x00;
+
+    static final int X = 0x08;
+
+    static final int A = 0x10;
+
+    static final int TAX = 0x00;
+
+    private static final int CLASS_MASK = 0x07;
+
+    private static final int RETURN_ALL = 0xFFFFFFFF;
+
+    private static final int ANCILLARY_LIMIT = 64;
+
+    private final short[] codes;
+
+    private final byte[] jumpsTrue;
+
+    private final byte[] jumpsFalse;
+
+    private final int[] constants;
+
+    /**
+     * Constructor.
+     *
+     * @param codes The operation code of each instruction
+     * @param jumpsTrue The distance of each instruction's true jump
+     * @param jumpsFalse The distance of each instruction's false jump
+     * @param constants The constant of each instruction
+     */
+    private BpfProgram(final short[] codes, final byte[] jumpsTrue, final byte[] jumpsFalse, final int[] constants)
+    {
+        this.codes = codes;
+        this.jumpsTrue = jumpsTrue;
+        this.jumpsFalse = jumpsFalse;
+        this.constants = constants;
+    }
+
+    /**
+     * Creates a builder for a new program.
+     *
+     * @return a new, empty builder.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the number of instructions in this program.
+     *
+     * @return the instruction count.
+     */
+    public int getLength()
+    {
+        return this.codes.length;
+    }
+
+    /**
+     * Gets the operation code of an instruction.
+     *
+     * @param instruction The instruction index
+     *
+     * @return the operation code.
+     */
+    public int getCode(final int instruction)
+    {
+        return this.codes[instruction] & 0xFFFF;
+    }
+
+    /**
+     * Gets the number of instructions a conditional jump skips when its condition is true.
+     *
+     * @param instruction The instruction index
+     *
+     * @return the jump distance.
+     */
+    public int getJumpTrue(final int instruction)
+    {
+        return this.jumpsTrue[instruction] & 0xFF;
+    }
+
+    /**
+     * Gets the number of instructions a conditional jump skips when its condition is false.
+     *
+     * @param instruction The instruction index
+     *
+     * @return the jump distance.
+     */
+    public int getJumpFalse(final int instruction)
+    {
+        return this.jumpsFalse[instruction] & 0xFF;
+    }
+
+    /**
+     * Gets the constant operand of an instruction.
+     *
+     * @param instruction The instruction index
+     *
+     * @return the constant.
+     */
+    public int getConstant(final int instruction)
+    {
+        return this.constants[instruction];
+    }
+
+    short[] getCodes()
+    {
+        return this.codes;
+    }
+
+    byte[] getJumpsTrue()
+    {
+        return this.jumpsTrue;
+    }
+
+    byte[] getJumpsFalse()
+    {
+        return this.jumpsFalse;
+    }
+
+    int[] getConstants()
+    {
+        return this.constants;
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        if(this == other)
+        {
+            return true;
+        }
+        if(!(other instanceof BpfProgram))
+        {
+            return false;
+        }
+
+        final BpfProgram program = (BpfProgram) other;
+        return Arrays.equals(this.codes, program.codes) && Arrays.equals(this.jumpsTrue, program.jumpsTrue) &&
+               Arrays.equals(this.jumpsFalse, program.jumpsFalse) && Arrays.equals(this.constants, program.constants);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Arrays.hashCode(this.codes) + Arrays.hashCode(this.constants);
+    }
+
+    /**
+     * Assembles a {@link BpfProgram} one instruction at a time. Conditional and unconditional jumps name their targets
+     * with labels, which must be defined (with {@link #label(String)}) later in the program, since classic BPF only
+     * jumps forward. {@link #build()} resolves the labels and validates the program. Builders are not thread safe.
+     */
+    public static final class Builder
+    {
+        private final List<Instruction> instructions = new ArrayList<>();
+
+        private final Map<String, Integer> labels = new HashMap<>();
+
+        /**
+         * Constructor.
+         */
+        private Builder()
+        {
+        }
+
+        /**
+         * Defines a label at the next instruction.
+         *
+         * @param name The label name, unique within the program
+         *
+         * @return this builder.
+         */
+        public Builder label(final String name)
+        {
+            if(name == null || name.isEmpty())
+            {
+                throw new IllegalArgumentException("Parameter name cannot be null or empty!");
+            }
+            if(this.labels.containsKey(name))
+            {
+                throw new IllegalStateException("Label " + name + " is already defined.");
+            }
+
+            this.labels.put(name, this.instructions.size());
+            return this;
+        }
+
+        /**
+         * Loads the 32-bit big-endian word at the offset into the accumulator.
+         *
+         * @param offset The offset in the packet
+         *
+         * @return this builder.
+         */
+        public Builder loadWord(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.W | BpfProgram.ABS, Builder.checkOffset(offset, true));
+        }
+
+        /**
+         * Loads the 16-bit big-endian half-word at the offset into the accumulator.
+         *
+         * @param offset The offset in the packet
+         *
+         * @return this builder.
+         */
+        public Builder loadHalfWord(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.H | BpfProgram.ABS, Builder.checkOffset(offset, true));
+        }
+
+        /**
+         * Loads the byte at the offset into the accumulator.
+         *
+         * @param offset The offset in the packet
+         *
+         * @return this builder.
+         */
+        public Builder loadByte(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.B | BpfProgram.ABS, Builder.checkOffset(offset, true));
+        }
+
+        /**
+         * Loads the 32-bit big-endian word at the index register plus the offset into the accumulator.
+         *
+         * @param offset The offset from the index register
+         *
+         * @return this builder.
+         */
+        public Builder loadWordIndirect(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.W | BpfProgram.IND, Builder.checkOffset(offset, false));
+        }
+
+        /**
+         * Loads the 16-bit big-endian half-word at the index register plus the offset into the accumulator.
+         *
+         * @param offset The offset from the index register
+         *
+         * @return this builder.
+         */
+        public Builder loadHalfWordIndirect(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.H | BpfProgram.IND, Builder.checkOffset(offset, false));
+        }
+
+        /**
+         * Loads the byte at the index register plus the offset into the accumulator.
+         *
+         * @param offset The offset from the index register
+         *
+         * @return this builder.
+         */
+        public Builder loadByteIndirect(final int offset)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.B | BpfProgram.IND, Builder.checkOffset(offset, false));
+        }
+
+        /**
+         * Loads an ancillary field, the kernel's metadata about the packet, into the accumulator.
+         *
+         * @param field The field, such as {@link BpfProgram#ANCILLARY_PROTOCOL}
+         *
+         * @return this builder.
+         */
+        public Builder loadAncillary(final int field)
+        {
+            if(field < 0 || field >= BpfProgram.ANCILLARY_LIMIT || field % 4 != 0)
+            {
+                throw new IllegalArgumentException("Parameter field must be one of the ANCILLARY_ fields.");
+            }
+
+            return this.loadWord(BpfProgram.ANCILLARY_OFFSET + field);
+        }
+
+        /**
+         * Loads the packet length into the accumulator.
+         *
+         * @return this builder.
+         */
+        public Builder loadLength()
+        {
+            return this.add(BpfProgram.LD | BpfProgram.W | BpfProgram.LEN, 0);
+        }
+
+        /**
+         * Loads a constant into the accumulator.
+         *
+         * @param value The constant
+         *
+         * @return this builder.
+         */
+        public Builder loadConstant(final int value)
+        {
+            return this.add(BpfProgram.LD | BpfProgram.W | BpfProgram.IMM, value);
+        }
+
+        /**
+         * Loads the length of the IPv4 header starting at the offset ({@code 4 * (packet[offset] & 0xF)}) into the
+         * index register, for indirect loads from the transport header.
+         *
+         * @param offset The offset of the IPv4 header in the packet
+         *
+         * @return this builder.
+         */
+        public Builder loadIndexHeaderLength(final int offset)
+        {
+            return this.add(BpfProgram.LDX | BpfProgram.B | BpfProgram.MSH, Builder.checkOffset(offset, false));
+        }
+
+        /**
+         * Loads a constant into the index register.
+         *
+         * @param value The constant
+         *
+         * @return this builder.
+         */
+        public Builder loadIndexConstant(final int value)
+        {
+            return this.add(BpfProgram.LDX | BpfProgram.W | BpfProgram.IMM, value);
+        }
+
+        /**
+         * Copies the accumulator into the index register.
+         *
+         * @return this builder.
+         */
+        public Builder copyToIndex()
+        {
+            return this.add(BpfProgram.MISC | BpfProgram.TAX, 0);
+        }
+
+        /**
+         * Masks the accumulator with a constant.
+         *
+         * @param mask The mask
+         *
+         * @return this builder.
+         */
+        public Builder and(final int mask)
+        {
+            return this.add(BpfProgram.ALU | BpfProgram.AND | BpfProgram.K, mask);
+        }
+
+        /**
+         * Jumps unconditionally.
+         *
+         * @param target The label to jump to
+         *
+         * @return this builder.
+         */
+        public Builder jump(final String target)
+        {
+            Builder.checkLabel(target);
+
+            this.instructions.add(new Instruction(BpfProgram.JMP | BpfProgram.JA, 0, target, null));
+            return this;
+        }
+
+        /**
+         * Jumps to one of two labels depending on whether the accumulator equals the constant.
+         *
+         * @param value The constant
+         * @param ifTrue The label to jump to if the accumulator equals the constant
+         * @param ifFalse The label to jump to otherwise
+         *
+         * @return this builder.
+         */
+        public Builder jumpIfEqual(final int value, final String ifTrue, final String ifFalse)
+        {
+            return this.addJump(BpfProgram.JEQ, value, ifTrue, ifFalse);
+        }
+
+        /**
+         * Jumps to one of two labels depending on whether the accumulator is greater than the constant (unsigned).
+         *
+         * @param value The constant
+         * @param ifTrue The label to jump to if the accumulator is greater
+         * @param ifFalse The label to jump to otherwise
+         *
+         * @return this builder.
+         */
+        public Builder jumpIfGreater(final int value, final String ifTrue, final String ifFalse)
+        {
+            return this.addJump(BpfProgram.JGT, value, ifTrue, ifFalse);
+        }
+
+        /**
+         * Jumps to one of two labels depending on whether the accumulator is greater than or equal to the constant
+         * (unsigned).
+         *
+         * @param value The constant
+         * @param ifTrue The label to jump to if the accumulator is greater or equal
+         * @param ifFalse The label to jump to otherwise
+         *
+         * @return this builder.
+         */
+        public Builder jumpIfGreaterOrEqual(final int value, final String ifTrue, final String ifFalse)
+        {
+            return this.addJump(BpfProgram.JGE, value, ifTrue, ifFalse);
+        }
+
+        /**
+         * Jumps to one of two labels depending on whether the accumulator has any of the constant's bits set.
+         *
+         * @param bits The bits to test
+         * @param ifTrue The label to jump to if any bit is set
+         * @param ifFalse The label to jump to otherwise
+         *
+         * @return this builder.
+         */
+        public Builder jumpIfAnySet(final int bits, final String ifTrue, final String ifFalse)
+        {
+            return this.addJump(BpfProgram.JSET, bits, ifTrue, ifFalse);
+        }
+
+        /**
+         * Ends the program, keeping up to the given number of bytes of the packet (zero drops it).
+         *
+         * @param length The number of bytes to keep
+         *
+         * @return this builder.
+         */
+        public Builder returnLength(final int length)
+        {
+            return this.add(BpfProgram.RET | BpfProgram.K, length);
+        }
+
+        /**
+         * Ends the program, keeping as many bytes of the packet as the accumulator holds.
+         *
+         * @return this builder.
+         */
+        public Builder returnAccumulator()
+        {
+            return this.add(BpfProgram.RET | BpfProgram.A, 0);
+        }
+
+        /**
+         * Ends the program, keeping the whole packet.
+         *
+         * @return this builder.
+         */
+        public Builder accept()
+        {
+            return this.returnLength(BpfProgram.RETURN_ALL);
+        }
+
+        /**
+         * Ends the program, dropping the packet.
+         *
+         * @return this builder.
+         */
+        public Builder drop()
+        {
+            return this.returnLength(0);
+        }
+
+        /**
+         * Resolves every label and validates the program: it must have between one and
+         * {@link #MAXIMUM_INSTRUCTIONS} instructions, end with a return, and only jump forward to defined labels
+         * within reach.
+         *
+         * @return the program.
+         */
+        public BpfProgram build()
+        {
+            final int length = this.instructions.size();
+            if(length == 0 || length > BpfProgram.MAXIMUM_INSTRUCTIONS)
+            {
+                throw new IllegalStateException(
+                    "A program must have between 1 and " + BpfProgram.MAXIMUM_INSTRUCTIONS + " instructions."
+                );
+            }
+            if((this.instructions.get(length - 1).code & BpfProgram.CLASS_MASK) != BpfProgram.RET)
+            {
+                throw new IllegalStateException("A program must end with a return instruction.");
+            }
+
+            final short[] codes = new short[length];
+            final byte[] jumpsTrue = new byte[length];
+            final byte[] jumpsFalse = new byte[length];
+            final int[] constants = new int[length];
+            for(int i = 0; i < length; i++)
+            {
+                final Instruction instruction = this.instructions.get(i);
+                codes[i] = (short) instruction.code;
+                constants[i] = instruction.constant;
+
+                if(instruction.code == (BpfProgram.JMP | BpfProgram.JA))
+                {
+                    constants[i] = this.resolve(i, instruction.ifTrue, Integer.MAX_VALUE, "unconditional");
+                }
+                else if(instruction.ifTrue != null)
+                {
+                    jumpsTrue[i] = (byte) this.resolve(i, instruction.ifTrue, BpfProgram.MAXIMUM_JUMP, "conditional");
+                    jumpsFalse[i] = (byte) this.resolve(i, instruction.ifFalse, BpfProgram.MAXIMUM_JUMP, "conditional");
+                }
+            }
+
+            return new BpfProgram(codes, jumpsTrue, jumpsFalse, constants);
+        }
+
+        private int resolve(final int instruction, final String label, final int maximum, final String kind)
+        {
+            final Integer target = this.labels.get(label);
+            if(target == null)
+            {
+                throw new IllegalStateException("Label " + label + " is not defined.");
+            }
+            if(target <= instruction || target >= this.instructions.size())
+            {
+                throw new IllegalStateException(
+                    "Label " + label + " must be an instruction after the jump at " + instruction + "."
+                );
+            }
+
+            final int distance = target - instruction - 1;
+            if(distance > maximum)
+            {
+                throw new IllegalStateException(
+                    "Label " + label + " is " + distance + " instructions away; " + kind + " jumps reach at most " +
+                    maximum + "."
+                );
+            }
+            return distance;
+        }
+
+        private Builder add(final int code, final int constant)
+        {
+            this.instructions.add(new Instruction(code, constant, null, null));
+            return this;
+        }
+
+        private Builder addJump(final int operation, final int value, final String ifTrue, final String ifFalse)
+        {
+            Builder.checkLabel(ifTrue);
+            Builder.checkLabel(ifFalse);
+
+            this.instructions.add(new Instruction(BpfProgram.JMP | operation | BpfProgram.K, value, ifTrue, ifFalse));
+            return this;
+        }
+
+        private static int checkOffset(final int offset, final boolean absolute)
+        {
+            // the kernel only understands negative offsets relative to a header, and ancillary fields in absolute loads
+            final boolean relative = offset >= BpfProgram.LINK_LAYER_OFFSET && offset < BpfProgram.ANCILLARY_OFFSET;
+            final boolean ancillary = absolute && offset >= BpfProgram.ANCILLARY_OFFSET &&
+                                      offset < BpfProgram.ANCILLARY_OFFSET + BpfProgram.ANCILLARY_LIMIT;
+            if(offset < 0 && !relative && !ancillary)
+            {
+                throw new IllegalArgumentException(
+                    "Parameter offset cannot be negative, except relative to NETWORK_OFFSET or LINK_LAYER_OFFSET, or " +
+                    "an ancillary field in an absolute load."
+                );
+            }
+
+            return offset;
+        }
+
+        private static void checkLabel(final String label)
+        {
+            if(label == null)
+            {
+                throw new IllegalArgumentException("Jump labels cannot be null!");
+            }
+        }
+    }
+
+    /**
+     * An instruction whose jump targets are still labels.
+     */
+    private static final class Instruction
+    {
+        private final int code;
+
+        private final int constant;
+
+        private final String ifTrue;
+
+        private final String ifFalse;
+
+        Instruction(final int code, final int constant, final String ifTrue, final String ifFalse)
+        {
+            this.code = code;
+            this.constant = constant;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chooses the implementation of the ones' complement sums of {@link InternetChecksum}. This version, for Java 8
+ * through 21, always chooses the scalar loop; the multi-release JAR replaces it on Java 22 and newer with a version
+ * that can choose the Vector API.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ChecksumBackend
+{
+    /**
+     * Constructor.
+     */
+    private ChecksumBackend()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Indicates whether sums are computed with the Vector API.
+     *
+     * @return {@code false}.
+     */
+    static boolean isVectorized()
+    {
+        return false;
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of an array. The range has been checked.
+     *
+     * @param data The data
+     * @param offset The offset of the range in the array
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int sum(final byte[] data, final int offset, final int length)
+    {
+        return InternetChecksum.scalarSum(data, offset, length);
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of a buffer. The range has been checked.
+     *
+     * @param buffer The buffer
+     * @param offset The absolute offset of the range in the buffer
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int sum(final ByteBuffer buffer, final int offset, final int length)
+    {
+        return InternetChecksum.scalarSum(buffer, offset, length);
+    }
+}
@@ -16,7 +16,9 @@
 package io.oddsource.java.net.socket;
 
 /**
- * A group of constants to support I/O operations.
+ * A group of constants to support I/O operations. The native library fills all of them with one call when this class
+ * is initialized. A constant the operating system does not define is {@link #NOT_DEFINED} instead, and is rejected
+ * wherever it is used as a socket option or level.
  *
  * @author Nick Williams
  * @version 1.0.0
@@ -24,6 +26,11 @@ package io.oddsource.java.net.socket;
  */
 public final class Constants extends DynamicNativeObject
 {
+    /**
+     * The value of every constant that the operating system does not define.
+     */
+    public static final int NOT_DEFINED = Integer.MIN_VALUE;
+
     /*
      Protocol constants
      */
@@ -76,6 +83,12 @@ public final class Constants extends DynamicNativeObject
      */
     public static final int IP_OPTIONS;
 
+    /**
+     * A flag to pass the interface and destination address of incoming packets to the user in an IP_PKTINFO control
+     * message, or to specify the source address of outgoing packets.
+     */
+    public static final int IP_PKTINFO;
+
     /**
      * A flag to pass all incoming IP options to the user in a IP_OPTIONS control message.
      */
@@ -114,6 +127,12 @@ public final class Constants extends DynamicNativeObject
      */
     public static final int IPV6_MAXHLIM;
 
+    /**
+     * A flag to pass the interface and destination address of incoming packets to the user in an IPV6_PKTINFO control
+     * message.
+     */
+    public static final int IPV6_RECVPKTINFO;
+
     /**
      * Unknown purpose. May be removed soon.
      */
@@ -198,44 +217,111 @@ public final class Constants extends DynamicNativeObject
      */
     public static final int PF_INET6;
 
+    /*
+     Positions of the constants in the array the native library fills. Constants.cpp uses the generated header's copies,
+     so adding a constant takes a position here and one line there, and still only one native call.
+     */
+    private static final int IPPROTO_IP_INDEX = 0;
+
+    private static final int IPPROTO_IPIP_INDEX = 1;
+
+    private static final int IPPROTO_IPV4_INDEX = 2;
+
+    private static final int IPPROTO_IPV6_INDEX = 3;
+
+    private static final int IPPROTO_TCP_INDEX = 4;
+
+    private static final int IPPROTO_UDP_INDEX = 5;
+
+    private static final int IPPROTO_ICMP_INDEX = 6;
+
+    private static final int IP_HDRINCL_INDEX = 7;
+
+    private static final int IP_OPTIONS_INDEX = 8;
+
+    private static final int IP_PKTINFO_INDEX = 9;
+
+    private static final int IP_RECVOPTS_INDEX = 10;
+
+    private static final int IP_RECVRETOPTS_INDEX = 11;
+
+    private static final int IP_TOS_INDEX = 12;
+
+    private static final int IP_TTL_INDEX = 13;
+
+    private static final int IPV6_HDRINCL_INDEX = 14;
+
+    private static final int IPV6_HOPLIMIT_INDEX = 15;
+
+    private static final int IPV6_MAXHLIM_INDEX = 16;
+
+    private static final int IPV6_RECVPKTINFO_INDEX = 17;
+
+    private static final int IPV6_VERSION_INDEX = 18;
+
+    private static final int SO_RCVBUF_INDEX = 19;
+
+    private static final int SO_RCVTIMEO_INDEX = 20;
+
+    private static final int SO_SNDBUF_INDEX = 21;
+
+    private static final int SO_SNDTIMEO_INDEX = 22;
+
+    private static final int SOL_SOCKET_INDEX = 23;
+
+    private static final int AF_INET_INDEX = 24;
+
+    private static final int AF_INET6_INDEX = 25;
+
+    private static final int PF_INET_INDEX = 26;
+
+    private static final int PF_INET6_INDEX = 27;
+
+    private static final int CONSTANT_COUNT = 28;
+
     static
     {
-        IPPROTO_IP = Constants.registerNumericConstant("IPPROTO_IP");
-        IPPROTO_IPIP = Constants.registerNumericConstant("IPPROTO_IPIP");
-        IPPROTO_IPV4 = Constants.registerNumericConstant("IPPROTO_IPV4");
-        IPPROTO_IPV6 = Constants.registerNumericConstant("IPPROTO_IPV6");
-        IPPROTO_TCP = Constants.registerNumericConstant("IPPROTO_TCP");
-        IPPROTO_UDP = Constants.registerNumericConstant("IPPROTO_UDP");
-        IPPROTO_ICMP = Constants.registerNumericConstant("IPPROTO_ICMP");
-
-        IP_HDRINCL = Constants.registerNumericConstant("IP_HDRINCL");
-        IP_OPTIONS = Constants.registerNumericConstant("IP_OPTIONS");
-        IP_RECVOPTS = Constants.registerNumericConstant("IP_RECVOPTS");
-        IP_RECVRETOPTS = Constants.registerNumericConstant("IP_RECVRETOPTS");
-        IP_TOS = Constants.registerNumericConstant("IP_TOS");
-        IP_TTL = Constants.registerNumericConstant("IP_TTL");
-
-        IPV6_HDRINCL = Constants.registerNumericConstant("IPV6_HDRINCL");
-        IPV6_HOPLIMIT = Constants.registerNumericConstant("IPV6_HOPLIMIT");
-        IPV6_MAXHLIM = Constants.registerNumericConstant("IPV6_MAXHLIM");
-        IPV6_VERSION = Constants.registerNumericConstant("IPV6_VERSION");
-
-        SO_RCVBUF = Constants.registerNumericConstant("SO_RCVBUF");
-        SO_RCVTIMEO = Constants.registerNumericConstant("SO_RCVTIMEO");
-        SO_SNDBUF = Constants.registerNumericConstant("SO_SNDBUF");
-        SO_SNDTIMEO = Constants.registerNumericConstant("SO_SNDTIMEO");
+        final int[] values = new int[Constants.CONSTANT_COUNT];
+        Constants.loadNumericConstants(values);
+
+        IPPROTO_IP = values[Constants.IPPROTO_IP_INDEX];
+        IPPROTO_IPIP = values[Constants.IPPROTO_IPIP_INDEX];
+        IPPROTO_IPV4 = values[Constants.IPPROTO_IPV4_INDEX];
+        IPPROTO_IPV6 = values[Constants.IPPROTO_IPV6_INDEX];
+        IPPROTO_TCP = values[Constants.IPPROTO_TCP_INDEX];
+        IPPROTO_UDP = values[Constants.IPPROTO_UDP_INDEX];
+        IPPROTO_ICMP = values[Constants.IPPROTO_ICMP_INDEX];
+
+        IP_HDRINCL = values[Constants.IP_HDRINCL_INDEX];
+        IP_OPTIONS = values[Constants.IP_OPTIONS_INDEX];
+        IP_PKTINFO = values[Constants.IP_PKTINFO_INDEX];
+        IP_RECVOPTS = values[Constants.IP_RECVOPTS_INDEX];
+        IP_RECVRETOPTS = values[Constants.IP_RECVRETOPTS_INDEX];
+        IP_TOS = values[Constants.IP_TOS_INDEX];
+        IP_TTL = values[Constants.IP_TTL_INDEX];
+
+        IPV6_HDRINCL = values[Constants.IPV6_HDRINCL_INDEX];
+        IPV6_HOPLIMIT = values[Constants.IPV6_HOPLIMIT_INDEX];
+        IPV6_MAXHLIM = values[Constants.IPV6_MAXHLIM_INDEX];
+        IPV6_RECVPKTINFO = values[Constants.IPV6_RECVPKTINFO_INDEX];
+        IPV6_VERSION = values[Constants.IPV6_VERSION_INDEX];
+
+        SO_RCVBUF = values[Constants.SO_RCVBUF_INDEX];
+        SO_RCVTIMEO = values[Constants.SO_RCVTIMEO_INDEX];
+        SO_SNDBUF = values[Constants.SO_SNDBUF_INDEX];
+        SO_SNDTIMEO = values[Constants.SO_SNDTIMEO_INDEX];
 
         SOL_IP = Constants.IPPROTO_IP;
         SOL_IPV4 = Constants.IPPROTO_IPV4;
         SOL_IPV6 = Constants.IPPROTO_IPV6;
-        SOL_SOCKET = Constants.registerNumericConstant("SOL_SOCKET");
+        SOL_SOCKET = values[Constants.SOL_SOCKET_INDEX];
         SOL_TCP = Constants.IPPROTO_TCP;
         SOL_UDP = Constants.IPPROTO_UDP;
 
-        AF_INET = Constants.registerNumericConstant("AF_INET");
-        AF_INET6 = Constants.registerNumericConstant("AF_INET6");
-        PF_INET = Constants.registerNumericConstant("PF_INET");
-        PF_INET6 = Constants.registerNumericConstant("PF_INET6");
+        AF_INET = values[Constants.AF_INET_INDEX];
+        AF_INET6 = values[Constants.AF_INET6_INDEX];
+        PF_INET = values[Constants.PF_INET_INDEX];
+        PF_INET6 = values[Constants.PF_INET6_INDEX];
     }
 
     /**
@@ -247,12 +333,22 @@ public final class Constants extends DynamicNativeObject
     }
 
     /**
-     * Takes the name of a constant, finds the C equivalent of that constant, and returns the value of that
-     * constant. See Constants.cpp for more details on what this method does.
+     * Determines whether the operating system defines a constant.
+     *
+     * @param constant The constant
      *
-     * @param constantName The name of the constant to register the value for
+     * @return whether the constant is not {@link #NOT_DEFINED}.
+     */
+    public static boolean isDefined(final int constant)
+    {
+        return constant != Constants.NOT_DEFINED;
+    }
+
+    /**
+     * Fills the array with the values of the constants, at the positions given by the {@code *_INDEX} constants, and
+     * with {@link #NOT_DEFINED} for every constant the operating system does not define. See Constants.cpp.
      *
-     * @return the integer value of the constant.
+     * @param values The array to fill, which must have {@code CONSTANT_COUNT} elements
      */
-    private static native int registerNumericConstant(String constantName);
+    private static native void loadNumericConstants(int[] values);
 }
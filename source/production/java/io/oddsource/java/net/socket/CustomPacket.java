@@ -15,6 +15,8 @@
  */
 package io.oddsource.java.net.socket;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import io.oddsource.java.net.socket.exception.FinalizedPacketException;
@@ -45,6 +47,43 @@ public class CustomPacket extends AbstractPacket
         super(source);
     }
 
+    /**
+     * Returns the entire packet represented in bytes, copying the header and payload into one new array.
+     *
+     * @return the entire packet (header followed by content).
+     */
+    @Override
+    public byte[] getPacketData()
+    {
+        final byte[] data = Arrays.copyOf(this.headerData, this.headerData.length + this.payloadData.length);
+        System.arraycopy(this.payloadData, 0, data, this.headerData.length, this.payloadData.length);
+        return data;
+    }
+
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, copying straight from the internal arrays.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the packet, in which case nothing is
+     *     written.
+     */
+    @Override
+    public int writePacketData(final ByteBuffer buffer)
+    {
+        final int length = this.headerData.length + this.payloadData.length;
+        if(buffer.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(this.headerData).put(this.payloadData);
+        return length;
+    }
+
     /**
      * Gets the content of the packet IP header. A copy of the internal array is made to avoid external modification.
      *
@@ -15,12 +15,13 @@
  */
 package io.oddsource.java.net.socket;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
 import java.util.Locale;
 
 import io.oddsource.java.net.socket.exception.RawSocketRuntimeException;
@@ -48,6 +49,8 @@ class DynamicNativeObject
 
     private static final String LIBRARY_EXTENSION_WINDOWS = ".dll";
 
+    private static final int READ_BUFFER_SIZE = 65536;
+
     static
     {
         final String fileName;
@@ -73,22 +76,10 @@ class DynamicNativeObject
 
         try
         {
-            final File tempFile = File.createTempFile(fileName, fileExtension);
-            tempFile.deleteOnExit();
-            if(!tempFile.exists())
-            {
-                throw new RawSocketRuntimeException(
-                    "Failed to create temporary file " + tempFile.getAbsolutePath() + "."
-                );
-            }
+            final byte[] library = DynamicNativeObject.readLibrary(fileName + fileExtension);
+            final Path path = DynamicNativeObject.installLibrary(fileName, fileExtension, library);
 
-            final URL url = DynamicNativeObject.class.getResource(fileName + fileExtension);
-            try(final InputStream input = url.openStream())
-            {
-                Files.copy(input, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            }
-
-            System.load(tempFile.getAbsolutePath());
+            System.load(path.toAbsolutePath().toString());
         }
         catch(final IOException e)
         {
@@ -106,4 +97,55 @@ class DynamicNativeObject
     {
 
     }
+
+    private static byte[] readLibrary(final String resourceName) throws IOException
+    {
+        final URL url = DynamicNativeObject.class.getResource(resourceName);
+        if(url == null)
+        {
+            throw new IOException("The dynamic library " + resourceName + " is not on the class path.");
+        }
+
+        try(final InputStream input = url.openStream())
+        {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(DynamicNativeObject.READ_BUFFER_SIZE);
+            final byte[] buffer = new byte[DynamicNativeObject.READ_BUFFER_SIZE];
+            int read;
+            while((read = input.read(buffer)) != -1)
+            {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private static Path installLibrary(final String fileName, final String fileExtension, final byte[] library)
+        throws IOException
+    {
+        try
+        {
+            return NativeLibraryCache.getDefault().install(fileName, fileExtension, library);
+        }
+        catch(final IOException e)
+        {
+            // an unusable cache must not stop the library from loading
+            return DynamicNativeObject.writeTemporaryLibrary(fileName, fileExtension, library);
+        }
+    }
+
+    private static Path writeTemporaryLibrary(final String fileName, final String fileExtension, final byte[] library)
+        throws IOException
+    {
+        final File tempFile = File.createTempFile(fileName, fileExtension);
+        tempFile.deleteOnExit();
+        if(!tempFile.exists())
+        {
+            throw new RawSocketRuntimeException(
+                "Failed to create temporary file " + tempFile.getAbsolutePath() + "."
+            );
+        }
+
+        Files.write(tempFile.toPath(), library);
+        return tempFile.toPath();
+    }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The base of the flyweight header views, which read and write the fields of a header in place in a buffer instead of
+ * copying the packet into a {@link Packet}. A view is created once and then moved from packet to packet with its
+ * {@code wrap} method, so reading a field of a received packet allocates nothing:
+ * <pre>
+ * final Ipv4HeaderView header = new Ipv4HeaderView();
+ * while(...)
+ * {
+ *     buffer.clear();
+ *     socket.receive(buffer);
+ *     if(header.wrap(buffer, 0).getHopLimit() &lt; minimum) ...
+ * }
+ * </pre>
+ * Fields are always in network byte order, whatever the order of the buffer. The view does not copy or keep the
+ * buffer's position or limit, only its offset; changing the buffer's contents changes what the view reads. A
+ * {@code java.lang.foreign.MemorySegment} can be viewed through {@code segment.asByteBuffer()}, which shares its
+ * memory.<br>
+ * <br>
+ * Views are not thread safe.
+ *
+ * @see io.oddsource.java.net.socket.ip4.Ipv4HeaderView
+ * @see io.oddsource.java.net.socket.ip6.Ipv6HeaderView
+ * @see IcmpView
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public abstract class HeaderView
+{
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int SHORT_MASK = 0xFFFF;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    /**
+     * Constructor. The view must be wrapped around a buffer before it is used.
+     */
+    protected HeaderView()
+    {
+
+    }
+
+    /**
+     * Moves this view to the header at the offset in the buffer.
+     *
+     * @param buffer The buffer holding the header
+     * @param offset The absolute offset of the header in the buffer
+     * @param minimumLength The number of bytes the header needs at least
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or too short for the header.
+     */
+    protected final void attach(final ByteBuffer buffer, final int offset, final int minimumLength)
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || offset > buffer.limit() - minimumLength)
+        {
+            throw new IllegalArgumentException(
+                "The buffer is too short for a " + minimumLength + "-byte header at offset " + offset + "."
+            );
+        }
+
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /**
+     * Get the buffer this view is wrapped around.
+     *
+     * @return the buffer, or {@code null} if the view has not been wrapped around one.
+     */
+    public final ByteBuffer getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * Get the absolute offset of the header in the buffer.
+     *
+     * @return the offset.
+     */
+    public final int getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * Get the length of the header.
+     *
+     * @return the header length, in bytes.
+     */
+    public abstract int getHeaderLength();
+
+    /**
+     * Get the absolute offset in the buffer of the first byte after the header.
+     *
+     * @return the payload offset.
+     */
+    public int getPayloadOffset()
+    {
+        return this.offset + this.getHeaderLength();
+    }
+
+    /**
+     * Read an unsigned byte of the header.
+     *
+     * @param index The index of the byte relative to the start of the header
+     *
+     * @return the byte, from 0 to 255.
+     */
+    protected final int getUnsignedByte(final int index)
+    {
+        return this.buffer.get(this.offset + index) & HeaderView.BYTE_MASK;
+    }
+
+    /**
+     * Write a byte of the header.
+     *
+     * @param index The index of the byte relative to the start of the header
+     * @param value The byte, of which only the low eight bits are written
+     */
+    protected final void putByte(final int index, final int value)
+    {
+        this.buffer.put(this.offset + index, (byte) value);
+    }
+
+    /**
+     * Read an unsigned 16-bit field of the header in network byte order.
+     *
+     * @param index The index of the field relative to the start of the header
+     *
+     * @return the field, from 0 to 65535.
+     */
+    protected final int getUnsignedShort(final int index)
+    {
+        final short value = this.buffer.getShort(this.offset + index);
+        return (this.buffer.order() == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes(value)) &
+               HeaderView.SHORT_MASK;
+    }
+
+    /**
+     * Write a 16-bit field of the header in network byte order.
+     *
+     * @param index The index of the field relative to the start of the header
+     * @param value The field, of which only the low 16 bits are written
+     */
+    protected final void putShort(final int index, final int value)
+    {
+        final short field = (short) value;
+        this.buffer.putShort(
+            this.offset + index, this.buffer.order() == ByteOrder.BIG_ENDIAN ? field : Short.reverseBytes(field)
+        );
+    }
+
+    /**
+     * Read a 32-bit field of the header in network byte order.
+     *
+     * @param index The index of the field relative to the start of the header
+     *
+     * @return the field.
+     */
+    protected final int getInt(final int index)
+    {
+        final int value = this.buffer.getInt(this.offset + index);
+        return this.buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+
+    /**
+     * Write a 32-bit field of the header in network byte order.
+     *
+     * @param index The index of the field relative to the start of the header
+     * @param value The field
+     */
+    protected final void putInt(final int index, final int value)
+    {
+        this.buffer.putInt(this.offset + index, this.buffer.order() == ByteOrder.BIG_ENDIAN ? value :
+                                                Integer.reverseBytes(value));
+    }
+
+    /**
+     * Copy bytes of the header into an array.
+     *
+     * @param index The index of the first byte relative to the start of the header
+     * @param destination The array to copy into, from its start
+     * @param length The number of bytes to copy
+     *
+     * @throws IllegalArgumentException if the array is {@code null} or shorter than {@code length}.
+     */
+    protected final void getBytes(final int index, final byte[] destination, final int length)
+    {
+        if(destination == null || destination.length < length)
+        {
+            throw new IllegalArgumentException("Parameter address must hold at least " + length + " bytes!");
+        }
+
+        for(int i = 0; i < length; i++)
+        {
+            destination[i] = this.buffer.get(this.offset + index + i);
+        }
+    }
+
+    /**
+     * Copy bytes from an array into the header.
+     *
+     * @param index The index of the first byte relative to the start of the header
+     * @param source The array to copy, all of which is copied
+     * @param length The number of bytes the array must have
+     *
+     * @throws IllegalArgumentException if the array is {@code null} or not {@code length} bytes long.
+     */
+    protected final void putBytes(final int index, final byte[] source, final int length)
+    {
+        if(source == null || source.length != length)
+        {
+            throw new IllegalArgumentException("Parameter address must be " + length + " bytes long!");
+        }
+
+        for(int i = 0; i < length; i++)
+        {
+            this.buffer.put(this.offset + index + i, source[i]);
+        }
+    }
+
+    /**
+     * Compute the Internet checksum (RFC 1071) of a range of the buffer, starting at the start of the header. The
+     * checksum field must be zero, or the result is the checksum of a header that already holds one, which is zero
+     * when that checksum is correct.
+     *
+     * @param length The number of bytes to sum
+     *
+     * @return the checksum, the ones' complement of the ones' complement sum of the 16-bit words.
+     */
+    protected final int checksum(final int length)
+    {
+        return InternetChecksum.compute(this.buffer, this.offset, length);
+    }
+
+    /**
+     * Writes one byte of the header and adjusts a checksum that covers it, from the start of the header, for the
+     * change in constant time, instead of computing the checksum again.
+     *
+     * @param index The index of the byte, relative to the start of the header
+     * @param value The value, of which only the low 8 bits are written
+     * @param checksumIndex The index of the checksum, relative to the start of the header
+     *
+     * @see InternetChecksum#update(int, int, int)
+     */
+    protected final void rewriteByte(final int index, final int value, final int checksumIndex)
+    {
+        final int wordIndex = index & ~1;
+        final int oldWord = this.getUnsignedShort(wordIndex);
+        this.putByte(index, value);
+        this.putShort(
+            checksumIndex,
+            InternetChecksum.update(this.getUnsignedShort(checksumIndex), oldWord, this.getUnsignedShort(wordIndex))
+        );
+    }
+
+    /**
+     * Writes a 16-bit field of the header, at an even index, and adjusts a checksum that covers it, from the start of
+     * the header, for the change in constant time.
+     *
+     * @param index The index of the field, relative to the start of the header
+     * @param value The value, of which only the low 16 bits are written
+     * @param checksumIndex The index of the checksum, relative to the start of the header
+     */
+    protected final void rewriteShort(final int index, final int value, final int checksumIndex)
+    {
+        final int oldWord = this.getUnsignedShort(index);
+        this.putShort(index, value);
+        this.putShort(checksumIndex, InternetChecksum.update(this.getUnsignedShort(checksumIndex), oldWord, value));
+    }
+
+    /**
+     * Writes a field of the header from an array, at an even index, and adjusts a checksum that covers it, from the
+     * start of the header, for the change in time proportional to the length of the field.
+     *
+     * @param index The index of the field, relative to the start of the header
+     * @param source The array holding the field
+     * @param length The length of the field, which must be the length of {@code source}
+     * @param checksumIndex The index of the checksum, relative to the start of the header
+     *
+     * @throws IllegalArgumentException if {@code source} is {@code null} or not {@code length} bytes long.
+     */
+    protected final void rewriteBytes(final int index, final byte[] source, final int length, final int checksumIndex)
+    {
+        final int oldSum = InternetChecksum.sum(this.buffer, this.offset + index, length);
+        this.putBytes(index, source, length);
+        final int newSum = InternetChecksum.sum(this.buffer, this.offset + index, length);
+        this.putShort(checksumIndex, InternetChecksum.update(this.getUnsignedShort(checksumIndex), oldSum, newSum));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A precomputed ICMP echo message (or any ICMP message whose rest of header is an identifier and a sequence number),
+ * optionally preceded by its IP header, for sending many probes quickly. The bytes of the message and the one's
+ * complement sum of everything covered by its checksum, except the identifier and sequence number, are computed once
+ * when the template is created; writing a probe then copies the bytes and patches only the identifier, the sequence
+ * number and the checksum, which is completed from the precomputed sum in constant time. Other fields of a written
+ * probe, such as the TTL, can be changed with the {@code rewrite} methods of the header views, which also keep the
+ * checksums correct in constant time. Templates are immutable and may be shared between threads.<br>
+ * <br>
+ * Templates are created with {@link io.oddsource.java.net.socket.ip4.Icmp4Packet#createTemplate(boolean)} and
+ * {@link io.oddsource.java.net.socket.ip6.Icmp6Packet#createTemplate(boolean)}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class IcmpTemplate
+{
+    private static final int SHORT_MASK = 0xFFFF;
+
+    private static final int BITS_PER_BYTE = 8;
+
+    private static final int CHECKSUM_INDEX = 2;
+
+    private static final int IDENTIFIER_INDEX = 4;
+
+    private static final int SEQUENCE_NUMBER_INDEX = 6;
+
+    private final byte[] data;
+
+    private final int messageOffset;
+
+    private final int baseSum;
+
+    /**
+     * Constructor. The checksum, identifier and sequence number of the message in {@code data} are ignored.
+     *
+     * @param data The IP header, if any, followed by the ICMP message
+     * @param messageOffset The offset of the ICMP message in {@code data}
+     * @param pseudoHeaderSum The one's complement sum of the pseudo-header covered by the checksum, which is zero for
+     *     ICMPv4
+     *
+     * @throws IllegalArgumentException if {@code data} is {@code null} or does not hold an ICMP header at
+     *     {@code messageOffset}.
+     */
+    public IcmpTemplate(final byte[] data, final int messageOffset, final int pseudoHeaderSum)
+    {
+        if(data == null)
+        {
+            throw new IllegalArgumentException("Parameter data cannot be null!");
+        }
+        if(messageOffset < 0 || messageOffset > data.length - IcmpView.HEADER_LENGTH)
+        {
+            throw new IllegalArgumentException("Parameter data must hold an ICMP header at messageOffset!");
+        }
+
+        this.data = Arrays.copyOf(data, data.length);
+        this.messageOffset = messageOffset;
+        for(int i = IcmpTemplate.CHECKSUM_INDEX; i < IcmpView.HEADER_LENGTH; i++)
+        {
+            this.data[messageOffset + i] = 0;
+        }
+
+        this.baseSum = InternetChecksum.add(
+            pseudoHeaderSum, InternetChecksum.sum(this.data, messageOffset, this.data.length - messageOffset)
+        );
+    }
+
+    /**
+     * Gets the length of the probes written by this template.
+     *
+     * @return the length, in bytes.
+     */
+    public int getLength()
+    {
+        return this.data.length;
+    }
+
+    /**
+     * Gets the offset of the ICMP message in the probes written by this template, which is the length of the IP
+     * header included in the template.
+     *
+     * @return the message offset, in bytes.
+     */
+    public int getMessageOffset()
+    {
+        return this.messageOffset;
+    }
+
+    /**
+     * Writes a probe into the buffer at its position and advances the position.
+     *
+     * @param buffer The buffer to write the probe into
+     * @param identifier The identifier, from 0 to 65535 (higher bits are ignored)
+     * @param sequenceNumber The sequence number, from 0 to 65535 (higher bits are ignored)
+     *
+     * @return the number of bytes written (the template length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the probe, in which case nothing is
+     *     written.
+     */
+    public int write(final ByteBuffer buffer, final int identifier, final int sequenceNumber)
+    {
+        if(buffer.remaining() < this.data.length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        final int start = buffer.position() + this.messageOffset;
+        buffer.put(this.data);
+        IcmpTemplate.putShort(buffer, start + IcmpTemplate.IDENTIFIER_INDEX, identifier);
+        IcmpTemplate.putShort(buffer, start + IcmpTemplate.SEQUENCE_NUMBER_INDEX, sequenceNumber);
+        IcmpTemplate.putShort(buffer, start + IcmpTemplate.CHECKSUM_INDEX, this.checksum(identifier, sequenceNumber));
+        return this.data.length;
+    }
+
+    /**
+     * Writes a probe into the array.
+     *
+     * @param destination The array to write the probe into
+     * @param offset The offset in the array to write the probe at
+     * @param identifier The identifier, from 0 to 65535 (higher bits are ignored)
+     * @param sequenceNumber The sequence number, from 0 to 65535 (higher bits are ignored)
+     *
+     * @return the number of bytes written (the template length).
+     *
+     * @throws IndexOutOfBoundsException if the array does not have room for the probe at the offset.
+     */
+    public int write(final byte[] destination, final int offset, final int identifier, final int sequenceNumber)
+    {
+        System.arraycopy(this.data, 0, destination, offset, this.data.length);
+
+        final int start = offset + this.messageOffset;
+        IcmpTemplate.putShort(destination, start + IcmpTemplate.IDENTIFIER_INDEX, identifier);
+        IcmpTemplate.putShort(destination, start + IcmpTemplate.SEQUENCE_NUMBER_INDEX, sequenceNumber);
+        IcmpTemplate.putShort(
+            destination, start + IcmpTemplate.CHECKSUM_INDEX, this.checksum(identifier, sequenceNumber)
+        );
+        return this.data.length;
+    }
+
+    private int checksum(final int identifier, final int sequenceNumber)
+    {
+        return InternetChecksum.finish(
+            this.baseSum + (identifier & IcmpTemplate.SHORT_MASK) + (sequenceNumber & IcmpTemplate.SHORT_MASK)
+        );
+    }
+
+    private static void putShort(final ByteBuffer buffer, final int index, final int value)
+    {
+        buffer.put(index, (byte) (value >>> IcmpTemplate.BITS_PER_BYTE));
+        buffer.put(index + 1, (byte) value);
+    }
+
+    private static void putShort(final byte[] array, final int index, final int value)
+    {
+        array[index] = (byte) (value >>> IcmpTemplate.BITS_PER_BYTE);
+        array[index + 1] = (byte) value;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight view of an ICMPv4 (RFC 792) or ICMPv6 (RFC 4443) header in a buffer. Both start with the same eight
+ * bytes: the type, code and checksum, then four bytes that depend on the type, which echo messages split into an
+ * identifier and a sequence number. The message body follows at {@link #getPayloadOffset()}.<br>
+ * <br>
+ * {@link #updateChecksum(int)} computes ICMPv4 checksums. ICMPv6 checksums also cover a pseudo-header of the IPv6
+ * addresses, whose sum {@link InternetChecksum#pseudoHeaderSum(java.net.InetAddress, java.net.InetAddress, int, int)}
+ * computes for {@link #updateChecksum(int, int)}; the kernel computes them anyway for packets sent on ICMPv6 raw
+ * sockets. The {@code rewrite} methods change a field of a message whose checksum is correct, such as a probe written
+ * from an {@link IcmpTemplate}, and adjust the checksum in constant time.
+ *
+ * @see HeaderView
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class IcmpView extends HeaderView
+{
+    /**
+     * The length of the header, including the four type-specific bytes.
+     */
+    public static final int HEADER_LENGTH = 8;
+
+    private static final int TYPE_INDEX = 0;
+
+    private static final int CODE_INDEX = 1;
+
+    private static final int CHECKSUM_INDEX = 2;
+
+    private static final int REST_OF_HEADER_INDEX = 4;
+
+    private static final int IDENTIFIER_INDEX = 4;
+
+    private static final int SEQUENCE_NUMBER_INDEX = 6;
+
+    /**
+     * Constructor. The view must be wrapped around a buffer with {@link #wrap(ByteBuffer, int)} before it is used.
+     */
+    public IcmpView()
+    {
+        super();
+    }
+
+    /**
+     * Moves this view to the ICMP header at the offset in the buffer, such as the payload offset of an IP header view.
+     *
+     * @param buffer The buffer holding the header
+     * @param offset The absolute offset of the header in the buffer
+     *
+     * @return this view.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or too short for the header.
+     */
+    public IcmpView wrap(final ByteBuffer buffer, final int offset)
+    {
+        this.attach(buffer, offset, IcmpView.HEADER_LENGTH);
+        return this;
+    }
+
+    /**
+     * Get the length of the header.
+     *
+     * @return the header length (eight bytes).
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        return IcmpView.HEADER_LENGTH;
+    }
+
+    /**
+     * Get the message type.
+     *
+     * @return the type.
+     */
+    public int getType()
+    {
+        return this.getUnsignedByte(IcmpView.TYPE_INDEX);
+    }
+
+    /**
+     * Set the message type.
+     *
+     * @param type The type, of which only the low eight bits are written
+     */
+    public void setType(final int type)
+    {
+        this.putByte(IcmpView.TYPE_INDEX, type);
+    }
+
+    /**
+     * Get the message code, which refines the type.
+     *
+     * @return the code.
+     */
+    public int getCode()
+    {
+        return this.getUnsignedByte(IcmpView.CODE_INDEX);
+    }
+
+    /**
+     * Set the message code.
+     *
+     * @param code The code, of which only the low eight bits are written
+     */
+    public void setCode(final int code)
+    {
+        this.putByte(IcmpView.CODE_INDEX, code);
+    }
+
+    /**
+     * Get the checksum.
+     *
+     * @return the checksum, from 0 to 65535.
+     */
+    public int getChecksum()
+    {
+        return this.getUnsignedShort(IcmpView.CHECKSUM_INDEX);
+    }
+
+    /**
+     * Set the checksum.
+     *
+     * @param checksum The checksum, of which only the low 16 bits are written
+     */
+    public void setChecksum(final int checksum)
+    {
+        this.putShort(IcmpView.CHECKSUM_INDEX, checksum);
+    }
+
+    /**
+     * Computes the ICMPv4 checksum of the message and writes it into the header. Call this after the last change to
+     * the message.
+     *
+     * @param length The length of the whole message (header + body), in bytes
+     *
+     * @throws IllegalArgumentException if the message would run past the buffer's limit.
+     */
+    public void updateChecksum(final int length)
+    {
+        this.checkLength(length);
+        this.setChecksum(0);
+        this.setChecksum(this.checksum(length));
+    }
+
+    /**
+     * Indicates whether the ICMPv4 checksum of the message is correct.
+     *
+     * @param length The length of the whole message (header + body), in bytes
+     *
+     * @return whether the checksum is correct.
+     *
+     * @throws IllegalArgumentException if the message would run past the buffer's limit.
+     */
+    public boolean isChecksumValid(final int length)
+    {
+        this.checkLength(length);
+        return this.checksum(length) == 0;
+    }
+
+    /**
+     * Computes the checksum of the message, covering also a pseudo-header as ICMPv6 checksums do, and writes it into
+     * the header.
+     *
+     * @param length The length of the whole message (header + body), in bytes
+     * @param pseudoHeaderSum The ones' complement sum of the pseudo-header
+     *
+     * @throws IllegalArgumentException if the message would run past the buffer's limit.
+     */
+    public void updateChecksum(final int length, final int pseudoHeaderSum)
+    {
+        this.checkLength(length);
+        this.setChecksum(0);
+        this.setChecksum(
+            InternetChecksum.finish(
+                InternetChecksum.add(pseudoHeaderSum, InternetChecksum.sum(this.getBuffer(), this.getOffset(), length))
+            )
+        );
+    }
+
+    /**
+     * Indicates whether the checksum of the message, covering also a pseudo-header as ICMPv6 checksums do, is correct.
+     *
+     * @param length The length of the whole message (header + body), in bytes
+     * @param pseudoHeaderSum The ones' complement sum of the pseudo-header
+     *
+     * @return whether the checksum is correct.
+     *
+     * @throws IllegalArgumentException if the message would run past the buffer's limit.
+     */
+    public boolean isChecksumValid(final int length, final int pseudoHeaderSum)
+    {
+        this.checkLength(length);
+        return InternetChecksum.isValid(
+            InternetChecksum.add(pseudoHeaderSum, InternetChecksum.sum(this.getBuffer(), this.getOffset(), length))
+        );
+    }
+
+    /**
+     * Get the four type-specific bytes of the header, such as the pointer of a parameter problem message or the
+     * next-hop MTU of a packet too big message.
+     *
+     * @return the rest of the header.
+     */
+    public int getRestOfHeader()
+    {
+        return this.getInt(IcmpView.REST_OF_HEADER_INDEX);
+    }
+
+    /**
+     * Set the four type-specific bytes of the header.
+     *
+     * @param restOfHeader The rest of the header
+     */
+    public void setRestOfHeader(final int restOfHeader)
+    {
+        this.putInt(IcmpView.REST_OF_HEADER_INDEX, restOfHeader);
+    }
+
+    /**
+     * Get the identifier of an echo request or reply.
+     *
+     * @return the identifier, from 0 to 65535.
+     */
+    public int getIdentifier()
+    {
+        return this.getUnsignedShort(IcmpView.IDENTIFIER_INDEX);
+    }
+
+    /**
+     * Set the identifier of an echo request or reply.
+     *
+     * @param identifier The identifier, of which only the low 16 bits are written
+     */
+    public void setIdentifier(final int identifier)
+    {
+        this.putShort(IcmpView.IDENTIFIER_INDEX, identifier);
+    }
+
+    /**
+     * Get the sequence number of an echo request or reply.
+     *
+     * @return the sequence number, from 0 to 65535.
+     */
+    public int getSequenceNumber()
+    {
+        return this.getUnsignedShort(IcmpView.SEQUENCE_NUMBER_INDEX);
+    }
+
+    /**
+     * Set the sequence number of an echo request or reply.
+     *
+     * @param sequenceNumber The sequence number, of which only the low 16 bits are written
+     */
+    public void setSequenceNumber(final int sequenceNumber)
+    {
+        this.putShort(IcmpView.SEQUENCE_NUMBER_INDEX, sequenceNumber);
+    }
+
+    /**
+     * Sets the identifier of a message whose checksum is correct and adjusts the checksum in constant time.
+     *
+     * @param identifier The identifier, of which only the low 16 bits are written
+     */
+    public void rewriteIdentifier(final int identifier)
+    {
+        this.rewriteShort(IcmpView.IDENTIFIER_INDEX, identifier, IcmpView.CHECKSUM_INDEX);
+    }
+
+    /**
+     * Sets the sequence number of a message whose checksum is correct and adjusts the checksum in constant time.
+     *
+     * @param sequenceNumber The sequence number, of which only the low 16 bits are written
+     */
+    public void rewriteSequenceNumber(final int sequenceNumber)
+    {
+        this.rewriteShort(IcmpView.SEQUENCE_NUMBER_INDEX, sequenceNumber, IcmpView.CHECKSUM_INDEX);
+    }
+
+    private void checkLength(final int length)
+    {
+        if(length < IcmpView.HEADER_LENGTH || length > this.getBuffer().limit() - this.getOffset())
+        {
+            throw new IllegalArgumentException("Parameter length must cover the header and fit in the buffer!");
+        }
+    }
+}
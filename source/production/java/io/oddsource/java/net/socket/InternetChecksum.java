@@ -0,0 +1,355 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The Internet checksum of IPv4 headers, ICMP, ICMPv6, UDP and TCP: the ones' complement of the ones' complement sum
+ * of the 16-bit words of the data (RFC 1071).<br>
+ * <br>
+ * A full checksum is computed with {@link #compute(byte[], int, int)} or {@link #compute(ByteBuffer, int, int)}.
+ * Checksums that cover more than one range, such as the ICMPv6 checksum, which also covers a pseudo-header of the
+ * packet addresses ({@link #pseudoHeaderSum(InetAddress, InetAddress, int, int)}), are built from partial sums that
+ * are combined with {@link #add(int, int)} and completed with {@link #finish(int)}. Every range but the last must have
+ * an even length.<br>
+ * <br>
+ * When one field of data that already has a correct checksum changes, {@link #update(int, int, int)} and
+ * {@link #update(int, byte[], byte[])} adjust the checksum for the change in constant time (RFC 1624), instead of
+ * summing all of the data again. The field must start at an even offset from the start of the checksummed data; an
+ * odd-length field, such as the IPv4 TTL, is updated with the 16-bit word that holds it. The header views use these
+ * for their {@code rewrite} methods.<br>
+ * <br>
+ * Sums and checksums are 16-bit values in network byte order, whatever the order of a buffer. Long ranges are summed
+ * with a scalar loop that reads eight bytes at a time or, on Java 22 and newer when the {@code jdk.incubator.vector}
+ * module is added to the JVM ({@code --add-modules jdk.incubator.vector}), with the Vector API. Set the system property
+ * {@code io.oddsource.java.net.socket.checksum} to {@code scalar} to always use the scalar loop.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class InternetChecksum
+{
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int SHORT_MASK = 0xFFFF;
+
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * This class is not meant to be instantiated.
+     */
+    private InternetChecksum()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Computes the checksum of a range of an array. The checksum field, if it is in the range, must be zero, or the
+     * result is zero when the checksum in the range is correct.
+     *
+     * @param data The data
+     * @param offset The offset of the range in the array
+     * @param length The length of the range, in bytes
+     *
+     * @return the checksum, from 0 to 65535.
+     */
+    public static int compute(final byte[] data, final int offset, final int length)
+    {
+        return InternetChecksum.finish(InternetChecksum.sum(data, offset, length));
+    }
+
+    /**
+     * Computes the checksum of a range of a buffer. The buffer's position, limit and order are ignored and not
+     * changed.
+     *
+     * @param buffer The buffer
+     * @param offset The absolute offset of the range in the buffer
+     * @param length The length of the range, in bytes
+     *
+     * @return the checksum, from 0 to 65535.
+     */
+    public static int compute(final ByteBuffer buffer, final int offset, final int length)
+    {
+        return InternetChecksum.finish(InternetChecksum.sum(buffer, offset, length));
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of an array, to combine with other partial sums.
+     *
+     * @param data The data
+     * @param offset The offset of the range in the array
+     * @param length The length of the range, in bytes; if odd, the last byte is summed as if followed by a zero byte
+     *
+     * @return the sum, from 0 to 65535.
+     *
+     * @throws IllegalArgumentException if the array is {@code null} or the range is not within it.
+     */
+    public static int sum(final byte[] data, final int offset, final int length)
+    {
+        if(data == null)
+        {
+            throw new IllegalArgumentException("Parameter data cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > data.length - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the array!");
+        }
+
+        return ChecksumBackend.sum(data, offset, length);
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of a buffer, to combine with other partial sums. The buffer's
+     * position, limit and order are ignored and not changed.
+     *
+     * @param buffer The buffer
+     * @param offset The absolute offset of the range in the buffer
+     * @param length The length of the range, in bytes; if odd, the last byte is summed as if followed by a zero byte
+     *
+     * @return the sum, from 0 to 65535.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     */
+    public static int sum(final ByteBuffer buffer, final int offset, final int length)
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the buffer's limit!");
+        }
+
+        return ChecksumBackend.sum(buffer, offset, length);
+    }
+
+    /**
+     * Computes the ones' complement sum of the pseudo-header that the UDP, TCP (RFC 768, RFC 793) and ICMPv6
+     * (RFC 8200 section 8.1) checksums cover in addition to the upper-layer message. The IPv4 and IPv6 pseudo-headers
+     * differ in layout but have the same sum.
+     *
+     * @param source The source address, or {@code null} for the unspecified address, which the kernel replaces
+     * @param destination The destination address, or {@code null} for the unspecified address
+     * @param length The length of the upper-layer message, in bytes
+     * @param protocol The protocol or next header number of the upper-layer message
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    public static int pseudoHeaderSum(final InetAddress source, final InetAddress destination, final int length,
+                                      final int protocol)
+    {
+        int sum = InternetChecksum.add(length >>> Short.SIZE, length & InternetChecksum.SHORT_MASK);
+        sum = InternetChecksum.add(sum, protocol & InternetChecksum.BYTE_MASK);
+        if(source != null)
+        {
+            final byte[] address = source.getAddress();
+            sum = InternetChecksum.add(sum, InternetChecksum.sum(address, 0, address.length));
+        }
+        if(destination != null)
+        {
+            final byte[] address = destination.getAddress();
+            sum = InternetChecksum.add(sum, InternetChecksum.sum(address, 0, address.length));
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the ones' complement sum of the pseudo-header of a packet's payload, which is its upper-layer message,
+     * from the packet's addresses and payload length.
+     *
+     * @param packet The packet
+     * @param protocol The protocol or next header number of the payload
+     *
+     * @return the sum, from 0 to 65535.
+     *
+     * @see #pseudoHeaderSum(InetAddress, InetAddress, int, int)
+     */
+    public static int pseudoHeaderSum(final Packet packet, final int protocol)
+    {
+        return InternetChecksum.pseudoHeaderSum(
+            packet.getSourceAddress(), packet.getDestinationAddress(), packet.getPayloadLength(), protocol
+        );
+    }
+
+    /**
+     * Adds two ones' complement sums.
+     *
+     * @param sum The first sum
+     * @param other The second sum, or a single 16-bit word
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    public static int add(final int sum, final int other)
+    {
+        return InternetChecksum.fold((sum & InternetChecksum.INT_MASK) + (other & InternetChecksum.INT_MASK));
+    }
+
+    /**
+     * Completes a checksum from the ones' complement sum of all of the data it covers.
+     *
+     * @param sum The sum
+     *
+     * @return the checksum, from 0 to 65535.
+     */
+    public static int finish(final int sum)
+    {
+        return ~InternetChecksum.fold(sum & InternetChecksum.INT_MASK) & InternetChecksum.SHORT_MASK;
+    }
+
+    /**
+     * Indicates whether data that holds its own checksum is intact.
+     *
+     * @param sum The ones' complement sum of all of the data the checksum covers, including the checksum
+     *
+     * @return {@code true} if the checksum is correct, {@code false} otherwise.
+     */
+    public static boolean isValid(final int sum)
+    {
+        return InternetChecksum.fold(sum & InternetChecksum.INT_MASK) == InternetChecksum.SHORT_MASK;
+    }
+
+    /**
+     * Adjusts a checksum for a change to one 16-bit word of the data, without summing the data again (RFC 1624,
+     * equation 3).
+     *
+     * @param checksum The current checksum
+     * @param oldWord The old value of the word
+     * @param newWord The new value of the word
+     *
+     * @return the new checksum, from 0 to 65535.
+     */
+    public static int update(final int checksum, final int oldWord, final int newWord)
+    {
+        final long sum = (~checksum & InternetChecksum.SHORT_MASK) + (~oldWord & InternetChecksum.SHORT_MASK) +
+                         (newWord & InternetChecksum.SHORT_MASK);
+        return ~InternetChecksum.fold(sum) & InternetChecksum.SHORT_MASK;
+    }
+
+    /**
+     * Adjusts a checksum for a change to a 32-bit field of the data, such as an IPv4 address, without summing the data
+     * again.
+     *
+     * @param checksum The current checksum
+     * @param oldValue The old value of the field
+     * @param newValue The new value of the field
+     *
+     * @return the new checksum, from 0 to 65535.
+     */
+    public static int update32(final int checksum, final int oldValue, final int newValue)
+    {
+        final long sum = (~checksum & InternetChecksum.SHORT_MASK) +
+                         (~oldValue >>> Short.SIZE) + (~oldValue & InternetChecksum.SHORT_MASK) +
+                         (newValue >>> Short.SIZE) + (newValue & InternetChecksum.SHORT_MASK);
+        return ~InternetChecksum.fold(sum) & InternetChecksum.SHORT_MASK;
+    }
+
+    /**
+     * Adjusts a checksum for a change to a field of the data, such as an IPv6 address, without summing the data again.
+     * The cost is proportional to the length of the field, not of the data.
+     *
+     * @param checksum The current checksum
+     * @param oldBytes The old bytes of the field
+     * @param newBytes The new bytes of the field
+     *
+     * @return the new checksum, from 0 to 65535.
+     *
+     * @throws IllegalArgumentException if either array is {@code null} or they differ in length.
+     */
+    public static int update(final int checksum, final byte[] oldBytes, final byte[] newBytes)
+    {
+        if(oldBytes == null || newBytes == null || oldBytes.length != newBytes.length)
+        {
+            throw new IllegalArgumentException("Parameters oldBytes and newBytes must be arrays of the same length!");
+        }
+
+        final long sum = (~checksum & InternetChecksum.SHORT_MASK) +
+                         (~InternetChecksum.sum(oldBytes, 0, oldBytes.length) & InternetChecksum.SHORT_MASK) +
+                         InternetChecksum.sum(newBytes, 0, newBytes.length);
+        return ~InternetChecksum.fold(sum) & InternetChecksum.SHORT_MASK;
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of an array with the scalar loop, whatever implementation
+     * {@link ChecksumBackend} chooses. The range has been checked.
+     *
+     * @param data The data
+     * @param offset The offset of the range in the array
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int scalarSum(final byte[] data, final int offset, final int length)
+    {
+        return InternetChecksum.scalarSum(ByteBuffer.wrap(data), offset, length);
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of a buffer with the scalar loop, whatever implementation
+     * {@link ChecksumBackend} chooses. The range has been checked.<br>
+     * <br>
+     * The loop reads eight bytes at a time and adds both 32-bit halves to a 64-bit accumulator, whose upper half
+     * collects the carries, and folds them into 16 bits once at the end. A buffer in little-endian order is summed in
+     * its own order, which byte-swaps every word and therefore the sum (RFC 1071 section 2), and the sum is swapped
+     * back at the end.
+     *
+     * @param buffer The buffer
+     * @param offset The absolute offset of the range in the buffer
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int scalarSum(final ByteBuffer buffer, final int offset, final int length)
+    {
+        final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        final int end = offset + length;
+        final int longEnd = offset + (length & ~(Long.BYTES - 1));
+
+        long sum = 0;
+        int i = offset;
+        for(; i < longEnd; i += Long.BYTES)
+        {
+            final long words = buffer.getLong(i);
+            sum += (words >>> Integer.SIZE) + (words & InternetChecksum.INT_MASK);
+        }
+        for(; i < end - 1; i += Short.BYTES)
+        {
+            sum += buffer.getShort(i) & InternetChecksum.SHORT_MASK;
+        }
+        if(i < end)
+        {
+            final int last = buffer.get(i) & InternetChecksum.BYTE_MASK;
+            sum += bigEndian ? last << Byte.SIZE : last;
+        }
+
+        final int folded = InternetChecksum.fold(sum);
+        return bigEndian ? folded : Short.reverseBytes((short) folded) & InternetChecksum.SHORT_MASK;
+    }
+
+    private static int fold(final long value)
+    {
+        long sum = value;
+        while((sum >>> Short.SIZE) != 0)
+        {
+            sum = (sum & InternetChecksum.SHORT_MASK) + (sum >>> Short.SIZE);
+        }
+        return (int) sum;
+    }
+}
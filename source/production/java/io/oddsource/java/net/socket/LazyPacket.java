@@ -0,0 +1,602 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+
+/**
+ * An incoming IPv4 or IPv6 packet that keeps only the buffer it was received into and its offset and length, and
+ * decodes each header field the first time it is asked for. A filter that rejects most packets after looking at one or
+ * two fields therefore never decodes the rest, and never creates the addresses it does not look at. Decoded fields are
+ * kept, so asking again costs nothing.<br>
+ * <br>
+ * The packet reads the buffer when a field is first asked for, not when it is constructed, so the buffer must not be
+ * reused while the packet is in use. Even the version and header length are only checked then: a packet that does not
+ * start with a complete IPv4 or IPv6 header throws a {@link MalformedPacketException} from its first getter that needs
+ * the header. Lazy packets are always finalized, and they are not thread safe.
+ *
+ * @see PooledPacket
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class LazyPacket implements Packet
+{
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int VERSION_SHIFT = 4;
+
+    private static final int NIBBLE_MASK = 0xF;
+
+    private static final int WORD_SIZE = 4;
+
+    private static final int IPV4 = 4;
+
+    private static final int IPV4_MIN_HEADER_LENGTH = 20;
+
+    private static final int IPV4_TIME_TO_LIVE_INDEX = 8;
+
+    private static final int IPV4_PROTOCOL_INDEX = 9;
+
+    private static final int IPV4_SOURCE_ADDRESS_INDEX = 12;
+
+    private static final int IPV4_DESTINATION_ADDRESS_INDEX = 16;
+
+    private static final int IPV4_ADDRESS_LENGTH = 4;
+
+    private static final int IPV6 = 6;
+
+    private static final int IPV6_HEADER_LENGTH = 40;
+
+    private static final int IPV6_NEXT_HEADER_INDEX = 6;
+
+    private static final int IPV6_HOP_LIMIT_INDEX = 7;
+
+    private static final int IPV6_SOURCE_ADDRESS_INDEX = 8;
+
+    private static final int IPV6_DESTINATION_ADDRESS_INDEX = 24;
+
+    private static final int IPV6_ADDRESS_LENGTH = 16;
+
+    private static final int UNDECODED = -1;
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private final int length;
+
+    private final long timestamp;
+
+    private int version;
+
+    private int headerLength;
+
+    private short hopLimit = LazyPacket.UNDECODED;
+
+    private int protocol = LazyPacket.UNDECODED;
+
+    private InetAddress sourceAddress;
+
+    private InetAddress destinationAddress;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer The buffer the packet was received into
+     * @param offset The absolute offset of the packet (its IP header) in the buffer
+     * @param length The number of bytes received
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     */
+    public LazyPacket(final ByteBuffer buffer, final int offset, final int length)
+    {
+        this(buffer, offset, length, Packet.NO_TIMESTAMP);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param buffer The buffer the packet was received into
+     * @param offset The absolute offset of the packet (its IP header) in the buffer
+     * @param length The number of bytes received
+     * @param timestamp The kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     */
+    public LazyPacket(final ByteBuffer buffer, final int offset, final int length, final long timestamp)
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the buffer's limit!");
+        }
+
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param data The array the packet was received into
+     * @param offset The offset of the packet (its IP header) in the array
+     * @param length The number of bytes received
+     *
+     * @throws IllegalArgumentException if the array is {@code null} or the range is not within it.
+     */
+    public LazyPacket(final byte[] data, final int offset, final int length)
+    {
+        this(LazyPacket.wrap(data), offset, length, Packet.NO_TIMESTAMP);
+    }
+
+    /**
+     * Constructor. The packet reads the batch buffer in place, so the batch must not receive again while the packet
+     * is in use; copy the packet into a {@link PacketPool} to keep it longer.
+     *
+     * @param batch The batch the packet was received into
+     * @param slot The slot index of the packet in the batch
+     *
+     * @throws IllegalArgumentException if the batch is {@code null}.
+     */
+    public LazyPacket(final PacketBatch batch, final int slot)
+    {
+        this(
+            LazyPacket.getBuffer(batch), batch.getSlotOffset(slot), batch.getLength(slot), batch.getTimestamp(slot)
+        );
+    }
+
+    /**
+     * Gets the IP version of this packet.
+     *
+     * @return 4 or 6.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    public int getVersion()
+    {
+        this.decodeHeader();
+
+        return this.version;
+    }
+
+    /**
+     * Gets the protocol of the payload: the IPv4 protocol or the IPv6 next header, which is the first extension header
+     * if there are any.
+     *
+     * @return the protocol number, from 0 to 255.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    public int getProtocol()
+    {
+        if(this.protocol == LazyPacket.UNDECODED)
+        {
+            this.protocol = this.getUnsignedByte(
+                this.isIpv4() ? LazyPacket.IPV4_PROTOCOL_INDEX : LazyPacket.IPV6_NEXT_HEADER_INDEX
+            );
+        }
+
+        return this.protocol;
+    }
+
+    /**
+     * Gets the buffer this packet was received into. The packet is not a copy; it reads the buffer in place.
+     *
+     * @return the buffer.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the absolute offset of this packet (its IP header) in the buffer.
+     *
+     * @return the offset.
+     */
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * Gets the absolute offset in the buffer of the first byte after the IP header, where a
+     * {@link IcmpView} or another payload view can be wrapped.
+     *
+     * @return the payload offset.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    public int getPayloadOffset()
+    {
+        return this.offset + this.getHeaderLength();
+    }
+
+    /**
+     * Returns the entire packet represented in bytes, copied out of the buffer.
+     *
+     * @return the entire packet (header followed by content).
+     */
+    @Override
+    public byte[] getPacketData()
+    {
+        return this.copy(0, this.length);
+    }
+
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, copying straight from the buffer it was received into.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the packet, in which case nothing is
+     *     written.
+     */
+    @Override
+    public int writePacketData(final ByteBuffer buffer)
+    {
+        if(buffer.remaining() < this.length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(this.slice(0, this.length));
+        return this.length;
+    }
+
+    /**
+     * Gets the content of the packet IP header, copied out of the buffer.
+     *
+     * @return the content of the packet IP header.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public byte[] getHeaderData()
+    {
+        return this.copy(0, this.getHeaderLength());
+    }
+
+    /**
+     * Gets the content of the packet payload, copied out of the buffer.
+     *
+     * @return the content of the packet payload.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        return this.copy(this.getHeaderLength(), this.getPayloadLength());
+    }
+
+    /**
+     * Always throws an exception, because lazy packets are finalized.
+     *
+     * @param payloadData Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the total packet length (header + payload), as received.
+     *
+     * @return the packet length, in bytes.
+     */
+    @Override
+    public int getPacketLength()
+    {
+        return this.length;
+    }
+
+    /**
+     * Gets the IP header length: the IPv4 header length, including options, or the 40-byte fixed IPv6 header.
+     *
+     * @return the IP header length, in bytes.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        this.decodeHeader();
+
+        return this.headerLength;
+    }
+
+    /**
+     * Gets the payload length: everything received after the IP header, including any IPv6 extension headers.
+     *
+     * @return the payload length, in bytes.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return this.length - this.getHeaderLength();
+    }
+
+    /**
+     * Gets the hop limit (IPv6) or Time-To-Live (IPv4) the packet was received with, which can be 0 for a packet that
+     * was not addressed to this host.
+     *
+     * @return the hop limit / TTL.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public short getHopLimit()
+    {
+        if(this.hopLimit == LazyPacket.UNDECODED)
+        {
+            this.hopLimit = (short) this.getUnsignedByte(
+                this.isIpv4() ? LazyPacket.IPV4_TIME_TO_LIVE_INDEX : LazyPacket.IPV6_HOP_LIMIT_INDEX
+            );
+        }
+
+        return this.hopLimit;
+    }
+
+    /**
+     * Always throws an exception, because lazy packets are finalized.
+     *
+     * @param hopLimit Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setHopLimit(final short hopLimit) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the packet source address, which is created the first time it is asked for.
+     *
+     * @return the source address that the packet originated from.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public InetAddress getSourceAddress()
+    {
+        if(this.sourceAddress == null)
+        {
+            this.sourceAddress = this.isIpv4() ?
+                                 this.getAddress(LazyPacket.IPV4_SOURCE_ADDRESS_INDEX, LazyPacket.IPV4_ADDRESS_LENGTH) :
+                                 this.getAddress(LazyPacket.IPV6_SOURCE_ADDRESS_INDEX, LazyPacket.IPV6_ADDRESS_LENGTH);
+        }
+
+        return this.sourceAddress;
+    }
+
+    /**
+     * Always throws an exception, because lazy packets are incoming and finalized.
+     *
+     * @param sourceAddress Ignored
+     *
+     * @return never.
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public boolean setSourceAddress(final InetAddress sourceAddress) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the packet destination address, which is created the first time it is asked for.
+     *
+     * @return the packet destination address.
+     *
+     * @throws MalformedPacketException if the packet does not start with a complete IPv4 or IPv6 header.
+     */
+    @Override
+    public InetAddress getDestinationAddress()
+    {
+        if(this.destinationAddress == null)
+        {
+            this.destinationAddress = this.isIpv4() ?
+                this.getAddress(LazyPacket.IPV4_DESTINATION_ADDRESS_INDEX, LazyPacket.IPV4_ADDRESS_LENGTH) :
+                this.getAddress(LazyPacket.IPV6_DESTINATION_ADDRESS_INDEX, LazyPacket.IPV6_ADDRESS_LENGTH);
+        }
+
+        return this.destinationAddress;
+    }
+
+    /**
+     * Always throws an exception, because lazy packets are finalized.
+     *
+     * @param destinationAddress Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setDestinationAddress(final InetAddress destinationAddress) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Does nothing, because lazy packets are finalized.
+     */
+    @Override
+    public void finalizePacket()
+    {
+
+    }
+
+    /**
+     * Indicates whether this packed has been protected against future modification, which lazy packets always are.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isFinalized()
+    {
+        return true;
+    }
+
+    /**
+     * Gets the time the kernel received this packet, if it was constructed with one.
+     *
+     * @return the kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}.
+     */
+    @Override
+    public long getTimestamp()
+    {
+        return this.timestamp;
+    }
+
+    /**
+     * Always throws an exception, because lazy packets are incoming and finalized.
+     *
+     * @param timestamp Ignored
+     *
+     * @return never.
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public boolean setTimestamp(final long timestamp) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the source of this packet, which is always incoming.
+     *
+     * @return {@link Packet.Source#INCOMING}.
+     */
+    @Override
+    public Packet.Source getSource()
+    {
+        return Packet.Source.INCOMING;
+    }
+
+    private boolean isIpv4()
+    {
+        return this.getVersion() == LazyPacket.IPV4;
+    }
+
+    private void decodeHeader()
+    {
+        if(this.headerLength != 0)
+        {
+            return;
+        }
+
+        final int first = this.length == 0 ? 0 : this.getUnsignedByte(0);
+        final int headerVersion = first >>> LazyPacket.VERSION_SHIFT;
+        final int headerBytes;
+        if(headerVersion == LazyPacket.IPV4)
+        {
+            headerBytes = (first & LazyPacket.NIBBLE_MASK) * LazyPacket.WORD_SIZE;
+            if(headerBytes < LazyPacket.IPV4_MIN_HEADER_LENGTH || headerBytes > this.length)
+            {
+                throw new MalformedPacketException("The IPv4 header is not valid or the packet is truncated.");
+            }
+        }
+        else if(headerVersion == LazyPacket.IPV6)
+        {
+            headerBytes = LazyPacket.IPV6_HEADER_LENGTH;
+            if(headerBytes > this.length)
+            {
+                throw new MalformedPacketException("The packet is too short for an IPv6 header.");
+            }
+        }
+        else
+        {
+            throw new MalformedPacketException("The data does not start with an IPv4 or IPv6 header.");
+        }
+
+        this.version = headerVersion;
+        this.headerLength = headerBytes;
+    }
+
+    private int getUnsignedByte(final int index)
+    {
+        return this.buffer.get(this.offset + index) & LazyPacket.BYTE_MASK;
+    }
+
+    private InetAddress getAddress(final int index, final int addressLength)
+    {
+        try
+        {
+            return InetAddress.getByAddress(this.copy(index, addressLength));
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new IllegalStateException("The address length is not valid.", e);
+        }
+    }
+
+    private ByteBuffer slice(final int index, final int count)
+    {
+        final ByteBuffer view = this.buffer.duplicate();
+        view.limit(this.offset + index + count);
+        view.position(this.offset + index);
+        return view;
+    }
+
+    private byte[] copy(final int index, final int count)
+    {
+        final byte[] copy = new byte[count];
+        this.slice(index, count).get(copy);
+        return copy;
+    }
+
+    private static ByteBuffer wrap(final byte[] data)
+    {
+        if(data == null)
+        {
+            throw new IllegalArgumentException("Parameter data cannot be null!");
+        }
+
+        return ByteBuffer.wrap(data);
+    }
+
+    private static ByteBuffer getBuffer(final PacketBatch batch)
+    {
+        if(batch == null)
+        {
+            throw new IllegalArgumentException("Parameter batch cannot be null!");
+        }
+
+        return batch.getBuffer();
+    }
+}
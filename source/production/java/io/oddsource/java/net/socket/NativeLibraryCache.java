@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A directory of native libraries that persists across JVM runs, so that the bundled library is written once per
+ * version instead of once per start. Each library is keyed by its length and CRC-32 checksum, compared byte for byte
+ * with the bundled library before every load (which is exact and costs less than a cryptographic hash), and published
+ * with an atomic rename so that concurrent JVMs never load a partial file. The directory must belong to the current
+ * user (or root) and must not be writable by anyone else, or nothing in it is trusted.<br>
+ * <br>
+ * The directory is the value of the system property {@value #DIRECTORY_PROPERTY} if it is set and, otherwise, a
+ * per-user directory in {@code java.io.tmpdir}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class NativeLibraryCache
+{
+    static final String DIRECTORY_PROPERTY = "io.oddsource.java.net.socket.library.cache";
+
+    private static final String DEFAULT_DIRECTORY_PREFIX = "oddsource-raw-sockets-";
+
+    private static final String ROOT_USER = "root";
+
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The cache directory, which is created if it does not exist
+     */
+    NativeLibraryCache(final Path directory)
+    {
+        if(directory == null)
+        {
+            throw new IllegalArgumentException("Parameter directory cannot be null!");
+        }
+
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the cache in the configured directory.
+     *
+     * @return the cache.
+     */
+    static NativeLibraryCache getDefault()
+    {
+        final String configured = System.getProperty(NativeLibraryCache.DIRECTORY_PROPERTY);
+        if(configured != null && !configured.isEmpty())
+        {
+            return new NativeLibraryCache(Paths.get(configured));
+        }
+
+        return new NativeLibraryCache(Paths.get(
+            System.getProperty("java.io.tmpdir"),
+            NativeLibraryCache.DEFAULT_DIRECTORY_PREFIX + System.getProperty("user.name")
+        ));
+    }
+
+    /**
+     * Gets the cache directory.
+     *
+     * @return the directory.
+     */
+    Path getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Finds the cached copy of the library, writing it first if it is missing or does not match.
+     *
+     * @param fileName The library file name, without extension
+     * @param fileExtension The library file extension, including the period
+     * @param library The library content
+     *
+     * @return the path of the cached copy, which is safe to load.
+     *
+     * @throws IOException if the library cannot be cached or the directory cannot be trusted.
+     */
+    Path install(final String fileName, final String fileExtension, final byte[] library) throws IOException
+    {
+        final CRC32 checksum = new CRC32();
+        checksum.update(library);
+        final Path cached = this.directory.resolve(
+            fileName + "-" + String.format("%08x%08x", library.length, checksum.getValue()) + fileExtension
+        );
+
+        this.createTrustedDirectory();
+        if(NativeLibraryCache.matches(cached, library))
+        {
+            return cached;
+        }
+
+        final Path temporary = Files.createTempFile(this.directory, fileName, ".tmp");
+        try
+        {
+            Files.write(temporary, library);
+            Files.move(temporary, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(final IOException e)
+        {
+            // another JVM may have published the library while we were writing it, and holds it open on Windows
+            if(!NativeLibraryCache.matches(cached, library))
+            {
+                throw e;
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+
+        return cached;
+    }
+
+    private void createTrustedDirectory() throws IOException
+    {
+        final boolean posix = this.directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+        if(!Files.isDirectory(this.directory))
+        {
+            if(posix)
+            {
+                Files.createDirectories(
+                    this.directory,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+                );
+            }
+            else
+            {
+                Files.createDirectories(this.directory);
+            }
+        }
+
+        if(posix)
+        {
+            final PosixFileAttributes attributes = Files.readAttributes(this.directory, PosixFileAttributes.class);
+            final UserPrincipal owner = attributes.owner();
+            if(!owner.getName().equals(System.getProperty("user.name")) &&
+               !owner.getName().equals(NativeLibraryCache.ROOT_USER))
+            {
+                throw new IOException("The library cache " + this.directory + " belongs to " + owner.getName() + ".");
+            }
+            if(attributes.permissions().contains(PosixFilePermission.GROUP_WRITE) ||
+               attributes.permissions().contains(PosixFilePermission.OTHERS_WRITE))
+            {
+                throw new IOException("The library cache " + this.directory + " is writable by other users.");
+            }
+        }
+    }
+
+    private static boolean matches(final Path cached, final byte[] library) throws IOException
+    {
+        return Files.isRegularFile(cached) && Files.size(cached) == library.length &&
+               Arrays.equals(library, Files.readAllBytes(cached));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+
+/**
+ * This POJO represents an entry of the kernel neighbor (ARP and NDP) table, as mirrored by {@link RoutingTableMirror}.
+ *
+ * @see RoutingTableMirror
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Neighbor
+{
+    /**
+     * The kernel is resolving the link-layer address ({@code NUD_INCOMPLETE}).
+     */
+    public static final int STATE_INCOMPLETE = 0x01;
+
+    /**
+     * The link-layer address was recently confirmed ({@code NUD_REACHABLE}).
+     */
+    public static final int STATE_REACHABLE = 0x02;
+
+    /**
+     * The link-layer address is known but has not been confirmed recently ({@code NUD_STALE}).
+     */
+    public static final int STATE_STALE = 0x04;
+
+    /**
+     * The kernel is waiting to confirm a stale link-layer address ({@code NUD_DELAY}).
+     */
+    public static final int STATE_DELAY = 0x08;
+
+    /**
+     * The kernel is confirming a stale link-layer address ({@code NUD_PROBE}).
+     */
+    public static final int STATE_PROBE = 0x10;
+
+    /**
+     * Resolving the link-layer address failed ({@code NUD_FAILED}).
+     */
+    public static final int STATE_FAILED = 0x20;
+
+    /**
+     * The neighbor needs no link-layer address ({@code NUD_NOARP}).
+     */
+    public static final int STATE_NOARP = 0x40;
+
+    /**
+     * The link-layer address was configured statically ({@code NUD_PERMANENT}).
+     */
+    public static final int STATE_PERMANENT = 0x80;
+
+    private static final int STATE_VALID = Neighbor.STATE_REACHABLE | Neighbor.STATE_STALE | Neighbor.STATE_DELAY |
+                                           Neighbor.STATE_PROBE | Neighbor.STATE_NOARP | Neighbor.STATE_PERMANENT;
+
+    private final InetAddress address;
+
+    private final int interfaceIndex;
+
+    private final byte[] linkLayerAddress;
+
+    private final int state;
+
+    /**
+     * Constructor.
+     *
+     * @param address The neighbor's network address
+     * @param interfaceIndex The index of the interface the neighbor is on
+     * @param linkLayerAddress The neighbor's link-layer address, or {@code null} if it is not known
+     * @param state The neighbor state, a combination of the {@code STATE_*} constants
+     */
+    public Neighbor(final InetAddress address, final int interfaceIndex, final byte[] linkLayerAddress, final int state)
+    {
+        if(address == null)
+        {
+            throw new IllegalArgumentException("Parameter address cannot be null!");
+        }
+
+        this.address = address;
+        this.interfaceIndex = interfaceIndex;
+        this.linkLayerAddress = linkLayerAddress == null ? null : linkLayerAddress.clone();
+        this.state = state;
+    }
+
+    /**
+     * Get the neighbor's network address.
+     *
+     * @return the address.
+     */
+    public InetAddress getAddress()
+    {
+        return this.address;
+    }
+
+    /**
+     * Get the index of the interface the neighbor is on.
+     *
+     * @return the interface index.
+     */
+    public int getInterfaceIndex()
+    {
+        return this.interfaceIndex;
+    }
+
+    /**
+     * Get the neighbor's link-layer address, such as its MAC address.
+     *
+     * @return a copy of the link-layer address, or {@code null} if it is not known.
+     */
+    public byte[] getLinkLayerAddress()
+    {
+        return this.linkLayerAddress == null ? null : this.linkLayerAddress.clone();
+    }
+
+    /**
+     * Get the neighbor state.
+     *
+     * @return the state, a combination of the {@code STATE_*} constants.
+     */
+    public int getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * Indicates whether packets can be addressed to the neighbor, because its link-layer address is known or it needs
+     * none.
+     *
+     * @return whether the neighbor is valid.
+     */
+    public boolean isValid()
+    {
+        return (this.state & Neighbor.STATE_VALID) != 0;
+    }
+
+    /**
+     * Get a string representation of the neighbor.
+     *
+     * @return a string.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder string = new StringBuilder("{ address: ");
+        string.append(this.address.getHostAddress()).
+            append(", interfaceIndex: ").append(this.interfaceIndex).
+            append(", linkLayerAddress: ");
+        if(this.linkLayerAddress == null)
+        {
+            string.append("null");
+        }
+        else
+        {
+            for(int i = 0; i < this.linkLayerAddress.length; i++)
+            {
+                string.append(i == 0 ? "" : ":").append(String.format("%02x", this.linkLayerAddress[i]));
+            }
+        }
+        string.append(", state: 0x").append(Integer.toHexString(this.state)).append(" }");
+
+        return string.toString();
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the rtnetlink route and neighbor messages that {@link RoutingTableMirror} receives (see linux/netlink.h,
+ * linux/rtnetlink.h and linux/neighbour.h). The messages are in host byte order, so the buffer must be too. Messages
+ * of other types, and truncated messages, are skipped.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class NetlinkParser
+{
+    static final int HEADER_SIZE = 16;
+
+    static final int NLMSG_ERROR = 2;
+
+    static final int NLMSG_DONE = 3;
+
+    static final int NLM_F_REPLACE = 0x100;
+
+    static final int RTM_NEWROUTE = 24;
+
+    static final int RTM_DELROUTE = 25;
+
+    static final int RTM_NEWNEIGH = 28;
+
+    static final int RTM_DELNEIGH = 29;
+
+    static final int AF_INET = 2;
+
+    static final int AF_INET6 = 10;
+
+    static final int RTA_DST = 1;
+
+    static final int RTA_OIF = 4;
+
+    static final int RTA_GATEWAY = 5;
+
+    static final int RTA_PRIORITY = 6;
+
+    static final int RTA_PREFSRC = 7;
+
+    static final int RTA_MULTIPATH = 9;
+
+    static final int RTA_TABLE = 15;
+
+    static final int NDA_DST = 1;
+
+    static final int NDA_LLADDR = 2;
+
+    /*
+     * struct rtmsg and struct ndmsg are both 12 bytes, struct rtattr and struct rtnexthop 4 and 8.
+     */
+    private static final int BODY_SIZE = 12;
+
+    private static final int ATTRIBUTE_HEADER_SIZE = 4;
+
+    private static final int NEXT_HOP_SIZE = 8;
+
+    private static final int ALIGNMENT = 4;
+
+    private static final int ATTRIBUTE_TYPE_MASK = 0x3FFF;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int SHORT_MASK = 0xFFFF;
+
+    private static final int IPV4_SIZE = 4;
+
+    private static final int IPV6_SIZE = 16;
+
+    /**
+     * Constructor.
+     */
+    private NetlinkParser()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Decodes every message from the buffer's position to its limit, and leaves the position at the limit.
+     *
+     * @param buffer The received messages, in host byte order
+     * @param handler Receives each decoded message
+     */
+    static void parse(final ByteBuffer buffer, final Handler handler)
+    {
+        final int end = buffer.limit();
+        int offset = buffer.position();
+        while(end - offset >= NetlinkParser.HEADER_SIZE)
+        {
+            final int length = buffer.getInt(offset);
+            if(length < NetlinkParser.HEADER_SIZE || length > end - offset)
+            {
+                break;
+            }
+
+            final int type = buffer.getShort(offset + 4) & NetlinkParser.SHORT_MASK;
+            final int flags = buffer.getShort(offset + 6) & NetlinkParser.SHORT_MASK;
+            final int sequence = buffer.getInt(offset + 8);
+            final int body = offset + NetlinkParser.HEADER_SIZE;
+            final int bodyEnd = offset + length;
+
+            switch(type)
+            {
+                case NetlinkParser.NLMSG_DONE:
+                    handler.done(sequence);
+                    break;
+                case NetlinkParser.NLMSG_ERROR:
+                    if(bodyEnd - body >= 4 && buffer.getInt(body) != 0)
+                    {
+                        handler.error(sequence, -buffer.getInt(body));
+                    }
+                    break;
+                case NetlinkParser.RTM_NEWROUTE:
+                case NetlinkParser.RTM_DELROUTE:
+                    final Route route = NetlinkParser.parseRoute(buffer, body, bodyEnd);
+                    if(route != null)
+                    {
+                        handler.route(
+                            type == NetlinkParser.RTM_NEWROUTE, (flags & NetlinkParser.NLM_F_REPLACE) != 0, route
+                        );
+                    }
+                    break;
+                case NetlinkParser.RTM_NEWNEIGH:
+                case NetlinkParser.RTM_DELNEIGH:
+                    final Neighbor neighbor = NetlinkParser.parseNeighbor(buffer, body, bodyEnd);
+                    if(neighbor != null)
+                    {
+                        handler.neighbor(type == NetlinkParser.RTM_NEWNEIGH, neighbor);
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            offset += NetlinkParser.align(length);
+        }
+
+        buffer.position(end);
+    }
+
+    private static Route parseRoute(final ByteBuffer buffer, final int body, final int end)
+    {
+        if(end - body < NetlinkParser.BODY_SIZE)
+        {
+            return null;
+        }
+
+        final int size = NetlinkParser.addressSize(buffer.get(body) & NetlinkParser.BYTE_MASK);
+        if(size == 0)
+        {
+            return null;
+        }
+
+        final int prefixLength = buffer.get(body + 1) & NetlinkParser.BYTE_MASK;
+        final int typeOfService = buffer.get(body + 3) & NetlinkParser.BYTE_MASK;
+        int table = buffer.get(body + 4) & NetlinkParser.BYTE_MASK;
+        final int type = buffer.get(body + 7) & NetlinkParser.BYTE_MASK;
+
+        byte[] destination = null;
+        byte[] gateway = null;
+        byte[] preferredSource = null;
+        int interfaceIndex = 0;
+        int priority = 0;
+
+        int attribute = body + NetlinkParser.BODY_SIZE;
+        while(end - attribute >= NetlinkParser.ATTRIBUTE_HEADER_SIZE)
+        {
+            final int length = buffer.getShort(attribute) & NetlinkParser.SHORT_MASK;
+            if(length < NetlinkParser.ATTRIBUTE_HEADER_SIZE || length > end - attribute)
+            {
+                break;
+            }
+
+            final int data = attribute + NetlinkParser.ATTRIBUTE_HEADER_SIZE;
+            final int dataLength = length - NetlinkParser.ATTRIBUTE_HEADER_SIZE;
+            switch(buffer.getShort(attribute + 2) & NetlinkParser.ATTRIBUTE_TYPE_MASK)
+            {
+                case NetlinkParser.RTA_DST:
+                    destination = NetlinkParser.getAddress(buffer, data, dataLength, size);
+                    break;
+                case NetlinkParser.RTA_GATEWAY:
+                    gateway = NetlinkParser.getAddress(buffer, data, dataLength, size);
+                    break;
+                case NetlinkParser.RTA_PREFSRC:
+                    preferredSource = NetlinkParser.getAddress(buffer, data, dataLength, size);
+                    break;
+                case NetlinkParser.RTA_OIF:
+                    interfaceIndex = dataLength >= 4 ? buffer.getInt(data) : interfaceIndex;
+                    break;
+                case NetlinkParser.RTA_PRIORITY:
+                    priority = dataLength >= 4 ? buffer.getInt(data) : priority;
+                    break;
+                case NetlinkParser.RTA_TABLE:
+                    table = dataLength >= 4 ? buffer.getInt(data) : table;
+                    break;
+                case NetlinkParser.RTA_MULTIPATH:
+                    // only the first next hop of a multipath route is mirrored
+                    if(dataLength >= NetlinkParser.NEXT_HOP_SIZE && interfaceIndex == 0 && gateway == null)
+                    {
+                        final int hopLength = Math.min(buffer.getShort(data) & NetlinkParser.SHORT_MASK, dataLength);
+                        interfaceIndex = buffer.getInt(data + 4);
+                        gateway = NetlinkParser.findAddress(
+                            buffer, data + NetlinkParser.NEXT_HOP_SIZE, data + hopLength, NetlinkParser.RTA_GATEWAY,
+                            size
+                        );
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            attribute += NetlinkParser.align(length);
+        }
+
+        if(prefixLength > size * Byte.SIZE)
+        {
+            return null;
+        }
+
+        return new Route(
+            NetlinkParser.toAddress(destination == null ? new byte[size] : destination), prefixLength,
+            NetlinkParser.toAddress(gateway), NetlinkParser.toAddress(preferredSource), interfaceIndex, table,
+            Route.Type.valueOf(type), priority, typeOfService
+        );
+    }
+
+    private static Neighbor parseNeighbor(final ByteBuffer buffer, final int body, final int end)
+    {
+        if(end - body < NetlinkParser.BODY_SIZE)
+        {
+            return null;
+        }
+
+        final int size = NetlinkParser.addressSize(buffer.get(body) & NetlinkParser.BYTE_MASK);
+        if(size == 0)
+        {
+            return null;
+        }
+
+        final int interfaceIndex = buffer.getInt(body + 4);
+        final int state = buffer.getShort(body + 8) & NetlinkParser.SHORT_MASK;
+
+        byte[] address = null;
+        byte[] linkLayerAddress = null;
+
+        int attribute = body + NetlinkParser.BODY_SIZE;
+        while(end - attribute >= NetlinkParser.ATTRIBUTE_HEADER_SIZE)
+        {
+            final int length = buffer.getShort(attribute) & NetlinkParser.SHORT_MASK;
+            if(length < NetlinkParser.ATTRIBUTE_HEADER_SIZE || length > end - attribute)
+            {
+                break;
+            }
+
+            final int data = attribute + NetlinkParser.ATTRIBUTE_HEADER_SIZE;
+            final int dataLength = length - NetlinkParser.ATTRIBUTE_HEADER_SIZE;
+            switch(buffer.getShort(attribute + 2) & NetlinkParser.ATTRIBUTE_TYPE_MASK)
+            {
+                case NetlinkParser.NDA_DST:
+                    address = NetlinkParser.getAddress(buffer, data, dataLength, size);
+                    break;
+                case NetlinkParser.NDA_LLADDR:
+                    linkLayerAddress = NetlinkParser.getBytes(buffer, data, dataLength);
+                    break;
+                default:
+                    break;
+            }
+
+            attribute += NetlinkParser.align(length);
+        }
+
+        if(address == null)
+        {
+            return null;
+        }
+
+        return new Neighbor(NetlinkParser.toAddress(address), interfaceIndex, linkLayerAddress, state);
+    }
+
+    private static byte[] findAddress(
+        final ByteBuffer buffer, final int start, final int end, final int type, final int size
+    )
+    {
+        int attribute = start;
+        while(end - attribute >= NetlinkParser.ATTRIBUTE_HEADER_SIZE)
+        {
+            final int length = buffer.getShort(attribute) & NetlinkParser.SHORT_MASK;
+            if(length < NetlinkParser.ATTRIBUTE_HEADER_SIZE || length > end - attribute)
+            {
+                break;
+            }
+            if((buffer.getShort(attribute + 2) & NetlinkParser.ATTRIBUTE_TYPE_MASK) == type)
+            {
+                return NetlinkParser.getAddress(
+                    buffer, attribute + NetlinkParser.ATTRIBUTE_HEADER_SIZE,
+                    length - NetlinkParser.ATTRIBUTE_HEADER_SIZE, size
+                );
+            }
+            attribute += NetlinkParser.align(length);
+        }
+
+        return null;
+    }
+
+    private static byte[] getAddress(final ByteBuffer buffer, final int data, final int length, final int size)
+    {
+        return length == size ? NetlinkParser.getBytes(buffer, data, size) : null;
+    }
+
+    private static byte[] getBytes(final ByteBuffer buffer, final int data, final int length)
+    {
+        final byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            bytes[i] = buffer.get(data + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts an address, keeping 16-byte addresses IPv6 even when they are IPv4-mapped, so that a prefix such as
+     * {@code ::ffff:0:0/96} keeps its family.
+     */
+    private static InetAddress toAddress(final byte[] address)
+    {
+        if(address == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return address.length == NetlinkParser.IPV6_SIZE ?
+                   Inet6Address.getByAddress(null, address, -1) :
+                   InetAddress.getByAddress(address);
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new AssertionError("The address has the wrong length.", e);
+        }
+    }
+
+    private static int addressSize(final int family)
+    {
+        return family == NetlinkParser.AF_INET ? NetlinkParser.IPV4_SIZE :
+               family == NetlinkParser.AF_INET6 ? NetlinkParser.IPV6_SIZE : 0;
+    }
+
+    private static int align(final int length)
+    {
+        return (length + NetlinkParser.ALIGNMENT - 1) & -NetlinkParser.ALIGNMENT;
+    }
+
+    /**
+     * Receives the decoded messages.
+     */
+    interface Handler
+    {
+        /**
+         * Receives a route that was added, changed, or deleted, or listed by a dump.
+         *
+         * @param added Whether the route was added or listed, rather than deleted
+         * @param replace Whether the route replaces the route with the same destination, type of service and priority
+         * @param route The route
+         */
+        void route(boolean added, boolean replace, Route route);
+
+        /**
+         * Receives a neighbor that was added, changed, or deleted, or listed by a dump.
+         *
+         * @param added Whether the neighbor was added, changed or listed, rather than deleted
+         * @param neighbor The neighbor
+         */
+        void neighbor(boolean added, Neighbor neighbor);
+
+        /**
+         * Receives the end of a dump.
+         *
+         * @param sequence The sequence number of the dump request
+         */
+        void done(int sequence);
+
+        /**
+         * Receives the failure of a request.
+         *
+         * @param sequence The sequence number of the request
+         * @param error The error number
+         */
+        void error(int sequence, int error);
+    }
+}
@@ -16,6 +16,7 @@
 package io.oddsource.java.net.socket;
 
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 import io.oddsource.java.net.socket.exception.FinalizedPacketException;
 import io.oddsource.java.net.socket.exception.IllegalHopLimitException;
@@ -53,6 +54,11 @@ public interface Packet
      */
     public static final short MAX_HOP_LIMIT = 255;
 
+    /**
+     * The timestamp of a packet that was not timestamped by the kernel.
+     */
+    public static final long NO_TIMESTAMP = 0L;
+
     /**
      * Returns the entire packet represented in bytes. To fulfill the contract for this method, the implementing class
      * should return the concatenated return values from (1) {@link #getHeaderData()} and (2) {@link #getPayloadData()}.
@@ -61,6 +67,25 @@ public interface Packet
      */
     public abstract byte[] getPacketData();
 
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, without the intermediate array of {@link #getPacketData()} where the implementation allows it. A
+     * {@link HeaderView} can then read or change the packet in place, and it can be sent from the buffer.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws java.nio.BufferOverflowException if the buffer does not have room for the packet, in which case nothing
+     *     is written.
+     */
+    public default int writePacketData(final ByteBuffer buffer)
+    {
+        final byte[] data = this.getPacketData();
+        buffer.put(data);
+        return data.length;
+    }
+
     /**
      * Gets the content of the packet IP header. A copy of the internal array, if one exists, must be made to avoid
      * external modification.
@@ -192,6 +217,39 @@ public interface Packet
      */
     public abstract boolean isFinalized();
 
+    /**
+     * Gets the time the kernel received this packet, if it was received on a socket with receive timestamps enabled.
+     * Unlike a {@link System#nanoTime()} reading taken after the receive returns, this excludes the time the packet
+     * spent queued on the socket and the time the receiving thread took to be scheduled.<br>
+     * <br>
+     * The default implementation, for packets that do not keep a timestamp, always returns {@link #NO_TIMESTAMP}.
+     *
+     * @return the kernel receive time in nanoseconds since the epoch, or {@link #NO_TIMESTAMP}.
+     *
+     * @see RawSocket#setReceiveTimestamps(boolean)
+     */
+    public default long getTimestamp()
+    {
+        return Packet.NO_TIMESTAMP;
+    }
+
+    /**
+     * Sets the time the kernel received this packet. Only packets of source {@link Source#INCOMING} have timestamps.
+     * The default implementation, for packets that do not keep a timestamp, ignores it and returns {@code false}.
+     *
+     * @param timestamp The kernel receive time in nanoseconds since the epoch, or {@link #NO_TIMESTAMP}
+     *
+     * @return {@code true} if this packet is of source {@link Source#INCOMING} and setting the timestamp is allowed,
+     *     {@code false} if this packet is of source {@link Source#OUTGOING} and setting the timestamp is not allowed.
+     *
+     * @throws FinalizedPacketException if this packet is of source {@link Source#INCOMING} and was finalized prior
+     *     to the invocation of this method.
+     */
+    public default boolean setTimestamp(final long timestamp) throws FinalizedPacketException
+    {
+        return false;
+    }
+
     /**
      * Gets the source of this packet (incoming or outgoing). To fulfill the contract of this interface, the source of
      * the packet should be set in the packet constructor and should never again be changed (it should be a final
@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A reusable, preallocated set of packet slots for sending or receiving many packets with a single native call (and,
+ * where the operating system supports it, a single system call). All slot data lives in one direct buffer, each slot
+ * occupying {@link #getSlotSize()} bytes starting at {@link #getSlotOffset(int)}.<br>
+ * <br>
+ * Each slot also carries its packet length and two addresses. The remote address is the destination of an outgoing
+ * packet or the source of an incoming packet. The local address is the source address an outgoing packet should be
+ * sent from or the destination address an incoming packet was sent to; it is optional for outgoing packets and is only
+ * reported for incoming packets when {@link Constants#IP_PKTINFO} or {@link Constants#IPV6_RECVPKTINFO} is enabled
+ * on the socket. Incoming packets also carry the time the kernel received them when receive timestamps are enabled
+ * on the socket (see {@link RawSocket#setReceiveTimestamps(boolean)}).<br>
+ * <br>
+ * Batches are not thread safe.
+ *
+ * @see RawSocket#sendBatch(PacketBatch)
+ * @see RawSocket#receiveBatch(PacketBatch, int)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PacketBatch
+{
+    /**
+     * The maximum length of an address in a slot (the length of an IPv6 address).
+     */
+    public static final int MAXIMUM_ADDRESS_LENGTH = 16;
+
+    private final int capacity;
+
+    private final int slotSize;
+
+    private final ByteBuffer buffer;
+
+    private final int[] lengths;
+
+    private final byte[] remoteAddresses;
+
+    private final int[] remoteAddressLengths;
+
+    private final byte[] localAddresses;
+
+    private final int[] localAddressLengths;
+
+    private final long[] timestamps;
+
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The number of slots in the batch
+     * @param slotSize The maximum size of each packet, in bytes
+     */
+    public PacketBatch(final int capacity, final int slotSize)
+    {
+        if(capacity < 1)
+        {
+            throw new IllegalArgumentException("Parameter capacity must be positive.");
+        }
+        if(slotSize < 1 || slotSize > Integer.MAX_VALUE / capacity)
+        {
+            throw new IllegalArgumentException("Parameter slotSize must be positive and fit in a single buffer.");
+        }
+
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+        this.buffer = ByteBuffer.allocateDirect(capacity * slotSize);
+        this.lengths = new int[capacity];
+        this.remoteAddresses = new byte[capacity * PacketBatch.MAXIMUM_ADDRESS_LENGTH];
+        this.remoteAddressLengths = new int[capacity];
+        this.localAddresses = new byte[capacity * PacketBatch.MAXIMUM_ADDRESS_LENGTH];
+        this.localAddressLengths = new int[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    /**
+     * Gets the number of slots in this batch.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the maximum size of each packet.
+     *
+     * @return the slot size, in bytes.
+     */
+    public int getSlotSize()
+    {
+        return this.slotSize;
+    }
+
+    /**
+     * Gets the number of slots in use. For outgoing batches, this is the number of slots that will be sent; after a
+     * receive, it is the number of slots that were filled.
+     *
+     * @return the number of slots in use.
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Sets the number of slots in use. Slots {@code 0} through {@code size - 1} will be sent.
+     *
+     * @param size The number of slots in use
+     */
+    public void setSize(final int size)
+    {
+        if(size < 0 || size > this.capacity)
+        {
+            throw new IllegalArgumentException("Parameter size must be between 0 and " + this.capacity + ".");
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Marks all slots unused and forgets their lengths and addresses.
+     */
+    public void clear()
+    {
+        this.size = 0;
+        Arrays.fill(this.lengths, 0);
+        Arrays.fill(this.remoteAddressLengths, 0);
+        Arrays.fill(this.localAddressLengths, 0);
+        Arrays.fill(this.timestamps, Packet.NO_TIMESTAMP);
+    }
+
+    /**
+     * Gets the direct buffer backing every slot. Slot data should be read and written with the absolute get and put
+     * methods at {@link #getSlotOffset(int)}.
+     *
+     * @return the backing buffer.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the offset of the slot within the backing buffer.
+     *
+     * @param slot The slot index
+     *
+     * @return the offset, in bytes.
+     */
+    public int getSlotOffset(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return slot * this.slotSize;
+    }
+
+    /**
+     * Gets the length of the packet in the slot.
+     *
+     * @param slot The slot index
+     *
+     * @return the packet length, in bytes.
+     */
+    public int getLength(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return this.lengths[slot];
+    }
+
+    /**
+     * Sets the length of the packet in the slot.
+     *
+     * @param slot The slot index
+     * @param length The packet length, in bytes
+     */
+    public void setLength(final int slot, final int length)
+    {
+        this.checkSlot(slot);
+        if(length < 0 || length > this.slotSize)
+        {
+            throw new IllegalArgumentException("Parameter length must be between 0 and " + this.slotSize + ".");
+        }
+
+        this.lengths[slot] = length;
+    }
+
+    /**
+     * Gets the time the kernel received the packet in the slot.
+     *
+     * @param slot The slot index
+     *
+     * @return the kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP} if the packet was
+     *     not timestamped.
+     */
+    public long getTimestamp(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return this.timestamps[slot];
+    }
+
+    /**
+     * Gets the remote address of the slot: the destination of an outgoing packet or the source of an incoming packet.
+     * This allocates a new address; see {@link #getRemoteAddress(int, byte[])} for an allocation-free alternative.
+     *
+     * @param slot The slot index
+     *
+     * @return the remote address, or {@code null} if none is set.
+     */
+    public InetAddress getRemoteAddress(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return PacketBatch.toInetAddress(this.remoteAddresses, slot, this.remoteAddressLengths[slot]);
+    }
+
+    /**
+     * Copies the raw remote address of the slot into the array.
+     *
+     * @param slot The slot index
+     * @param address The array to copy the address into, which must hold at least {@link #MAXIMUM_ADDRESS_LENGTH}
+     *     bytes
+     *
+     * @return the length of the address (4 for IPv4, 16 for IPv6), or 0 if none is set.
+     */
+    public int getRemoteAddress(final int slot, final byte[] address)
+    {
+        this.checkSlot(slot);
+
+        final int length = this.remoteAddressLengths[slot];
+        System.arraycopy(this.remoteAddresses, slot * PacketBatch.MAXIMUM_ADDRESS_LENGTH, address, 0, length);
+        return length;
+    }
+
+    /**
+     * Sets the remote address of the slot, which is the destination of an outgoing packet.
+     *
+     * @param slot The slot index
+     * @param address The destination address
+     */
+    public void setRemoteAddress(final int slot, final InetAddress address)
+    {
+        this.checkSlot(slot);
+        if(address == null)
+        {
+            throw new IllegalArgumentException("Parameter address cannot be null!");
+        }
+
+        this.remoteAddressLengths[slot] = PacketBatch.copyAddress(address, this.remoteAddresses, slot);
+    }
+
+    /**
+     * Gets the local address of the slot: the source address of an outgoing packet or the address an incoming packet
+     * was sent to. This allocates a new address; see {@link #getLocalAddress(int, byte[])} for an allocation-free
+     * alternative.
+     *
+     * @param slot The slot index
+     *
+     * @return the local address, or {@code null} if none is set or reported.
+     */
+    public InetAddress getLocalAddress(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return PacketBatch.toInetAddress(this.localAddresses, slot, this.localAddressLengths[slot]);
+    }
+
+    /**
+     * Copies the raw local address of the slot into the array.
+     *
+     * @param slot The slot index
+     * @param address The array to copy the address into, which must hold at least {@link #MAXIMUM_ADDRESS_LENGTH}
+     *     bytes
+     *
+     * @return the length of the address (4 for IPv4, 16 for IPv6), or 0 if none is set or reported.
+     */
+    public int getLocalAddress(final int slot, final byte[] address)
+    {
+        this.checkSlot(slot);
+
+        final int length = this.localAddressLengths[slot];
+        System.arraycopy(this.localAddresses, slot * PacketBatch.MAXIMUM_ADDRESS_LENGTH, address, 0, length);
+        return length;
+    }
+
+    /**
+     * Sets the local address of the slot, which is the source address an outgoing packet is sent from.
+     *
+     * @param slot The slot index
+     * @param address The source address, or {@code null} to let the operating system choose
+     */
+    public void setLocalAddress(final int slot, final InetAddress address)
+    {
+        this.checkSlot(slot);
+
+        this.localAddressLengths[slot] =
+            address == null ? 0 : PacketBatch.copyAddress(address, this.localAddresses, slot);
+    }
+
+    int[] getLengths()
+    {
+        return this.lengths;
+    }
+
+    byte[] getRemoteAddresses()
+    {
+        return this.remoteAddresses;
+    }
+
+    int[] getRemoteAddressLengths()
+    {
+        return this.remoteAddressLengths;
+    }
+
+    byte[] getLocalAddresses()
+    {
+        return this.localAddresses;
+    }
+
+    int[] getLocalAddressLengths()
+    {
+        return this.localAddressLengths;
+    }
+
+    long[] getTimestamps()
+    {
+        return this.timestamps;
+    }
+
+    private void checkSlot(final int slot)
+    {
+        if(slot < 0 || slot >= this.capacity)
+        {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of bounds for capacity " + this.capacity + ".");
+        }
+    }
+
+    private static int copyAddress(final InetAddress address, final byte[] addresses, final int slot)
+    {
+        final byte[] raw = address.getAddress();
+        System.arraycopy(raw, 0, addresses, slot * PacketBatch.MAXIMUM_ADDRESS_LENGTH, raw.length);
+        return raw.length;
+    }
+
+    private static InetAddress toInetAddress(final byte[] addresses, final int slot, final int length)
+    {
+        if(length == 0)
+        {
+            return null;
+        }
+
+        final int offset = slot * PacketBatch.MAXIMUM_ADDRESS_LENGTH;
+        try
+        {
+            return InetAddress.getByAddress(Arrays.copyOfRange(addresses, offset, offset + length));
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new IllegalStateException("The native code reported an illegal address length.", e);
+        }
+    }
+}
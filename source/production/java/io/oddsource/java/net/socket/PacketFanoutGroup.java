@@ -0,0 +1,554 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A group of {@code AF_PACKET} sockets joined with {@code PACKET_FANOUT} (Linux only). The kernel steers every packet
+ * the group captures to exactly one member socket, chosen by the group's {@link Mode}, so that each member can be
+ * drained by its own thread on its own core instead of one socket and one core receiving everything.<br>
+ * <br>
+ * Members are ordinary sockets: they can receive packets, receive batches, or map receive rings. The simplest way to
+ * drain them is {@link #start(Worker)}, which binds one worker thread to each member:
+ * <pre>
+ * try(final PacketFanoutGroup group = new PacketFanoutGroup(
+ *     PacketFanoutGroup.Mode.HASH, 4, PacketFanoutGroup.ETHERTYPE_ALL, NetworkInterface.getByName("eth0")
+ * ))
+ * {
+ *     group.start((member, socket) -&gt; {
+ *         final PacketBatch batch = batches[member];
+ *         final int count = socket.receiveBatch(batch, batch.getCapacity());
+ *         // ...
+ *     });
+ *     // ...
+ *     System.out.println(Arrays.toString(group.getPacketCounts()));
+ * }
+ * </pre>
+ * The group tracks the kernel's per-member statistics, so {@link #getPacketCounts()} shows how the mode spread the
+ * traffic across members, including packets a member dropped because it could not keep up.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PacketFanoutGroup extends DynamicNativeObject implements Closeable
+{
+    /**
+     * The EtherType that captures every protocol ({@code ETH_P_ALL}).
+     */
+    public static final int ETHERTYPE_ALL = 0x0003;
+
+    /**
+     * The EtherType of IPv4 ({@code ETH_P_IP}).
+     */
+    public static final int ETHERTYPE_IPV4 = 0x0800;
+
+    /**
+     * The EtherType of IPv6 ({@code ETH_P_IPV6}).
+     */
+    public static final int ETHERTYPE_IPV6 = 0x86DD;
+
+    /**
+     * The receive timeout, in milliseconds, that {@link #start(Worker)} gives each member so that its worker notices
+     * the group closing.
+     */
+    public static final int WORKER_POLL_INTERVAL = 100;
+
+    /*
+     * The fanout modes (see linux/if_packet.h). The native library refuses to compile if they are wrong.
+     */
+    private static final int FANOUT_HASH = 0;
+
+    private static final int FANOUT_LOAD_BALANCE = 1;
+
+    private static final int FANOUT_CPU = 2;
+
+    private static final int FANOUT_ROLLOVER = 3;
+
+    private static final int NO_ID = -1;
+
+    private static final int MAXIMUM_ETHERTYPE = 0xFFFF;
+
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toNanos(1L);
+
+    private final Mode mode;
+
+    private final int id;
+
+    private final RawSocketImpl[] members;
+
+    private final long[] packetCounts;
+
+    private final long[] dropCounts;
+
+    private final Object workerLock = new Object();
+
+    private Thread[] workers;
+
+    private Exception failure;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor. Opens the member sockets, binds them to the interface and EtherType, and joins them to a new
+     * fanout group whose identifier the kernel allocates. Hash fanout also asks the kernel to reassemble IP fragments
+     * first, so that every fragment of a datagram reaches the same member.
+     *
+     * @param mode How the kernel chooses the member for each packet
+     * @param size The number of members
+     * @param etherType The EtherType to capture, such as {@link #ETHERTYPE_ALL}
+     * @param networkInterface The interface to capture on, or {@code null} to capture on all interfaces
+     *
+     * @throws IOException if the sockets cannot be opened or joined.
+     * @throws UnsupportedOperationException if fanout is not supported on this platform.
+     */
+    public PacketFanoutGroup(
+        final Mode mode, final int size, final int etherType, final NetworkInterface networkInterface
+    ) throws IOException
+    {
+        super();
+
+        if(mode == null)
+        {
+            throw new IllegalArgumentException("Parameter mode cannot be null!");
+        }
+        if(size < 1)
+        {
+            throw new IllegalArgumentException("Parameter size must be positive.");
+        }
+        if(etherType < 0 || etherType > PacketFanoutGroup.MAXIMUM_ETHERTYPE)
+        {
+            throw new IllegalArgumentException("Parameter etherType must be a 16-bit EtherType.");
+        }
+
+        this.mode = mode;
+        this.members = new RawSocketImpl[size];
+        this.packetCounts = new long[size];
+        this.dropCounts = new long[size];
+
+        final int interfaceIndex = networkInterface == null ? 0 : networkInterface.getIndex();
+        int groupId = PacketFanoutGroup.NO_ID;
+        try
+        {
+            for(int i = 0; i < size; i++)
+            {
+                this.members[i] = new Member();
+                this.members[i].openPacket(etherType, interfaceIndex);
+                groupId = PacketFanoutGroup.join(
+                    this.members[i].getNativeSocketIdentifier(), groupId, mode.getOsConstant()
+                );
+            }
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            try
+            {
+                this.closeMembers();
+            }
+            catch(final IOException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.id = groupId;
+    }
+
+    /**
+     * Gets the mode of this group.
+     *
+     * @return the fanout mode.
+     */
+    public Mode getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * Gets the identifier the kernel allocated for this group.
+     *
+     * @return the group identifier.
+     */
+    public int getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Gets the number of members in this group.
+     *
+     * @return the member count.
+     */
+    public int getSize()
+    {
+        return this.members.length;
+    }
+
+    /**
+     * Gets a member socket. Member sockets cannot be closed individually; closing the group closes them.
+     *
+     * @param member The member index
+     *
+     * @return the member socket, whose {@link RawSocket#close()} throws {@link UnsupportedOperationException}.
+     */
+    public RawSocket getMember(final int member)
+    {
+        return this.members[member];
+    }
+
+    /**
+     * Starts one worker thread per member. Each thread calls the worker with its member over and over until the group
+     * is closed, or until the worker throws an exception other than a {@link SocketTimeoutException}, which
+     * {@link #close()} then reports. Each member's
+     * receive timeout is set to {@link #WORKER_POLL_INTERVAL} so that blocked workers notice the group closing.
+     *
+     * @param worker The worker
+     *
+     * @throws IllegalStateException if the workers have already been started or the group is closed.
+     */
+    public void start(final Worker worker)
+    {
+        if(worker == null)
+        {
+            throw new IllegalArgumentException("Parameter worker cannot be null!");
+        }
+
+        synchronized(this.workerLock)
+        {
+            if(this.closed)
+            {
+                throw new IllegalStateException("The group is closed.");
+            }
+            if(this.workers != null)
+            {
+                throw new IllegalStateException("The workers have already been started.");
+            }
+
+            this.workers = new Thread[this.members.length];
+            for(int i = 0; i < this.members.length; i++)
+            {
+                final int member = i;
+                this.members[i].setReceiveTimeout(PacketFanoutGroup.WORKER_POLL_INTERVAL);
+                this.workers[i] = new Thread(() -> this.work(member, worker), "PacketFanoutGroup Worker " + i);
+                this.workers[i].setDaemon(true);
+            }
+            for(final Thread thread : this.workers)
+            {
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of packets the kernel has steered to each member, including packets a member dropped, since the
+     * group was created. The counts are final once the group is closed.
+     *
+     * @return a new array holding the packet count of each member.
+     *
+     * @throws IOException if the statistics cannot be read.
+     */
+    public long[] getPacketCounts() throws IOException
+    {
+        synchronized(this.workerLock)
+        {
+            this.collectStatistics();
+            return this.packetCounts.clone();
+        }
+    }
+
+    /**
+     * Gets the number of packets each member dropped because its receive queue or ring was full, since the group was
+     * created. The counts are final once the group is closed.
+     *
+     * @return a new array holding the drop count of each member.
+     *
+     * @throws IOException if the statistics cannot be read.
+     */
+    public long[] getDropCounts() throws IOException
+    {
+        synchronized(this.workerLock)
+        {
+            this.collectStatistics();
+            return this.dropCounts.clone();
+        }
+    }
+
+    /**
+     * Indicates whether this group is open.
+     *
+     * @return whether the group is open.
+     */
+    public boolean isOpen()
+    {
+        return !this.closed;
+    }
+
+    /**
+     * Stops the workers and closes every member socket. Workers normally notice within one
+     * {@link #WORKER_POLL_INTERVAL}; close waits at most one second in all for them to return and then closes the
+     * sockets anyway, which fails any worker still receiving with a {@link java.net.SocketException}.
+     *
+     * @throws IOException if a worker failed or a socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final Thread[] started;
+        synchronized(this.workerLock)
+        {
+            if(this.closed)
+            {
+                return;
+            }
+            this.closed = true;
+            started = this.workers;
+        }
+
+        if(started != null)
+        {
+            PacketFanoutGroup.awaitWorkers(started, System.nanoTime() + PacketFanoutGroup.CLOSE_TIMEOUT);
+        }
+
+        final Exception failed;
+        synchronized(this.workerLock)
+        {
+            try
+            {
+                this.collectStatistics();
+            }
+            finally
+            {
+                this.closeMembers();
+            }
+            failed = this.failure;
+        }
+
+        if(failed != null)
+        {
+            throw new IOException("A fanout worker failed.", failed);
+        }
+    }
+
+    private void work(final int member, final Worker worker)
+    {
+        final RawSocketImpl socket = this.members[member];
+        try
+        {
+            while(!this.closed)
+            {
+                try
+                {
+                    worker.work(member, socket);
+                }
+                catch(final SocketTimeoutException ignore)
+                {
+                    // the poll interval elapsed, so check whether the group is closed
+                }
+            }
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            synchronized(this.workerLock)
+            {
+                if(this.failure == null)
+                {
+                    this.failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the threads to die, until the deadline.
+     *
+     * @param threads The threads
+     * @param deadline The {@link System#nanoTime()} to stop waiting at
+     */
+    private static void awaitWorkers(final Thread[] threads, final long deadline)
+    {
+        boolean interrupted = false;
+        for(final Thread thread : threads)
+        {
+            while(thread != Thread.currentThread() && thread.isAlive())
+            {
+                final long remaining = deadline - System.nanoTime();
+                if(remaining <= 0)
+                {
+                    break;
+                }
+
+                try
+                {
+                    TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+                }
+                catch(final InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds the statistics the kernel has gathered since the last call, which reading resets, to the totals.
+     */
+    private void collectStatistics() throws IOException
+    {
+        for(int i = 0; i < this.members.length; i++)
+        {
+            final int socket = this.members[i].getNativeSocketIdentifier();
+            if(socket >= 0)
+            {
+                PacketFanoutGroup.readStatistics(socket, this.packetCounts, this.dropCounts, i);
+            }
+        }
+    }
+
+    private void closeMembers() throws IOException
+    {
+        IOException failed = null;
+        for(final RawSocketImpl member : this.members)
+        {
+            if(member != null)
+            {
+                try
+                {
+                    member.shutdownSocket();
+                    member.closeSocket();
+                }
+                catch(final IOException e)
+                {
+                    failed = e;
+                }
+            }
+        }
+
+        if(failed != null)
+        {
+            throw failed;
+        }
+    }
+
+    /**
+     * Join the socket to a fanout group.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param id The group identifier, or {@link #NO_ID} to have the kernel allocate a new group
+     * @param mode The fanout mode
+     *
+     * @return the group identifier.
+     *
+     * @throws IOException if the socket cannot join the group.
+     */
+    private static native int join(int socket, int id, int mode) throws IOException;
+
+    /**
+     * Read and reset the socket's {@code PACKET_STATISTICS}, adding them to the totals for the member.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param packetCounts The packet totals
+     * @param dropCounts The drop totals
+     * @param member The member index
+     *
+     * @throws IOException if the statistics cannot be read.
+     */
+    private static native void readStatistics(int socket, long[] packetCounts, long[] dropCounts, int member)
+        throws IOException;
+
+    /**
+     * How the kernel chooses the member that receives each packet.
+     */
+    public enum Mode
+    {
+        /**
+         * By a hash of the packet's flow, so that every packet of a flow reaches the same member
+         * ({@code PACKET_FANOUT_HASH}).
+         */
+        HASH(PacketFanoutGroup.FANOUT_HASH),
+
+        /**
+         * Round-robin across the members ({@code PACKET_FANOUT_LB}).
+         */
+        LOAD_BALANCE(PacketFanoutGroup.FANOUT_LOAD_BALANCE),
+
+        /**
+         * By the CPU that received the packet, so that with one member per CPU each packet stays on the core its
+         * interrupt was handled on ({@code PACKET_FANOUT_CPU}).
+         */
+        CPU(PacketFanoutGroup.FANOUT_CPU),
+
+        /**
+         * To one member until its queue is full, then to the next ({@code PACKET_FANOUT_ROLLOVER}).
+         */
+        ROLLOVER(PacketFanoutGroup.FANOUT_ROLLOVER);
+
+        private final int osConstant;
+
+        Mode(final int osConstant)
+        {
+            this.osConstant = osConstant;
+        }
+
+        /**
+         * Get the OS constant for this mode.
+         *
+         * @return the OS constant.
+         */
+        public int getOsConstant()
+        {
+            return this.osConstant;
+        }
+    }
+
+    /**
+     * Drains one member of a fanout group on the member's worker thread.
+     */
+    @FunctionalInterface
+    public interface Worker
+    {
+        /**
+         * Receives and processes whatever the member has queued. Called repeatedly until the group closes.
+         *
+         * @param member The member index
+         * @param socket The member socket
+         *
+         * @throws IOException if receiving fails, which stops this member's worker. Any runtime exception stops it
+         *     too, and {@link PacketFanoutGroup#close()} reports the first failure of any worker.
+         */
+        void work(int member, RawSocket socket) throws IOException;
+    }
+
+    /**
+     * A member socket, which only the group may close.
+     */
+    private static final class Member extends RawSocketImpl
+    {
+        @Override
+        public void close()
+        {
+            throw new UnsupportedOperationException("Member sockets are closed by closing the group.");
+        }
+    }
+}
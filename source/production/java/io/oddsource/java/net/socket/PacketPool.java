@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PacketLeakException;
+
+/**
+ * A pool of recyclable incoming packets, each backed by a fixed-size slot in one of a few large direct buffers
+ * (slabs). Receiving into a pooled packet allocates nothing once the pool is warm: the data stays in its slot, and the
+ * packet reads its header fields from there (see {@link PooledPacket}), instead of a new packet and new header and
+ * payload arrays per packet.<br>
+ * <br>
+ * Slabs of {@code slotsPerSlab} slots are allocated as the pool needs them, up to {@code maximumSlabs}, and are kept
+ * for the life of the pool. Every packet acquired from the pool starts with one reference, and goes back to the pool
+ * when {@link PooledPacket#release()} releases its last reference. A packet handed to another thread or kept past the
+ * code that acquired it should be retained with {@link PooledPacket#retain()} and released once more.<br>
+ * <br>
+ * A packet that is never released keeps its slot forever. To find these leaks, one packet in every
+ * {@link #getLeakSamplingInterval()} acquisitions records where it was acquired. If a recorded packet is garbage
+ * collected without being released, the pool takes its slot back, counts the leak (see {@link #getLeakCount()}), and
+ * passes a {@link PacketLeakException} with the acquisition site as its stack trace to the leak listener. Recording an
+ * acquisition costs a stack trace, so the interval should stay large in production.<br>
+ * <br>
+ * Pools are thread safe. The packets they hand out are not, except for retaining and releasing them.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PacketPool
+{
+    /**
+     * The default leak sampling interval.
+     */
+    public static final int DEFAULT_LEAK_SAMPLING_INTERVAL = 128;
+
+    private final int slotSize;
+
+    private final int slotsPerSlab;
+
+    private final int maximumSlabs;
+
+    private final Object lock = new Object();
+
+    private final ByteBuffer[] slabs;
+
+    private final PooledPacket[] free;
+
+    private int freeCount;
+
+    private int slabCount;
+
+    private final AtomicLong leakCount = new AtomicLong();
+
+    private volatile int leakSamplingInterval = PacketPool.DEFAULT_LEAK_SAMPLING_INTERVAL;
+
+    private volatile Consumer<PacketLeakException> leakListener;
+
+    /**
+     * Constructor.
+     *
+     * @param slotSize The maximum size of each packet, in bytes, which must hold at least an IPv6 header
+     * @param slotsPerSlab The number of slots in each slab
+     * @param maximumSlabs The maximum number of slabs the pool will allocate
+     */
+    public PacketPool(final int slotSize, final int slotsPerSlab, final int maximumSlabs)
+    {
+        if(slotsPerSlab < 1)
+        {
+            throw new IllegalArgumentException("Parameter slotsPerSlab must be positive.");
+        }
+        if(slotSize < PooledPacket.IPV6_HEADER_LENGTH || slotSize > Integer.MAX_VALUE / slotsPerSlab)
+        {
+            throw new IllegalArgumentException(
+                "Parameter slotSize must hold an IPv6 header and a slab must fit in a single buffer."
+            );
+        }
+        if(maximumSlabs < 1 || maximumSlabs > Integer.MAX_VALUE / slotsPerSlab)
+        {
+            throw new IllegalArgumentException("Parameter maximumSlabs must be positive and the capacity an int.");
+        }
+
+        this.slotSize = slotSize;
+        this.slotsPerSlab = slotsPerSlab;
+        this.maximumSlabs = maximumSlabs;
+        this.slabs = new ByteBuffer[maximumSlabs];
+        this.free = new PooledPacket[slotsPerSlab * maximumSlabs];
+    }
+
+    /**
+     * Gets the maximum size of each packet.
+     *
+     * @return the slot size, in bytes.
+     */
+    public int getSlotSize()
+    {
+        return this.slotSize;
+    }
+
+    /**
+     * Gets the number of slots the pool can have once it has allocated every slab.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity()
+    {
+        return this.free.length;
+    }
+
+    /**
+     * Gets the number of slots that can be acquired without waiting for a release, including the slots of slabs that
+     * have not been allocated yet.
+     *
+     * @return the number of available slots.
+     */
+    public int getAvailable()
+    {
+        synchronized(this.lock)
+        {
+            return this.freeCount + (this.maximumSlabs - this.slabCount) * this.slotsPerSlab;
+        }
+    }
+
+    /**
+     * Gets the average number of acquisitions for each one that records its site for leak detection.
+     *
+     * @return the leak sampling interval, or 0 if leak detection is disabled.
+     */
+    public int getLeakSamplingInterval()
+    {
+        return this.leakSamplingInterval;
+    }
+
+    /**
+     * Sets the average number of acquisitions for each one that records its site for leak detection: 1 records
+     * every acquisition, and 0 disables leak detection.
+     *
+     * @param interval The leak sampling interval
+     */
+    public void setLeakSamplingInterval(final int interval)
+    {
+        if(interval < 0)
+        {
+            throw new IllegalArgumentException("Parameter interval cannot be negative.");
+        }
+
+        this.leakSamplingInterval = interval;
+    }
+
+    /**
+     * Sets the listener that is told about each leak found. It runs on the thread that cleans up after unreachable
+     * objects, and must return quickly.
+     *
+     * @param listener The leak listener, or {@code null} to only count leaks
+     */
+    public void setLeakListener(final Consumer<PacketLeakException> listener)
+    {
+        this.leakListener = listener;
+    }
+
+    /**
+     * Gets the number of packets found garbage collected without being released. Because only sampled acquisitions
+     * are tracked, the actual number of leaked packets can be larger.
+     *
+     * @return the number of leaks found.
+     */
+    public long getLeakCount()
+    {
+        return this.leakCount.get();
+    }
+
+    /**
+     * Receives a packet from the socket into a pooled packet. The socket must deliver the IP header with the packet,
+     * as IPv4 raw sockets do. A packet longer than the slot size is truncated.
+     *
+     * @param socket The socket to receive from
+     *
+     * @return the packet, with one reference, or {@code null} if every slot is in use, in which case nothing is
+     *     received.
+     *
+     * @throws IOException if the receive fails, including when the receive timeout elapses.
+     * @throws MalformedPacketException if the data received does not start with an IPv4 or IPv6 header.
+     */
+    public PooledPacket receive(final RawSocket socket) throws IOException
+    {
+        if(socket == null)
+        {
+            throw new IllegalArgumentException("Parameter socket cannot be null!");
+        }
+
+        final PooledPacket packet = this.acquire();
+        if(packet == null)
+        {
+            return null;
+        }
+
+        final int length;
+        try
+        {
+            length = socket.receive(packet.getSlot());
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            packet.release();
+            throw e;
+        }
+        return PacketPool.fill(packet, length, Packet.NO_TIMESTAMP);
+    }
+
+    /**
+     * Copies a received packet from a batch into a pooled packet, with its timestamp, so that the batch can receive
+     * again while the packet is still in use.
+     *
+     * @param batch The batch the packet was received into
+     * @param slot The slot index of the packet in the batch
+     *
+     * @return the packet, with one reference, or {@code null} if every slot is in use.
+     *
+     * @throws MalformedPacketException if the packet does not start with an IPv4 or IPv6 header.
+     */
+    public PooledPacket copy(final PacketBatch batch, final int slot)
+    {
+        if(batch == null)
+        {
+            throw new IllegalArgumentException("Parameter batch cannot be null!");
+        }
+
+        return this.copy(batch.getBuffer(), batch.getSlotOffset(slot), batch.getLength(slot), batch.getTimestamp(slot));
+    }
+
+    /**
+     * Copies a received packet from a buffer, such as a block of a {@link PacketReceiveRing}, into a pooled packet.
+     * The buffer's position and limit are not changed.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The length of the packet, in bytes, no greater than the slot size
+     * @param timestamp The kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}
+     *
+     * @return the packet, with one reference, or {@code null} if every slot is in use.
+     *
+     * @throws MalformedPacketException if the packet does not start with an IPv4 or IPv6 header.
+     */
+    public PooledPacket copy(final ByteBuffer buffer, final int offset, final int length, final long timestamp)
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || length > this.slotSize || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException(
+                "Parameters offset and length must be within the buffer's limit and length within the slot size!"
+            );
+        }
+
+        final PooledPacket packet = this.acquire();
+        if(packet == null)
+        {
+            return null;
+        }
+
+        final ByteBuffer source = buffer.duplicate();
+        source.limit(offset + length);
+        source.position(offset);
+        packet.getSlot().put(source);
+        return PacketPool.fill(packet, length, timestamp);
+    }
+
+    /**
+     * Returns a packet whose last reference was released to the pool.
+     *
+     * @param packet The packet
+     */
+    void recycle(final PooledPacket packet)
+    {
+        synchronized(this.lock)
+        {
+            this.free[this.freeCount++] = packet;
+        }
+    }
+
+    private PooledPacket acquire()
+    {
+        final PooledPacket packet;
+        synchronized(this.lock)
+        {
+            if(this.freeCount == 0)
+            {
+                if(this.slabCount == this.maximumSlabs)
+                {
+                    return null;
+                }
+                this.allocateSlab();
+            }
+            packet = this.free[--this.freeCount];
+            this.free[this.freeCount] = null;
+        }
+
+        final int interval = this.leakSamplingInterval;
+        if(interval > 0 && ThreadLocalRandom.current().nextInt(interval) == 0)
+        {
+            final PacketLeakException site = new PacketLeakException();
+            final int index = packet.getIndex();
+            packet.acquire(ResourceCleaner.register(packet, () -> this.reclaim(index, site)));
+        }
+        else
+        {
+            packet.acquire(null);
+        }
+        return packet;
+    }
+
+    private void allocateSlab()
+    {
+        final int first = this.slabCount * this.slotsPerSlab;
+        final ByteBuffer slab = ByteBuffer.allocateDirect(this.slotsPerSlab * this.slotSize);
+        this.slabs[this.slabCount++] = slab;
+
+        // push the slots in reverse so that they are acquired in address order
+        for(int i = this.slotsPerSlab - 1; i >= 0; i--)
+        {
+            this.free[this.freeCount++] = new PooledPacket(this, first + i, this.slice(slab, i));
+        }
+    }
+
+    private ByteBuffer slice(final ByteBuffer slab, final int slot)
+    {
+        final ByteBuffer view = slab.duplicate();
+        view.limit((slot + 1) * this.slotSize);
+        view.position(slot * this.slotSize);
+        return view.slice();
+    }
+
+    private void reclaim(final int index, final PacketLeakException site)
+    {
+        this.leakCount.incrementAndGet();
+
+        // the leaked packet is gone, so its slot gets a new one
+        final ByteBuffer slab;
+        synchronized(this.lock)
+        {
+            slab = this.slabs[index / this.slotsPerSlab];
+        }
+        this.recycle(new PooledPacket(this, index, this.slice(slab, index % this.slotsPerSlab)));
+
+        final Consumer<PacketLeakException> listener = this.leakListener;
+        if(listener != null)
+        {
+            listener.accept(site);
+        }
+    }
+
+    private static PooledPacket fill(final PooledPacket packet, final int length, final long timestamp)
+    {
+        try
+        {
+            packet.fill(length, timestamp);
+            return packet;
+        }
+        catch(final MalformedPacketException e)
+        {
+            packet.release();
+            throw e;
+        }
+    }
+}
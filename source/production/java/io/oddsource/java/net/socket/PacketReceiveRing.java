@@ -0,0 +1,416 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A memory-mapped {@code TPACKET_V3} receive ring on an {@code AF_PACKET} socket (Linux only). The kernel writes
+ * packets straight into blocks of the shared ring, and the application reads them in place and hands each block back
+ * when done with it, so there is no system call or copy per packet and at most one native call per block.<br>
+ * <br>
+ * Blocks are consumed in ring order:
+ * <pre>
+ * while(ring.nextBlock(timeout))
+ * {
+ *     final ByteBuffer block = ring.getBlock();
+ *     while(ring.nextPacket())
+ *     {
+ *         // the packet is at block[ring.getPacketOffset(), ring.getPacketOffset() + ring.getCapturedLength())
+ *     }
+ *     ring.releaseBlock();
+ * }
+ * </pre>
+ * The block buffers are views of the mapping itself; they, and this ring, must not be used after the ring is closed.
+ * Rings are not thread safe. A socket can hold only one ring of each kind, and cannot hold a receive ring and a
+ * transmit ring mapped separately.
+ *
+ * @see RawSocket#mapReceiveRing(RingGeometry)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PacketReceiveRing extends DynamicNativeObject implements Closeable
+{
+    /*
+     * Offsets within struct tpacket_block_desc and struct tpacket3_hdr (see linux/if_packet.h). The native library
+     * fails to compile if these do not match the system headers.
+     */
+    private static final int BLOCK_PACKET_COUNT = 12;
+
+    private static final int BLOCK_FIRST_PACKET = 16;
+
+    private static final int PACKET_NEXT_OFFSET = 0;
+
+    private static final int PACKET_SECONDS = 4;
+
+    private static final int PACKET_NANOSECONDS = 8;
+
+    private static final int PACKET_CAPTURED_LENGTH = 12;
+
+    private static final int PACKET_LENGTH = 16;
+
+    private static final int PACKET_STATUS = 20;
+
+    private static final int PACKET_MAC = 24;
+
+    private static final long NANOSECONDS_PER_SECOND = 1_000_000_000L;
+
+    private final RawSocketImpl socket;
+
+    private final RingGeometry geometry;
+
+    private final ByteBuffer ring;
+
+    private final ByteBuffer[] blocks;
+
+    private int blockIndex;
+
+    private boolean holding;
+
+    private int packetsRemaining;
+
+    private int packetOffset;
+
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param socket The {@code AF_PACKET} socket to map the ring on
+     * @param geometry The ring geometry
+     *
+     * @throws IOException if the ring cannot be configured or mapped.
+     */
+    PacketReceiveRing(final RawSocketImpl socket, final RingGeometry geometry) throws IOException
+    {
+        super();
+
+        this.socket = socket;
+        this.geometry = geometry;
+        this.ring = PacketReceiveRing.map(
+            socket.getNativeSocketIdentifier(), geometry.getBlockSize(), geometry.getFrameSize(),
+            geometry.getBlockCount(), geometry.getRetireTimeout()
+        ).order(ByteOrder.nativeOrder());
+
+        this.blocks = new ByteBuffer[geometry.getBlockCount()];
+        for(int i = 0; i < this.blocks.length; i++)
+        {
+            final ByteBuffer view = this.ring.duplicate();
+            view.position(i * geometry.getBlockSize()).limit((i + 1) * geometry.getBlockSize());
+            this.blocks[i] = view.slice().order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Gets the geometry of this ring.
+     *
+     * @return the ring geometry.
+     */
+    public RingGeometry getGeometry()
+    {
+        return this.geometry;
+    }
+
+    /**
+     * Waits for the kernel to hand over the next block. As with socket timeouts, a zero timeout means to wait
+     * indefinitely.
+     *
+     * @param timeout The timeout in milliseconds
+     *
+     * @return whether a block was handed over before the timeout elapsed.
+     *
+     * @throws IOException if waiting fails.
+     */
+    public boolean nextBlock(final int timeout) throws IOException
+    {
+        if(timeout < 0)
+        {
+            throw new IllegalArgumentException("Parameter timeout cannot be negative.");
+        }
+
+        return this.acquireBlock(timeout == 0 ? -1 : timeout);
+    }
+
+    /**
+     * Takes the next block if the kernel has already handed it over, without waiting.
+     *
+     * @return whether a block was taken.
+     *
+     * @throws IOException if checking fails.
+     */
+    public boolean pollBlock() throws IOException
+    {
+        return this.acquireBlock(0);
+    }
+
+    /**
+     * Gets the block currently held, a native-order view of the ring positioned at the block's first byte.
+     *
+     * @return the current block.
+     */
+    public ByteBuffer getBlock()
+    {
+        this.checkHolding();
+
+        return this.blocks[this.blockIndex];
+    }
+
+    /**
+     * Gets the index of the block currently held, or of the next block to be taken if none is held.
+     *
+     * @return the block index.
+     */
+    public int getBlockIndex()
+    {
+        return this.blockIndex;
+    }
+
+    /**
+     * Gets the number of packets in the block currently held.
+     *
+     * @return the packet count.
+     */
+    public int getPacketCount()
+    {
+        this.checkHolding();
+
+        return this.blocks[this.blockIndex].getInt(PacketReceiveRing.BLOCK_PACKET_COUNT);
+    }
+
+    /**
+     * Advances to the next packet in the block currently held.
+     *
+     * @return whether there was another packet.
+     */
+    public boolean nextPacket()
+    {
+        this.checkHolding();
+        if(this.packetsRemaining == 0)
+        {
+            return false;
+        }
+
+        final ByteBuffer block = this.blocks[this.blockIndex];
+        if(this.packetOffset < 0)
+        {
+            this.packetOffset = block.getInt(PacketReceiveRing.BLOCK_FIRST_PACKET);
+        }
+        else
+        {
+            this.packetOffset += block.getInt(this.packetOffset + PacketReceiveRing.PACKET_NEXT_OFFSET);
+        }
+        this.packetsRemaining--;
+        return true;
+    }
+
+    /**
+     * Gets the offset within the current block at which the current packet's data (starting with its link-layer
+     * header) begins.
+     *
+     * @return the packet data offset.
+     */
+    public int getPacketOffset()
+    {
+        this.checkPacket();
+
+        final ByteBuffer block = this.blocks[this.blockIndex];
+        return this.packetOffset + (block.getShort(this.packetOffset + PacketReceiveRing.PACKET_MAC) & 0xFFFF);
+    }
+
+    /**
+     * Gets the number of bytes of the current packet present in the block, which is less than the packet length if the
+     * packet was truncated to fit in a frame.
+     *
+     * @return the captured length, in bytes.
+     */
+    public int getCapturedLength()
+    {
+        this.checkPacket();
+
+        return this.blocks[this.blockIndex].getInt(this.packetOffset + PacketReceiveRing.PACKET_CAPTURED_LENGTH);
+    }
+
+    /**
+     * Gets the length of the current packet on the wire.
+     *
+     * @return the packet length, in bytes.
+     */
+    public int getPacketLength()
+    {
+        this.checkPacket();
+
+        return this.blocks[this.blockIndex].getInt(this.packetOffset + PacketReceiveRing.PACKET_LENGTH);
+    }
+
+    /**
+     * Gets the time the kernel received the current packet.
+     *
+     * @return the timestamp, in nanoseconds since the epoch.
+     */
+    public long getTimestamp()
+    {
+        this.checkPacket();
+
+        final ByteBuffer block = this.blocks[this.blockIndex];
+        final long seconds = block.getInt(this.packetOffset + PacketReceiveRing.PACKET_SECONDS) & 0xFFFFFFFFL;
+        final long nanoseconds = block.getInt(this.packetOffset + PacketReceiveRing.PACKET_NANOSECONDS) & 0xFFFFFFFFL;
+        return seconds * PacketReceiveRing.NANOSECONDS_PER_SECOND + nanoseconds;
+    }
+
+    /**
+     * Gets the kernel status flags of the current packet ({@code TP_STATUS_*} in {@code linux/if_packet.h}), which
+     * report, for example, whether packets were dropped before this one or its checksum has not yet been computed.
+     *
+     * @return the packet status flags.
+     */
+    public int getPacketStatus()
+    {
+        this.checkPacket();
+
+        return this.blocks[this.blockIndex].getInt(this.packetOffset + PacketReceiveRing.PACKET_STATUS);
+    }
+
+    /**
+     * Hands the block currently held back to the kernel. Its buffer must not be read afterwards.
+     */
+    public void releaseBlock()
+    {
+        this.checkHolding();
+
+        PacketReceiveRing.releaseBlock(this.ring, this.blockIndex * this.geometry.getBlockSize());
+        this.holding = false;
+        this.blockIndex = (this.blockIndex + 1) % this.blocks.length;
+    }
+
+    /**
+     * Unmaps the ring. The socket is not closed, but it keeps the kernel side of the ring until it is.
+     *
+     * @throws IOException if the ring cannot be unmapped.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(!this.closed)
+        {
+            this.closed = true;
+            this.holding = false;
+            PacketReceiveRing.unmap(this.ring);
+        }
+    }
+
+    private boolean acquireBlock(final int timeout) throws IOException
+    {
+        if(this.closed)
+        {
+            throw new IllegalStateException("The ring is closed.");
+        }
+        if(this.holding)
+        {
+            throw new IllegalStateException("The current block must be released before taking the next one.");
+        }
+
+        final int socket = this.socket.beginTransfer();
+        try
+        {
+            if(!PacketReceiveRing.awaitBlock(
+                socket, this.socket.getWakeupDescriptor(), this.ring, this.blockIndex * this.geometry.getBlockSize(),
+                timeout
+            ))
+            {
+                return false;
+            }
+        }
+        finally
+        {
+            this.socket.endTransfer();
+        }
+
+        this.holding = true;
+        this.packetsRemaining = this.getPacketCount();
+        this.packetOffset = -1;
+        return true;
+    }
+
+    private void checkHolding()
+    {
+        if(!this.holding)
+        {
+            throw new IllegalStateException("No block is held.");
+        }
+    }
+
+    private void checkPacket()
+    {
+        this.checkHolding();
+        if(this.packetOffset < 0)
+        {
+            throw new IllegalStateException("No packet is current; call nextPacket first.");
+        }
+    }
+
+    /**
+     * Switches the socket to {@code TPACKET_V3}, configures its receive ring, and maps the ring.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param blockSize The size of each block
+     * @param frameSize The size of each frame
+     * @param blockCount The number of blocks
+     * @param retireTimeout The block retire timeout in milliseconds
+     *
+     * @return a direct buffer spanning the mapping.
+     *
+     * @throws IOException if the ring cannot be configured or mapped.
+     */
+    private static native ByteBuffer map(int socket, int blockSize, int frameSize, int blockCount, int retireTimeout)
+        throws IOException;
+
+    /**
+     * Checks, with acquire ordering, whether the kernel has handed over the block, waiting for it if necessary.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or -1 if shutting the socket down wakes it
+     * @param ring The ring mapping
+     * @param offset The offset of the block within the ring
+     * @param timeout The timeout in milliseconds, -1 to wait indefinitely, or 0 to not wait
+     *
+     * @return whether the block belongs to the application.
+     *
+     * @throws IOException if waiting fails or the socket is closed.
+     */
+    private static native boolean awaitBlock(int socket, int wakeup, ByteBuffer ring, int offset, int timeout)
+        throws IOException;
+
+    /**
+     * Hands the block back to the kernel with release ordering.
+     *
+     * @param ring The ring mapping
+     * @param offset The offset of the block within the ring
+     */
+    private static native void releaseBlock(ByteBuffer ring, int offset);
+
+    /**
+     * Unmaps the ring.
+     *
+     * @param ring The ring mapping
+     *
+     * @throws IOException if the ring cannot be unmapped.
+     */
+    private static native void unmap(ByteBuffer ring) throws IOException;
+}
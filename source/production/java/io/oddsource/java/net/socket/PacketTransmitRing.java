@@ -0,0 +1,419 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A memory-mapped {@code TPACKET_V2} transmit ring on an {@code AF_PACKET} socket (Linux only). Frames are written
+ * straight into the slots of the shared ring, and a single flush hands every frame published since the last flush to
+ * the kernel with one native call and one {@code send} system call.<br>
+ * <br>
+ * Slots are claimed, published, and flushed in ring order:
+ * <pre>
+ * int slot;
+ * while((slot = ring.claim()) &gt;= 0)
+ * {
+ *     final ByteBuffer frame = ring.getSlot(slot);
+ *     // write the frame, starting with its link-layer header, at frame[0, length)
+ *     ring.publish(slot, length);
+ * }
+ * ring.flush();
+ * </pre>
+ * The socket must be bound to an interface. If the kernel rejects a frame as malformed, the flush fails, the slot is
+ * left with {@link #STATUS_WRONG_FORMAT} (see {@link #findRejectedSlot()}), and the ring sends nothing more until that
+ * slot is corrected and passed to {@link #resubmit(int, int)}.<br>
+ * <br>
+ * The slot buffers are views of the mapping itself; they, and this ring, must not be used after the ring is closed.
+ * Rings are not thread safe. A socket can hold only one ring of each kind, and cannot hold a receive ring and a
+ * transmit ring mapped separately.
+ *
+ * @see RawSocket#mapTransmitRing(RingGeometry)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PacketTransmitRing extends DynamicNativeObject implements Closeable
+{
+    /**
+     * The slot is free to be claimed.
+     */
+    public static final int STATUS_AVAILABLE = 0;
+
+    /**
+     * The slot has been flushed and is waiting to be sent.
+     */
+    public static final int STATUS_SEND_REQUEST = 1;
+
+    /**
+     * The kernel is sending the slot.
+     */
+    public static final int STATUS_SENDING = 2;
+
+    /**
+     * The kernel rejected the slot as malformed.
+     */
+    public static final int STATUS_WRONG_FORMAT = 4;
+
+    /*
+     * Offsets within struct tpacket2_hdr and of the frame data (see linux/if_packet.h). The native library fails to
+     * compile if these do not match the system headers.
+     */
+    private static final int FRAME_STATUS = 0;
+
+    private static final int FRAME_LENGTH = 4;
+
+    private static final int FRAME_DATA = 32;
+
+    private final RawSocketImpl socket;
+
+    private final RingGeometry geometry;
+
+    private final ByteBuffer ring;
+
+    private final ByteBuffer[] slots;
+
+    private final int slotCount;
+
+    private long claimed;
+
+    private long published;
+
+    private long flushed;
+
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param socket The {@code AF_PACKET} socket to map the ring on
+     * @param geometry The ring geometry
+     *
+     * @throws IOException if the ring cannot be configured or mapped.
+     */
+    PacketTransmitRing(final RawSocketImpl socket, final RingGeometry geometry) throws IOException
+    {
+        super();
+
+        this.socket = socket;
+        this.geometry = geometry;
+        this.slotCount = geometry.getFrameCount();
+        this.ring = PacketTransmitRing.map(
+            socket.getNativeSocketIdentifier(), geometry.getBlockSize(), geometry.getFrameSize(),
+            geometry.getBlockCount()
+        ).order(ByteOrder.nativeOrder());
+
+        this.slots = new ByteBuffer[this.slotCount];
+        for(int i = 0; i < this.slotCount; i++)
+        {
+            final int offset = i * geometry.getFrameSize();
+            final ByteBuffer view = this.ring.duplicate();
+            view.position(offset + PacketTransmitRing.FRAME_DATA).limit(offset + geometry.getFrameSize());
+            this.slots[i] = view.slice();
+        }
+    }
+
+    /**
+     * Gets the geometry of this ring.
+     *
+     * @return the ring geometry.
+     */
+    public RingGeometry getGeometry()
+    {
+        return this.geometry;
+    }
+
+    /**
+     * Gets the number of slots in this ring.
+     *
+     * @return the slot count.
+     */
+    public int getSlotCount()
+    {
+        return this.slotCount;
+    }
+
+    /**
+     * Gets the maximum length of a frame.
+     *
+     * @return the maximum frame length, in bytes.
+     */
+    public int getMaximumFrameLength()
+    {
+        return this.geometry.getFrameSize() - PacketTransmitRing.FRAME_DATA;
+    }
+
+    /**
+     * Claims the next slot for writing, if the kernel is done with it.
+     *
+     * @return the claimed slot, or -1 if the ring is full.
+     */
+    public int claim()
+    {
+        this.checkOpen();
+        if(this.claimed - this.flushed >= this.slotCount)
+        {
+            return -1;
+        }
+
+        final int slot = (int) (this.claimed % this.slotCount);
+        /*
+         * A plain read suffices: the kernel marks the slot available only once it is done with the frame, and the
+         * writes to the slot that follow depend on this read, so they cannot be made visible before it.
+         */
+        if(this.readStatus(slot) != PacketTransmitRing.STATUS_AVAILABLE)
+        {
+            return -1;
+        }
+
+        this.claimed++;
+        return slot;
+    }
+
+    /**
+     * Gets the buffer of a slot, cleared, for writing the frame (starting with its link-layer header) at index zero.
+     *
+     * @param slot The slot
+     *
+     * @return the slot buffer, with a capacity of {@link #getMaximumFrameLength()}.
+     */
+    public ByteBuffer getSlot(final int slot)
+    {
+        this.checkSlot(slot);
+
+        final ByteBuffer buffer = this.slots[slot];
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Publishes the oldest claimed slot for sending on the next flush.
+     *
+     * @param slot The slot, which must be the oldest claimed and not yet published
+     * @param length The length of the frame, in bytes
+     */
+    public void publish(final int slot, final int length)
+    {
+        this.checkOpen();
+        if(this.published == this.claimed || slot != (int) (this.published % this.slotCount))
+        {
+            throw new IllegalStateException("Slots must be published in the order they were claimed.");
+        }
+
+        this.writeLength(slot, length);
+        this.published++;
+    }
+
+    /**
+     * Hands every slot published since the last flush to the kernel and asks it to send them. If the socket is
+     * blocking, this waits, no longer than the send timeout, until every frame in the ring has been sent; closing the
+     * socket wakes the wait.
+     *
+     * @return the number of bytes sent, which may be zero if the socket is non-blocking.
+     *
+     * @throws IOException if the kernel rejects a frame, the send fails or times out, or the socket is closed.
+     */
+    public int flush() throws IOException
+    {
+        this.checkOpen();
+
+        final int count = (int) (this.published - this.flushed);
+        if(count > 0)
+        {
+            PacketTransmitRing.submit(
+                this.ring, (int) (this.flushed % this.slotCount), count, this.slotCount, this.geometry.getFrameSize()
+            );
+            this.flushed = this.published;
+        }
+
+        final int socket = this.socket.beginTransfer();
+        try
+        {
+            final int pending = (int) Math.min(this.flushed, this.slotCount);
+            return PacketTransmitRing.send(
+                socket, this.socket.getWakeupDescriptor(), this.ring, (int) ((this.flushed - pending) % this.slotCount),
+                pending, this.slotCount, this.geometry.getFrameSize(), this.socket.getSendPollTimeout()
+            );
+        }
+        finally
+        {
+            this.socket.endTransfer();
+        }
+    }
+
+    /**
+     * Gets the kernel status of a slot.
+     *
+     * @param slot The slot
+     *
+     * @return {@link #STATUS_AVAILABLE}, {@link #STATUS_SEND_REQUEST}, {@link #STATUS_SENDING}, or
+     *     {@link #STATUS_WRONG_FORMAT}.
+     */
+    public int getSlotStatus(final int slot)
+    {
+        this.checkSlot(slot);
+
+        return this.readStatus(slot);
+    }
+
+    /**
+     * Finds the slot the kernel rejected as malformed, which blocks the ring until it is resubmitted.
+     *
+     * @return the rejected slot, or -1 if there is none.
+     */
+    public int findRejectedSlot()
+    {
+        this.checkOpen();
+
+        final long first = Math.max(0, this.flushed - this.slotCount);
+        for(long i = first; i < this.flushed; i++)
+        {
+            final int slot = (int) (i % this.slotCount);
+            if(this.readStatus(slot) == PacketTransmitRing.STATUS_WRONG_FORMAT)
+            {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Hands a corrected rejected slot back to the kernel. It is sent, ahead of every slot flushed after it, on the next
+     * flush.
+     *
+     * @param slot The rejected slot
+     * @param length The corrected length of the frame, in bytes
+     */
+    public void resubmit(final int slot, final int length)
+    {
+        this.checkSlot(slot);
+        if(this.readStatus(slot) != PacketTransmitRing.STATUS_WRONG_FORMAT)
+        {
+            throw new IllegalStateException("Slot " + slot + " was not rejected.");
+        }
+
+        this.writeLength(slot, length);
+        PacketTransmitRing.submit(this.ring, slot, 1, this.slotCount, this.geometry.getFrameSize());
+    }
+
+    /**
+     * Unmaps the ring. The socket is not closed, but it keeps the kernel side of the ring until it is.
+     *
+     * @throws IOException if the ring cannot be unmapped.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(!this.closed)
+        {
+            this.closed = true;
+            PacketTransmitRing.unmap(this.ring);
+        }
+    }
+
+    private int readStatus(final int slot)
+    {
+        return this.ring.getInt(slot * this.geometry.getFrameSize() + PacketTransmitRing.FRAME_STATUS);
+    }
+
+    private void writeLength(final int slot, final int length)
+    {
+        if(length < 1 || length > this.getMaximumFrameLength())
+        {
+            throw new IllegalArgumentException(
+                "Parameter length must be between 1 and " + this.getMaximumFrameLength() + "."
+            );
+        }
+
+        this.ring.putInt(slot * this.geometry.getFrameSize() + PacketTransmitRing.FRAME_LENGTH, length);
+    }
+
+    private void checkSlot(final int slot)
+    {
+        this.checkOpen();
+        if(slot < 0 || slot >= this.slotCount)
+        {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of bounds for " + this.slotCount + " slots.");
+        }
+    }
+
+    private void checkOpen()
+    {
+        if(this.closed)
+        {
+            throw new IllegalStateException("The ring is closed.");
+        }
+    }
+
+    /**
+     * Switches the socket to {@code TPACKET_V2}, configures its transmit ring, and maps the ring.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param blockSize The size of each block
+     * @param frameSize The size of each frame
+     * @param blockCount The number of blocks
+     *
+     * @return a direct buffer spanning the mapping.
+     *
+     * @throws IOException if the ring cannot be configured or mapped.
+     */
+    private static native ByteBuffer map(int socket, int blockSize, int frameSize, int blockCount) throws IOException;
+
+    /**
+     * Marks consecutive slots as send requests, with release ordering so the kernel sees their complete frames.
+     *
+     * @param ring The ring mapping
+     * @param first The first slot
+     * @param count The number of slots, wrapping around the end of the ring
+     * @param slotCount The number of slots in the ring
+     * @param frameSize The size of each frame
+     */
+    private static native void submit(ByteBuffer ring, int first, int count, int slotCount, int frameSize);
+
+    /**
+     * Asks the kernel, without blocking in the system call, to send every slot marked as a send request, then waits
+     * for the flushed slots to be sent, unless the timeout says not to wait.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals
+     * @param ring The ring mapping
+     * @param first The oldest flushed slot to wait for
+     * @param count The number of flushed slots to wait for, wrapping around the end of the ring
+     * @param slotCount The number of slots in the ring
+     * @param frameSize The size of each frame
+     * @param timeout The milliseconds to wait (zero meaning no timeout), or {@link RawSocketImpl#NON_BLOCKING} to not
+     *     wait
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws IOException if the kernel rejects a frame, the send fails or times out, or the socket is closed.
+     */
+    private static native int send(int socket, int wakeup, ByteBuffer ring, int first, int count, int slotCount,
+                                   int frameSize, int timeout) throws IOException;
+
+    /**
+     * Unmaps the ring.
+     *
+     * @param ring The ring mapping
+     *
+     * @throws IOException if the ring cannot be unmapped.
+     */
+    private static native void unmap(ByteBuffer ring) throws IOException;
+}
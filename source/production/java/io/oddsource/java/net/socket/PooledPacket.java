@@ -0,0 +1,530 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+import io.oddsource.java.net.socket.ip6.Ipv6HeaderView;
+
+/**
+ * An incoming packet whose data stays in a slot of a {@link PacketPool}, starting with its IPv4 or IPv6 header. The
+ * fields are read from the slot through a header view when they are asked for, and {@link #getHeader()} and
+ * {@link #getBuffer()} give read-only access to the header and data in place without copying them. Pooled packets are
+ * always finalized.<br>
+ * <br>
+ * A pooled packet is only valid while it holds references: every method other than {@link #getSource()},
+ * {@link #isFinalized()} and {@link #getReferenceCount()} throws an {@link IllegalStateException} once its last
+ * reference has been released and it is back in the pool.
+ *
+ * @see PacketPool
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PooledPacket implements Packet
+{
+    static final int IPV6_HEADER_LENGTH = Ipv6HeaderView.HEADER_LENGTH;
+
+    private static final int IPV4 = 4;
+
+    private static final int IPV6 = 6;
+
+    private static final int VERSION_SHIFT = 4;
+
+    private final PacketPool pool;
+
+    private final int index;
+
+    private final ByteBuffer slot;
+
+    private final ByteBuffer data;
+
+    private final Ipv4HeaderView ipv4Header = new Ipv4HeaderView();
+
+    private final Ipv6HeaderView ipv6Header = new Ipv6HeaderView();
+
+    private final AtomicInteger references = new AtomicInteger();
+
+    private HeaderView header;
+
+    private int length;
+
+    private long timestamp = Packet.NO_TIMESTAMP;
+
+    private ResourceCleaner.Cleanable leak;
+
+    /**
+     * Constructor.
+     *
+     * @param pool The pool this packet belongs to
+     * @param index The index of the slot in the pool
+     * @param slot The slot
+     */
+    PooledPacket(final PacketPool pool, final int index, final ByteBuffer slot)
+    {
+        this.pool = pool;
+        this.index = index;
+        this.slot = slot;
+        this.data = slot.asReadOnlyBuffer();
+        this.ipv4Header.wrap(this.data, 0);
+        this.ipv6Header.wrap(this.data, 0);
+    }
+
+    /**
+     * Adds a reference to this packet, which must be released with {@link #release()}.
+     *
+     * @return this packet.
+     *
+     * @throws IllegalStateException if this packet has already been released to its pool.
+     */
+    public PooledPacket retain()
+    {
+        while(true)
+        {
+            final int count = this.references.get();
+            if(count <= 0)
+            {
+                throw new IllegalStateException("The packet has been released to its pool.");
+            }
+            if(this.references.compareAndSet(count, count + 1))
+            {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to this packet, returning it to its pool when that was the last reference. The packet and
+     * any buffer or header view obtained from it must not be used after its last reference is released.
+     *
+     * @return {@code true} if that was the last reference and the packet went back to its pool.
+     *
+     * @throws IllegalStateException if this packet has already been released to its pool.
+     */
+    public boolean release()
+    {
+        while(true)
+        {
+            final int count = this.references.get();
+            if(count <= 0)
+            {
+                throw new IllegalStateException("The packet has been released to its pool.");
+            }
+            if(this.references.compareAndSet(count, count - 1))
+            {
+                if(count > 1)
+                {
+                    return false;
+                }
+
+                if(this.leak != null)
+                {
+                    this.leak.cancel();
+                    this.leak = null;
+                }
+                this.pool.recycle(this);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of references to this packet.
+     *
+     * @return the reference count, which is 0 once the packet is back in its pool.
+     */
+    public int getReferenceCount()
+    {
+        return this.references.get();
+    }
+
+    /**
+     * Gets a read-only view of the packet data, from the start of the IP header (position 0) to the end of the packet
+     * (the limit). Each call returns a new view of the same memory.
+     *
+     * @return the packet data.
+     */
+    public ByteBuffer getBuffer()
+    {
+        this.checkReferenced();
+
+        final ByteBuffer buffer = this.data.duplicate();
+        buffer.limit(this.length);
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Gets the header view wrapped around the IP header of this packet: an {@link Ipv4HeaderView} or an
+     * {@link Ipv6HeaderView}. The view is read-only; its setters throw {@link java.nio.ReadOnlyBufferException}.
+     *
+     * @return the header view.
+     */
+    public HeaderView getHeader()
+    {
+        this.checkReferenced();
+
+        return this.header;
+    }
+
+    /**
+     * Returns the entire packet represented in bytes, copied out of the slot.
+     *
+     * @return the entire packet (header followed by content).
+     */
+    @Override
+    public byte[] getPacketData()
+    {
+        return this.copy(0, this.getPacketLength());
+    }
+
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, copying straight from the slot.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the packet, in which case nothing is
+     *     written.
+     */
+    @Override
+    public int writePacketData(final ByteBuffer buffer)
+    {
+        final ByteBuffer source = this.getBuffer();
+        if(buffer.remaining() < source.remaining())
+        {
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(source);
+        return this.length;
+    }
+
+    /**
+     * Gets the content of the packet IP header, copied out of the slot.
+     *
+     * @return the content of the packet IP header.
+     */
+    @Override
+    public byte[] getHeaderData()
+    {
+        return this.copy(0, this.getHeaderLength());
+    }
+
+    /**
+     * Gets the content of the packet payload, copied out of the slot.
+     *
+     * @return the content of the packet payload.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        return this.copy(this.getHeaderLength(), this.getPayloadLength());
+    }
+
+    /**
+     * Always throws an exception, because pooled packets are finalized.
+     *
+     * @param payloadData Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the total packet length (header + payload), as received.
+     *
+     * @return the packet length, in bytes.
+     */
+    @Override
+    public int getPacketLength()
+    {
+        this.checkReferenced();
+
+        return this.length;
+    }
+
+    /**
+     * Gets the IP header length: the IPv4 header length, including options, or the 40-byte fixed IPv6 header.
+     *
+     * @return the IP header length, in bytes.
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        this.checkReferenced();
+
+        return this.header.getHeaderLength();
+    }
+
+    /**
+     * Gets the payload length: everything received after the IP header, including any IPv6 extension headers.
+     *
+     * @return the payload length, in bytes.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return this.getPacketLength() - this.getHeaderLength();
+    }
+
+    /**
+     * Gets the hop limit (IPv6) or Time-To-Live (IPv4) the packet was received with, which can be 0 for a packet that
+     * was not addressed to this host.
+     *
+     * @return the hop limit / TTL.
+     */
+    @Override
+    public short getHopLimit()
+    {
+        this.checkReferenced();
+
+        return this.header == this.ipv4Header ? this.ipv4Header.getHopLimit() : this.ipv6Header.getHopLimit();
+    }
+
+    /**
+     * Always throws an exception, because pooled packets are finalized.
+     *
+     * @param hopLimit Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setHopLimit(final short hopLimit) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the packet source address. This allocates a new address; the header view returned by
+     * {@link #getHeader()} can copy it into an array instead.
+     *
+     * @return the source address that the packet originated from.
+     */
+    @Override
+    public InetAddress getSourceAddress()
+    {
+        this.checkReferenced();
+
+        return this.header == this.ipv4Header ?
+               this.ipv4Header.getSourceAddress() :
+               this.ipv6Header.getSourceAddress();
+    }
+
+    /**
+     * Always throws an exception, because pooled packets are incoming and finalized.
+     *
+     * @param sourceAddress Ignored
+     *
+     * @return never.
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public boolean setSourceAddress(final InetAddress sourceAddress) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the packet destination address. This allocates a new address; the header view returned by
+     * {@link #getHeader()} can copy it into an array instead.
+     *
+     * @return the packet destination address.
+     */
+    @Override
+    public InetAddress getDestinationAddress()
+    {
+        this.checkReferenced();
+
+        return this.header == this.ipv4Header ?
+               this.ipv4Header.getDestinationAddress() :
+               this.ipv6Header.getDestinationAddress();
+    }
+
+    /**
+     * Always throws an exception, because pooled packets are finalized.
+     *
+     * @param destinationAddress Ignored
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public void setDestinationAddress(final InetAddress destinationAddress) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Does nothing, because pooled packets are finalized.
+     */
+    @Override
+    public void finalizePacket()
+    {
+
+    }
+
+    /**
+     * Indicates whether this packed has been protected against future modification, which pooled packets always are.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isFinalized()
+    {
+        return true;
+    }
+
+    /**
+     * Gets the time the kernel received this packet, if it was copied from a batch or ring that reported it.
+     *
+     * @return the kernel receive time in nanoseconds since the epoch, or {@link Packet#NO_TIMESTAMP}.
+     */
+    @Override
+    public long getTimestamp()
+    {
+        this.checkReferenced();
+
+        return this.timestamp;
+    }
+
+    /**
+     * Always throws an exception, because pooled packets are incoming and finalized.
+     *
+     * @param timestamp Ignored
+     *
+     * @return never.
+     *
+     * @throws FinalizedPacketException always.
+     */
+    @Override
+    public boolean setTimestamp(final long timestamp) throws FinalizedPacketException
+    {
+        throw new FinalizedPacketException();
+    }
+
+    /**
+     * Gets the source of this packet, which is always incoming.
+     *
+     * @return {@link Packet.Source#INCOMING}.
+     */
+    @Override
+    public Packet.Source getSource()
+    {
+        return Packet.Source.INCOMING;
+    }
+
+    /**
+     * Gets the index of the slot of this packet in its pool.
+     *
+     * @return the slot index.
+     */
+    int getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Gets the writable slot, cleared for receiving or copying a packet into it.
+     *
+     * @return the slot.
+     */
+    ByteBuffer getSlot()
+    {
+        this.slot.clear();
+        return this.slot;
+    }
+
+    /**
+     * Hands this packet out of its pool with one reference.
+     *
+     * @param leak The leak detection registration for this acquisition, or {@code null} if it is not sampled
+     */
+    void acquire(final ResourceCleaner.Cleanable leak)
+    {
+        this.leak = leak;
+        this.header = this.ipv4Header;
+        this.length = 0;
+        this.timestamp = Packet.NO_TIMESTAMP;
+        this.references.set(1);
+    }
+
+    /**
+     * Records the packet that has been received or copied into the slot.
+     *
+     * @param length The length of the packet, in bytes
+     * @param timestamp The kernel receive time, or {@link Packet#NO_TIMESTAMP}
+     *
+     * @throws MalformedPacketException if the data does not start with a complete IPv4 or IPv6 header.
+     */
+    void fill(final int length, final long timestamp)
+    {
+        final int version = length == 0 ? 0 : (this.data.get(0) & 0xFF) >>> PooledPacket.VERSION_SHIFT;
+        if(version == PooledPacket.IPV4)
+        {
+            final int headerLength = this.ipv4Header.getHeaderLength();
+            if(headerLength < Ipv4HeaderView.MIN_HEADER_LENGTH || headerLength > length)
+            {
+                throw new MalformedPacketException("The IPv4 header is not valid or the packet is truncated.");
+            }
+            this.header = this.ipv4Header;
+        }
+        else if(version == PooledPacket.IPV6)
+        {
+            if(length < Ipv6HeaderView.HEADER_LENGTH)
+            {
+                throw new MalformedPacketException("The packet is too short for an IPv6 header.");
+            }
+            this.header = this.ipv6Header;
+        }
+        else
+        {
+            throw new MalformedPacketException("The data does not start with an IPv4 or IPv6 header.");
+        }
+
+        this.length = length;
+        this.timestamp = timestamp;
+    }
+
+    private byte[] copy(final int offset, final int count)
+    {
+        final ByteBuffer source = this.getBuffer();
+        source.position(offset);
+        final byte[] copy = new byte[count];
+        source.get(copy);
+        return copy;
+    }
+
+    private void checkReferenced()
+    {
+        if(this.references.get() <= 0)
+        {
+            throw new IllegalStateException("The packet has been released to its pool.");
+        }
+    }
+}
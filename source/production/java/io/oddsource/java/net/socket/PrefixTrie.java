@@ -0,0 +1,347 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable, path-compressed binary trie mapping address prefixes to values, for longest-prefix-match lookups.
+ * Every node branches, holds a value, or both, so a lookup visits at most one node per distinct prefix length on its
+ * path rather than one per bit. Updates return a new trie that shares every node off the updated path with the old
+ * one, so readers never need a lock: they look up in whichever trie they read last.<br>
+ * <br>
+ * All keys in one trie must have the same length, such as 4 bytes for IPv4 or 16 bytes for IPv6.
+ *
+ * @param <V> The value type
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class PrefixTrie<V>
+{
+    private static final PrefixTrie<?> EMPTY = new PrefixTrie<>(null, 0);
+
+    private static final int BITS_PER_BYTE = 8;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int LEADING_BITS = Integer.SIZE - PrefixTrie.BITS_PER_BYTE;
+
+    private final Node<V> root;
+
+    private final int size;
+
+    private PrefixTrie(final Node<V> root, final int size)
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty trie.
+     *
+     * @param <V> The value type
+     *
+     * @return the empty trie.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PrefixTrie<V> empty()
+    {
+        return (PrefixTrie<V>) PrefixTrie.EMPTY;
+    }
+
+    /**
+     * Get the number of prefixes with values.
+     *
+     * @return the size.
+     */
+    int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Get the value of exactly this prefix.
+     *
+     * @param prefix The prefix, whose bits past {@code length} are ignored
+     * @param length The prefix length in bits
+     *
+     * @return the value, or {@code null} if the prefix has none.
+     */
+    V get(final byte[] prefix, final int length)
+    {
+        PrefixTrie.checkPrefix(prefix, length);
+
+        Node<V> node = this.root;
+        while(node != null && node.length <= length && PrefixTrie.matches(node, prefix))
+        {
+            if(node.length == length)
+            {
+                return node.value;
+            }
+            node = node.child(PrefixTrie.bit(prefix, node.length));
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the value of the longest prefix containing the address.
+     *
+     * @param address The address
+     *
+     * @return the value, or {@code null} if no prefix contains the address.
+     */
+    V longestMatch(final byte[] address)
+    {
+        final int bits = address.length * PrefixTrie.BITS_PER_BYTE;
+
+        V best = null;
+        Node<V> node = this.root;
+        while(node != null && PrefixTrie.matches(node, address))
+        {
+            if(node.value != null)
+            {
+                best = node.value;
+            }
+            if(node.length == bits)
+            {
+                break;
+            }
+            node = node.child(PrefixTrie.bit(address, node.length));
+        }
+
+        return best;
+    }
+
+    /**
+     * Get a trie in which the prefix maps to the value, replacing any value it had.
+     *
+     * @param prefix The prefix, whose bits past {@code length} are ignored
+     * @param length The prefix length in bits
+     * @param value The value
+     *
+     * @return the new trie.
+     */
+    PrefixTrie<V> put(final byte[] prefix, final int length, final V value)
+    {
+        PrefixTrie.checkPrefix(prefix, length);
+        if(value == null)
+        {
+            throw new IllegalArgumentException("Parameter value cannot be null!");
+        }
+
+        final int newSize = this.get(prefix, length) == null ? this.size + 1 : this.size;
+        return new PrefixTrie<>(
+            PrefixTrie.insert(this.root, PrefixTrie.mask(prefix, length), length, value), newSize
+        );
+    }
+
+    /**
+     * Get a trie in which the prefix has no value.
+     *
+     * @param prefix The prefix, whose bits past {@code length} are ignored
+     * @param length The prefix length in bits
+     *
+     * @return the new trie, or this trie if the prefix had no value.
+     */
+    PrefixTrie<V> remove(final byte[] prefix, final int length)
+    {
+        if(this.get(prefix, length) == null)
+        {
+            return this;
+        }
+
+        return new PrefixTrie<>(PrefixTrie.delete(this.root, prefix, length), this.size - 1);
+    }
+
+    /**
+     * Passes every value to the action, shorter prefixes before the longer prefixes they contain.
+     *
+     * @param action The action
+     */
+    void forEach(final Consumer<? super V> action)
+    {
+        PrefixTrie.visit(this.root, action);
+    }
+
+    private static <V> void visit(final Node<V> node, final Consumer<? super V> action)
+    {
+        if(node != null)
+        {
+            if(node.value != null)
+            {
+                action.accept(node.value);
+            }
+            PrefixTrie.visit(node.left, action);
+            PrefixTrie.visit(node.right, action);
+        }
+    }
+
+    private static <V> Node<V> insert(final Node<V> node, final byte[] key, final int length, final V value)
+    {
+        if(node == null)
+        {
+            return new Node<>(key, length, value, null, null);
+        }
+
+        final int common = PrefixTrie.commonLength(node.key, key, Math.min(node.length, length));
+        if(common == node.length)
+        {
+            if(length == node.length)
+            {
+                return new Node<>(node.key, node.length, value, node.left, node.right);
+            }
+            if(PrefixTrie.bit(key, node.length) == 0)
+            {
+                final Node<V> left = PrefixTrie.insert(node.left, key, length, value);
+                return new Node<>(node.key, node.length, node.value, left, node.right);
+            }
+            final Node<V> right = PrefixTrie.insert(node.right, key, length, value);
+            return new Node<>(node.key, node.length, node.value, node.left, right);
+        }
+
+        if(common == length)
+        {
+            // the new prefix contains the node, so it becomes the node's parent
+            return PrefixTrie.bit(node.key, length) == 0 ?
+                   new Node<>(key, length, value, node, null) :
+                   new Node<>(key, length, value, null, node);
+        }
+
+        // the prefixes diverge, so a valueless node at the point they diverge branches between them
+        final Node<V> leaf = new Node<>(key, length, value, null, null);
+        final byte[] branchKey = PrefixTrie.mask(key, common);
+        return PrefixTrie.bit(key, common) == 0 ?
+               new Node<>(branchKey, common, null, leaf, node) :
+               new Node<>(branchKey, common, null, node, leaf);
+    }
+
+    private static <V> Node<V> delete(final Node<V> node, final byte[] prefix, final int length)
+    {
+        if(node.length == length)
+        {
+            return PrefixTrie.compress(node, null, node.left, node.right);
+        }
+
+        if(PrefixTrie.bit(prefix, node.length) == 0)
+        {
+            return PrefixTrie.compress(node, node.value, PrefixTrie.delete(node.left, prefix, length), node.right);
+        }
+        return PrefixTrie.compress(node, node.value, node.left, PrefixTrie.delete(node.right, prefix, length));
+    }
+
+    /**
+     * Replaces a node, dropping it entirely if it would neither hold a value nor branch.
+     */
+    private static <V> Node<V> compress(final Node<V> node, final V value, final Node<V> left, final Node<V> right)
+    {
+        if(value == null && (left == null || right == null))
+        {
+            return left == null ? right : left;
+        }
+
+        return new Node<>(node.key, node.length, value, left, right);
+    }
+
+    private static void checkPrefix(final byte[] prefix, final int length)
+    {
+        if(prefix == null)
+        {
+            throw new IllegalArgumentException("Parameter prefix cannot be null!");
+        }
+        if(length < 0 || length > prefix.length * PrefixTrie.BITS_PER_BYTE)
+        {
+            throw new IllegalArgumentException("Parameter length must be between zero and the prefix size in bits.");
+        }
+    }
+
+    private static boolean matches(final Node<?> node, final byte[] address)
+    {
+        return PrefixTrie.commonLength(node.key, address, node.length) == node.length;
+    }
+
+    /**
+     * Get the number of leading bits, up to the limit, that the two keys share.
+     */
+    private static int commonLength(final byte[] first, final byte[] second, final int limit)
+    {
+        for(int i = 0; i * PrefixTrie.BITS_PER_BYTE < limit; i++)
+        {
+            final int difference = (first[i] ^ second[i]) & PrefixTrie.BYTE_MASK;
+            if(difference != 0)
+            {
+                final int common = i * PrefixTrie.BITS_PER_BYTE +
+                                   Integer.numberOfLeadingZeros(difference) - PrefixTrie.LEADING_BITS;
+                return Math.min(common, limit);
+            }
+        }
+
+        return limit;
+    }
+
+    private static int bit(final byte[] key, final int index)
+    {
+        final int shift = PrefixTrie.BITS_PER_BYTE - 1 - (index % PrefixTrie.BITS_PER_BYTE);
+        return (key[index / PrefixTrie.BITS_PER_BYTE] >>> shift) & 1;
+    }
+
+    /**
+     * Copies the key with every bit past the length cleared, so that equal prefixes have equal keys.
+     */
+    private static byte[] mask(final byte[] key, final int length)
+    {
+        final byte[] masked = new byte[key.length];
+        final int whole = length / PrefixTrie.BITS_PER_BYTE;
+        System.arraycopy(key, 0, masked, 0, whole);
+
+        final int remainder = length % PrefixTrie.BITS_PER_BYTE;
+        if(remainder != 0)
+        {
+            masked[whole] = (byte) (key[whole] & (PrefixTrie.BYTE_MASK << (PrefixTrie.BITS_PER_BYTE - remainder)));
+        }
+
+        return masked;
+    }
+
+    private static final class Node<V>
+    {
+        private final byte[] key;
+
+        private final int length;
+
+        private final V value;
+
+        private final Node<V> left;
+
+        private final Node<V> right;
+
+        private Node(final byte[] key, final int length, final V value, final Node<V> left, final Node<V> right)
+        {
+            this.key = key;
+            this.length = length;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+
+        private Node<V> child(final int bit)
+        {
+            return bit == 0 ? this.left : this.right;
+        }
+    }
+}
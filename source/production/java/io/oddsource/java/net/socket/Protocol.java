@@ -16,6 +16,7 @@
 package io.oddsource.java.net.socket;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,7 +45,7 @@ public final class Protocol
     public Protocol(final String name, final String[] aliases, final int protocolNumber)
     {
         this.name = name;
-        this.aliases = Arrays.asList(aliases);
+        this.aliases = Collections.unmodifiableList(Arrays.asList(aliases.clone()));
         this.protocolNumber = protocolNumber;
     }
 
@@ -61,7 +62,7 @@ public final class Protocol
     /**
      * Get the protocol aliases.
      *
-     * @return The protocol aliases
+     * @return The protocol aliases, which cannot be modified because protocols are shared between lookups
      */
     public List<String> getAliases()
     {
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the operating system's protocol database, indexed by protocol number and by name and
+ * alias, so that looking up a protocol neither calls into the C library nor takes a lock. Where the database lists a
+ * number or name more than once, the first entry wins, as it does for {@code getprotobynumber} and
+ * {@code getprotobyname}.
+ *
+ * @see SocketUtilities
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ProtocolRegistry
+{
+    /**
+     * IP protocol numbers are eight bits, so every number the database can usefully list has a slot.
+     */
+    static final int NUMBER_COUNT = 256;
+
+    private static volatile ProtocolRegistry instance;
+
+    private final Protocol[] protocols;
+
+    private final Protocol[] byNumber = new Protocol[ProtocolRegistry.NUMBER_COUNT];
+
+    private final Map<String, Protocol> byName;
+
+    /**
+     * Constructor.
+     *
+     * @param protocols The protocols in database order, which the registry takes ownership of
+     */
+    ProtocolRegistry(final Protocol[] protocols)
+    {
+        if(protocols == null)
+        {
+            throw new IllegalArgumentException("Parameter protocols cannot be null!");
+        }
+
+        this.protocols = protocols;
+        this.byName = new HashMap<>(protocols.length * 4);
+
+        for(final Protocol protocol : protocols)
+        {
+            final int number = protocol.getProtocolNumber();
+            if(number >= 0 && number < ProtocolRegistry.NUMBER_COUNT && this.byNumber[number] == null)
+            {
+                this.byNumber[number] = protocol;
+            }
+
+            this.byName.putIfAbsent(protocol.getName(), protocol);
+            for(final String alias : protocol.getAliases())
+            {
+                this.byName.putIfAbsent(alias, protocol);
+            }
+        }
+    }
+
+    /**
+     * Get the current registry, loading it from the operating system the first time.
+     *
+     * @return the current registry.
+     */
+    static ProtocolRegistry getInstance()
+    {
+        final ProtocolRegistry registry = ProtocolRegistry.instance;
+        return registry == null ? ProtocolRegistry.load(false) : registry;
+    }
+
+    /**
+     * Reloads the registry from the operating system. Lookups that are already running finish against the previous
+     * registry.
+     *
+     * @return the new registry.
+     */
+    static ProtocolRegistry refresh()
+    {
+        return ProtocolRegistry.load(true);
+    }
+
+    private static synchronized ProtocolRegistry load(final boolean replace)
+    {
+        if(replace || ProtocolRegistry.instance == null)
+        {
+            ProtocolRegistry.instance = new ProtocolRegistry(SocketUtilities.loadProtocolList());
+        }
+
+        return ProtocolRegistry.instance;
+    }
+
+    /**
+     * Looks up the protocol by its name or one of its aliases, and returns null if it's not found.
+     *
+     * @param name The name of the protocol to lookup
+     *
+     * @return the protocol named by {@code name}, or null if it wasn't found.
+     */
+    Protocol getByName(final String name)
+    {
+        return this.byName.get(name);
+    }
+
+    /**
+     * Looks up the protocol by its number, and returns null if it's not found.
+     *
+     * @param number The number of the protocol to lookup
+     *
+     * @return the protocol numbered {@code number}, or null if it wasn't found.
+     */
+    Protocol getByNumber(final int number)
+    {
+        return number >= 0 && number < ProtocolRegistry.NUMBER_COUNT ? this.byNumber[number] : null;
+    }
+
+    /**
+     * Get all protocols in database order.
+     *
+     * @return a new array of all protocols.
+     */
+    Protocol[] getProtocols()
+    {
+        return this.protocols.clone();
+    }
+}
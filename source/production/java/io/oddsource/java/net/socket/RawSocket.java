@@ -15,6 +15,11 @@
  */
 package io.oddsource.java.net.socket;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
 /**
  * Class description here.
  *
@@ -22,8 +27,40 @@ package io.oddsource.java.net.socket;
  * @version 1.0.0
  * @since 1.0.0
  */
-public interface RawSocket
+public interface RawSocket extends Closeable
 {
+    /**
+     * Open a raw socket for the IP version and protocol. Opening requires the privilege to open raw sockets
+     * ({@code CAP_NET_RAW} on Linux). A socket that is never closed is closed when it becomes unreachable, but
+     * applications should not rely on that: file descriptors are scarcer than heap.
+     *
+     * @param ipVersion The IP version
+     * @param protocol The IP protocol number, such as {@link Constants#IPPROTO_ICMP}
+     *
+     * @throws IOException if the socket cannot be opened.
+     * @throws IllegalStateException if this socket is already open or has been closed.
+     */
+    public abstract void open(IpVersion ipVersion, int protocol) throws IOException;
+
+    /**
+     * Indicates whether this socket is open.
+     *
+     * @return whether the socket is open.
+     */
+    public abstract boolean isOpen();
+
+    /**
+     * Close this socket, waking every thread blocked sending or receiving on it, which then fail with a
+     * {@link java.net.SocketException}. Threads in parking receives (see {@link #setParkingReceive(boolean)}) are
+     * always woken; threads blocked in the operating system are woken on sockets that support shutting down, which
+     * includes raw IP sockets but not {@code AF_PACKET} sockets, where receivers should use a receive timeout instead.
+     * Closing a closed socket has no effect.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    @Override
+    public abstract void close() throws IOException;
+
     /**
      * Set the specified socket option at the given level to the given value.
      *
@@ -128,4 +165,195 @@ public interface RawSocket
      * @return whether the IP header include is on.
      */
     public abstract boolean getIpHeaderInclude();
+
+    /**
+     * Enable or disable kernel receive timestamps. While enabled, the kernel records the time each packet arrives
+     * ({@code SO_TIMESTAMPING} software receive timestamps on Linux, or {@code SO_TIMESTAMPNS} where that is not
+     * available) and {@link #receiveBatch(PacketBatch, int)} reports it for every slot through
+     * {@link PacketBatch#getTimestamp(int)}, from the control messages it already receives, without any additional
+     * system calls or allocations.
+     *
+     * @param on Whether to timestamp received packets
+     */
+    public abstract void setReceiveTimestamps(boolean on);
+
+    /**
+     * Determine whether kernel receive timestamps are enabled.
+     *
+     * @return whether received packets are timestamped.
+     */
+    public abstract boolean getReceiveTimestamps();
+
+    /**
+     * Attach a classic BPF socket filter, replacing any filter already attached. The kernel runs the program on every
+     * packet before queueing it on this socket, so packets the program drops never wake a receiver or cross into the
+     * JVM. On raw IP sockets the program sees the packet starting at its IP header.
+     *
+     * @param program The filter program
+     *
+     * @throws UnsupportedOperationException if socket filters are not supported on this platform.
+     */
+    public abstract void attachFilter(BpfProgram program);
+
+    /**
+     * Detach the socket filter attached with {@link #attachFilter(BpfProgram)}, so that this socket receives every
+     * packet again.
+     *
+     * @throws UnsupportedOperationException if socket filters are not supported on this platform.
+     */
+    public abstract void detachFilter();
+
+    /**
+     * Enable or disable blocking transfers. A non-blocking socket never waits for the send or receive timeouts;
+     * instead, transfers that cannot complete immediately transfer nothing and return zero. Sockets are blocking by
+     * default. Non-blocking sockets are intended for use with a {@link RawSocketSelector}.
+     *
+     * @param blocking Whether transfers should block
+     */
+    public abstract void setBlocking(boolean blocking);
+
+    /**
+     * Indicates whether transfers on this socket block.
+     *
+     * @return whether transfers block.
+     */
+    public abstract boolean isBlocking();
+
+    /**
+     * Enable or disable parking receives. A blocking receive normally waits inside the operating system, which pins
+     * the carrier of a virtual thread for the whole wait. With parking receives enabled, blocking receives instead
+     * make non-blocking attempts and, whenever nothing is queued, park the calling thread until a shared poller thread
+     * sees the socket become readable, so a virtual thread unmounts from its carrier while it waits. The receive
+     * timeout still applies. Parking receives are disabled by default, and have no effect on a non-blocking socket.
+     *
+     * @param parkingReceive Whether blocking receives should park instead of waiting in the operating system
+     */
+    public abstract void setParkingReceive(boolean parkingReceive);
+
+    /**
+     * Indicates whether blocking receives on this socket park instead of waiting in the operating system.
+     *
+     * @return whether parking receives are enabled.
+     */
+    public abstract boolean isParkingReceive();
+
+    /**
+     * Send the remaining bytes of the buffer (from its position to its limit) to the destination address. On return,
+     * the buffer position will have been advanced by the number of bytes sent. Direct buffers are passed to the
+     * operating system without copying; array-backed buffers are pinned for the duration of the call instead of being
+     * copied.
+     *
+     * @param buffer The buffer containing the data to send
+     * @param destination The address to send the data to
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws java.net.SocketTimeoutException if the send timeout elapses before the data could be sent.
+     * @throws IOException if the operating system reports an error sending the data.
+     */
+    public abstract int send(ByteBuffer buffer, InetAddress destination) throws IOException;
+
+    /**
+     * Send the specified range of the array to the destination address. The array is pinned for the duration of the
+     * call instead of being copied.
+     *
+     * @param data The array containing the data to send
+     * @param offset The offset within the array at which the data starts
+     * @param length The number of bytes to send
+     * @param destination The address to send the data to
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws java.net.SocketTimeoutException if the send timeout elapses before the data could be sent.
+     * @throws IOException if the operating system reports an error sending the data.
+     */
+    public abstract int send(byte[] data, int offset, int length, InetAddress destination) throws IOException;
+
+    /**
+     * Receive a single packet into the buffer, starting at its position and writing no further than its limit. On
+     * return, the buffer position will have been advanced by the number of bytes received. Direct buffers are passed
+     * to the operating system without copying; array-backed buffers are pinned for the duration of the call instead of
+     * being copied.
+     *
+     * @param buffer The buffer to receive the packet into
+     *
+     * @return the number of bytes received.
+     *
+     * @throws java.net.SocketTimeoutException if the receive timeout elapses before a packet arrives.
+     * @throws IOException if the operating system reports an error receiving the packet.
+     */
+    public abstract int receive(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Receive a single packet into the specified range of the array. The array is pinned for the duration of the call
+     * instead of being copied.
+     *
+     * @param data The array to receive the packet into
+     * @param offset The offset within the array at which to start writing
+     * @param length The maximum number of bytes to receive
+     *
+     * @return the number of bytes received.
+     *
+     * @throws java.net.SocketTimeoutException if the receive timeout elapses before a packet arrives.
+     * @throws IOException if the operating system reports an error receiving the packet.
+     */
+    public abstract int receive(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Send the packets in slots {@code 0} through {@code batch.getSize() - 1} of the batch, each to the remote address
+     * of its slot and, if set, from the local address of its slot. On Linux, this is a single {@code sendmmsg} system
+     * call; on other systems, it is still a single native call. Sending stops at the first packet the operating system
+     * refuses; that error is only reported if no packets were sent.
+     *
+     * @param batch The batch of packets to send
+     *
+     * @return the number of packets sent, which may be fewer than the batch size.
+     *
+     * @throws java.net.SocketTimeoutException if the send timeout elapses before any packets could be sent.
+     * @throws IOException if the operating system reports an error sending the first packet.
+     */
+    public abstract int sendBatch(PacketBatch batch) throws IOException;
+
+    /**
+     * Receive up to {@code maximum} packets into the batch, starting at slot {@code 0}, and set the batch size to the
+     * number of packets received. This waits (subject to the receive timeout) for the first packet only and then takes
+     * whatever other packets are already queued. On Linux, this is a single {@code recvmmsg} system call; on other
+     * systems, it is still a single native call. Each slot receives its packet length, the packet source address as its
+     * remote address, and (if packet information is enabled on the socket) the packet destination address as its local
+     * address.
+     *
+     * @param batch The batch to receive packets into
+     * @param maximum The maximum number of packets to receive, no greater than the batch capacity
+     *
+     * @return the number of packets received.
+     *
+     * @throws java.net.SocketTimeoutException if the receive timeout elapses before a packet arrives.
+     * @throws IOException if the operating system reports an error receiving the packets.
+     */
+    public abstract int receiveBatch(PacketBatch batch, int maximum) throws IOException;
+
+    /**
+     * Configure and map a {@code TPACKET_V3} receive ring on this socket, which must be an {@code AF_PACKET} socket
+     * (Linux only). Once the ring is mapped, packets should be read from the ring instead of received from the socket.
+     *
+     * @param geometry The ring geometry
+     *
+     * @return the mapped ring.
+     *
+     * @throws IOException if the ring cannot be configured or mapped, for example because the socket already has one.
+     */
+    public abstract PacketReceiveRing mapReceiveRing(RingGeometry geometry) throws IOException;
+
+    /**
+     * Configure and map a {@code TPACKET_V2} transmit ring on this socket, which must be an {@code AF_PACKET} socket
+     * bound to an interface (Linux only). The retire timeout of the geometry is ignored. Whether flushing the ring
+     * waits for the frames to be sent follows this socket's blocking mode.
+     *
+     * @param geometry The ring geometry
+     *
+     * @return the mapped ring.
+     *
+     * @throws IOException if the ring cannot be configured or mapped, for example because the socket already has one.
+     */
+    public abstract PacketTransmitRing mapTransmitRing(RingGeometry geometry) throws IOException;
 }
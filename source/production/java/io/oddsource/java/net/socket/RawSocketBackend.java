@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+/**
+ * Chooses the socket implementation for {@link RawSocketImpl#create()}. This version, for Java 8 through 21, always
+ * chooses JNI; the multi-release JAR replaces it on Java 22 and newer with a version that chooses the Foreign Function
+ * and Memory API where it can.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RawSocketBackend
+{
+    /**
+     * Constructor.
+     */
+    private RawSocketBackend()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Creates an unopened socket.
+     *
+     * @return the socket.
+     */
+    static RawSocketImpl create()
+    {
+        return new RawSocketImpl();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * A {@link java.nio.channels.SelectableChannel} wrapping a {@link RawSocketImpl}, so raw sockets can be multiplexed
+ * with the standard {@link Selector} API.<br>
+ * <br>
+ * The JDK's own selectors only accept the JDK's own channel implementations, so raw socket channels must be registered
+ * with a selector from {@link #openSelector()} (or, equivalently, {@code channel.provider().openSelector()}), not one
+ * from {@link Selector#open()}. That selector reports readiness level-triggered, exactly like the JDK's.<br>
+ * <br>
+ * Each {@link #read(ByteBuffer)} receives one packet and each {@link #write(ByteBuffer)} sends one packet to the
+ * address set with {@link #setRemoteAddress(InetAddress)}. In non-blocking mode, both return zero when the operation
+ * would block.<br>
+ * <br>
+ * The channel owns the socket: closing the channel closes the socket. If the channel is registered with a selector when
+ * it is closed, the socket is closed when the selector next deregisters the channel's keys, so its file descriptor is
+ * never reused while the selector still watches it.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RawSocketChannel extends AbstractSelectableChannel implements ByteChannel
+{
+    private final RawSocketImpl socket;
+
+    private final Object readLock = new Object();
+
+    private final Object writeLock = new Object();
+
+    private volatile InetAddress remoteAddress;
+
+    private boolean killed;
+
+    private RawSocketChannel(final SelectorProvider provider, final RawSocketImpl socket)
+    {
+        super(provider);
+
+        this.socket = socket;
+        this.socket.setBlocking(true);
+    }
+
+    /**
+     * Opens a channel wrapping the socket. The channel takes ownership of the socket, which must not be used directly
+     * for sending or receiving afterwards.
+     *
+     * @param socket The socket to wrap
+     *
+     * @return the new channel, in blocking mode.
+     */
+    public static RawSocketChannel open(final RawSocketImpl socket)
+    {
+        if(socket == null)
+        {
+            throw new IllegalArgumentException("Parameter socket cannot be null!");
+        }
+
+        return new RawSocketChannel(RawSocketSelectorProvider.getInstance(), socket);
+    }
+
+    /**
+     * Opens a selector that raw socket channels can be registered with.
+     *
+     * @return the new selector.
+     *
+     * @throws IOException if the selector cannot be opened.
+     */
+    public static Selector openSelector() throws IOException
+    {
+        return RawSocketSelectorProvider.getInstance().openSelector();
+    }
+
+    /**
+     * Gets the wrapped socket, for setting and getting socket options.
+     *
+     * @return the socket.
+     */
+    public RawSocketImpl getSocket()
+    {
+        return this.socket;
+    }
+
+    /**
+     * Sets the address that {@link #write(ByteBuffer)} sends packets to. Unlike connecting a datagram channel, this
+     * does not filter the packets received.
+     *
+     * @param remoteAddress The destination address, or {@code null} to clear it
+     */
+    public void setRemoteAddress(final InetAddress remoteAddress)
+    {
+        this.remoteAddress = remoteAddress;
+    }
+
+    /**
+     * Gets the address that {@link #write(ByteBuffer)} sends packets to.
+     *
+     * @return the destination address, or {@code null} if none is set.
+     */
+    public InetAddress getRemoteAddress()
+    {
+        return this.remoteAddress;
+    }
+
+    @Override
+    public int validOps()
+    {
+        return SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+    }
+
+    /**
+     * Receives one packet into the buffer.
+     *
+     * @param buffer The buffer to receive into, starting at its position
+     *
+     * @return the number of bytes received, which is zero if the channel is non-blocking and no packet is available.
+     *
+     * @throws IOException if the receive fails or the channel is closed.
+     */
+    @Override
+    public int read(final ByteBuffer buffer) throws IOException
+    {
+        synchronized(this.readLock)
+        {
+            this.ensureOpen();
+
+            boolean completed = false;
+            try
+            {
+                this.begin();
+                final int received = this.socket.receive(buffer);
+                completed = received > 0 || !this.socket.isBlocking();
+                return received;
+            }
+            finally
+            {
+                this.end(completed);
+            }
+        }
+    }
+
+    /**
+     * Sends the remaining bytes of the buffer as one packet to the address set with
+     * {@link #setRemoteAddress(InetAddress)}.
+     *
+     * @param buffer The buffer containing the packet
+     *
+     * @return the number of bytes sent, which is zero if the channel is non-blocking and the packet could not be sent
+     *     without blocking.
+     *
+     * @throws IOException if the send fails or the channel is closed.
+     * @throws NotYetConnectedException if no remote address is set.
+     */
+    @Override
+    public int write(final ByteBuffer buffer) throws IOException
+    {
+        final InetAddress destination = this.remoteAddress;
+        if(destination == null)
+        {
+            throw new NotYetConnectedException();
+        }
+
+        return this.send(buffer, destination);
+    }
+
+    /**
+     * Sends the remaining bytes of the buffer as one packet.
+     *
+     * @param buffer The buffer containing the packet
+     * @param destination The destination address
+     *
+     * @return the number of bytes sent, which is zero if the channel is non-blocking and the packet could not be sent
+     *     without blocking.
+     *
+     * @throws IOException if the send fails or the channel is closed.
+     */
+    public int send(final ByteBuffer buffer, final InetAddress destination) throws IOException
+    {
+        synchronized(this.writeLock)
+        {
+            this.ensureOpen();
+
+            boolean completed = false;
+            try
+            {
+                this.begin();
+                final int sent = this.socket.send(buffer, destination);
+                completed = true;
+                return sent;
+            }
+            finally
+            {
+                this.end(completed);
+            }
+        }
+    }
+
+    @Override
+    protected void implConfigureBlocking(final boolean block)
+    {
+        this.socket.setBlocking(block);
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException
+    {
+        synchronized(this.blockingLock())
+        {
+            if(this.isRegistered())
+            {
+                return;
+            }
+        }
+
+        this.kill();
+    }
+
+    /**
+     * Closes the socket once the channel is closed and no longer registered with any selector. Called when the channel
+     * is closed and whenever a selector deregisters one of its keys.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    void kill() throws IOException
+    {
+        synchronized(this.blockingLock())
+        {
+            if(this.isOpen() || this.isRegistered() || this.killed)
+            {
+                return;
+            }
+
+            this.killed = true;
+        }
+
+        this.socket.shutdownSocket();
+        synchronized(this.readLock)
+        {
+            synchronized(this.writeLock)
+            {
+                this.socket.closeSocket();
+            }
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException
+    {
+        if(!this.isOpen())
+        {
+            throw new ClosedChannelException();
+        }
+    }
+}
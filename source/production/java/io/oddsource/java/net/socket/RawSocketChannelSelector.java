@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.oddsource.java.net.socket.exception.RawSocketRuntimeException;
+
+/**
+ * A {@link Selector} for {@link RawSocketChannel}s, backed by a level-triggered {@link RawSocketSelector}.<br>
+ * <br>
+ * Registration and interest changes go straight to the native selector, so unlike some JDK selectors they never wait
+ * for a select in progress. Cancelled keys are deregistered, and the sockets of closed channels closed, at the start
+ * and end of each select.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RawSocketChannelSelector extends AbstractSelector
+{
+    private final RawSocketSelector selector;
+
+    private final Object keysLock = new Object();
+
+    private final Map<RawSocketImpl, RawSocketSelectionKey> keysBySocket = new IdentityHashMap<>();
+
+    private final Set<SelectionKey> keys = new HashSet<>();
+
+    private final Set<SelectionKey> publicKeys = Collections.unmodifiableSet(this.keys);
+
+    private final Set<SelectionKey> selectedKeys = new HashSet<>();
+
+    private final Set<SelectionKey> publicSelectedKeys = new AbstractSet<SelectionKey>()
+    {
+        @Override
+        public Iterator<SelectionKey> iterator()
+        {
+            return RawSocketChannelSelector.this.selectedKeys.iterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return RawSocketChannelSelector.this.selectedKeys.size();
+        }
+
+        @Override
+        public boolean contains(final Object key)
+        {
+            return RawSocketChannelSelector.this.selectedKeys.contains(key);
+        }
+
+        @Override
+        public boolean remove(final Object key)
+        {
+            return RawSocketChannelSelector.this.selectedKeys.remove(key);
+        }
+
+        @Override
+        public void clear()
+        {
+            RawSocketChannelSelector.this.selectedKeys.clear();
+        }
+    };
+
+    RawSocketChannelSelector(final RawSocketSelectorProvider provider) throws IOException
+    {
+        super(provider);
+
+        this.selector = new RawSocketSelector(RawSocketSelector.DEFAULT_MAXIMUM_EVENTS, false);
+    }
+
+    @Override
+    public Set<SelectionKey> keys()
+    {
+        this.ensureOpen();
+
+        return this.publicKeys;
+    }
+
+    @Override
+    public Set<SelectionKey> selectedKeys()
+    {
+        this.ensureOpen();
+
+        return this.publicSelectedKeys;
+    }
+
+    @Override
+    public int selectNow() throws IOException
+    {
+        return this.doSelect(0);
+    }
+
+    @Override
+    public int select(final long timeout) throws IOException
+    {
+        if(timeout < 0)
+        {
+            throw new IllegalArgumentException("Parameter timeout cannot be negative.");
+        }
+
+        return this.doSelect(timeout == 0 || timeout > Integer.MAX_VALUE ? -1 : (int) timeout);
+    }
+
+    @Override
+    public int select() throws IOException
+    {
+        return this.doSelect(-1);
+    }
+
+    @Override
+    public Selector wakeup()
+    {
+        try
+        {
+            this.selector.wakeup();
+        }
+        catch(final IOException e)
+        {
+            throw new RawSocketRuntimeException("Failed to wake up the selector.", e);
+        }
+
+        return this;
+    }
+
+    @Override
+    protected SelectionKey register(final AbstractSelectableChannel channel, final int ops, final Object attachment)
+    {
+        if(!(channel instanceof RawSocketChannel))
+        {
+            throw new IllegalSelectorException();
+        }
+
+        final RawSocketSelectionKey key = new RawSocketSelectionKey((RawSocketChannel) channel, this);
+        key.attach(attachment);
+
+        synchronized(this.keysLock)
+        {
+            this.ensureOpen();
+
+            key.interestOps(ops);
+            this.keysBySocket.put(key.getChannel().getSocket(), key);
+            this.keys.add(key);
+        }
+
+        return key;
+    }
+
+    @Override
+    protected void implCloseSelector() throws IOException
+    {
+        this.wakeup();
+
+        synchronized(this)
+        {
+            synchronized(this.publicSelectedKeys)
+            {
+                final List<RawSocketSelectionKey> registered;
+                synchronized(this.keysLock)
+                {
+                    registered = new ArrayList<>(this.keysBySocket.values());
+                    this.keysBySocket.clear();
+                    this.keys.clear();
+                    this.selectedKeys.clear();
+                }
+
+                for(final RawSocketSelectionKey key : registered)
+                {
+                    key.cancel();
+                    this.deregister(key);
+                    key.getChannel().kill();
+                }
+
+                this.selector.close();
+            }
+        }
+    }
+
+    void updateInterestOps(final RawSocketSelectionKey key, final int ops)
+    {
+        synchronized(this.keysLock)
+        {
+            this.ensureOpen();
+
+            try
+            {
+                this.selector.register(key.getChannel().getSocket(), ops);
+            }
+            catch(final IOException e)
+            {
+                throw new RawSocketRuntimeException("Failed to update the interest set of the selection key.", e);
+            }
+        }
+    }
+
+    private int doSelect(final int timeout) throws IOException
+    {
+        synchronized(this)
+        {
+            this.ensureOpen();
+
+            synchronized(this.publicSelectedKeys)
+            {
+                this.processCancelledKeys();
+
+                final int ready;
+                try
+                {
+                    this.begin();
+                    ready = timeout == 0 ? this.selector.selectNow() :
+                            timeout < 0 ? this.selector.select() : this.selector.select(timeout);
+                }
+                finally
+                {
+                    this.end();
+                }
+
+                this.processCancelledKeys();
+
+                return this.updateSelectedKeys(ready);
+            }
+        }
+    }
+
+    private int updateSelectedKeys(final int ready)
+    {
+        int updated = 0;
+        for(int i = 0; i < ready; i++)
+        {
+            final RawSocketSelectionKey key;
+            synchronized(this.keysLock)
+            {
+                key = this.keysBySocket.get(this.selector.getReadySocket(i));
+            }
+            if(key == null || !key.isValid())
+            {
+                continue;
+            }
+
+            final int ops = this.selector.getReadyOps(i) & key.getInterestOps();
+            if(ops == 0)
+            {
+                continue;
+            }
+
+            if(this.selectedKeys.contains(key))
+            {
+                if((key.getReadyOps() | ops) != key.getReadyOps())
+                {
+                    key.setReadyOps(key.getReadyOps() | ops);
+                    updated++;
+                }
+            }
+            else
+            {
+                key.setReadyOps(ops);
+                this.selectedKeys.add(key);
+                updated++;
+            }
+        }
+
+        return updated;
+    }
+
+    private void processCancelledKeys() throws IOException
+    {
+        final Set<SelectionKey> cancelled = this.cancelledKeys();
+        synchronized(cancelled)
+        {
+            if(cancelled.isEmpty())
+            {
+                return;
+            }
+
+            for(final SelectionKey cancelledKey : cancelled)
+            {
+                final RawSocketSelectionKey key = (RawSocketSelectionKey) cancelledKey;
+                final RawSocketImpl socket = key.getChannel().getSocket();
+                synchronized(this.keysLock)
+                {
+                    this.keysBySocket.remove(socket);
+                    this.keys.remove(key);
+                    this.selectedKeys.remove(key);
+                    this.selector.deregister(socket);
+                }
+
+                this.deregister(key);
+                key.getChannel().kill();
+            }
+            cancelled.clear();
+        }
+    }
+
+    private void ensureOpen()
+    {
+        if(!this.isOpen())
+        {
+            throw new ClosedSelectorException();
+        }
+    }
+}
@@ -15,6 +15,17 @@
  */
 package io.oddsource.java.net.socket;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.oddsource.java.net.socket.exception.SocketConstantNotDefinedException;
+
 /**
  * Class description here.
  *
@@ -24,7 +35,18 @@ package io.oddsource.java.net.socket;
  */
 public class RawSocketImpl extends DynamicNativeObject implements RawSocket
 {
-    private static final int UNDEFINED = -1;
+    static final int UNDEFINED = -1;
+
+    static final int NON_BLOCKING = -2;
+
+    private static final int MAXIMUM_ETHERTYPE = 0xFFFF;
+
+    /*
+     * The transfer state is the number of transfers in flight times TRANSFER, plus CLOSING once the socket is closed.
+     */
+    private static final int CLOSING = 1;
+
+    private static final int TRANSFER = 2;
 
     static
     {
@@ -33,12 +55,30 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
         Runtime.getRuntime().addShutdownHook(new Thread(RawSocketImpl::nativeStaticShutdown));
     }
 
-    private int nativeSocketIdentifier;
+    private volatile int nativeSocketIdentifier;
+
+    private volatile int wakeupDescriptor;
+
+    private volatile boolean closed;
+
+    private final AtomicInteger transfers = new AtomicInteger();
+
+    private ResourceCleaner.Cleanable cleanable;
+
+    private List<AsyncRawSocketEngine> engines;
+
+    private final Object stateLock = new Object();
 
     private IpVersion ipVersion;
 
     private boolean useSelectTimeout;
 
+    private volatile boolean blocking = true;
+
+    private volatile boolean parkingReceive;
+
+    private boolean receiveTimestamps;
+
     private final TimeoutValue sendTimeout;
 
     private final TimeoutValue receiveTimeout;
@@ -51,6 +91,7 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
         super();
 
         this.nativeSocketIdentifier = RawSocketImpl.UNDEFINED;
+        this.wakeupDescriptor = RawSocketImpl.UNDEFINED;
         this.sendTimeout = new TimeoutValue();
         this.receiveTimeout = new TimeoutValue();
 
@@ -65,6 +106,20 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
         }
     }
 
+    /**
+     * Creates an unopened raw socket with the best implementation for the running JVM. On Java 22 and newer on Linux
+     * (x86-64 or AArch64), the socket is a {@code ForeignRawSocket}, which makes its system calls through the Foreign
+     * Function and Memory API instead of JNI and can transfer memory segments. The JVM warns about that unless native
+     * access is enabled for this library (for example, with {@code --enable-native-access=ALL-UNNAMED}). Set the system
+     * property {@code io.oddsource.java.net.socket.backend} to {@code jni} to always use JNI.
+     *
+     * @return a new, unopened socket.
+     */
+    public static RawSocketImpl create()
+    {
+        return RawSocketBackend.create();
+    }
+
     private static native void nativeStaticInitialize();
 
     private static native void nativeStaticShutdown();
@@ -79,6 +134,121 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
         return this.nativeSocketIdentifier;
     }
 
+    /**
+     * Gets the descriptor that closing a packet socket signals to wake the threads waiting on it, which they poll
+     * alongside the socket.
+     *
+     * @return the descriptor, or {@link #UNDEFINED} if shutting the socket down wakes its threads instead.
+     */
+    final int getWakeupDescriptor()
+    {
+        return this.wakeupDescriptor;
+    }
+
+    /**
+     * Sets the identifier / file descriptor for the native socket, for sockets opened by another native class.
+     *
+     * @param socket The identifier.
+     */
+    final void setNativeSocketIdentifier(final int socket)
+    {
+        synchronized(this.stateLock)
+        {
+            final int wakeup = this.wakeupDescriptor;
+            this.nativeSocketIdentifier = socket;
+            this.cleanable = ResourceCleaner.register(this, () -> RawSocketImpl.closeDescriptors(socket, wakeup));
+        }
+    }
+
+    @Override
+    public void open(final IpVersion ipVersion, final int protocol) throws IOException
+    {
+        if(ipVersion == null)
+        {
+            throw new IllegalArgumentException("Parameter ipVersion cannot be null!");
+        }
+
+        synchronized(this.stateLock)
+        {
+            if(this.closed)
+            {
+                throw new IllegalStateException("The socket has been closed.");
+            }
+            if(this.nativeSocketIdentifier != RawSocketImpl.UNDEFINED)
+            {
+                throw new IllegalStateException("The socket is already open.");
+            }
+
+            this.setNativeSocketIdentifier(this.open(ipVersion.getPacketFormatFamily(), protocol));
+            this.ipVersion = ipVersion;
+        }
+    }
+
+    /**
+     * Open an {@code AF_PACKET} socket (Linux only) for the EtherType and bind it to the interface. This is the kind
+     * of socket {@link #mapReceiveRing(RingGeometry)} and {@link #mapTransmitRing(RingGeometry)} need. Packet sockets
+     * receive whole link-layer frames, starting with the link-layer header. They cannot send to an IP destination, so
+     * frames are sent through a transmit ring. Opening requires the privilege to open packet sockets
+     * ({@code CAP_NET_RAW} on Linux).
+     *
+     * @param etherType The EtherType to capture in host order, such as {@link PacketFanoutGroup#ETHERTYPE_ALL}
+     * @param interfaceIndex The index of the interface to bind to (see {@link java.net.NetworkInterface#getIndex()}),
+     *     or zero to capture on all interfaces (a transmit ring needs an interface)
+     *
+     * @throws IOException if the socket cannot be opened or bound.
+     * @throws IllegalStateException if this socket is already open or has been closed.
+     * @throws UnsupportedOperationException if packet sockets are not supported on this platform.
+     */
+    public void openPacket(final int etherType, final int interfaceIndex) throws IOException
+    {
+        if(etherType < 0 || etherType > RawSocketImpl.MAXIMUM_ETHERTYPE)
+        {
+            throw new IllegalArgumentException("Parameter etherType must be a 16-bit EtherType.");
+        }
+        if(interfaceIndex < 0)
+        {
+            throw new IllegalArgumentException("Parameter interfaceIndex cannot be negative.");
+        }
+
+        synchronized(this.stateLock)
+        {
+            if(this.closed)
+            {
+                throw new IllegalStateException("The socket has been closed.");
+            }
+            if(this.nativeSocketIdentifier != RawSocketImpl.UNDEFINED)
+            {
+                throw new IllegalStateException("The socket is already open.");
+            }
+
+            final int socket = RawSocketImpl.openPacketSocket(etherType, interfaceIndex);
+            try
+            {
+                this.wakeupDescriptor = RawSocketImpl.openWakeup();
+            }
+            catch(final IOException | RuntimeException e)
+            {
+                RawSocketImpl.closeDescriptor(socket);
+                throw e;
+            }
+
+            this.setNativeSocketIdentifier(socket);
+        }
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return !this.closed && this.nativeSocketIdentifier != RawSocketImpl.UNDEFINED;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.shutdownSocket();
+        this.closeSocket();
+    }
+
     /**
      * Get the IP version for the native socket.
      *
@@ -92,6 +262,7 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
     @Override
     public void setSocketOption(final SocketLevel level, final int option, final int value)
     {
+        RawSocketImpl.checkDefined(level, option);
         this.setSocketOption(this.getNativeSocketIdentifier(), level.getOsConstant(), option, value);
     }
 
@@ -109,9 +280,29 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
     @Override
     public int getSocketOption(final SocketLevel level, final int option)
     {
+        RawSocketImpl.checkDefined(level, option);
         return this.getSocketOption(this.getNativeSocketIdentifier(), level.getOsConstant(), option);
     }
 
+    /**
+     * Rejects a socket option or level that the operating system does not define, which would otherwise reach the
+     * system call as {@link Constants#NOT_DEFINED} and fail with a less helpful error.
+     *
+     * @param level The socket option level
+     * @param option The socket option
+     */
+    private static void checkDefined(final SocketLevel level, final int option)
+    {
+        if(!Constants.isDefined(level.getOsConstant()))
+        {
+            throw new SocketConstantNotDefinedException("The socket level " + level + " is not natively defined.");
+        }
+        if(!Constants.isDefined(option))
+        {
+            throw new SocketConstantNotDefinedException("The socket option is not natively defined.");
+        }
+    }
+
     /**
      * Get the specified socket option at the given level.
      *
@@ -178,6 +369,34 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
      */
     protected native int getTimeout(int socket, int option);
 
+    /**
+     * Enable or disable kernel software receive timestamps, preferring {@code SO_TIMESTAMPING} and falling back to
+     * {@code SO_TIMESTAMPNS}.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param on Whether to timestamp received packets
+     */
+    protected native void setReceiveTimestamps(int socket, boolean on);
+
+    /**
+     * Attach a classic BPF filter built from the program's instructions with {@code SO_ATTACH_FILTER}.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param codes The operation code of each instruction
+     * @param jumpsTrue The true jump distance of each instruction
+     * @param jumpsFalse The false jump distance of each instruction
+     * @param constants The constant of each instruction
+     */
+    protected native void attachFilter(int socket, short[] codes, byte[] jumpsTrue, byte[] jumpsFalse,
+                                       int[] constants);
+
+    /**
+     * Detach the socket's classic BPF filter with {@code SO_DETACH_FILTER}.
+     *
+     * @param socket The socket identifier / file descriptor.
+     */
+    protected native void detachFilter(int socket);
+
     @Override
     public void setSendTimeout(final int milliseconds)
     {
@@ -255,6 +474,42 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
         }
     }
 
+    @Override
+    public void setReceiveTimestamps(final boolean on)
+    {
+        this.setReceiveTimestamps(this.getNativeSocketIdentifier(), on);
+        this.receiveTimestamps = on;
+    }
+
+    @Override
+    public boolean getReceiveTimestamps()
+    {
+        return this.receiveTimestamps;
+    }
+
+    @Override
+    public void attachFilter(final BpfProgram program)
+    {
+        if(program == null)
+        {
+            throw new IllegalArgumentException("Parameter program cannot be null!");
+        }
+
+        this.attachFilter(
+            this.getNativeSocketIdentifier(),
+            program.getCodes(),
+            program.getJumpsTrue(),
+            program.getJumpsFalse(),
+            program.getConstants()
+        );
+    }
+
+    @Override
+    public void detachFilter()
+    {
+        this.detachFilter(this.getNativeSocketIdentifier());
+    }
+
     @Override
     public boolean getIpHeaderInclude()
     {
@@ -267,4 +522,770 @@ public class RawSocketImpl extends DynamicNativeObject implements RawSocket
             return this.getSocketOption(SocketLevel.IP, Constants.IP_HDRINCL) == 1;
         }
     }
+
+    @Override
+    public int send(final ByteBuffer buffer, final InetAddress destination) throws IOException
+    {
+        final int position = buffer.position();
+        final int length = buffer.limit() - position;
+        final byte[] address = destination.getAddress();
+
+        if(!buffer.isDirect() && !buffer.hasArray())
+        {
+            throw new IllegalArgumentException("The buffer must be direct or backed by an accessible array.");
+        }
+
+        final int socket = this.beginTransfer();
+        final int sent;
+        try
+        {
+            if(buffer.isDirect())
+            {
+                sent = this.sendDirect(
+                    socket, this.wakeupDescriptor, buffer, position, length, address,
+                    this.getSelectTimeout(this.sendTimeout)
+                );
+            }
+            else
+            {
+                sent = this.sendArray(
+                    socket, this.wakeupDescriptor, buffer.array(), buffer.arrayOffset() + position, length, address,
+                    this.getPollTimeout(this.sendTimeout)
+                );
+            }
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+
+        buffer.position(position + sent);
+        return sent;
+    }
+
+    @Override
+    public int send(final byte[] data, final int offset, final int length, final InetAddress destination)
+        throws IOException
+    {
+        RawSocketImpl.checkBounds(data, offset, length);
+
+        final int socket = this.beginTransfer();
+        try
+        {
+            return this.sendArray(
+                socket, this.wakeupDescriptor, data, offset, length, destination.getAddress(),
+                this.getPollTimeout(this.sendTimeout)
+            );
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+    }
+
+    @Override
+    public int receive(final ByteBuffer buffer) throws IOException
+    {
+        if(buffer.isReadOnly())
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        final int position = buffer.position();
+        final int length = buffer.limit() - position;
+
+        final int socket = this.beginTransfer();
+        final int wakeup = this.wakeupDescriptor;
+        final int received;
+        try
+        {
+            if(buffer.isDirect())
+            {
+                received = this.isParking() ?
+                           this.park(() -> this.receiveDirect(
+                               socket, wakeup, buffer, position, length, RawSocketImpl.NON_BLOCKING
+                           )) :
+                           this.receiveDirect(
+                               socket, wakeup, buffer, position, length, this.getSelectTimeout(this.receiveTimeout)
+                           );
+            }
+            else
+            {
+                final byte[] data = buffer.array();
+                final int offset = buffer.arrayOffset() + position;
+                received = this.isParking() ?
+                           this.park(() -> this.receiveArray(
+                               socket, wakeup, data, offset, length, RawSocketImpl.NON_BLOCKING
+                           )) :
+                           this.receiveArray(
+                               socket, wakeup, data, offset, length, this.getPollTimeout(this.receiveTimeout)
+                           );
+            }
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+        this.checkClosed();
+
+        buffer.position(position + received);
+        return received;
+    }
+
+    @Override
+    public int receive(final byte[] data, final int offset, final int length) throws IOException
+    {
+        RawSocketImpl.checkBounds(data, offset, length);
+
+        final int socket = this.beginTransfer();
+        final int wakeup = this.wakeupDescriptor;
+        final int received;
+        try
+        {
+            if(this.isParking())
+            {
+                received = this.park(() -> this.receiveArray(
+                    socket, wakeup, data, offset, length, RawSocketImpl.NON_BLOCKING
+                ));
+            }
+            else
+            {
+                received = this.receiveArray(
+                    socket, wakeup, data, offset, length, this.getPollTimeout(this.receiveTimeout)
+                );
+            }
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+        this.checkClosed();
+
+        return received;
+    }
+
+    @Override
+    public int sendBatch(final PacketBatch batch) throws IOException
+    {
+        if(batch.getSize() == 0)
+        {
+            return 0;
+        }
+
+        final int socket = this.beginTransfer();
+        try
+        {
+            return this.sendBatch(
+                socket, this.wakeupDescriptor, batch.getBuffer(), batch.getSlotSize(), batch.getSize(),
+                batch.getLengths(), batch.getRemoteAddresses(), batch.getRemoteAddressLengths(),
+                batch.getLocalAddresses(), batch.getLocalAddressLengths(), this.getSelectTimeout(this.sendTimeout)
+            );
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+    }
+
+    @Override
+    public int receiveBatch(final PacketBatch batch, final int maximum) throws IOException
+    {
+        if(maximum < 1 || maximum > batch.getCapacity())
+        {
+            throw new IllegalArgumentException("Parameter maximum must be between 1 and " + batch.getCapacity() + ".");
+        }
+
+        batch.clear();
+        final int socket = this.beginTransfer();
+        final int received;
+        try
+        {
+            if(this.isParking())
+            {
+                received = this.park(() -> this.receiveBatch(socket, batch, maximum, RawSocketImpl.NON_BLOCKING));
+            }
+            else
+            {
+                received = this.receiveBatch(socket, batch, maximum, this.getSelectTimeout(this.receiveTimeout));
+            }
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+        this.checkClosed();
+        batch.setSize(received);
+        return received;
+    }
+
+    @Override
+    public PacketReceiveRing mapReceiveRing(final RingGeometry geometry) throws IOException
+    {
+        if(geometry == null)
+        {
+            throw new IllegalArgumentException("Parameter geometry cannot be null!");
+        }
+
+        return new PacketReceiveRing(this, geometry);
+    }
+
+    @Override
+    public PacketTransmitRing mapTransmitRing(final RingGeometry geometry) throws IOException
+    {
+        if(geometry == null)
+        {
+            throw new IllegalArgumentException("Parameter geometry cannot be null!");
+        }
+
+        return new PacketTransmitRing(this, geometry);
+    }
+
+    @Override
+    public void setBlocking(final boolean blocking)
+    {
+        this.blocking = blocking;
+    }
+
+    @Override
+    public boolean isBlocking()
+    {
+        return this.blocking;
+    }
+
+    @Override
+    public void setParkingReceive(final boolean parkingReceive)
+    {
+        this.parkingReceive = parkingReceive;
+    }
+
+    @Override
+    public boolean isParkingReceive()
+    {
+        return this.parkingReceive;
+    }
+
+    /**
+     * Registers this socket with the selector, replacing its interest set if it is already registered. The socket
+     * should be non-blocking, as selectors report readiness edge-triggered by default.
+     *
+     * @param selector The selector
+     * @param ops The interest set, a combination of {@link RawSocketSelector#OP_READ} and
+     *     {@link RawSocketSelector#OP_WRITE}
+     *
+     * @throws IOException if the socket cannot be registered.
+     */
+    public void register(final RawSocketSelector selector, final int ops) throws IOException
+    {
+        selector.register(this, ops);
+    }
+
+    /**
+     * Wakes every thread sending or receiving on the native socket, if it is open, and fails every transfer that starts
+     * after. IP sockets are shut down in both directions, and packet sockets, which cannot be shut down, signal their
+     * wake-up descriptor. The socket remains open, so its file descriptor cannot be reused while those threads return.
+     *
+     * @throws IOException if the socket cannot be shut down.
+     */
+    void shutdownSocket() throws IOException
+    {
+        this.closed = true;
+        ReceivePoller.release(this);
+
+        // the lock keeps the socket from being released, and its descriptors reused, in the meantime
+        synchronized(this.stateLock)
+        {
+            final int socket = this.nativeSocketIdentifier;
+            if(this.wakeupDescriptor != RawSocketImpl.UNDEFINED)
+            {
+                RawSocketImpl.signalWakeup(this.wakeupDescriptor);
+            }
+            else if(socket != RawSocketImpl.UNDEFINED)
+            {
+                this.shutdown(socket);
+            }
+        }
+    }
+
+    /**
+     * Closes the native socket, if it is open, once no thread is sending or receiving on it. If transfers are still in
+     * flight, the last of them to finish closes the socket, ignoring any error, so call {@link #shutdownSocket()} first
+     * to wake them.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    void closeSocket() throws IOException
+    {
+        this.closed = true;
+        ReceivePoller.release(this);
+
+        if(this.transfers.getAndUpdate(state -> state | RawSocketImpl.CLOSING) == 0)
+        {
+            this.releaseSocket();
+        }
+    }
+
+    /**
+     * Starts a transfer, which keeps the socket from being closed until {@link #endTransfer()} ends it.
+     *
+     * @return the identifier / file descriptor to transfer on.
+     *
+     * @throws SocketException if the socket is not open or has been closed.
+     */
+    final int beginTransfer() throws SocketException
+    {
+        final int state = this.transfers.getAndAdd(RawSocketImpl.TRANSFER);
+        final int socket = this.nativeSocketIdentifier;
+        if((state & RawSocketImpl.CLOSING) != 0 || this.closed || socket == RawSocketImpl.UNDEFINED)
+        {
+            this.endTransfer();
+            throw new SocketException(this.closed ? "Socket closed." : "Socket is not open.");
+        }
+
+        return socket;
+    }
+
+    /**
+     * Ends a transfer started with {@link #beginTransfer()}, closing the socket if it was closed during the transfer
+     * and this was the last transfer in flight.
+     */
+    final void endTransfer()
+    {
+        if(this.transfers.addAndGet(-RawSocketImpl.TRANSFER) == RawSocketImpl.CLOSING)
+        {
+            try
+            {
+                this.releaseSocket();
+            }
+            catch(final IOException ignore)
+            {
+                // the close already returned, so there is nobody left to report this to
+            }
+        }
+    }
+
+    /**
+     * Remembers an engine the socket is being registered with, so that closing the socket unregisters it first.
+     *
+     * @param engine The engine
+     *
+     * @throws SocketException if the socket is not open or has been closed.
+     */
+    void addEngine(final AsyncRawSocketEngine engine) throws SocketException
+    {
+        synchronized(this.stateLock)
+        {
+            if(this.closed || this.nativeSocketIdentifier == RawSocketImpl.UNDEFINED)
+            {
+                throw new SocketException(this.closed ? "Socket closed." : "Socket is not open.");
+            }
+
+            if(this.engines == null)
+            {
+                this.engines = new ArrayList<>(1);
+            }
+            if(!this.engines.contains(engine))
+            {
+                this.engines.add(engine);
+            }
+        }
+    }
+
+    /**
+     * Forgets an engine the socket is no longer registered with.
+     *
+     * @param engine The engine
+     */
+    void removeEngine(final AsyncRawSocketEngine engine)
+    {
+        synchronized(this.stateLock)
+        {
+            if(this.engines != null)
+            {
+                this.engines.remove(engine);
+            }
+        }
+    }
+
+    private void releaseSocket() throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            final int socket = this.nativeSocketIdentifier;
+            if(socket == RawSocketImpl.UNDEFINED)
+            {
+                return;
+            }
+
+            final int wakeup = this.wakeupDescriptor;
+            final ResourceCleaner.Cleanable registration = this.cleanable;
+            final List<AsyncRawSocketEngine> registered = this.engines;
+            this.nativeSocketIdentifier = RawSocketImpl.UNDEFINED;
+            this.wakeupDescriptor = RawSocketImpl.UNDEFINED;
+            this.cleanable = null;
+            this.engines = null;
+
+            // the engines must let go of the descriptor before it is closed and can be reused
+            IOException failure = null;
+            if(registered != null)
+            {
+                for(final AsyncRawSocketEngine engine : registered)
+                {
+                    try
+                    {
+                        engine.release(this, socket);
+                    }
+                    catch(final IOException e)
+                    {
+                        failure = e;
+                    }
+                }
+            }
+
+            // a socket that was registered with the cleaner is closed here, unless the cleaner already closed it
+            if(registration == null || registration.cancel())
+            {
+                if(wakeup != RawSocketImpl.UNDEFINED)
+                {
+                    RawSocketImpl.closeDescriptor(wakeup);
+                }
+                this.close(socket);
+            }
+
+            if(failure != null)
+            {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Fails a receive that returned because the socket was closed, rather than because something was received.
+     *
+     * @throws SocketException if the socket has been closed.
+     */
+    void checkClosed() throws SocketException
+    {
+        if(this.closed)
+        {
+            throw new SocketException("Socket closed.");
+        }
+    }
+
+    /**
+     * Determines the timeout to wait for readiness with before a direct buffer transfer. When select timeouts are
+     * disabled, the socket-level timeout of an IP socket applies instead and no wait is performed.
+     *
+     * @param timeout The send or receive timeout
+     *
+     * @return the timeout in milliseconds (zero meaning no timeout), {@link #UNDEFINED} to not wait, or
+     *     {@link #NON_BLOCKING} to not wait and not block.
+     */
+    private int getSelectTimeout(final TimeoutValue timeout)
+    {
+        if(!this.blocking)
+        {
+            return RawSocketImpl.NON_BLOCKING;
+        }
+
+        // packet sockets always wait, because their wake-up descriptor only wakes waits, not blocked system calls
+        return this.getUseSelectTimeout() || this.wakeupDescriptor != RawSocketImpl.UNDEFINED ?
+               timeout.getInMilliseconds() :
+               RawSocketImpl.UNDEFINED;
+    }
+
+    /**
+     * Determines the timeout to wait for readiness with before a pinned array transfer, which must always wait
+     * instead of blocking.
+     *
+     * @param timeout The send or receive timeout
+     *
+     * @return the timeout in milliseconds (zero meaning no timeout), or {@link #NON_BLOCKING} to not wait.
+     */
+    private int getPollTimeout(final TimeoutValue timeout)
+    {
+        return this.blocking ? timeout.getInMilliseconds() : RawSocketImpl.NON_BLOCKING;
+    }
+
+    /**
+     * Determines the timeout to wait with before a send that must wait instead of blocking in the system call.
+     *
+     * @return the timeout in milliseconds (zero meaning no timeout), or {@link #NON_BLOCKING} to not wait.
+     */
+    final int getSendPollTimeout()
+    {
+        return this.getPollTimeout(this.sendTimeout);
+    }
+
+    /**
+     * Determines the timeout to wait with before a receive that must wait instead of blocking in the system call.
+     *
+     * @return the timeout in milliseconds (zero meaning no timeout), or {@link #NON_BLOCKING} to not wait.
+     */
+    final int getReceivePollTimeout()
+    {
+        return this.getPollTimeout(this.receiveTimeout);
+    }
+
+    /**
+     * Determines whether blocking receives park on the shared receive poller instead of waiting on the socket.
+     *
+     * @return whether receives park.
+     */
+    final boolean isParking()
+    {
+        return this.parkingReceive && this.blocking;
+    }
+
+    /**
+     * Parks a receive on the shared receive poller until the attempt receives something or the receive timeout elapses.
+     *
+     * @param attempt The non-blocking receive attempt
+     *
+     * @return the number of bytes received.
+     *
+     * @throws IOException if the receive times out or fails, or the socket is closed.
+     */
+    final int park(final ReceivePoller.Attempt attempt) throws IOException
+    {
+        return ReceivePoller.getInstance().receive(this, attempt, this.receiveTimeout.getInMilliseconds());
+    }
+
+    private int receiveBatch(final int socket, final PacketBatch batch, final int maximum, final int timeout)
+        throws IOException
+    {
+        return this.receiveBatch(
+            socket, this.wakeupDescriptor, batch.getBuffer(), batch.getSlotSize(), maximum, batch.getLengths(),
+            batch.getRemoteAddresses(), batch.getRemoteAddressLengths(), batch.getLocalAddresses(),
+            batch.getLocalAddressLengths(), batch.getTimestamps(), timeout
+        );
+    }
+
+    private static void checkBounds(final byte[] data, final int offset, final int length)
+    {
+        if(offset < 0 || length < 0 || offset > data.length - length)
+        {
+            throw new IndexOutOfBoundsException(
+                "Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + data.length + "."
+            );
+        }
+    }
+
+    /**
+     * Shut down both directions of the socket.
+     *
+     * @param socket The socket identifier / file descriptor.
+     *
+     * @throws IOException if the socket cannot be shut down.
+     */
+    protected native void shutdown(int socket) throws IOException;
+
+    /**
+     * Open a raw socket.
+     *
+     * @param family The protocol family
+     * @param protocol The IP protocol number
+     *
+     * @return the socket identifier / file descriptor.
+     *
+     * @throws IOException if the socket cannot be opened.
+     */
+    protected native int open(int family, int protocol) throws IOException;
+
+    /**
+     * Open an {@code AF_PACKET} socket for the EtherType and bind it to the interface.
+     *
+     * @param etherType The EtherType in host order
+     * @param interfaceIndex The interface index, or zero for all interfaces
+     *
+     * @return the socket identifier / file descriptor.
+     *
+     * @throws IOException if the socket cannot be opened or bound.
+     */
+    private static native int openPacketSocket(int etherType, int interfaceIndex) throws IOException;
+
+    /**
+     * Close a socket that was never closed explicitly, ignoring any error, on behalf of the {@link ResourceCleaner}.
+     *
+     * @param socket The socket identifier / file descriptor.
+     */
+    private static native void closeDescriptor(int socket);
+
+    private static void closeDescriptors(final int socket, final int wakeup)
+    {
+        RawSocketImpl.closeDescriptor(socket);
+        if(wakeup != RawSocketImpl.UNDEFINED)
+        {
+            RawSocketImpl.closeDescriptor(wakeup);
+        }
+    }
+
+    /**
+     * Open the descriptor that closing a packet socket signals (an {@code eventfd} on Linux).
+     *
+     * @return the wake-up descriptor.
+     *
+     * @throws IOException if the descriptor cannot be opened.
+     */
+    private static native int openWakeup() throws IOException;
+
+    /**
+     * Signal the wake-up descriptor, which stays signalled until it is closed.
+     *
+     * @param wakeup The wake-up descriptor.
+     *
+     * @throws IOException if the descriptor cannot be signalled.
+     */
+    private static native void signalWakeup(int wakeup) throws IOException;
+
+    /**
+     * Close the socket.
+     *
+     * @param socket The socket identifier / file descriptor.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    protected native void close(int socket) throws IOException;
+
+    /**
+     * Send data from a direct buffer without copying it.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param buffer The direct buffer containing the data
+     * @param offset The offset within the buffer at which the data starts
+     * @param length The number of bytes to send
+     * @param address The raw destination address (4 bytes for IPv4, 16 bytes for IPv6)
+     * @param timeout The milliseconds to wait for the socket to become writable (zero meaning no timeout),
+     *     {@link #UNDEFINED} to send immediately and rely on the socket-level send timeout, or
+     *     {@link #NON_BLOCKING} to return zero instead of blocking
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws IOException if the send times out or fails.
+     */
+    protected native int sendDirect(
+        int socket, int wakeup, ByteBuffer buffer, int offset, int length, byte[] address, int timeout
+    ) throws IOException;
+
+    /**
+     * Send data from a pinned array without copying it. Because the array is pinned, the native code always waits for
+     * the socket to become writable before sending and never blocks while the array is pinned.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param data The array containing the data
+     * @param offset The offset within the array at which the data starts
+     * @param length The number of bytes to send
+     * @param address The raw destination address (4 bytes for IPv4, 16 bytes for IPv6)
+     * @param timeout The milliseconds to wait for the socket to become writable (zero meaning no timeout), or
+     *     {@link #NON_BLOCKING} to return zero instead of waiting
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws IOException if the send times out or fails.
+     */
+    protected native int sendArray(
+        int socket, int wakeup, byte[] data, int offset, int length, byte[] address, int timeout
+    ) throws IOException;
+
+    /**
+     * Receive a packet into a direct buffer without copying it.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param buffer The direct buffer to receive into
+     * @param offset The offset within the buffer at which to start writing
+     * @param length The maximum number of bytes to receive
+     * @param timeout The milliseconds to wait for the socket to become readable (zero meaning no timeout),
+     *     {@link #UNDEFINED} to receive immediately and rely on the socket-level receive timeout, or
+     *     {@link #NON_BLOCKING} to return zero instead of blocking
+     *
+     * @return the number of bytes received.
+     *
+     * @throws IOException if the receive times out or fails.
+     */
+    protected native int receiveDirect(int socket, int wakeup, ByteBuffer buffer, int offset, int length, int timeout)
+        throws IOException;
+
+    /**
+     * Receive a packet into a pinned array without copying it. Because the array is pinned, the native code always
+     * waits for the socket to become readable before receiving and never blocks while the array is pinned.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param data The array to receive into
+     * @param offset The offset within the array at which to start writing
+     * @param length The maximum number of bytes to receive
+     * @param timeout The milliseconds to wait for the socket to become readable (zero meaning no timeout), or
+     *     {@link #NON_BLOCKING} to return zero instead of waiting
+     *
+     * @return the number of bytes received.
+     *
+     * @throws IOException if the receive times out or fails.
+     */
+    protected native int receiveArray(int socket, int wakeup, byte[] data, int offset, int length, int timeout)
+        throws IOException;
+
+    /**
+     * Send a batch of packets with one native call. Addresses are packed at
+     * {@link PacketBatch#MAXIMUM_ADDRESS_LENGTH}-byte intervals with their lengths (4, 16, or 0 for none) in the
+     * corresponding length arrays.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param buffer The direct buffer holding the packet slots
+     * @param slotSize The size of each slot in the buffer
+     * @param count The number of slots to send
+     * @param lengths The packet length of each slot
+     * @param remoteAddresses The destination address of each slot
+     * @param remoteAddressLengths The length of each destination address
+     * @param localAddresses The source address of each slot
+     * @param localAddressLengths The length of each source address
+     * @param timeout The milliseconds to wait for the socket to become writable (zero meaning no timeout),
+     *     {@link #UNDEFINED} to send immediately and rely on the socket-level send timeout, or
+     *     {@link #NON_BLOCKING} to return zero instead of blocking
+     *
+     * @return the number of packets sent.
+     *
+     * @throws IOException if the send times out or fails.
+     */
+    protected native int sendBatch(
+        int socket, int wakeup, ByteBuffer buffer, int slotSize, int count, int[] lengths, byte[] remoteAddresses,
+        int[] remoteAddressLengths, byte[] localAddresses, int[] localAddressLengths, int timeout
+    ) throws IOException;
+
+    /**
+     * Receive a batch of packets with one native call. Addresses are packed at
+     * {@link PacketBatch#MAXIMUM_ADDRESS_LENGTH}-byte intervals with their lengths (4, 16, or 0 for none) in the
+     * corresponding length arrays.
+     *
+     * @param socket The socket identifier / file descriptor.
+     * @param wakeup The descriptor that closing the socket signals, or {@link #UNDEFINED} if shutting the socket down
+     *     wakes it
+     * @param buffer The direct buffer holding the packet slots
+     * @param slotSize The size of each slot in the buffer
+     * @param maximum The maximum number of packets to receive
+     * @param lengths Receives the packet length of each slot
+     * @param remoteAddresses Receives the source address of each slot
+     * @param remoteAddressLengths Receives the length of each source address
+     * @param localAddresses Receives the destination address of each slot
+     * @param localAddressLengths Receives the length of each destination address
+     * @param timestamps Receives the kernel receive time of each slot, or {@link Packet#NO_TIMESTAMP}
+     * @param timeout The milliseconds to wait for the socket to become readable (zero meaning no timeout),
+     *     {@link #UNDEFINED} to receive immediately and rely on the socket-level receive timeout, or
+     *     {@link #NON_BLOCKING} to return zero instead of blocking
+     *
+     * @return the number of packets received.
+     *
+     * @throws IOException if the receive times out or fails.
+     */
+    protected native int receiveBatch(
+        int socket, int wakeup, ByteBuffer buffer, int slotSize, int maximum, int[] lengths, byte[] remoteAddresses,
+        int[] remoteAddressLengths, byte[] localAddresses, int[] localAddressLengths, long[] timestamps, int timeout
+    ) throws IOException;
 }
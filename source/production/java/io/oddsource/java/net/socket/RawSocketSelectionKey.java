@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectionKey;
+
+/**
+ * The registration of a {@link RawSocketChannel} with a {@link RawSocketChannelSelector}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RawSocketSelectionKey extends AbstractSelectionKey
+{
+    private final RawSocketChannel channel;
+
+    private final RawSocketChannelSelector selector;
+
+    private volatile int interestOps;
+
+    private volatile int readyOps;
+
+    RawSocketSelectionKey(final RawSocketChannel channel, final RawSocketChannelSelector selector)
+    {
+        super();
+
+        this.channel = channel;
+        this.selector = selector;
+    }
+
+    @Override
+    public SelectableChannel channel()
+    {
+        return this.channel;
+    }
+
+    @Override
+    public Selector selector()
+    {
+        return this.selector;
+    }
+
+    @Override
+    public int interestOps()
+    {
+        this.ensureValid();
+
+        return this.interestOps;
+    }
+
+    @Override
+    public RawSocketSelectionKey interestOps(final int ops)
+    {
+        this.ensureValid();
+        if((ops & ~this.channel.validOps()) != 0)
+        {
+            throw new IllegalArgumentException("Operations " + ops + " are not valid for raw socket channels.");
+        }
+
+        this.selector.updateInterestOps(this, ops);
+        this.interestOps = ops;
+        return this;
+    }
+
+    @Override
+    public int readyOps()
+    {
+        this.ensureValid();
+
+        return this.readyOps;
+    }
+
+    RawSocketChannel getChannel()
+    {
+        return this.channel;
+    }
+
+    int getInterestOps()
+    {
+        return this.interestOps;
+    }
+
+    int getReadyOps()
+    {
+        return this.readyOps;
+    }
+
+    void setReadyOps(final int readyOps)
+    {
+        this.readyOps = readyOps;
+    }
+
+    private void ensureValid()
+    {
+        if(!this.isValid())
+        {
+            throw new CancelledKeyException();
+        }
+    }
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Waits for any number of raw sockets to become ready on a single thread, using the Linux {@code epoll} facility.<br>
+ * <br>
+ * By default, sockets are registered edge-triggered: a socket is reported ready once each time its readiness changes
+ * (for example, when new packets arrive), not for as long as it remains ready. Registered sockets should therefore be
+ * made non-blocking with {@link RawSocket#setBlocking(boolean)} and, once reported ready, drained until a transfer
+ * returns zero. A level-triggered selector, which reports a socket on every select for as long as it is ready, can be
+ * created with {@link #RawSocketSelector(int, boolean)}.<br>
+ * <br>
+ * The ready set is preallocated when the selector is created and reused by every select, so selecting allocates
+ * nothing. After a select returns {@code n}, ready sockets are found at indexes {@code 0} through {@code n - 1} with
+ * {@link #getReadySocket(int)} and {@link #getReadyOps(int)}.<br>
+ * <br>
+ * Only one thread may select at a time. Registration, {@link #wakeup()}, and {@link #close()} may be called from any
+ * thread.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RawSocketSelector extends DynamicNativeObject implements Closeable
+{
+    /**
+     * Interest in, or readiness for, receiving.
+     */
+    public static final int OP_READ = 1;
+
+    /**
+     * Interest in, or readiness for, sending.
+     */
+    public static final int OP_WRITE = 4;
+
+    /**
+     * The default maximum number of ready sockets reported by a single select.
+     */
+    public static final int DEFAULT_MAXIMUM_EVENTS = 1024;
+
+    private static final int WAKEUP_KEY = -1;
+
+    private static final int OPERATION_ADD = 1;
+
+    private static final int OPERATION_MODIFY = 2;
+
+    private static final int OPERATION_DELETE = 3;
+
+    private static final int INDEFINITELY = -1;
+
+    private static final int INITIAL_REGISTRATIONS = 16;
+
+    private final Object stateLock = new Object();
+
+    private final boolean edgeTriggered;
+
+    private final int epollDescriptor;
+
+    private final int wakeupDescriptor;
+
+    private final Map<RawSocketImpl, Integer> keys = new IdentityHashMap<>();
+
+    private RawSocketImpl[] sockets = new RawSocketImpl[RawSocketSelector.INITIAL_REGISTRATIONS];
+
+    private int[] interestOps = new int[RawSocketSelector.INITIAL_REGISTRATIONS];
+
+    private int[] freeKeys = new int[RawSocketSelector.INITIAL_REGISTRATIONS];
+
+    private int freeKeyCount;
+
+    private int nextKey;
+
+    private final ByteBuffer events;
+
+    private final int[] readyKeys;
+
+    private final int[] readyOps;
+
+    private final RawSocketImpl[] readySockets;
+
+    private int readyCount;
+
+    private boolean selecting;
+
+    private boolean closed;
+
+    /**
+     * Constructor that reports up to {@link #DEFAULT_MAXIMUM_EVENTS} ready sockets per select.
+     *
+     * @throws IOException if the native selector cannot be created.
+     */
+    public RawSocketSelector() throws IOException
+    {
+        this(RawSocketSelector.DEFAULT_MAXIMUM_EVENTS);
+    }
+
+    /**
+     * Constructor for an edge-triggered selector.
+     *
+     * @param maximumEvents The maximum number of ready sockets reported by a single select; any others remain ready
+     *     for the next select
+     *
+     * @throws IOException if the native selector cannot be created.
+     */
+    public RawSocketSelector(final int maximumEvents) throws IOException
+    {
+        this(maximumEvents, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maximumEvents The maximum number of ready sockets reported by a single select; any others remain ready
+     *     for the next select
+     * @param edgeTriggered Whether sockets are reported only when their readiness changes ({@code true}) or on every
+     *     select for as long as they are ready ({@code false})
+     *
+     * @throws IOException if the native selector cannot be created.
+     */
+    public RawSocketSelector(final int maximumEvents, final boolean edgeTriggered) throws IOException
+    {
+        super();
+
+        if(maximumEvents < 1)
+        {
+            throw new IllegalArgumentException("Parameter maximumEvents must be positive.");
+        }
+
+        this.edgeTriggered = edgeTriggered;
+        this.events = ByteBuffer.allocateDirect(maximumEvents * RawSocketSelector.getEventSize());
+        this.readyKeys = new int[maximumEvents];
+        this.readyOps = new int[maximumEvents];
+        this.readySockets = new RawSocketImpl[maximumEvents];
+
+        this.epollDescriptor = RawSocketSelector.createEpoll();
+        try
+        {
+            this.wakeupDescriptor = RawSocketSelector.createWakeup(this.epollDescriptor);
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            RawSocketSelector.closeDescriptor(this.epollDescriptor);
+            throw e;
+        }
+    }
+
+    /**
+     * Registers the socket with this selector. If the socket is already registered, its interest set is replaced.
+     *
+     * @param socket The socket to register
+     * @param ops The interest set, a combination of {@link #OP_READ} and {@link #OP_WRITE}, or zero to keep the
+     *     socket registered without reporting it
+     *
+     * @throws IOException if the socket cannot be registered.
+     */
+    public void register(final RawSocketImpl socket, final int ops) throws IOException
+    {
+        RawSocketSelector.checkOps(ops);
+
+        synchronized(this.stateLock)
+        {
+            this.checkOpen();
+
+            final Integer existing = this.keys.get(socket);
+            if(existing != null)
+            {
+                this.modify(socket, existing, ops);
+                return;
+            }
+
+            final int key = this.allocateKey();
+            RawSocketSelector.control(
+                this.epollDescriptor, RawSocketSelector.OPERATION_ADD, socket.getNativeSocketIdentifier(), key, ops,
+                this.edgeTriggered
+            );
+            this.keys.put(socket, key);
+            this.sockets[key] = socket;
+            this.interestOps[key] = ops;
+        }
+    }
+
+    /**
+     * Deregisters the socket from this selector. Does nothing if the socket is not registered. A socket that has been
+     * closed can still be deregistered, to free its key.
+     *
+     * @param socket The socket to deregister
+     *
+     * @throws IOException if the socket cannot be deregistered.
+     */
+    public void deregister(final RawSocketImpl socket) throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            this.checkOpen();
+
+            final Integer key = this.keys.remove(socket);
+            if(key == null)
+            {
+                return;
+            }
+
+            this.sockets[key] = null;
+            this.interestOps[key] = 0;
+            this.freeKeys[this.freeKeyCount++] = key;
+
+            // closing the socket already removed it from the epoll set
+            final int descriptor = socket.getNativeSocketIdentifier();
+            if(descriptor != RawSocketImpl.UNDEFINED)
+            {
+                RawSocketSelector.control(
+                    this.epollDescriptor, RawSocketSelector.OPERATION_DELETE, descriptor, key, 0, this.edgeTriggered
+                );
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the socket is registered with this selector.
+     *
+     * @param socket The socket
+     *
+     * @return whether the socket is registered.
+     */
+    public boolean isRegistered(final RawSocketImpl socket)
+    {
+        synchronized(this.stateLock)
+        {
+            return this.keys.containsKey(socket);
+        }
+    }
+
+    /**
+     * Waits until at least one registered socket is ready, the timeout elapses, or {@link #wakeup()} is called. As with
+     * the socket send and receive timeouts, a zero timeout means to wait indefinitely.
+     *
+     * @param timeout The timeout
+     *
+     * @return the number of ready sockets, which may be zero.
+     *
+     * @throws IOException if the wait fails.
+     */
+    public int select(final TimeoutValue timeout) throws IOException
+    {
+        return this.doSelect(timeout.isZero() ? RawSocketSelector.INDEFINITELY : timeout.getInMilliseconds());
+    }
+
+    /**
+     * Waits until at least one registered socket is ready, the timeout elapses, or {@link #wakeup()} is called.
+     *
+     * @param milliseconds The timeout in milliseconds, zero meaning to wait indefinitely
+     *
+     * @return the number of ready sockets, which may be zero.
+     *
+     * @throws IOException if the wait fails.
+     */
+    public int select(final int milliseconds) throws IOException
+    {
+        if(milliseconds < 0)
+        {
+            throw new IllegalArgumentException("Parameter milliseconds cannot be negative.");
+        }
+
+        return this.doSelect(milliseconds == 0 ? RawSocketSelector.INDEFINITELY : milliseconds);
+    }
+
+    /**
+     * Waits until at least one registered socket is ready or {@link #wakeup()} is called.
+     *
+     * @return the number of ready sockets, which may be zero.
+     *
+     * @throws IOException if the wait fails.
+     */
+    public int select() throws IOException
+    {
+        return this.doSelect(RawSocketSelector.INDEFINITELY);
+    }
+
+    /**
+     * Collects the registered sockets that are ready without waiting.
+     *
+     * @return the number of ready sockets, which may be zero.
+     *
+     * @throws IOException if the check fails.
+     */
+    public int selectNow() throws IOException
+    {
+        return this.doSelect(0);
+    }
+
+    /**
+     * Gets the number of sockets found ready by the most recent select.
+     *
+     * @return the number of ready sockets.
+     */
+    public int getReadyCount()
+    {
+        return this.readyCount;
+    }
+
+    /**
+     * Gets a socket found ready by the most recent select.
+     *
+     * @param index The index within the ready set, less than {@link #getReadyCount()}
+     *
+     * @return the ready socket.
+     */
+    public RawSocketImpl getReadySocket(final int index)
+    {
+        this.checkReadyIndex(index);
+
+        return this.readySockets[index];
+    }
+
+    /**
+     * Gets the operations a socket found by the most recent select is ready for.
+     *
+     * @param index The index within the ready set, less than {@link #getReadyCount()}
+     *
+     * @return the ready operations, a combination of {@link #OP_READ} and {@link #OP_WRITE}.
+     */
+    public int getReadyOps(final int index)
+    {
+        this.checkReadyIndex(index);
+
+        return this.readyOps[index];
+    }
+
+    /**
+     * Causes the current select, or the next select if none is in progress, to return immediately.
+     *
+     * @throws IOException if the selector cannot be woken.
+     */
+    public void wakeup() throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            if(!this.closed)
+            {
+                RawSocketSelector.signal(this.wakeupDescriptor);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether this selector is open.
+     *
+     * @return whether this selector is open.
+     */
+    public boolean isOpen()
+    {
+        synchronized(this.stateLock)
+        {
+            return !this.closed;
+        }
+    }
+
+    /**
+     * Closes this selector. A select in progress returns immediately, and the native resources are released as soon as
+     * it does. Registered sockets are not closed.
+     *
+     * @throws IOException if the native resources cannot be released.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            if(this.closed)
+            {
+                return;
+            }
+
+            this.closed = true;
+            this.keys.clear();
+            Arrays.fill(this.sockets, null);
+
+            if(this.selecting)
+            {
+                RawSocketSelector.signal(this.wakeupDescriptor);
+            }
+            else
+            {
+                this.release();
+            }
+        }
+    }
+
+    private int doSelect(final int timeout) throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            this.checkOpen();
+            if(this.selecting)
+            {
+                throw new IllegalStateException("Another thread is already selecting.");
+            }
+
+            this.selecting = true;
+        }
+
+        int count = 0;
+        try
+        {
+            count = RawSocketSelector.awaitEvents(
+                this.epollDescriptor, this.wakeupDescriptor, this.events, this.readyKeys.length, this.readyKeys,
+                this.readyOps, timeout
+            );
+        }
+        finally
+        {
+            synchronized(this.stateLock)
+            {
+                this.selecting = false;
+                if(this.closed)
+                {
+                    count = 0;
+                    this.release();
+                }
+
+                final int reported = count;
+                count = 0;
+                for(int i = 0; i < reported; i++)
+                {
+                    final int key = this.readyKeys[i];
+                    final int ops = this.readyOps[i] & this.interestOps[key];
+                    if(ops != 0 && this.sockets[key] != null)
+                    {
+                        this.readySockets[count] = this.sockets[key];
+                        this.readyOps[count++] = ops;
+                    }
+                }
+                Arrays.fill(this.readySockets, count, this.readyCount > count ? this.readyCount : count, null);
+                this.readyCount = count;
+            }
+        }
+
+        return count;
+    }
+
+    private void modify(final RawSocketImpl socket, final int key, final int ops) throws IOException
+    {
+        RawSocketSelector.control(
+            this.epollDescriptor, RawSocketSelector.OPERATION_MODIFY, socket.getNativeSocketIdentifier(), key, ops,
+            this.edgeTriggered
+        );
+        this.interestOps[key] = ops;
+    }
+
+    private int allocateKey()
+    {
+        if(this.freeKeyCount > 0)
+        {
+            return this.freeKeys[--this.freeKeyCount];
+        }
+
+        if(this.nextKey == this.sockets.length)
+        {
+            final int length = this.sockets.length * 2;
+            this.sockets = Arrays.copyOf(this.sockets, length);
+            this.interestOps = Arrays.copyOf(this.interestOps, length);
+            this.freeKeys = Arrays.copyOf(this.freeKeys, length);
+        }
+
+        return this.nextKey++;
+    }
+
+    private void release() throws IOException
+    {
+        try
+        {
+            RawSocketSelector.closeDescriptor(this.wakeupDescriptor);
+        }
+        finally
+        {
+            RawSocketSelector.closeDescriptor(this.epollDescriptor);
+        }
+    }
+
+    private void checkOpen()
+    {
+        if(this.closed)
+        {
+            throw new ClosedSelectorException();
+        }
+    }
+
+    private void checkReadyIndex(final int index)
+    {
+        if(index < 0 || index >= this.readyCount)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + this.readyCount + ".");
+        }
+    }
+
+    private static void checkOps(final int ops)
+    {
+        if((ops & ~(RawSocketSelector.OP_READ | RawSocketSelector.OP_WRITE)) != 0)
+        {
+            throw new IllegalArgumentException("Parameter ops must be a combination of OP_READ and OP_WRITE.");
+        }
+    }
+
+    /**
+     * Gets the size of the native event structure.
+     *
+     * @return the size in bytes.
+     */
+    private static native int getEventSize();
+
+    /**
+     * Creates the native epoll instance.
+     *
+     * @return the epoll file descriptor.
+     *
+     * @throws IOException if the instance cannot be created.
+     */
+    private static native int createEpoll() throws IOException;
+
+    /**
+     * Creates the wakeup event descriptor and registers it with the epoll instance under {@link #WAKEUP_KEY}.
+     *
+     * @param epoll The epoll file descriptor
+     *
+     * @return the wakeup file descriptor.
+     *
+     * @throws IOException if the descriptor cannot be created or registered.
+     */
+    private static native int createWakeup(int epoll) throws IOException;
+
+    /**
+     * Adds, modifies, or deletes a registration.
+     *
+     * @param epoll The epoll file descriptor
+     * @param operation {@link #OPERATION_ADD}, {@link #OPERATION_MODIFY}, or {@link #OPERATION_DELETE}
+     * @param socket The socket file descriptor
+     * @param key The registration key reported with readiness events
+     * @param ops The interest set
+     * @param edgeTriggered Whether the registration is edge-triggered
+     *
+     * @throws IOException if the registration fails.
+     */
+    private static native void control(int epoll, int operation, int socket, int key, int ops, boolean edgeTriggered)
+        throws IOException;
+
+    /**
+     * Waits for readiness events, draining the wakeup descriptor if it was signaled.
+     *
+     * @param epoll The epoll file descriptor
+     * @param wakeup The wakeup file descriptor
+     * @param events The direct buffer to receive the native events into
+     * @param maximum The maximum number of events
+     * @param keys Receives the registration key of each ready socket
+     * @param ops Receives the ready operations of each ready socket
+     * @param timeout The timeout in milliseconds, or {@link #INDEFINITELY}
+     *
+     * @return the number of ready sockets.
+     *
+     * @throws IOException if the wait fails.
+     */
+    private static native int awaitEvents(
+        int epoll, int wakeup, ByteBuffer events, int maximum, int[] keys, int[] ops, int timeout
+    ) throws IOException;
+
+    /**
+     * Signals the wakeup descriptor.
+     *
+     * @param wakeup The wakeup file descriptor
+     *
+     * @throws IOException if the descriptor cannot be signaled.
+     */
+    private static native void signal(int wakeup) throws IOException;
+
+    /**
+     * Closes a file descriptor.
+     *
+     * @param descriptor The file descriptor
+     *
+     * @throws IOException if the descriptor cannot be closed.
+     */
+    private static native void closeDescriptor(int descriptor) throws IOException;
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * The provider of {@link RawSocketChannel}s and the selectors they can be registered with. It provides no other kinds
+ * of channels.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RawSocketSelectorProvider extends SelectorProvider
+{
+    private static final RawSocketSelectorProvider INSTANCE = new RawSocketSelectorProvider();
+
+    private RawSocketSelectorProvider()
+    {
+        super();
+    }
+
+    static RawSocketSelectorProvider getInstance()
+    {
+        return RawSocketSelectorProvider.INSTANCE;
+    }
+
+    @Override
+    public AbstractSelector openSelector() throws IOException
+    {
+        return new RawSocketChannelSelector(this);
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel()
+    {
+        throw RawSocketSelectorProvider.unsupported();
+    }
+
+    @Override
+    public DatagramChannel openDatagramChannel(final ProtocolFamily family)
+    {
+        throw RawSocketSelectorProvider.unsupported();
+    }
+
+    @Override
+    public Pipe openPipe()
+    {
+        throw RawSocketSelectorProvider.unsupported();
+    }
+
+    @Override
+    public ServerSocketChannel openServerSocketChannel()
+    {
+        throw RawSocketSelectorProvider.unsupported();
+    }
+
+    @Override
+    public SocketChannel openSocketChannel()
+    {
+        throw RawSocketSelectorProvider.unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported()
+    {
+        return new UnsupportedOperationException("This provider only provides raw socket channels.");
+    }
+}
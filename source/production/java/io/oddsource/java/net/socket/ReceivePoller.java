@@ -0,0 +1,359 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The shared poller behind parking receives (see {@link RawSocket#setParkingReceive(boolean)}). A receiving thread
+ * makes non-blocking attempts and, whenever the socket has nothing for it, parks until this poller's single thread sees
+ * the socket become readable. A parked thread holds no native frame, so a virtual thread unmounts from its carrier
+ * instead of pinning it, and any number of receivers share one polling thread.<br>
+ * <br>
+ * Each readiness event wakes only the longest-waiting receiver on the socket. That receiver re-arms the socket when it
+ * is done, so a packet left over, or the next one to arrive, wakes the receiver after it.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ReceivePoller
+{
+    private static ReceivePoller instance;
+
+    private final Object stateLock = new Object();
+
+    private final Map<RawSocketImpl, Registration> registrations = new IdentityHashMap<>();
+
+    private final RawSocketSelector selector;
+
+    private volatile IOException failure;
+
+    /**
+     * Constructor.
+     *
+     * @throws IOException if the selector cannot be created.
+     */
+    private ReceivePoller() throws IOException
+    {
+        this.selector = new RawSocketSelector(RawSocketSelector.DEFAULT_MAXIMUM_EVENTS, false);
+
+        final Thread thread = new Thread(this::poll, "RawSocket Receive Poller");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the shared poller, starting it on first use.
+     *
+     * @return the shared poller.
+     *
+     * @throws IOException if the poller cannot be started.
+     */
+    static synchronized ReceivePoller getInstance() throws IOException
+    {
+        if(ReceivePoller.instance == null)
+        {
+            ReceivePoller.instance = new ReceivePoller();
+        }
+
+        return ReceivePoller.instance;
+    }
+
+    /**
+     * Forgets the socket if the shared poller has been started, which must happen before the socket's file descriptor
+     * is closed. Receivers parked on the socket fail with a {@link SocketException}.
+     *
+     * @param socket The socket
+     *
+     * @throws IOException if the socket cannot be deregistered.
+     */
+    static void release(final RawSocketImpl socket) throws IOException
+    {
+        final ReceivePoller poller;
+        synchronized(ReceivePoller.class)
+        {
+            poller = ReceivePoller.instance;
+        }
+
+        if(poller != null)
+        {
+            poller.deregister(socket);
+        }
+    }
+
+    /**
+     * Receives with the attempt, parking between non-blocking attempts until one receives something or the timeout
+     * elapses.
+     *
+     * @param socket The socket the attempt receives on
+     * @param attempt The non-blocking receive, which returns zero if nothing could be received
+     * @param timeout The timeout in milliseconds, or zero to wait indefinitely
+     *
+     * @return the (positive) result of the attempt.
+     *
+     * @throws IOException if an attempt fails, the socket is closed, or the timeout elapses.
+     */
+    int receive(final RawSocketImpl socket, final Attempt attempt, final int timeout) throws IOException
+    {
+        final long deadline = timeout == 0 ? 0L : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        Registration registration = null;
+        try
+        {
+            while(true)
+            {
+                final int received = attempt.attempt();
+                if(received > 0)
+                {
+                    return received;
+                }
+
+                long remaining = 0L;
+                if(timeout != 0)
+                {
+                    remaining = deadline - System.nanoTime();
+                    if(remaining <= 0L)
+                    {
+                        throw new SocketTimeoutException("Receive timed out.");
+                    }
+                }
+
+                if(registration == null)
+                {
+                    registration = this.getRegistration(socket);
+                }
+                this.await(socket, registration, remaining);
+            }
+        }
+        finally
+        {
+            if(registration != null)
+            {
+                this.pass(socket, registration);
+            }
+        }
+    }
+
+    private void deregister(final RawSocketImpl socket) throws IOException
+    {
+        final Registration registration;
+        synchronized(this.stateLock)
+        {
+            registration = this.registrations.remove(socket);
+        }
+
+        if(registration != null)
+        {
+            synchronized(registration)
+            {
+                registration.closed = true;
+                this.selector.deregister(socket);
+                for(final Thread waiter : registration.waiters)
+                {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+    }
+
+    private Registration getRegistration(final RawSocketImpl socket) throws IOException
+    {
+        synchronized(this.stateLock)
+        {
+            // the socket is marked closed before it is released, so a registration made after the release fails here
+            socket.checkClosed();
+
+            Registration registration = this.registrations.get(socket);
+            if(registration == null)
+            {
+                this.selector.register(socket, 0);
+                registration = new Registration();
+                this.registrations.put(socket, registration);
+            }
+            return registration;
+        }
+    }
+
+    private void await(final RawSocketImpl socket, final Registration registration, final long nanoseconds)
+        throws IOException
+    {
+        final Thread thread = Thread.currentThread();
+        synchronized(registration)
+        {
+            this.checkUsable(registration);
+            registration.waiters.add(thread);
+            this.arm(socket, registration);
+        }
+
+        if(nanoseconds == 0L)
+        {
+            LockSupport.park(this);
+        }
+        else
+        {
+            LockSupport.parkNanos(this, nanoseconds);
+        }
+
+        synchronized(registration)
+        {
+            registration.waiters.remove(thread);
+            this.checkUsable(registration);
+        }
+    }
+
+    /**
+     * Re-arms the socket for the next waiting receiver, if there is one, after a receiver is done with a wakeup.
+     */
+    private void pass(final RawSocketImpl socket, final Registration registration) throws IOException
+    {
+        synchronized(registration)
+        {
+            if(!registration.closed && !registration.waiters.isEmpty())
+            {
+                this.arm(socket, registration);
+            }
+        }
+    }
+
+    private void arm(final RawSocketImpl socket, final Registration registration) throws IOException
+    {
+        if(!registration.armed)
+        {
+            this.selector.register(socket, RawSocketSelector.OP_READ);
+            registration.armed = true;
+        }
+    }
+
+    private void checkUsable(final Registration registration) throws IOException
+    {
+        if(registration.closed)
+        {
+            throw new SocketException("Socket closed.");
+        }
+        if(this.failure != null)
+        {
+            throw new IOException("The receive poller failed.", this.failure);
+        }
+    }
+
+    private void poll()
+    {
+        try
+        {
+            while(true)
+            {
+                final int count = this.selector.select();
+                for(int i = 0; i < count; i++)
+                {
+                    this.signal(this.selector.getReadySocket(i));
+                }
+            }
+        }
+        catch(final IOException e)
+        {
+            this.failure = e;
+            synchronized(this.stateLock)
+            {
+                for(final Registration registration : this.registrations.values())
+                {
+                    synchronized(registration)
+                    {
+                        for(final Thread waiter : registration.waiters)
+                        {
+                            LockSupport.unpark(waiter);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void signal(final RawSocketImpl socket) throws IOException
+    {
+        final Registration registration;
+        synchronized(this.stateLock)
+        {
+            registration = this.registrations.get(socket);
+        }
+        if(registration == null)
+        {
+            return;
+        }
+
+        final Thread waiter;
+        synchronized(registration)
+        {
+            if(registration.closed || !registration.armed)
+            {
+                return;
+            }
+            // level-triggered, so disarm until the woken receiver has had its turn
+            this.selector.register(socket, 0);
+            registration.armed = false;
+            final Iterator<Thread> waiters = registration.waiters.iterator();
+            if(waiters.hasNext())
+            {
+                waiter = waiters.next();
+                waiters.remove();
+            }
+            else
+            {
+                waiter = null;
+            }
+        }
+
+        if(waiter != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * A non-blocking receive.
+     */
+    interface Attempt
+    {
+        /**
+         * Receives whatever is queued, without waiting.
+         *
+         * @return the number of bytes or packets received, or zero if nothing was queued.
+         *
+         * @throws IOException if receiving fails.
+         */
+        int attempt() throws IOException;
+    }
+
+    /**
+     * The receivers parked on one socket.
+     */
+    private static final class Registration
+    {
+        private final LinkedHashSet<Thread> waiters = new LinkedHashSet<>();
+
+        private boolean armed;
+
+        private boolean closed;
+    }
+}
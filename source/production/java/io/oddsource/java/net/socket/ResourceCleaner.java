@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Releases native resources whose owners become unreachable without being closed, in the manner of the Java 9
+ * {@code java.lang.ref.Cleaner}, which this library cannot use while it supports Java 8. Owners register a cleanup
+ * action that must not refer to the owner, and cancel the registration when they release the resource themselves. A
+ * single daemon thread runs the actions of unreachable owners.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ResourceCleaner
+{
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    /*
+     * Registrations must stay strongly reachable until they are cleaned or cancelled, or the collector would discard
+     * them along with their owners.
+     */
+    private static final Set<Cleanable> REGISTRATIONS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    static
+    {
+        final Thread thread = new Thread(ResourceCleaner::clean, "RawSocket Resource Cleaner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Constructor.
+     */
+    private ResourceCleaner()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Registers an action to run once the owner becomes phantom reachable.
+     *
+     * @param owner The object that owns the resource
+     * @param action The action that releases the resource, which must not refer to the owner
+     *
+     * @return the registration, for cancelling or running the action early.
+     */
+    static Cleanable register(final Object owner, final Runnable action)
+    {
+        if(owner == null)
+        {
+            throw new IllegalArgumentException("Parameter owner cannot be null!");
+        }
+        if(action == null)
+        {
+            throw new IllegalArgumentException("Parameter action cannot be null!");
+        }
+
+        final Cleanable cleanable = new Cleanable(owner, action);
+        ResourceCleaner.REGISTRATIONS.add(cleanable);
+        return cleanable;
+    }
+
+    private static void clean()
+    {
+        while(true)
+        {
+            try
+            {
+                ((Cleanable) ResourceCleaner.QUEUE.remove()).clean();
+            }
+            catch(final InterruptedException ignore)
+            {
+                // the cleaner thread runs for the life of the JVM
+            }
+            catch(final RuntimeException ignore)
+            {
+                // an action that fails must not stop the actions after it
+            }
+        }
+    }
+
+    /**
+     * A registered cleanup action, which runs at most once.
+     */
+    static final class Cleanable extends PhantomReference<Object>
+    {
+        private final Runnable action;
+
+        private final AtomicBoolean pending = new AtomicBoolean(true);
+
+        private Cleanable(final Object owner, final Runnable action)
+        {
+            super(owner, ResourceCleaner.QUEUE);
+            this.action = action;
+        }
+
+        /**
+         * Runs the action now, unless it has already run or been cancelled.
+         */
+        void clean()
+        {
+            if(this.cancel())
+            {
+                this.action.run();
+            }
+        }
+
+        /**
+         * Cancels the registration without running the action, unless it has already run or been cancelled.
+         *
+         * @return whether the registration was still pending, in which case the owner must release the resource.
+         */
+        boolean cancel()
+        {
+            if(this.pending.compareAndSet(true, false))
+            {
+                ResourceCleaner.REGISTRATIONS.remove(this);
+                this.clear();
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
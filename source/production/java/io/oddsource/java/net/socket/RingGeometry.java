@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+/**
+ * The geometry of a memory-mapped packet ring shared with the kernel: a number of equally sized blocks, each divided
+ * into equally sized frames. The block size must be a multiple of the system page size (the kernel rejects the ring
+ * otherwise) and of the frame size, and the frame size must be a multiple of {@link #FRAME_ALIGNMENT}.<br>
+ * <br>
+ * Receive rings pack variable-length packets into each block and hand a block to the application when it is full or
+ * when the retire timeout elapses, whichever is first. Transmit rings hold one packet per frame and ignore the retire
+ * timeout.
+ *
+ * @see RawSocket#mapReceiveRing(RingGeometry)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RingGeometry
+{
+    /**
+     * The alignment the kernel requires of frame sizes.
+     */
+    public static final int FRAME_ALIGNMENT = 16;
+
+    private final int blockSize;
+
+    private final int frameSize;
+
+    private final int blockCount;
+
+    private final int retireTimeout;
+
+    /**
+     * Constructor.
+     *
+     * @param blockSize The size of each block, in bytes
+     * @param frameSize The size of each frame, in bytes
+     * @param blockCount The number of blocks in the ring
+     * @param retireTimeout The number of milliseconds after which the kernel hands a partially filled receive block to
+     *     the application, or zero to let the kernel choose based on the link speed
+     */
+    public RingGeometry(final int blockSize, final int frameSize, final int blockCount, final int retireTimeout)
+    {
+        if(frameSize < RingGeometry.FRAME_ALIGNMENT || frameSize % RingGeometry.FRAME_ALIGNMENT != 0)
+        {
+            throw new IllegalArgumentException(
+                "Parameter frameSize must be a positive multiple of " + RingGeometry.FRAME_ALIGNMENT + "."
+            );
+        }
+        if(blockSize < frameSize || blockSize % frameSize != 0)
+        {
+            throw new IllegalArgumentException("Parameter blockSize must be a positive multiple of frameSize.");
+        }
+        if(blockCount < 1 || blockCount > Integer.MAX_VALUE / blockSize)
+        {
+            throw new IllegalArgumentException("Parameter blockCount must be positive and fit in a single buffer.");
+        }
+        if(retireTimeout < 0)
+        {
+            throw new IllegalArgumentException("Parameter retireTimeout cannot be negative.");
+        }
+
+        this.blockSize = blockSize;
+        this.frameSize = frameSize;
+        this.blockCount = blockCount;
+        this.retireTimeout = retireTimeout;
+    }
+
+    /**
+     * Gets the size of each block.
+     *
+     * @return the block size, in bytes.
+     */
+    public int getBlockSize()
+    {
+        return this.blockSize;
+    }
+
+    /**
+     * Gets the size of each frame.
+     *
+     * @return the frame size, in bytes.
+     */
+    public int getFrameSize()
+    {
+        return this.frameSize;
+    }
+
+    /**
+     * Gets the number of blocks in the ring.
+     *
+     * @return the block count.
+     */
+    public int getBlockCount()
+    {
+        return this.blockCount;
+    }
+
+    /**
+     * Gets the number of frames in the ring.
+     *
+     * @return the frame count.
+     */
+    public int getFrameCount()
+    {
+        return this.blockSize / this.frameSize * this.blockCount;
+    }
+
+    /**
+     * Gets the timeout after which the kernel hands a partially filled receive block to the application.
+     *
+     * @return the retire timeout in milliseconds, or zero if the kernel chooses it.
+     */
+    public int getRetireTimeout()
+    {
+        return this.retireTimeout;
+    }
+
+    /**
+     * Gets the total size of the ring.
+     *
+     * @return the size of the memory mapping, in bytes.
+     */
+    public int getSize()
+    {
+        return this.blockSize * this.blockCount;
+    }
+}
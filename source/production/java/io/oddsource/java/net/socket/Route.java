@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.util.Objects;
+
+/**
+ * This POJO represents an entry of the kernel routing table, as mirrored by {@link RoutingTableMirror}.
+ *
+ * @see RoutingTableMirror
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Route
+{
+    private final InetAddress destination;
+
+    private final int prefixLength;
+
+    private final InetAddress gateway;
+
+    private final InetAddress preferredSource;
+
+    private final int interfaceIndex;
+
+    private final int table;
+
+    private final Type type;
+
+    private final int priority;
+
+    private final int typeOfService;
+
+    /**
+     * Constructor.
+     *
+     * @param destination The destination network
+     * @param prefixLength The length of the destination network prefix in bits
+     * @param gateway The gateway, or {@code null} if the destination is directly reachable
+     * @param preferredSource The source address to send from, or {@code null} if the route does not specify one
+     * @param interfaceIndex The index of the outgoing interface, or zero if the route does not specify one
+     * @param table The routing table the route belongs to
+     * @param type The route type
+     * @param priority The route priority (metric), lowest preferred
+     * @param typeOfService The type of service the route applies to, or zero for all
+     */
+    public Route(
+        final InetAddress destination, final int prefixLength, final InetAddress gateway,
+        final InetAddress preferredSource, final int interfaceIndex, final int table, final Type type,
+        final int priority, final int typeOfService
+    )
+    {
+        if(destination == null)
+        {
+            throw new IllegalArgumentException("Parameter destination cannot be null!");
+        }
+        if(type == null)
+        {
+            throw new IllegalArgumentException("Parameter type cannot be null!");
+        }
+
+        this.destination = destination;
+        this.prefixLength = prefixLength;
+        this.gateway = gateway;
+        this.preferredSource = preferredSource;
+        this.interfaceIndex = interfaceIndex;
+        this.table = table;
+        this.type = type;
+        this.priority = priority;
+        this.typeOfService = typeOfService;
+    }
+
+    /**
+     * Get the destination network.
+     *
+     * @return the destination network.
+     */
+    public InetAddress getDestination()
+    {
+        return this.destination;
+    }
+
+    /**
+     * Get the length of the destination network prefix in bits.
+     *
+     * @return the prefix length.
+     */
+    public int getPrefixLength()
+    {
+        return this.prefixLength;
+    }
+
+    /**
+     * Get the gateway.
+     *
+     * @return the gateway, or {@code null} if the destination is directly reachable.
+     */
+    public InetAddress getGateway()
+    {
+        return this.gateway;
+    }
+
+    /**
+     * Get the source address the route prefers.
+     *
+     * @return the preferred source, or {@code null} if the route does not specify one.
+     */
+    public InetAddress getPreferredSource()
+    {
+        return this.preferredSource;
+    }
+
+    /**
+     * Get the index of the outgoing interface.
+     *
+     * @return the interface index, or zero if the route does not specify one.
+     */
+    public int getInterfaceIndex()
+    {
+        return this.interfaceIndex;
+    }
+
+    /**
+     * Get the routing table the route belongs to.
+     *
+     * @return the table.
+     */
+    public int getTable()
+    {
+        return this.table;
+    }
+
+    /**
+     * Get the route type.
+     *
+     * @return the type.
+     */
+    public Type getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Get the route priority (metric), lowest preferred.
+     *
+     * @return the priority.
+     */
+    public int getPriority()
+    {
+        return this.priority;
+    }
+
+    /**
+     * Get the type of service the route applies to.
+     *
+     * @return the type of service, or zero for all.
+     */
+    public int getTypeOfService()
+    {
+        return this.typeOfService;
+    }
+
+    /**
+     * Indicates whether this route and another have the same destination and would both be kept by the kernel, in
+     * which case a new route replaces the old one.
+     *
+     * @param other The other route
+     *
+     * @return whether the routes are the same entry.
+     */
+    boolean isSameEntry(final Route other)
+    {
+        return this.typeOfService == other.typeOfService && this.priority == other.priority &&
+               this.interfaceIndex == other.interfaceIndex && Objects.equals(this.gateway, other.gateway);
+    }
+
+    /**
+     * Get a string representation of the route.
+     *
+     * @return a string.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder string = new StringBuilder("{ destination: ");
+        string.append(this.destination.getHostAddress()).append('/').append(this.prefixLength).
+            append(", type: ").append(this.type);
+        if(this.gateway != null)
+        {
+            string.append(", gateway: ").append(this.gateway.getHostAddress());
+        }
+        if(this.preferredSource != null)
+        {
+            string.append(", preferredSource: ").append(this.preferredSource.getHostAddress());
+        }
+        string.append(", interfaceIndex: ").append(this.interfaceIndex).
+            append(", table: ").append(this.table).
+            append(", priority: ").append(this.priority).append(" }");
+
+        return string.toString();
+    }
+
+    /**
+     * The route types (see linux/rtnetlink.h).
+     */
+    public enum Type
+    {
+        /**
+         * A route of unknown type.
+         */
+        UNSPECIFIED(0),
+
+        /**
+         * A gateway or direct route.
+         */
+        UNICAST(1),
+
+        /**
+         * A route to a local address.
+         */
+        LOCAL(2),
+
+        /**
+         * A route to a local broadcast address.
+         */
+        BROADCAST(3),
+
+        /**
+         * A route to a local address that is sent as unicast.
+         */
+        ANYCAST(4),
+
+        /**
+         * A multicast route.
+         */
+        MULTICAST(5),
+
+        /**
+         * A route that silently drops packets.
+         */
+        BLACKHOLE(6),
+
+        /**
+         * A route that rejects packets as unreachable.
+         */
+        UNREACHABLE(7),
+
+        /**
+         * A route that rejects packets as administratively prohibited.
+         */
+        PROHIBIT(8),
+
+        /**
+         * A route that continues the lookup in another table.
+         */
+        THROW(9),
+
+        /**
+         * A network address translation route.
+         */
+        NAT(10);
+
+        private final int osConstant;
+
+        Type(final int osConstant)
+        {
+            this.osConstant = osConstant;
+        }
+
+        /**
+         * Get the OS constant for this type.
+         *
+         * @return the OS constant.
+         */
+        public int getOsConstant()
+        {
+            return this.osConstant;
+        }
+
+        /**
+         * Get the type with the OS constant.
+         *
+         * @param osConstant The OS constant
+         *
+         * @return the type, or {@link #UNSPECIFIED} if the constant is not a known type.
+         */
+        public static Type valueOf(final int osConstant)
+        {
+            for(final Type type : Type.values())
+            {
+                if(type.osConstant == osConstant)
+                {
+                    return type;
+                }
+            }
+
+            return Type.UNSPECIFIED;
+        }
+    }
+}
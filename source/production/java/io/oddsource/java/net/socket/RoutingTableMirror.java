@@ -0,0 +1,647 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory mirror of the kernel's routing and neighbor tables (Linux only), so that choosing the source address,
+ * next hop and interface for a raw send is a lookup in memory instead of a system call. The mirror is loaded with a
+ * netlink dump and kept current by a daemon thread that applies the kernel's route and neighbor notifications
+ * ({@code RTNLGRP_IPV4_ROUTE}, {@code RTNLGRP_IPV6_ROUTE} and {@code RTNLGRP_NEIGH}). If the kernel drops
+ * notifications because the thread fell behind, the thread loads the tables again.<br>
+ * <br>
+ * Routes are held in immutable {@link PrefixTrie}s that the thread replaces on every change, so lookups take no lock
+ * and never see a half-applied change. Like the kernel's default rules, lookups try the local table and then the main
+ * table; other tables and policy routing rules are not mirrored.
+ * <pre>
+ * try(final RoutingTableMirror routes = new RoutingTableMirror())
+ * {
+ *     final Route route = routes.getRoute(destination);
+ *     final InetAddress source = routes.getSourceAddress(destination);
+ *     final Neighbor neighbor = routes.getNextHopNeighbor(destination);
+ *     // ...
+ * }
+ * </pre>
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RoutingTableMirror implements Closeable
+{
+    /**
+     * The receive timeout, in milliseconds, of the notification thread, so that it notices the mirror closing.
+     */
+    public static final int POLL_INTERVAL = 100;
+
+    /**
+     * The kernel's main routing table ({@code RT_TABLE_MAIN}).
+     */
+    public static final int TABLE_MAIN = 254;
+
+    /**
+     * The kernel's local routing table ({@code RT_TABLE_LOCAL}), which holds the routes to local and broadcast
+     * addresses.
+     */
+    public static final int TABLE_LOCAL = 255;
+
+    /*
+     * Dumps can be as large as a page per message, and notifications arrive in bursts when interfaces change.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 65536;
+
+    private static final int IPV6_SIZE = 16;
+
+    private static final Comparator<Route> PREFERENCE = Comparator.comparingInt(Route::getPriority);
+
+    private final int socket;
+
+    private final Updater updater = new Updater();
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RoutingTableMirror.RECEIVE_BUFFER_SIZE).
+        order(ByteOrder.nativeOrder());
+
+    private final Object lock = new Object();
+
+    private final Thread thread;
+
+    private volatile Tables tables;
+
+    private volatile boolean closed;
+
+    private volatile IOException failure;
+
+    private int sequence;
+
+    /**
+     * Constructor. Subscribes to route and neighbor notifications, loads the tables, and starts the thread that keeps
+     * them current.
+     *
+     * @throws IOException if the netlink socket cannot be opened or the tables cannot be loaded.
+     * @throws UnsupportedOperationException if netlink is not supported on this platform.
+     */
+    public RoutingTableMirror() throws IOException
+    {
+        this.socket = SocketUtilities.openRouteMonitor(RoutingTableMirror.POLL_INTERVAL);
+        try
+        {
+            this.tables = this.load();
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            try
+            {
+                SocketUtilities.closeRouteMonitor(this.socket);
+            }
+            catch(final IOException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+
+        this.thread = new Thread(this::run, "RoutingTableMirror Updater");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Looks up the route the kernel would use to reach the destination: the longest matching prefix in the local
+     * table, or otherwise in the main table, preferring the lowest priority among routes with the same prefix.
+     *
+     * @param destination The destination address
+     *
+     * @return the route, or {@code null} if there is none.
+     */
+    public Route getRoute(final InetAddress destination)
+    {
+        if(destination == null)
+        {
+            throw new IllegalArgumentException("Parameter destination cannot be null!");
+        }
+
+        final byte[] address = destination.getAddress();
+        final Tables current = this.tables;
+
+        Route[] routes = current.getTable(address.length, true).longestMatch(address);
+        if(routes == null)
+        {
+            routes = current.getTable(address.length, false).longestMatch(address);
+        }
+
+        return routes == null ? null : routes[0];
+    }
+
+    /**
+     * Get the address to send from to reach the destination: the preferred source of its route, or else the destination
+     * itself if it is local, or else the preferred source of the route to its gateway. Routes without a preferred
+     * source, which includes most IPv6 routes, fall back to
+     * {@link SocketUtilities#getSourceAddressForDestination(InetAddress)}, which is cached but costs a system call on a
+     * miss.
+     *
+     * @param destination The destination address
+     *
+     * @return the source address.
+     *
+     * @throws SocketException if there is no route to the destination.
+     */
+    public InetAddress getSourceAddress(final InetAddress destination) throws SocketException
+    {
+        final Route route = this.getRoute(destination);
+        if(route != null)
+        {
+            if(route.getPreferredSource() != null)
+            {
+                return route.getPreferredSource();
+            }
+            if(route.getType() == Route.Type.LOCAL)
+            {
+                return destination;
+            }
+            if(route.getGateway() != null)
+            {
+                final Route gatewayRoute = this.getRoute(route.getGateway());
+                if(gatewayRoute != null && gatewayRoute.getPreferredSource() != null)
+                {
+                    return gatewayRoute.getPreferredSource();
+                }
+            }
+        }
+
+        return SocketUtilities.getSourceAddressForDestination(destination);
+    }
+
+    /**
+     * Get the next hop towards the destination: its route's gateway, or the destination itself if it is directly
+     * reachable.
+     *
+     * @param destination The destination address
+     *
+     * @return the next hop, or {@code null} if there is no route to the destination.
+     */
+    public InetAddress getNextHop(final InetAddress destination)
+    {
+        final Route route = this.getRoute(destination);
+        if(route == null)
+        {
+            return null;
+        }
+
+        return route.getGateway() == null ? destination : route.getGateway();
+    }
+
+    /**
+     * Get the neighbor entry of the next hop towards the destination, which holds the link-layer address to send to.
+     *
+     * @param destination The destination address
+     *
+     * @return the neighbor, or {@code null} if there is no route to the destination or the kernel has not resolved
+     *     the next hop.
+     */
+    public Neighbor getNextHopNeighbor(final InetAddress destination)
+    {
+        final Route route = this.getRoute(destination);
+        if(route == null)
+        {
+            return null;
+        }
+
+        final InetAddress nextHop = route.getGateway() == null ? destination : route.getGateway();
+        return this.getNeighbor(nextHop, route.getInterfaceIndex());
+    }
+
+    /**
+     * Get the neighbor entry of the address on the interface.
+     *
+     * @param address The neighbor's network address
+     * @param interfaceIndex The index of the interface the neighbor is on
+     *
+     * @return the neighbor, or {@code null} if the kernel has no entry for it.
+     */
+    public Neighbor getNeighbor(final InetAddress address, final int interfaceIndex)
+    {
+        if(address == null)
+        {
+            throw new IllegalArgumentException("Parameter address cannot be null!");
+        }
+
+        return this.tables.neighbors.get(new NeighborKey(address, interfaceIndex));
+    }
+
+    /**
+     * Get the number of routes mirrored from the local and main tables.
+     *
+     * @return the route count.
+     */
+    public int getRouteCount()
+    {
+        final Tables current = this.tables;
+        return RoutingTableMirror.count(current.local4) + RoutingTableMirror.count(current.main4) +
+               RoutingTableMirror.count(current.local6) + RoutingTableMirror.count(current.main6);
+    }
+
+    /**
+     * Indicates whether this mirror is open and being kept current. This is {@code false} once the mirror is closed,
+     * and also once the notification thread has failed (see {@link #getFailure()}), after which lookups answer from
+     * tables that are no longer updated.
+     *
+     * @return whether the mirror is open and current.
+     */
+    public boolean isOpen()
+    {
+        return !this.closed && this.failure == null;
+    }
+
+    /**
+     * Gets the error that stopped the notification thread, if it has failed.
+     *
+     * @return the failure, or {@code null} if the thread has not failed.
+     */
+    public IOException getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * Stops the notification thread, waiting up to one {@link #POLL_INTERVAL} for it, and closes the netlink socket.
+     * Lookups keep working against the tables as they were when the mirror closed.
+     *
+     * @throws IOException if the thread failed or the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized(this.lock)
+        {
+            if(this.closed)
+            {
+                return;
+            }
+            this.closed = true;
+        }
+
+        boolean interrupted = false;
+        while(this.thread != Thread.currentThread() && this.thread.isAlive())
+        {
+            try
+            {
+                this.thread.join();
+            }
+            catch(final InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        SocketUtilities.closeRouteMonitor(this.socket);
+
+        final IOException failed = this.failure;
+        if(failed != null)
+        {
+            throw new IOException("The routing table mirror stopped updating.", failed);
+        }
+    }
+
+    private void run()
+    {
+        try
+        {
+            while(!this.closed)
+            {
+                final int length = this.receive();
+                if(length < 0)
+                {
+                    // the kernel dropped notifications, so only a fresh dump can be trusted
+                    this.tables = this.load();
+                }
+                else if(length > 0)
+                {
+                    this.updater.working = this.tables;
+                    NetlinkParser.parse(this.buffer, this.updater);
+                    this.tables = this.updater.working;
+                }
+            }
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            this.failed(e);
+        }
+    }
+
+    /**
+     * Records the error that stopped the notification thread.
+     *
+     * @param cause The error
+     */
+    void failed(final Exception cause)
+    {
+        this.failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    /**
+     * Builds new tables from a dump of the routes and then the neighbors. Notifications that arrive during the dump
+     * are applied in order along with it.
+     */
+    private Tables load() throws IOException
+    {
+        this.updater.working = new Tables(
+            PrefixTrie.empty(), PrefixTrie.empty(), PrefixTrie.empty(), PrefixTrie.empty(), new ConcurrentHashMap<>()
+        );
+
+        this.dump(false);
+        this.dump(true);
+
+        return this.updater.working;
+    }
+
+    private void dump(final boolean neighbors) throws IOException
+    {
+        final int request = ++this.sequence;
+        this.updater.pending = request;
+        this.updater.error = 0;
+        SocketUtilities.requestRouteDump(this.socket, neighbors, request);
+
+        while(this.updater.pending == request)
+        {
+            if(this.closed)
+            {
+                throw new IOException("The routing table mirror was closed while loading.");
+            }
+
+            final int length = this.receive();
+            if(length < 0)
+            {
+                throw new IOException("The kernel dropped routing messages while the tables were loading.");
+            }
+            NetlinkParser.parse(this.buffer, this.updater);
+        }
+
+        if(this.updater.error != 0)
+        {
+            throw new IOException("The kernel refused to list the " + (neighbors ? "neighbors" : "routes") +
+                                  " (errno " + this.updater.error + ").");
+        }
+    }
+
+    /**
+     * Receives the next batch of messages into the buffer.
+     *
+     * @return the number of bytes received, zero if the poll interval elapsed, or -1 if the kernel dropped messages.
+     */
+    private int receive() throws IOException
+    {
+        this.buffer.clear();
+        final int length = SocketUtilities.receiveRouteMonitor(this.socket, this.buffer);
+        this.buffer.limit(Math.max(length, 0));
+        return length;
+    }
+
+    private static int count(final PrefixTrie<Route[]> table)
+    {
+        final int[] count = new int[1];
+        table.forEach(routes -> count[0] += routes.length);
+        return count[0];
+    }
+
+    /**
+     * A consistent view of the mirrored tables. The tries are replaced rather than changed; the neighbor map is changed
+     * in place, except while the tables are reloaded, when a new map is built and published with the new tries.
+     */
+    private static final class Tables
+    {
+        private final PrefixTrie<Route[]> local4;
+
+        private final PrefixTrie<Route[]> main4;
+
+        private final PrefixTrie<Route[]> local6;
+
+        private final PrefixTrie<Route[]> main6;
+
+        private final ConcurrentHashMap<NeighborKey, Neighbor> neighbors;
+
+        private Tables(
+            final PrefixTrie<Route[]> local4, final PrefixTrie<Route[]> main4, final PrefixTrie<Route[]> local6,
+            final PrefixTrie<Route[]> main6, final ConcurrentHashMap<NeighborKey, Neighbor> neighbors
+        )
+        {
+            this.local4 = local4;
+            this.main4 = main4;
+            this.local6 = local6;
+            this.main6 = main6;
+            this.neighbors = neighbors;
+        }
+
+        private PrefixTrie<Route[]> getTable(final int addressSize, final boolean local)
+        {
+            if(addressSize == RoutingTableMirror.IPV6_SIZE)
+            {
+                return local ? this.local6 : this.main6;
+            }
+            return local ? this.local4 : this.main4;
+        }
+
+        private Tables withTable(final int addressSize, final boolean local, final PrefixTrie<Route[]> table)
+        {
+            if(addressSize == RoutingTableMirror.IPV6_SIZE)
+            {
+                return local ?
+                       new Tables(this.local4, this.main4, table, this.main6, this.neighbors) :
+                       new Tables(this.local4, this.main4, this.local6, table, this.neighbors);
+            }
+            return local ?
+                   new Tables(table, this.main4, this.local6, this.main6, this.neighbors) :
+                   new Tables(this.local4, table, this.local6, this.main6, this.neighbors);
+        }
+    }
+
+    /**
+     * Applies decoded messages to the working tables. Only the thread that owns the socket uses it: the constructor,
+     * and then the notification thread.
+     */
+    private final class Updater implements NetlinkParser.Handler
+    {
+        private Tables working;
+
+        private int pending;
+
+        private int error;
+
+        @Override
+        public void route(final boolean added, final boolean replace, final Route route)
+        {
+            final boolean local = route.getTable() == RoutingTableMirror.TABLE_LOCAL;
+            if(!local && route.getTable() != RoutingTableMirror.TABLE_MAIN)
+            {
+                return;
+            }
+
+            final byte[] prefix = route.getDestination().getAddress();
+            final int length = route.getPrefixLength();
+            final PrefixTrie<Route[]> table = this.working.getTable(prefix.length, local);
+
+            final Route[] existing = table.get(prefix, length);
+            final Route[] updated = added ?
+                                    RoutingTableMirror.add(existing, route, replace) :
+                                    RoutingTableMirror.remove(existing, route);
+            if(updated == existing)
+            {
+                return;
+            }
+
+            final PrefixTrie<Route[]> changed = updated == null ?
+                                                table.remove(prefix, length) :
+                                                table.put(prefix, length, updated);
+            this.working = this.working.withTable(prefix.length, local, changed);
+        }
+
+        @Override
+        public void neighbor(final boolean added, final Neighbor neighbor)
+        {
+            final NeighborKey key = new NeighborKey(neighbor.getAddress(), neighbor.getInterfaceIndex());
+            if(added)
+            {
+                this.working.neighbors.put(key, neighbor);
+            }
+            else
+            {
+                this.working.neighbors.remove(key);
+            }
+        }
+
+        @Override
+        public void done(final int sequence)
+        {
+            if(sequence == this.pending)
+            {
+                this.pending = 0;
+            }
+        }
+
+        @Override
+        public void error(final int sequence, final int error)
+        {
+            if(sequence == this.pending)
+            {
+                this.error = error;
+                this.pending = 0;
+            }
+        }
+    }
+
+    /**
+     * Get the routes for a prefix with a route added, replacing the route it is the same entry as, or the route with
+     * the same type of service and priority if the kernel said it replaces one.
+     */
+    private static Route[] add(final Route[] existing, final Route route, final boolean replace)
+    {
+        if(existing == null)
+        {
+            return new Route[] {route};
+        }
+
+        for(int i = 0; i < existing.length; i++)
+        {
+            final Route old = existing[i];
+            if(old.isSameEntry(route) || replace && old.getTypeOfService() == route.getTypeOfService() &&
+                                         old.getPriority() == route.getPriority())
+            {
+                final Route[] updated = existing.clone();
+                updated[i] = route;
+                Arrays.sort(updated, RoutingTableMirror.PREFERENCE);
+                return updated;
+            }
+        }
+
+        final Route[] updated = Arrays.copyOf(existing, existing.length + 1);
+        updated[existing.length] = route;
+        Arrays.sort(updated, RoutingTableMirror.PREFERENCE);
+        return updated;
+    }
+
+    /**
+     * Get the routes for a prefix with a route removed, {@code null} if none are left, or the same routes if it was not
+     * there.
+     */
+    private static Route[] remove(final Route[] existing, final Route route)
+    {
+        if(existing == null)
+        {
+            return null;
+        }
+
+        for(int i = 0; i < existing.length; i++)
+        {
+            if(existing[i].isSameEntry(route))
+            {
+                if(existing.length == 1)
+                {
+                    return null;
+                }
+
+                final Route[] updated = new Route[existing.length - 1];
+                System.arraycopy(existing, 0, updated, 0, i);
+                System.arraycopy(existing, i + 1, updated, i, existing.length - i - 1);
+                return updated;
+            }
+        }
+
+        return existing;
+    }
+
+    private static final class NeighborKey
+    {
+        private final InetAddress address;
+
+        private final int interfaceIndex;
+
+        private NeighborKey(final InetAddress address, final int interfaceIndex)
+        {
+            this.address = address;
+            this.interfaceIndex = interfaceIndex;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if(!(other instanceof NeighborKey))
+            {
+                return false;
+            }
+
+            final NeighborKey key = (NeighborKey) other;
+            return this.interfaceIndex == key.interfaceIndex && this.address.equals(key.address);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.address.hashCode() * 31 + this.interfaceIndex;
+        }
+    }
+}
@@ -15,8 +15,11 @@
  */
 package io.oddsource.java.net.socket;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 
 /**
  * A collection of network utilities that don't belong to any particular object definition.
@@ -28,6 +31,13 @@ import java.net.UnknownHostException;
  */
 public final class SocketUtilities extends DynamicNativeObject
 {
+    private static final SourceAddressCache SOURCE_ADDRESSES = new SourceAddressCache(
+        SourceAddressCache.DEFAULT_CAPACITY,
+        SourceAddressCache.DEFAULT_TIME_TO_LIVE,
+        SocketUtilities::lookUpSourceAddress,
+        System::nanoTime
+    );
+
     /**
      * This class is not meant to be instantiated.
      */
@@ -37,51 +47,185 @@ public final class SocketUtilities extends DynamicNativeObject
     }
 
     /**
-     * Looks up the protocol by its name, and returns null if it's not found.
+     * Looks up the protocol by its name or one of its aliases, and returns null if it's not found. The first lookup
+     * loads the protocol database, and later lookups use that copy until {@link #refreshProtocolList()}.
      *
      * @param name The name of the protocol to lookup
      *
      * @return the protocol named by {@code name}, or null if it wasn't found.
      */
-    public static native Protocol getProtocolByName(String name);
+    public static Protocol getProtocolByName(final String name)
+    {
+        if(name == null)
+        {
+            throw new IllegalArgumentException("Parameter name cannot be null!");
+        }
+
+        return ProtocolRegistry.getInstance().getByName(name);
+    }
 
     /**
-     * Looks up the protocol by its number, and returns null if it's not found.
+     * Looks up the protocol by its number, and returns null if it's not found. The first lookup loads the protocol
+     * database, and later lookups use that copy until {@link #refreshProtocolList()}.
      *
      * @param number The number of the protocol to lookup
      *
      * @return the protocol numbered {@code number}, or null if it wasn't found.
      */
-    public static native Protocol getProtocolByNumber(int number);
+    public static Protocol getProtocolByNumber(final int number)
+    {
+        return ProtocolRegistry.getInstance().getByNumber(number);
+    }
 
     /**
-     * Compiles a list of all protocols supported by the system; returns an empty array if no protocols are found.
+     * Compiles a list of all protocols supported by the system; returns an empty array if no protocols are found. The
+     * first call loads the protocol database, and later calls use that copy until {@link #refreshProtocolList()}.
      *
      * @return a list of all protocols supported by the system or an empty array if none were found.
      */
-    public static native Protocol[] getProtocolList();
+    public static Protocol[] getProtocolList()
+    {
+        return ProtocolRegistry.getInstance().getProtocols();
+    }
+
+    /**
+     * Reloads the protocol database from the operating system, for when it has changed since it was first loaded.
+     */
+    public static void refreshProtocolList()
+    {
+        ProtocolRegistry.refresh();
+    }
 
     /**
-     * Get the source address for the destination.
+     * Reads every entry of the operating system's protocol database, in order.
+     *
+     * @return all protocols in the database, or an empty array if there are none.
+     */
+    static native Protocol[] loadProtocolList();
+
+    /**
+     * The same as {@link #loadProtocolList()}, but looking up the classes and constructor it needs for every entry
+     * instead of using those resolved when the library loaded. This is what the native code did before it cached
+     * them, and exists only as the baseline that {@code NativeCallBenchmark} measures the cache against.
+     *
+     * @return all protocols in the database, or an empty array if there are none.
+     */
+    static native Protocol[] loadProtocolListUncached();
+
+    /**
+     * Raises the exception the native code raises when a system call fails with the given error number. When not
+     * cached, the exception class is looked up on every call instead of using the one resolved when the library
+     * loaded, as the baseline that {@code NativeCallBenchmark} measures the cache against.
+     *
+     * @param error The error number
+     * @param cached Whether to use the exception class resolved when the library loaded
+     *
+     * @throws IOException always, describing the error.
+     */
+    static native void raiseSocketError(int error, boolean cached) throws IOException;
+
+    /**
+     * Get the address the operating system would send from to reach the destination, which header-included packets
+     * must carry as their source address. Results are cached for {@code SourceAddressCache.DEFAULT_TIME_TO_LIVE} per
+     * destination, so calling this for every packet costs a route lookup only when the destination is new or its entry
+     * has expired.
      *
      * @param destination The destination address
      *
      * @return the source address.
      *
-     * @throws UnknownHostException If the destination host cannot be resolved
+     * @throws SocketException If there is no route to the destination
      */
-    public static InetAddress getSourceAddressForDestination(final InetAddress destination) throws UnknownHostException
+    public static InetAddress getSourceAddressForDestination(final InetAddress destination) throws SocketException
     {
-        throw new UnsupportedOperationException("Not implemented yet.");
-        /*int family = (destination instanceof Inet6Address) ?
-                     IpVersion.IPv6.getAddressFormatFamily() : IpVersion.IPv4.getAddressFormatFamily();
-
-        return InetAddress.getByAddress(
-                SocketUtilities.getSourceAddressForDestination(
-                        destination.getAddress(),
-                        family
-                )
-        );*/
+        return SocketUtilities.SOURCE_ADDRESSES.get(destination);
     }
-    //public static native byte[] getSourceAddressForDestination(byte[] destination, int addressFormatFamily);
+
+    /**
+     * Discards every cached source address, for when the routing table is known to have changed.
+     */
+    public static void clearSourceAddressCache()
+    {
+        SocketUtilities.SOURCE_ADDRESSES.clear();
+    }
+
+    /**
+     * Looks up the source address for the destination in the routing table, without caching.
+     *
+     * @param destination The destination address
+     *
+     * @return the source address.
+     *
+     * @throws SocketException If there is no route to the destination
+     */
+    static InetAddress lookUpSourceAddress(final InetAddress destination) throws SocketException
+    {
+        final byte[] source = SocketUtilities.getSourceAddressForDestination(
+            destination.getAddress(), SourceAddressCache.getScopeId(destination)
+        );
+
+        try
+        {
+            return InetAddress.getByAddress(source);
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new AssertionError("The native code returned an address of the wrong length.", e);
+        }
+    }
+
+    /**
+     * Looks up the source address for the destination by connecting a UDP socket, which chooses a route without
+     * sending anything. See SocketUtilities.cpp.
+     *
+     * @param destination The destination address, 4 or 16 bytes
+     * @param scopeId The IPv6 scope ID, for link-local destinations, or zero
+     *
+     * @return the source address, the same length as the destination.
+     */
+    private static native byte[] getSourceAddressForDestination(byte[] destination, int scopeId);
+
+    /**
+     * Opens a netlink route socket subscribed to route and neighbor notifications, for {@link RoutingTableMirror}.
+     *
+     * @param receiveTimeout The receive timeout in milliseconds
+     *
+     * @return the socket identifier / file descriptor.
+     *
+     * @throws IOException if the socket cannot be opened or subscribed.
+     */
+    static native int openRouteMonitor(int receiveTimeout) throws IOException;
+
+    /**
+     * Asks the kernel to list every route, or every neighbor, of every address family on the netlink socket.
+     *
+     * @param socket The netlink socket
+     * @param neighbors Whether to list the neighbors instead of the routes
+     * @param sequence The sequence number that the kernel's replies will carry
+     *
+     * @throws IOException if the request cannot be sent.
+     */
+    static native void requestRouteDump(int socket, boolean neighbors, int sequence) throws IOException;
+
+    /**
+     * Receives the next batch of netlink messages into the direct buffer, from its start.
+     *
+     * @param socket The netlink socket
+     * @param buffer The direct buffer
+     *
+     * @return the number of bytes received, zero if the receive timed out, or -1 if the kernel dropped messages
+     *     because the socket's receive buffer was full.
+     *
+     * @throws IOException if the messages cannot be received.
+     */
+    static native int receiveRouteMonitor(int socket, ByteBuffer buffer) throws IOException;
+
+    /**
+     * Closes the netlink socket.
+     *
+     * @param socket The netlink socket
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    static native void closeRouteMonitor(int socket) throws IOException;
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A concurrent cache of the source addresses the kernel picks for destinations, so that building a packet does not
+ * cost a route lookup. Entries expire after a fixed time to live, so that route changes are picked up, and once the
+ * cache is full, inserting evicts every expired entry and, if that frees less than a tenth of the cache, the least
+ * recently used entries up to that tenth. Evicting in batches means only one insert in a tenth of the capacity scans
+ * the cache. Hits take no lock and touch only their own entry. Failed lookups are not cached.
+ *
+ * @see SocketUtilities#getSourceAddressForDestination(InetAddress)
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SourceAddressCache
+{
+    /**
+     * The number of destinations cached by default.
+     */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * How long, in nanoseconds, a source address is used by default before it is looked up again.
+     */
+    static final long DEFAULT_TIME_TO_LIVE = TimeUnit.SECONDS.toNanos(30);
+
+    private static final int EVICTION_FRACTION = 10;
+
+    private final int capacity;
+
+    private final long timeToLive;
+
+    private final Resolver resolver;
+
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<InetAddress, Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The number of destinations to cache
+     * @param timeToLive How long, in nanoseconds, to use a source address before looking it up again
+     * @param resolver The route lookup to cache
+     * @param clock The time in nanoseconds, such as {@link System#nanoTime()}
+     */
+    SourceAddressCache(final int capacity, final long timeToLive, final Resolver resolver, final LongSupplier clock)
+    {
+        if(capacity < 1)
+        {
+            throw new IllegalArgumentException("Parameter capacity must be positive!");
+        }
+        if(timeToLive < 1)
+        {
+            throw new IllegalArgumentException("Parameter timeToLive must be positive!");
+        }
+        if(resolver == null)
+        {
+            throw new IllegalArgumentException("Parameter resolver cannot be null!");
+        }
+        if(clock == null)
+        {
+            throw new IllegalArgumentException("Parameter clock cannot be null!");
+        }
+
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+        this.resolver = resolver;
+        this.clock = clock;
+        this.entries = new ConcurrentHashMap<>(Math.min(capacity, 64));
+    }
+
+    /**
+     * Get the source address for the destination, looking it up if it is not cached or has expired.
+     *
+     * @param destination The destination address
+     *
+     * @return the source address.
+     *
+     * @throws SocketException If there is no route to the destination
+     */
+    InetAddress get(final InetAddress destination) throws SocketException
+    {
+        if(destination == null)
+        {
+            throw new IllegalArgumentException("Parameter destination cannot be null!");
+        }
+
+        final long now = this.clock.getAsLong();
+        final int scopeId = SourceAddressCache.getScopeId(destination);
+
+        final Entry entry = this.entries.get(destination);
+        if(entry != null && entry.scopeId == scopeId && now - entry.expires < 0)
+        {
+            entry.lastUsed = now;
+            return entry.source;
+        }
+
+        final InetAddress source = this.resolver.resolve(destination);
+        this.entries.put(destination, new Entry(source, scopeId, now, now + this.timeToLive));
+        if(this.entries.size() > this.capacity)
+        {
+            this.evict(now);
+        }
+
+        return source;
+    }
+
+    /**
+     * Get the number of cached destinations, including any that have expired but not yet been evicted.
+     *
+     * @return the number of entries.
+     */
+    int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes every entry, so that every destination is looked up again.
+     */
+    void clear()
+    {
+        this.entries.clear();
+    }
+
+    private void evict(final long now)
+    {
+        final int target = this.capacity + 1 - Math.max(1, this.capacity / SourceAddressCache.EVICTION_FRACTION);
+
+        final long[] ages = new long[this.entries.size()];
+        int live = 0;
+        for(final Map.Entry<InetAddress, Entry> candidate : this.entries.entrySet())
+        {
+            final Entry entry = candidate.getValue();
+            if(now - entry.expires >= 0)
+            {
+                this.entries.remove(candidate.getKey(), entry);
+            }
+            else if(live < ages.length)
+            {
+                ages[live++] = now - entry.lastUsed;
+            }
+        }
+
+        final int excess = this.entries.size() - target;
+        if(excess <= 0 || live == 0)
+        {
+            return;
+        }
+
+        // the oldest entries are the ones at least as old as the excess-th oldest
+        Arrays.sort(ages, 0, live);
+        final long oldest = ages[Math.max(0, live - excess)];
+        int evicted = 0;
+        for(final Map.Entry<InetAddress, Entry> candidate : this.entries.entrySet())
+        {
+            if(evicted >= excess)
+            {
+                break;
+            }
+            final Entry entry = candidate.getValue();
+            if(now - entry.lastUsed >= oldest && this.entries.remove(candidate.getKey(), entry))
+            {
+                evicted++;
+            }
+        }
+    }
+
+    /**
+     * Get the scope ID of an IPv6 address, which link-local addresses need to pick an interface.
+     *
+     * @param address The address
+     *
+     * @return the scope ID, or zero for IPv4 addresses and unscoped IPv6 addresses.
+     */
+    static int getScopeId(final InetAddress address)
+    {
+        return address instanceof Inet6Address ? ((Inet6Address) address).getScopeId() : 0;
+    }
+
+    /**
+     * Looks up the source address for a destination.
+     */
+    interface Resolver
+    {
+        /**
+         * Looks up the source address for the destination.
+         *
+         * @param destination The destination address
+         *
+         * @return the source address.
+         *
+         * @throws SocketException If there is no route to the destination
+         */
+        InetAddress resolve(InetAddress destination) throws SocketException;
+    }
+
+    /**
+     * A cached source address. {@link InetAddress#equals(Object)} ignores IPv6 scopes, so the entry remembers the scope
+     * it was looked up for. The last use is written without ordering: eviction only needs an approximate order, and a
+     * fenced write on every hit would cost more than the rest of the lookup.
+     */
+    private static final class Entry
+    {
+        private final InetAddress source;
+
+        private final int scopeId;
+
+        private final long expires;
+
+        private long lastUsed;
+
+        private Entry(final InetAddress source, final int scopeId, final long now, final long expires)
+        {
+            this.source = source;
+            this.scopeId = scopeId;
+            this.expires = expires;
+            this.lastUsed = now;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.exception;
+
+/**
+ * This exception is never thrown. It reports a pooled packet that was garbage collected without being released, and
+ * its stack trace is where the packet was acquired from the pool.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@SuppressWarnings("unused")
+public class PacketLeakException extends RawSocketRuntimeException
+{
+    /**
+     * Constructor.
+     */
+    public PacketLeakException()
+    {
+        this("A pooled packet was garbage collected without being released. It was acquired here.");
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param message The message
+     */
+    public PacketLeakException(final String message)
+    {
+        super(message);
+    }
+}
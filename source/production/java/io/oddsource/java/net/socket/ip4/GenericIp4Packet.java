@@ -15,20 +15,541 @@
  */
 package io.oddsource.java.net.socket.ip4;
 
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.oddsource.java.net.socket.AbstractPacket;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PayloadSizeLimitException;
+
 /**
- * Class description here. TODO
+ * An IPv4 packet (RFC 791) of any protocol, whose payload is kept as raw bytes. The header is encoded from the fields
+ * of this packet, with its checksum, whenever the header data is requested; the source address of an outgoing packet
+ * is encoded as {@code 0.0.0.0}, which the kernel replaces with the address of the outgoing interface when the socket
+ * includes IP headers. Incoming packets are decoded from received data with {@link #decode(ByteBuffer, int, int)}.
  *
  * @author Nick Williams
  * @version 1.0.0
  * @since 1.0.0
  */
-public class GenericIp4Packet
+public class GenericIp4Packet extends AbstractPacket
 {
+    /**
+     * The maximum length of an IPv4 packet (header + payload).
+     */
+    public static final int MAX_PACKET_LENGTH = 65535;
+
+    /**
+     * The maximum length of the header options.
+     */
+    public static final int MAX_OPTIONS_LENGTH = Ipv4HeaderView.MAX_HEADER_LENGTH - Ipv4HeaderView.MIN_HEADER_LENGTH;
+
+    private static final int BYTE_MAX = 0xFF;
+
+    private static final int SHORT_MAX = 0xFFFF;
+
+    private static final int FLAGS_MAX = 0x7;
+
+    private static final int FRAGMENT_OFFSET_MAX = 0x1FFF;
+
+    private static final int WORD_SIZE = 4;
+
+    private static final byte[] ANY_ADDRESS = new byte[Ipv4HeaderView.ADDRESS_LENGTH];
+
+    private int typeOfService;
+
+    private int identification;
+
+    private int flags;
+
+    private int fragmentOffset;
+
+    private int protocol;
+
+    private byte[] options = new byte[0];
+
+    private byte[] payloadData = new byte[0];
+
     /**
      * Constructor.
+     *
+     * @param source Whether this is an incoming or outgoing packet.
+     */
+    public GenericIp4Packet(final Packet.Source source)
+    {
+        super(source);
+    }
+
+    /**
+     * Decodes a received IPv4 packet, such as one received on an IPv4 raw socket, into a new finalized incoming packet.
+     * Data after the end of the packet, according to its total length, is ignored.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     *
+     * @return the packet.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid IPv4 packet or is truncated.
+     */
+    public static GenericIp4Packet decode(final ByteBuffer buffer, final int offset, final int length)
+        throws MalformedPacketException
+    {
+        final GenericIp4Packet packet = new GenericIp4Packet(Packet.Source.INCOMING);
+        packet.decode(buffer, offset, length, false);
+        packet.finalizePacket();
+        return packet;
+    }
+
+    /**
+     * Decodes the received data into this packet, which must be an incoming packet that has not been finalized. The
+     * payload is set with {@link #setPayloadData(byte[])}, so subclasses that decode their payload can do so there.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     * @param truncated Whether the packet may be shorter than its total length, as packets quoted in ICMP error
+     *     messages are, in which case the payload is what there is of it
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid IPv4 packet or is truncated.
+     */
+    protected void decode(final ByteBuffer buffer, final int offset, final int length, final boolean truncated)
+        throws MalformedPacketException
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the buffer's limit!");
+        }
+        if(length < Ipv4HeaderView.MIN_HEADER_LENGTH)
+        {
+            throw new MalformedPacketException("The packet is shorter than an IPv4 header.");
+        }
+
+        final Ipv4HeaderView header = new Ipv4HeaderView().wrap(buffer, offset);
+        if(header.getVersion() != 4)
+        {
+            throw new MalformedPacketException("The packet is IP version " + header.getVersion() + ", not 4.");
+        }
+
+        final int headerLength = header.getHeaderLength();
+        final int packetLength = header.getPacketLength();
+        if(headerLength < Ipv4HeaderView.MIN_HEADER_LENGTH || headerLength > length || packetLength < headerLength)
+        {
+            throw new MalformedPacketException("The IPv4 header or total length is not valid.");
+        }
+        if(packetLength > length && !truncated)
+        {
+            throw new MalformedPacketException(
+                "The packet is truncated: " + length + " of " + packetLength + " bytes were received."
+            );
+        }
+
+        this.typeOfService = header.getTypeOfService();
+        this.identification = header.getIdentification();
+        this.flags = header.getFlags();
+        this.fragmentOffset = header.getFragmentOffset();
+        this.protocol = header.getProtocol();
+        this.setReceivedHopLimit(header.getHopLimit());
+        this.setSourceAddress(header.getSourceAddress());
+        this.setDestinationAddress(header.getDestinationAddress());
+        this.options = GenericIp4Packet.copy(buffer, offset + Ipv4HeaderView.MIN_HEADER_LENGTH, offset + headerLength);
+        this.setPayloadData(
+            GenericIp4Packet.copy(buffer, offset + headerLength, offset + Math.min(packetLength, length))
+        );
+    }
+
+    /**
+     * Gets the type of service byte, which holds the differentiated services code point and the explicit congestion
+     * notification bits.
+     *
+     * @return the type of service.
+     */
+    public int getTypeOfService()
+    {
+        return this.typeOfService;
+    }
+
+    /**
+     * Sets the type of service byte.
+     *
+     * @param typeOfService The type of service, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setTypeOfService(final int typeOfService) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.typeOfService = GenericIp4Packet.checkRange(typeOfService, GenericIp4Packet.BYTE_MAX, "typeOfService");
+    }
+
+    /**
+     * Gets the identification, which groups the fragments of a packet.
+     *
+     * @return the identification.
+     */
+    public int getIdentification()
+    {
+        return this.identification;
+    }
+
+    /**
+     * Sets the identification. When the socket includes IP headers, the kernel chooses one if this is zero.
+     *
+     * @param identification The identification, from 0 to 65535
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setIdentification(final int identification) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.identification = GenericIp4Packet.checkRange(
+            identification, GenericIp4Packet.SHORT_MAX, "identification"
+        );
+    }
+
+    /**
+     * Gets the fragmentation flags.
+     *
+     * @return the flags, a combination of {@link Ipv4HeaderView#FLAG_DONT_FRAGMENT} and
+     *     {@link Ipv4HeaderView#FLAG_MORE_FRAGMENTS}.
+     */
+    public int getFlags()
+    {
+        return this.flags;
+    }
+
+    /**
+     * Sets the fragmentation flags.
+     *
+     * @param flags The flags, a combination of {@link Ipv4HeaderView#FLAG_DONT_FRAGMENT} and
+     *     {@link Ipv4HeaderView#FLAG_MORE_FRAGMENTS}
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
      */
-    public GenericIp4Packet()
+    public void setFlags(final int flags) throws FinalizedPacketException
     {
+        this.checkNotFinalized();
+        this.flags = GenericIp4Packet.checkRange(flags, GenericIp4Packet.FLAGS_MAX, "flags");
+    }
 
+    /**
+     * Gets the offset of this fragment in the original packet.
+     *
+     * @return the fragment offset, in units of eight bytes.
+     */
+    public int getFragmentOffset()
+    {
+        return this.fragmentOffset;
+    }
+
+    /**
+     * Sets the offset of this fragment in the original packet.
+     *
+     * @param fragmentOffset The fragment offset, in units of eight bytes, from 0 to 8191
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setFragmentOffset(final int fragmentOffset) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.fragmentOffset = GenericIp4Packet.checkRange(
+            fragmentOffset, GenericIp4Packet.FRAGMENT_OFFSET_MAX, "fragmentOffset"
+        );
+    }
+
+    /**
+     * Gets the protocol of the payload.
+     *
+     * @return the protocol number.
+     */
+    public int getProtocol()
+    {
+        return this.protocol;
+    }
+
+    /**
+     * Sets the protocol of the payload.
+     *
+     * @param protocol The protocol number, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setProtocol(final int protocol) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.protocol = GenericIp4Packet.checkRange(protocol, GenericIp4Packet.BYTE_MAX, "protocol");
+    }
+
+    /**
+     * Gets the header options. A copy of the internal array is made to avoid external modification.
+     *
+     * @return the options, which are empty if the header has none.
+     */
+    public byte[] getOptions()
+    {
+        return Arrays.copyOf(this.options, this.options.length);
+    }
+
+    /**
+     * Sets the header options, already padded to a multiple of four bytes. A copy of the array argument is made to
+     * avoid external modification.
+     *
+     * @param options The options
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws IllegalArgumentException if the options are {@code null}, not a multiple of four bytes or longer than
+     *     {@link #MAX_OPTIONS_LENGTH}.
+     */
+    public void setOptions(final byte[] options) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(options == null || options.length % GenericIp4Packet.WORD_SIZE != 0 ||
+           options.length > GenericIp4Packet.MAX_OPTIONS_LENGTH)
+        {
+            throw new IllegalArgumentException("Parameter options must be a multiple of 4 bytes up to 40 bytes!");
+        }
+
+        this.options = Arrays.copyOf(options, options.length);
+    }
+
+    /**
+     * Gets the content of the packet IP header, encoded from the fields of this packet with its checksum.
+     *
+     * @return the content of the packet IP header.
+     */
+    @Override
+    public byte[] getHeaderData()
+    {
+        final byte[] header = new byte[this.getHeaderLength()];
+        this.writeHeader(ByteBuffer.wrap(header), 0);
+        return header;
+    }
+
+    /**
+     * Gets the total header length.
+     *
+     * @return the IP header length, in bytes.
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        return Ipv4HeaderView.MIN_HEADER_LENGTH + this.options.length;
+    }
+
+    /**
+     * Gets the content of the packet payload. A copy of the internal array is made to avoid external modification.
+     *
+     * @return the content of the packet payload.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        return Arrays.copyOf(this.payloadData, this.payloadData.length);
+    }
+
+    /**
+     * Sets the content of the packet payload. A copy of the array argument is made to avoid external modification.
+     *
+     * @param payloadData The content of the packet payload
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws PayloadSizeLimitException if the packet would be longer than {@link #MAX_PACKET_LENGTH}.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.checkPayloadLength(payloadData.length);
+
+        this.payloadData = Arrays.copyOf(payloadData, payloadData.length);
+    }
+
+    /**
+     * Gets the payload length.
+     *
+     * @return the payload length, in bytes.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return this.payloadData.length;
+    }
+
+    /**
+     * Returns the entire packet represented in bytes, encoded into one new array.
+     *
+     * @return the entire packet (header followed by content).
+     */
+    @Override
+    public byte[] getPacketData()
+    {
+        final byte[] data = new byte[this.getPacketLength()];
+        this.writePacketData(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, encoding the header in place.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the packet, in which case nothing is
+     *     written.
+     */
+    @Override
+    public int writePacketData(final ByteBuffer buffer)
+    {
+        final int length = this.getPacketLength();
+        if(buffer.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        final int start = buffer.position();
+        this.writeHeader(buffer, start);
+        buffer.position(start + this.getHeaderLength());
+        this.writePayloadData(buffer);
+        return length;
+    }
+
+    /**
+     * Writes the payload into the buffer at its position and advances the position. The buffer has room for it.
+     * Subclasses that encode their payload override this along with {@link #getPayloadData()} and
+     * {@link #getPayloadLength()}.
+     *
+     * @param buffer The buffer to write the payload into
+     */
+    protected void writePayloadData(final ByteBuffer buffer)
+    {
+        buffer.put(this.payloadData);
+    }
+
+    /**
+     * Sets the packet source address, which must be an IPv4 address.
+     *
+     * @param sourceAddress The source address that the packet originated from
+     *
+     * @return {@code true} if this packet is of source {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and
+     *     setting the address is allowed, {@code false} otherwise.
+     *
+     * @throws FinalizedPacketException if this packet is of source
+     *     {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and was finalized prior to the invocation of this
+     *     method.
+     * @throws IllegalArgumentException if the address is not an IPv4 address.
+     */
+    @Override
+    public boolean setSourceAddress(final InetAddress sourceAddress) throws FinalizedPacketException
+    {
+        if(sourceAddress != null && !(sourceAddress instanceof Inet4Address))
+        {
+            throw new IllegalArgumentException("Parameter sourceAddress must be an IPv4 address!");
+        }
+
+        return super.setSourceAddress(sourceAddress);
+    }
+
+    /**
+     * Sets the packet destination address, which must be an IPv4 address.
+     *
+     * @param destinationAddress The packet destination address
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv4 address.
+     */
+    @Override
+    public void setDestinationAddress(final InetAddress destinationAddress) throws FinalizedPacketException
+    {
+        if(destinationAddress != null && !(destinationAddress instanceof Inet4Address))
+        {
+            throw new IllegalArgumentException("Parameter destinationAddress must be an IPv4 address!");
+        }
+
+        super.setDestinationAddress(destinationAddress);
+    }
+
+    /**
+     * Throws an exception if this packet has been finalized.
+     *
+     * @throws FinalizedPacketException if this packet has been finalized.
+     */
+    protected final void checkNotFinalized() throws FinalizedPacketException
+    {
+        if(this.isFinalized())
+        {
+            throw new FinalizedPacketException();
+        }
+    }
+
+    /**
+     * Throws an exception if a payload of the length would make this packet too long.
+     *
+     * @param payloadLength The payload length, in bytes
+     *
+     * @throws PayloadSizeLimitException if the packet would be longer than {@link #MAX_PACKET_LENGTH}.
+     */
+    protected final void checkPayloadLength(final int payloadLength) throws PayloadSizeLimitException
+    {
+        if(payloadLength > GenericIp4Packet.MAX_PACKET_LENGTH - this.getHeaderLength())
+        {
+            throw new PayloadSizeLimitException(GenericIp4Packet.MAX_PACKET_LENGTH - this.getHeaderLength());
+        }
+    }
+
+    private void writeHeader(final ByteBuffer buffer, final int offset)
+    {
+        final Ipv4HeaderView header = new Ipv4HeaderView().wrap(buffer, offset).clear();
+        header.setHeaderLength(this.getHeaderLength());
+        header.setTypeOfService(this.typeOfService);
+        header.setPacketLength(this.getPacketLength());
+        header.setIdentification(this.identification);
+        header.setFlags(this.flags);
+        header.setFragmentOffset(this.fragmentOffset);
+        header.setHopLimit(this.getHopLimit() == 0 ? Packet.MIN_HOP_LIMIT : this.getHopLimit());
+        header.setProtocol(this.protocol);
+        header.setSourceAddress(
+            this.getSourceAddress() == null ? GenericIp4Packet.ANY_ADDRESS : this.getSourceAddress().getAddress()
+        );
+        header.setDestinationAddress(
+            this.getDestinationAddress() == null ? GenericIp4Packet.ANY_ADDRESS :
+            this.getDestinationAddress().getAddress()
+        );
+        for(int i = 0; i < this.options.length; i++)
+        {
+            buffer.put(offset + Ipv4HeaderView.MIN_HEADER_LENGTH + i, this.options[i]);
+        }
+        header.updateChecksum();
+    }
+
+    private static byte[] copy(final ByteBuffer buffer, final int start, final int end)
+    {
+        final byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = buffer.get(start + i);
+        }
+        return bytes;
+    }
+
+    private static int checkRange(final int value, final int maximum, final String name)
+    {
+        if(value < 0 || value > maximum)
+        {
+            throw new IllegalArgumentException("Parameter " + name + " must be from 0 to " + maximum + "!");
+        }
+        return value;
     }
 }
@@ -15,20 +15,491 @@
  */
 package io.oddsource.java.net.socket.ip4;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.oddsource.java.net.socket.IcmpTemplate;
+import io.oddsource.java.net.socket.IcmpView;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+
 /**
- * Class description here. TODO
+ * An ICMPv4 packet (RFC 792): an IPv4 packet whose payload is an ICMP message, which consists of a type, a code, a
+ * checksum, four bytes whose meaning depends on the type (the identifier and sequence number of echo messages, the
+ * pointer of parameter problems, the next-hop MTU of fragmentation-needed errors) and a body. The checksum is computed
+ * whenever the payload is encoded. The body of an error message quotes the start of the packet that caused the error,
+ * which {@link #getQuotedPacket()} decodes.<br>
+ * <br>
+ * For sending many echo requests, {@link #createTemplate(boolean)} precomputes the packet so that each probe only
+ * patches its identifier, sequence number and checksum.
  *
  * @author Nick Williams
  * @version 1.0.0
  * @since 1.0.0
  */
-public class Icmp4Packet
+public class Icmp4Packet extends GenericIp4Packet
 {
+    /**
+     * The IP protocol number of ICMP.
+     */
+    public static final int PROTOCOL = 1;
+
+    /**
+     * The type of echo replies.
+     */
+    public static final int TYPE_ECHO_REPLY = 0;
+
+    /**
+     * The type of destination-unreachable errors.
+     */
+    public static final int TYPE_DESTINATION_UNREACHABLE = 3;
+
+    /**
+     * The type of echo requests.
+     */
+    public static final int TYPE_ECHO_REQUEST = 8;
+
+    /**
+     * The type of time-exceeded errors.
+     */
+    public static final int TYPE_TIME_EXCEEDED = 11;
+
+    /**
+     * The type of parameter-problem errors.
+     */
+    public static final int TYPE_PARAMETER_PROBLEM = 12;
+
+    /**
+     * The destination-unreachable code for an unreachable network.
+     */
+    public static final int CODE_NETWORK_UNREACHABLE = 0;
+
+    /**
+     * The destination-unreachable code for an unreachable host.
+     */
+    public static final int CODE_HOST_UNREACHABLE = 1;
+
+    /**
+     * The destination-unreachable code for an unreachable protocol.
+     */
+    public static final int CODE_PROTOCOL_UNREACHABLE = 2;
+
+    /**
+     * The destination-unreachable code for an unreachable port.
+     */
+    public static final int CODE_PORT_UNREACHABLE = 3;
+
+    /**
+     * The destination-unreachable code for a packet that needed fragmenting but had the don't-fragment flag set.
+     */
+    public static final int CODE_FRAGMENTATION_NEEDED = 4;
+
+    /**
+     * The time-exceeded code for a TTL that reached zero in transit.
+     */
+    public static final int CODE_TTL_EXCEEDED = 0;
+
+    /**
+     * The time-exceeded code for fragment reassembly that timed out.
+     */
+    public static final int CODE_REASSEMBLY_TIME_EXCEEDED = 1;
+
+    private static final int BYTE_MAX = 0xFF;
+
+    private static final int SHORT_MAX = 0xFFFF;
+
+    private static final int SHORT_BITS = 16;
+
+    private static final int POINTER_SHIFT = 24;
+
+    private int type;
+
+    private int code;
+
+    private int restOfHeader;
+
+    private byte[] body = new byte[0];
+
+    private boolean checksumValid = true;
+
     /**
      * Constructor.
+     *
+     * @param source Whether this is an incoming or outgoing packet.
+     */
+    public Icmp4Packet(final Packet.Source source)
+    {
+        super(source);
+        super.setProtocol(Icmp4Packet.PROTOCOL);
+    }
+
+    /**
+     * Decodes a received ICMPv4 packet, such as one received on an IPv4 ICMP raw socket (which delivers the IP header),
+     * into a new finalized incoming packet.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     *
+     * @return the packet.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid ICMPv4 packet or is truncated.
+     */
+    public static Icmp4Packet decode(final ByteBuffer buffer, final int offset, final int length)
+        throws MalformedPacketException
+    {
+        final Icmp4Packet packet = new Icmp4Packet(Packet.Source.INCOMING);
+        packet.decode(buffer, offset, length, false);
+        packet.finalizePacket();
+        return packet;
+    }
+
+    /**
+     * Decodes the received data into this packet, which must be an incoming packet that has not been finalized.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     * @param truncated Whether the packet may be shorter than its total length
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid ICMPv4 packet or is truncated.
+     */
+    @Override
+    protected void decode(final ByteBuffer buffer, final int offset, final int length, final boolean truncated)
+        throws MalformedPacketException
+    {
+        super.decode(buffer, offset, length, truncated);
+        if(this.getProtocol() != Icmp4Packet.PROTOCOL)
+        {
+            throw new MalformedPacketException("The packet is protocol " + this.getProtocol() + ", not ICMP.");
+        }
+    }
+
+    /**
+     * Sets the protocol of the payload, which for ICMPv4 packets can only be {@link #PROTOCOL}.
+     *
+     * @param protocol The protocol number
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws IllegalArgumentException if the protocol is not {@link #PROTOCOL}.
+     */
+    @Override
+    public void setProtocol(final int protocol) throws FinalizedPacketException
+    {
+        if(protocol != Icmp4Packet.PROTOCOL)
+        {
+            throw new IllegalArgumentException("Parameter protocol must be " + Icmp4Packet.PROTOCOL + "!");
+        }
+
+        super.setProtocol(protocol);
+    }
+
+    /**
+     * Gets the ICMP message type.
+     *
+     * @return the type.
+     */
+    public int getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Sets the ICMP message type.
+     *
+     * @param type The type, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setType(final int type) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(type < 0 || type > Icmp4Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter type must be from 0 to 255!");
+        }
+
+        this.type = type;
+    }
+
+    /**
+     * Gets the ICMP message code, which refines the type.
+     *
+     * @return the code.
+     */
+    public int getCode()
+    {
+        return this.code;
+    }
+
+    /**
+     * Sets the ICMP message code.
+     *
+     * @param code The code, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setCode(final int code) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(code < 0 || code > Icmp4Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter code must be from 0 to 255!");
+        }
+
+        this.code = code;
+    }
+
+    /**
+     * Gets the four bytes after the checksum, whose meaning depends on the type.
+     *
+     * @return the rest of the header, as a big-endian integer.
+     */
+    public int getRestOfHeader()
+    {
+        return this.restOfHeader;
+    }
+
+    /**
+     * Sets the four bytes after the checksum.
+     *
+     * @param restOfHeader The rest of the header, as a big-endian integer
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setRestOfHeader(final int restOfHeader) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.restOfHeader = restOfHeader;
+    }
+
+    /**
+     * Gets the identifier of an echo message.
+     *
+     * @return the identifier, from 0 to 65535.
+     */
+    public int getIdentifier()
+    {
+        return this.restOfHeader >>> Icmp4Packet.SHORT_BITS;
+    }
+
+    /**
+     * Sets the identifier of an echo message.
+     *
+     * @param identifier The identifier, from 0 to 65535 (higher bits are ignored)
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setIdentifier(final int identifier) throws FinalizedPacketException
+    {
+        this.setRestOfHeader(
+            identifier << Icmp4Packet.SHORT_BITS | this.restOfHeader & Icmp4Packet.SHORT_MAX
+        );
+    }
+
+    /**
+     * Gets the sequence number of an echo message.
+     *
+     * @return the sequence number, from 0 to 65535.
+     */
+    public int getSequenceNumber()
+    {
+        return this.restOfHeader & Icmp4Packet.SHORT_MAX;
+    }
+
+    /**
+     * Sets the sequence number of an echo message.
+     *
+     * @param sequenceNumber The sequence number, from 0 to 65535 (higher bits are ignored)
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setSequenceNumber(final int sequenceNumber) throws FinalizedPacketException
+    {
+        this.setRestOfHeader(
+            this.restOfHeader & ~Icmp4Packet.SHORT_MAX | sequenceNumber & Icmp4Packet.SHORT_MAX
+        );
+    }
+
+    /**
+     * Gets the pointer of a parameter-problem error, which is the offset of the offending byte in the quoted packet.
+     *
+     * @return the pointer, from 0 to 255.
+     */
+    public int getPointer()
+    {
+        return this.restOfHeader >>> Icmp4Packet.POINTER_SHIFT;
+    }
+
+    /**
+     * Gets the next-hop MTU of a fragmentation-needed error (RFC 1191).
+     *
+     * @return the MTU of the next hop, or zero if the router did not report it.
+     */
+    public int getNextHopMtu()
+    {
+        return this.restOfHeader & Icmp4Packet.SHORT_MAX;
+    }
+
+    /**
+     * Gets the body of the message, which follows the eight-byte ICMP header. A copy of the internal array is made to
+     * avoid external modification.
+     *
+     * @return the body.
+     */
+    public byte[] getBody()
+    {
+        return Arrays.copyOf(this.body, this.body.length);
+    }
+
+    /**
+     * Sets the body of the message. A copy of the array argument is made to avoid external modification.
+     *
+     * @param body The body
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws io.oddsource.java.net.socket.exception.PayloadSizeLimitException if the packet would be too long.
+     */
+    public void setBody(final byte[] body) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.checkPayloadLength(IcmpView.HEADER_LENGTH + body.length);
+
+        this.body = Arrays.copyOf(body, body.length);
+    }
+
+    /**
+     * Indicates whether the checksum of a decoded message was correct. Outgoing messages always have a correct
+     * checksum, because it is computed whenever the payload is encoded.
+     *
+     * @return {@code true} if the checksum was correct, {@code false} otherwise.
+     */
+    public boolean isChecksumValid()
+    {
+        return this.checksumValid;
+    }
+
+    /**
+     * Indicates whether the message is an error, whose body quotes the packet that caused it.
+     *
+     * @return {@code true} for destination-unreachable, time-exceeded and parameter-problem messages, {@code false}
+     *     otherwise.
+     */
+    public boolean isError()
+    {
+        return this.type == Icmp4Packet.TYPE_DESTINATION_UNREACHABLE || this.type == Icmp4Packet.TYPE_TIME_EXCEEDED ||
+               this.type == Icmp4Packet.TYPE_PARAMETER_PROBLEM;
+    }
+
+    /**
+     * Decodes the packet quoted in the body of an error message, which is usually truncated to its IP header and the
+     * first eight bytes of its payload; the payload of the returned packet is what was quoted of it.
+     *
+     * @return the quoted packet, finalized, or {@code null} if this message is not an error.
+     *
+     * @throws MalformedPacketException if the body does not start with a valid IPv4 header.
+     */
+    public GenericIp4Packet getQuotedPacket() throws MalformedPacketException
+    {
+        if(!this.isError())
+        {
+            return null;
+        }
+
+        final GenericIp4Packet quoted = new GenericIp4Packet(Packet.Source.INCOMING);
+        quoted.decode(ByteBuffer.wrap(this.body), 0, this.body.length, true);
+        quoted.finalizePacket();
+        return quoted;
+    }
+
+    /**
+     * Gets the ICMP message, encoded from the fields of this packet with its checksum.
+     *
+     * @return the content of the packet payload.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        final byte[] data = new byte[this.getPayloadLength()];
+        this.writePayloadData(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Decodes an ICMP message into the fields of this packet.
+     *
+     * @param payloadData The ICMP message
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws MalformedPacketException if the message is shorter than an ICMP header.
+     * @throws io.oddsource.java.net.socket.exception.PayloadSizeLimitException if the packet would be too long.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(payloadData.length < IcmpView.HEADER_LENGTH)
+        {
+            throw new MalformedPacketException("The message is shorter than an ICMP header.");
+        }
+        this.checkPayloadLength(payloadData.length);
+
+        final IcmpView view = new IcmpView().wrap(ByteBuffer.wrap(payloadData), 0);
+        this.type = view.getType();
+        this.code = view.getCode();
+        this.restOfHeader = view.getRestOfHeader();
+        this.body = Arrays.copyOfRange(payloadData, IcmpView.HEADER_LENGTH, payloadData.length);
+        this.checksumValid = view.isChecksumValid(payloadData.length);
+    }
+
+    /**
+     * Gets the payload length.
+     *
+     * @return the payload length, in bytes.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return IcmpView.HEADER_LENGTH + this.body.length;
+    }
+
+    /**
+     * Encodes the ICMP message into the buffer at its position, with its checksum, and advances the position.
+     *
+     * @param buffer The buffer to write the payload into
+     */
+    @Override
+    protected void writePayloadData(final ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        final IcmpView view = new IcmpView().wrap(buffer, start);
+        view.setType(this.type);
+        view.setCode(this.code);
+        view.setRestOfHeader(this.restOfHeader);
+        buffer.position(start + IcmpView.HEADER_LENGTH);
+        buffer.put(this.body);
+        view.updateChecksum(this.getPayloadLength());
+    }
+
+    /**
+     * Creates a template from the current fields of this packet, normally an echo request, for sending many probes
+     * that differ only in identifier and sequence number.
+     *
+     * @param includeIpHeader Whether the probes include the IPv4 header, for sockets that include IP headers, or are
+     *     only the ICMP message
+     *
+     * @return the template.
      */
-    public Icmp4Packet()
+    public IcmpTemplate createTemplate(final boolean includeIpHeader)
     {
+        if(includeIpHeader)
+        {
+            return new IcmpTemplate(this.getPacketData(), this.getHeaderLength(), 0);
+        }
 
+        return new IcmpTemplate(this.getPayloadData(), 0, 0);
     }
 }
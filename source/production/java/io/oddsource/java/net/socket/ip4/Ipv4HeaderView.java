@@ -0,0 +1,566 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip4;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import io.oddsource.java.net.socket.HeaderView;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.IllegalHopLimitException;
+
+/**
+ * A flyweight view of an IPv4 header (RFC 791) in a buffer, such as a packet received on an IPv4 raw socket, which
+ * always starts with its IP header, or a packet being built for a socket with
+ * {@link io.oddsource.java.net.socket.RawSocket#setIpHeaderInclude(boolean)} on. The accessors are named like those
+ * of {@link Packet}, so code written against either reads the same.
+ *
+ * @see HeaderView
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Ipv4HeaderView extends HeaderView
+{
+    /**
+     * The length of a header without options.
+     */
+    public static final int MIN_HEADER_LENGTH = 20;
+
+    /**
+     * The length of a header with the most options.
+     */
+    public static final int MAX_HEADER_LENGTH = 60;
+
+    /**
+     * The length of an IPv4 address.
+     */
+    public static final int ADDRESS_LENGTH = 4;
+
+    /**
+     * The "don't fragment" flag.
+     */
+    public static final int FLAG_DONT_FRAGMENT = 0x2;
+
+    /**
+     * The "more fragments" flag.
+     */
+    public static final int FLAG_MORE_FRAGMENTS = 0x1;
+
+    private static final int VERSION = 4;
+
+    private static final int VERSION_SHIFT = 4;
+
+    private static final int NIBBLE_MASK = 0xF;
+
+    private static final int WORD_SIZE = 4;
+
+    private static final int FLAGS_SHIFT = 13;
+
+    private static final int FLAGS_MASK = 0x7;
+
+    private static final int FRAGMENT_OFFSET_MASK = 0x1FFF;
+
+    private static final int VERSION_AND_LENGTH_INDEX = 0;
+
+    private static final int TYPE_OF_SERVICE_INDEX = 1;
+
+    private static final int TOTAL_LENGTH_INDEX = 2;
+
+    private static final int IDENTIFICATION_INDEX = 4;
+
+    private static final int FLAGS_AND_FRAGMENT_OFFSET_INDEX = 6;
+
+    private static final int TIME_TO_LIVE_INDEX = 8;
+
+    private static final int PROTOCOL_INDEX = 9;
+
+    private static final int CHECKSUM_INDEX = 10;
+
+    private static final int SOURCE_ADDRESS_INDEX = 12;
+
+    private static final int DESTINATION_ADDRESS_INDEX = 16;
+
+    /**
+     * Constructor. The view must be wrapped around a buffer with {@link #wrap(ByteBuffer, int)} before it is used.
+     */
+    public Ipv4HeaderView()
+    {
+        super();
+    }
+
+    /**
+     * Moves this view to the IPv4 header at the offset in the buffer. Only the fixed 20 bytes of the header must be in
+     * the buffer; the version and header length are not checked.
+     *
+     * @param buffer The buffer holding the header
+     * @param offset The absolute offset of the header in the buffer
+     *
+     * @return this view.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or too short for the header.
+     */
+    public Ipv4HeaderView wrap(final ByteBuffer buffer, final int offset)
+    {
+        this.attach(buffer, offset, Ipv4HeaderView.MIN_HEADER_LENGTH);
+        return this;
+    }
+
+    /**
+     * Zeros the fixed 20 bytes of the header and writes version 4, a 20-byte header length and the default hop limit,
+     * ready for the rest of the fields to be set.
+     *
+     * @return this view.
+     */
+    public Ipv4HeaderView clear()
+    {
+        for(int i = 0; i < Ipv4HeaderView.MIN_HEADER_LENGTH; i += Ipv4HeaderView.WORD_SIZE)
+        {
+            this.putInt(i, 0);
+        }
+        this.setHeaderLength(Ipv4HeaderView.MIN_HEADER_LENGTH);
+        this.putByte(Ipv4HeaderView.TIME_TO_LIVE_INDEX, Packet.DEFAULT_HOP_LIMIT);
+        return this;
+    }
+
+    /**
+     * Get the IP version, which is 4 for a valid header.
+     *
+     * @return the version.
+     */
+    public int getVersion()
+    {
+        return this.getUnsignedByte(Ipv4HeaderView.VERSION_AND_LENGTH_INDEX) >>> Ipv4HeaderView.VERSION_SHIFT;
+    }
+
+    /**
+     * Get the header length, including options.
+     *
+     * @return the header length, in bytes.
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        return (this.getUnsignedByte(Ipv4HeaderView.VERSION_AND_LENGTH_INDEX) & Ipv4HeaderView.NIBBLE_MASK) *
+               Ipv4HeaderView.WORD_SIZE;
+    }
+
+    /**
+     * Set the header length, including options. This also sets the version to 4, since they share a byte.
+     *
+     * @param headerLength The header length, in bytes
+     *
+     * @throws IllegalArgumentException if the length is not a multiple of four from 20 to 60.
+     */
+    public void setHeaderLength(final int headerLength)
+    {
+        if(headerLength < Ipv4HeaderView.MIN_HEADER_LENGTH || headerLength > Ipv4HeaderView.MAX_HEADER_LENGTH ||
+           headerLength % Ipv4HeaderView.WORD_SIZE != 0)
+        {
+            throw new IllegalArgumentException("Parameter headerLength must be a multiple of 4 from 20 to 60!");
+        }
+
+        this.putByte(
+            Ipv4HeaderView.VERSION_AND_LENGTH_INDEX,
+            Ipv4HeaderView.VERSION << Ipv4HeaderView.VERSION_SHIFT | headerLength / Ipv4HeaderView.WORD_SIZE
+        );
+    }
+
+    /**
+     * Get the type of service byte, which holds the differentiated services code point and the explicit congestion
+     * notification bits.
+     *
+     * @return the type of service.
+     */
+    public int getTypeOfService()
+    {
+        return this.getUnsignedByte(Ipv4HeaderView.TYPE_OF_SERVICE_INDEX);
+    }
+
+    /**
+     * Set the type of service byte.
+     *
+     * @param typeOfService The type of service, of which only the low eight bits are written
+     */
+    public void setTypeOfService(final int typeOfService)
+    {
+        this.putByte(Ipv4HeaderView.TYPE_OF_SERVICE_INDEX, typeOfService);
+    }
+
+    /**
+     * Get the total length of the packet (header + payload).
+     *
+     * @return the packet length, in bytes.
+     */
+    public int getPacketLength()
+    {
+        return this.getUnsignedShort(Ipv4HeaderView.TOTAL_LENGTH_INDEX);
+    }
+
+    /**
+     * Set the total length of the packet (header + payload).
+     *
+     * @param packetLength The packet length, in bytes, of which only the low 16 bits are written
+     */
+    public void setPacketLength(final int packetLength)
+    {
+        this.putShort(Ipv4HeaderView.TOTAL_LENGTH_INDEX, packetLength);
+    }
+
+    /**
+     * Get the payload length, the total length less the header length.
+     *
+     * @return the payload length, in bytes.
+     */
+    public int getPayloadLength()
+    {
+        return this.getPacketLength() - this.getHeaderLength();
+    }
+
+    /**
+     * Get the identification, which groups the fragments of a packet.
+     *
+     * @return the identification, from 0 to 65535.
+     */
+    public int getIdentification()
+    {
+        return this.getUnsignedShort(Ipv4HeaderView.IDENTIFICATION_INDEX);
+    }
+
+    /**
+     * Set the identification.
+     *
+     * @param identification The identification, of which only the low 16 bits are written
+     */
+    public void setIdentification(final int identification)
+    {
+        this.putShort(Ipv4HeaderView.IDENTIFICATION_INDEX, identification);
+    }
+
+    /**
+     * Get the fragmentation flags.
+     *
+     * @return the flags, a combination of {@link #FLAG_DONT_FRAGMENT} and {@link #FLAG_MORE_FRAGMENTS}.
+     */
+    public int getFlags()
+    {
+        return this.getUnsignedShort(Ipv4HeaderView.FLAGS_AND_FRAGMENT_OFFSET_INDEX) >>> Ipv4HeaderView.FLAGS_SHIFT;
+    }
+
+    /**
+     * Set the fragmentation flags, keeping the fragment offset.
+     *
+     * @param flags The flags, a combination of {@link #FLAG_DONT_FRAGMENT} and {@link #FLAG_MORE_FRAGMENTS}
+     */
+    public void setFlags(final int flags)
+    {
+        this.putShort(
+            Ipv4HeaderView.FLAGS_AND_FRAGMENT_OFFSET_INDEX,
+            (flags & Ipv4HeaderView.FLAGS_MASK) << Ipv4HeaderView.FLAGS_SHIFT | this.getFragmentOffset()
+        );
+    }
+
+    /**
+     * Get the offset of this fragment in the original packet.
+     *
+     * @return the fragment offset, in units of eight bytes.
+     */
+    public int getFragmentOffset()
+    {
+        return this.getUnsignedShort(Ipv4HeaderView.FLAGS_AND_FRAGMENT_OFFSET_INDEX) &
+               Ipv4HeaderView.FRAGMENT_OFFSET_MASK;
+    }
+
+    /**
+     * Set the offset of this fragment in the original packet, keeping the flags.
+     *
+     * @param fragmentOffset The fragment offset, in units of eight bytes, of which only the low 13 bits are written
+     */
+    public void setFragmentOffset(final int fragmentOffset)
+    {
+        this.putShort(
+            Ipv4HeaderView.FLAGS_AND_FRAGMENT_OFFSET_INDEX,
+            this.getFlags() << Ipv4HeaderView.FLAGS_SHIFT | fragmentOffset & Ipv4HeaderView.FRAGMENT_OFFSET_MASK
+        );
+    }
+
+    /**
+     * Get the Time-To-Live (TTL), like {@link Packet#getHopLimit()}.
+     *
+     * @return the TTL, from 0 to 255.
+     */
+    public short getHopLimit()
+    {
+        return (short) this.getUnsignedByte(Ipv4HeaderView.TIME_TO_LIVE_INDEX);
+    }
+
+    /**
+     * Set the Time-To-Live (TTL), like {@link Packet#setHopLimit(short)}.
+     *
+     * @param hopLimit The TTL
+     *
+     * @throws IllegalHopLimitException if {@code hopLimit} was not an integer between 1 and 255 (inclusive).
+     */
+    public void setHopLimit(final short hopLimit) throws IllegalHopLimitException
+    {
+        if(hopLimit < Packet.MIN_HOP_LIMIT || hopLimit > Packet.MAX_HOP_LIMIT)
+        {
+            throw new IllegalHopLimitException();
+        }
+
+        this.putByte(Ipv4HeaderView.TIME_TO_LIVE_INDEX, hopLimit);
+    }
+
+    /**
+     * Get the protocol of the payload.
+     *
+     * @return the protocol number.
+     *
+     * @see io.oddsource.java.net.socket.SocketUtilities#getProtocolByNumber(int)
+     */
+    public int getProtocol()
+    {
+        return this.getUnsignedByte(Ipv4HeaderView.PROTOCOL_INDEX);
+    }
+
+    /**
+     * Set the protocol of the payload.
+     *
+     * @param protocol The protocol number, of which only the low eight bits are written
+     */
+    public void setProtocol(final int protocol)
+    {
+        this.putByte(Ipv4HeaderView.PROTOCOL_INDEX, protocol);
+    }
+
+    /**
+     * Get the header checksum.
+     *
+     * @return the checksum, from 0 to 65535.
+     */
+    public int getChecksum()
+    {
+        return this.getUnsignedShort(Ipv4HeaderView.CHECKSUM_INDEX);
+    }
+
+    /**
+     * Set the header checksum.
+     *
+     * @param checksum The checksum, of which only the low 16 bits are written
+     */
+    public void setChecksum(final int checksum)
+    {
+        this.putShort(Ipv4HeaderView.CHECKSUM_INDEX, checksum);
+    }
+
+    /**
+     * Computes the header checksum and writes it into the header. Call this after the last change to the header.
+     */
+    public void updateChecksum()
+    {
+        this.setChecksum(0);
+        this.setChecksum(this.checksum(this.getHeaderLength()));
+    }
+
+    /**
+     * Indicates whether the header checksum is correct.
+     *
+     * @return whether the checksum is correct.
+     */
+    public boolean isChecksumValid()
+    {
+        return this.checksum(this.getHeaderLength()) == 0;
+    }
+
+    /**
+     * Sets the TTL of a header whose checksum is correct, such as a probe written from an
+     * {@link io.oddsource.java.net.socket.IcmpTemplate}, and adjusts the checksum in constant time, instead of calling
+     * {@link #updateChecksum()}.
+     *
+     * @param hopLimit The TTL
+     *
+     * @throws IllegalHopLimitException if {@code hopLimit} was not an integer between 1 and 255 (inclusive).
+     */
+    public void rewriteHopLimit(final short hopLimit) throws IllegalHopLimitException
+    {
+        if(hopLimit < Packet.MIN_HOP_LIMIT || hopLimit > Packet.MAX_HOP_LIMIT)
+        {
+            throw new IllegalHopLimitException();
+        }
+
+        this.rewriteByte(Ipv4HeaderView.TIME_TO_LIVE_INDEX, hopLimit, Ipv4HeaderView.CHECKSUM_INDEX);
+    }
+
+    /**
+     * Sets the identification of a header whose checksum is correct and adjusts the checksum in constant time.
+     *
+     * @param identification The identification, of which only the low 16 bits are written
+     */
+    public void rewriteIdentification(final int identification)
+    {
+        this.rewriteShort(Ipv4HeaderView.IDENTIFICATION_INDEX, identification, Ipv4HeaderView.CHECKSUM_INDEX);
+    }
+
+    /**
+     * Sets the source address of a header whose checksum is correct and adjusts the checksum in constant time.
+     *
+     * @param sourceAddress The source address, four bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not four bytes long.
+     */
+    public void rewriteSourceAddress(final byte[] sourceAddress)
+    {
+        this.rewriteBytes(
+            Ipv4HeaderView.SOURCE_ADDRESS_INDEX, sourceAddress, Ipv4HeaderView.ADDRESS_LENGTH,
+            Ipv4HeaderView.CHECKSUM_INDEX
+        );
+    }
+
+    /**
+     * Sets the destination address of a header whose checksum is correct and adjusts the checksum in constant time.
+     *
+     * @param destinationAddress The destination address, four bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not four bytes long.
+     */
+    public void rewriteDestinationAddress(final byte[] destinationAddress)
+    {
+        this.rewriteBytes(
+            Ipv4HeaderView.DESTINATION_ADDRESS_INDEX, destinationAddress, Ipv4HeaderView.ADDRESS_LENGTH,
+            Ipv4HeaderView.CHECKSUM_INDEX
+        );
+    }
+
+    /**
+     * Gets the source address. This allocates an address; {@link #getSourceAddress(byte[])} does not.
+     *
+     * @return the source address.
+     */
+    public InetAddress getSourceAddress()
+    {
+        return this.getAddress(Ipv4HeaderView.SOURCE_ADDRESS_INDEX);
+    }
+
+    /**
+     * Copies the source address into an array, without allocating.
+     *
+     * @param address The array to copy the address into, at least four bytes long
+     *
+     * @return the length of the address (four).
+     */
+    public int getSourceAddress(final byte[] address)
+    {
+        this.getBytes(Ipv4HeaderView.SOURCE_ADDRESS_INDEX, address, Ipv4HeaderView.ADDRESS_LENGTH);
+        return Ipv4HeaderView.ADDRESS_LENGTH;
+    }
+
+    /**
+     * Sets the source address.
+     *
+     * @param sourceAddress The source address
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv4 address.
+     */
+    public void setSourceAddress(final InetAddress sourceAddress)
+    {
+        this.setSourceAddress(Ipv4HeaderView.toBytes(sourceAddress, "sourceAddress"));
+    }
+
+    /**
+     * Sets the source address.
+     *
+     * @param sourceAddress The source address, four bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not four bytes long.
+     */
+    public void setSourceAddress(final byte[] sourceAddress)
+    {
+        this.putBytes(Ipv4HeaderView.SOURCE_ADDRESS_INDEX, sourceAddress, Ipv4HeaderView.ADDRESS_LENGTH);
+    }
+
+    /**
+     * Gets the destination address. This allocates an address; {@link #getDestinationAddress(byte[])} does not.
+     *
+     * @return the destination address.
+     */
+    public InetAddress getDestinationAddress()
+    {
+        return this.getAddress(Ipv4HeaderView.DESTINATION_ADDRESS_INDEX);
+    }
+
+    /**
+     * Copies the destination address into an array, without allocating.
+     *
+     * @param address The array to copy the address into, at least four bytes long
+     *
+     * @return the length of the address (four).
+     */
+    public int getDestinationAddress(final byte[] address)
+    {
+        this.getBytes(Ipv4HeaderView.DESTINATION_ADDRESS_INDEX, address, Ipv4HeaderView.ADDRESS_LENGTH);
+        return Ipv4HeaderView.ADDRESS_LENGTH;
+    }
+
+    /**
+     * Sets the destination address.
+     *
+     * @param destinationAddress The destination address
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv4 address.
+     */
+    public void setDestinationAddress(final InetAddress destinationAddress)
+    {
+        this.setDestinationAddress(Ipv4HeaderView.toBytes(destinationAddress, "destinationAddress"));
+    }
+
+    /**
+     * Sets the destination address.
+     *
+     * @param destinationAddress The destination address, four bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not four bytes long.
+     */
+    public void setDestinationAddress(final byte[] destinationAddress)
+    {
+        this.putBytes(Ipv4HeaderView.DESTINATION_ADDRESS_INDEX, destinationAddress, Ipv4HeaderView.ADDRESS_LENGTH);
+    }
+
+    private InetAddress getAddress(final int index)
+    {
+        final byte[] address = new byte[Ipv4HeaderView.ADDRESS_LENGTH];
+        this.getBytes(index, address, Ipv4HeaderView.ADDRESS_LENGTH);
+        try
+        {
+            return InetAddress.getByAddress(address);
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new AssertionError("The address has the wrong length.", e);
+        }
+    }
+
+    private static byte[] toBytes(final InetAddress address, final String name)
+    {
+        if(!(address instanceof Inet4Address))
+        {
+            throw new IllegalArgumentException("Parameter " + name + " must be an IPv4 address!");
+        }
+
+        return address.getAddress();
+    }
+}
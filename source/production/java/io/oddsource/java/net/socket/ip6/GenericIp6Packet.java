@@ -15,20 +15,432 @@
  */
 package io.oddsource.java.net.socket.ip6;
 
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.oddsource.java.net.socket.AbstractPacket;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PayloadSizeLimitException;
+
 /**
- * Class description here. TODO
+ * An IPv6 packet (RFC 8200) of any upper-layer protocol, whose payload is kept as raw bytes. Extension headers are not
+ * parsed: they are part of the payload, and the next header is the type of the first of them. The header is encoded
+ * from the fields of this packet whenever the header data is requested; unknown addresses are encoded as {@code ::}.
+ * Incoming packets are decoded from received data with {@link #decode(ByteBuffer, int, int)}.
  *
  * @author Nick Williams
  * @version 1.0.0
  * @since 1.0.0
  */
-public class GenericIp6Packet
+public class GenericIp6Packet extends AbstractPacket
 {
+    /**
+     * The maximum length of an IPv6 payload, without jumbograms.
+     */
+    public static final int MAX_PAYLOAD_LENGTH = 65535;
+
+    private static final int BYTE_MAX = 0xFF;
+
+    private static final int FLOW_LABEL_MAX = 0xFFFFF;
+
+    private static final byte[] ANY_ADDRESS = new byte[Ipv6HeaderView.ADDRESS_LENGTH];
+
+    private int trafficClass;
+
+    private int flowLabel;
+
+    private int nextHeader;
+
+    private byte[] payloadData = new byte[0];
+
     /**
      * Constructor.
+     *
+     * @param source Whether this is an incoming or outgoing packet.
+     */
+    public GenericIp6Packet(final Packet.Source source)
+    {
+        super(source);
+    }
+
+    /**
+     * Decodes a received IPv6 packet, including its header, into a new finalized incoming packet. Data after the end
+     * of the packet, according to its payload length, is ignored.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     *
+     * @return the packet.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid IPv6 packet or is truncated.
+     */
+    public static GenericIp6Packet decode(final ByteBuffer buffer, final int offset, final int length)
+        throws MalformedPacketException
+    {
+        final GenericIp6Packet packet = new GenericIp6Packet(Packet.Source.INCOMING);
+        packet.decode(buffer, offset, length, false);
+        packet.finalizePacket();
+        return packet;
+    }
+
+    /**
+     * Decodes the received data into this packet, which must be an incoming packet that has not been finalized. The
+     * payload is set with {@link #setPayloadData(byte[])}, so subclasses that decode their payload can do so there.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     * @param truncated Whether the packet may be shorter than its payload length, as packets quoted in ICMPv6 error
+     *     messages are, in which case the payload is what there is of it
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid IPv6 packet or is truncated.
+     */
+    protected void decode(final ByteBuffer buffer, final int offset, final int length, final boolean truncated)
+        throws MalformedPacketException
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the buffer's limit!");
+        }
+        if(length < Ipv6HeaderView.HEADER_LENGTH)
+        {
+            throw new MalformedPacketException("The packet is shorter than an IPv6 header.");
+        }
+
+        final Ipv6HeaderView header = new Ipv6HeaderView().wrap(buffer, offset);
+        if(header.getVersion() != 6)
+        {
+            throw new MalformedPacketException("The packet is IP version " + header.getVersion() + ", not 6.");
+        }
+
+        final int packetLength = header.getPacketLength();
+        if(packetLength > length && !truncated)
+        {
+            throw new MalformedPacketException(
+                "The packet is truncated: " + length + " of " + packetLength + " bytes were received."
+            );
+        }
+
+        this.trafficClass = header.getTrafficClass();
+        this.flowLabel = header.getFlowLabel();
+        this.nextHeader = header.getNextHeader();
+        this.setReceivedHopLimit(header.getHopLimit());
+        this.setSourceAddress(header.getSourceAddress());
+        this.setDestinationAddress(header.getDestinationAddress());
+
+        final byte[] payload = new byte[Math.min(packetLength, length) - Ipv6HeaderView.HEADER_LENGTH];
+        for(int i = 0; i < payload.length; i++)
+        {
+            payload[i] = buffer.get(offset + Ipv6HeaderView.HEADER_LENGTH + i);
+        }
+        this.setPayloadData(payload);
+    }
+
+    /**
+     * Gets the traffic class, which holds the differentiated services code point and the explicit congestion
+     * notification bits.
+     *
+     * @return the traffic class.
+     */
+    public int getTrafficClass()
+    {
+        return this.trafficClass;
+    }
+
+    /**
+     * Sets the traffic class.
+     *
+     * @param trafficClass The traffic class, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setTrafficClass(final int trafficClass) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(trafficClass < 0 || trafficClass > GenericIp6Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter trafficClass must be from 0 to 255!");
+        }
+
+        this.trafficClass = trafficClass;
+    }
+
+    /**
+     * Gets the flow label, which marks the packets of one flow.
+     *
+     * @return the flow label.
+     */
+    public int getFlowLabel()
+    {
+        return this.flowLabel;
+    }
+
+    /**
+     * Sets the flow label.
+     *
+     * @param flowLabel The flow label, from 0 to 1048575
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setFlowLabel(final int flowLabel) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(flowLabel < 0 || flowLabel > GenericIp6Packet.FLOW_LABEL_MAX)
+        {
+            throw new IllegalArgumentException("Parameter flowLabel must be from 0 to 1048575!");
+        }
+
+        this.flowLabel = flowLabel;
+    }
+
+    /**
+     * Gets the type of the header following the IPv6 header, which is the upper-layer protocol or the first extension
+     * header.
+     *
+     * @return the next header.
+     */
+    public int getNextHeader()
+    {
+        return this.nextHeader;
+    }
+
+    /**
+     * Sets the type of the header following the IPv6 header.
+     *
+     * @param nextHeader The next header, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setNextHeader(final int nextHeader) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(nextHeader < 0 || nextHeader > GenericIp6Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter nextHeader must be from 0 to 255!");
+        }
+
+        this.nextHeader = nextHeader;
+    }
+
+    /**
+     * Gets the content of the packet IP header, encoded from the fields of this packet.
+     *
+     * @return the content of the packet IP header.
+     */
+    @Override
+    public byte[] getHeaderData()
+    {
+        final byte[] header = new byte[Ipv6HeaderView.HEADER_LENGTH];
+        this.writeHeader(ByteBuffer.wrap(header), 0);
+        return header;
+    }
+
+    /**
+     * Gets the total header length.
+     *
+     * @return the IP header length, in bytes.
      */
-    public GenericIp6Packet()
+    @Override
+    public int getHeaderLength()
     {
+        return Ipv6HeaderView.HEADER_LENGTH;
+    }
 
+    /**
+     * Gets the content of the packet payload. A copy of the internal array is made to avoid external modification.
+     *
+     * @return the content of the packet payload.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        return Arrays.copyOf(this.payloadData, this.payloadData.length);
+    }
+
+    /**
+     * Sets the content of the packet payload. A copy of the array argument is made to avoid external modification.
+     *
+     * @param payloadData The content of the packet payload
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws PayloadSizeLimitException if the payload is longer than {@link #MAX_PAYLOAD_LENGTH}.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.checkPayloadLength(payloadData.length);
+
+        this.payloadData = Arrays.copyOf(payloadData, payloadData.length);
+    }
+
+    /**
+     * Gets the payload length.
+     *
+     * @return the payload length, in bytes.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return this.payloadData.length;
+    }
+
+    /**
+     * Returns the entire packet represented in bytes, encoded into one new array.
+     *
+     * @return the entire packet (header followed by content).
+     */
+    @Override
+    public byte[] getPacketData()
+    {
+        final byte[] data = new byte[this.getPacketLength()];
+        this.writePacketData(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Writes the entire packet (header followed by payload) into the buffer at its position and advances the
+     * position, encoding the header in place.
+     *
+     * @param buffer The buffer to write the packet into
+     *
+     * @return the number of bytes written (the packet length).
+     *
+     * @throws BufferOverflowException if the buffer does not have room for the packet, in which case nothing is
+     *     written.
+     */
+    @Override
+    public int writePacketData(final ByteBuffer buffer)
+    {
+        final int length = this.getPacketLength();
+        if(buffer.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        final int start = buffer.position();
+        this.writeHeader(buffer, start);
+        buffer.position(start + Ipv6HeaderView.HEADER_LENGTH);
+        this.writePayloadData(buffer);
+        return length;
+    }
+
+    /**
+     * Writes the payload into the buffer at its position and advances the position. The buffer has room for it.
+     * Subclasses that encode their payload override this along with {@link #getPayloadData()} and
+     * {@link #getPayloadLength()}.
+     *
+     * @param buffer The buffer to write the payload into
+     */
+    protected void writePayloadData(final ByteBuffer buffer)
+    {
+        buffer.put(this.payloadData);
+    }
+
+    /**
+     * Sets the packet source address, which must be an IPv6 address.
+     *
+     * @param sourceAddress The source address that the packet originated from
+     *
+     * @return {@code true} if this packet is of source {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and
+     *     setting the address is allowed, {@code false} otherwise.
+     *
+     * @throws FinalizedPacketException if this packet is of source
+     *     {@link io.oddsource.java.net.socket.Packet.Source#INCOMING} and was finalized prior to the invocation of this
+     *     method.
+     * @throws IllegalArgumentException if the address is not an IPv6 address.
+     */
+    @Override
+    public boolean setSourceAddress(final InetAddress sourceAddress) throws FinalizedPacketException
+    {
+        if(sourceAddress != null && !(sourceAddress instanceof Inet6Address))
+        {
+            throw new IllegalArgumentException("Parameter sourceAddress must be an IPv6 address!");
+        }
+
+        return super.setSourceAddress(sourceAddress);
+    }
+
+    /**
+     * Sets the packet destination address, which must be an IPv6 address.
+     *
+     * @param destinationAddress The packet destination address
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv6 address.
+     */
+    @Override
+    public void setDestinationAddress(final InetAddress destinationAddress) throws FinalizedPacketException
+    {
+        if(destinationAddress != null && !(destinationAddress instanceof Inet6Address))
+        {
+            throw new IllegalArgumentException("Parameter destinationAddress must be an IPv6 address!");
+        }
+
+        super.setDestinationAddress(destinationAddress);
+    }
+
+    /**
+     * Throws an exception if this packet has been finalized.
+     *
+     * @throws FinalizedPacketException if this packet has been finalized.
+     */
+    protected final void checkNotFinalized() throws FinalizedPacketException
+    {
+        if(this.isFinalized())
+        {
+            throw new FinalizedPacketException();
+        }
+    }
+
+    /**
+     * Throws an exception if a payload of the length would be too long.
+     *
+     * @param payloadLength The payload length, in bytes
+     *
+     * @throws PayloadSizeLimitException if the payload would be longer than {@link #MAX_PAYLOAD_LENGTH}.
+     */
+    protected final void checkPayloadLength(final int payloadLength) throws PayloadSizeLimitException
+    {
+        if(payloadLength > GenericIp6Packet.MAX_PAYLOAD_LENGTH)
+        {
+            throw new PayloadSizeLimitException(GenericIp6Packet.MAX_PAYLOAD_LENGTH);
+        }
+    }
+
+    /**
+     * Gets the bytes of an address of this packet, or of the unspecified address {@code ::} if it is not known.
+     *
+     * @param address The address
+     *
+     * @return the sixteen bytes of the address.
+     */
+    protected static byte[] getAddressBytes(final InetAddress address)
+    {
+        return address == null ? GenericIp6Packet.ANY_ADDRESS.clone() : address.getAddress();
+    }
+
+    private void writeHeader(final ByteBuffer buffer, final int offset)
+    {
+        final Ipv6HeaderView header = new Ipv6HeaderView().wrap(buffer, offset).clear();
+        header.setTrafficClass(this.trafficClass);
+        header.setFlowLabel(this.flowLabel);
+        header.setPayloadLength(this.getPayloadLength());
+        header.setNextHeader(this.nextHeader);
+        header.setHopLimit(this.getHopLimit() == 0 ? Packet.MIN_HOP_LIMIT : this.getHopLimit());
+        header.setSourceAddress(GenericIp6Packet.getAddressBytes(this.getSourceAddress()));
+        header.setDestinationAddress(GenericIp6Packet.getAddressBytes(this.getDestinationAddress()));
     }
 }
@@ -15,20 +15,531 @@
  */
 package io.oddsource.java.net.socket.ip6;
 
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.oddsource.java.net.socket.IcmpTemplate;
+import io.oddsource.java.net.socket.IcmpView;
+import io.oddsource.java.net.socket.InternetChecksum;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+
 /**
- * Class description here. TODO
+ * An ICMPv6 packet (RFC 4443): an IPv6 packet whose payload is an ICMPv6 message, which consists of a type, a code, a
+ * checksum, four bytes whose meaning depends on the type (the identifier and sequence number of echo messages, the
+ * MTU of packet-too-big errors, the pointer of parameter problems) and a body. The checksum covers a pseudo-header of
+ * the source and destination addresses, and is computed with the unspecified address {@code ::} for addresses that are
+ * not known; this is harmless when sending, because the kernel always computes the checksum of messages sent on ICMPv6
+ * raw sockets.<br>
+ * <br>
+ * ICMPv6 raw sockets deliver only the message, without the IPv6 header, so received messages are usually decoded with
+ * {@link #decodeMessage(ByteBuffer, int, int, InetAddress)}. For sending many echo requests,
+ * {@link #createTemplate(boolean)} precomputes the message so that each probe only patches its identifier, sequence
+ * number and checksum.
  *
  * @author Nick Williams
  * @version 1.0.0
  * @since 1.0.0
  */
-public class Icmp6Packet
+public class Icmp6Packet extends GenericIp6Packet
 {
+    /**
+     * The next header number of ICMPv6.
+     */
+    public static final int NEXT_HEADER = 58;
+
+    /**
+     * The type of destination-unreachable errors.
+     */
+    public static final int TYPE_DESTINATION_UNREACHABLE = 1;
+
+    /**
+     * The type of packet-too-big errors.
+     */
+    public static final int TYPE_PACKET_TOO_BIG = 2;
+
+    /**
+     * The type of time-exceeded errors.
+     */
+    public static final int TYPE_TIME_EXCEEDED = 3;
+
+    /**
+     * The type of parameter-problem errors.
+     */
+    public static final int TYPE_PARAMETER_PROBLEM = 4;
+
+    /**
+     * The type of echo requests.
+     */
+    public static final int TYPE_ECHO_REQUEST = 128;
+
+    /**
+     * The type of echo replies.
+     */
+    public static final int TYPE_ECHO_REPLY = 129;
+
+    /**
+     * The destination-unreachable code for a destination with no route.
+     */
+    public static final int CODE_NO_ROUTE = 0;
+
+    /**
+     * The destination-unreachable code for communication that is administratively prohibited.
+     */
+    public static final int CODE_ADMINISTRATIVELY_PROHIBITED = 1;
+
+    /**
+     * The destination-unreachable code for an unreachable address.
+     */
+    public static final int CODE_ADDRESS_UNREACHABLE = 3;
+
+    /**
+     * The destination-unreachable code for an unreachable port.
+     */
+    public static final int CODE_PORT_UNREACHABLE = 4;
+
+    /**
+     * The time-exceeded code for a hop limit that reached zero in transit.
+     */
+    public static final int CODE_HOP_LIMIT_EXCEEDED = 0;
+
+    /**
+     * The time-exceeded code for fragment reassembly that timed out.
+     */
+    public static final int CODE_REASSEMBLY_TIME_EXCEEDED = 1;
+
+    private static final int BYTE_MAX = 0xFF;
+
+    private static final int SHORT_MAX = 0xFFFF;
+
+    private static final int SHORT_BITS = 16;
+
+    private static final int FIRST_INFORMATIONAL_TYPE = 128;
+
+    private int type;
+
+    private int code;
+
+    private int restOfHeader;
+
+    private byte[] body = new byte[0];
+
+    private boolean checksumValid = true;
+
     /**
      * Constructor.
+     *
+     * @param source Whether this is an incoming or outgoing packet.
+     */
+    public Icmp6Packet(final Packet.Source source)
+    {
+        super(source);
+        super.setNextHeader(Icmp6Packet.NEXT_HEADER);
+    }
+
+    /**
+     * Decodes a received ICMPv6 packet, including its IPv6 header, into a new finalized incoming packet.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     *
+     * @return the packet.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid ICMPv6 packet or is truncated.
+     */
+    public static Icmp6Packet decode(final ByteBuffer buffer, final int offset, final int length)
+        throws MalformedPacketException
+    {
+        final Icmp6Packet packet = new Icmp6Packet(Packet.Source.INCOMING);
+        packet.decode(buffer, offset, length, false);
+        packet.finalizePacket();
+        return packet;
+    }
+
+    /**
+     * Decodes an ICMPv6 message received on an ICMPv6 raw socket, which delivers the message without the IPv6 header,
+     * into a new finalized incoming packet. The destination address and hop limit are unknown. The kernel verifies the
+     * checksum of ICMPv6 messages before delivering them to raw sockets, so {@link #isChecksumValid()} is always
+     * {@code true} for messages decoded this way.
+     *
+     * @param buffer The buffer holding the message
+     * @param offset The absolute offset of the message in the buffer
+     * @param length The number of bytes received
+     * @param sourceAddress The address the message was received from
+     *
+     * @return the packet.
+     *
+     * @throws IllegalArgumentException if the buffer or address is {@code null}, the address is not an IPv6 address or
+     *     the range is not within the buffer's limit.
+     * @throws MalformedPacketException if the message is shorter than an ICMPv6 header.
+     */
+    public static Icmp6Packet decodeMessage(final ByteBuffer buffer, final int offset, final int length,
+                                            final InetAddress sourceAddress)
+        throws MalformedPacketException
+    {
+        if(buffer == null)
+        {
+            throw new IllegalArgumentException("Parameter buffer cannot be null!");
+        }
+        if(offset < 0 || length < 0 || offset > buffer.limit() - length)
+        {
+            throw new IllegalArgumentException("Parameters offset and length must be within the buffer's limit!");
+        }
+
+        final Icmp6Packet packet = new Icmp6Packet(Packet.Source.INCOMING);
+        packet.setSourceAddress(sourceAddress);
+
+        final byte[] message = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            message[i] = buffer.get(offset + i);
+        }
+        packet.setPayloadData(message);
+        packet.checksumValid = true;
+        packet.finalizePacket();
+        return packet;
+    }
+
+    /**
+     * Decodes the received data into this packet, which must be an incoming packet that has not been finalized.
+     *
+     * @param buffer The buffer holding the packet
+     * @param offset The absolute offset of the packet in the buffer
+     * @param length The number of bytes received
+     * @param truncated Whether the packet may be shorter than its payload length
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or the range is not within its limit.
+     * @throws MalformedPacketException if the data is not a valid ICMPv6 packet or is truncated.
+     */
+    @Override
+    protected void decode(final ByteBuffer buffer, final int offset, final int length, final boolean truncated)
+        throws MalformedPacketException
+    {
+        super.decode(buffer, offset, length, truncated);
+        if(this.getNextHeader() != Icmp6Packet.NEXT_HEADER)
+        {
+            throw new MalformedPacketException("The next header is " + this.getNextHeader() + ", not ICMPv6.");
+        }
+    }
+
+    /**
+     * Sets the type of the header following the IPv6 header, which for ICMPv6 packets can only be
+     * {@link #NEXT_HEADER}.
+     *
+     * @param nextHeader The next header
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws IllegalArgumentException if the next header is not {@link #NEXT_HEADER}.
+     */
+    @Override
+    public void setNextHeader(final int nextHeader) throws FinalizedPacketException
+    {
+        if(nextHeader != Icmp6Packet.NEXT_HEADER)
+        {
+            throw new IllegalArgumentException("Parameter nextHeader must be " + Icmp6Packet.NEXT_HEADER + "!");
+        }
+
+        super.setNextHeader(nextHeader);
+    }
+
+    /**
+     * Gets the ICMPv6 message type.
+     *
+     * @return the type.
+     */
+    public int getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Sets the ICMPv6 message type.
+     *
+     * @param type The type, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setType(final int type) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(type < 0 || type > Icmp6Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter type must be from 0 to 255!");
+        }
+
+        this.type = type;
+    }
+
+    /**
+     * Gets the ICMPv6 message code, which refines the type.
+     *
+     * @return the code.
+     */
+    public int getCode()
+    {
+        return this.code;
+    }
+
+    /**
+     * Sets the ICMPv6 message code.
+     *
+     * @param code The code, from 0 to 255
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setCode(final int code) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(code < 0 || code > Icmp6Packet.BYTE_MAX)
+        {
+            throw new IllegalArgumentException("Parameter code must be from 0 to 255!");
+        }
+
+        this.code = code;
+    }
+
+    /**
+     * Gets the four bytes after the checksum, whose meaning depends on the type.
+     *
+     * @return the rest of the header, as a big-endian integer.
+     */
+    public int getRestOfHeader()
+    {
+        return this.restOfHeader;
+    }
+
+    /**
+     * Sets the four bytes after the checksum.
+     *
+     * @param restOfHeader The rest of the header, as a big-endian integer
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setRestOfHeader(final int restOfHeader) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.restOfHeader = restOfHeader;
+    }
+
+    /**
+     * Gets the identifier of an echo message.
+     *
+     * @return the identifier, from 0 to 65535.
+     */
+    public int getIdentifier()
+    {
+        return this.restOfHeader >>> Icmp6Packet.SHORT_BITS;
+    }
+
+    /**
+     * Sets the identifier of an echo message.
+     *
+     * @param identifier The identifier, from 0 to 65535 (higher bits are ignored)
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setIdentifier(final int identifier) throws FinalizedPacketException
+    {
+        this.setRestOfHeader(identifier << Icmp6Packet.SHORT_BITS | this.restOfHeader & Icmp6Packet.SHORT_MAX);
+    }
+
+    /**
+     * Gets the sequence number of an echo message.
+     *
+     * @return the sequence number, from 0 to 65535.
+     */
+    public int getSequenceNumber()
+    {
+        return this.restOfHeader & Icmp6Packet.SHORT_MAX;
+    }
+
+    /**
+     * Sets the sequence number of an echo message.
+     *
+     * @param sequenceNumber The sequence number, from 0 to 65535 (higher bits are ignored)
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     */
+    public void setSequenceNumber(final int sequenceNumber) throws FinalizedPacketException
+    {
+        this.setRestOfHeader(this.restOfHeader & ~Icmp6Packet.SHORT_MAX | sequenceNumber & Icmp6Packet.SHORT_MAX);
+    }
+
+    /**
+     * Gets the MTU of a packet-too-big error, or the pointer of a parameter-problem error, which is the offset of the
+     * offending byte in the quoted packet.
+     *
+     * @return the MTU or the pointer.
+     */
+    public long getMtuOrPointer()
+    {
+        return this.restOfHeader & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Gets the body of the message, which follows the eight-byte ICMPv6 header. A copy of the internal array is made
+     * to avoid external modification.
+     *
+     * @return the body.
+     */
+    public byte[] getBody()
+    {
+        return Arrays.copyOf(this.body, this.body.length);
+    }
+
+    /**
+     * Sets the body of the message. A copy of the array argument is made to avoid external modification.
+     *
+     * @param body The body
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws io.oddsource.java.net.socket.exception.PayloadSizeLimitException if the payload would be too long.
+     */
+    public void setBody(final byte[] body) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        this.checkPayloadLength(IcmpView.HEADER_LENGTH + body.length);
+
+        this.body = Arrays.copyOf(body, body.length);
+    }
+
+    /**
+     * Indicates whether the checksum of a decoded message was correct. Outgoing messages always have a correct
+     * checksum, because it is computed whenever the payload is encoded.
+     *
+     * @return {@code true} if the checksum was correct, {@code false} otherwise.
+     */
+    public boolean isChecksumValid()
+    {
+        return this.checksumValid;
+    }
+
+    /**
+     * Indicates whether the message is an error, whose body quotes the packet that caused it.
+     *
+     * @return {@code true} for error messages (types 0 to 127), {@code false} for informational messages.
+     */
+    public boolean isError()
+    {
+        return this.type < Icmp6Packet.FIRST_INFORMATIONAL_TYPE;
+    }
+
+    /**
+     * Decodes the packet quoted in the body of an error message, which is usually truncated; the payload of the
+     * returned packet is what was quoted of it.
+     *
+     * @return the quoted packet, finalized, or {@code null} if this message is not an error.
+     *
+     * @throws MalformedPacketException if the body does not start with a valid IPv6 header.
+     */
+    public GenericIp6Packet getQuotedPacket() throws MalformedPacketException
+    {
+        if(!this.isError())
+        {
+            return null;
+        }
+
+        final GenericIp6Packet quoted = new GenericIp6Packet(Packet.Source.INCOMING);
+        quoted.decode(ByteBuffer.wrap(this.body), 0, this.body.length, true);
+        quoted.finalizePacket();
+        return quoted;
+    }
+
+    /**
+     * Gets the ICMPv6 message, encoded from the fields of this packet with its checksum.
+     *
+     * @return the content of the packet payload.
+     */
+    @Override
+    public byte[] getPayloadData()
+    {
+        final byte[] data = new byte[this.getPayloadLength()];
+        this.writePayloadData(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Decodes an ICMPv6 message into the fields of this packet. The checksum is verified against the addresses of
+     * this packet, which should therefore be set first.
+     *
+     * @param payloadData The ICMPv6 message
+     *
+     * @throws FinalizedPacketException if this packet was finalized prior to the invocation of this method.
+     * @throws MalformedPacketException if the message is shorter than an ICMPv6 header.
+     * @throws io.oddsource.java.net.socket.exception.PayloadSizeLimitException if the payload is too long.
+     */
+    @Override
+    public void setPayloadData(final byte[] payloadData) throws FinalizedPacketException
+    {
+        this.checkNotFinalized();
+        if(payloadData.length < IcmpView.HEADER_LENGTH)
+        {
+            throw new MalformedPacketException("The message is shorter than an ICMPv6 header.");
+        }
+        this.checkPayloadLength(payloadData.length);
+
+        final IcmpView view = new IcmpView().wrap(ByteBuffer.wrap(payloadData), 0);
+        this.type = view.getType();
+        this.code = view.getCode();
+        this.restOfHeader = view.getRestOfHeader();
+        this.body = Arrays.copyOfRange(payloadData, IcmpView.HEADER_LENGTH, payloadData.length);
+        this.checksumValid = view.isChecksumValid(
+            payloadData.length, InternetChecksum.pseudoHeaderSum(this, Icmp6Packet.NEXT_HEADER)
+        );
+    }
+
+    /**
+     * Gets the payload length.
+     *
+     * @return the payload length, in bytes.
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return IcmpView.HEADER_LENGTH + this.body.length;
+    }
+
+    /**
+     * Encodes the ICMPv6 message into the buffer at its position, with its checksum, and advances the position.
+     *
+     * @param buffer The buffer to write the payload into
+     */
+    @Override
+    protected void writePayloadData(final ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        final int length = this.getPayloadLength();
+        final IcmpView view = new IcmpView().wrap(buffer, start);
+        view.setType(this.type);
+        view.setCode(this.code);
+        view.setRestOfHeader(this.restOfHeader);
+        buffer.position(start + IcmpView.HEADER_LENGTH);
+        buffer.put(this.body);
+        view.updateChecksum(length, InternetChecksum.pseudoHeaderSum(this, Icmp6Packet.NEXT_HEADER));
+    }
+
+    /**
+     * Creates a template from the current fields of this packet, normally an echo request, for sending many probes
+     * that differ only in identifier and sequence number. The checksums of the probes are correct for the addresses of
+     * this packet at the time the template is created.
+     *
+     * @param includeIpHeader Whether the probes include the IPv6 header, for sockets that include IP headers, or are
+     *     only the ICMPv6 message, for ICMPv6 raw sockets
+     *
+     * @return the template.
      */
-    public Icmp6Packet()
+    public IcmpTemplate createTemplate(final boolean includeIpHeader)
     {
+        final int pseudoHeaderSum = InternetChecksum.pseudoHeaderSum(this, Icmp6Packet.NEXT_HEADER);
+        if(includeIpHeader)
+        {
+            return new IcmpTemplate(this.getPacketData(), this.getHeaderLength(), pseudoHeaderSum);
+        }
 
+        return new IcmpTemplate(this.getPayloadData(), 0, pseudoHeaderSum);
     }
 }
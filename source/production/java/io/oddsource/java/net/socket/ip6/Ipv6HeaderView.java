@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip6;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import io.oddsource.java.net.socket.HeaderView;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.IllegalHopLimitException;
+
+/**
+ * A flyweight view of an IPv6 header (RFC 8200) in a buffer, such as a packet captured from a packet ring or built
+ * for a packet socket. IPv6 raw sockets do not deliver the IPv6 header, so packets received on them start with the
+ * payload instead. The accessors are named like those of {@link Packet}, so code written against either reads the
+ * same. Extension headers are not walked: the payload offset is the offset of the first header after the fixed
+ * header, whose type is {@link #getNextHeader()}.
+ *
+ * @see HeaderView
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class Ipv6HeaderView extends HeaderView
+{
+    /**
+     * The length of the fixed header.
+     */
+    public static final int HEADER_LENGTH = 40;
+
+    /**
+     * The length of an IPv6 address.
+     */
+    public static final int ADDRESS_LENGTH = 16;
+
+    private static final int VERSION = 6;
+
+    private static final int VERSION_SHIFT = 28;
+
+    private static final int TRAFFIC_CLASS_SHIFT = 20;
+
+    private static final int TRAFFIC_CLASS_MASK = 0xFF;
+
+    private static final int FLOW_LABEL_MASK = 0xFFFFF;
+
+    private static final int WORD_SIZE = 4;
+
+    private static final int VERSION_CLASS_AND_LABEL_INDEX = 0;
+
+    private static final int PAYLOAD_LENGTH_INDEX = 4;
+
+    private static final int NEXT_HEADER_INDEX = 6;
+
+    private static final int HOP_LIMIT_INDEX = 7;
+
+    private static final int SOURCE_ADDRESS_INDEX = 8;
+
+    private static final int DESTINATION_ADDRESS_INDEX = 24;
+
+    /**
+     * Constructor. The view must be wrapped around a buffer with {@link #wrap(ByteBuffer, int)} before it is used.
+     */
+    public Ipv6HeaderView()
+    {
+        super();
+    }
+
+    /**
+     * Moves this view to the IPv6 header at the offset in the buffer. The version is not checked.
+     *
+     * @param buffer The buffer holding the header
+     * @param offset The absolute offset of the header in the buffer
+     *
+     * @return this view.
+     *
+     * @throws IllegalArgumentException if the buffer is {@code null} or too short for the header.
+     */
+    public Ipv6HeaderView wrap(final ByteBuffer buffer, final int offset)
+    {
+        this.attach(buffer, offset, Ipv6HeaderView.HEADER_LENGTH);
+        return this;
+    }
+
+    /**
+     * Zeros the header and writes version 6 and the default hop limit, ready for the rest of the fields to be set.
+     *
+     * @return this view.
+     */
+    public Ipv6HeaderView clear()
+    {
+        for(int i = 0; i < Ipv6HeaderView.HEADER_LENGTH; i += Ipv6HeaderView.WORD_SIZE)
+        {
+            this.putInt(i, 0);
+        }
+        this.putInt(
+            Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX, Ipv6HeaderView.VERSION << Ipv6HeaderView.VERSION_SHIFT
+        );
+        this.putByte(Ipv6HeaderView.HOP_LIMIT_INDEX, Packet.DEFAULT_HOP_LIMIT);
+        return this;
+    }
+
+    /**
+     * Get the IP version, which is 6 for a valid header.
+     *
+     * @return the version.
+     */
+    public int getVersion()
+    {
+        return this.getInt(Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX) >>> Ipv6HeaderView.VERSION_SHIFT;
+    }
+
+    /**
+     * Get the length of the fixed header.
+     *
+     * @return the header length (40 bytes).
+     */
+    @Override
+    public int getHeaderLength()
+    {
+        return Ipv6HeaderView.HEADER_LENGTH;
+    }
+
+    /**
+     * Get the traffic class, which holds the differentiated services code point and the explicit congestion
+     * notification bits.
+     *
+     * @return the traffic class.
+     */
+    public int getTrafficClass()
+    {
+        return this.getInt(Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX) >>> Ipv6HeaderView.TRAFFIC_CLASS_SHIFT &
+               Ipv6HeaderView.TRAFFIC_CLASS_MASK;
+    }
+
+    /**
+     * Set the traffic class, keeping the version and flow label.
+     *
+     * @param trafficClass The traffic class, of which only the low eight bits are written
+     */
+    public void setTrafficClass(final int trafficClass)
+    {
+        final int word = this.getInt(Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX);
+        this.putInt(
+            Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX,
+            word & ~(Ipv6HeaderView.TRAFFIC_CLASS_MASK << Ipv6HeaderView.TRAFFIC_CLASS_SHIFT) |
+            (trafficClass & Ipv6HeaderView.TRAFFIC_CLASS_MASK) << Ipv6HeaderView.TRAFFIC_CLASS_SHIFT
+        );
+    }
+
+    /**
+     * Get the flow label.
+     *
+     * @return the flow label, a 20-bit number.
+     */
+    public int getFlowLabel()
+    {
+        return this.getInt(Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX) & Ipv6HeaderView.FLOW_LABEL_MASK;
+    }
+
+    /**
+     * Set the flow label, keeping the version and traffic class.
+     *
+     * @param flowLabel The flow label, of which only the low 20 bits are written
+     */
+    public void setFlowLabel(final int flowLabel)
+    {
+        final int word = this.getInt(Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX);
+        this.putInt(
+            Ipv6HeaderView.VERSION_CLASS_AND_LABEL_INDEX,
+            word & ~Ipv6HeaderView.FLOW_LABEL_MASK | flowLabel & Ipv6HeaderView.FLOW_LABEL_MASK
+        );
+    }
+
+    /**
+     * Get the payload length, which includes any extension headers.
+     *
+     * @return the payload length, in bytes.
+     */
+    public int getPayloadLength()
+    {
+        return this.getUnsignedShort(Ipv6HeaderView.PAYLOAD_LENGTH_INDEX);
+    }
+
+    /**
+     * Set the payload length, which includes any extension headers.
+     *
+     * @param payloadLength The payload length, in bytes, of which only the low 16 bits are written
+     */
+    public void setPayloadLength(final int payloadLength)
+    {
+        this.putShort(Ipv6HeaderView.PAYLOAD_LENGTH_INDEX, payloadLength);
+    }
+
+    /**
+     * Get the total length of the packet (header + payload).
+     *
+     * @return the packet length, in bytes.
+     */
+    public int getPacketLength()
+    {
+        return Ipv6HeaderView.HEADER_LENGTH + this.getPayloadLength();
+    }
+
+    /**
+     * Get the type of the header after the fixed header: an extension header or the protocol of the payload.
+     *
+     * @return the next header type.
+     */
+    public int getNextHeader()
+    {
+        return this.getUnsignedByte(Ipv6HeaderView.NEXT_HEADER_INDEX);
+    }
+
+    /**
+     * Set the type of the header after the fixed header.
+     *
+     * @param nextHeader The next header type, of which only the low eight bits are written
+     */
+    public void setNextHeader(final int nextHeader)
+    {
+        this.putByte(Ipv6HeaderView.NEXT_HEADER_INDEX, nextHeader);
+    }
+
+    /**
+     * Get the hop limit, like {@link Packet#getHopLimit()}.
+     *
+     * @return the hop limit, from 0 to 255.
+     */
+    public short getHopLimit()
+    {
+        return (short) this.getUnsignedByte(Ipv6HeaderView.HOP_LIMIT_INDEX);
+    }
+
+    /**
+     * Set the hop limit, like {@link Packet#setHopLimit(short)}.
+     *
+     * @param hopLimit The hop limit
+     *
+     * @throws IllegalHopLimitException if {@code hopLimit} was not an integer between 1 and 255 (inclusive).
+     */
+    public void setHopLimit(final short hopLimit) throws IllegalHopLimitException
+    {
+        if(hopLimit < Packet.MIN_HOP_LIMIT || hopLimit > Packet.MAX_HOP_LIMIT)
+        {
+            throw new IllegalHopLimitException();
+        }
+
+        this.putByte(Ipv6HeaderView.HOP_LIMIT_INDEX, hopLimit);
+    }
+
+    /**
+     * Gets the source address. This allocates an address; {@link #getSourceAddress(byte[])} does not.
+     *
+     * @return the source address.
+     */
+    public InetAddress getSourceAddress()
+    {
+        return this.getAddress(Ipv6HeaderView.SOURCE_ADDRESS_INDEX);
+    }
+
+    /**
+     * Copies the source address into an array, without allocating.
+     *
+     * @param address The array to copy the address into, at least 16 bytes long
+     *
+     * @return the length of the address (16).
+     */
+    public int getSourceAddress(final byte[] address)
+    {
+        this.getBytes(Ipv6HeaderView.SOURCE_ADDRESS_INDEX, address, Ipv6HeaderView.ADDRESS_LENGTH);
+        return Ipv6HeaderView.ADDRESS_LENGTH;
+    }
+
+    /**
+     * Sets the source address.
+     *
+     * @param sourceAddress The source address
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv6 address.
+     */
+    public void setSourceAddress(final InetAddress sourceAddress)
+    {
+        this.setSourceAddress(Ipv6HeaderView.toBytes(sourceAddress, "sourceAddress"));
+    }
+
+    /**
+     * Sets the source address.
+     *
+     * @param sourceAddress The source address, 16 bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not 16 bytes long.
+     */
+    public void setSourceAddress(final byte[] sourceAddress)
+    {
+        this.putBytes(Ipv6HeaderView.SOURCE_ADDRESS_INDEX, sourceAddress, Ipv6HeaderView.ADDRESS_LENGTH);
+    }
+
+    /**
+     * Gets the destination address. This allocates an address; {@link #getDestinationAddress(byte[])} does not.
+     *
+     * @return the destination address.
+     */
+    public InetAddress getDestinationAddress()
+    {
+        return this.getAddress(Ipv6HeaderView.DESTINATION_ADDRESS_INDEX);
+    }
+
+    /**
+     * Copies the destination address into an array, without allocating.
+     *
+     * @param address The array to copy the address into, at least 16 bytes long
+     *
+     * @return the length of the address (16).
+     */
+    public int getDestinationAddress(final byte[] address)
+    {
+        this.getBytes(Ipv6HeaderView.DESTINATION_ADDRESS_INDEX, address, Ipv6HeaderView.ADDRESS_LENGTH);
+        return Ipv6HeaderView.ADDRESS_LENGTH;
+    }
+
+    /**
+     * Sets the destination address.
+     *
+     * @param destinationAddress The destination address
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not an IPv6 address.
+     */
+    public void setDestinationAddress(final InetAddress destinationAddress)
+    {
+        this.setDestinationAddress(Ipv6HeaderView.toBytes(destinationAddress, "destinationAddress"));
+    }
+
+    /**
+     * Sets the destination address.
+     *
+     * @param destinationAddress The destination address, 16 bytes long
+     *
+     * @throws IllegalArgumentException if the address is {@code null} or not 16 bytes long.
+     */
+    public void setDestinationAddress(final byte[] destinationAddress)
+    {
+        this.putBytes(Ipv6HeaderView.DESTINATION_ADDRESS_INDEX, destinationAddress, Ipv6HeaderView.ADDRESS_LENGTH);
+    }
+
+    /**
+     * Converts an address, keeping IPv4-mapped addresses IPv6 as they are on the wire.
+     */
+    private InetAddress getAddress(final int index)
+    {
+        final byte[] address = new byte[Ipv6HeaderView.ADDRESS_LENGTH];
+        this.getBytes(index, address, Ipv6HeaderView.ADDRESS_LENGTH);
+        try
+        {
+            return Inet6Address.getByAddress(null, address, -1);
+        }
+        catch(final UnknownHostException e)
+        {
+            throw new AssertionError("The address has the wrong length.", e);
+        }
+    }
+
+    private static byte[] toBytes(final InetAddress address, final String name)
+    {
+        if(!(address instanceof Inet6Address))
+        {
+            throw new IllegalArgumentException("Parameter " + name + " must be an IPv6 address!");
+        }
+
+        return address.getAddress();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+
+/**
+ * Chooses the implementation of the ones' complement sums of {@link InternetChecksum}. This version, for Java 22 and
+ * newer, chooses the Vector API for ranges of at least {@value #VECTOR_THRESHOLD} bytes when the
+ * {@code jdk.incubator.vector} module is in the boot layer and the preferred vector holds at least four ints, unless
+ * the system property {@value #CHECKSUM_PROPERTY} is {@code scalar}, and the scalar loop otherwise.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ChecksumBackend
+{
+    static final String CHECKSUM_PROPERTY = "io.oddsource.java.net.socket.checksum";
+
+    // below this, setting up the vector loop costs more than it saves
+    static final int VECTOR_THRESHOLD = 256;
+
+    private static final boolean VECTOR = ChecksumBackend.isVectorAvailable();
+
+    /**
+     * Constructor.
+     */
+    private ChecksumBackend()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Indicates whether sums are computed with the Vector API.
+     *
+     * @return {@code true} if long ranges are summed with the Vector API.
+     */
+    static boolean isVectorized()
+    {
+        return ChecksumBackend.VECTOR;
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of an array. The range has been checked.
+     *
+     * @param data The data
+     * @param offset The offset of the range in the array
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int sum(final byte[] data, final int offset, final int length)
+    {
+        if(ChecksumBackend.VECTOR && length >= ChecksumBackend.VECTOR_THRESHOLD)
+        {
+            final int tail = VectorChecksum.tailLength(length);
+            return InternetChecksum.add(
+                VectorChecksum.sum(MemorySegment.ofArray(data), offset, length - tail),
+                InternetChecksum.scalarSum(data, offset + length - tail, tail)
+            );
+        }
+        return InternetChecksum.scalarSum(data, offset, length);
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of a buffer. The range has been checked.
+     *
+     * @param buffer The buffer
+     * @param offset The absolute offset of the range in the buffer
+     * @param length The length of the range, in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int sum(final ByteBuffer buffer, final int offset, final int length)
+    {
+        if(ChecksumBackend.VECTOR && length >= ChecksumBackend.VECTOR_THRESHOLD)
+        {
+            final int tail = VectorChecksum.tailLength(length);
+            return InternetChecksum.add(
+                VectorChecksum.sum(MemorySegment.ofBuffer(buffer.duplicate().clear()), offset, length - tail),
+                InternetChecksum.scalarSum(buffer, offset + length - tail, tail)
+            );
+        }
+        return InternetChecksum.scalarSum(buffer, offset, length);
+    }
+
+    private static boolean isVectorAvailable()
+    {
+        if("scalar".equalsIgnoreCase(System.getProperty(ChecksumBackend.CHECKSUM_PROPERTY)))
+        {
+            return false;
+        }
+
+        // incubator modules are only resolved when added with --add-modules
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+        {
+            return false;
+        }
+
+        try
+        {
+            MethodHandles.lookup().ensureInitialized(VectorChecksum.class);
+            return VectorChecksum.isEfficient();
+        }
+        catch(final IllegalAccessException | LinkageError e)
+        {
+            return false;
+        }
+    }
+}
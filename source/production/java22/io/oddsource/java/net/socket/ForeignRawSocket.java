@@ -0,0 +1,862 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.invoke.MethodHandle;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import io.oddsource.java.net.socket.exception.RawSocketException;
+
+/**
+ * A raw socket that makes its per-call system calls ({@code socket}, {@code setsockopt}, {@code getsockopt},
+ * {@code sendto}, {@code recvfrom}, {@code poll}, {@code shutdown} and {@code close}) through Foreign Function and
+ * Memory API downcalls instead of JNI. Packets in direct buffers and native segments are transferred in place, and
+ * packets in arrays and heap segments are copied through native memory. The arguments of each call, and those copies,
+ * are staged in native memory allocated once per thread. Everything else, including batches, rings, filters,
+ * timestamps, selectors and parking receives, is inherited from the JNI implementation, which works on the same file
+ * descriptor.<br>
+ * <br>
+ * The overridden methods behave exactly as the native methods they replace, including throwing
+ * {@link RawSocketException} from methods that do not declare it. Constants the native library does not export are
+ * the Linux values, so {@link RawSocketBackend} only chooses this class on Linux. Sockets it creates can be cast to
+ * this class to send from and receive into {@link MemorySegment}s.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@SuppressWarnings("restricted")
+public final class ForeignRawSocket extends RawSocketImpl
+{
+    /*
+     * Linux values (see sys/socket.h, poll.h and errno.h), which the native library does not export.
+     */
+    private static final int SOCK_RAW = 3;
+
+    private static final int SHUT_RDWR = 2;
+
+    private static final int MSG_DONTWAIT = 0x40;
+
+    private static final short POLLIN = 0x1;
+
+    private static final short POLLOUT = 0x4;
+
+    private static final short POLLHUP = 0x10;
+
+    private static final short POLLNVAL = 0x20;
+
+    private static final int EINTR = 4;
+
+    private static final int EAGAIN = 11;
+
+    private static final int EOPNOTSUPP = 95;
+
+    private static final int ENOTCONN = 107;
+
+    /*
+     * Sizes and offsets of struct sockaddr_in, struct sockaddr_in6, struct pollfd and struct timeval.
+     */
+    private static final int IPV4_ADDRESS_LENGTH = 4;
+
+    private static final int IPV6_ADDRESS_LENGTH = 16;
+
+    private static final int IPV4_SOCKET_ADDRESS_SIZE = 16;
+
+    private static final long IPV4_SOCKET_ADDRESS_OFFSET = 4;
+
+    private static final int IPV6_SOCKET_ADDRESS_SIZE = 28;
+
+    private static final long IPV6_SOCKET_ADDRESS_OFFSET = 8;
+
+    private static final long POLL_DESCRIPTOR_SIZE = 8;
+
+    private static final long POLL_EVENTS_OFFSET = 4;
+
+    private static final long POLL_RETURNED_EVENTS_OFFSET = 6;
+
+    private static final int TIME_VALUE_SIZE = 16;
+
+    private static final long TIME_VALUE_MICROSECONDS_OFFSET = 8;
+
+    private static final int INTEGER_SIZE = 4;
+
+    private static final int MILLISECONDS_PER_SECOND = 1000;
+
+    private static final int MICROSECONDS_PER_MILLISECOND = 1000;
+
+    private static final int MAXIMUM_MESSAGE_LENGTH = 1024;
+
+    private static final int MINIMUM_STAGING_SIZE = 2048;
+
+    private static final int ERROR = -1;
+
+    private static final String SEND_TIMED_OUT = "Send timed out.";
+
+    private static final String RECEIVE_TIMED_OUT = "Receive timed out.";
+
+    private static final Linker LINKER = Linker.nativeLinker();
+
+    private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+
+    private static final long ERRNO_OFFSET = ForeignRawSocket.CALL_STATE.byteOffset(
+        MemoryLayout.PathElement.groupElement("errno")
+    );
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final MethodHandle SOCKET = ForeignRawSocket.downcall(
+        "socket", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT)
+    );
+
+    private static final MethodHandle SET_SOCKET_OPTION = ForeignRawSocket.downcall(
+        "setsockopt", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT)
+    );
+
+    private static final MethodHandle GET_SOCKET_OPTION = ForeignRawSocket.downcall(
+        "getsockopt", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS)
+    );
+
+    private static final MethodHandle SEND_TO = ForeignRawSocket.downcall(
+        "sendto", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT)
+    );
+
+    private static final MethodHandle RECEIVE_FROM = ForeignRawSocket.downcall(
+        "recvfrom", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT, ADDRESS, ADDRESS)
+    );
+
+    private static final MethodHandle POLL = ForeignRawSocket.downcall(
+        "poll", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT)
+    );
+
+    private static final MethodHandle SHUTDOWN = ForeignRawSocket.downcall(
+        "shutdown", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT)
+    );
+
+    private static final MethodHandle CLOSE = ForeignRawSocket.downcall(
+        "close", FunctionDescriptor.of(JAVA_INT, JAVA_INT)
+    );
+
+    private static final MethodHandle DESCRIBE_ERROR = ForeignRawSocket.LINKER.downcallHandle(
+        ForeignRawSocket.find("strerror"), FunctionDescriptor.of(ADDRESS, JAVA_INT)
+    );
+
+    /**
+     * Constructor.
+     */
+    ForeignRawSocket()
+    {
+        super();
+    }
+
+    /**
+     * Sends the whole segment to the destination, waiting no longer than the send timeout. Native segments are sent in
+     * place, and heap segments are copied to native memory first.
+     *
+     * @param data The packet to send
+     * @param destination The address to send to
+     *
+     * @return the number of bytes sent, which is zero if the socket is non-blocking and could not send at once.
+     *
+     * @throws IOException if the socket is not open, the send times out or fails, or the socket is closed.
+     */
+    public int send(final MemorySegment data, final InetAddress destination) throws IOException
+    {
+        final byte[] address = destination.getAddress();
+
+        final int socket = this.beginTransfer();
+        try
+        {
+            return ForeignRawSocket.send(
+                ForeignRawSocket.SCRATCH.get(), socket, this.getWakeupDescriptor(), data, address,
+                this.getSendPollTimeout()
+            );
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+    }
+
+    /**
+     * Receives a packet into the start of the segment, waiting no longer than the receive timeout. Native segments are
+     * received into in place, and heap segments through native memory.
+     *
+     * @param data The segment to receive into
+     *
+     * @return the number of bytes received, which is zero if the socket is non-blocking and nothing was waiting.
+     *
+     * @throws IOException if the socket is not open, the receive times out or fails, or the socket is closed.
+     * @throws ReadOnlyBufferException if the segment is read-only.
+     */
+    public int receive(final MemorySegment data) throws IOException
+    {
+        if(data.isReadOnly())
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        final int socket = this.beginTransfer();
+        final int wakeup = this.getWakeupDescriptor();
+        final int received;
+        try
+        {
+            received = this.isParking() ?
+                       this.park(() -> ForeignRawSocket.receive(
+                           ForeignRawSocket.SCRATCH.get(), socket, wakeup, data, RawSocketImpl.NON_BLOCKING
+                       )) :
+                       ForeignRawSocket.receive(
+                           ForeignRawSocket.SCRATCH.get(), socket, wakeup, data, this.getReceivePollTimeout()
+                       );
+        }
+        finally
+        {
+            this.endTransfer();
+        }
+
+        this.checkClosed();
+        return received;
+    }
+
+    @Override
+    protected int open(final int family, final int protocol) throws IOException
+    {
+        final MemorySegment state = ForeignRawSocket.SCRATCH.get().state;
+        final int socket;
+        try
+        {
+            socket = (int) ForeignRawSocket.SOCKET.invokeExact(state, family, ForeignRawSocket.SOCK_RAW, protocol);
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        if(socket == ForeignRawSocket.ERROR)
+        {
+            throw ForeignRawSocket.error(state);
+        }
+
+        return socket;
+    }
+
+    @Override
+    protected void shutdown(final int socket) throws IOException
+    {
+        final MemorySegment state = ForeignRawSocket.SCRATCH.get().state;
+        final int result;
+        try
+        {
+            result = (int) ForeignRawSocket.SHUTDOWN.invokeExact(state, socket, ForeignRawSocket.SHUT_RDWR);
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        final int error = ForeignRawSocket.errno(state);
+        if(result == ForeignRawSocket.ERROR && error != ForeignRawSocket.ENOTCONN &&
+           error != ForeignRawSocket.EOPNOTSUPP)
+        {
+            throw ForeignRawSocket.error(state);
+        }
+    }
+
+    @Override
+    protected void close(final int socket) throws IOException
+    {
+        final MemorySegment state = ForeignRawSocket.SCRATCH.get().state;
+        final int result;
+        try
+        {
+            result = (int) ForeignRawSocket.CLOSE.invokeExact(state, socket);
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        if(result == ForeignRawSocket.ERROR)
+        {
+            throw ForeignRawSocket.error(state);
+        }
+    }
+
+    @Override
+    protected void setSocketOption(final int socket, final int level, final int option, final int value)
+    {
+        final Scratch scratch = ForeignRawSocket.SCRATCH.get();
+        scratch.value.set(JAVA_INT, 0, value);
+        ForeignRawSocket.setSocketOption(scratch, socket, level, option, ForeignRawSocket.INTEGER_SIZE);
+    }
+
+    @Override
+    protected int getSocketOption(final int socket, final int level, final int option)
+    {
+        final Scratch scratch = ForeignRawSocket.SCRATCH.get();
+        ForeignRawSocket.getSocketOption(scratch, socket, level, option, ForeignRawSocket.INTEGER_SIZE);
+        return scratch.value.get(JAVA_INT, 0);
+    }
+
+    @Override
+    protected void setTimeout(final int socket, final int option, final int milliseconds)
+    {
+        final Scratch scratch = ForeignRawSocket.SCRATCH.get();
+        scratch.value.set(JAVA_LONG, 0, milliseconds / ForeignRawSocket.MILLISECONDS_PER_SECOND);
+        scratch.value.set(
+            JAVA_LONG, ForeignRawSocket.TIME_VALUE_MICROSECONDS_OFFSET,
+            (long) (milliseconds % ForeignRawSocket.MILLISECONDS_PER_SECOND) *
+            ForeignRawSocket.MICROSECONDS_PER_MILLISECOND
+        );
+        ForeignRawSocket.setSocketOption(
+            scratch, socket, Constants.SOL_SOCKET, option, ForeignRawSocket.TIME_VALUE_SIZE
+        );
+    }
+
+    @Override
+    protected int getTimeout(final int socket, final int option)
+    {
+        final Scratch scratch = ForeignRawSocket.SCRATCH.get();
+        ForeignRawSocket.getSocketOption(
+            scratch, socket, Constants.SOL_SOCKET, option, ForeignRawSocket.TIME_VALUE_SIZE
+        );
+        return (int) (scratch.value.get(JAVA_LONG, 0) * ForeignRawSocket.MILLISECONDS_PER_SECOND +
+                      scratch.value.get(JAVA_LONG, ForeignRawSocket.TIME_VALUE_MICROSECONDS_OFFSET) /
+                      ForeignRawSocket.MICROSECONDS_PER_MILLISECOND);
+    }
+
+    @Override
+    protected int sendDirect(final int socket, final int wakeup, final ByteBuffer buffer, final int offset,
+                             final int length, final byte[] address, final int timeout) throws IOException
+    {
+        return ForeignRawSocket.send(
+            ForeignRawSocket.SCRATCH.get(), socket, wakeup, ForeignRawSocket.segment(buffer, offset, length), address,
+            timeout
+        );
+    }
+
+    @Override
+    protected int sendArray(final int socket, final int wakeup, final byte[] data, final int offset, final int length,
+                            final byte[] address, final int timeout) throws IOException
+    {
+        return ForeignRawSocket.send(
+            ForeignRawSocket.SCRATCH.get(), socket, wakeup, MemorySegment.ofArray(data).asSlice(offset, length),
+            address, timeout
+        );
+    }
+
+    @Override
+    protected int receiveDirect(final int socket, final int wakeup, final ByteBuffer buffer, final int offset,
+                                final int length, final int timeout) throws IOException
+    {
+        return ForeignRawSocket.receive(
+            ForeignRawSocket.SCRATCH.get(), socket, wakeup, ForeignRawSocket.segment(buffer, offset, length), timeout
+        );
+    }
+
+    @Override
+    protected int receiveArray(final int socket, final int wakeup, final byte[] data, final int offset,
+                               final int length, final int timeout) throws IOException
+    {
+        return ForeignRawSocket.receive(
+            ForeignRawSocket.SCRATCH.get(), socket, wakeup, MemorySegment.ofArray(data).asSlice(offset, length),
+            timeout
+        );
+    }
+
+    /*
+     * Views the bytes of the buffer from the absolute offset, without the intermediate buffer that slicing it makes.
+     */
+    private static MemorySegment segment(final ByteBuffer buffer, final int offset, final int length)
+    {
+        return MemorySegment.ofBuffer(buffer).asSlice(offset - buffer.position(), length);
+    }
+
+    /**
+     * Sends a segment, copying it to the thread's native memory first if it is a heap segment.
+     *
+     * @param scratch The calling thread's native memory
+     * @param socket The socket identifier / file descriptor
+     * @param wakeup The descriptor that closing the socket signals, or a negative value for none
+     * @param data The packet
+     * @param address The destination address bytes
+     * @param timeout The milliseconds to wait (zero meaning no timeout), {@link RawSocketImpl#NON_BLOCKING} to not
+     *     wait, or {@link RawSocketImpl#UNDEFINED} to block in the call instead
+     *
+     * @return the number of bytes sent.
+     *
+     * @throws IOException if the send times out or fails, or the socket is closed.
+     */
+    private static int send(final Scratch scratch, final int socket, final int wakeup, final MemorySegment data,
+                            final byte[] address, final int timeout) throws IOException
+    {
+        final int addressLength = ForeignRawSocket.socketAddress(scratch, address);
+        final MemorySegment packet = data.isNative() ? data : scratch.stage(data.byteSize()).copyFrom(data);
+        final long deadline = ForeignRawSocket.getDeadline(timeout);
+        ForeignRawSocket.await(
+            scratch, socket, wakeup, ForeignRawSocket.POLLOUT, timeout, ForeignRawSocket.SEND_TIMED_OUT
+        );
+
+        // after waiting, send without blocking, so that only the wait, which closing the socket wakes, ever blocks
+        final int flags = timeout == RawSocketImpl.UNDEFINED ? 0 : ForeignRawSocket.MSG_DONTWAIT;
+        long result;
+        while(true)
+        {
+            try
+            {
+                result = (long) ForeignRawSocket.SEND_TO.invokeExact(
+                    scratch.state, socket, packet, packet.byteSize(), flags, scratch.address, addressLength
+                );
+            }
+            catch(final Throwable e)
+            {
+                throw ForeignRawSocket.unexpected(e);
+            }
+
+            if(!ForeignRawSocket.retry(
+                scratch, result, socket, wakeup, ForeignRawSocket.POLLOUT, timeout, deadline,
+                ForeignRawSocket.SEND_TIMED_OUT
+            ))
+            {
+                break;
+            }
+        }
+
+        if(result == ForeignRawSocket.ERROR)
+        {
+            return ForeignRawSocket.transferError(scratch.state, timeout, ForeignRawSocket.SEND_TIMED_OUT);
+        }
+
+        return (int) result;
+    }
+
+    /**
+     * Receives into a segment, through the thread's native memory if it is a heap segment.
+     *
+     * @param scratch The calling thread's native memory
+     * @param socket The socket identifier / file descriptor
+     * @param wakeup The descriptor that closing the socket signals, or a negative value for none
+     * @param data The segment to receive into
+     * @param timeout The milliseconds to wait (zero meaning no timeout), {@link RawSocketImpl#NON_BLOCKING} to not
+     *     wait, or {@link RawSocketImpl#UNDEFINED} to block in the call instead
+     *
+     * @return the number of bytes received.
+     *
+     * @throws IOException if the receive times out or fails, or the socket is closed.
+     */
+    private static int receive(final Scratch scratch, final int socket, final int wakeup, final MemorySegment data,
+                               final int timeout) throws IOException
+    {
+        final MemorySegment packet = data.isNative() ? data : scratch.stage(data.byteSize());
+        final long deadline = ForeignRawSocket.getDeadline(timeout);
+        ForeignRawSocket.await(
+            scratch, socket, wakeup, ForeignRawSocket.POLLIN, timeout, ForeignRawSocket.RECEIVE_TIMED_OUT
+        );
+
+        // after waiting, receive without blocking, so that only the wait, which closing the socket wakes, ever blocks
+        final int flags = timeout == RawSocketImpl.UNDEFINED ? 0 : ForeignRawSocket.MSG_DONTWAIT;
+        long result;
+        while(true)
+        {
+            try
+            {
+                result = (long) ForeignRawSocket.RECEIVE_FROM.invokeExact(
+                    scratch.state, socket, packet, packet.byteSize(), flags, MemorySegment.NULL, MemorySegment.NULL
+                );
+            }
+            catch(final Throwable e)
+            {
+                throw ForeignRawSocket.unexpected(e);
+            }
+
+            if(!ForeignRawSocket.retry(
+                scratch, result, socket, wakeup, ForeignRawSocket.POLLIN, timeout, deadline,
+                ForeignRawSocket.RECEIVE_TIMED_OUT
+            ))
+            {
+                break;
+            }
+        }
+
+        if(result == ForeignRawSocket.ERROR)
+        {
+            return ForeignRawSocket.transferError(scratch.state, timeout, ForeignRawSocket.RECEIVE_TIMED_OUT);
+        }
+
+        if(packet != data)
+        {
+            MemorySegment.copy(packet, 0, data, 0, result);
+        }
+        return (int) result;
+    }
+
+    /**
+     * Decides whether a transfer that returned the result should be tried again: after an interruption, or after a
+     * wait that ended with the socket not ready after all (another thread got there first), once it is ready again.
+     *
+     * @param scratch The calling thread's native memory, holding the captured call state
+     * @param result The result of the transfer
+     * @param socket The socket identifier / file descriptor
+     * @param wakeup The descriptor that closing the socket signals, or a negative value for none
+     * @param events The events to wait for
+     * @param timeout The milliseconds to wait (zero meaning no timeout), or a negative value to not wait
+     * @param deadline The {@link System#nanoTime()} at which the timeout elapses
+     * @param timeoutMessage The message of the exception thrown when the wait times out
+     *
+     * @return whether to try the transfer again.
+     *
+     * @throws IOException if the wait times out or fails, or the socket is closed.
+     */
+    private static boolean retry(final Scratch scratch, final long result, final int socket, final int wakeup,
+                                 final short events, final int timeout, final long deadline,
+                                 final String timeoutMessage) throws IOException
+    {
+        if(result != ForeignRawSocket.ERROR)
+        {
+            return false;
+        }
+
+        final int error = ForeignRawSocket.errno(scratch.state);
+        if(error == ForeignRawSocket.EINTR)
+        {
+            return true;
+        }
+        if(error != ForeignRawSocket.EAGAIN || timeout < 0)
+        {
+            return false;
+        }
+
+        int wait = timeout;
+        if(timeout > 0)
+        {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(remaining <= 0)
+            {
+                throw new SocketTimeoutException(timeoutMessage);
+            }
+            wait = (int) remaining;
+        }
+
+        ForeignRawSocket.await(scratch, socket, wakeup, events, wait, timeoutMessage);
+        return true;
+    }
+
+    private static long getDeadline(final int timeout)
+    {
+        return timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0L;
+    }
+
+    /**
+     * Waits for the socket to become ready, unless the timeout says not to wait.
+     *
+     * @param scratch The calling thread's native memory
+     * @param socket The socket identifier / file descriptor
+     * @param wakeup The descriptor that closing the socket signals, or a negative value for none
+     * @param events The events to wait for
+     * @param timeout The milliseconds to wait (zero meaning no timeout), or a negative value to not wait
+     * @param timeoutMessage The message of the exception thrown when the wait times out
+     *
+     * @throws IOException if the wait times out or fails, or the socket is closed.
+     */
+    private static void await(final Scratch scratch, final int socket, final int wakeup, final short events,
+                              final int timeout, final String timeoutMessage) throws IOException
+    {
+        if(timeout < 0)
+        {
+            return;
+        }
+
+        final MemorySegment descriptors = scratch.descriptors;
+        descriptors.set(JAVA_INT, 0, socket);
+        descriptors.set(JAVA_SHORT, ForeignRawSocket.POLL_EVENTS_OFFSET, events);
+        descriptors.set(JAVA_SHORT, ForeignRawSocket.POLL_RETURNED_EVENTS_OFFSET, (short) 0);
+        descriptors.set(JAVA_INT, ForeignRawSocket.POLL_DESCRIPTOR_SIZE, wakeup);
+        descriptors.set(
+            JAVA_SHORT, ForeignRawSocket.POLL_DESCRIPTOR_SIZE + ForeignRawSocket.POLL_EVENTS_OFFSET,
+            ForeignRawSocket.POLLIN
+        );
+        descriptors.set(
+            JAVA_SHORT, ForeignRawSocket.POLL_DESCRIPTOR_SIZE + ForeignRawSocket.POLL_RETURNED_EVENTS_OFFSET, (short) 0
+        );
+
+        int result;
+        do
+        {
+            try
+            {
+                result = (int) ForeignRawSocket.POLL.invokeExact(
+                    scratch.state, descriptors, wakeup < 0 ? 1L : 2L, timeout == 0 ? -1 : timeout
+                );
+            }
+            catch(final Throwable e)
+            {
+                throw ForeignRawSocket.unexpected(e);
+            }
+        }
+        while(result == ForeignRawSocket.ERROR && ForeignRawSocket.errno(scratch.state) == ForeignRawSocket.EINTR);
+
+        if(result == 0)
+        {
+            throw new SocketTimeoutException(timeoutMessage);
+        }
+        if(result == ForeignRawSocket.ERROR)
+        {
+            throw ForeignRawSocket.error(scratch.state);
+        }
+        // the wake-up descriptor is never drained, so every later wait on the closed socket fails at once, too
+        if((descriptors.get(JAVA_SHORT, ForeignRawSocket.POLL_RETURNED_EVENTS_OFFSET) &
+            (ForeignRawSocket.POLLHUP | ForeignRawSocket.POLLNVAL)) != 0 ||
+           wakeup >= 0 && descriptors.get(
+               JAVA_SHORT, ForeignRawSocket.POLL_DESCRIPTOR_SIZE + ForeignRawSocket.POLL_RETURNED_EVENTS_OFFSET
+           ) != 0)
+        {
+            throw new SocketException("Socket closed.");
+        }
+    }
+
+    private static int transferError(final MemorySegment state, final int timeout, final String timeoutMessage)
+        throws IOException
+    {
+        if(ForeignRawSocket.errno(state) == ForeignRawSocket.EAGAIN)
+        {
+            if(timeout == RawSocketImpl.NON_BLOCKING)
+            {
+                return 0;
+            }
+            throw new SocketTimeoutException(timeoutMessage);
+        }
+
+        throw ForeignRawSocket.error(state);
+    }
+
+    /**
+     * Fills in the thread's socket address for the destination.
+     *
+     * @param scratch The calling thread's native memory
+     * @param address The destination address bytes
+     *
+     * @return the length of the socket address.
+     */
+    private static int socketAddress(final Scratch scratch, final byte[] address)
+    {
+        final int size;
+        final long offset;
+        final int family;
+        if(address.length == ForeignRawSocket.IPV4_ADDRESS_LENGTH)
+        {
+            size = ForeignRawSocket.IPV4_SOCKET_ADDRESS_SIZE;
+            offset = ForeignRawSocket.IPV4_SOCKET_ADDRESS_OFFSET;
+            family = Constants.PF_INET;
+        }
+        else if(address.length == ForeignRawSocket.IPV6_ADDRESS_LENGTH)
+        {
+            size = ForeignRawSocket.IPV6_SOCKET_ADDRESS_SIZE;
+            offset = ForeignRawSocket.IPV6_SOCKET_ADDRESS_OFFSET;
+            family = Constants.PF_INET6;
+        }
+        else
+        {
+            throw new IllegalArgumentException("The address is not an IPv4 or IPv6 address.");
+        }
+
+        // the memory is reused, so the port, flow information and scope must be zeroed every time
+        scratch.address.fill((byte) 0);
+        scratch.address.set(JAVA_SHORT, 0, (short) family);
+        MemorySegment.copy(address, 0, scratch.address, JAVA_BYTE, offset, address.length);
+        return size;
+    }
+
+    private static void setSocketOption(final Scratch scratch, final int socket, final int level, final int option,
+                                        final int length)
+    {
+        final int result;
+        try
+        {
+            result = (int) ForeignRawSocket.SET_SOCKET_OPTION.invokeExact(
+                scratch.state, socket, level, option, scratch.value, length
+            );
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        if(result == ForeignRawSocket.ERROR)
+        {
+            throw ForeignRawSocket.<RuntimeException>undeclared(ForeignRawSocket.error(scratch.state));
+        }
+    }
+
+    private static void getSocketOption(final Scratch scratch, final int socket, final int level, final int option,
+                                        final int length)
+    {
+        scratch.length.set(JAVA_INT, 0, length);
+
+        final int result;
+        try
+        {
+            result = (int) ForeignRawSocket.GET_SOCKET_OPTION.invokeExact(
+                scratch.state, socket, level, option, scratch.value, scratch.length
+            );
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        if(result == ForeignRawSocket.ERROR)
+        {
+            throw ForeignRawSocket.<RuntimeException>undeclared(ForeignRawSocket.error(scratch.state));
+        }
+    }
+
+    private static int errno(final MemorySegment state)
+    {
+        return state.get(JAVA_INT, ForeignRawSocket.ERRNO_OFFSET);
+    }
+
+    private static RawSocketException error(final MemorySegment state)
+    {
+        final MemorySegment message;
+        try
+        {
+            message = ((MemorySegment) ForeignRawSocket.DESCRIBE_ERROR.invokeExact(ForeignRawSocket.errno(state)))
+                .reinterpret(ForeignRawSocket.MAXIMUM_MESSAGE_LENGTH);
+        }
+        catch(final Throwable e)
+        {
+            throw ForeignRawSocket.unexpected(e);
+        }
+
+        int length = 0;
+        while(length < ForeignRawSocket.MAXIMUM_MESSAGE_LENGTH && message.get(JAVA_BYTE, length) != 0)
+        {
+            length++;
+        }
+
+        return new RawSocketException(
+            new String(message.asSlice(0, length).toArray(JAVA_BYTE), StandardCharsets.UTF_8)
+        );
+    }
+
+    /*
+     * Throws a checked exception from a method that does not declare it, as the native methods these replace do.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T undeclared(final Throwable e) throws T
+    {
+        throw (T) e;
+    }
+
+    private static RuntimeException unexpected(final Throwable e)
+    {
+        if(e instanceof Error)
+        {
+            throw (Error) e;
+        }
+        if(e instanceof RuntimeException)
+        {
+            return (RuntimeException) e;
+        }
+
+        // downcalls do not throw checked exceptions
+        return new IllegalStateException(e);
+    }
+
+    private static MemorySegment find(final String name)
+    {
+        return ForeignRawSocket.LINKER.defaultLookup().find(name).orElseThrow(
+            () -> new UnsatisfiedLinkError("The C library does not define " + name + ".")
+        );
+    }
+
+    private static MethodHandle downcall(final String name, final FunctionDescriptor descriptor)
+    {
+        return ForeignRawSocket.LINKER.downcallHandle(
+            ForeignRawSocket.find(name), descriptor, Linker.Option.captureCallState("errno")
+        );
+    }
+
+    /**
+     * The native memory one thread passes to its calls, allocated once per thread instead of once per call. It is
+     * freed once the thread is gone and nothing else refers to it. The memory heap segments are copied through grows
+     * to fit the largest packet the thread has transferred.
+     */
+    private static final class Scratch
+    {
+        private final MemorySegment state;
+
+        private final MemorySegment address;
+
+        private final MemorySegment descriptors;
+
+        private final MemorySegment value;
+
+        private final MemorySegment length;
+
+        private MemorySegment staging = MemorySegment.NULL;
+
+        /**
+         * Constructor.
+         */
+        private Scratch()
+        {
+            final Arena arena = Arena.ofAuto();
+            this.state = arena.allocate(ForeignRawSocket.CALL_STATE);
+            this.address = arena.allocate(ForeignRawSocket.IPV6_SOCKET_ADDRESS_SIZE, JAVA_INT.byteAlignment());
+            this.descriptors = arena.allocate(ForeignRawSocket.POLL_DESCRIPTOR_SIZE * 2, JAVA_INT.byteAlignment());
+            this.value = arena.allocate(ForeignRawSocket.TIME_VALUE_SIZE, JAVA_LONG.byteAlignment());
+            this.length = arena.allocate(JAVA_INT);
+        }
+
+        /**
+         * Get native memory to copy a heap segment through, replacing the thread's memory with a larger allocation if
+         * it is too small.
+         *
+         * @param size The number of bytes needed
+         *
+         * @return the memory, exactly the size needed.
+         */
+        private MemorySegment stage(final long size)
+        {
+            if(this.staging.byteSize() < size)
+            {
+                // a new arena, so that the smaller memory is freed once this no longer refers to it
+                this.staging = Arena.ofAuto().allocate(Math.max(size, ForeignRawSocket.MINIMUM_STAGING_SIZE));
+            }
+
+            return this.staging.asSlice(0, size);
+        }
+    }
+}
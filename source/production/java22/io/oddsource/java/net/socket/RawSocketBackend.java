@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Chooses the socket implementation for {@link RawSocketImpl#create()}. This version, for Java 22 and newer, chooses
+ * the Foreign Function and Memory API on Linux (x86-64 or AArch64) if the JVM grants this library native access, and
+ * JNI otherwise or when the system property {@value #BACKEND_PROPERTY} is {@code jni}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RawSocketBackend
+{
+    static final String BACKEND_PROPERTY = "io.oddsource.java.net.socket.backend";
+
+    private static final boolean FOREIGN = RawSocketBackend.isForeignAvailable();
+
+    /**
+     * Constructor.
+     */
+    private RawSocketBackend()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Creates an unopened socket.
+     *
+     * @return the socket.
+     */
+    static RawSocketImpl create()
+    {
+        return RawSocketBackend.FOREIGN ? new ForeignRawSocket() : new RawSocketImpl();
+    }
+
+    private static boolean isForeignAvailable()
+    {
+        if("jni".equalsIgnoreCase(System.getProperty(RawSocketBackend.BACKEND_PROPERTY)))
+        {
+            return false;
+        }
+
+        // the foreign implementation relies on the Linux values of constants the native library does not export
+        final String os = System.getProperty("os.name", "");
+        final String architecture = System.getProperty("os.arch", "");
+        if(!os.startsWith("Linux") || !(architecture.equals("amd64") || architecture.equals("aarch64")))
+        {
+            return false;
+        }
+
+        try
+        {
+            MethodHandles.lookup().ensureInitialized(ForeignRawSocket.class);
+            return true;
+        }
+        catch(final IllegalAccessException | LinkageError e)
+        {
+            // linking the downcalls fails when native access is denied
+            return false;
+        }
+    }
+}
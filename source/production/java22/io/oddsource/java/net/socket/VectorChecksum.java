@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes ones' complement sums with the Vector API. Each lane loads a big-endian int and adds its two 16-bit words
+ * to a 32-bit lane accumulator, which is reduced into a 64-bit total before any lane can overflow. Only
+ * {@link ChecksumBackend} uses this class, and only after it has initialized it successfully.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class VectorChecksum
+{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // each step adds at most 2 * 0xFFFF to a lane, so 512 steps of 16 lanes stay below 2^31 even when reduced
+    private static final int STEPS_PER_REDUCTION = 512;
+
+    private static final int WORD_MASK = 0xFFFF;
+
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Constructor.
+     */
+    private VectorChecksum()
+    {
+        throw new AssertionError("This class is not meant to be instantiated.");
+    }
+
+    /**
+     * Indicates whether the preferred species is wide enough to beat the scalar loop, which already sums eight bytes
+     * at a time.
+     *
+     * @return {@code true} if the preferred species holds at least four ints.
+     */
+    static boolean isEfficient()
+    {
+        return VectorChecksum.SPECIES.length() >= 4;
+    }
+
+    /**
+     * Returns the number of bytes at the end of a range that do not fill a whole vector and must be summed separately.
+     *
+     * @param length The length of the range, in bytes
+     *
+     * @return the length of the tail.
+     */
+    static int tailLength(final int length)
+    {
+        return length % VectorChecksum.SPECIES.vectorByteSize();
+    }
+
+    /**
+     * Computes the ones' complement sum of a range of a segment, in network byte order.
+     *
+     * @param segment The segment
+     * @param offset The offset of the range in the segment
+     * @param length The length of the range, a multiple of the vector size in bytes
+     *
+     * @return the sum, from 0 to 65535.
+     */
+    static int sum(final MemorySegment segment, final long offset, final int length)
+    {
+        final int step = VectorChecksum.SPECIES.vectorByteSize();
+        final long end = offset + length;
+
+        final VectorSpecies<Integer> species = VectorChecksum.SPECIES;
+        long total = 0L;
+        IntVector accumulator = IntVector.zero(VectorChecksum.SPECIES);
+        int steps = 0;
+        for(long i = offset; i < end; i += step)
+        {
+            final IntVector words = IntVector.fromMemorySegment(species, segment, i, ByteOrder.BIG_ENDIAN);
+            accumulator = accumulator.add(words.lanewise(VectorOperators.LSHR, 16))
+                                     .add(words.and(VectorChecksum.WORD_MASK));
+            if(++steps == VectorChecksum.STEPS_PER_REDUCTION)
+            {
+                total += accumulator.reduceLanes(VectorOperators.ADD) & VectorChecksum.INT_MASK;
+                accumulator = IntVector.zero(VectorChecksum.SPECIES);
+                steps = 0;
+            }
+        }
+        total += accumulator.reduceLanes(VectorOperators.ADD) & VectorChecksum.INT_MASK;
+
+        while(total >>> 16 != 0)
+        {
+            total = (total & VectorChecksum.WORD_MASK) + (total >>> 16);
+        }
+        return (int) total;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+
+/**
+ * Measures changing the TTL and sequence number of a traceroute probe (a 20-byte IPv4 header and a 64-byte echo
+ * request) in a direct send buffer by computing both checksums again against adjusting them incrementally.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChecksumUpdateBenchmark
+{
+    private static final int PACKET_LENGTH = 84;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+
+    private final Ipv4HeaderView header = new Ipv4HeaderView();
+
+    private final IcmpView icmp = new IcmpView();
+
+    private int probe;
+
+    public ChecksumUpdateBenchmark()
+    {
+        this.header.wrap(this.buffer, 0).clear();
+        this.header.setPacketLength(PACKET_LENGTH);
+        this.header.setProtocol(1);
+        this.header.updateChecksum();
+        this.icmp.wrap(this.buffer, this.header.getPayloadOffset());
+        this.icmp.setType(8);
+        this.icmp.updateChecksum(this.header.getPayloadLength());
+    }
+
+    @Benchmark
+    public int recompute()
+    {
+        this.probe++;
+        this.header.setHopLimit((short) (this.probe % 30 + 1));
+        this.header.updateChecksum();
+        this.icmp.setSequenceNumber(this.probe);
+        this.icmp.updateChecksum(this.header.getPayloadLength());
+        return this.icmp.getChecksum();
+    }
+
+    @Benchmark
+    public int rewrite()
+    {
+        this.probe++;
+        this.header.rewriteHopLimit((short) (this.probe % 30 + 1));
+        this.icmp.rewriteSequenceNumber(this.probe);
+        return this.icmp.getChecksum();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+
+/**
+ * Measures reading the TTL and ICMP sequence number of a received echo reply by copying it into a {@link CustomPacket},
+ * as receive loops had to, against reading them in place with the flyweight header views.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeaderViewBenchmark
+{
+    private static final int PACKET_LENGTH = 84;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+
+    private final Ipv4HeaderView header = new Ipv4HeaderView();
+
+    private final IcmpView icmp = new IcmpView();
+
+    public HeaderViewBenchmark()
+    {
+        Ipv4HeaderView view = new Ipv4HeaderView().wrap(this.buffer, 0).clear();
+        view.setPacketLength(PACKET_LENGTH);
+        view.setProtocol(1);
+        new IcmpView().wrap(this.buffer, view.getPayloadOffset()).setSequenceNumber(7);
+    }
+
+    @Benchmark
+    public int copiedPacket()
+    {
+        byte[] data = new byte[PACKET_LENGTH];
+        this.buffer.clear();
+        this.buffer.get(data);
+
+        CustomPacket packet = new CustomPacket(Packet.Source.INCOMING);
+        int headerLength = (data[0] & 0xF) * 4;
+        packet.setHeaderData(Arrays.copyOf(data, headerLength));
+        packet.setPayloadData(Arrays.copyOfRange(data, headerLength, data.length));
+
+        byte[] header = packet.getHeaderData();
+        byte[] payload = packet.getPayloadData();
+        return (header[8] & 0xFF) + ((payload[6] & 0xFF) << 8 | payload[7] & 0xFF);
+    }
+
+    @Benchmark
+    public int headerViews()
+    {
+        this.header.wrap(this.buffer, 0);
+        this.icmp.wrap(this.buffer, this.header.getPayloadOffset());
+        return this.header.getHopLimit() + this.icmp.getSequenceNumber();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.oddsource.java.net.socket.ip4.Icmp4Packet;
+
+/**
+ * Measures building a 64-byte echo request with its IPv4 header into a direct send buffer by encoding an
+ * {@link Icmp4Packet} for every probe against patching a precomputed {@link IcmpTemplate}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IcmpTemplateBenchmark
+{
+    private static final int IDENTIFIER = 0x1234;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+
+    private final Icmp4Packet packet = new Icmp4Packet(Packet.Source.OUTGOING);
+
+    private final IcmpTemplate template;
+
+    private int sequenceNumber;
+
+    public IcmpTemplateBenchmark() throws UnknownHostException
+    {
+        this.packet.setType(Icmp4Packet.TYPE_ECHO_REQUEST);
+        this.packet.setIdentifier(IDENTIFIER);
+        this.packet.setDestinationAddress(InetAddress.getByName("192.0.2.1"));
+        this.packet.setBody(new byte[56]);
+        this.template = this.packet.createTemplate(true);
+    }
+
+    @Benchmark
+    public int encodedPacket()
+    {
+        this.packet.setSequenceNumber(++this.sequenceNumber);
+        this.buffer.clear();
+        return this.packet.writePacketData(this.buffer);
+    }
+
+    @Benchmark
+    public int template()
+    {
+        this.buffer.clear();
+        return this.template.write(this.buffer, IDENTIFIER, ++this.sequenceNumber);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the ones' complement sum of 64 bytes to 64 kilobytes in an array and in a direct buffer, comparing the
+ * backend {@link InternetChecksum} chose, the scalar loop that reads eight bytes at a time, and a loop that reads one
+ * 16-bit word at a time. The Vector API backend is only chosen on Java 22 and newer when the classes are loaded from
+ * the multi-release JAR (put it ahead of {@code target/classes} on the class path) and the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InternetChecksumBenchmark
+{
+    @Param({"64", "256", "1500", "9000", "65536"})
+    public int length;
+
+    private byte[] data;
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp()
+    {
+        this.data = new byte[this.length];
+        new Random(1071).nextBytes(this.data);
+        this.buffer = ByteBuffer.allocateDirect(this.length);
+        this.buffer.put(this.data).clear();
+    }
+
+    @Benchmark
+    public int selectedArray()
+    {
+        return InternetChecksum.sum(this.data, 0, this.length);
+    }
+
+    @Benchmark
+    public int selectedBuffer()
+    {
+        return InternetChecksum.sum(this.buffer, 0, this.length);
+    }
+
+    @Benchmark
+    public int scalarArray()
+    {
+        return InternetChecksum.scalarSum(this.data, 0, this.length);
+    }
+
+    @Benchmark
+    public int scalarBuffer()
+    {
+        return InternetChecksum.scalarSum(this.buffer, 0, this.length);
+    }
+
+    @Benchmark
+    public int wordArray()
+    {
+        long sum = 0L;
+        for(int i = 0; i < this.length; i += 2)
+        {
+            sum += (this.data[i] & 0xFF) << 8 | this.data[i + 1] & 0xFF;
+        }
+        while(sum >>> 16 != 0)
+        {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) sum;
+    }
+}
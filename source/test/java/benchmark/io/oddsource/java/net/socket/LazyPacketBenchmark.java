@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.oddsource.java.net.socket.ip4.GenericIp4Packet;
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+
+/**
+ * Measures a filter that rejects an 84-byte IPv4 packet in a direct receive buffer after looking at its protocol and
+ * TTL, by decoding it eagerly into a {@link GenericIp4Packet} against wrapping it in a {@link LazyPacket}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LazyPacketBenchmark
+{
+    private static final int PACKET_LENGTH = 84;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+
+    public LazyPacketBenchmark() throws UnknownHostException
+    {
+        final Ipv4HeaderView header = new Ipv4HeaderView().wrap(this.buffer, 0).clear();
+        header.setPacketLength(PACKET_LENGTH);
+        header.setProtocol(17);
+        header.setSourceAddress(InetAddress.getByName("192.0.2.1"));
+        header.setDestinationAddress(InetAddress.getByName("192.0.2.2"));
+        header.updateChecksum();
+    }
+
+    @Benchmark
+    public boolean eager()
+    {
+        final GenericIp4Packet packet = GenericIp4Packet.decode(this.buffer, 0, PACKET_LENGTH);
+        return packet.getProtocol() == 1 && packet.getHopLimit() > 1;
+    }
+
+    @Benchmark
+    public boolean lazy()
+    {
+        final LazyPacket packet = new LazyPacket(this.buffer, 0, PACKET_LENGTH);
+        return packet.getProtocol() == 1 && packet.getHopLimit() > 1;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-call cost of native calls that create Java objects: raising an exception from a failed system
+ * call, which receive loops with timeouts do on every timeout, and building the protocol objects of the whole
+ * protocol database. Each has an uncached counterpart that looks up its classes and methods on every call, the way
+ * the native code did before it resolved them when the library loaded, so the two can be compared side by side.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeCallBenchmark
+{
+    private static final int EBADF = 9;
+
+    private final RawSocketImpl socket = new RawSocketImpl();
+
+    @Benchmark
+    public Object raiseSocketError()
+    {
+        try
+        {
+            // the socket is not open, so the system call fails with EBADF and raises a RawSocketException
+            return this.socket.getSocketOption(SocketLevel.SOCKET, Constants.SO_RCVBUF);
+        }
+        catch(Exception e)
+        {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object raiseSocketErrorCached()
+    {
+        return NativeCallBenchmark.raise(true);
+    }
+
+    @Benchmark
+    public Object raiseSocketErrorUncached()
+    {
+        return NativeCallBenchmark.raise(false);
+    }
+
+    @Benchmark
+    public Protocol[] loadProtocolList()
+    {
+        return SocketUtilities.loadProtocolList();
+    }
+
+    @Benchmark
+    public Protocol[] loadProtocolListUncached()
+    {
+        return SocketUtilities.loadProtocolListUncached();
+    }
+
+    private static Object raise(final boolean cached)
+    {
+        try
+        {
+            SocketUtilities.raiseSocketError(NativeCallBenchmark.EBADF, cached);
+            return null;
+        }
+        catch(Exception e)
+        {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the file system work done to make the native library loadable at startup: writing a new temporary copy on
+ * every start, as the library used to, against installing into an empty cache (a cold start) and finding the copy
+ * already cached (a warm start). Each invocation is one start; {@code System.load} is the same in every case and is
+ * left out, since it can only run once per JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeLibraryCacheBenchmark
+{
+    // about the size of the library built for Linux x86-64
+    private static final int LIBRARY_SIZE = 80 * 1024;
+
+    private final byte[] library = new byte[LIBRARY_SIZE];
+
+    private Path directory;
+
+    private NativeLibraryCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        new Random(42).nextBytes(this.library);
+        this.directory = Files.createTempDirectory("library-cache-benchmark");
+        this.cache = new NativeLibraryCache(this.directory.resolve("cache"));
+        this.cache.install("libBenchmark", ".so", this.library);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        NativeLibraryCacheBenchmark.delete(this.directory);
+    }
+
+    @Benchmark
+    public Path temporaryFile() throws IOException
+    {
+        File file = File.createTempFile("libBenchmark", ".so", this.directory.toFile());
+        Files.write(file.toPath(), this.library);
+        // standing in for deleteOnExit, so that files do not pile up during the run
+        Files.delete(file.toPath());
+        return file.toPath();
+    }
+
+    @Benchmark
+    public Path warmCache() throws IOException
+    {
+        return this.cache.install("libBenchmark", ".so", this.library);
+    }
+
+    @Benchmark
+    public Path coldCache(final ColdCache cold) throws IOException
+    {
+        return cold.cache.install("libBenchmark", ".so", this.library);
+    }
+
+    /**
+     * An empty cache for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ColdCache
+    {
+        private Path directory;
+
+        private NativeLibraryCache cache;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException
+        {
+            this.directory = Files.createTempDirectory("library-cache-benchmark");
+            this.cache = new NativeLibraryCache(this.directory.resolve("cache"));
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException
+        {
+            NativeLibraryCacheBenchmark.delete(this.directory);
+        }
+    }
+
+    private static void delete(final Path root) throws IOException
+    {
+        try(Stream<Path> paths = Files.walk(root))
+        {
+            for(Path path : (Iterable<Path>) paths.sorted((a, b) -> b.compareTo(a))::iterator)
+            {
+                Files.delete(path);
+            }
+        }
+    }
+}
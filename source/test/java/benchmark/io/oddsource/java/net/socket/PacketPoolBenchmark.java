@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+
+/**
+ * Measures turning an 84-byte IPv4 echo reply in a direct receive buffer into a packet and reading its TTL, by copying
+ * it into a new {@link CustomPacket} with new header and payload arrays against copying it into a slot of a
+ * {@link PacketPool} and releasing it. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketPoolBenchmark
+{
+    private static final int PACKET_LENGTH = 84;
+
+    private static final int HEADER_LENGTH = 20;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+
+    private final PacketPool pool = new PacketPool(2048, 64, 1);
+
+    public PacketPoolBenchmark()
+    {
+        final Ipv4HeaderView header = new Ipv4HeaderView().wrap(this.buffer, 0).clear();
+        header.setPacketLength(PACKET_LENGTH);
+        header.setProtocol(1);
+        header.updateChecksum();
+    }
+
+    @Benchmark
+    public short customPacket()
+    {
+        final byte[] header = new byte[HEADER_LENGTH];
+        final byte[] payload = new byte[PACKET_LENGTH - HEADER_LENGTH];
+        this.buffer.clear();
+        this.buffer.get(header).get(payload);
+
+        final CustomPacket packet = new CustomPacket(Packet.Source.INCOMING);
+        packet.setHeaderData(header);
+        packet.setPayloadData(payload);
+        packet.finalizePacket();
+        return new Ipv4HeaderView().wrap(ByteBuffer.wrap(packet.getHeaderData()), 0).getHopLimit();
+    }
+
+    @Benchmark
+    public short pooledPacket()
+    {
+        final PooledPacket packet = this.pool.copy(this.buffer, 0, PACKET_LENGTH, Packet.NO_TIMESTAMP);
+        final short hopLimit = packet.getHopLimit();
+        packet.release();
+        return hopLimit;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures choosing the route and source address for a packet's destination from the mirrored routing table, against
+ * the route lookup system call that the source address cache makes on a miss.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteLookupBenchmark
+{
+    private InetAddress destination;
+
+    private RoutingTableMirror mirror;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.destination = InetAddress.getByAddress(new byte[] {127, 0, 0, 2});
+        this.mirror = new RoutingTableMirror();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        this.mirror.close();
+    }
+
+    @Benchmark
+    public Route mirroredRoute()
+    {
+        return this.mirror.getRoute(this.destination);
+    }
+
+    @Benchmark
+    public InetAddress mirroredSourceAddress() throws SocketException
+    {
+        return this.mirror.getSourceAddress(this.destination);
+    }
+
+    @Benchmark
+    public InetAddress systemCall() throws SocketException
+    {
+        return SocketUtilities.lookUpSourceAddress(this.destination);
+    }
+}
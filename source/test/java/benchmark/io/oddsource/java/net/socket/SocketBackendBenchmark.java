@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the JNI and Foreign Function and Memory API socket implementations {@link RawSocketImpl#create()} chooses
+ * between, on a socket option read and on an ICMP echo over the loopback interface, from an array and from a direct
+ * buffer (the socket receives its own request as well as the reply). Each backend runs in its own fork, because the
+ * choice is made once per JVM. The foreign implementation is only chosen on Java 22 and newer when the classes are
+ * loaded from the multi-release JAR (put it ahead of {@code target/classes} on the class path); otherwise both runs
+ * measure JNI. Opening the socket requires privileges.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SocketBackendBenchmark
+{
+    @Param({"jni", "ffm"})
+    public String backend;
+
+    private final InetAddress loopback = InetAddress.getLoopbackAddress();
+
+    private final byte[] request = new byte[16];
+
+    private final byte[] data = new byte[1500];
+
+    private final ByteBuffer requestBuffer = ByteBuffer.allocateDirect(16);
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1500);
+
+    private RawSocketImpl socket;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        System.setProperty("io.oddsource.java.net.socket.backend", this.backend);
+
+        this.request[0] = 8;
+        this.request[4] = 0x4F;
+        this.request[5] = 0x53;
+        int checksum = InternetChecksum.compute(this.request, 0, this.request.length);
+        this.request[2] = (byte)(checksum >>> 8);
+        this.request[3] = (byte)checksum;
+        this.requestBuffer.put(this.request).clear();
+
+        this.socket = RawSocketImpl.create();
+        this.socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+        this.socket.setReceiveTimeout(1000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        this.socket.close();
+    }
+
+    @Benchmark
+    public int getSocketOption() throws IOException
+    {
+        return this.socket.getSocketOption(SocketLevel.SOCKET, Constants.SO_RCVBUF);
+    }
+
+    @Benchmark
+    public int echoArray() throws IOException
+    {
+        this.socket.send(this.request, 0, this.request.length, this.loopback);
+        this.socket.receive(this.data, 0, this.data.length);
+        return this.socket.receive(this.data, 0, this.data.length);
+    }
+
+    @Benchmark
+    public int echoBuffer() throws IOException
+    {
+        this.requestBuffer.clear();
+        this.socket.send(this.requestBuffer, this.loopback);
+        this.buffer.clear();
+        this.socket.receive(this.buffer);
+        this.buffer.clear();
+        return this.socket.receive(this.buffer);
+    }
+}
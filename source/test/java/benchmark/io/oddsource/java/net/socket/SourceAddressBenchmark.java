@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the source address for a packet's destination from the cache, as every header-included packet does,
+ * against the route lookup a cache miss makes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Thread)
+public class SourceAddressBenchmark
+{
+    private final InetAddress destination;
+
+    public SourceAddressBenchmark()
+    {
+        try
+        {
+            this.destination = InetAddress.getByAddress(new byte[] {127, 0, 0, 2});
+        }
+        catch(UnknownHostException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public InetAddress cached() throws SocketException
+    {
+        return SocketUtilities.getSourceAddressForDestination(this.destination);
+    }
+
+    @Benchmark
+    public InetAddress uncached() throws SocketException
+    {
+        return SocketUtilities.lookUpSourceAddress(this.destination);
+    }
+}
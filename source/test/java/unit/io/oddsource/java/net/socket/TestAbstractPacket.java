@@ -244,6 +244,49 @@ public class TestAbstractPacket
         assertEquals("The hop limit is not correct.", 97, this.packet.getHopLimit());
     }
 
+    @Test
+    public void testReceivedHopLimit01()
+    {
+        this.setUpPacket(Packet.Source.INCOMING);
+
+        EasyMock.replay(this.packet);
+
+        assertTrue("The hop limit should have been set.", this.packet.setReceivedHopLimit((short) 0));
+        assertEquals("The hop limit is not correct.", 0, this.packet.getHopLimit());
+    }
+
+    @Test
+    public void testReceivedHopLimit02()
+    {
+        this.setUpPacket(Packet.Source.OUTGOING);
+
+        EasyMock.replay(this.packet);
+
+        assertFalse("The hop limit should not have been set.", this.packet.setReceivedHopLimit((short) 0));
+        assertEquals("The hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, this.packet.getHopLimit());
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testReceivedHopLimit03()
+    {
+        this.setUpPacket(Packet.Source.INCOMING);
+
+        EasyMock.replay(this.packet);
+
+        this.packet.finalizePacket();
+        this.packet.setReceivedHopLimit((short) 1);
+    }
+
+    @Test(expected = IllegalHopLimitException.class)
+    public void testReceivedHopLimit04()
+    {
+        this.setUpPacket(Packet.Source.INCOMING);
+
+        EasyMock.replay(this.packet);
+
+        this.packet.setReceivedHopLimit((short) -1);
+    }
+
     @Test(expected = FinalizedPacketException.class)
     public void testSourceAddress01() throws UnknownHostException
     {
@@ -397,4 +440,38 @@ public class TestAbstractPacket
         this.packet.setDestinationAddress(InetAddress.getLocalHost()); // 127.0.0.1 or 0::0
         assertEquals("The address is not correct.", InetAddress.getLocalHost(), this.packet.getDestinationAddress());
     }
+
+    @Test
+    public void testTimestamp01()
+    {
+        this.setUpPacket(Packet.Source.INCOMING);
+
+        EasyMock.replay(this.packet);
+
+        assertEquals("The timestamp is not correct.", Packet.NO_TIMESTAMP, this.packet.getTimestamp());
+        assertTrue("The timestamp should have been set.", this.packet.setTimestamp(1234567890123456789L));
+        assertEquals("The timestamp is not correct.", 1234567890123456789L, this.packet.getTimestamp());
+    }
+
+    @Test
+    public void testTimestamp02()
+    {
+        this.setUpPacket(Packet.Source.OUTGOING);
+
+        EasyMock.replay(this.packet);
+
+        assertFalse("The timestamp should not have been set.", this.packet.setTimestamp(1234567890123456789L));
+        assertEquals("The timestamp is not correct.", Packet.NO_TIMESTAMP, this.packet.getTimestamp());
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testTimestamp03()
+    {
+        this.setUpPacket(Packet.Source.INCOMING);
+
+        EasyMock.replay(this.packet);
+
+        this.packet.finalizePacket();
+        this.packet.setTimestamp(1234567890123456789L);
+    }
 }
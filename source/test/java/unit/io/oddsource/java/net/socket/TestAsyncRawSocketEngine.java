@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for AsyncRawSocketEngine.
+ */
+public class TestAsyncRawSocketEngine
+{
+    private AsyncRawSocketEngine engine;
+
+    private RawSocketImpl socket;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.engine = new AsyncRawSocketEngine(8, 2, 1);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        this.engine.close();
+        if(this.socket != null)
+        {
+            this.socket.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor01() throws IOException
+    {
+        new AsyncRawSocketEngine(0, 1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor02() throws IOException
+    {
+        new AsyncRawSocketEngine(8, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReceive01()
+    {
+        this.engine.receive(new RawSocketImpl(), ByteBuffer.allocate(64));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSend01() throws IOException
+    {
+        this.engine.send(null, ByteBuffer.allocateDirect(64), InetAddress.getLoopbackAddress());
+    }
+
+    @Test
+    public void testInFlight01()
+    {
+        this.engine.receive(new RawSocketImpl(), ByteBuffer.allocateDirect(64));
+        this.engine.receive(new RawSocketImpl(), ByteBuffer.allocateDirect(64));
+        assertEquals("The in-flight count is not correct.", 2, this.engine.getInFlightCount());
+
+        try
+        {
+            this.engine.receive(new RawSocketImpl(), ByteBuffer.allocateDirect(64));
+        }
+        catch(RejectedExecutionException e)
+        {
+            return;
+        }
+
+        fail("Expected exception " + RejectedExecutionException.class);
+    }
+
+    @Test
+    public void testClose01() throws Exception
+    {
+        CompletableFuture<Integer> future = this.engine.receive(new RawSocketImpl(), ByteBuffer.allocateDirect(64));
+
+        this.engine.close();
+
+        assertFalse("The engine should be closed.", this.engine.isOpen());
+        assertTrue("The operation should have completed.", future.isDone());
+        assertTrue("The operation should have failed.", future.isCompletedExceptionally());
+        assertEquals("The in-flight count is not correct.", 0, this.engine.getInFlightCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClose02() throws IOException
+    {
+        this.engine.close();
+        this.engine.close();
+
+        this.engine.submit();
+    }
+
+    @Test
+    public void testRegisterSocket01() throws Exception
+    {
+        this.openSocket();
+        this.engine.registerSocket(this.socket);
+        this.engine.registerSocket(this.socket);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        CompletableFuture<Integer> future = this.engine.receive(this.socket, buffer);
+        this.engine.submit();
+
+        byte[] request = TestRawSocketImpl.echoRequest(1);
+        this.socket.send(request, 0, request.length, InetAddress.getLoopbackAddress());
+
+        int received = future.get(5, TimeUnit.SECONDS);
+        assertTrue("The received length is not correct.", received >= 20 + request.length);
+        assertEquals("The buffer position is not correct.", received, buffer.position());
+        assertEquals("The packet should be IPv4.", 4, (buffer.get(0) & 0xF0) >>> 4);
+    }
+
+    @Test
+    public void testRegisterSocket02() throws Exception
+    {
+        this.openSocket();
+        this.engine.registerSocket(this.socket);
+        ByteBuffer registered = ByteBuffer.allocateDirect(256);
+        this.engine.registerBuffers(registered);
+
+        CompletableFuture<Integer> future = this.engine.receive(this.socket, registered);
+        this.engine.submit();
+
+        byte[] request = TestRawSocketImpl.echoRequest(2);
+        this.socket.send(request, 0, request.length, InetAddress.getLoopbackAddress());
+
+        int received = future.get(5, TimeUnit.SECONDS);
+        assertTrue("The received length is not correct.", received >= 20 + request.length);
+        assertEquals("The buffer position is not correct.", received, registered.position());
+        assertEquals("The packet should be IPv4.", 4, (registered.get(0) & 0xF0) >>> 4);
+    }
+
+    @Test
+    public void testRegisterSocket03() throws Exception
+    {
+        this.openSocket();
+        this.engine.registerSocket(this.socket);
+        CompletableFuture<Integer> future = this.engine.receive(this.socket, ByteBuffer.allocateDirect(256));
+        this.engine.submit();
+
+        this.socket.close();
+
+        assertCanceled(future);
+        assertEquals("The in-flight count is not correct.", 0, this.engine.getInFlightCount());
+
+        // the only place in the file table was freed when the socket closed
+        this.openSocket();
+        this.engine.registerSocket(this.socket);
+    }
+
+    @Test
+    public void testRegisterSocket04() throws Exception
+    {
+        this.openSocket();
+        this.engine.registerSocket(this.socket);
+        CompletableFuture<Integer> future = this.engine.receive(this.socket, ByteBuffer.allocateDirect(256));
+        this.engine.submit();
+
+        this.engine.unregisterSocket(this.socket);
+        this.engine.unregisterSocket(this.socket);
+
+        assertCanceled(future);
+
+        this.engine.registerSocket(this.socket);
+    }
+
+    @Test
+    public void testRegisterSocket05() throws IOException
+    {
+        try
+        {
+            this.engine.registerSocket(new RawSocketImpl());
+        }
+        catch(SocketException e)
+        {
+            assertEquals("The message is not correct.", "Socket is not open.", e.getMessage());
+            return;
+        }
+
+        fail("Expected exception " + SocketException.class);
+    }
+
+    @Test
+    public void testClose03() throws Exception
+    {
+        this.openSocket();
+        CompletableFuture<Integer> future = this.engine.receive(this.socket, ByteBuffer.allocateDirect(256));
+        this.engine.submit();
+        assertEquals("The in-flight count is not correct.", 1, this.engine.getInFlightCount());
+
+        this.engine.close();
+
+        assertCanceled(future);
+        assertEquals("The in-flight count is not correct.", 0, this.engine.getInFlightCount());
+        assertTrue("The socket should still be open.", this.socket.isOpen());
+    }
+
+    private void openSocket() throws IOException
+    {
+        this.socket = new RawSocketImpl();
+        try
+        {
+            this.socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+        }
+        catch(SocketException e)
+        {
+            assumeNoException("Opening raw sockets requires privileges.", e);
+        }
+    }
+
+    static void assertCanceled(CompletableFuture<Integer> future) throws Exception
+    {
+        try
+        {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        catch(ExecutionException e)
+        {
+            assertTrue("The cause is not correct.", e.getCause() instanceof AsynchronousCloseException);
+            return;
+        }
+
+        fail("Expected exception " + AsynchronousCloseException.class);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test class for BpfProgram.
+ */
+public class TestBpfProgram
+{
+    @Test
+    public void testBuild01()
+    {
+        BpfProgram program = BpfProgram.builder()
+            .loadIndexHeaderLength(0)
+            .loadByteIndirect(0)
+            .jumpIfEqual(0, "accept", "drop")
+            .label("accept").accept()
+            .label("drop").drop()
+            .build();
+
+        assertEquals("The length is not correct.", 5, program.getLength());
+        assertEquals("The first code is not correct.", 0xB1, program.getCode(0));
+        assertEquals("The second code is not correct.", 0x50, program.getCode(1));
+        assertEquals("The jump code is not correct.", 0x15, program.getCode(2));
+        assertEquals("The jump constant is not correct.", 0, program.getConstant(2));
+        assertEquals("The true jump is not correct.", 0, program.getJumpTrue(2));
+        assertEquals("The false jump is not correct.", 1, program.getJumpFalse(2));
+        assertEquals("The accept code is not correct.", 0x06, program.getCode(3));
+        assertEquals("The accept constant is not correct.", 0xFFFFFFFF, program.getConstant(3));
+        assertEquals("The drop constant is not correct.", 0, program.getConstant(4));
+    }
+
+    @Test
+    public void testBuild02()
+    {
+        BpfProgram program = BpfProgram.builder()
+            .loadHalfWord(12)
+            .jump("end")
+            .drop()
+            .label("end").returnAccumulator()
+            .build();
+
+        assertEquals("The load code is not correct.", 0x28, program.getCode(0));
+        assertEquals("The load offset is not correct.", 12, program.getConstant(0));
+        assertEquals("The jump code is not correct.", 0x05, program.getCode(1));
+        assertEquals("The jump distance is not correct.", 1, program.getConstant(1));
+        assertEquals("The return code is not correct.", 0x16, program.getCode(3));
+    }
+
+    @Test
+    public void testBuild03()
+    {
+        BpfProgram one = BpfProgram.builder().loadLength().jumpIfGreater(64, "a", "d").label("a").accept()
+                                   .label("d").drop().build();
+        BpfProgram two = BpfProgram.builder().loadLength().jumpIfGreater(64, "x", "y").label("x").accept()
+                                   .label("y").drop().build();
+
+        assertEquals("The programs should be equal.", one, two);
+        assertEquals("The hash codes should be equal.", one.hashCode(), two.hashCode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildEmpty()
+    {
+        BpfProgram.builder().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildNoReturn()
+    {
+        BpfProgram.builder().loadLength().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildUndefinedLabel()
+    {
+        BpfProgram.builder().loadLength().jumpIfEqual(1, "yes", "no").label("yes").accept().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildBackwardJump()
+    {
+        BpfProgram.builder().label("start").loadLength().jumpIfEqual(1, "start", "end").label("end").accept().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildJumpTooFar()
+    {
+        BpfProgram.Builder builder = BpfProgram.builder().loadLength().jumpIfEqual(1, "near", "far").label("near");
+        for(int i = 0; i < 256; i++)
+        {
+            builder.loadLength();
+        }
+        builder.label("far").accept().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildTooLong()
+    {
+        BpfProgram.Builder builder = BpfProgram.builder();
+        for(int i = 0; i < BpfProgram.MAXIMUM_INSTRUCTIONS; i++)
+        {
+            builder.loadLength();
+        }
+        builder.accept().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLabelDuplicate()
+    {
+        BpfProgram.builder().label("a").label("a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadNegativeOffset()
+    {
+        BpfProgram.builder().loadByte(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadBelowLinkLayerOffset()
+    {
+        BpfProgram.builder().loadByte(BpfProgram.LINK_LAYER_OFFSET - 1);
+    }
+
+    @Test
+    public void testLoadRelativeOffsets()
+    {
+        BpfProgram program = BpfProgram.builder()
+            .loadByte(BpfProgram.NETWORK_OFFSET + 9)
+            .loadHalfWord(BpfProgram.LINK_LAYER_OFFSET + 12)
+            .loadWordIndirect(BpfProgram.NETWORK_OFFSET)
+            .accept()
+            .build();
+
+        assertEquals("The network offset is not correct.", -0x100000 + 9, program.getConstant(0));
+        assertEquals("The link-layer offset is not correct.", -0x200000 + 12, program.getConstant(1));
+        assertEquals("The indirect offset is not correct.", -0x100000, program.getConstant(2));
+    }
+
+    @Test
+    public void testLoadAncillary()
+    {
+        BpfProgram program = BpfProgram.builder()
+            .loadAncillary(BpfProgram.ANCILLARY_PROTOCOL)
+            .loadHalfWord(BpfProgram.ANCILLARY_OFFSET + BpfProgram.ANCILLARY_VLAN_TAG)
+            .accept()
+            .build();
+
+        assertEquals("The load code is not correct.", 0x20, program.getCode(0));
+        assertEquals("The ancillary offset is not correct.", -0x1000, program.getConstant(0));
+        assertEquals("The field offset is not correct.", -0x1000 + 44, program.getConstant(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadAncillaryUnknown()
+    {
+        BpfProgram.builder().loadAncillary(BpfProgram.ANCILLARY_VLAN_PROTOCOL + 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadAncillaryIndirect()
+    {
+        BpfProgram.builder().loadByteIndirect(BpfProgram.ANCILLARY_OFFSET + BpfProgram.ANCILLARY_PROTOCOL);
+    }
+}
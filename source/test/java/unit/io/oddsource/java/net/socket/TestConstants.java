@@ -16,8 +16,10 @@
 package io.oddsource.java.net.socket;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -26,8 +28,6 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import io.oddsource.java.net.socket.exception.SocketConstantNotDefinedException;
-
 /**
  * Test class for Constants.
  */
@@ -77,30 +77,74 @@ public class TestConstants
     }
 
     @Test
-    public void testSocketConstantNotDefinedException()
+    public void testLoadNumericConstantsWrongLength()
         throws NoSuchMethodException, IllegalAccessException
     {
-        Method method = Constants.class.getDeclaredMethod("registerNumericConstant", String.class);
+        Method method = Constants.class.getDeclaredMethod("loadNumericConstants", int[].class);
         method.setAccessible(true);
 
         try
         {
-            method.invoke(null, "BAD_CONSTANT");
-            fail("Expected exception " + SocketConstantNotDefinedException.class.getCanonicalName());
+            method.invoke(null, (Object) new int[3]);
+            fail("Expected exception " + IllegalArgumentException.class);
         }
         catch(InvocationTargetException e)
         {
             Throwable cause = e.getCause();
             assertNotNull("There should be a call for exception " + e.toString(), cause);
-            assertEquals("The cause is not correct.", SocketConstantNotDefinedException.class, cause.getClass());
+            assertEquals("The cause is not correct.", IllegalArgumentException.class, cause.getClass());
             assertEquals(
                 "The exception message is not correct.",
-                "The specified constant, BAD_CONSTANT, is not natively defined.",
+                "The constant array has the wrong length.",
                 cause.getMessage()
             );
         }
     }
 
+    @Test
+    public void testLoadNumericConstants()
+        throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, NoSuchFieldException
+    {
+        Field count = Constants.class.getDeclaredField("CONSTANT_COUNT");
+        count.setAccessible(true);
+        int[] values = new int[count.getInt(null)];
+
+        Method method = Constants.class.getDeclaredMethod("loadNumericConstants", int[].class);
+        method.setAccessible(true);
+        method.invoke(null, (Object) values);
+
+        Field index = Constants.class.getDeclaredField("IP_TTL_INDEX");
+        index.setAccessible(true);
+        assertEquals("The constant IP_TTL is not correct.", Constants.IP_TTL, values[index.getInt(null)]);
+
+        index = Constants.class.getDeclaredField("PF_INET6_INDEX");
+        index.setAccessible(true);
+        assertEquals("The constant PF_INET6 is not correct.", Constants.PF_INET6, values[index.getInt(null)]);
+    }
+
+    @Test
+    public void testIsDefined()
+    {
+        assertFalse("NOT_DEFINED should not be defined.", Constants.isDefined(Constants.NOT_DEFINED));
+        assertTrue("Zero should be defined.", Constants.isDefined(0));
+        assertTrue("IP_HDRINCL should be defined.", Constants.isDefined(Constants.IP_HDRINCL));
+    }
+
+    @Test
+    public void testAllConstantsDefined() throws IllegalAccessException
+    {
+        assumeTrue("Only Linux is known to define every constant.", "Linux".equals(System.getProperty("os.name")));
+
+        for(Field field : Constants.class.getFields())
+        {
+            if(field.getType() == int.class && !field.getName().equals("NOT_DEFINED"))
+            {
+                int value = field.getInt(null);
+                assertTrue("The constant " + field.getName() + " is not defined.", Constants.isDefined(value));
+            }
+        }
+    }
+
     @Test
     public void test_IP_OPTIONS()
     {
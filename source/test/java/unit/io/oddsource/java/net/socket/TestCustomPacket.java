@@ -17,6 +17,9 @@ package io.oddsource.java.net.socket;
 
 import static org.junit.Assert.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -95,4 +98,50 @@ public class TestCustomPacket
         );
         assertEquals("The header length is not correct.", 5, this.packet.getPayloadLength());
     }
+
+    @Test
+    public void testGetPacketData()
+    {
+        this.packet.setHeaderData(new byte[] {0x45, 0x00});
+        this.packet.setPayloadData(new byte[] {0x08, 0x00, 0x7F});
+
+        assertArrayEquals(
+            "The packet data is not correct.", new byte[] {0x45, 0x00, 0x08, 0x00, 0x7F}, this.packet.getPacketData()
+        );
+    }
+
+    @Test
+    public void testWritePacketData01()
+    {
+        this.packet.setHeaderData(new byte[] {0x45, 0x00});
+        this.packet.setPayloadData(new byte[] {0x08, 0x00, 0x7F});
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.put((byte) 0x11);
+
+        assertEquals("The written length is not correct.", 5, this.packet.writePacketData(buffer));
+        assertEquals("The position is not correct.", 6, buffer.position());
+        assertArrayEquals(
+            "The buffer is not correct.", new byte[] {0x11, 0x45, 0x00, 0x08, 0x00, 0x7F, 0x00, 0x00}, buffer.array()
+        );
+    }
+
+    @Test
+    public void testWritePacketData02()
+    {
+        this.packet.setHeaderData(new byte[] {0x45, 0x00});
+        this.packet.setPayloadData(new byte[] {0x08, 0x00, 0x7F});
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+
+        try
+        {
+            this.packet.writePacketData(buffer);
+        }
+        catch(BufferOverflowException e)
+        {
+            assertEquals("Nothing should have been written.", 0, buffer.position());
+            return;
+        }
+
+        fail("Expected exception " + BufferOverflowException.class);
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Test class for IcmpTemplate.
+ */
+public class TestIcmpTemplate
+{
+    // an echo request with identifier 0x1234, sequence number 1 and the odd-length body "abc"
+    private static final byte[] ECHO = {0x08, 0x00, 0x21, 0x68, 0x12, 0x34, 0x00, 0x01, 0x61, 0x62, 0x63};
+
+    @Test
+    public void testWriteBuffer()
+    {
+        IcmpTemplate template = new IcmpTemplate(new byte[] {0x08, 0, 0x7F, 0x7F, 0x7F, 0x7F, 0x7F, 0x7F, 0x61, 0x62,
+                                                             0x63}, 0, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(2);
+
+        assertEquals("The length is not correct.", 11, template.write(buffer, 0x1234, 1));
+        assertEquals("The position is not correct.", 13, buffer.position());
+
+        byte[] probe = new byte[11];
+        System.arraycopy(buffer.array(), 2, probe, 0, 11);
+        assertArrayEquals("The probe is not correct.", TestIcmpTemplate.ECHO, probe);
+    }
+
+    @Test
+    public void testWriteArray()
+    {
+        IcmpTemplate template = new IcmpTemplate(TestIcmpTemplate.ECHO, 0, 0);
+        byte[] probe = new byte[16];
+
+        for(int sequence = 0; sequence < 65536; sequence += 251)
+        {
+            assertEquals("The length is not correct.", 11, template.write(probe, 5, 0xFFFF, sequence));
+
+            IcmpView view = new IcmpView().wrap(ByteBuffer.wrap(probe), 5);
+            assertEquals("The identifier is not correct.", 0xFFFF, view.getIdentifier());
+            assertEquals("The sequence number is not correct.", sequence, view.getSequenceNumber());
+            assertTrue("The checksum should be valid.", view.isChecksumValid(11));
+        }
+    }
+
+    @Test
+    public void testMessageOffset()
+    {
+        byte[] data = new byte[19];
+        data[0] = 0x45;
+        System.arraycopy(TestIcmpTemplate.ECHO, 0, data, 8, 11);
+
+        IcmpTemplate template = new IcmpTemplate(data, 8, 0);
+        assertEquals("The message offset is not correct.", 8, template.getMessageOffset());
+        assertEquals("The length is not correct.", 19, template.getLength());
+
+        byte[] probe = new byte[19];
+        template.write(probe, 0, 0x1234, 1);
+        assertArrayEquals("The probe is not correct.", data, probe);
+    }
+
+    @Test
+    public void testTemplateIsCopied()
+    {
+        byte[] data = TestIcmpTemplate.ECHO.clone();
+        IcmpTemplate template = new IcmpTemplate(data, 0, 0);
+        data[10] = 0;
+
+        byte[] probe = new byte[11];
+        template.write(probe, 0, 0x1234, 1);
+        assertArrayEquals("The probe is not correct.", TestIcmpTemplate.ECHO, probe);
+    }
+
+    @Test
+    public void testWriteOverflow()
+    {
+        IcmpTemplate template = new IcmpTemplate(TestIcmpTemplate.ECHO, 0, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+
+        try
+        {
+            template.write(buffer, 1, 1);
+        }
+        catch(BufferOverflowException e)
+        {
+            assertEquals("The position should not have changed.", 0, buffer.position());
+            return;
+        }
+
+        fail("Expected exception " + BufferOverflowException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMessageOffsetTooLarge()
+    {
+        new IcmpTemplate(TestIcmpTemplate.ECHO, 4, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullData()
+    {
+        new IcmpTemplate(null, 0, 0);
+    }
+}
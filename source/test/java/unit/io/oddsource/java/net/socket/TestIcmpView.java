@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+
+/**
+ * Test class for IcmpView.
+ */
+public class TestIcmpView
+{
+    // an echo request with identifier 0x1234, sequence number 1 and the odd-length body "abc"
+    private static final byte[] ECHO = {0x08, 0x00, 0x21, 0x68, 0x12, 0x34, 0x00, 0x01, 0x61, 0x62, 0x63};
+
+    private IcmpView view;
+
+    @Before
+    public void setUp()
+    {
+        this.view = new IcmpView();
+    }
+
+    @Test
+    public void testRead()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(2);
+        buffer.put(TestIcmpView.ECHO);
+
+        this.view.wrap(buffer, 2);
+
+        assertEquals("The type is not correct.", 8, this.view.getType());
+        assertEquals("The code is not correct.", 0, this.view.getCode());
+        assertEquals("The checksum is not correct.", 0x2168, this.view.getChecksum());
+        assertEquals("The identifier is not correct.", 0x1234, this.view.getIdentifier());
+        assertEquals("The sequence number is not correct.", 1, this.view.getSequenceNumber());
+        assertEquals("The rest of the header is not correct.", 0x12340001, this.view.getRestOfHeader());
+        assertEquals("The payload offset is not correct.", 10, this.view.getPayloadOffset());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid(TestIcmpView.ECHO.length));
+    }
+
+    @Test
+    public void testWrite()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+        buffer.position(8);
+        buffer.put(new byte[] {0x61, 0x62, 0x63});
+
+        this.view.wrap(buffer, 0);
+        this.view.setType(8);
+        this.view.setCode(0);
+        this.view.setChecksum(0xFFFF);
+        this.view.setIdentifier(0x1234);
+        this.view.setSequenceNumber(1);
+        this.view.updateChecksum(11);
+
+        assertArrayEquals("The message is not correct.", TestIcmpView.ECHO, buffer.array());
+    }
+
+    @Test
+    public void testInsideIpv4Packet()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        Ipv4HeaderView header = new Ipv4HeaderView().wrap(buffer, 0).clear();
+        header.setPacketLength(20 + TestIcmpView.ECHO.length);
+        buffer.position(header.getPayloadOffset());
+        buffer.put(TestIcmpView.ECHO);
+
+        this.view.wrap(buffer, header.getPayloadOffset());
+
+        assertEquals("The sequence number is not correct.", 1, this.view.getSequenceNumber());
+        this.view.setSequenceNumber(2);
+        assertFalse("The checksum should not be valid.", this.view.isChecksumValid(header.getPayloadLength()));
+        this.view.updateChecksum(header.getPayloadLength());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid(header.getPayloadLength()));
+    }
+
+    @Test
+    public void testRewrite()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(TestIcmpView.ECHO.clone());
+        this.view.wrap(buffer, 0);
+
+        this.view.rewriteIdentifier(0xFFFF);
+        this.view.rewriteSequenceNumber(0x8000);
+
+        assertEquals("The identifier is not correct.", 0xFFFF, this.view.getIdentifier());
+        assertEquals("The sequence number is not correct.", 0x8000, this.view.getSequenceNumber());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid(TestIcmpView.ECHO.length));
+    }
+
+    @Test
+    public void testPseudoHeaderChecksum() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByName("::1");
+        int pseudoHeaderSum = InternetChecksum.pseudoHeaderSum(loopback, loopback, 11, 58);
+        ByteBuffer buffer = ByteBuffer.wrap(TestIcmpView.ECHO.clone());
+        buffer.put(0, (byte) 0x80);
+
+        this.view.wrap(buffer, 0).updateChecksum(11, pseudoHeaderSum);
+
+        assertEquals("The checksum is not correct.", 0xa920, this.view.getChecksum());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid(11, pseudoHeaderSum));
+        assertFalse("The checksum should not be valid without it.", this.view.isChecksumValid(11));
+
+        this.view.rewriteSequenceNumber(2);
+        assertTrue("The checksum should still be valid.", this.view.isChecksumValid(11, pseudoHeaderSum));
+    }
+
+    @Test
+    public void testChecksumLengthTooLong()
+    {
+        this.view.wrap(ByteBuffer.allocate(16), 4);
+
+        try
+        {
+            this.view.updateChecksum(13);
+        }
+        catch(IllegalArgumentException e)
+        {
+            return;
+        }
+
+        fail("Expected exception " + IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrapTooShort()
+    {
+        this.view.wrap(ByteBuffer.allocate(8), 1);
+    }
+}
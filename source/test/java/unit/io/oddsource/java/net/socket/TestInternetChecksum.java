@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.ip6.Icmp6Packet;
+
+/**
+ * Test class for InternetChecksum.
+ */
+public class TestInternetChecksum
+{
+    // the example of RFC 1071 section 3
+    private static final byte[] RFC_1071 = {0x00, 0x01, (byte) 0xf2, 0x03, (byte) 0xf4, (byte) 0xf5, (byte) 0xf6,
+                                            (byte) 0xf7};
+
+    // 192.168.0.1 to 192.168.0.199, UDP, 115 bytes, don't fragment, TTL 64, checksum b861
+    private static final byte[] HEADER = {
+        0x45, 0x00, 0x00, 0x73, 0x00, 0x00, 0x40, 0x00, 0x40, 0x11, (byte) 0xb8, 0x61,
+        (byte) 0xc0, (byte) 0xa8, 0x00, 0x01, (byte) 0xc0, (byte) 0xa8, 0x00, (byte) 0xc7
+    };
+
+    @Test
+    public void testSumRfc1071()
+    {
+        assertEquals("The sum is not correct.", 0xddf2, InternetChecksum.sum(TestInternetChecksum.RFC_1071, 0, 8));
+        assertEquals(
+            "The checksum is not correct.", 0x220d, InternetChecksum.compute(TestInternetChecksum.RFC_1071, 0, 8)
+        );
+    }
+
+    @Test
+    public void testComputeHeader()
+    {
+        byte[] header = TestInternetChecksum.HEADER.clone();
+        assertEquals("A correct header should sum to zero.", 0, InternetChecksum.compute(header, 0, 20));
+        assertTrue("The header should be valid.", InternetChecksum.isValid(InternetChecksum.sum(header, 0, 20)));
+
+        header[10] = 0;
+        header[11] = 0;
+        assertEquals("The checksum is not correct.", 0xb861, InternetChecksum.compute(header, 0, 20));
+    }
+
+    @Test
+    public void testBufferMatchesArray()
+    {
+        byte[] data = new byte[1501];
+        new Random(1624).nextBytes(data);
+
+        ByteBuffer big = ByteBuffer.allocateDirect(1510);
+        ByteBuffer little = ByteBuffer.allocate(1510).order(ByteOrder.LITTLE_ENDIAN);
+        big.position(3);
+        big.put(data);
+        little.position(3);
+        little.put(data);
+
+        for(int length : new int[] {0, 1, 2, 19, 20, 1500, 1501})
+        {
+            int expected = InternetChecksum.compute(data, 0, length);
+            assertEquals(
+                "The direct buffer checksum is not correct.", expected, InternetChecksum.compute(big, 3, length)
+            );
+            assertEquals(
+                "The little-endian checksum is not correct.", expected, InternetChecksum.compute(little, 3, length)
+            );
+        }
+        assertEquals("The position should not have changed.", 1504, little.position());
+    }
+
+    @Test
+    public void testScalarSumMatchesWords()
+    {
+        Random random = new Random(791);
+        byte[] data = new byte[65545];
+        random.nextBytes(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        ByteBuffer little = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+        for(int length : new int[] {0, 1, 7, 8, 9, 15, 16, 63, 64, 255, 256, 257, 1500, 9000, 65535, 65536})
+        {
+            int offset = random.nextInt(9);
+            int expected = TestInternetChecksum.wordSum(data, offset, length);
+            assertEquals("The array sum is not correct.", expected, InternetChecksum.scalarSum(data, offset, length));
+            assertEquals(
+                "The direct buffer sum is not correct.", expected, InternetChecksum.scalarSum(direct, offset, length)
+            );
+            assertEquals(
+                "The little-endian sum is not correct.", expected, InternetChecksum.scalarSum(little, offset, length)
+            );
+            assertEquals("The selected sum is not correct.", expected, InternetChecksum.sum(data, offset, length));
+            assertEquals(
+                "The selected buffer sum is not correct.", expected, InternetChecksum.sum(direct, offset, length)
+            );
+        }
+    }
+
+    @Test
+    public void testScalarSumAllOnes()
+    {
+        byte[] data = new byte[65536];
+        Arrays.fill(data, (byte) 0xFF);
+
+        assertEquals("The sum is not correct.", 0xFFFF, InternetChecksum.scalarSum(data, 0, 65536));
+        assertEquals("The sum is not correct.", 0xFF00, InternetChecksum.scalarSum(data, 0, 1));
+        assertEquals("The sum is not correct.", 0, InternetChecksum.scalarSum(new byte[4096], 0, 4096));
+    }
+
+    @Test
+    public void testPartialSums()
+    {
+        byte[] data = new byte[301];
+        new Random(71).nextBytes(data);
+
+        int sum = InternetChecksum.add(InternetChecksum.sum(data, 0, 100), InternetChecksum.sum(data, 100, 201));
+
+        assertEquals("The combined sum is not correct.", InternetChecksum.sum(data, 0, 301), sum);
+        assertEquals(
+            "The checksum is not correct.", InternetChecksum.compute(data, 0, 301), InternetChecksum.finish(sum)
+        );
+    }
+
+    @Test
+    public void testUpdateRfc1624()
+    {
+        assertEquals("The updated checksum is not correct.", 0x0000, InternetChecksum.update(0xdd2f, 0x5555, 0x3285));
+    }
+
+    @Test
+    public void testUpdateMatchesCompute()
+    {
+        Random random = new Random(1141);
+        byte[] data = new byte[64];
+        random.nextBytes(data);
+        data[10] = 0;
+        data[11] = 0;
+        int checksum = InternetChecksum.compute(data, 0, 64);
+
+        for(int i = 0; i < 1000; i++)
+        {
+            int index = random.nextInt(16) * 4 % 60;
+            if(index == 8)
+            {
+                continue;
+            }
+            int oldValue = ByteBuffer.wrap(data).getInt(index);
+            int newValue = random.nextInt();
+
+            switch(i % 3)
+            {
+                case 0:
+                    ByteBuffer.wrap(data).putShort(index, (short) newValue);
+                    checksum = InternetChecksum.update(checksum, oldValue >>> 16, newValue & 0xFFFF);
+                    break;
+                case 1:
+                    ByteBuffer.wrap(data).putInt(index, newValue);
+                    checksum = InternetChecksum.update32(checksum, oldValue, newValue);
+                    break;
+                default:
+                    byte[] oldBytes = ByteBuffer.allocate(4).putInt(oldValue).array();
+                    byte[] newBytes = ByteBuffer.allocate(4).putInt(newValue).array();
+                    ByteBuffer.wrap(data).putInt(index, newValue);
+                    checksum = InternetChecksum.update(checksum, oldBytes, newBytes);
+                    break;
+            }
+
+            ByteBuffer.wrap(data).putShort(10, (short) checksum);
+            assertTrue(
+                "The updated checksum should be valid.", InternetChecksum.isValid(InternetChecksum.sum(data, 0, 64))
+            );
+            ByteBuffer.wrap(data).putShort(10, (short) 0);
+            assertEquals("The checksum is not correct.", InternetChecksum.compute(data, 0, 64), checksum);
+        }
+    }
+
+    @Test
+    public void testPseudoHeaderSum() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByName("::1");
+        assertEquals(
+            "The sum is not correct.", 2 + 11 + 58, InternetChecksum.pseudoHeaderSum(loopback, loopback, 11, 58)
+        );
+        assertEquals("The sum is not correct.", 11 + 58, InternetChecksum.pseudoHeaderSum(null, null, 11, 58));
+        assertEquals(
+            "The sum is not correct.", 0xc0a8 + 0x0001 + 0xc0a8 + 0x00c7 + 95 + 17 - 0xFFFF,
+            InternetChecksum.pseudoHeaderSum(
+                InetAddress.getByName("192.168.0.1"), InetAddress.getByName("192.168.0.199"), 95, 17
+            )
+        );
+        assertEquals(
+            "The jumbo length is not correct.", 1 + 0x0005 + 58,
+            InternetChecksum.pseudoHeaderSum(null, null, 0x10005, 58)
+        );
+    }
+
+    @Test
+    public void testPseudoHeaderSumPacket() throws Exception
+    {
+        Icmp6Packet packet = new Icmp6Packet(Packet.Source.INCOMING);
+        packet.setSourceAddress(InetAddress.getByName("::1"));
+        packet.setDestinationAddress(InetAddress.getByName("::1"));
+        packet.setType(Icmp6Packet.TYPE_ECHO_REQUEST);
+        packet.setBody(new byte[] {0x61, 0x62, 0x63});
+
+        int pseudoHeaderSum = InternetChecksum.pseudoHeaderSum(packet, Icmp6Packet.NEXT_HEADER);
+        assertEquals("The sum is not correct.", 2 + 11 + 58, pseudoHeaderSum);
+
+        byte[] message = packet.getPayloadData();
+        assertTrue(
+            "The message checksum should be valid.",
+            InternetChecksum.isValid(InternetChecksum.add(pseudoHeaderSum, InternetChecksum.sum(message, 0, 11)))
+        );
+    }
+
+    private static int wordSum(byte[] data, int offset, int length)
+    {
+        long sum = 0;
+        for(int i = 0; i < length; i += 2)
+        {
+            sum += (data[offset + i] & 0xFF) << 8 | (i + 1 < length ? data[offset + i + 1] & 0xFF : 0);
+        }
+        while(sum >>> 16 != 0)
+        {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) sum;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSumOutOfBounds()
+    {
+        InternetChecksum.sum(new byte[8], 4, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateLengthMismatch()
+    {
+        InternetChecksum.update(0, new byte[4], new byte[16]);
+    }
+}
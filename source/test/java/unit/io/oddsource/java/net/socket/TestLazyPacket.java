@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+import io.oddsource.java.net.socket.ip6.Ipv6HeaderView;
+
+/**
+ * Test class for LazyPacket.
+ */
+public class TestLazyPacket
+{
+    private ByteBuffer received;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        // 192.0.2.1 to 192.0.2.2, TTL 7, ICMP, 24-byte header with options, 4-byte payload, received at offset 5
+        this.received = ByteBuffer.allocateDirect(64);
+        Ipv4HeaderView header = new Ipv4HeaderView().wrap(this.received, 5).clear();
+        header.setHeaderLength(24);
+        header.setPacketLength(28);
+        header.setHopLimit((short) 7);
+        header.setProtocol(1);
+        header.setSourceAddress(InetAddress.getByName("192.0.2.1"));
+        header.setDestinationAddress(InetAddress.getByName("192.0.2.2"));
+        this.received.putInt(29, 0x08000000);
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testIpv4() throws Exception
+    {
+        LazyPacket packet = new LazyPacket(this.received, 5, 28, 99L);
+
+        assertEquals("The source is not correct.", Packet.Source.INCOMING, packet.getSource());
+        assertTrue("The packet should be finalized.", packet.isFinalized());
+        assertSame("The buffer is not correct.", this.received, packet.getBuffer());
+        assertEquals("The offset is not correct.", 5, packet.getOffset());
+        assertEquals("The timestamp is not correct.", 99L, packet.getTimestamp());
+        assertEquals("The version is not correct.", 4, packet.getVersion());
+        assertEquals("The protocol is not correct.", 1, packet.getProtocol());
+        assertEquals("The hop limit is not correct.", 7, packet.getHopLimit());
+        assertEquals("The packet length is not correct.", 28, packet.getPacketLength());
+        assertEquals("The header length is not correct.", 24, packet.getHeaderLength());
+        assertEquals("The payload length is not correct.", 4, packet.getPayloadLength());
+        assertEquals("The payload offset is not correct.", 29, packet.getPayloadOffset());
+        assertEquals("The source is not correct.", InetAddress.getByName("192.0.2.1"), packet.getSourceAddress());
+        assertEquals(
+            "The destination is not correct.", InetAddress.getByName("192.0.2.2"), packet.getDestinationAddress()
+        );
+        assertArrayEquals("The payload is not correct.", new byte[] {8, 0, 0, 0}, packet.getPayloadData());
+        assertEquals("The header data length is not correct.", 24, packet.getHeaderData().length);
+        assertEquals("The packet data length is not correct.", 28, packet.getPacketData().length);
+
+        ByteBuffer copy = ByteBuffer.allocate(28);
+        assertEquals("The written length is not correct.", 28, packet.writePacketData(copy));
+        assertEquals("The written data is not correct.", 0x46, copy.get(0));
+        assertEquals("The buffer position should not have changed.", 0, this.received.position());
+    }
+
+    @Test
+    public void testIpv6() throws Exception
+    {
+        ByteBuffer data = ByteBuffer.allocate(48);
+        Ipv6HeaderView header = new Ipv6HeaderView().wrap(data, 0).clear();
+        header.setPayloadLength(8);
+        header.setNextHeader(58);
+        header.setSourceAddress(InetAddress.getByName("2001:db8::1"));
+        header.setDestinationAddress(InetAddress.getByName("2001:db8::2"));
+
+        LazyPacket packet = new LazyPacket(data.array(), 0, 48);
+
+        assertEquals("The version is not correct.", 6, packet.getVersion());
+        assertEquals("The protocol is not correct.", 58, packet.getProtocol());
+        assertEquals("The hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, packet.getHopLimit());
+        assertEquals("The header length is not correct.", 40, packet.getHeaderLength());
+        assertEquals("The payload offset is not correct.", 40, packet.getPayloadOffset());
+        assertEquals("The source is not correct.", InetAddress.getByName("2001:db8::1"), packet.getSourceAddress());
+        assertEquals(
+            "The destination is not correct.", InetAddress.getByName("2001:db8::2"), packet.getDestinationAddress()
+        );
+        assertEquals("The timestamp is not correct.", Packet.NO_TIMESTAMP, packet.getTimestamp());
+    }
+
+    @Test
+    public void testDecodedOnce()
+    {
+        LazyPacket packet = new LazyPacket(this.received, 5, 28);
+
+        // nothing is decoded until a field is asked for
+        this.received.put(14, (byte) 6);
+        assertEquals("The protocol is not correct.", 6, packet.getProtocol());
+
+        InetAddress source = packet.getSourceAddress();
+        this.received.put(14, (byte) 17);
+        assertEquals("The protocol should have been kept.", 6, packet.getProtocol());
+        assertSame("The address should have been kept.", source, packet.getSourceAddress());
+    }
+
+    @Test
+    public void testBatch()
+    {
+        PacketBatch batch = new PacketBatch(2, 64);
+        for(int i = 0; i < 28; i++)
+        {
+            batch.getBuffer().put(64 + i, this.received.get(5 + i));
+        }
+        batch.setLength(1, 28);
+
+        LazyPacket packet = new LazyPacket(batch, 1);
+
+        assertSame("The buffer is not correct.", batch.getBuffer(), packet.getBuffer());
+        assertEquals("The payload offset is not correct.", 88, packet.getPayloadOffset());
+        assertEquals("The hop limit is not correct.", 7, packet.getHopLimit());
+    }
+
+    @Test
+    public void testMalformed()
+    {
+        this.received.put(5, (byte) 0x55);
+        LazyPacket packet = new LazyPacket(this.received, 5, 28);
+
+        assertEquals("The packet length is not correct.", 28, packet.getPacketLength());
+        try
+        {
+            packet.getHopLimit();
+        }
+        catch(MalformedPacketException e)
+        {
+            return;
+        }
+        fail("Expected exception " + MalformedPacketException.class);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testTruncated()
+    {
+        new LazyPacket(this.received, 5, 20).getSourceAddress();
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testEmpty()
+    {
+        new LazyPacket(new byte[0], 0, 0).getProtocol();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfBounds()
+    {
+        new LazyPacket(this.received, 40, 28);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullBuffer()
+    {
+        new LazyPacket((ByteBuffer) null, 0, 0);
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetHopLimit()
+    {
+        new LazyPacket(this.received, 5, 28).setHopLimit((short) 9);
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetSourceAddress() throws Exception
+    {
+        new LazyPacket(this.received, 5, 28).setSourceAddress(InetAddress.getByName("192.0.2.9"));
+    }
+}
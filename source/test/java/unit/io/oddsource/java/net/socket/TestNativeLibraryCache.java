@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for NativeLibraryCache.
+ */
+public class TestNativeLibraryCache
+{
+    private static final byte[] LIBRARY = "not really a library".getBytes();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private NativeLibraryCache cache;
+
+    @Before
+    public void setUp()
+    {
+        this.directory = this.folder.getRoot().toPath().resolve("cache");
+        this.cache = new NativeLibraryCache(this.directory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor01()
+    {
+        new NativeLibraryCache(null);
+    }
+
+    @Test
+    public void testGetDefault01()
+    {
+        String previous = System.getProperty(NativeLibraryCache.DIRECTORY_PROPERTY);
+        System.setProperty(NativeLibraryCache.DIRECTORY_PROPERTY, this.directory.toString());
+        try
+        {
+            assertEquals(
+                "The directory is not correct.", this.directory, NativeLibraryCache.getDefault().getDirectory()
+            );
+        }
+        finally
+        {
+            if(previous == null)
+            {
+                System.clearProperty(NativeLibraryCache.DIRECTORY_PROPERTY);
+            }
+            else
+            {
+                System.setProperty(NativeLibraryCache.DIRECTORY_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    public void testInstall01() throws IOException
+    {
+        Path installed = this.cache.install("libTest", ".so", LIBRARY);
+
+        assertEquals("The directory is not correct.", this.directory, installed.getParent());
+        assertTrue(
+            "The file name is not correct.", installed.getFileName().toString().matches("libTest-[0-9a-f]{16}\\.so")
+        );
+        assertArrayEquals("The content is not correct.", LIBRARY, Files.readAllBytes(installed));
+    }
+
+    @Test
+    public void testInstall02() throws IOException
+    {
+        Path installed = this.cache.install("libTest", ".so", LIBRARY);
+        FileTime written = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(installed, written);
+
+        assertEquals("The path is not correct.", installed, this.cache.install("libTest", ".so", LIBRARY));
+        assertEquals("The library should not have been written again.", written, Files.getLastModifiedTime(installed));
+    }
+
+    @Test
+    public void testInstall03() throws IOException
+    {
+        Path installed = this.cache.install("libTest", ".so", LIBRARY);
+        byte[] tampered = LIBRARY.clone();
+        tampered[0] ^= 1;
+        Files.write(installed, tampered);
+
+        assertEquals("The path is not correct.", installed, this.cache.install("libTest", ".so", LIBRARY));
+        assertArrayEquals("The library should have been replaced.", LIBRARY, Files.readAllBytes(installed));
+    }
+
+    @Test
+    public void testInstall04() throws IOException
+    {
+        Path first = this.cache.install("libTest", ".so", LIBRARY);
+        Path second = this.cache.install("libTest", ".so", "another version".getBytes());
+
+        assertNotEquals("Different content should be cached separately.", first, second);
+        assertArrayEquals("The first library should remain.", LIBRARY, Files.readAllBytes(first));
+    }
+
+    @Test
+    public void testInstall05() throws IOException
+    {
+        assumeTrue(this.directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        Files.createDirectories(this.directory);
+        Files.setPosixFilePermissions(this.directory, PosixFilePermissions.fromString("rwxrwxrwx"));
+        try
+        {
+            this.cache.install("libTest", ".so", LIBRARY);
+        }
+        catch(IOException e)
+        {
+            assertTrue("The message is not correct.", e.getMessage().endsWith("is writable by other users."));
+            return;
+        }
+
+        fail("Expected exception " + IOException.class);
+    }
+
+    @Test
+    public void testInstall06() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<Path>> futures = new ArrayList<>();
+            for(int i = 0; i < 8; i++)
+            {
+                futures.add(executor.submit((Callable<Path>) () -> this.cache.install("libTest", ".so", LIBRARY)));
+            }
+
+            Path installed = futures.get(0).get();
+            for(Future<Path> future : futures)
+            {
+                assertEquals("The path is not correct.", installed, future.get());
+            }
+            assertArrayEquals("The content is not correct.", LIBRARY, Files.readAllBytes(installed));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        try(Stream<Path> files = Files.list(this.directory))
+        {
+            assertEquals("Temporary files should not remain.", 1, files.count());
+        }
+    }
+
+    @Test
+    public void testInstall07() throws IOException
+    {
+        Path installed = new NativeLibraryCache(Paths.get(this.directory.toString(), "nested", "deeper"))
+            .install("libTest", ".so", LIBRARY);
+
+        assertTrue("The library should exist.", Files.isRegularFile(installed));
+    }
+}
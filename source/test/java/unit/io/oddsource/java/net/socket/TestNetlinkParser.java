@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for NetlinkParser.
+ */
+public class TestNetlinkParser
+{
+    private ByteBuffer buffer;
+
+    private List<Object> received;
+
+    private NetlinkParser.Handler handler;
+
+    @Before
+    public void setUp()
+    {
+        this.buffer = ByteBuffer.allocate(4096).order(ByteOrder.nativeOrder());
+        this.received = new ArrayList<>();
+        this.handler = new NetlinkParser.Handler()
+        {
+            @Override
+            public void route(boolean added, boolean replace, Route route)
+            {
+                TestNetlinkParser.this.received.add((added ? "+" : "-") + (replace ? "!" : ""));
+                TestNetlinkParser.this.received.add(route);
+            }
+
+            @Override
+            public void neighbor(boolean added, Neighbor neighbor)
+            {
+                TestNetlinkParser.this.received.add(added ? "+" : "-");
+                TestNetlinkParser.this.received.add(neighbor);
+            }
+
+            @Override
+            public void done(int sequence)
+            {
+                TestNetlinkParser.this.received.add("done " + sequence);
+            }
+
+            @Override
+            public void error(int sequence, int error)
+            {
+                TestNetlinkParser.this.received.add("error " + sequence + " " + error);
+            }
+        };
+    }
+
+    private int startMessage(int type, int flags, int sequence)
+    {
+        int start = this.buffer.position();
+        this.buffer.putInt(0).putShort((short) type).putShort((short) flags).putInt(sequence).putInt(0);
+        return start;
+    }
+
+    private void endMessage(int start)
+    {
+        this.buffer.putInt(start, this.buffer.position() - start);
+    }
+
+    private void putRouteBody(int family, int prefixLength, int table, int type)
+    {
+        this.buffer.put((byte) family).put((byte) prefixLength).put((byte) 0).put((byte) 0).
+            put((byte) table).put((byte) 3).put((byte) 0).put((byte) type).putInt(0);
+    }
+
+    private void putNeighborBody(int family, int interfaceIndex, int state)
+    {
+        this.buffer.put((byte) family).put((byte) 0).putShort((short) 0).putInt(interfaceIndex).
+            putShort((short) state).put((byte) 0).put((byte) 0);
+    }
+
+    private void putAttribute(int type, byte... data)
+    {
+        this.buffer.putShort((short) (4 + data.length)).putShort((short) type).put(data);
+        while(this.buffer.position() % 4 != 0)
+        {
+            this.buffer.put((byte) 0);
+        }
+    }
+
+    private void putIntAttribute(int type, int value)
+    {
+        this.buffer.putShort((short) 8).putShort((short) type).putInt(value);
+    }
+
+    private List<Object> parse()
+    {
+        this.buffer.flip();
+        NetlinkParser.parse(this.buffer, this.handler);
+        assertEquals("The buffer should have been consumed.", this.buffer.limit(), this.buffer.position());
+        return this.received;
+    }
+
+    @Test
+    public void testRoute()
+    {
+        int start = this.startMessage(NetlinkParser.RTM_NEWROUTE, 0, 0);
+        this.putRouteBody(NetlinkParser.AF_INET, 24, 254, 1);
+        this.putAttribute(NetlinkParser.RTA_DST, (byte) 192, (byte) 168, (byte) 1, (byte) 0);
+        this.putAttribute(NetlinkParser.RTA_GATEWAY, (byte) 10, (byte) 0, (byte) 0, (byte) 1);
+        this.putAttribute(NetlinkParser.RTA_PREFSRC, (byte) 10, (byte) 0, (byte) 0, (byte) 2);
+        this.putIntAttribute(NetlinkParser.RTA_OIF, 3);
+        this.putIntAttribute(NetlinkParser.RTA_PRIORITY, 100);
+        this.putIntAttribute(NetlinkParser.RTA_TABLE, 1000);
+        this.endMessage(start);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("The number of messages is not correct.", 2, messages.size());
+        assertEquals("The route should have been added.", "+", messages.get(0));
+        Route route = (Route) messages.get(1);
+        assertEquals("The destination is not correct.", "192.168.1.0", route.getDestination().getHostAddress());
+        assertEquals("The prefix length is not correct.", 24, route.getPrefixLength());
+        assertEquals("The gateway is not correct.", "10.0.0.1", route.getGateway().getHostAddress());
+        assertEquals("The source is not correct.", "10.0.0.2", route.getPreferredSource().getHostAddress());
+        assertEquals("The interface is not correct.", 3, route.getInterfaceIndex());
+        assertEquals("The priority is not correct.", 100, route.getPriority());
+        assertEquals("RTA_TABLE should override the table.", 1000, route.getTable());
+        assertEquals("The type is not correct.", Route.Type.UNICAST, route.getType());
+    }
+
+    @Test
+    public void testDefaultRouteIpv6()
+    {
+        byte[] gateway = new byte[16];
+        gateway[0] = (byte) 0xfe;
+        gateway[1] = (byte) 0x80;
+        gateway[15] = 1;
+
+        int start = this.startMessage(NetlinkParser.RTM_DELROUTE, NetlinkParser.NLM_F_REPLACE, 0);
+        this.putRouteBody(NetlinkParser.AF_INET6, 0, 254, 1);
+        this.putAttribute(NetlinkParser.RTA_GATEWAY, gateway);
+        this.endMessage(start);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("The number of messages is not correct.", 2, messages.size());
+        assertEquals("The route should have been deleted.", "-!", messages.get(0));
+        Route route = (Route) messages.get(1);
+        assertTrue("The destination should be IPv6.", route.getDestination() instanceof Inet6Address);
+        assertTrue("The destination should be unspecified.", route.getDestination().isAnyLocalAddress());
+        assertEquals("The prefix length is not correct.", 0, route.getPrefixLength());
+        assertTrue("The gateway should be link-local.", route.getGateway().isLinkLocalAddress());
+        assertNull("There should be no source.", route.getPreferredSource());
+        assertEquals("The table is not correct.", 254, route.getTable());
+    }
+
+    @Test
+    public void testIpv4MappedStaysIpv6()
+    {
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+
+        int start = this.startMessage(NetlinkParser.RTM_NEWROUTE, 0, 0);
+        this.putRouteBody(NetlinkParser.AF_INET6, 96, 254, 7);
+        this.putAttribute(NetlinkParser.RTA_DST, mapped);
+        this.endMessage(start);
+
+        Route route = (Route) this.parse().get(1);
+        assertTrue("The destination should be IPv6.", route.getDestination() instanceof Inet6Address);
+        assertEquals("The type is not correct.", Route.Type.UNREACHABLE, route.getType());
+    }
+
+    @Test
+    public void testMultipathRoute()
+    {
+        int start = this.startMessage(NetlinkParser.RTM_NEWROUTE, 0, 0);
+        this.putRouteBody(NetlinkParser.AF_INET, 8, 254, 1);
+        this.putAttribute(NetlinkParser.RTA_DST, (byte) 10, (byte) 0, (byte) 0, (byte) 0);
+        this.buffer.putShort((short) (4 + 16 + 16)).putShort((short) NetlinkParser.RTA_MULTIPATH);
+        this.buffer.putShort((short) 16).put((byte) 0).put((byte) 0).putInt(7);
+        this.putAttribute(NetlinkParser.RTA_GATEWAY, (byte) 172, (byte) 16, (byte) 0, (byte) 1);
+        this.buffer.putShort((short) 16).put((byte) 0).put((byte) 0).putInt(8);
+        this.putAttribute(NetlinkParser.RTA_GATEWAY, (byte) 172, (byte) 17, (byte) 0, (byte) 1);
+        this.endMessage(start);
+
+        Route route = (Route) this.parse().get(1);
+        assertEquals("The first hop's interface should be kept.", 7, route.getInterfaceIndex());
+        assertEquals("The first hop's gateway should be kept.", "172.16.0.1", route.getGateway().getHostAddress());
+    }
+
+    @Test
+    public void testNeighbor() throws Exception
+    {
+        int start = this.startMessage(NetlinkParser.RTM_NEWNEIGH, 0, 0);
+        this.putNeighborBody(NetlinkParser.AF_INET, 4, Neighbor.STATE_REACHABLE);
+        this.putAttribute(NetlinkParser.NDA_DST, (byte) 192, (byte) 0, (byte) 2, (byte) 1);
+        this.putAttribute(
+            NetlinkParser.NDA_LLADDR, (byte) 0, (byte) 0x11, (byte) 0x22, (byte) 0x33, (byte) 0x44, (byte) 0x55
+        );
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.RTM_DELNEIGH, 0, 0);
+        this.putNeighborBody(NetlinkParser.AF_INET, 4, Neighbor.STATE_FAILED);
+        this.putAttribute(NetlinkParser.NDA_DST, (byte) 192, (byte) 0, (byte) 2, (byte) 2);
+        this.endMessage(start);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("The number of messages is not correct.", 4, messages.size());
+        assertEquals("The neighbor should have been added.", "+", messages.get(0));
+        Neighbor neighbor = (Neighbor) messages.get(1);
+        assertEquals("The address is not correct.", InetAddress.getByName("192.0.2.1"), neighbor.getAddress());
+        assertEquals("The interface is not correct.", 4, neighbor.getInterfaceIndex());
+        assertArrayEquals(
+            "The link-layer address is not correct.", new byte[] {0, 0x11, 0x22, 0x33, 0x44, 0x55},
+            neighbor.getLinkLayerAddress()
+        );
+        assertTrue("The neighbor should be valid.", neighbor.isValid());
+
+        assertEquals("The neighbor should have been deleted.", "-", messages.get(2));
+        neighbor = (Neighbor) messages.get(3);
+        assertEquals("The address is not correct.", InetAddress.getByName("192.0.2.2"), neighbor.getAddress());
+        assertNull("The link-layer address should be unknown.", neighbor.getLinkLayerAddress());
+        assertFalse("The neighbor should not be valid.", neighbor.isValid());
+    }
+
+    @Test
+    public void testDoneAndError()
+    {
+        int start = this.startMessage(NetlinkParser.NLMSG_ERROR, 0, 5);
+        this.buffer.putInt(-22);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.NLMSG_ERROR, 0, 6);
+        this.buffer.putInt(0);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.NLMSG_DONE, 0, 7);
+        this.buffer.putInt(0);
+        this.endMessage(start);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("The number of messages is not correct.", 2, messages.size());
+        assertEquals("The error is not correct.", "error 5 22", messages.get(0));
+        assertEquals("The done is not correct.", "done 7", messages.get(1));
+    }
+
+    @Test
+    public void testSkipsUnknownAndMalformed()
+    {
+        int start = this.startMessage(NetlinkParser.RTM_NEWROUTE, 0, 0);
+        this.putRouteBody(7, 0, 254, 1);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.RTM_NEWROUTE, 0, 0);
+        this.putRouteBody(NetlinkParser.AF_INET, 40, 254, 1);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.RTM_NEWNEIGH, 0, 0);
+        this.putNeighborBody(NetlinkParser.AF_INET, 1, Neighbor.STATE_REACHABLE);
+        this.endMessage(start);
+        start = this.startMessage(99, 0, 0);
+        this.buffer.putInt(0);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.NLMSG_DONE, 0, 1);
+        this.endMessage(start);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("Only the done should have been received.", 1, messages.size());
+        assertEquals("The done is not correct.", "done 1", messages.get(0));
+    }
+
+    @Test
+    public void testTruncated()
+    {
+        int start = this.startMessage(NetlinkParser.NLMSG_DONE, 0, 1);
+        this.endMessage(start);
+        start = this.startMessage(NetlinkParser.NLMSG_DONE, 0, 2);
+        this.buffer.putInt(start, 64);
+
+        List<Object> messages = this.parse();
+
+        assertEquals("The truncated message should have been skipped.", 1, messages.size());
+        assertEquals("The done is not correct.", "done 1", messages.get(0));
+    }
+}
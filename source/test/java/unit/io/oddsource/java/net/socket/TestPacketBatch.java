@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PacketBatch.
+ */
+public class TestPacketBatch
+{
+    private PacketBatch batch;
+
+    @Before
+    public void setUp()
+    {
+        this.batch = new PacketBatch(4, 128);
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testConstructor01()
+    {
+        assertEquals("The capacity is not correct.", 4, this.batch.getCapacity());
+        assertEquals("The slot size is not correct.", 128, this.batch.getSlotSize());
+        assertEquals("The size is not correct.", 0, this.batch.getSize());
+        assertTrue("The buffer should be direct.", this.batch.getBuffer().isDirect());
+        assertEquals("The buffer capacity is not correct.", 512, this.batch.getBuffer().capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor02()
+    {
+        new PacketBatch(0, 128);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor03()
+    {
+        new PacketBatch(Integer.MAX_VALUE, 2);
+    }
+
+    @Test
+    public void testSlotOffset01()
+    {
+        assertEquals("The slot offset is not correct.", 0, this.batch.getSlotOffset(0));
+        assertEquals("The slot offset is not correct.", 384, this.batch.getSlotOffset(3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSlotOffset02()
+    {
+        this.batch.getSlotOffset(4);
+    }
+
+    @Test
+    public void testLength01()
+    {
+        this.batch.setLength(2, 64);
+        assertEquals("The length is not correct.", 64, this.batch.getLength(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLength02()
+    {
+        this.batch.setLength(2, 129);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSize01()
+    {
+        this.batch.setSize(5);
+    }
+
+    @Test
+    public void testRemoteAddress01() throws UnknownHostException
+    {
+        InetAddress address = InetAddress.getByName("192.0.2.15");
+        this.batch.setRemoteAddress(1, address);
+
+        assertEquals("The remote address is not correct.", address, this.batch.getRemoteAddress(1));
+        assertNull("The other slots should have no address.", this.batch.getRemoteAddress(0));
+
+        byte[] raw = new byte[PacketBatch.MAXIMUM_ADDRESS_LENGTH];
+        assertEquals("The address length is not correct.", 4, this.batch.getRemoteAddress(1, raw));
+        assertEquals("The address is not correct.", (byte) 192, raw[0]);
+        assertEquals("The address is not correct.", 15, raw[3]);
+    }
+
+    @Test
+    public void testLocalAddress01() throws UnknownHostException
+    {
+        InetAddress address = InetAddress.getByName("2001:db8::1");
+        this.batch.setLocalAddress(3, address);
+
+        assertEquals("The local address is not correct.", address, this.batch.getLocalAddress(3));
+
+        byte[] raw = new byte[PacketBatch.MAXIMUM_ADDRESS_LENGTH];
+        assertEquals("The address length is not correct.", 16, this.batch.getLocalAddress(3, raw));
+
+        this.batch.setLocalAddress(3, null);
+        assertNull("The local address should have been cleared.", this.batch.getLocalAddress(3));
+    }
+
+    @Test
+    public void testClear01() throws UnknownHostException
+    {
+        this.batch.setLength(0, 20);
+        this.batch.setRemoteAddress(0, InetAddress.getByName("192.0.2.1"));
+        this.batch.setSize(1);
+
+        this.batch.clear();
+
+        assertEquals("The size is not correct.", 0, this.batch.getSize());
+        assertEquals("The length is not correct.", 0, this.batch.getLength(0));
+        assertNull("The remote address should have been cleared.", this.batch.getRemoteAddress(0));
+        assertEquals("The timestamp should have been cleared.", Packet.NO_TIMESTAMP, this.batch.getTimestamp(0));
+    }
+}
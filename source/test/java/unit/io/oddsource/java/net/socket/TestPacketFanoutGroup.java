@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.NetworkInterface;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test class for PacketFanoutGroup.
+ */
+public class TestPacketFanoutGroup
+{
+    @Test
+    public void testMode01()
+    {
+        assertEquals("The hash constant is not correct.", 0, PacketFanoutGroup.Mode.HASH.getOsConstant());
+        assertEquals("The load balance constant is not correct.", 1,
+                     PacketFanoutGroup.Mode.LOAD_BALANCE.getOsConstant());
+        assertEquals("The CPU constant is not correct.", 2, PacketFanoutGroup.Mode.CPU.getOsConstant());
+        assertEquals("The rollover constant is not correct.", 3, PacketFanoutGroup.Mode.ROLLOVER.getOsConstant());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor01() throws IOException
+    {
+        new PacketFanoutGroup(null, 4, PacketFanoutGroup.ETHERTYPE_ALL, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor02() throws IOException
+    {
+        new PacketFanoutGroup(PacketFanoutGroup.Mode.HASH, 0, PacketFanoutGroup.ETHERTYPE_ALL, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor03() throws IOException
+    {
+        new PacketFanoutGroup(PacketFanoutGroup.Mode.HASH, 4, 0x10000, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor04() throws IOException
+    {
+        new PacketFanoutGroup(PacketFanoutGroup.Mode.CPU, 2, -1, null);
+    }
+
+    @Test
+    public void testGetMember01() throws IOException
+    {
+        PacketFanoutGroup group = TestPacketFanoutGroup.openGroup();
+        try
+        {
+            RawSocket member = group.getMember(0);
+            try
+            {
+                member.close();
+                fail("Expected exception " + UnsupportedOperationException.class);
+            }
+            catch(UnsupportedOperationException e)
+            {
+                assertTrue("The member should still be open.", member.isOpen());
+            }
+        }
+        finally
+        {
+            group.close();
+        }
+
+        assertFalse("Closing the group should close the members.", group.getMember(0).isOpen());
+    }
+
+    @Test
+    public void testWorker01() throws Exception
+    {
+        PacketFanoutGroup group = TestPacketFanoutGroup.openGroup();
+        IllegalStateException cause = new IllegalStateException("The worker failed.");
+        CountDownLatch failed = new CountDownLatch(2);
+        group.start((member, socket) -> {
+            failed.countDown();
+            throw cause;
+        });
+
+        assertTrue("The workers did not run.", failed.await(5, TimeUnit.SECONDS));
+        try
+        {
+            group.close();
+        }
+        catch(IOException e)
+        {
+            assertSame("The cause is not correct.", cause, e.getCause());
+            return;
+        }
+
+        fail("Expected exception " + IOException.class);
+    }
+
+    @Test
+    public void testClose01() throws Exception
+    {
+        PacketFanoutGroup group = TestPacketFanoutGroup.openGroup();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        group.start((member, socket) -> {
+            started.countDown();
+            try
+            {
+                release.await(30, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertTrue("The workers did not run.", started.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        group.close();
+        release.countDown();
+
+        assertFalse("The group should be closed.", group.isOpen());
+        assertTrue("Closing should not wait for stuck workers.", System.nanoTime() - start < 5000000000L);
+    }
+
+    private static PacketFanoutGroup openGroup() throws IOException
+    {
+        try
+        {
+            return new PacketFanoutGroup(
+                PacketFanoutGroup.Mode.LOAD_BALANCE, 2, PacketFanoutGroup.ETHERTYPE_ALL,
+                NetworkInterface.getByName("lo")
+            );
+        }
+        catch(IOException | UnsupportedOperationException e)
+        {
+            assumeNoException("Opening packet sockets requires Linux and privileges.", e);
+            return null;
+        }
+    }
+}
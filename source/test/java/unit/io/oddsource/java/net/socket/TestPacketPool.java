@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PacketLeakException;
+import io.oddsource.java.net.socket.ip4.Ipv4HeaderView;
+import io.oddsource.java.net.socket.ip6.Ipv6HeaderView;
+
+/**
+ * Test class for PacketPool and PooledPacket.
+ */
+public class TestPacketPool
+{
+    private PacketPool pool;
+
+    private ByteBuffer received;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.pool = new PacketPool(128, 2, 2);
+        this.pool.setLeakSamplingInterval(0);
+
+        // 192.0.2.1 to 192.0.2.2, TTL 0, ICMP, 8-byte payload, received at offset 3
+        this.received = ByteBuffer.allocate(64);
+        Ipv4HeaderView header = new Ipv4HeaderView().wrap(this.received, 3).clear();
+        header.setPacketLength(28);
+        header.setProtocol(1);
+        header.setSourceAddress(InetAddress.getByName("192.0.2.1"));
+        header.setDestinationAddress(InetAddress.getByName("192.0.2.2"));
+        this.received.put(11, (byte) 0);
+        for(int i = 0; i < 8; i++)
+        {
+            this.received.put(23 + i, (byte) (i + 1));
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testConstructor01()
+    {
+        assertEquals("The slot size is not correct.", 128, this.pool.getSlotSize());
+        assertEquals("The capacity is not correct.", 4, this.pool.getCapacity());
+        assertEquals("The available count is not correct.", 4, this.pool.getAvailable());
+        assertEquals(
+            "The default interval is not correct.",
+            PacketPool.DEFAULT_LEAK_SAMPLING_INTERVAL,
+            new PacketPool(128, 2, 2).getLeakSamplingInterval()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor02()
+    {
+        new PacketPool(39, 2, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor03()
+    {
+        new PacketPool(128, 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor04()
+    {
+        new PacketPool(128, Integer.MAX_VALUE / 64, 2);
+    }
+
+    @Test
+    public void testCopyIpv4() throws Exception
+    {
+        PooledPacket packet = this.pool.copy(this.received, 3, 28, 1234L);
+
+        assertNotNull("The packet should not be null.", packet);
+        assertEquals("The source is not correct.", Packet.Source.INCOMING, packet.getSource());
+        assertTrue("The packet should be finalized.", packet.isFinalized());
+        assertEquals("The reference count is not correct.", 1, packet.getReferenceCount());
+        assertEquals("The packet length is not correct.", 28, packet.getPacketLength());
+        assertEquals("The header length is not correct.", 20, packet.getHeaderLength());
+        assertEquals("The payload length is not correct.", 8, packet.getPayloadLength());
+        assertEquals("The hop limit is not correct.", 0, packet.getHopLimit());
+        assertEquals("The timestamp is not correct.", 1234L, packet.getTimestamp());
+        assertEquals("The source is not correct.", InetAddress.getByName("192.0.2.1"), packet.getSourceAddress());
+        assertEquals(
+            "The destination is not correct.", InetAddress.getByName("192.0.2.2"), packet.getDestinationAddress()
+        );
+        assertArrayEquals(
+            "The payload is not correct.", new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, packet.getPayloadData()
+        );
+        assertEquals("The header data length is not correct.", 20, packet.getHeaderData().length);
+        assertEquals("The header data is not correct.", 0x45, packet.getHeaderData()[0]);
+        assertEquals("The packet data length is not correct.", 28, packet.getPacketData().length);
+
+        assertTrue("The header should be IPv4.", packet.getHeader() instanceof Ipv4HeaderView);
+        assertEquals("The protocol is not correct.", 1, ((Ipv4HeaderView) packet.getHeader()).getProtocol());
+
+        ByteBuffer buffer = packet.getBuffer();
+        assertTrue("The buffer should be read only.", buffer.isReadOnly());
+        assertTrue("The buffer should be direct.", buffer.isDirect());
+        assertEquals("The buffer position is not correct.", 0, buffer.position());
+        assertEquals("The buffer limit is not correct.", 28, buffer.limit());
+
+        ByteBuffer copy = ByteBuffer.allocate(30);
+        assertEquals("The written length is not correct.", 28, packet.writePacketData(copy));
+        assertEquals("The written data is not correct.", 8, copy.get(27));
+    }
+
+    @Test
+    public void testCopyIpv6() throws Exception
+    {
+        ByteBuffer data = ByteBuffer.allocate(48);
+        Ipv6HeaderView header = new Ipv6HeaderView().wrap(data, 0).clear();
+        header.setPayloadLength(8);
+        header.setNextHeader(58);
+        header.setSourceAddress(InetAddress.getByName("2001:db8::1"));
+        header.setDestinationAddress(InetAddress.getByName("2001:db8::2"));
+
+        PooledPacket packet = this.pool.copy(data, 0, 48, Packet.NO_TIMESTAMP);
+
+        assertTrue("The header should be IPv6.", packet.getHeader() instanceof Ipv6HeaderView);
+        assertEquals("The header length is not correct.", 40, packet.getHeaderLength());
+        assertEquals("The payload length is not correct.", 8, packet.getPayloadLength());
+        assertEquals("The hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, packet.getHopLimit());
+        assertEquals("The source is not correct.", InetAddress.getByName("2001:db8::1"), packet.getSourceAddress());
+        assertEquals(
+            "The destination is not correct.", InetAddress.getByName("2001:db8::2"), packet.getDestinationAddress()
+        );
+    }
+
+    @Test
+    public void testCopyBatch()
+    {
+        PacketBatch batch = new PacketBatch(2, 64);
+        ByteBuffer buffer = batch.getBuffer();
+        for(int i = 0; i < 28; i++)
+        {
+            buffer.put(64 + i, this.received.get(3 + i));
+        }
+        batch.setLength(1, 28);
+
+        PooledPacket packet = this.pool.copy(batch, 1);
+
+        assertEquals("The packet length is not correct.", 28, packet.getPacketLength());
+        assertEquals("The payload is not correct.", 8, packet.getPayloadData()[7]);
+        assertEquals("The timestamp is not correct.", Packet.NO_TIMESTAMP, packet.getTimestamp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyTooLong()
+    {
+        this.pool.copy(ByteBuffer.allocate(256), 0, 129, Packet.NO_TIMESTAMP);
+    }
+
+    @Test
+    public void testCopyMalformed()
+    {
+        this.received.put(3, (byte) 0x55);
+        try
+        {
+            this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+        }
+        catch(MalformedPacketException e)
+        {
+            assertEquals("The slot should be back in the pool.", 4, this.pool.getAvailable());
+            return;
+        }
+        fail("Expected exception " + MalformedPacketException.class);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testCopyTruncated()
+    {
+        this.pool.copy(this.received, 3, 19, Packet.NO_TIMESTAMP);
+    }
+
+    @Test
+    public void testRecycle()
+    {
+        PooledPacket first = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+        PooledPacket second = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+        PooledPacket third = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+        PooledPacket fourth = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+
+        assertNotNull("The fourth packet should not be null.", fourth);
+        assertEquals("The available count is not correct.", 0, this.pool.getAvailable());
+        assertNull("The pool should be exhausted.", this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP));
+
+        assertTrue("The packet should have gone back to the pool.", second.release());
+        assertEquals("The available count is not correct.", 1, this.pool.getAvailable());
+        assertSame(
+            "The packet should be reused.", second, this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP)
+        );
+        assertNotSame("The packets should be different.", first, third);
+    }
+
+    @Test
+    public void testRetainRelease()
+    {
+        PooledPacket packet = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+
+        assertSame("The packet should be returned.", packet, packet.retain());
+        assertEquals("The reference count is not correct.", 2, packet.getReferenceCount());
+        assertFalse("The packet should still be referenced.", packet.release());
+        assertEquals("The packet should still be valid.", 28, packet.getPacketLength());
+        assertTrue("The packet should have gone back to the pool.", packet.release());
+        assertEquals("The reference count is not correct.", 0, packet.getReferenceCount());
+
+        try
+        {
+            packet.getSourceAddress();
+        }
+        catch(IllegalStateException e)
+        {
+            try
+            {
+                packet.release();
+            }
+            catch(IllegalStateException e2)
+            {
+                return;
+            }
+        }
+        fail("Expected exception " + IllegalStateException.class);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRetainReleased()
+    {
+        PooledPacket packet = this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP);
+        packet.release();
+        packet.retain();
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetSourceAddress() throws Exception
+    {
+        this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP).setSourceAddress(InetAddress.getByName("::1"));
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetPayloadData()
+    {
+        this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP).setPayloadData(new byte[1]);
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testHeaderReadOnly()
+    {
+        ((Ipv4HeaderView) this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP).getHeader()).setProtocol(6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLeakSamplingInterval()
+    {
+        this.pool.setLeakSamplingInterval(-1);
+    }
+
+    @Test
+    public void testLeakDetection() throws InterruptedException
+    {
+        CountDownLatch reported = new CountDownLatch(1);
+        AtomicReference<PacketLeakException> site = new AtomicReference<>();
+        this.pool.setLeakSamplingInterval(1);
+        this.pool.setLeakListener(e -> {
+            site.set(e);
+            reported.countDown();
+        });
+
+        this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP).retain();
+        this.pool.copy(this.received, 3, 28, Packet.NO_TIMESTAMP).release();
+        assertEquals("The available count is not correct.", 3, this.pool.getAvailable());
+
+        for(int i = 0; i < 50 && reported.getCount() > 0; i++)
+        {
+            System.gc();
+            reported.await(100, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals("The leak should have been reported.", 0, reported.getCount());
+        assertEquals("The leak count is not correct.", 1L, this.pool.getLeakCount());
+        assertEquals("The slot should be back in the pool.", 4, this.pool.getAvailable());
+        assertEquals(
+            "The site should be where the packet was acquired.",
+            "testLeakDetection",
+            site.get().getStackTrace()[2].getMethodName()
+        );
+    }
+}
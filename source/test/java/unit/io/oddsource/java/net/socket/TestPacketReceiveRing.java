@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PacketReceiveRing, capturing on the loopback interface where the privilege to open packet sockets is
+ * available.
+ */
+public class TestPacketReceiveRing
+{
+    private static final int ETHERNET_HEADER_LENGTH = 14;
+
+    private RawSocketImpl socket;
+
+    private PacketReceiveRing ring;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.socket = TestPacketReceiveRing.openLoopback(PacketFanoutGroup.ETHERTYPE_IPV4);
+        this.ring = this.socket.mapReceiveRing(new RingGeometry(65536, 2048, 4, 10));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if(this.ring != null)
+        {
+            this.ring.close();
+        }
+        if(this.socket != null)
+        {
+            this.socket.close();
+        }
+    }
+
+    @Test
+    public void testReceive01() throws IOException
+    {
+        RawSocketImpl icmp = new RawSocketImpl();
+        try
+        {
+            icmp.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+            byte[] request = TestRawSocketImpl.echoRequest(50);
+            icmp.send(request, 0, request.length, InetAddress.getByAddress(new byte[] {127, 0, 0, 1}));
+        }
+        finally
+        {
+            icmp.close();
+        }
+
+        for(int blocks = 0; blocks < 10 && this.ring.nextBlock(2000); blocks++)
+        {
+            ByteBuffer block = this.ring.getBlock();
+            assertTrue("A block should hold at least one packet.", this.ring.getPacketCount() > 0);
+            while(this.ring.nextPacket())
+            {
+                assertTrue("The captured length is not correct.",
+                           this.ring.getCapturedLength() <= this.ring.getPacketLength());
+                assertTrue("The packet should be timestamped.", this.ring.getTimestamp() > 0);
+
+                ByteBuffer frame = block.duplicate();
+                frame.limit(this.ring.getPacketOffset() + this.ring.getCapturedLength());
+                frame.position(this.ring.getPacketOffset() + TestPacketReceiveRing.ETHERNET_HEADER_LENGTH);
+                if(TestRawSocketImpl.isEchoReply(frame, 50))
+                {
+                    this.ring.releaseBlock();
+                    return;
+                }
+            }
+            this.ring.releaseBlock();
+        }
+
+        fail("The echo reply was not captured.");
+    }
+
+    @Test
+    public void testMap01() throws IOException
+    {
+        try
+        {
+            this.socket.mapReceiveRing(new RingGeometry(65536, 2048, 4, 10));
+        }
+        catch(IOException e)
+        {
+            assertTrue("The socket should still be open.", this.socket.isOpen());
+            return;
+        }
+
+        fail("Expected exception " + IOException.class);
+    }
+
+    @Test
+    public void testClose01() throws Exception
+    {
+        RawSocketImpl idle = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        try
+        {
+            PacketReceiveRing idleRing = idle.mapReceiveRing(new RingGeometry(65536, 2048, 4, 10));
+            try
+            {
+                TestRawSocketImpl.assertCloseWakes(idle, () -> idleRing.nextBlock(0) ? 1 : 0);
+            }
+            finally
+            {
+                idleRing.close();
+            }
+        }
+        finally
+        {
+            idle.close();
+        }
+    }
+
+    static RawSocketImpl openLoopback(int etherType) throws IOException
+    {
+        NetworkInterface loopback = NetworkInterface.getByName("lo");
+        assumeNotNull(loopback);
+
+        RawSocketImpl socket = new RawSocketImpl();
+        try
+        {
+            socket.openPacket(etherType, loopback.getIndex());
+        }
+        catch(SocketException | UnsupportedOperationException e)
+        {
+            assumeNoException("Opening packet sockets requires Linux and privileges.", e);
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PacketTransmitRing, sending frames around the loopback interface to a receive ring where the
+ * privilege to open packet sockets is available.
+ */
+public class TestPacketTransmitRing
+{
+    private static final int ETHERTYPE_EXPERIMENTAL = 0x88B5;
+
+    private static final int FRAME_LENGTH = 64;
+
+    private static final int MARKER = 0x4F534652;
+
+    private RawSocketImpl receiveSocket;
+
+    private RawSocketImpl transmitSocket;
+
+    private PacketReceiveRing receiveRing;
+
+    private PacketTransmitRing transmitRing;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.receiveSocket = TestPacketReceiveRing.openLoopback(TestPacketTransmitRing.ETHERTYPE_EXPERIMENTAL);
+        this.receiveRing = this.receiveSocket.mapReceiveRing(new RingGeometry(65536, 2048, 4, 10));
+        this.transmitSocket = TestPacketReceiveRing.openLoopback(TestPacketTransmitRing.ETHERTYPE_EXPERIMENTAL);
+        this.transmitRing = this.transmitSocket.mapTransmitRing(new RingGeometry(65536, 2048, 2, 0));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if(this.transmitRing != null)
+        {
+            this.transmitRing.close();
+        }
+        if(this.transmitSocket != null)
+        {
+            this.transmitSocket.close();
+        }
+        if(this.receiveRing != null)
+        {
+            this.receiveRing.close();
+        }
+        if(this.receiveSocket != null)
+        {
+            this.receiveSocket.close();
+        }
+    }
+
+    @Test
+    public void testTransmit01() throws IOException
+    {
+        assertEquals("The slot count is not correct.", 64, this.transmitRing.getSlotCount());
+
+        for(int i = 0; i < 3; i++)
+        {
+            int slot = this.transmitRing.claim();
+            assertEquals("The slot is not correct.", i, slot);
+            assertEquals("The slot should be claimed.", PacketTransmitRing.STATUS_AVAILABLE,
+                         this.transmitRing.getSlotStatus(slot));
+
+            ByteBuffer frame = this.transmitRing.getSlot(slot);
+            frame.put(new byte[12]);
+            frame.putShort((short) TestPacketTransmitRing.ETHERTYPE_EXPERIMENTAL);
+            frame.putInt(TestPacketTransmitRing.MARKER);
+            frame.putInt(i);
+            this.transmitRing.publish(slot, TestPacketTransmitRing.FRAME_LENGTH);
+        }
+
+        assertEquals("The sent length is not correct.", 3 * TestPacketTransmitRing.FRAME_LENGTH,
+                     this.transmitRing.flush());
+
+        boolean[] received = new boolean[3];
+        int count = 0;
+        for(int blocks = 0; blocks < 10 && count < 3 && this.receiveRing.nextBlock(2000); blocks++)
+        {
+            ByteBuffer block = this.receiveRing.getBlock();
+            while(this.receiveRing.nextPacket())
+            {
+                ByteBuffer frame = block.duplicate();
+                frame.position(this.receiveRing.getPacketOffset());
+                if(this.receiveRing.getCapturedLength() == TestPacketTransmitRing.FRAME_LENGTH &&
+                   frame.getInt(frame.position() + 14) == TestPacketTransmitRing.MARKER)
+                {
+                    int index = frame.getInt(frame.position() + 18);
+                    assertTrue("The frame index is not correct.", index >= 0 && index < 3);
+                    if(!received[index])
+                    {
+                        received[index] = true;
+                        count++;
+                    }
+                }
+            }
+            this.receiveRing.releaseBlock();
+        }
+
+        assertEquals("Not every frame was received.", 3, count);
+    }
+
+    @Test
+    public void testClaim01() throws IOException
+    {
+        for(int i = 0; i < this.transmitRing.getSlotCount(); i++)
+        {
+            assertEquals("The slot is not correct.", i, this.transmitRing.claim());
+        }
+
+        assertEquals("The ring should be full.", -1, this.transmitRing.claim());
+    }
+
+    @Test
+    public void testFlush01() throws Exception
+    {
+        this.stallFirstSlot();
+
+        TestRawSocketImpl.assertCloseWakes(this.transmitSocket, () -> this.transmitRing.flush());
+    }
+
+    @Test
+    public void testFlush02() throws Exception
+    {
+        this.stallFirstSlot();
+        this.transmitSocket.setSendTimeout(100);
+
+        long start = System.nanoTime();
+        try
+        {
+            this.transmitRing.flush();
+        }
+        catch(SocketTimeoutException e)
+        {
+            assertTrue("The flush did not wait for the timeout.", System.nanoTime() - start >= 90_000_000L);
+            return;
+        }
+
+        fail("Expected exception " + SocketTimeoutException.class);
+    }
+
+    /**
+     * Sends a frame, then marks its slot as still being sent, as a slow device would leave it, so that a blocking
+     * flush waits for it.
+     */
+    private void stallFirstSlot() throws Exception
+    {
+        int slot = this.transmitRing.claim();
+        ByteBuffer frame = this.transmitRing.getSlot(slot);
+        frame.put(new byte[12]);
+        frame.putShort((short) TestPacketTransmitRing.ETHERTYPE_EXPERIMENTAL);
+        this.transmitRing.publish(slot, TestPacketTransmitRing.FRAME_LENGTH);
+        this.transmitRing.flush();
+
+        Field field = PacketTransmitRing.class.getDeclaredField("ring");
+        field.setAccessible(true);
+        ((ByteBuffer) field.get(this.transmitRing)).putInt(0, PacketTransmitRing.STATUS_SENDING);
+        assertEquals("The slot should be sending.", PacketTransmitRing.STATUS_SENDING,
+                     this.transmitRing.getSlotStatus(slot));
+    }
+}
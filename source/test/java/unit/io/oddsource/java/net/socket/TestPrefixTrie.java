@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for PrefixTrie.
+ */
+public class TestPrefixTrie
+{
+    private static byte[] ip(int a, int b, int c, int d)
+    {
+        return new byte[] {(byte) a, (byte) b, (byte) c, (byte) d};
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        PrefixTrie<String> trie = PrefixTrie.empty();
+
+        assertEquals("The size is not correct.", 0, trie.size());
+        assertNull("Nothing should match.", trie.longestMatch(ip(10, 0, 0, 1)));
+        assertNull("Nothing should be found.", trie.get(ip(0, 0, 0, 0), 0));
+    }
+
+    @Test
+    public void testPutGet()
+    {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().
+            put(ip(10, 0, 0, 0), 8, "a").
+            put(ip(10, 1, 0, 0), 16, "b").
+            put(ip(192, 168, 1, 0), 24, "c");
+
+        assertEquals("The size is not correct.", 3, trie.size());
+        assertEquals("The value is not correct.", "a", trie.get(ip(10, 0, 0, 0), 8));
+        assertEquals("The value is not correct.", "b", trie.get(ip(10, 1, 0, 0), 16));
+        assertEquals("The value is not correct.", "c", trie.get(ip(192, 168, 1, 0), 24));
+        assertEquals("Bits past the length should be ignored.", "c", trie.get(ip(192, 168, 1, 99), 24));
+        assertNull("The prefix should not be found.", trie.get(ip(10, 0, 0, 0), 9));
+        assertNull("The prefix should not be found.", trie.get(ip(10, 1, 0, 0), 12));
+        assertNull("The prefix should not be found.", trie.get(ip(0, 0, 0, 0), 0));
+    }
+
+    @Test
+    public void testPutReplace()
+    {
+        PrefixTrie<String> first = PrefixTrie.<String>empty().put(ip(10, 0, 0, 0), 8, "a");
+        PrefixTrie<String> second = first.put(ip(10, 9, 9, 9), 8, "b");
+
+        assertEquals("The size is not correct.", 1, second.size());
+        assertEquals("The value should have been replaced.", "b", second.get(ip(10, 0, 0, 0), 8));
+        assertEquals("The old trie should not have changed.", "a", first.get(ip(10, 0, 0, 0), 8));
+    }
+
+    @Test
+    public void testLongestMatch()
+    {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().
+            put(ip(10, 1, 2, 0), 24, "c").
+            put(ip(0, 0, 0, 0), 0, "default").
+            put(ip(10, 1, 0, 0), 16, "b").
+            put(ip(10, 1, 2, 3), 32, "host").
+            put(ip(10, 0, 0, 0), 8, "a");
+
+        assertEquals("The match is not correct.", "host", trie.longestMatch(ip(10, 1, 2, 3)));
+        assertEquals("The match is not correct.", "c", trie.longestMatch(ip(10, 1, 2, 4)));
+        assertEquals("The match is not correct.", "b", trie.longestMatch(ip(10, 1, 3, 4)));
+        assertEquals("The match is not correct.", "a", trie.longestMatch(ip(10, 2, 3, 4)));
+        assertEquals("The match is not correct.", "default", trie.longestMatch(ip(11, 1, 2, 3)));
+    }
+
+    @Test
+    public void testLongestMatchOddLengths()
+    {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().
+            put(ip(192, 168, 0, 0), 23, "23").
+            put(ip(192, 168, 1, 128), 25, "25");
+
+        assertEquals("The match is not correct.", "23", trie.longestMatch(ip(192, 168, 0, 200)));
+        assertEquals("The match is not correct.", "23", trie.longestMatch(ip(192, 168, 1, 127)));
+        assertEquals("The match is not correct.", "25", trie.longestMatch(ip(192, 168, 1, 128)));
+        assertNull("Nothing should match.", trie.longestMatch(ip(192, 168, 2, 0)));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        PrefixTrie<String> full = PrefixTrie.<String>empty().
+            put(ip(10, 0, 0, 0), 8, "a").
+            put(ip(10, 1, 0, 0), 16, "b").
+            put(ip(10, 2, 0, 0), 16, "c");
+
+        PrefixTrie<String> removed = full.remove(ip(10, 0, 0, 0), 8);
+        assertEquals("The size is not correct.", 2, removed.size());
+        assertNull("The prefix should have been removed.", removed.get(ip(10, 0, 0, 0), 8));
+        assertEquals("The value is not correct.", "b", removed.longestMatch(ip(10, 1, 5, 5)));
+        assertEquals("The value is not correct.", "c", removed.longestMatch(ip(10, 2, 5, 5)));
+        assertNull("Nothing should match.", removed.longestMatch(ip(10, 3, 5, 5)));
+        assertEquals("The old trie should not have changed.", "a", full.longestMatch(ip(10, 3, 5, 5)));
+
+        PrefixTrie<String> empty = removed.remove(ip(10, 1, 0, 0), 16).remove(ip(10, 2, 0, 0), 16);
+        assertEquals("The size is not correct.", 0, empty.size());
+        assertNull("Nothing should match.", empty.longestMatch(ip(10, 1, 5, 5)));
+    }
+
+    @Test
+    public void testRemoveMissing()
+    {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().put(ip(10, 0, 0, 0), 8, "a").put(ip(10, 1, 0, 0), 16, "b");
+
+        assertSame("The trie should not change.", trie, trie.remove(ip(10, 0, 0, 0), 9));
+        assertSame("The trie should not change.", trie, trie.remove(ip(10, 1, 0, 0), 24));
+        assertSame("The trie should not change.", trie, trie.remove(ip(0, 0, 0, 0), 0));
+    }
+
+    @Test
+    public void testIpv6()
+    {
+        byte[] documentation = new byte[16];
+        documentation[0] = 0x20;
+        documentation[1] = 0x01;
+        documentation[2] = 0x0d;
+        documentation[3] = (byte) 0xb8;
+
+        byte[] host = documentation.clone();
+        host[15] = 1;
+
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().
+            put(new byte[16], 0, "default").
+            put(documentation, 32, "documentation").
+            put(host, 128, "host");
+
+        assertEquals("The match is not correct.", "host", trie.longestMatch(host));
+        host[15] = 2;
+        assertEquals("The match is not correct.", "documentation", trie.longestMatch(host));
+        host[3] = 0;
+        assertEquals("The match is not correct.", "default", trie.longestMatch(host));
+    }
+
+    @Test
+    public void testForEach()
+    {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty().
+            put(ip(10, 1, 0, 0), 16, "b").
+            put(ip(10, 0, 0, 0), 8, "a").
+            put(ip(192, 168, 0, 0), 16, "c");
+
+        List<String> values = new ArrayList<>();
+        trie.forEach(values::add);
+
+        assertEquals("The values are not correct.", Arrays.asList("a", "b", "c"), values);
+    }
+
+    @Test
+    public void testRandomAgainstLinearScan()
+    {
+        Random random = new Random(8675309L);
+        List<byte[]> prefixes = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        PrefixTrie<Integer> trie = PrefixTrie.empty();
+
+        for(int i = 0; i < 500; i++)
+        {
+            byte[] prefix = ip(10, random.nextInt(4), random.nextInt(256), random.nextInt(256));
+            int length = 8 + random.nextInt(25);
+            if(random.nextInt(4) == 0 && !prefixes.isEmpty())
+            {
+                int victim = random.nextInt(prefixes.size());
+                trie = trie.remove(prefixes.remove(victim), lengths.remove(victim));
+            }
+            else if(trie.get(prefix, length) == null)
+            {
+                prefixes.add(prefix);
+                lengths.add(length);
+                trie = trie.put(prefix, length, i);
+            }
+        }
+
+        assertEquals("The size is not correct.", prefixes.size(), trie.size());
+
+        for(int i = 0; i < 2000; i++)
+        {
+            byte[] address = ip(10, random.nextInt(4), random.nextInt(256), random.nextInt(256));
+
+            int best = -1;
+            for(int j = 0; j < prefixes.size(); j++)
+            {
+                boolean longer = best < 0 || lengths.get(j) > lengths.get(best);
+                if(longer && matches(prefixes.get(j), lengths.get(j), address))
+                {
+                    best = j;
+                }
+            }
+
+            Integer expected = best < 0 ? null : trie.get(prefixes.get(best), lengths.get(best));
+            assertEquals("The match is not correct.", expected, trie.longestMatch(address));
+        }
+    }
+
+    private static boolean matches(byte[] prefix, int length, byte[] address)
+    {
+        for(int bit = 0; bit < length; bit++)
+        {
+            int mask = 0x80 >>> (bit % 8);
+            if((prefix[bit / 8] & mask) != (address[bit / 8] & mask))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutLengthTooLong()
+    {
+        PrefixTrie.<String>empty().put(ip(10, 0, 0, 0), 33, "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutNullValue()
+    {
+        PrefixTrie.<String>empty().put(ip(10, 0, 0, 0), 8, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetNullPrefix()
+    {
+        PrefixTrie.<String>empty().get(null, 0);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for ProtocolRegistry.
+ */
+public class TestProtocolRegistry
+{
+    private Protocol ip;
+
+    private Protocol icmp;
+
+    private Protocol tcp;
+
+    private Protocol duplicate;
+
+    private Protocol large;
+
+    private ProtocolRegistry registry;
+
+    @Before
+    public void setUp()
+    {
+        this.ip = new Protocol("ip", new String[] {"IP"}, 0);
+        this.icmp = new Protocol("icmp", new String[] {"ICMP"}, 1);
+        this.tcp = new Protocol("tcp", new String[] {"TCP"}, 6);
+        this.duplicate = new Protocol("tcp2", new String[] {"TCP", "ip"}, 6);
+        this.large = new Protocol("large", new String[0], 300);
+
+        this.registry = new ProtocolRegistry(new Protocol[] {this.ip, this.icmp, this.tcp, this.duplicate, this.large});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructNull()
+    {
+        new ProtocolRegistry(null);
+    }
+
+    @Test
+    public void testGetByNumber01()
+    {
+        assertSame("The protocol is not correct.", this.ip, this.registry.getByNumber(0));
+        assertSame("The protocol is not correct.", this.icmp, this.registry.getByNumber(1));
+        assertNull("The protocol should not exist.", this.registry.getByNumber(2));
+    }
+
+    @Test
+    public void testGetByNumber02()
+    {
+        assertSame("The first entry for a number should win.", this.tcp, this.registry.getByNumber(6));
+    }
+
+    @Test
+    public void testGetByNumber03()
+    {
+        assertNull("Negative numbers should not be found.", this.registry.getByNumber(-1));
+        assertNull("Numbers past the index should not be found.", this.registry.getByNumber(256));
+        assertNull("Numbers past the index should not be found.", this.registry.getByNumber(300));
+    }
+
+    @Test
+    public void testGetByName01()
+    {
+        assertSame("The protocol is not correct.", this.icmp, this.registry.getByName("icmp"));
+        assertSame("The protocol is not correct.", this.icmp, this.registry.getByName("ICMP"));
+        assertSame("The protocol is not correct.", this.duplicate, this.registry.getByName("tcp2"));
+        assertSame("The protocol is not correct.", this.large, this.registry.getByName("large"));
+        assertNull("The protocol should not exist.", this.registry.getByName("Icmp"));
+    }
+
+    @Test
+    public void testGetByName02()
+    {
+        assertSame("The first entry for an alias should win.", this.tcp, this.registry.getByName("TCP"));
+        assertSame("The first entry for a name should win.", this.ip, this.registry.getByName("ip"));
+    }
+
+    @Test
+    public void testGetProtocols()
+    {
+        Protocol[] protocols = this.registry.getProtocols();
+        assertArrayEquals(
+            "The protocols are not correct.",
+            new Protocol[] {this.ip, this.icmp, this.tcp, this.duplicate, this.large},
+            protocols
+        );
+
+        protocols[0] = null;
+        assertSame("The registry should not be modified.", this.ip, this.registry.getProtocols()[0]);
+    }
+
+    @Test
+    public void testRefresh()
+    {
+        ProtocolRegistry first = ProtocolRegistry.getInstance();
+        assertSame("The registry should be reused.", first, ProtocolRegistry.getInstance());
+
+        ProtocolRegistry refreshed = ProtocolRegistry.refresh();
+        assertNotSame("The registry should be reloaded.", first, refreshed);
+        assertSame("The reloaded registry should be current.", refreshed, ProtocolRegistry.getInstance());
+        assertEquals(
+            "The reloaded registry should have the same protocols.",
+            first.getProtocols().length,
+            refreshed.getProtocols().length
+        );
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.IllegalSelectorException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for RawSocketChannel.
+ */
+public class TestRawSocketChannel
+{
+    private RawSocketChannel channel;
+
+    @Before
+    public void setUp()
+    {
+        this.channel = RawSocketChannel.open(new RawSocketImpl());
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpen01()
+    {
+        RawSocketChannel.open(null);
+    }
+
+    @Test
+    public void testOpen02()
+    {
+        assertTrue("The channel should be open.", this.channel.isOpen());
+        assertTrue("The channel should be blocking.", this.channel.isBlocking());
+        assertTrue("The socket should be blocking.", this.channel.getSocket().isBlocking());
+        assertEquals(
+            "The valid operations are not correct.",
+            SelectionKey.OP_READ | SelectionKey.OP_WRITE,
+            this.channel.validOps()
+        );
+    }
+
+    @Test
+    public void testConfigureBlocking01() throws IOException
+    {
+        this.channel.configureBlocking(false);
+
+        assertFalse("The channel should not be blocking.", this.channel.isBlocking());
+        assertFalse("The socket should not be blocking.", this.channel.getSocket().isBlocking());
+    }
+
+    @Test(expected = NotYetConnectedException.class)
+    public void testWrite01() throws IOException
+    {
+        this.channel.write(ByteBuffer.allocate(8));
+    }
+
+    @Test(expected = IllegalSelectorException.class)
+    public void testRegister01() throws IOException
+    {
+        this.channel.configureBlocking(false);
+
+        try(Selector selector = Selector.open())
+        {
+            this.channel.register(selector, SelectionKey.OP_READ);
+        }
+    }
+
+    @Test
+    public void testOpenSelector01() throws IOException
+    {
+        Selector selector = RawSocketChannel.openSelector();
+
+        assertSame("The provider is not correct.", this.channel.provider(), selector.provider());
+        assertEquals("No channels should be ready.", 0, selector.selectNow());
+        assertTrue("There should be no keys.", selector.keys().isEmpty());
+
+        selector.close();
+        assertFalse("The selector should be closed.", selector.isOpen());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testProvider01() throws IOException
+    {
+        this.channel.provider().openSocketChannel();
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void testRead01() throws IOException
+    {
+        this.channel.close();
+
+        this.channel.read(ByteBuffer.allocate(8));
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.exception.SocketConstantNotDefinedException;
+
+/**
+ * Test class for RawSocketImpl's lifecycle, on raw ICMP sockets where the privilege to open them is available.
+ */
+public class TestRawSocketImpl
+{
+    private static final int IDENTIFIER = 0x4F53;
+
+    static final int UNUSED_ETHERTYPE = 0x88B5;
+
+    private RawSocketImpl socket;
+
+    private InetAddress loopback;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.socket = new RawSocketImpl();
+        try
+        {
+            this.socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+        }
+        catch(SocketException e)
+        {
+            assumeNoException("Opening raw sockets requires privileges.", e);
+        }
+        this.socket.setReceiveTimeout(2000);
+        this.loopback = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        this.socket.close();
+    }
+
+    @Test
+    public void testOpen01() throws IOException
+    {
+        assertTrue("The socket should be open.", this.socket.isOpen());
+        assertTrue("The descriptor is not correct.", this.socket.getNativeSocketIdentifier() >= 0);
+
+        this.socket.close();
+        assertFalse("The socket should be closed.", this.socket.isOpen());
+
+        this.socket.close();
+        assertFalse("The socket should still be closed.", this.socket.isOpen());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpen02() throws IOException
+    {
+        this.socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpen03() throws IOException
+    {
+        this.socket.close();
+        this.socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenPacket01() throws IOException
+    {
+        new RawSocketImpl().openPacket(0x10000, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenPacket02() throws IOException
+    {
+        new RawSocketImpl().openPacket(PacketFanoutGroup.ETHERTYPE_ALL, -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenPacket03() throws IOException
+    {
+        this.socket.openPacket(PacketFanoutGroup.ETHERTYPE_ALL, 0);
+    }
+
+    @Test
+    public void testCreate01() throws IOException
+    {
+        RawSocketImpl created = RawSocketImpl.create();
+        assertNotNull("The socket should not be null.", created);
+        assertFalse("The socket should not be open.", created.isOpen());
+
+        created.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+        try
+        {
+            assertTrue("The socket should be open.", created.isOpen());
+        }
+        finally
+        {
+            created.close();
+        }
+    }
+
+    @Test
+    public void testSocketOption01()
+    {
+        try
+        {
+            this.socket.setSocketOption(SocketLevel.IP, Constants.NOT_DEFINED, 1);
+        }
+        catch(SocketConstantNotDefinedException e)
+        {
+            assertEquals("The message is not correct.", "The socket option is not natively defined.", e.getMessage());
+            return;
+        }
+
+        fail("Expected exception " + SocketConstantNotDefinedException.class);
+    }
+
+    @Test(expected = SocketConstantNotDefinedException.class)
+    public void testSocketOption02()
+    {
+        this.socket.getSocketOption(SocketLevel.IP, Constants.NOT_DEFINED);
+    }
+
+    @Test
+    public void testReceive01() throws IOException
+    {
+        RawSocketImpl unopened = new RawSocketImpl();
+        try
+        {
+            unopened.receive(new byte[64], 0, 64);
+        }
+        catch(SocketException e)
+        {
+            assertEquals("The message is not correct.", "Socket is not open.", e.getMessage());
+            return;
+        }
+
+        fail("Expected exception " + SocketException.class);
+    }
+
+    @Test
+    public void testReceive02() throws IOException
+    {
+        this.socket.close();
+        try
+        {
+            this.socket.receive(ByteBuffer.allocateDirect(64));
+        }
+        catch(SocketException e)
+        {
+            assertEquals("The message is not correct.", "Socket closed.", e.getMessage());
+            return;
+        }
+
+        fail("Expected exception " + SocketException.class);
+    }
+
+    @Test
+    public void testRoundTrip01() throws IOException
+    {
+        byte[] request = TestRawSocketImpl.echoRequest(1);
+        assertEquals("The sent length is not correct.", request.length,
+                     this.socket.send(request, 0, request.length, this.loopback));
+
+        byte[] data = new byte[2048];
+        for(int i = 0; i < 10; i++)
+        {
+            int received = this.socket.receive(data, 0, data.length);
+            if(TestRawSocketImpl.isEchoReply(ByteBuffer.wrap(data, 0, received), 1))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received.");
+    }
+
+    @Test
+    public void testRoundTrip02() throws IOException
+    {
+        ByteBuffer request = ByteBuffer.allocateDirect(64);
+        request.put(TestRawSocketImpl.echoRequest(2)).flip();
+        assertEquals("The sent length is not correct.", 16, this.socket.send(request, this.loopback));
+        assertEquals("The position is not correct.", 16, request.position());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2048);
+        for(int i = 0; i < 10; i++)
+        {
+            buffer.clear();
+            int received = this.socket.receive(buffer);
+            assertEquals("The position is not correct.", received, buffer.position());
+            buffer.flip();
+            if(TestRawSocketImpl.isEchoReply(buffer, 2))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received.");
+    }
+
+    @Test
+    public void testRoundTrip03() throws IOException
+    {
+        ByteBuffer request = ByteBuffer.wrap(TestRawSocketImpl.echoRequest(3));
+        assertEquals("The sent length is not correct.", 16, this.socket.send(request, this.loopback));
+        assertFalse("The buffer should be drained.", request.hasRemaining());
+
+        ByteBuffer buffer = ByteBuffer.allocate(2048);
+        for(int i = 0; i < 10; i++)
+        {
+            buffer.clear();
+            this.socket.receive(buffer);
+            buffer.flip();
+            if(TestRawSocketImpl.isEchoReply(buffer, 3))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received.");
+    }
+
+    @Test
+    public void testRoundTrip04() throws IOException
+    {
+        this.socket.setReceiveTimeout(100);
+        try
+        {
+            this.socket.receive(new byte[2048], 0, 2048);
+            fail("Expected exception " + SocketTimeoutException.class);
+        }
+        catch(SocketTimeoutException e)
+        {
+            assertEquals("The message is not correct.", "Receive timed out.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBatch01() throws IOException
+    {
+        PacketBatch requests = new PacketBatch(3, 64);
+        for(int i = 0; i < 3; i++)
+        {
+            byte[] request = TestRawSocketImpl.echoRequest(10 + i);
+            ByteBuffer buffer = requests.getBuffer();
+            for(int j = 0; j < request.length; j++)
+            {
+                buffer.put(requests.getSlotOffset(i) + j, request[j]);
+            }
+            requests.setLength(i, request.length);
+            requests.setRemoteAddress(i, this.loopback);
+        }
+        requests.setSize(3);
+        assertEquals("The sent count is not correct.", 3, this.socket.sendBatch(requests));
+
+        PacketBatch batch = new PacketBatch(8, 2048);
+        boolean[] replied = new boolean[3];
+        int replies = 0;
+        for(int attempts = 0; attempts < 10 && replies < 3; attempts++)
+        {
+            int received = this.socket.receiveBatch(batch, 8);
+            assertTrue("At least one packet should be received.", received > 0);
+            assertEquals("The size is not correct.", received, batch.getSize());
+            for(int i = 0; i < received; i++)
+            {
+                assertEquals("The source is not correct.", this.loopback, batch.getRemoteAddress(i));
+                for(int j = 0; j < 3; j++)
+                {
+                    if(!replied[j] && TestRawSocketImpl.isEchoReply(TestRawSocketImpl.slot(batch, i), 10 + j))
+                    {
+                        replied[j] = true;
+                        replies++;
+                    }
+                }
+            }
+        }
+
+        assertEquals("Not every echo reply was received.", 3, replies);
+    }
+
+    @Test
+    public void testReceiveTimestamps01() throws IOException
+    {
+        assertFalse("Timestamps should be off by default.", this.socket.getReceiveTimestamps());
+        this.socket.setReceiveTimestamps(true);
+        assertTrue("Timestamps should be on.", this.socket.getReceiveTimestamps());
+
+        long before = System.currentTimeMillis();
+        byte[] request = TestRawSocketImpl.echoRequest(20);
+        this.socket.send(request, 0, request.length, this.loopback);
+
+        long timestamp = this.receiveEchoReplyTimestamp(20);
+        assertNotEquals("The reply should be timestamped.", Packet.NO_TIMESTAMP, timestamp);
+        assertTrue("The timestamp is too early.", timestamp / 1000000L >= before - 1000L);
+        assertTrue("The timestamp is too late.", timestamp / 1000000L <= System.currentTimeMillis() + 1000L);
+    }
+
+    @Test
+    public void testReceiveTimestamps02() throws IOException
+    {
+        this.socket.setReceiveTimestamps(true);
+        this.socket.setReceiveTimestamps(false);
+        assertFalse("Timestamps should be off.", this.socket.getReceiveTimestamps());
+
+        byte[] request = TestRawSocketImpl.echoRequest(21);
+        this.socket.send(request, 0, request.length, this.loopback);
+
+        assertEquals("The reply should not be timestamped.", Packet.NO_TIMESTAMP,
+                     this.receiveEchoReplyTimestamp(21));
+    }
+
+    @Test
+    public void testFilter01() throws IOException
+    {
+        this.socket.attachFilter(
+            BpfProgram.builder()
+                .loadIndexHeaderLength(0)
+                .loadByteIndirect(0)
+                .jumpIfEqual(0, "reply", "drop")
+                .label("reply").loadHalfWordIndirect(4)
+                .jumpIfEqual(TestRawSocketImpl.IDENTIFIER, "accept", "drop")
+                .label("accept").accept()
+                .label("drop").drop()
+                .build()
+        );
+
+        byte[] request = TestRawSocketImpl.echoRequest(30);
+        this.socket.send(request, 0, request.length, this.loopback);
+
+        byte[] data = new byte[2048];
+        for(int i = 0; i < 10; i++)
+        {
+            int received = this.socket.receive(data, 0, data.length);
+            int message = (data[0] & 0x0F) * 4;
+            assertEquals("The filter should only pass echo replies.", 0, data[message]);
+            assertEquals("The filter should only pass our identifier.", TestRawSocketImpl.IDENTIFIER,
+                         ((data[message + 4] & 0xFF) << 8) | (data[message + 5] & 0xFF));
+            if(TestRawSocketImpl.isEchoReply(ByteBuffer.wrap(data, 0, received), 30))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received.");
+    }
+
+    @Test
+    public void testFilter02() throws IOException
+    {
+        this.socket.attachFilter(BpfProgram.builder().drop().build());
+        this.socket.setReceiveTimeout(200);
+
+        byte[] request = TestRawSocketImpl.echoRequest(31);
+        this.socket.send(request, 0, request.length, this.loopback);
+        try
+        {
+            this.socket.receive(new byte[2048], 0, 2048);
+            fail("Expected exception " + SocketTimeoutException.class);
+        }
+        catch(SocketTimeoutException ignore)
+        {
+            // the filter dropped everything
+        }
+
+        this.socket.detachFilter();
+        this.socket.setReceiveTimeout(2000);
+        request = TestRawSocketImpl.echoRequest(32);
+        this.socket.send(request, 0, request.length, this.loopback);
+
+        byte[] data = new byte[2048];
+        for(int i = 0; i < 10; i++)
+        {
+            int received = this.socket.receive(data, 0, data.length);
+            if(TestRawSocketImpl.isEchoReply(ByteBuffer.wrap(data, 0, received), 32))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received after detaching the filter.");
+    }
+
+    @Test
+    public void testFilter03() throws IOException
+    {
+        this.socket.attachFilter(
+            BpfProgram.builder()
+                .loadAncillary(BpfProgram.ANCILLARY_PROTOCOL)
+                .jumpIfEqual(0x0800, "ipv4", "drop")
+                .label("ipv4").loadByte(BpfProgram.NETWORK_OFFSET + 9)
+                .jumpIfEqual(1, "accept", "drop")
+                .label("accept").accept()
+                .label("drop").drop()
+                .build()
+        );
+
+        byte[] request = TestRawSocketImpl.echoRequest(33);
+        this.socket.send(request, 0, request.length, this.loopback);
+
+        byte[] data = new byte[2048];
+        for(int i = 0; i < 10; i++)
+        {
+            int received = this.socket.receive(data, 0, data.length);
+            assertEquals("The filter should only pass ICMP.", 1, data[9]);
+            if(TestRawSocketImpl.isEchoReply(ByteBuffer.wrap(data, 0, received), 33))
+            {
+                return;
+            }
+        }
+
+        fail("No echo reply was received.");
+    }
+
+    @Test
+    public void testClose01() throws Exception
+    {
+        TestRawSocketImpl.assertCloseWakes(this.socket, () -> this.socket.receive(ByteBuffer.allocateDirect(2048)));
+    }
+
+    @Test
+    public void testClose02() throws Exception
+    {
+        TestRawSocketImpl.assertCloseWakes(this.socket, () -> this.socket.receive(new byte[2048], 0, 2048));
+    }
+
+    @Test
+    public void testClose03() throws Exception
+    {
+        TestRawSocketImpl.assertCloseWakes(this.socket, () -> this.socket.receiveBatch(new PacketBatch(4, 2048), 4));
+    }
+
+    @Test
+    public void testClose04() throws Exception
+    {
+        this.socket.setParkingReceive(true);
+        TestRawSocketImpl.assertCloseWakes(this.socket, () -> this.socket.receive(ByteBuffer.allocateDirect(2048)));
+    }
+
+    @Test
+    public void testClosePacket01() throws Exception
+    {
+        RawSocketImpl packet = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        TestRawSocketImpl.assertCloseWakes(packet, () -> packet.receive(ByteBuffer.allocateDirect(2048)));
+    }
+
+    @Test
+    public void testClosePacket02() throws Exception
+    {
+        RawSocketImpl packet = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        TestRawSocketImpl.assertCloseWakes(packet, () -> packet.receive(new byte[2048], 0, 2048));
+    }
+
+    @Test
+    public void testClosePacket03() throws Exception
+    {
+        RawSocketImpl packet = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        TestRawSocketImpl.assertCloseWakes(packet, () -> packet.receiveBatch(new PacketBatch(4, 2048), 4));
+    }
+
+    @Test
+    public void testClosePacket04() throws Exception
+    {
+        RawSocketImpl packet = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        packet.setParkingReceive(true);
+        TestRawSocketImpl.assertCloseWakes(packet, () -> packet.receive(ByteBuffer.allocateDirect(2048)));
+    }
+
+    @Test
+    public void testClosePacket05() throws Exception
+    {
+        RawSocketImpl packet = TestPacketReceiveRing.openLoopback(TestRawSocketImpl.UNUSED_ETHERTYPE);
+        packet.setReceiveTimeout(200);
+        try
+        {
+            packet.receive(ByteBuffer.allocateDirect(2048));
+            fail("Expected exception " + SocketTimeoutException.class);
+        }
+        catch(SocketTimeoutException e)
+        {
+            assertEquals("The message is not correct.", "Receive timed out.", e.getMessage());
+        }
+        finally
+        {
+            packet.close();
+        }
+
+        assertFalse("The socket should be closed.", packet.isOpen());
+        try
+        {
+            packet.receive(ByteBuffer.allocateDirect(2048));
+            fail("Expected exception " + SocketException.class);
+        }
+        catch(SocketException e)
+        {
+            assertEquals("The message is not correct.", "Socket closed.", e.getMessage());
+        }
+    }
+
+    static byte[] echoRequest(int sequence)
+    {
+        byte[] request = new byte[16];
+        request[0] = 8;
+        request[4] = (byte)(TestRawSocketImpl.IDENTIFIER >>> 8);
+        request[5] = (byte)TestRawSocketImpl.IDENTIFIER;
+        request[6] = (byte)(sequence >>> 8);
+        request[7] = (byte)sequence;
+        for(int i = 8; i < request.length; i++)
+        {
+            request[i] = (byte)i;
+        }
+        int checksum = InternetChecksum.compute(request, 0, request.length);
+        request[2] = (byte)(checksum >>> 8);
+        request[3] = (byte)checksum;
+        return request;
+    }
+
+    static boolean isEchoReply(ByteBuffer packet, int sequence)
+    {
+        int start = packet.position();
+        int header = (packet.get(start) & 0x0F) * 4;
+        int message = start + header;
+        return packet.remaining() >= header + 16 && packet.get(message) == 0 &&
+               (packet.getShort(message + 4) & 0xFFFF) == TestRawSocketImpl.IDENTIFIER &&
+               (packet.getShort(message + 6) & 0xFFFF) == sequence;
+    }
+
+    static ByteBuffer slot(PacketBatch batch, int slot)
+    {
+        ByteBuffer buffer = batch.getBuffer().duplicate();
+        buffer.limit(batch.getSlotOffset(slot) + batch.getLength(slot)).position(batch.getSlotOffset(slot));
+        return buffer;
+    }
+
+    private long receiveEchoReplyTimestamp(int sequence) throws IOException
+    {
+        PacketBatch batch = new PacketBatch(4, 2048);
+        for(int attempts = 0; attempts < 10; attempts++)
+        {
+            int received = this.socket.receiveBatch(batch, 4);
+            for(int i = 0; i < received; i++)
+            {
+                if(TestRawSocketImpl.isEchoReply(TestRawSocketImpl.slot(batch, i), sequence))
+                {
+                    return batch.getTimestamp(i);
+                }
+            }
+        }
+
+        fail("No echo reply was received.");
+        return Packet.NO_TIMESTAMP;
+    }
+
+    static void assertCloseWakes(RawSocketImpl socket, ReceivePoller.Attempt receive) throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread receiver = new Thread(() -> {
+            started.countDown();
+            try
+            {
+                receive.attempt();
+            }
+            catch(Throwable e)
+            {
+                thrown.set(e);
+            }
+        });
+        receiver.start();
+
+        assertTrue("The receiver did not start.", started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertTrue("The receiver should be blocked.", receiver.isAlive());
+
+        socket.close();
+        receiver.join(5000);
+        assertFalse("Closing the socket did not wake the receiver.", receiver.isAlive());
+        assertTrue("The receiver should have failed with a SocketException.", thrown.get() instanceof SocketException);
+    }
+}
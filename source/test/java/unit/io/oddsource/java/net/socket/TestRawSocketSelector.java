@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.channels.ClosedSelectorException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for RawSocketSelector.
+ */
+public class TestRawSocketSelector
+{
+    private RawSocketSelector selector;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.selector = new RawSocketSelector(4);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        this.selector.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor01() throws IOException
+    {
+        new RawSocketSelector(0);
+    }
+
+    @Test
+    public void testSelectNow01() throws IOException
+    {
+        assertEquals("No sockets should be ready.", 0, this.selector.selectNow());
+        assertEquals("The ready count is not correct.", 0, this.selector.getReadyCount());
+    }
+
+    @Test
+    public void testSelect01() throws IOException
+    {
+        long start = System.nanoTime();
+        assertEquals("No sockets should be ready.", 0, this.selector.select(50));
+        assertTrue("The select returned too early.", System.nanoTime() - start >= 40000000L);
+    }
+
+    @Test
+    public void testWakeup01() throws IOException
+    {
+        this.selector.wakeup();
+
+        long start = System.nanoTime();
+        assertEquals("No sockets should be ready.", 0, this.selector.select());
+        assertTrue("The select should have returned immediately.", System.nanoTime() - start < 1000000000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegister01() throws IOException
+    {
+        this.selector.register(new RawSocketImpl(), 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetReadySocket01() throws IOException
+    {
+        this.selector.selectNow();
+        this.selector.getReadySocket(0);
+    }
+
+    @Test
+    public void testSelect02() throws IOException
+    {
+        RawSocketImpl socket = TestRawSocketSelector.openIcmpSocket();
+        try
+        {
+            this.selector.register(socket, RawSocketSelector.OP_READ);
+            assertEquals("No sockets should be ready.", 0, this.selector.selectNow());
+
+            byte[] request = TestRawSocketImpl.echoRequest(40);
+            socket.send(request, 0, request.length, InetAddress.getByAddress(new byte[] {127, 0, 0, 1}));
+
+            assertEquals("The socket should be ready.", 1, this.selector.select(2000));
+            assertSame("The ready socket is not correct.", socket, this.selector.getReadySocket(0));
+            assertEquals("The ready ops are not correct.", RawSocketSelector.OP_READ, this.selector.getReadyOps(0));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testDeregister01() throws IOException
+    {
+        RawSocketImpl socket = TestRawSocketSelector.openIcmpSocket();
+        try
+        {
+            this.selector.register(socket, RawSocketSelector.OP_READ);
+            assertTrue("The socket should be registered.", this.selector.isRegistered(socket));
+
+            this.selector.deregister(socket);
+            assertFalse("The socket should not be registered.", this.selector.isRegistered(socket));
+
+            this.selector.deregister(socket);
+            assertFalse("The socket should still not be registered.", this.selector.isRegistered(socket));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testDeregister02() throws IOException
+    {
+        RawSocketImpl socket = TestRawSocketSelector.openIcmpSocket();
+        this.selector.register(socket, RawSocketSelector.OP_READ);
+        socket.close();
+
+        this.selector.deregister(socket);
+        assertFalse("The socket should not be registered.", this.selector.isRegistered(socket));
+        assertEquals("No sockets should be ready.", 0, this.selector.selectNow());
+    }
+
+    @Test
+    public void testClose01() throws IOException
+    {
+        assertTrue("The selector should be open.", this.selector.isOpen());
+
+        this.selector.close();
+        this.selector.close();
+
+        assertFalse("The selector should be closed.", this.selector.isOpen());
+        try
+        {
+            this.selector.selectNow();
+            fail("Expected exception " + ClosedSelectorException.class);
+        }
+        catch(ClosedSelectorException e)
+        {
+            assertFalse("The selector should still be closed.", this.selector.isOpen());
+        }
+    }
+
+    private static RawSocketImpl openIcmpSocket() throws IOException
+    {
+        RawSocketImpl socket = new RawSocketImpl();
+        try
+        {
+            socket.open(IpVersion.IPv4, Constants.IPPROTO_ICMP);
+        }
+        catch(SocketException e)
+        {
+            assumeNoException("Opening raw sockets requires privileges.", e);
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for ReceivePoller, through parking receives on UDP sockets borrowed from datagram channels.
+ */
+public class TestReceivePoller
+{
+    private static final Path DESCRIPTORS = Paths.get("/proc/self/fd");
+
+    private static final int SOCKETS = 4;
+
+    private final DatagramChannel[] channels = new DatagramChannel[TestReceivePoller.SOCKETS];
+
+    private final RawSocketImpl[] sockets = new RawSocketImpl[TestReceivePoller.SOCKETS];
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestReceivePoller.borrow(this.channels, this.sockets);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        TestReceivePoller.release(this.channels, this.sockets);
+    }
+
+    @Test
+    public void testSetParkingReceive01()
+    {
+        RawSocketImpl socket = new RawSocketImpl();
+        assertFalse("Parking receives should be disabled by default.", socket.isParkingReceive());
+
+        socket.setParkingReceive(true);
+        assertTrue("Parking receives should be enabled.", socket.isParkingReceive());
+    }
+
+    @Test
+    public void testReceive01() throws IOException
+    {
+        this.sockets[0].setReceiveTimeout(100);
+
+        long start = System.nanoTime();
+        try
+        {
+            this.sockets[0].receive(new byte[64], 0, 64);
+        }
+        catch(SocketTimeoutException e)
+        {
+            assertTrue("The receive returned too early.", System.nanoTime() - start >= 90000000L);
+            return;
+        }
+
+        fail("Expected exception " + SocketTimeoutException.class);
+    }
+
+    @Test
+    public void testReceive02() throws IOException
+    {
+        this.send(0, 3);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        assertEquals("The packet length is not correct.", 3, this.sockets[0].receive(buffer));
+        assertEquals("The buffer position is not correct.", 3, buffer.position());
+    }
+
+    @Test
+    public void testReceive03() throws Exception
+    {
+        this.sockets[1].setReceiveTimeout(5000);
+
+        AtomicInteger received = new AtomicInteger();
+        Thread receiver = new Thread(() -> {
+            try
+            {
+                received.set(this.sockets[1].receive(new byte[64], 0, 64));
+            }
+            catch(IOException e)
+            {
+                received.set(-1);
+            }
+        });
+        receiver.start();
+
+        Thread.sleep(100);
+        assertEquals("The receiver should be parked.", 0, received.get());
+        this.send(1, 5);
+
+        receiver.join(5000);
+        assertEquals("The packet length is not correct.", 5, received.get());
+    }
+
+    private void send(int socket, int length) throws IOException
+    {
+        TestReceivePoller.send(this.channels[socket], length);
+    }
+
+    /**
+     * Opens UDP sockets on the loopback address and borrows their descriptors for parking raw sockets.
+     */
+    static void borrow(DatagramChannel[] channels, RawSocketImpl[] sockets) throws Exception
+    {
+        assumeTrue("Borrowing descriptors requires /proc.", Files.isDirectory(TestReceivePoller.DESCRIPTORS));
+
+        Field field = RawSocketImpl.class.getDeclaredField("nativeSocketIdentifier");
+        field.setAccessible(true);
+
+        for(int i = 0; i < sockets.length; i++)
+        {
+            channels[i] = DatagramChannel.open(StandardProtocolFamily.INET);
+            channels[i].bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+            int port = ((InetSocketAddress) channels[i].getLocalAddress()).getPort();
+
+            sockets[i] = new RawSocketImpl();
+            field.setInt(sockets[i], TestReceivePoller.findDescriptor(TestReceivePoller.findInode(port)));
+            sockets[i].setParkingReceive(true);
+        }
+    }
+
+    static void release(DatagramChannel[] channels, RawSocketImpl[] sockets) throws IOException
+    {
+        for(int i = 0; i < sockets.length; i++)
+        {
+            if(sockets[i] != null)
+            {
+                ReceivePoller.release(sockets[i]);
+            }
+            if(channels[i] != null)
+            {
+                channels[i].close();
+            }
+        }
+    }
+
+    static void send(DatagramChannel channel, int length) throws IOException
+    {
+        try(DatagramChannel sender = DatagramChannel.open())
+        {
+            sender.send(ByteBuffer.allocate(length), channel.getLocalAddress());
+        }
+    }
+
+    private static String findInode(int port) throws IOException
+    {
+        String local = String.format("0100007F:%04X", port);
+        for(String line : Files.readAllLines(Paths.get("/proc/self/net/udp")))
+        {
+            String[] fields = line.trim().split("\\s+");
+            if(fields.length > 9 && fields[1].equals(local))
+            {
+                return fields[9];
+            }
+        }
+
+        throw new IOException("The socket bound to port " + port + " could not be found.");
+    }
+
+    private static int findDescriptor(String inode) throws IOException
+    {
+        String target = "socket:[" + inode + "]";
+        try(DirectoryStream<Path> descriptors = Files.newDirectoryStream(TestReceivePoller.DESCRIPTORS))
+        {
+            for(Path descriptor : descriptors)
+            {
+                try
+                {
+                    if(Files.readSymbolicLink(descriptor).toString().equals(target))
+                    {
+                        return Integer.parseInt(descriptor.getFileName().toString());
+                    }
+                }
+                catch(IOException e)
+                {
+                    // the descriptor closed while listing, such as the one for the listing itself
+                }
+            }
+        }
+
+        throw new IOException("The descriptor of " + target + " could not be found.");
+    }
+}
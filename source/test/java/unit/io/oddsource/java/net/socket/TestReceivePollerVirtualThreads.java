@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.nio.channels.DatagramChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for ReceivePoller with many virtual threads parked on a handful of carriers. It needs the virtual thread
+ * scheduler limited before it starts, so the build runs it in its own forked execution with
+ * {@code -Djdk.virtualThreadScheduler.parallelism=4 -Djdk.virtualThreadScheduler.maxPoolSize=4}, and it is skipped
+ * without those flags or before Java 21.
+ */
+public class TestReceivePollerVirtualThreads
+{
+    private static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+    private static final String MAXIMUM_POOL_SIZE = "jdk.virtualThreadScheduler.maxPoolSize";
+
+    private static final int SOCKETS = 4;
+
+    private static final int RECEIVERS = 100000;
+
+    private final DatagramChannel[] channels = new DatagramChannel[TestReceivePollerVirtualThreads.SOCKETS];
+
+    private final RawSocketImpl[] sockets = new RawSocketImpl[TestReceivePollerVirtualThreads.SOCKETS];
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestReceivePoller.borrow(this.channels, this.sockets);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        TestReceivePoller.release(this.channels, this.sockets);
+    }
+
+    @Test
+    public void testVirtualThreads01() throws Exception
+    {
+        Integer carrierLimit = Integer.getInteger(TestReceivePollerVirtualThreads.MAXIMUM_POOL_SIZE);
+        assumeNotNull(Integer.getInteger(TestReceivePollerVirtualThreads.PARALLELISM), carrierLimit);
+        ThreadFactory factory = TestReceivePollerVirtualThreads.getVirtualThreadFactory();
+        assumeNotNull(factory);
+
+        for(RawSocketImpl socket : this.sockets)
+        {
+            socket.setReceiveTimeout(60000);
+        }
+
+        Set<String> carriers = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(TestReceivePollerVirtualThreads.RECEIVERS);
+        CountDownLatch finished = new CountDownLatch(TestReceivePollerVirtualThreads.RECEIVERS);
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for(int i = 0; i < TestReceivePollerVirtualThreads.RECEIVERS; i++)
+        {
+            RawSocketImpl socket = this.sockets[i % TestReceivePollerVirtualThreads.SOCKETS];
+            factory.newThread(() -> {
+                carriers.add(TestReceivePollerVirtualThreads.getCarrier());
+                started.countDown();
+                try
+                {
+                    if(socket.receive(new byte[16], 0, 16) > 0)
+                    {
+                        received.incrementAndGet();
+                    }
+                }
+                catch(IOException e)
+                {
+                    failed.incrementAndGet();
+                }
+                finally
+                {
+                    carriers.add(TestReceivePollerVirtualThreads.getCarrier());
+                    finished.countDown();
+                }
+            }).start();
+        }
+        assertTrue("Every receiver should have started.", started.await(60, TimeUnit.SECONDS));
+
+        CountDownLatch other = new CountDownLatch(1);
+        factory.newThread(other::countDown).start();
+        assertTrue("Parked receivers should not occupy the carriers.", other.await(10, TimeUnit.SECONDS));
+        assertEquals("No receiver should have returned yet.", TestReceivePollerVirtualThreads.RECEIVERS,
+                     finished.getCount());
+
+        for(int i = 0; i < TestReceivePollerVirtualThreads.RECEIVERS; i++)
+        {
+            while(i - received.get() >= 64 && failed.get() == 0)
+            {
+                Thread.sleep(1);
+            }
+            TestReceivePoller.send(this.channels[i % TestReceivePollerVirtualThreads.SOCKETS], 8);
+        }
+
+        assertTrue("Every receiver should have finished.", finished.await(60, TimeUnit.SECONDS));
+        assertEquals("No receiver should have failed.", 0, failed.get());
+        assertEquals("Every receiver should have received a packet.", TestReceivePollerVirtualThreads.RECEIVERS,
+                     received.get());
+        assertFalse("The carriers were not identified.", carriers.contains(""));
+        assertTrue("The receivers ran on " + carriers.size() + " carriers, more than " + carrierLimit + ": " + carriers,
+                   carriers.size() <= carrierLimit);
+    }
+
+    /*
+     * A mounted virtual thread names its carrier after the '@' in its string form, such as
+     * "VirtualThread[#22]/runnable@ForkJoinPool-1-worker-1".
+     */
+    private static String getCarrier()
+    {
+        String name = Thread.currentThread().toString();
+        int at = name.lastIndexOf('@');
+        return at < 0 ? "" : name.substring(at + 1);
+    }
+
+    private static ThreadFactory getVirtualThreadFactory() throws Exception
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }
+        catch(NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
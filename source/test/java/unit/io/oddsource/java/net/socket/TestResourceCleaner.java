@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for ResourceCleaner.
+ */
+public class TestResourceCleaner
+{
+    @Test
+    public void testClean01()
+    {
+        Object owner = new Object();
+        AtomicInteger runs = new AtomicInteger();
+        ResourceCleaner.Cleanable cleanable = ResourceCleaner.register(owner, runs::incrementAndGet);
+
+        cleanable.clean();
+        cleanable.clean();
+
+        assertEquals("The action should have run once.", 1, runs.get());
+        assertFalse("The registration should no longer be pending.", cleanable.cancel());
+    }
+
+    @Test
+    public void testCancel01()
+    {
+        Object owner = new Object();
+        AtomicInteger runs = new AtomicInteger();
+        ResourceCleaner.Cleanable cleanable = ResourceCleaner.register(owner, runs::incrementAndGet);
+
+        assertTrue("The registration should have been pending.", cleanable.cancel());
+        cleanable.clean();
+
+        assertEquals("The action should not have run.", 0, runs.get());
+    }
+
+    @Test
+    public void testUnreachable01() throws InterruptedException
+    {
+        CountDownLatch cleaned = new CountDownLatch(1);
+        ResourceCleaner.register(new Object(), cleaned::countDown);
+
+        for(int i = 0; i < 50 && cleaned.getCount() > 0; i++)
+        {
+            System.gc();
+            cleaned.await(100, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals("The action should have run once the owner was unreachable.", 0, cleaned.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegister01()
+    {
+        ResourceCleaner.register(null, () -> { });
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test class for RingGeometry.
+ */
+public class TestRingGeometry
+{
+    @Test
+    public void testConstructor01()
+    {
+        RingGeometry geometry = new RingGeometry(65536, 2048, 8, 50);
+
+        assertEquals("The block size is not correct.", 65536, geometry.getBlockSize());
+        assertEquals("The frame size is not correct.", 2048, geometry.getFrameSize());
+        assertEquals("The block count is not correct.", 8, geometry.getBlockCount());
+        assertEquals("The retire timeout is not correct.", 50, geometry.getRetireTimeout());
+        assertEquals("The frame count is not correct.", 256, geometry.getFrameCount());
+        assertEquals("The size is not correct.", 524288, geometry.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor02()
+    {
+        new RingGeometry(65536, 2050, 8, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor03()
+    {
+        new RingGeometry(65536 + 16, 2048, 8, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor04()
+    {
+        new RingGeometry(65536, 2048, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor05()
+    {
+        new RingGeometry(1 << 24, 2048, 1 << 8, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor06()
+    {
+        new RingGeometry(65536, 2048, 8, -1);
+    }
+}
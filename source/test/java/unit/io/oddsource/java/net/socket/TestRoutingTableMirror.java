@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for RoutingTableMirror.
+ */
+public class TestRoutingTableMirror
+{
+    private RoutingTableMirror mirror;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        assumeTrue("Routing table mirrors require Linux.", "Linux".equals(System.getProperty("os.name")));
+
+        this.mirror = new RoutingTableMirror();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if(this.mirror != null)
+        {
+            this.mirror.close();
+        }
+    }
+
+    @Test
+    public void testLoaded()
+    {
+        assertTrue("The mirror should be open.", this.mirror.isOpen());
+        assertTrue("The mirror should hold the loopback routes.", this.mirror.getRouteCount() > 0);
+    }
+
+    @Test
+    public void testLoopbackRoute() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+
+        Route route = this.mirror.getRoute(loopback);
+
+        assertNotNull("There should be a route to the loopback address.", route);
+        assertEquals("The route type is not correct.", Route.Type.LOCAL, route.getType());
+        assertEquals("The route should be in the local table.", RoutingTableMirror.TABLE_LOCAL, route.getTable());
+        assertTrue("The route should cover the address.", route.getPrefixLength() <= 32);
+        assertEquals("The next hop is not correct.", loopback, this.mirror.getNextHop(loopback));
+    }
+
+    @Test
+    public void testLoopbackSourceAddress() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByName("127.0.0.5");
+
+        assertEquals(
+            "The source address is not correct.", SocketUtilities.getSourceAddressForDestination(loopback),
+            this.mirror.getSourceAddress(loopback)
+        );
+    }
+
+    @Test
+    public void testCloseKeepsTables() throws Exception
+    {
+        int count = this.mirror.getRouteCount();
+
+        this.mirror.close();
+        this.mirror.close();
+
+        assertFalse("The mirror should be closed.", this.mirror.isOpen());
+        assertEquals("The tables should have been kept.", count, this.mirror.getRouteCount());
+        assertNotNull("Lookups should keep working.", this.mirror.getRoute(InetAddress.getByName("127.0.0.1")));
+    }
+
+    @Test
+    public void testFailure() throws Exception
+    {
+        assertNull("There should be no failure.", this.mirror.getFailure());
+
+        IOException cause = new IOException("The netlink socket failed.");
+        this.mirror.failed(cause);
+
+        assertFalse("A failed mirror should not report itself open.", this.mirror.isOpen());
+        assertSame("The failure is not correct.", cause, this.mirror.getFailure());
+        assertNotNull("Lookups should keep working.", this.mirror.getRoute(InetAddress.getByName("127.0.0.1")));
+
+        try
+        {
+            this.mirror.close();
+        }
+        catch(IOException e)
+        {
+            assertSame("The cause is not correct.", cause, e.getCause());
+            return;
+        }
+
+        fail("Expected exception " + IOException.class);
+    }
+
+    @Test
+    public void testFailureWrapped() throws Exception
+    {
+        IllegalStateException cause = new IllegalStateException("The message was malformed.");
+        this.mirror.failed(cause);
+
+        assertFalse("A failed mirror should not report itself open.", this.mirror.isOpen());
+        assertSame("The cause is not correct.", cause, this.mirror.getFailure().getCause());
+
+        try
+        {
+            this.mirror.close();
+        }
+        catch(IOException e)
+        {
+            assertSame("The failure is not correct.", this.mirror.getFailure(), e.getCause());
+            return;
+        }
+
+        fail("Expected exception " + IOException.class);
+    }
+
+    @Test
+    public void testGetRouteNull()
+    {
+        try
+        {
+            this.mirror.getRoute(null);
+        }
+        catch(IllegalArgumentException e)
+        {
+            return;
+        }
+
+        fail("Expected exception " + IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testGetNeighborNull()
+    {
+        try
+        {
+            this.mirror.getNeighbor(null, 1);
+        }
+        catch(IllegalArgumentException e)
+        {
+            return;
+        }
+
+        fail("Expected exception " + IllegalArgumentException.class);
+    }
+}
@@ -17,16 +17,22 @@ package io.oddsource.java.net.socket;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.SocketException;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import io.oddsource.java.net.socket.exception.RawSocketException;
+
 /**
- * Test class for .
+ * Test class for SocketUtilities.
  */
 public class TestSocketUtilities
 {
@@ -121,6 +127,25 @@ public class TestSocketUtilities
         assertNull("Protocol should not exist.", protocol);
     }
 
+    @Test
+    public void testGetProtocolByName06()
+    {
+        Protocol protocol = SocketUtilities.getProtocolByName("tcp");
+        assumeFalse("The database does not list an alias for TCP.", protocol.getAliases().isEmpty());
+
+        assertSame(
+            "Looking up an alias should find the same protocol.",
+            protocol,
+            SocketUtilities.getProtocolByName(protocol.getAliases().get(0))
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetProtocolByName07()
+    {
+        SocketUtilities.getProtocolByName(null);
+    }
+
     @Test
     public void testGetProtocolByNumber01()
     {
@@ -211,4 +236,97 @@ public class TestSocketUtilities
         assertTrue("The UDP protocol should be in the list.", foundUdp);
         assertTrue("The ICMP protocol should be in the list.", foundIcmp);
     }
+
+    @Test
+    public void testLoadProtocolListUncached()
+    {
+        Protocol[] cached = SocketUtilities.loadProtocolList();
+        Protocol[] uncached = SocketUtilities.loadProtocolListUncached();
+
+        assertEquals("The lists should be the same length.", cached.length, uncached.length);
+        for(int i = 0; i < cached.length; i++)
+        {
+            assertEquals("The protocol name is not correct.", cached[i].getName(), uncached[i].getName());
+            assertEquals("The protocol aliases are not correct.", cached[i].getAliases(), uncached[i].getAliases());
+            assertEquals(
+                "The protocol number is not correct.", cached[i].getProtocolNumber(), uncached[i].getProtocolNumber()
+            );
+        }
+    }
+
+    @Test
+    public void testRaiseSocketError() throws IOException
+    {
+        for(boolean cached : new boolean[] { true, false })
+        {
+            try
+            {
+                SocketUtilities.raiseSocketError(9, cached);
+                fail("Expected exception " + RawSocketException.class);
+            }
+            catch(RawSocketException e)
+            {
+                assertEquals("The message is not correct.", "Bad file descriptor", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testRefreshProtocolList01()
+    {
+        Protocol before = SocketUtilities.getProtocolByNumber(6);
+        SocketUtilities.refreshProtocolList();
+        Protocol after = SocketUtilities.getProtocolByNumber(6);
+
+        assertNotSame("The protocols should have been reloaded.", before, after);
+        assertEquals("The reloaded protocol is not correct.", before.getName(), after.getName());
+        assertEquals("The reloaded protocol is not correct.", before.getAliases(), after.getAliases());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testProtocolAliasesUnmodifiable()
+    {
+        SocketUtilities.getProtocolByName("tcp").getAliases().clear();
+    }
+
+    @Test
+    public void testGetSourceAddressForDestination01() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+
+        assertEquals(
+            "The source address is not correct.", loopback, SocketUtilities.getSourceAddressForDestination(loopback)
+        );
+    }
+
+    @Test
+    public void testGetSourceAddressForDestination02() throws Exception
+    {
+        InetAddress loopback = InetAddress.getByName("::1");
+
+        InetAddress source;
+        try
+        {
+            source = SocketUtilities.lookUpSourceAddress(loopback);
+        }
+        catch(SocketException e)
+        {
+            assumeNoException("IPv6 is not available.", e);
+            return;
+        }
+
+        assertEquals("The source address is not correct.", loopback, source);
+        SocketUtilities.clearSourceAddressCache();
+        assertEquals(
+            "The cached source address is not correct.",
+            source,
+            SocketUtilities.getSourceAddressForDestination(loopback)
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSourceAddressForDestination03() throws Exception
+    {
+        SocketUtilities.getSourceAddressForDestination(null);
+    }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for SourceAddressCache.
+ */
+public class TestSourceAddressCache
+{
+    private final List<InetAddress> lookups = new ArrayList<>();
+
+    private long now;
+
+    private InetAddress source;
+
+    private SourceAddressCache cache;
+
+    @Before
+    public void setUp() throws UnknownHostException
+    {
+        this.now = 1000L;
+        this.source = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        this.cache = new SourceAddressCache(3, 100L, destination -> {
+            this.lookups.add(destination);
+            if(destination.getAddress()[0] == 0)
+            {
+                throw new SocketException("No route to the destination: Network is unreachable");
+            }
+            return this.source;
+        }, () -> this.now);
+    }
+
+    private static InetAddress address(int last) throws UnknownHostException
+    {
+        return InetAddress.getByAddress(new byte[] {10, 0, 0, (byte) last});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructCapacity()
+    {
+        new SourceAddressCache(0, 100L, destination -> destination, () -> 0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructTimeToLive()
+    {
+        new SourceAddressCache(1, 0L, destination -> destination, () -> 0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetNull() throws SocketException
+    {
+        this.cache.get(null);
+    }
+
+    @Test
+    public void testGet01() throws Exception
+    {
+        assertSame("The source is not correct.", this.source, this.cache.get(address(2)));
+        assertSame("The source is not correct.", this.source, this.cache.get(address(2)));
+        assertSame("The source is not correct.", this.source, this.cache.get(address(2)));
+
+        assertEquals("The destination should have been looked up once.", 1, this.lookups.size());
+        assertEquals("The cache size is not correct.", 1, this.cache.size());
+    }
+
+    @Test
+    public void testGet02() throws Exception
+    {
+        this.cache.get(address(2));
+        this.now += 99L;
+        this.cache.get(address(2));
+        assertEquals("The entry should not have expired yet.", 1, this.lookups.size());
+
+        this.now += 1L;
+        this.cache.get(address(2));
+        assertEquals("The entry should have expired.", 2, this.lookups.size());
+
+        this.now += 99L;
+        this.cache.get(address(2));
+        assertEquals("The reloaded entry should not have expired yet.", 2, this.lookups.size());
+    }
+
+    @Test
+    public void testGet03() throws Exception
+    {
+        try
+        {
+            this.cache.get(InetAddress.getByAddress(new byte[] {0, 0, 0, 1}));
+            fail("Expected exception " + SocketException.class);
+        }
+        catch(SocketException e)
+        {
+            assertEquals(
+                "The message is not correct.", "No route to the destination: Network is unreachable", e.getMessage()
+            );
+        }
+
+        assertEquals("Failures should not be cached.", 0, this.cache.size());
+    }
+
+    @Test
+    public void testGet04() throws Exception
+    {
+        byte[] linkLocal = new byte[16];
+        linkLocal[0] = (byte) 0xfe;
+        linkLocal[1] = (byte) 0x80;
+        linkLocal[15] = 1;
+
+        this.cache.get(Inet6Address.getByAddress(null, linkLocal, 1));
+        this.cache.get(Inet6Address.getByAddress(null, linkLocal, 1));
+        assertEquals("The destination should have been looked up once.", 1, this.lookups.size());
+
+        this.cache.get(Inet6Address.getByAddress(null, linkLocal, 2));
+        assertEquals("A different scope should be looked up again.", 2, this.lookups.size());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception
+    {
+        this.cache.get(address(2));
+        this.now++;
+        this.cache.get(address(3));
+        this.now++;
+        this.cache.get(address(4));
+        this.now++;
+        this.cache.get(address(2));
+        this.now++;
+
+        this.cache.get(address(5));
+        assertEquals("The cache size is not correct.", 3, this.cache.size());
+
+        this.lookups.clear();
+        this.cache.get(address(2));
+        this.cache.get(address(4));
+        this.cache.get(address(5));
+        assertEquals("The recently used entries should have been kept.", 0, this.lookups.size());
+
+        this.cache.get(address(3));
+        assertEquals("The least recently used entry should have been evicted.", 1, this.lookups.size());
+    }
+
+    @Test
+    public void testEvictBatch() throws Exception
+    {
+        this.cache = new SourceAddressCache(20, 100L, destination -> {
+            this.lookups.add(destination);
+            return this.source;
+        }, () -> this.now);
+
+        for(int i = 0; i < 20; i++)
+        {
+            this.cache.get(address(i + 2));
+            this.now++;
+        }
+
+        this.cache.get(address(30));
+        assertEquals("A tenth of the cache should have been evicted.", 19, this.cache.size());
+
+        this.cache.get(address(31));
+        assertEquals("The next insert should not have evicted anything.", 20, this.cache.size());
+
+        this.lookups.clear();
+        for(int i = 2; i < 20; i++)
+        {
+            this.cache.get(address(i + 2));
+        }
+        assertEquals("The recently used entries should have been kept.", 0, this.lookups.size());
+
+        this.cache.get(address(2));
+        this.cache.get(address(3));
+        assertEquals("The least recently used entries should have been evicted.", 2, this.lookups.size());
+    }
+
+    @Test
+    public void testEvictExpired() throws Exception
+    {
+        this.cache.get(address(2));
+        this.cache.get(address(3));
+        this.now += 50L;
+        this.cache.get(address(4));
+        this.now += 50L;
+
+        this.cache.get(address(5));
+        assertEquals("Both expired entries should have been evicted.", 2, this.cache.size());
+
+        this.lookups.clear();
+        this.cache.get(address(4));
+        this.cache.get(address(5));
+        assertEquals("The live entries should have been kept.", 0, this.lookups.size());
+    }
+
+    @Test
+    public void testClear() throws Exception
+    {
+        this.cache.get(address(2));
+        this.cache.clear();
+        assertEquals("The cache size is not correct.", 0, this.cache.size());
+
+        this.cache.get(address(2));
+        assertEquals("The destination should have been looked up again.", 2, this.lookups.size());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip4;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PayloadSizeLimitException;
+
+/**
+ * Test class for GenericIp4Packet.
+ */
+public class TestGenericIp4Packet
+{
+    // 192.168.0.1 to 192.168.0.199, UDP, 115 bytes, don't fragment, TTL 64
+    private static final byte[] HEADER = {
+        0x45, 0x00, 0x00, 0x73, 0x00, 0x00, 0x40, 0x00, 0x40, 0x11, (byte) 0xb8, 0x61,
+        (byte) 0xc0, (byte) 0xa8, 0x00, 0x01, (byte) 0xc0, (byte) 0xa8, 0x00, (byte) 0xc7
+    };
+
+    private GenericIp4Packet packet;
+
+    @Before
+    public void setUp()
+    {
+        this.packet = new GenericIp4Packet(Packet.Source.OUTGOING);
+    }
+
+    private static byte[] received()
+    {
+        byte[] data = new byte[115];
+        System.arraycopy(TestGenericIp4Packet.HEADER, 0, data, 0, 20);
+        for(int i = 20; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void testEncode() throws Exception
+    {
+        this.packet.setFlags(Ipv4HeaderView.FLAG_DONT_FRAGMENT);
+        this.packet.setHopLimit((short) 64);
+        this.packet.setProtocol(17);
+        this.packet.setDestinationAddress(InetAddress.getByName("192.168.0.199"));
+        this.packet.setPayloadData(new byte[95]);
+
+        byte[] header = this.packet.getHeaderData();
+        assertEquals("The header length is not correct.", 20, header.length);
+        assertEquals("The packet length is not correct.", 115, this.packet.getPacketLength());
+
+        Ipv4HeaderView view = new Ipv4HeaderView().wrap(ByteBuffer.wrap(header), 0);
+        assertEquals("The packet length is not correct.", 115, view.getPacketLength());
+        assertEquals("The flags are not correct.", Ipv4HeaderView.FLAG_DONT_FRAGMENT, view.getFlags());
+        assertEquals("The protocol is not correct.", 17, view.getProtocol());
+        assertEquals(
+            "The source address should be unspecified.", InetAddress.getByName("0.0.0.0"), view.getSourceAddress()
+        );
+        assertEquals(
+            "The destination address is not correct.", InetAddress.getByName("192.168.0.199"),
+            view.getDestinationAddress()
+        );
+        assertTrue("The checksum should be valid.", view.isChecksumValid());
+    }
+
+    @Test
+    public void testDecode() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.position(4);
+        buffer.put(TestGenericIp4Packet.received());
+
+        GenericIp4Packet decoded = GenericIp4Packet.decode(buffer, 4, 124);
+
+        assertEquals("The source is not correct.", Packet.Source.INCOMING, decoded.getSource());
+        assertTrue("The packet should be finalized.", decoded.isFinalized());
+        assertEquals("The flags are not correct.", Ipv4HeaderView.FLAG_DONT_FRAGMENT, decoded.getFlags());
+        assertEquals("The hop limit is not correct.", 64, decoded.getHopLimit());
+        assertEquals("The protocol is not correct.", 17, decoded.getProtocol());
+        assertEquals(
+            "The source address is not correct.", InetAddress.getByName("192.168.0.1"), decoded.getSourceAddress()
+        );
+        assertEquals(
+            "The destination address is not correct.", InetAddress.getByName("192.168.0.199"),
+            decoded.getDestinationAddress()
+        );
+        assertEquals("The payload length is not correct.", 95, decoded.getPayloadLength());
+        assertEquals("The payload is not correct.", (byte) 114, decoded.getPayloadData()[94]);
+        assertArrayEquals("The packet is not correct.", TestGenericIp4Packet.received(), decoded.getPacketData());
+    }
+
+    @Test
+    public void testDecodeOptions() throws Exception
+    {
+        this.packet.setOptions(new byte[] {0x01, 0x01, 0x01, 0x00});
+        this.packet.setProtocol(253);
+        this.packet.setDestinationAddress(InetAddress.getByName("127.0.0.1"));
+        this.packet.setPayloadData(new byte[] {0x0A, 0x0B});
+
+        GenericIp4Packet decoded = GenericIp4Packet.decode(ByteBuffer.wrap(this.packet.getPacketData()), 0, 26);
+
+        assertEquals("The header length is not correct.", 24, decoded.getHeaderLength());
+        assertArrayEquals("The options are not correct.", new byte[] {0x01, 0x01, 0x01, 0x00}, decoded.getOptions());
+        assertArrayEquals("The payload is not correct.", new byte[] {0x0A, 0x0B}, decoded.getPayloadData());
+    }
+
+    @Test
+    public void testWritePacketData() throws Exception
+    {
+        this.packet.setDestinationAddress(InetAddress.getByName("127.0.0.1"));
+        this.packet.setPayloadData(new byte[] {0x0A, 0x0B, 0x0C});
+
+        ByteBuffer buffer = ByteBuffer.allocate(30);
+        buffer.position(3);
+
+        assertEquals("The length is not correct.", 23, this.packet.writePacketData(buffer));
+        assertEquals("The position is not correct.", 26, buffer.position());
+
+        byte[] written = new byte[23];
+        System.arraycopy(buffer.array(), 3, written, 0, 23);
+        assertArrayEquals("The packet is not correct.", this.packet.getPacketData(), written);
+    }
+
+    @Test
+    public void testWritePacketDataOverflow()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(19);
+
+        try
+        {
+            this.packet.writePacketData(buffer);
+        }
+        catch(BufferOverflowException e)
+        {
+            assertEquals("The position should not have changed.", 0, buffer.position());
+            return;
+        }
+
+        fail("Expected exception " + BufferOverflowException.class);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeTruncated()
+    {
+        GenericIp4Packet.decode(ByteBuffer.wrap(TestGenericIp4Packet.received()), 0, 100);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeWrongVersion()
+    {
+        byte[] data = TestGenericIp4Packet.received();
+        data[0] = 0x65;
+        GenericIp4Packet.decode(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeShort()
+    {
+        GenericIp4Packet.decode(ByteBuffer.wrap(TestGenericIp4Packet.HEADER), 0, 19);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeOutOfBounds()
+    {
+        GenericIp4Packet.decode(ByteBuffer.wrap(TestGenericIp4Packet.received()), 10, 115);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDestinationAddressIpv6() throws Exception
+    {
+        this.packet.setDestinationAddress(InetAddress.getByName("::1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOptionsNotPadded()
+    {
+        this.packet.setOptions(new byte[] {0x01, 0x01, 0x00});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFlagsInvalid()
+    {
+        this.packet.setFlags(8);
+    }
+
+    @Test(expected = PayloadSizeLimitException.class)
+    public void testPayloadTooLong()
+    {
+        this.packet.setPayloadData(new byte[65516]);
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetProtocolFinalized()
+    {
+        this.packet.finalizePacket();
+        this.packet.setProtocol(6);
+    }
+}
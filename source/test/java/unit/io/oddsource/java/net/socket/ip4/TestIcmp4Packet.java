@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip4;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.IcmpTemplate;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+
+/**
+ * Test class for Icmp4Packet.
+ */
+public class TestIcmp4Packet
+{
+    // an echo request with identifier 0x1234, sequence number 1 and the odd-length body "abc"
+    private static final byte[] ECHO = {0x08, 0x00, 0x21, 0x68, 0x12, 0x34, 0x00, 0x01, 0x61, 0x62, 0x63};
+
+    private Icmp4Packet packet;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.packet = new Icmp4Packet(Packet.Source.OUTGOING);
+        this.packet.setDestinationAddress(InetAddress.getByName("127.0.0.1"));
+    }
+
+    private void setUpEcho()
+    {
+        this.packet.setType(Icmp4Packet.TYPE_ECHO_REQUEST);
+        this.packet.setIdentifier(0x1234);
+        this.packet.setSequenceNumber(1);
+        this.packet.setBody(new byte[] {0x61, 0x62, 0x63});
+    }
+
+    @Test
+    public void testEncodeEcho()
+    {
+        this.setUpEcho();
+
+        assertEquals("The protocol is not correct.", 1, this.packet.getProtocol());
+        assertEquals("The payload length is not correct.", 11, this.packet.getPayloadLength());
+        assertArrayEquals("The message is not correct.", TestIcmp4Packet.ECHO, this.packet.getPayloadData());
+
+        byte[] data = this.packet.getPacketData();
+        assertEquals("The packet length is not correct.", 31, data.length);
+        assertEquals("The protocol byte is not correct.", 1, data[9]);
+        assertEquals("The message is not in the packet.", 0x21, data[22]);
+    }
+
+    @Test
+    public void testDecodeEcho()
+    {
+        this.setUpEcho();
+
+        Icmp4Packet decoded = Icmp4Packet.decode(ByteBuffer.wrap(this.packet.getPacketData()), 0, 31);
+
+        assertEquals("The type is not correct.", Icmp4Packet.TYPE_ECHO_REQUEST, decoded.getType());
+        assertEquals("The code is not correct.", 0, decoded.getCode());
+        assertEquals("The identifier is not correct.", 0x1234, decoded.getIdentifier());
+        assertEquals("The sequence number is not correct.", 1, decoded.getSequenceNumber());
+        assertArrayEquals("The body is not correct.", new byte[] {0x61, 0x62, 0x63}, decoded.getBody());
+        assertTrue("The checksum should be valid.", decoded.isChecksumValid());
+        assertFalse("The message should not be an error.", decoded.isError());
+        assertNull("There should be no quoted packet.", decoded.getQuotedPacket());
+    }
+
+    @Test
+    public void testDecodeBadChecksum()
+    {
+        this.setUpEcho();
+        byte[] data = this.packet.getPacketData();
+        data[30] = 0x64;
+
+        assertFalse(
+            "The checksum should not be valid.",
+            Icmp4Packet.decode(ByteBuffer.wrap(data), 0, data.length).isChecksumValid()
+        );
+    }
+
+    @Test
+    public void testTimeExceeded() throws Exception
+    {
+        Icmp4Packet probe = new Icmp4Packet(Packet.Source.OUTGOING);
+        probe.setType(Icmp4Packet.TYPE_ECHO_REQUEST);
+        probe.setHopLimit((short) 1);
+        probe.setIdentifier(7);
+        probe.setSequenceNumber(42);
+        probe.setDestinationAddress(InetAddress.getByName("192.0.2.1"));
+        probe.setBody(new byte[32]);
+
+        byte[] quoted = new byte[28];
+        System.arraycopy(probe.getPacketData(), 0, quoted, 0, 28);
+        this.packet.setType(Icmp4Packet.TYPE_TIME_EXCEEDED);
+        this.packet.setCode(Icmp4Packet.CODE_TTL_EXCEEDED);
+        this.packet.setBody(quoted);
+
+        Icmp4Packet decoded = Icmp4Packet.decode(ByteBuffer.wrap(this.packet.getPacketData()), 0, 56);
+        assertTrue("The message should be an error.", decoded.isError());
+
+        GenericIp4Packet original = decoded.getQuotedPacket();
+        assertEquals("The protocol is not correct.", 1, original.getProtocol());
+        assertEquals("The hop limit is not correct.", 1, original.getHopLimit());
+        assertEquals(
+            "The destination is not correct.", InetAddress.getByName("192.0.2.1"), original.getDestinationAddress()
+        );
+
+        ByteBuffer message = ByteBuffer.wrap(original.getPayloadData());
+        assertEquals("The quoted message length is not correct.", 8, message.remaining());
+        assertEquals("The quoted identifier is not correct.", 7, message.getShort(4));
+        assertEquals("The quoted sequence number is not correct.", 42, message.getShort(6));
+    }
+
+    @Test
+    public void testFragmentationNeeded()
+    {
+        this.packet.setType(Icmp4Packet.TYPE_DESTINATION_UNREACHABLE);
+        this.packet.setCode(Icmp4Packet.CODE_FRAGMENTATION_NEEDED);
+        this.packet.setRestOfHeader(1400);
+
+        assertEquals("The next-hop MTU is not correct.", 1400, this.packet.getNextHopMtu());
+        assertEquals("The pointer is not correct.", 0, this.packet.getPointer());
+    }
+
+    @Test
+    public void testTemplate()
+    {
+        this.setUpEcho();
+        IcmpTemplate template = this.packet.createTemplate(true);
+        assertEquals("The length is not correct.", 31, template.getLength());
+        assertEquals("The message offset is not correct.", 20, template.getMessageOffset());
+
+        byte[] probe = new byte[31];
+        for(int sequence = 0; sequence < 70000; sequence += 997)
+        {
+            this.packet.setSequenceNumber(sequence);
+            template.write(probe, 0, 0x1234, sequence);
+            assertArrayEquals("The probe is not correct.", this.packet.getPacketData(), probe);
+        }
+    }
+
+    @Test
+    public void testTemplateMessageOnly()
+    {
+        this.setUpEcho();
+        this.packet.setSequenceNumber(99);
+
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+        this.packet.createTemplate(false).write(buffer, 0x1234, 1);
+
+        assertArrayEquals("The probe is not correct.", TestIcmp4Packet.ECHO, buffer.array());
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeNotIcmp() throws Exception
+    {
+        GenericIp4Packet udp = new GenericIp4Packet(Packet.Source.OUTGOING);
+        udp.setProtocol(17);
+        udp.setDestinationAddress(InetAddress.getByName("127.0.0.1"));
+        udp.setPayloadData(new byte[8]);
+
+        Icmp4Packet.decode(ByteBuffer.wrap(udp.getPacketData()), 0, 28);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testSetPayloadDataShort()
+    {
+        this.packet.setPayloadData(new byte[7]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetProtocol()
+    {
+        this.packet.setProtocol(17);
+    }
+}
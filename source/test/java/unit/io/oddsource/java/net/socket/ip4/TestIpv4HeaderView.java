@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip4;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.IllegalHopLimitException;
+
+/**
+ * Test class for Ipv4HeaderView.
+ */
+public class TestIpv4HeaderView
+{
+    // 192.168.0.1 to 192.168.0.199, UDP, 115 bytes, don't fragment, TTL 64
+    private static final byte[] HEADER = {
+        0x45, 0x00, 0x00, 0x73, 0x00, 0x00, 0x40, 0x00, 0x40, 0x11, (byte) 0xb8, 0x61,
+        (byte) 0xc0, (byte) 0xa8, 0x00, 0x01, (byte) 0xc0, (byte) 0xa8, 0x00, (byte) 0xc7
+    };
+
+    private Ipv4HeaderView view;
+
+    @Before
+    public void setUp()
+    {
+        this.view = new Ipv4HeaderView();
+    }
+
+    private static ByteBuffer buffer(int offset, ByteOrder order)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(offset + 64).order(order);
+        buffer.position(offset);
+        buffer.put(TestIpv4HeaderView.HEADER);
+        buffer.clear();
+        return buffer;
+    }
+
+    private void assertHeader()
+    {
+        assertEquals("The version is not correct.", 4, this.view.getVersion());
+        assertEquals("The header length is not correct.", 20, this.view.getHeaderLength());
+        assertEquals("The type of service is not correct.", 0, this.view.getTypeOfService());
+        assertEquals("The packet length is not correct.", 115, this.view.getPacketLength());
+        assertEquals("The payload length is not correct.", 95, this.view.getPayloadLength());
+        assertEquals("The identification is not correct.", 0, this.view.getIdentification());
+        assertEquals("The flags are not correct.", Ipv4HeaderView.FLAG_DONT_FRAGMENT, this.view.getFlags());
+        assertEquals("The fragment offset is not correct.", 0, this.view.getFragmentOffset());
+        assertEquals("The hop limit is not correct.", 64, this.view.getHopLimit());
+        assertEquals("The protocol is not correct.", 17, this.view.getProtocol());
+        assertEquals("The checksum is not correct.", 0xb861, this.view.getChecksum());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid());
+    }
+
+    @Test
+    public void testRead() throws Exception
+    {
+        this.view.wrap(TestIpv4HeaderView.buffer(0, ByteOrder.BIG_ENDIAN), 0);
+
+        this.assertHeader();
+        assertEquals("The payload offset is not correct.", 20, this.view.getPayloadOffset());
+        assertEquals(
+            "The source address is not correct.", InetAddress.getByName("192.168.0.1"), this.view.getSourceAddress()
+        );
+        assertEquals(
+            "The destination address is not correct.", InetAddress.getByName("192.168.0.199"),
+            this.view.getDestinationAddress()
+        );
+
+        byte[] address = new byte[16];
+        assertEquals("The address length is not correct.", 4, this.view.getDestinationAddress(address));
+        assertEquals("The address is not correct.", (byte) 0xc7, address[3]);
+    }
+
+    @Test
+    public void testReadOffsetLittleEndian()
+    {
+        ByteBuffer buffer = TestIpv4HeaderView.buffer(14, ByteOrder.LITTLE_ENDIAN);
+
+        this.view.wrap(buffer, 14);
+
+        this.assertHeader();
+        assertEquals("The payload offset is not correct.", 34, this.view.getPayloadOffset());
+        assertEquals("The buffer order should not have changed.", ByteOrder.LITTLE_ENDIAN, buffer.order());
+        assertEquals("The buffer position should not have changed.", 0, buffer.position());
+    }
+
+    @Test
+    public void testReadDirect()
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.put(TestIpv4HeaderView.HEADER).clear();
+
+        this.view.wrap(buffer, 0);
+
+        this.assertHeader();
+    }
+
+    @Test
+    public void testReuse()
+    {
+        ByteBuffer first = TestIpv4HeaderView.buffer(0, ByteOrder.BIG_ENDIAN);
+        ByteBuffer second = TestIpv4HeaderView.buffer(0, ByteOrder.BIG_ENDIAN);
+        second.put(8, (byte) 3);
+
+        assertEquals("The hop limit is not correct.", 64, this.view.wrap(first, 0).getHopLimit());
+        assertEquals("The hop limit is not correct.", 3, this.view.wrap(second, 0).getHopLimit());
+        assertSame("The buffer is not correct.", second, this.view.getBuffer());
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(0, (byte) 0x7F);
+
+        this.view.wrap(buffer, 0).clear();
+        assertEquals("The default hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, this.view.getHopLimit());
+
+        this.view.setPacketLength(115);
+        this.view.setFlags(Ipv4HeaderView.FLAG_DONT_FRAGMENT);
+        this.view.setHopLimit((short) 64);
+        this.view.setProtocol(17);
+        this.view.setSourceAddress(InetAddress.getByName("192.168.0.1"));
+        this.view.setDestinationAddress(new byte[] {(byte) 0xc0, (byte) 0xa8, 0x00, (byte) 0xc7});
+        this.view.updateChecksum();
+
+        assertArrayEquals("The header is not correct.", TestIpv4HeaderView.HEADER, buffer.array());
+    }
+
+    @Test
+    public void testFlagsAndFragmentOffset()
+    {
+        this.view.wrap(ByteBuffer.allocate(20), 0).clear();
+
+        this.view.setFragmentOffset(0x1234);
+        this.view.setFlags(Ipv4HeaderView.FLAG_MORE_FRAGMENTS);
+
+        assertEquals("The flags are not correct.", Ipv4HeaderView.FLAG_MORE_FRAGMENTS, this.view.getFlags());
+        assertEquals("The fragment offset is not correct.", 0x1234, this.view.getFragmentOffset());
+
+        this.view.setFragmentOffset(0xFFFF);
+        assertEquals("The flags should have been kept.", Ipv4HeaderView.FLAG_MORE_FRAGMENTS, this.view.getFlags());
+        assertEquals("The fragment offset is not correct.", 0x1FFF, this.view.getFragmentOffset());
+    }
+
+    @Test
+    public void testChecksumInvalid()
+    {
+        ByteBuffer buffer = TestIpv4HeaderView.buffer(0, ByteOrder.BIG_ENDIAN);
+        buffer.put(8, (byte) 63);
+
+        this.view.wrap(buffer, 0);
+
+        assertFalse("The checksum should not be valid.", this.view.isChecksumValid());
+        this.view.updateChecksum();
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid());
+    }
+
+    @Test
+    public void testRewrite()
+    {
+        ByteBuffer buffer = TestIpv4HeaderView.buffer(6, ByteOrder.LITTLE_ENDIAN);
+        this.view.wrap(buffer, 6);
+
+        this.view.rewriteHopLimit((short) 1);
+        assertEquals("The hop limit is not correct.", 1, this.view.getHopLimit());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid());
+
+        this.view.rewriteIdentification(0xBEEF);
+        this.view.rewriteSourceAddress(new byte[] {10, 0, 0, 1});
+        this.view.rewriteDestinationAddress(new byte[] {(byte) 255, (byte) 255, (byte) 255, (byte) 255});
+        assertEquals("The identification is not correct.", 0xBEEF, this.view.getIdentification());
+        assertTrue("The checksum should be valid.", this.view.isChecksumValid());
+
+        int checksum = this.view.getChecksum();
+        this.view.updateChecksum();
+        assertEquals("The checksum is not correct.", this.view.getChecksum(), checksum);
+    }
+
+    @Test(expected = IllegalHopLimitException.class)
+    public void testRewriteHopLimitInvalid()
+    {
+        this.view.wrap(ByteBuffer.allocate(20), 0).rewriteHopLimit((short) 0);
+    }
+
+    @Test
+    public void testHeaderLength()
+    {
+        this.view.wrap(ByteBuffer.allocate(60), 0).setHeaderLength(60);
+
+        assertEquals("The version is not correct.", 4, this.view.getVersion());
+        assertEquals("The header length is not correct.", 60, this.view.getHeaderLength());
+        assertEquals("The payload offset is not correct.", 60, this.view.getPayloadOffset());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeaderLengthInvalid()
+    {
+        this.view.wrap(ByteBuffer.allocate(60), 0).setHeaderLength(22);
+    }
+
+    @Test(expected = IllegalHopLimitException.class)
+    public void testHopLimitInvalid()
+    {
+        this.view.wrap(ByteBuffer.allocate(20), 0).setHopLimit((short) 256);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSourceAddressIpv6() throws Exception
+    {
+        this.view.wrap(ByteBuffer.allocate(20), 0).setSourceAddress(InetAddress.getByName("::1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrapTooShort()
+    {
+        this.view.wrap(ByteBuffer.allocate(30), 11);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrapNull()
+    {
+        this.view.wrap(null, 0);
+    }
+}
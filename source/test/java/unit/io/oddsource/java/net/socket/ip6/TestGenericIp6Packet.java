@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip6;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.FinalizedPacketException;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+import io.oddsource.java.net.socket.exception.PayloadSizeLimitException;
+
+/**
+ * Test class for GenericIp6Packet.
+ */
+public class TestGenericIp6Packet
+{
+    // 2001:db8::1 to ::ffff:192.0.2.1, traffic class 0xb8, flow label 0x12345, ICMPv6, 64 bytes, hop limit 255
+    private static final byte[] HEADER = {
+        0x6b, (byte) 0x81, 0x23, 0x45, 0x00, 0x40, 0x3a, (byte) 0xff,
+        0x20, 0x01, 0x0d, (byte) 0xb8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01,
+        0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, (byte) 0xff, (byte) 0xc0, 0x00,
+        0x02, 0x01
+    };
+
+    private GenericIp6Packet packet;
+
+    @Before
+    public void setUp()
+    {
+        this.packet = new GenericIp6Packet(Packet.Source.OUTGOING);
+    }
+
+    private static byte[] received()
+    {
+        byte[] data = new byte[104];
+        System.arraycopy(TestGenericIp6Packet.HEADER, 0, data, 0, 40);
+        for(int i = 40; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void testDecode() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(120);
+        buffer.position(8);
+        buffer.put(TestGenericIp6Packet.received());
+
+        GenericIp6Packet decoded = GenericIp6Packet.decode(buffer, 8, 112);
+
+        assertTrue("The packet should be finalized.", decoded.isFinalized());
+        assertEquals("The traffic class is not correct.", 0xb8, decoded.getTrafficClass());
+        assertEquals("The flow label is not correct.", 0x12345, decoded.getFlowLabel());
+        assertEquals("The next header is not correct.", 58, decoded.getNextHeader());
+        assertEquals("The hop limit is not correct.", 255, decoded.getHopLimit());
+        assertEquals(
+            "The source address is not correct.", InetAddress.getByName("2001:db8::1"), decoded.getSourceAddress()
+        );
+        assertEquals("The payload length is not correct.", 64, decoded.getPayloadLength());
+        assertEquals("The payload is not correct.", (byte) 103, decoded.getPayloadData()[63]);
+        assertArrayEquals("The packet is not correct.", TestGenericIp6Packet.received(), decoded.getPacketData());
+    }
+
+    @Test
+    public void testEncode() throws Exception
+    {
+        this.packet.setTrafficClass(0xb8);
+        this.packet.setFlowLabel(0x12345);
+        this.packet.setNextHeader(17);
+        this.packet.setDestinationAddress(InetAddress.getByName("2001:db8::2"));
+        this.packet.setPayloadData(new byte[] {0x01, 0x02});
+
+        ByteBuffer buffer = ByteBuffer.allocate(42);
+        assertEquals("The length is not correct.", 42, this.packet.writePacketData(buffer));
+        assertArrayEquals("The packet is not correct.", this.packet.getPacketData(), buffer.array());
+
+        Ipv6HeaderView view = new Ipv6HeaderView().wrap(buffer, 0);
+        assertEquals("The payload length is not correct.", 2, view.getPayloadLength());
+        assertEquals("The next header is not correct.", 17, view.getNextHeader());
+        assertEquals("The hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, view.getHopLimit());
+        assertEquals(
+            "The source address should be unspecified.", InetAddress.getByName("::"), view.getSourceAddress()
+        );
+        assertEquals(
+            "The destination address is not correct.", InetAddress.getByName("2001:db8::2"),
+            view.getDestinationAddress()
+        );
+    }
+
+    @Test
+    public void testDecodeTruncatedAllowed()
+    {
+        GenericIp6Packet decoded = new GenericIp6Packet(Packet.Source.INCOMING);
+        decoded.decode(ByteBuffer.wrap(TestGenericIp6Packet.received()), 0, 48, true);
+
+        assertEquals("The payload length is not correct.", 8, decoded.getPayloadLength());
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeTruncated()
+    {
+        GenericIp6Packet.decode(ByteBuffer.wrap(TestGenericIp6Packet.received()), 0, 103);
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeWrongVersion()
+    {
+        byte[] data = TestGenericIp6Packet.received();
+        data[0] = 0x45;
+        GenericIp6Packet.decode(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSourceAddressIpv4() throws Exception
+    {
+        new GenericIp6Packet(Packet.Source.INCOMING).setSourceAddress(InetAddress.getByName("127.0.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFlowLabelInvalid()
+    {
+        this.packet.setFlowLabel(0x100000);
+    }
+
+    @Test(expected = PayloadSizeLimitException.class)
+    public void testPayloadTooLong()
+    {
+        this.packet.setPayloadData(new byte[65536]);
+    }
+
+    @Test(expected = FinalizedPacketException.class)
+    public void testSetNextHeaderFinalized()
+    {
+        this.packet.finalizePacket();
+        this.packet.setNextHeader(6);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip6;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.IcmpTemplate;
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.MalformedPacketException;
+
+/**
+ * Test class for Icmp6Packet.
+ */
+public class TestIcmp6Packet
+{
+    // an echo request from ::1 to ::1 with identifier 0x1234, sequence number 1 and the body "abc"
+    private static final byte[] ECHO = {
+        (byte) 0x80, 0x00, (byte) 0xa9, 0x20, 0x12, 0x34, 0x00, 0x01, 0x61, 0x62, 0x63
+    };
+
+    private Icmp6Packet packet;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.packet = new Icmp6Packet(Packet.Source.OUTGOING);
+        this.packet.setDestinationAddress(InetAddress.getByName("::1"));
+        this.packet.setType(Icmp6Packet.TYPE_ECHO_REQUEST);
+        this.packet.setIdentifier(0x1234);
+        this.packet.setSequenceNumber(1);
+        this.packet.setBody(new byte[] {0x61, 0x62, 0x63});
+    }
+
+    private byte[] receivedFromLoopback() throws Exception
+    {
+        Icmp6Packet incoming = new Icmp6Packet(Packet.Source.INCOMING);
+        incoming.setSourceAddress(InetAddress.getByName("::1"));
+        incoming.setDestinationAddress(InetAddress.getByName("::1"));
+        incoming.setPayloadData(TestIcmp6Packet.ECHO);
+        return incoming.getPacketData();
+    }
+
+    @Test
+    public void testEncodeWithAddresses() throws Exception
+    {
+        Icmp6Packet incoming = new Icmp6Packet(Packet.Source.INCOMING);
+        incoming.setSourceAddress(InetAddress.getByName("::1"));
+        incoming.setDestinationAddress(InetAddress.getByName("::1"));
+        incoming.setType(Icmp6Packet.TYPE_ECHO_REQUEST);
+        incoming.setRestOfHeader(0x12340001);
+        incoming.setBody(new byte[] {0x61, 0x62, 0x63});
+
+        assertArrayEquals("The message is not correct.", TestIcmp6Packet.ECHO, incoming.getPayloadData());
+        assertEquals("The next header is not correct.", 58, incoming.getNextHeader());
+    }
+
+    @Test
+    public void testEncodeUnknownSource()
+    {
+        byte[] data = this.packet.getPacketData();
+        assertEquals("The packet length is not correct.", 51, data.length);
+
+        Icmp6Packet decoded = Icmp6Packet.decode(ByteBuffer.wrap(data), 0, data.length);
+        assertTrue("The checksum should be valid for the unspecified source.", decoded.isChecksumValid());
+        assertEquals("The sequence number is not correct.", 1, decoded.getSequenceNumber());
+    }
+
+    @Test
+    public void testDecode() throws Exception
+    {
+        Icmp6Packet decoded = Icmp6Packet.decode(ByteBuffer.wrap(this.receivedFromLoopback()), 0, 51);
+
+        assertEquals("The type is not correct.", Icmp6Packet.TYPE_ECHO_REQUEST, decoded.getType());
+        assertEquals("The identifier is not correct.", 0x1234, decoded.getIdentifier());
+        assertEquals("The sequence number is not correct.", 1, decoded.getSequenceNumber());
+        assertArrayEquals("The body is not correct.", new byte[] {0x61, 0x62, 0x63}, decoded.getBody());
+        assertTrue("The checksum should be valid.", decoded.isChecksumValid());
+        assertFalse("The message should not be an error.", decoded.isError());
+    }
+
+    @Test
+    public void testDecodeBadChecksum() throws Exception
+    {
+        byte[] data = this.receivedFromLoopback();
+        data[24] = 0x20;
+
+        assertFalse(
+            "The checksum should not be valid.",
+            Icmp6Packet.decode(ByteBuffer.wrap(data), 0, data.length).isChecksumValid()
+        );
+    }
+
+    @Test
+    public void testDecodeMessage() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.position(2);
+        buffer.put(TestIcmp6Packet.ECHO);
+
+        Icmp6Packet decoded = Icmp6Packet.decodeMessage(buffer, 2, 11, InetAddress.getByName("fe80::1"));
+
+        assertTrue("The packet should be finalized.", decoded.isFinalized());
+        assertEquals("The source is not correct.", InetAddress.getByName("fe80::1"), decoded.getSourceAddress());
+        assertNull("The destination should be unknown.", decoded.getDestinationAddress());
+        assertEquals("The sequence number is not correct.", 1, decoded.getSequenceNumber());
+        assertTrue("The checksum should be valid.", decoded.isChecksumValid());
+    }
+
+    @Test
+    public void testPacketTooBig() throws Exception
+    {
+        byte[] quoted = new byte[48];
+        System.arraycopy(this.receivedFromLoopback(), 0, quoted, 0, 48);
+
+        Icmp6Packet error = new Icmp6Packet(Packet.Source.OUTGOING);
+        error.setType(Icmp6Packet.TYPE_PACKET_TOO_BIG);
+        error.setRestOfHeader(1280);
+        error.setBody(quoted);
+
+        Icmp6Packet decoded = Icmp6Packet.decodeMessage(
+            ByteBuffer.wrap(error.getPayloadData()), 0, 56, InetAddress.getByName("fe80::1")
+        );
+        assertTrue("The message should be an error.", decoded.isError());
+        assertEquals("The MTU is not correct.", 1280L, decoded.getMtuOrPointer());
+
+        GenericIp6Packet original = decoded.getQuotedPacket();
+        assertEquals("The next header is not correct.", 58, original.getNextHeader());
+        assertEquals("The quoted payload length is not correct.", 8, original.getPayloadLength());
+        assertEquals("The quoted type is not correct.", (byte) 0x80, original.getPayloadData()[0]);
+    }
+
+    @Test
+    public void testTemplate() throws Exception
+    {
+        Icmp6Packet incoming = new Icmp6Packet(Packet.Source.INCOMING);
+        incoming.setSourceAddress(InetAddress.getByName("2001:db8::1"));
+        incoming.setDestinationAddress(InetAddress.getByName("2001:db8::2"));
+        incoming.setType(Icmp6Packet.TYPE_ECHO_REQUEST);
+        incoming.setBody(new byte[56]);
+
+        IcmpTemplate template = incoming.createTemplate(false);
+        IcmpTemplate withHeader = incoming.createTemplate(true);
+        assertEquals("The message offset is not correct.", 40, withHeader.getMessageOffset());
+
+        ByteBuffer buffer = ByteBuffer.allocate(104);
+        for(int sequence = 0; sequence < 65536; sequence += 4099)
+        {
+            incoming.setIdentifier(0xBEEF);
+            incoming.setSequenceNumber(sequence);
+
+            buffer.clear();
+            template.write(buffer, 0xBEEF, sequence);
+            byte[] probe = new byte[64];
+            System.arraycopy(buffer.array(), 0, probe, 0, 64);
+            assertArrayEquals("The probe is not correct.", incoming.getPayloadData(), probe);
+
+            buffer.clear();
+            withHeader.write(buffer, 0xBEEF, sequence);
+            assertArrayEquals("The packet is not correct.", incoming.getPacketData(), buffer.array());
+        }
+    }
+
+    @Test(expected = MalformedPacketException.class)
+    public void testDecodeMessageShort() throws Exception
+    {
+        Icmp6Packet.decodeMessage(ByteBuffer.wrap(TestIcmp6Packet.ECHO), 0, 7, InetAddress.getByName("::1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetNextHeader()
+    {
+        this.packet.setNextHeader(17);
+    }
+}
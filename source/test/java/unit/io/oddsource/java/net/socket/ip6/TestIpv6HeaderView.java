@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.net.socket.ip6;
+
+import static org.junit.Assert.*;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.net.socket.Packet;
+import io.oddsource.java.net.socket.exception.IllegalHopLimitException;
+
+/**
+ * Test class for Ipv6HeaderView.
+ */
+public class TestIpv6HeaderView
+{
+    // 2001:db8::1 to ::ffff:192.0.2.1, traffic class 0xb8, flow label 0x12345, ICMPv6, 64 bytes, hop limit 255
+    private static final byte[] HEADER = {
+        0x6b, (byte) 0x81, 0x23, 0x45, 0x00, 0x40, 0x3a, (byte) 0xff,
+        0x20, 0x01, 0x0d, (byte) 0xb8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01,
+        0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, (byte) 0xff, (byte) 0xc0, 0x00,
+        0x02, 0x01
+    };
+
+    private Ipv6HeaderView view;
+
+    @Before
+    public void setUp()
+    {
+        this.view = new Ipv6HeaderView();
+    }
+
+    @Test
+    public void testRead() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(48).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(4);
+        buffer.put(TestIpv6HeaderView.HEADER);
+
+        this.view.wrap(buffer, 4);
+
+        assertEquals("The version is not correct.", 6, this.view.getVersion());
+        assertEquals("The traffic class is not correct.", 0xb8, this.view.getTrafficClass());
+        assertEquals("The flow label is not correct.", 0x12345, this.view.getFlowLabel());
+        assertEquals("The payload length is not correct.", 64, this.view.getPayloadLength());
+        assertEquals("The packet length is not correct.", 104, this.view.getPacketLength());
+        assertEquals("The next header is not correct.", 58, this.view.getNextHeader());
+        assertEquals("The hop limit is not correct.", 255, this.view.getHopLimit());
+        assertEquals("The header length is not correct.", 40, this.view.getHeaderLength());
+        assertEquals("The payload offset is not correct.", 44, this.view.getPayloadOffset());
+        assertEquals(
+            "The source address is not correct.", InetAddress.getByName("2001:db8::1"), this.view.getSourceAddress()
+        );
+
+        InetAddress destination = this.view.getDestinationAddress();
+        assertTrue("The mapped destination should stay IPv6.", destination instanceof Inet6Address);
+
+        byte[] address = new byte[16];
+        assertEquals("The address length is not correct.", 16, this.view.getDestinationAddress(address));
+        assertArrayEquals("The address is not correct.", destination.getAddress(), address);
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.put(3, (byte) 0x7F);
+
+        this.view.wrap(buffer, 0).clear();
+        assertEquals("The version is not correct.", 6, this.view.getVersion());
+        assertEquals("The default hop limit is not correct.", Packet.DEFAULT_HOP_LIMIT, this.view.getHopLimit());
+
+        this.view.setFlowLabel(0x12345);
+        this.view.setTrafficClass(0xb8);
+        this.view.setPayloadLength(64);
+        this.view.setNextHeader(58);
+        this.view.setHopLimit((short) 255);
+        this.view.setSourceAddress(InetAddress.getByName("2001:db8::1"));
+        byte[] destination = new byte[16];
+        System.arraycopy(TestIpv6HeaderView.HEADER, 24, destination, 0, 16);
+        this.view.setDestinationAddress(destination);
+
+        assertArrayEquals("The header is not correct.", TestIpv6HeaderView.HEADER, buffer.array());
+    }
+
+    @Test
+    public void testTrafficClassKeepsFlowLabel()
+    {
+        this.view.wrap(ByteBuffer.allocate(40), 0).clear();
+
+        this.view.setTrafficClass(0x1FF);
+        this.view.setFlowLabel(0xFFFFFFFF);
+
+        assertEquals("The version is not correct.", 6, this.view.getVersion());
+        assertEquals("The traffic class is not correct.", 0xFF, this.view.getTrafficClass());
+        assertEquals("The flow label is not correct.", 0xFFFFF, this.view.getFlowLabel());
+    }
+
+    @Test(expected = IllegalHopLimitException.class)
+    public void testHopLimitInvalid()
+    {
+        this.view.wrap(ByteBuffer.allocate(40), 0).setHopLimit((short) 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDestinationAddressIpv4() throws Exception
+    {
+        this.view.wrap(ByteBuffer.allocate(40), 0).setDestinationAddress(InetAddress.getByName("127.0.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSourceAddressShort()
+    {
+        this.view.wrap(ByteBuffer.allocate(40), 0).setSourceAddress(new byte[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrapTooShort()
+    {
+        this.view.wrap(ByteBuffer.allocate(39), 0);
+    }
+}